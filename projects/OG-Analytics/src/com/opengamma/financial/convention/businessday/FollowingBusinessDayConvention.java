@@ -8,6 +8,7 @@ package com.opengamma.financial.convention.businessday;
 import javax.time.calendar.LocalDate;
 
 import com.opengamma.financial.convention.calendar.Calendar;
+import com.opengamma.financial.convention.calendar.CompiledCalendar;
 
 /**
  * The following business day convention.
@@ -21,6 +22,9 @@ public class FollowingBusinessDayConvention extends AbstractBusinessDayConventio
 
   @Override
   public LocalDate adjustDate(final Calendar workingDays, final LocalDate date) {
+    if (workingDays instanceof CompiledCalendar) {
+      return ((CompiledCalendar) workingDays).getFollowingWorkingDay(date);
+    }
     LocalDate result = date;
     while (!workingDays.isWorkingDay(result)) {
       result = result.plusDays(1);
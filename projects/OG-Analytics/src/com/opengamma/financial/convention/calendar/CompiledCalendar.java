@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.convention.calendar;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.time.calendar.LocalDate;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A calendar that holds the non-working days of another calendar as a bit set over days, so that checking a date is a single array lookup however
+ * expensive the underlying calendar is to query.
+ * <p>
+ * The bit set is built in blocks of {@value #BLOCK_SIZE} days, each the first time a date within it is checked, by querying the underlying calendar
+ * for every day of the block. The non-working days are therefore a snapshot: changes to the holidays of the underlying calendar after a block has
+ * been built are not seen. Dates outside the range of the bit set, which covers modified Julian days 0 to {@code 2^17} (the years 1858 to 2217), are
+ * passed to the underlying calendar.
+ * <p>
+ * This class is thread-safe if the underlying calendar is. Compiled calendars are equal only if they are the same instance, so that schedules
+ * generated with one can be cached; see {@link com.opengamma.financial.schedule.ScheduleCache}.
+ */
+public class CompiledCalendar implements Calendar, Serializable {
+
+  /** Serialization version. */
+  private static final long serialVersionUID = 1L;
+  /** The number of days in each block of the bit set. */
+  public static final int BLOCK_SIZE = 512;
+  private static final int BLOCK_SHIFT = 9;
+  private static final int WORDS_PER_BLOCK = BLOCK_SIZE / 64;
+  private static final int N_BLOCKS = 256;
+
+  /**
+   * The calendar that has been compiled.
+   */
+  private final Calendar _underlying;
+  /**
+   * The blocks of the bit set, in which a set bit is a non-working day; null until built.
+   */
+  private final transient AtomicReferenceArray<long[]> _blocks;
+
+  /**
+   * Creates an instance.
+   * @param underlying  the calendar to compile, not null
+   */
+  public CompiledCalendar(final Calendar underlying) {
+    Validate.notNull(underlying, "underlying");
+    _underlying = underlying;
+    _blocks = new AtomicReferenceArray<long[]>(N_BLOCKS);
+  }
+
+  /**
+   * Obtains a compiled calendar.
+   * @param calendar  the calendar to compile, not null
+   * @return the calendar, if it is already compiled, otherwise a compiled calendar for it
+   */
+  public static CompiledCalendar of(final Calendar calendar) {
+    if (calendar instanceof CompiledCalendar) {
+      return (CompiledCalendar) calendar;
+    }
+    return new CompiledCalendar(calendar);
+  }
+
+  // -------------------------------------------------------------------------
+  /**
+   * Gets the calendar that has been compiled.
+   * @return the calendar, not null
+   */
+  public Calendar getUnderlying() {
+    return _underlying;
+  }
+
+  @Override
+  public boolean isWorkingDay(final LocalDate date) {
+    Validate.notNull(date, "date");
+    final long day = date.toModifiedJulianDays();
+    final long[] block = getBlock(date, day);
+    if (block == null) {
+      return _underlying.isWorkingDay(date);
+    }
+    final int offset = (int) (day & (BLOCK_SIZE - 1));
+    return (block[offset >>> 6] & (1L << offset)) == 0;
+  }
+
+  @Override
+  public String getConventionName() {
+    return _underlying.getConventionName();
+  }
+
+  /**
+   * Gets the first working day on or after a date.
+   * @param date  the date, not null
+   * @return the working day, not null
+   */
+  public LocalDate getFollowingWorkingDay(final LocalDate date) {
+    Validate.notNull(date, "date");
+    LocalDate result = date;
+    long day = date.toModifiedJulianDays();
+    while (true) {
+      final long[] block = getBlock(result, day);
+      if (block == null) {
+        while (!_underlying.isWorkingDay(result)) {
+          result = result.plusDays(1);
+        }
+        return result;
+      }
+      final int offset = (int) (day & (BLOCK_SIZE - 1));
+      long working = ~block[offset >>> 6] & (-1L << offset);
+      for (int word = offset >>> 6;;) {
+        if (working != 0) {
+          return result.plusDays((word << 6) + Long.numberOfTrailingZeros(working) - offset);
+        }
+        if (++word == WORDS_PER_BLOCK) {
+          break;
+        }
+        working = ~block[word];
+      }
+      // every remaining day of the block is a non-working day
+      result = result.plusDays(BLOCK_SIZE - offset);
+      day += BLOCK_SIZE - offset;
+    }
+  }
+
+  /**
+   * Gets the last working day on or before a date.
+   * @param date  the date, not null
+   * @return the working day, not null
+   */
+  public LocalDate getPrecedingWorkingDay(final LocalDate date) {
+    Validate.notNull(date, "date");
+    LocalDate result = date;
+    long day = date.toModifiedJulianDays();
+    while (true) {
+      final long[] block = getBlock(result, day);
+      if (block == null) {
+        while (!_underlying.isWorkingDay(result)) {
+          result = result.minusDays(1);
+        }
+        return result;
+      }
+      final int offset = (int) (day & (BLOCK_SIZE - 1));
+      long working = ~block[offset >>> 6] & (-1L >>> (63 - (offset & 63)));
+      for (int word = offset >>> 6;;) {
+        if (working != 0) {
+          return result.minusDays(offset - ((word << 6) + 63 - Long.numberOfLeadingZeros(working)));
+        }
+        if (--word < 0) {
+          break;
+        }
+        working = ~block[word];
+      }
+      // every earlier day of the block is a non-working day
+      result = result.minusDays(offset + 1);
+      day -= offset + 1;
+    }
+  }
+
+  // the block containing the day, building it if necessary; null if the day is outside the bit set
+  private long[] getBlock(final LocalDate date, final long day) {
+    if (day < 0 || day >= (long) N_BLOCKS << BLOCK_SHIFT) {
+      return null;
+    }
+    final int index = (int) (day >>> BLOCK_SHIFT);
+    long[] block = _blocks.get(index);
+    if (block == null) {
+      block = new long[WORDS_PER_BLOCK];
+      LocalDate blockDate = date.minusDays(day & (BLOCK_SIZE - 1));
+      for (int i = 0; i < BLOCK_SIZE; i++) {
+        if (!_underlying.isWorkingDay(blockDate)) {
+          block[i >>> 6] |= 1L << i;
+        }
+        blockDate = blockDate.plusDays(1);
+      }
+      // another thread may have built the same block, in which case either copy can be used
+      _blocks.set(index, block);
+    }
+    return block;
+  }
+
+  private Object readResolve() {
+    return new CompiledCalendar(_underlying);
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledCalendar[" + _underlying.getConventionName() + "]";
+  }
+
+}
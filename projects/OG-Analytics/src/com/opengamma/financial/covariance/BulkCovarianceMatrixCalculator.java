@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.covariance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.math.function.Function;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
+
+/**
+ * Calculates the covariance matrix of a large number of return series in one pass. Rather than calculating each element separately, as
+ * {@link CovarianceMatrixCalculator} does, the series are aligned once to the dates that they all share and copied into a single dense matrix
+ * {@latex.inline $X$}, with one row per series. Each row is centred on its (weighted) mean and scaled, and the covariance matrix is then
+ * {@latex.inline $XX^T$}, of which only the upper triangle is calculated. The product is split into square blocks of rows so that the rows being
+ * multiplied stay in cache; if an executor is supplied the blocks are shared between tasks.
+ * <p>
+ * The observations can be exponentially weighted: the weight of the observation {@latex.inline $k$} periods before the most recent one is proportional
+ * to {@latex.inline $\\lambda^k$}. With weights {@latex.inline $w_t$} normalised to sum to one the covariance is
+ * {@latex.ilb %preamble{\\usepackage{amsmath}}
+ * \\begin{align*}
+ * \\text{cov}(x, y) = \\frac{\\sum_t w_t (x_t - \\overline{x}_w)(y_t - \\overline{y}_w)}{1 - \\sum_t w_t^2}
+ * \\end{align*}}
+ * which, for {@latex.inline $\\lambda = 1$}, is the sample covariance calculated by
+ * {@link com.opengamma.math.statistics.descriptive.SampleCovarianceCalculator}.
+ * <p>
+ * The matrix can also be shrunk towards its diagonal: with a shrinkage intensity {@latex.inline $\\delta$} the off-diagonal elements are multiplied by
+ * {@latex.inline $1 - \\delta$}, which keeps the matrix well-conditioned when there are not many more observations than series.
+ */
+public class BulkCovarianceMatrixCalculator implements Function<DoubleTimeSeries<?>, DoubleMatrix2D> {
+  /** The number of rows in each block of the product */
+  public static final int BLOCK_SIZE = 64;
+  private final double _lambda;
+  private final double _shrinkage;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  /**
+   * Calculates the sample covariance matrix.
+   */
+  public BulkCovarianceMatrixCalculator() {
+    this(1, 0);
+  }
+
+  /**
+   * @param lambda The exponential weight, greater than zero and less than or equal to one; one gives equally-weighted observations
+   * @param shrinkage The shrinkage intensity, between zero and one; zero gives no shrinkage
+   */
+  public BulkCovarianceMatrixCalculator(final double lambda, final double shrinkage) {
+    Validate.isTrue(lambda > 0 && lambda <= 1, "Lambda must be greater than zero and less than or equal to one");
+    Validate.isTrue(shrinkage >= 0 && shrinkage <= 1, "Shrinkage intensity must be between zero and one");
+    _lambda = lambda;
+    _shrinkage = shrinkage;
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param lambda The exponential weight, greater than zero and less than or equal to one; one gives equally-weighted observations
+   * @param shrinkage The shrinkage intensity, between zero and one; zero gives no shrinkage
+   * @param executor The executor used to calculate the product, not null
+   * @param parallelism The number of tasks to split the product into; typically the number of threads available to the executor
+   */
+  public BulkCovarianceMatrixCalculator(final double lambda, final double shrinkage, final ExecutorService executor, final int parallelism) {
+    Validate.isTrue(lambda > 0 && lambda <= 1, "Lambda must be greater than zero and less than or equal to one");
+    Validate.isTrue(shrinkage >= 0 && shrinkage <= 1, "Shrinkage intensity must be between zero and one");
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _lambda = lambda;
+    _shrinkage = shrinkage;
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * Calculates the covariance matrix of return series using the dates that all of the series share. The ordering of the elements is determined by the
+   * order of the array.
+   * @param x The return series, not null or empty
+   * @return The covariance matrix
+   * @throws IllegalArgumentException If the series share fewer than two dates
+   */
+  @Override
+  public DoubleMatrix2D evaluate(final DoubleTimeSeries<?>... x) {
+    Validate.notNull(x, "x");
+    ArgumentChecker.notEmpty(x, "x");
+    Validate.noNullElements(x, "x");
+    return evaluate(align(x));
+  }
+
+  /**
+   * Calculates the covariance matrix of aligned return series.
+   * @param x The returns, not null or empty; one row per series, each with the same number of observations in date order
+   * @return The covariance matrix
+   * @throws IllegalArgumentException If there are fewer than two observations
+   */
+  public DoubleMatrix2D evaluate(final double[][] x) {
+    Validate.notNull(x, "x");
+    ArgumentChecker.notEmpty(x, "x");
+    Validate.noNullElements(x, "x");
+    final int nSeries = x.length;
+    final int nObservations = x[0].length;
+    Validate.isTrue(nObservations > 1, "Need at least two observations to calculate the covariance");
+    final double[] weights = _lambda == 1 ? null : getWeights(nObservations);
+    final double[] scale = getScale(weights, nObservations);
+    final double[] data = new double[nSeries * nObservations];
+    for (int i = 0, offset = 0; i < nSeries; i++, offset += nObservations) {
+      final double[] xi = x[i];
+      Validate.isTrue(xi.length == nObservations, "All series must have the same number of observations");
+      double mean = 0;
+      if (weights == null) {
+        for (int t = 0; t < nObservations; t++) {
+          mean += xi[t];
+        }
+        mean /= nObservations;
+      } else {
+        for (int t = 0; t < nObservations; t++) {
+          mean += weights[t] * xi[t];
+        }
+      }
+      for (int t = 0; t < nObservations; t++) {
+        data[offset + t] = (xi[t] - mean) * scale[t];
+      }
+    }
+    final double[][] covariance = new double[nSeries][nSeries];
+    final int nBlocks = (nSeries + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    if (_executor == null || _parallelism == 1 || nBlocks < 2) {
+      multiply(data, nSeries, nObservations, covariance, 0, 1);
+    } else {
+      final int nTasks = Math.min(_parallelism, nBlocks);
+      final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nTasks);
+      for (int k = 0; k < nTasks; k++) {
+        final int firstBlock = k;
+        tasks.add(new Callable<Object>() {
+          @Override
+          public Object call() {
+            multiply(data, nSeries, nObservations, covariance, firstBlock, nTasks);
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+    }
+    if (_shrinkage > 0) {
+      final double factor = 1 - _shrinkage;
+      for (int i = 0; i < nSeries; i++) {
+        final double[] row = covariance[i];
+        for (int j = 0; j < nSeries; j++) {
+          if (i != j) {
+            row[j] *= factor;
+          }
+        }
+      }
+    }
+    return new DoubleMatrix2D(covariance);
+  }
+
+  /**
+   * Converts a covariance matrix to a correlation matrix.
+   * @param covariance The covariance matrix, not null, square
+   * @return The correlation matrix
+   */
+  public static DoubleMatrix2D getCorrelationMatrix(final DoubleMatrix2D covariance) {
+    Validate.notNull(covariance, "covariance");
+    final int n = covariance.getNumberOfRows();
+    Validate.isTrue(covariance.getNumberOfColumns() == n, "Covariance matrix must be square");
+    final double[][] data = covariance.getData();
+    final double[] inverseVolatility = new double[n];
+    for (int i = 0; i < n; i++) {
+      inverseVolatility[i] = 1 / Math.sqrt(data[i][i]);
+    }
+    final double[][] correlation = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      final double[] row = data[i];
+      for (int j = 0; j < n; j++) {
+        correlation[i][j] = row[j] * inverseVolatility[i] * inverseVolatility[j];
+      }
+      correlation[i][i] = 1;
+    }
+    return new DoubleMatrix2D(correlation);
+  }
+
+  /**
+   * Copies the values of the series on the dates that they all share into an array with one row per series. The intersection is found by merging the
+   * sorted dates of each series in turn, so the cost is linear in the total number of data points.
+   * @param x The series, not null or empty
+   * @return The aligned values
+   * @throws IllegalArgumentException If the series share fewer than two dates
+   */
+  public static double[][] align(final DoubleTimeSeries<?>[] x) {
+    Validate.notNull(x, "x");
+    ArgumentChecker.notEmpty(x, "x");
+    Validate.noNullElements(x, "x");
+    final int nSeries = x.length;
+    final long[][] times = new long[nSeries][];
+    final double[][] values = new double[nSeries][];
+    for (int i = 0; i < nSeries; i++) {
+      final FastLongDoubleTimeSeries ts = x[i].toFastLongDoubleTimeSeries(DateTimeNumericEncoding.TIME_EPOCH_MILLIS);
+      times[i] = ts.timesArrayFast();
+      values[i] = ts.valuesArrayFast();
+    }
+    long[] common = times[0];
+    int nCommon = common.length;
+    for (int i = 1; i < nSeries; i++) {
+      final long[] other = times[i];
+      final long[] merged = new long[Math.min(nCommon, other.length)];
+      int n = 0;
+      for (int a = 0, b = 0; a < nCommon && b < other.length;) {
+        if (common[a] < other[b]) {
+          a++;
+        } else if (common[a] > other[b]) {
+          b++;
+        } else {
+          merged[n++] = common[a];
+          a++;
+          b++;
+        }
+      }
+      common = merged;
+      nCommon = n;
+    }
+    Validate.isTrue(nCommon > 1, "Time series must share at least two dates");
+    final double[][] result = new double[nSeries][nCommon];
+    for (int i = 0; i < nSeries; i++) {
+      final long[] seriesTimes = times[i];
+      final double[] seriesValues = values[i];
+      final double[] row = result[i];
+      for (int t = 0, k = 0; t < nCommon; t++) {
+        while (seriesTimes[k] != common[t]) {
+          k++;
+        }
+        row[t] = seriesValues[k];
+      }
+    }
+    return result;
+  }
+
+  public double getLambda() {
+    return _lambda;
+  }
+
+  public double getShrinkage() {
+    return _shrinkage;
+  }
+
+  // the normalised weights of the observations, the most recent last
+  private double[] getWeights(final int n) {
+    final double[] weights = new double[n];
+    double w = 1;
+    double sum = 0;
+    for (int t = n - 1; t >= 0; t--) {
+      weights[t] = w;
+      sum += w;
+      w *= _lambda;
+    }
+    for (int t = 0; t < n; t++) {
+      weights[t] /= sum;
+    }
+    return weights;
+  }
+
+  // the factor applied to each centred observation so that the product of two rows is their covariance
+  private static double[] getScale(final double[] weights, final int n) {
+    final double[] scale = new double[n];
+    if (weights == null) {
+      Arrays.fill(scale, Math.sqrt(1. / (n - 1)));
+      return scale;
+    }
+    double sumSq = 0;
+    for (int t = 0; t < n; t++) {
+      sumSq += weights[t] * weights[t];
+    }
+    final double denominator = 1 - sumSq;
+    for (int t = 0; t < n; t++) {
+      scale[t] = Math.sqrt(weights[t] / denominator);
+    }
+    return scale;
+  }
+
+  // calculates the blocks firstBlock, firstBlock + stride, ... of rows of the upper triangle and copies them to the lower triangle. Striding rather
+  // than taking contiguous bands balances the work, as the first rows of the triangle are the longest.
+  private static void multiply(final double[] data, final int nSeries, final int nObservations, final double[][] result, final int firstBlock,
+      final int stride) {
+    final int nBlocks = (nSeries + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    for (int bi = firstBlock; bi < nBlocks; bi += stride) {
+      final int iStart = bi * BLOCK_SIZE;
+      final int iEnd = Math.min(iStart + BLOCK_SIZE, nSeries);
+      for (int bj = bi; bj < nBlocks; bj++) {
+        final int jStart = bj * BLOCK_SIZE;
+        final int jEnd = Math.min(jStart + BLOCK_SIZE, nSeries);
+        for (int i = iStart; i < iEnd; i++) {
+          final int iOffset = i * nObservations;
+          final double[] row = result[i];
+          int j = Math.max(i, jStart);
+          // four columns at a time, so that each element of row i is loaded once for four products
+          for (; j + 3 < jEnd; j += 4) {
+            final int j0 = j * nObservations;
+            final int j1 = j0 + nObservations;
+            final int j2 = j1 + nObservations;
+            final int j3 = j2 + nObservations;
+            double sum0 = 0;
+            double sum1 = 0;
+            double sum2 = 0;
+            double sum3 = 0;
+            for (int t = 0; t < nObservations; t++) {
+              final double xi = data[iOffset + t];
+              sum0 += xi * data[j0 + t];
+              sum1 += xi * data[j1 + t];
+              sum2 += xi * data[j2 + t];
+              sum3 += xi * data[j3 + t];
+            }
+            row[j] = sum0;
+            row[j + 1] = sum1;
+            row[j + 2] = sum2;
+            row[j + 3] = sum3;
+            result[j][i] = sum0;
+            result[j + 1][i] = sum1;
+            result[j + 2][i] = sum2;
+            result[j + 3][i] = sum3;
+          }
+          for (; j < jEnd; j++) {
+            final int jOffset = j * nObservations;
+            double sum = 0;
+            for (int t = 0; t < nObservations; t++) {
+              sum += data[iOffset + t] * data[jOffset + t];
+            }
+            row[j] = sum;
+            result[j][i] = sum;
+          }
+        }
+      }
+    }
+  }
+
+  private void invokeAll(final List<Callable<Object>> tasks) {
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while calculating covariance matrix", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Calculating covariance matrix failed", cause);
+    }
+  }
+
+}
@@ -13,7 +13,7 @@ import org.apache.commons.lang.Validate;
 import com.opengamma.financial.convention.daycount.DayCount;
 import com.opengamma.financial.instrument.index.CMSIndex;
 import com.opengamma.financial.instrument.payment.CouponCMSDefinition;
-import com.opengamma.financial.schedule.ScheduleCalculator;
+import com.opengamma.financial.schedule.ScheduleCache;
 
 /**
  * A wrapper class for a AnnuityDefinition containing CMS coupon Definition.
@@ -47,8 +47,7 @@ public class AnnuityCouponCMSDefinition extends AnnuityDefinition<CouponCMSDefin
     Validate.notNull(index, "index");
     Validate.isTrue(notional > 0, "notional <= 0");
     Validate.notNull(paymentPeriod, "Payment period");
-    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCalculator.getUnadjustedDateSchedule(settlementDate, maturityDate, paymentPeriod);
-    final ZonedDateTime[] paymentDates = ScheduleCalculator.getAdjustedDateSchedule(paymentDatesUnadjusted, index.getIborIndex().getBusinessDayConvention(), index.getIborIndex().getCalendar());
+    final ZonedDateTime[] paymentDates = ScheduleCache.getInstance().getAdjustedDateSchedule(settlementDate, maturityDate, paymentPeriod, index.getIborIndex().getBusinessDayConvention(), index.getIborIndex().getCalendar());
     final double sign = isPayer ? -1.0 : 1.0;
     final CouponCMSDefinition[] coupons = new CouponCMSDefinition[paymentDates.length];
     coupons[0] = CouponCMSDefinition.from(paymentDates[0], settlementDate, paymentDates[0], dayCount.getDayCountFraction(settlementDate, paymentDates[0]), sign * notional, index);
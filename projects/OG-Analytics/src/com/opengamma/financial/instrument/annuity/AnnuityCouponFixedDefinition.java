@@ -22,6 +22,7 @@ import com.opengamma.financial.convention.frequency.Frequency;
 import com.opengamma.financial.instrument.payment.CouponFixedDefinition;
 import com.opengamma.financial.interestrate.annuity.definition.AnnuityCouponFixed;
 import com.opengamma.financial.interestrate.payments.CouponFixed;
+import com.opengamma.financial.schedule.ScheduleCache;
 import com.opengamma.financial.schedule.ScheduleCalculator;
 import com.opengamma.util.money.Currency;
 
@@ -100,8 +101,7 @@ public class AnnuityCouponFixedDefinition extends AnnuityDefinition<CouponFixedD
     Validate.notNull(dayCount, "day count");
     Validate.notNull(businessDay, "business day convention");
     final double sign = isPayer ? -1.0 : 1.0;
-    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCalculator.getUnadjustedDateSchedule(settlementDate, maturityDate, frequency);
-    final ZonedDateTime[] paymentDates = ScheduleCalculator.getAdjustedDateSchedule(paymentDatesUnadjusted, businessDay, calendar);
+    final ZonedDateTime[] paymentDates = ScheduleCache.getInstance().getAdjustedDateSchedule(settlementDate, maturityDate, frequency, businessDay, calendar);
     final CouponFixedDefinition[] coupons = new CouponFixedDefinition[paymentDates.length];
     //First coupon uses settlement date
     coupons[0] = new CouponFixedDefinition(currency, paymentDates[0], settlementDate, paymentDates[0], dayCount.getDayCountFraction(settlementDate, paymentDates[0]), sign * notional, fixedRate);
@@ -139,8 +139,8 @@ public class AnnuityCouponFixedDefinition extends AnnuityDefinition<CouponFixedD
     Validate.notNull(businessDay, "business day convention");
     Validate.isTrue(!(dayCount instanceof ActualActualICMA) | !(dayCount instanceof ActualActualICMANormal), "Coupon per year required for Actua lActual ICMA");
     final double sign = isPayer ? -1.0 : 1.0;
-    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCalculator.getUnadjustedDateSchedule(settlementDate, maturityDate, period);
-    final ZonedDateTime[] paymentDates = ScheduleCalculator.getAdjustedDateSchedule(paymentDatesUnadjusted, businessDay, calendar);
+    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCache.getInstance().getUnadjustedDateSchedule(settlementDate, maturityDate, period);
+    final ZonedDateTime[] paymentDates = ScheduleCache.getInstance().getAdjustedDateSchedule(settlementDate, maturityDate, period, businessDay, calendar);
     final CouponFixedDefinition[] coupons = new CouponFixedDefinition[paymentDates.length];
     //First coupon uses settlement date
     coupons[0] = new CouponFixedDefinition(currency, paymentDates[0], settlementDate, paymentDatesUnadjusted[0], dayCount.getDayCountFraction(settlementDate, paymentDates[0]), sign * notional,
@@ -181,8 +181,8 @@ public class AnnuityCouponFixedDefinition extends AnnuityDefinition<CouponFixedD
     Validate.notNull(dayCount, "day count");
     Validate.notNull(businessDay, "business day convention");
     final double sign = isPayer ? -1.0 : 1.0;
-    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCalculator.getUnadjustedDateSchedule(settlementDate, maturityDate, period);
-    final ZonedDateTime[] paymentDates = ScheduleCalculator.getAdjustedDateSchedule(paymentDatesUnadjusted, businessDay, calendar);
+    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCache.getInstance().getUnadjustedDateSchedule(settlementDate, maturityDate, period);
+    final ZonedDateTime[] paymentDates = ScheduleCache.getInstance().getAdjustedDateSchedule(settlementDate, maturityDate, period, businessDay, calendar);
     final CouponFixedDefinition[] coupons = new CouponFixedDefinition[paymentDates.length];
     //First coupon uses settlement date
     coupons[0] = new CouponFixedDefinition(currency, paymentDates[0], settlementDate, paymentDatesUnadjusted[0], dayCount.getAccruedInterest(settlementDate, paymentDates[0], paymentDates[0], 1.0,
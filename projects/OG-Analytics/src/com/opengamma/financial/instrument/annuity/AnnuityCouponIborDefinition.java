@@ -18,6 +18,7 @@ import com.opengamma.financial.instrument.payment.CouponFixedDefinition;
 import com.opengamma.financial.instrument.payment.CouponIborDefinition;
 import com.opengamma.financial.interestrate.annuity.definition.GenericAnnuity;
 import com.opengamma.financial.interestrate.payments.Coupon;
+import com.opengamma.financial.schedule.ScheduleCache;
 import com.opengamma.financial.schedule.ScheduleCalculator;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
 
@@ -68,8 +69,7 @@ public class AnnuityCouponIborDefinition extends AnnuityDefinition<CouponIborDef
     Validate.notNull(maturityDate, "maturity date");
     Validate.notNull(index, "index");
     Validate.isTrue(notional > 0, "notional <= 0");
-    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCalculator.getUnadjustedDateSchedule(settlementDate, maturityDate, index.getTenor());
-    final ZonedDateTime[] paymentDates = ScheduleCalculator.getAdjustedDateSchedule(paymentDatesUnadjusted, index.getBusinessDayConvention(), index.getCalendar());
+    final ZonedDateTime[] paymentDates = ScheduleCache.getInstance().getAdjustedDateSchedule(settlementDate, maturityDate, index.getTenor(), index.getBusinessDayConvention(), index.getCalendar());
     final double sign = isPayer ? -1.0 : 1.0;
     final CouponIborDefinition[] coupons = new CouponIborDefinition[paymentDates.length];
     //First coupon uses settlement date
@@ -101,8 +101,8 @@ public class AnnuityCouponIborDefinition extends AnnuityDefinition<CouponIborDef
     Validate.notNull(maturityDate, "maturity date");
     Validate.notNull(index, "index");
     Validate.isTrue(notional > 0, "notional <= 0");
-    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCalculator.getUnadjustedDateSchedule(settlementDate, maturityDate, index.getTenor());
-    final ZonedDateTime[] paymentDates = ScheduleCalculator.getAdjustedDateSchedule(paymentDatesUnadjusted, index.getBusinessDayConvention(), index.getCalendar());
+    final ZonedDateTime[] paymentDatesUnadjusted = ScheduleCache.getInstance().getUnadjustedDateSchedule(settlementDate, maturityDate, index.getTenor());
+    final ZonedDateTime[] paymentDates = ScheduleCache.getInstance().getAdjustedDateSchedule(settlementDate, maturityDate, index.getTenor(), index.getBusinessDayConvention(), index.getCalendar());
     final double sign = isPayer ? -1.0 : 1.0;
     final CouponIborDefinition[] coupons = new CouponIborDefinition[paymentDates.length];
     //First coupon uses settlement date
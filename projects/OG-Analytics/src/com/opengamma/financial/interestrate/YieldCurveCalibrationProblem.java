@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.function.Function1D;
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * A set of yield curves to be solved for together by {@link YieldCurveCalibrator}: the functions whose root are the node values of the curves
+ * (typically a {@link MultipleYieldCurveFinderFunction} and {@link MultipleYieldCurveFinderJacobian}), the market quotes of the instruments and a
+ * guess of the node values to use when there is no previous solution.
+ */
+public class YieldCurveCalibrationProblem {
+  private final String _name;
+  private final Function1D<DoubleMatrix1D, DoubleMatrix1D> _function;
+  private final Function1D<DoubleMatrix1D, DoubleMatrix2D> _jacobianFunction;
+  private final double[] _marketQuotes;
+  private final double[] _initialGuess;
+  private final double _residualTolerance;
+
+  /**
+   * @param name The name of the curves, identifying the previous solution between calibrations, not null
+   * @param function The function of the node values to be solved for, not null
+   * @param jacobianFunction The Jacobian of the function, not null
+   * @param marketQuotes The market quotes the function depends on, compared with those of the previous solution, not null
+   * @param initialGuess The node values to start from if there is no previous solution, not null or empty
+   * @param residualTolerance The largest norm of the function at which a previous solution is used without solving, not negative
+   */
+  public YieldCurveCalibrationProblem(final String name, final Function1D<DoubleMatrix1D, DoubleMatrix1D> function,
+      final Function1D<DoubleMatrix1D, DoubleMatrix2D> jacobianFunction, final double[] marketQuotes, final double[] initialGuess, final double residualTolerance) {
+    Validate.notNull(name, "name");
+    Validate.notNull(function, "function");
+    Validate.notNull(jacobianFunction, "Jacobian function");
+    Validate.notNull(marketQuotes, "market quotes");
+    Validate.notNull(initialGuess, "initial guess");
+    Validate.isTrue(initialGuess.length > 0, "initial guess must not be empty");
+    Validate.isTrue(residualTolerance >= 0, "residual tolerance must be non-negative");
+    _name = name;
+    _function = function;
+    _jacobianFunction = jacobianFunction;
+    _marketQuotes = marketQuotes;
+    _initialGuess = initialGuess;
+    _residualTolerance = residualTolerance;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public Function1D<DoubleMatrix1D, DoubleMatrix1D> getFunction() {
+    return _function;
+  }
+
+  public Function1D<DoubleMatrix1D, DoubleMatrix2D> getJacobianFunction() {
+    return _jacobianFunction;
+  }
+
+  public double[] getMarketQuotes() {
+    return _marketQuotes;
+  }
+
+  public double[] getInitialGuess() {
+    return _initialGuess;
+  }
+
+  public double getResidualTolerance() {
+    return _residualTolerance;
+  }
+
+}
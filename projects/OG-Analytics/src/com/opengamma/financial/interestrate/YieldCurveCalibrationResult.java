@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The node values found by {@link YieldCurveCalibrator} for a {@link YieldCurveCalibrationProblem}, with how they were found.
+ */
+public class YieldCurveCalibrationResult {
+  private final String _name;
+  private final double[] _nodeValues;
+  private final boolean _warmStarted;
+  private final boolean _reused;
+  private final int _iterations;
+  private final int _jacobianCalculations;
+  private final long _solveTimeNanos;
+
+  /**
+   * @param name The name of the curves, not null
+   * @param nodeValues The node values, not null
+   * @param warmStarted True if the root finder started from the previous solution
+   * @param reused True if the previous solution was used without solving
+   * @param iterations The number of steps taken by the root finder, not negative
+   * @param jacobianCalculations The number of times the Jacobian was calculated rather than updated, not negative
+   * @param solveTimeNanos The time taken, in nanoseconds
+   */
+  public YieldCurveCalibrationResult(final String name, final double[] nodeValues, final boolean warmStarted, final boolean reused, final int iterations,
+      final int jacobianCalculations, final long solveTimeNanos) {
+    Validate.notNull(name, "name");
+    Validate.notNull(nodeValues, "node values");
+    Validate.isTrue(iterations >= 0, "iterations must be non-negative");
+    Validate.isTrue(jacobianCalculations >= 0, "Jacobian calculations must be non-negative");
+    _name = name;
+    _nodeValues = nodeValues;
+    _warmStarted = warmStarted;
+    _reused = reused;
+    _iterations = iterations;
+    _jacobianCalculations = jacobianCalculations;
+    _solveTimeNanos = solveTimeNanos;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public double[] getNodeValues() {
+    return _nodeValues;
+  }
+
+  public boolean isWarmStarted() {
+    return _warmStarted;
+  }
+
+  public boolean isReused() {
+    return _reused;
+  }
+
+  public int getIterations() {
+    return _iterations;
+  }
+
+  public int getJacobianCalculations() {
+    return _jacobianCalculations;
+  }
+
+  public long getSolveTimeNanos() {
+    return _solveTimeNanos;
+  }
+
+}
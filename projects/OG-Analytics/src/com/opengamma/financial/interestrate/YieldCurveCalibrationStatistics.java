@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate;
+
+/**
+ * Running totals of the calibrations of one set of curves by a {@link YieldCurveCalibrator}. This class is thread-safe.
+ */
+public class YieldCurveCalibrationStatistics {
+  private long _calibrations;
+  private long _reused;
+  private long _warmStarts;
+  private long _iterations;
+  private long _jacobianCalculations;
+  private long _solveTimeNanos;
+  private int _lastIterations;
+  private long _lastSolveTimeNanos;
+
+  /**
+   * Adds a calibration to the totals.
+   * @param result The calibration, not null
+   */
+  public synchronized void record(final YieldCurveCalibrationResult result) {
+    _calibrations++;
+    if (result.isReused()) {
+      _reused++;
+    }
+    if (result.isWarmStarted()) {
+      _warmStarts++;
+    }
+    _iterations += result.getIterations();
+    _jacobianCalculations += result.getJacobianCalculations();
+    _solveTimeNanos += result.getSolveTimeNanos();
+    _lastIterations = result.getIterations();
+    _lastSolveTimeNanos = result.getSolveTimeNanos();
+  }
+
+  public synchronized long getCalibrations() {
+    return _calibrations;
+  }
+
+  /**
+   * @return The number of calibrations that used the previous solution without solving
+   */
+  public synchronized long getReused() {
+    return _reused;
+  }
+
+  /**
+   * @return The number of calibrations in which the root finder started from the previous solution
+   */
+  public synchronized long getWarmStarts() {
+    return _warmStarts;
+  }
+
+  public synchronized long getIterations() {
+    return _iterations;
+  }
+
+  public synchronized long getJacobianCalculations() {
+    return _jacobianCalculations;
+  }
+
+  public synchronized long getSolveTimeNanos() {
+    return _solveTimeNanos;
+  }
+
+  public synchronized int getLastIterations() {
+    return _lastIterations;
+  }
+
+  public synchronized long getLastSolveTimeNanos() {
+    return _lastSolveTimeNanos;
+  }
+
+  /**
+   * @return The mean number of root finder steps per calibration, zero if there have been none
+   */
+  public synchronized double getMeanIterations() {
+    return _calibrations == 0 ? 0 : (double) _iterations / _calibrations;
+  }
+
+  /**
+   * @return The mean time per calibration in nanoseconds, zero if there have been none
+   */
+  public synchronized double getMeanSolveTimeNanos() {
+    return _calibrations == 0 ? 0 : (double) _solveTimeNanos / _calibrations;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "YieldCurveCalibrationStatistics[calibrations=" + _calibrations + ", reused=" + _reused + ", warmStarts=" + _warmStarts + ", iterations=" + _iterations
+        + ", jacobianCalculations=" + _jacobianCalculations + ", solveTimeNanos=" + _solveTimeNanos + "]";
+  }
+
+}
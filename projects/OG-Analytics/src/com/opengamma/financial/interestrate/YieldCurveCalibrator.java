@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.math.rootfinding.newton.NewtonVectorRootFinder;
+import com.opengamma.math.rootfinding.newton.NewtonVectorRootFinderResult;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Solves for the node values of sets of yield curves repeatedly, as their market quotes change, using each solution to speed up the next calibration
+ * of the same curves:
+ * <ul>
+ * <li>if no market quote has moved by more than the quote tolerance, and the previous node values still solve the problem to within its residual
+ * tolerance, they are used without solving;
+ * <li>otherwise the root finder starts from the previous node values and the final Jacobian estimate of the previous solve (updated from step to
+ * step by the Broyden or Sherman-Morrison formula of the root finder) rather than the initial guess and a freshly calculated Jacobian. If that fails
+ * the problem is solved again from the initial guess.
+ * </ul>
+ * Sets of curves that do not depend on each other can be calibrated together, in parallel if an executor is supplied. Per-curve counts of the root
+ * finder steps and the time taken are kept; see {@link #getStatistics()}.
+ * <p>
+ * This class is thread-safe, but sets of curves with the same name should not be calibrated concurrently.
+ */
+public class YieldCurveCalibrator {
+  private static final Logger s_logger = LoggerFactory.getLogger(YieldCurveCalibrator.class);
+  private final double _quoteTolerance;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+  private final ConcurrentMap<String, CalibrationState> _states = new ConcurrentHashMap<String, CalibrationState>();
+  private final ConcurrentMap<String, YieldCurveCalibrationStatistics> _statistics = new ConcurrentHashMap<String, YieldCurveCalibrationStatistics>();
+
+  /**
+   * Calibrates in the calling thread.
+   * @param quoteTolerance The largest change in any market quote for which the previous solution may be used without solving, not negative
+   */
+  public YieldCurveCalibrator(final double quoteTolerance) {
+    ArgumentChecker.notNegative(quoteTolerance, "quote tolerance");
+    _quoteTolerance = quoteTolerance;
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param quoteTolerance The largest change in any market quote for which the previous solution may be used without solving, not negative
+   * @param executor The executor used to calibrate independent sets of curves, not null
+   * @param parallelism The number of tasks to split the sets of curves into; typically the number of threads available to the executor
+   */
+  public YieldCurveCalibrator(final double quoteTolerance, final ExecutorService executor, final int parallelism) {
+    ArgumentChecker.notNegative(quoteTolerance, "quote tolerance");
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _quoteTolerance = quoteTolerance;
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * Calibrates a set of curves.
+   * @param problem The curves, not null
+   * @param rootFinder The root finder, not null
+   * @return The node values, not null
+   */
+  public YieldCurveCalibrationResult calibrate(final YieldCurveCalibrationProblem problem, final NewtonVectorRootFinder rootFinder) {
+    Validate.notNull(problem, "problem");
+    Validate.notNull(rootFinder, "root finder");
+    final long start = System.nanoTime();
+    final String name = problem.getName();
+    final int n = problem.getInitialGuess().length;
+    final CalibrationState previous = _states.get(name);
+    YieldCurveCalibrationResult result = null;
+    NewtonVectorRootFinderResult solution = null;
+    if (previous != null && previous.isCompatible(problem, rootFinder)) {
+      final DoubleMatrix1D previousNodeValues = new DoubleMatrix1D(previous.getNodeValues());
+      if (previous.isWithinTolerance(problem.getMarketQuotes(), _quoteTolerance) && isSolution(problem, previousNodeValues)) {
+        result = new YieldCurveCalibrationResult(name, previous.getNodeValues().clone(), true, true, 0, 0, System.nanoTime() - start);
+      } else {
+        try {
+          solution = rootFinder.getRootResult(problem.getFunction(), problem.getJacobianFunction(), previousNodeValues, previous.getMatrix());
+        } catch (final RuntimeException e) {
+          s_logger.debug("Could not calibrate {} from the previous solution; starting from the initial guess. Error was: {}", name, e.getMessage());
+        }
+        if (solution != null) {
+          result = new YieldCurveCalibrationResult(name, solution.getRoot().getData().clone(), true, false, solution.getIterations(),
+              solution.getJacobianCalculations(), System.nanoTime() - start);
+        }
+      }
+    }
+    if (result == null) {
+      solution = rootFinder.getRootResult(problem.getFunction(), problem.getJacobianFunction(), new DoubleMatrix1D(problem.getInitialGuess()), null);
+      result = new YieldCurveCalibrationResult(name, solution.getRoot().getData().clone(), false, false, solution.getIterations(),
+          solution.getJacobianCalculations(), System.nanoTime() - start);
+    }
+    if (solution != null) {
+      _states.put(name, new CalibrationState(problem.getMarketQuotes().clone(), result.getNodeValues().clone(), solution.getMatrix(), rootFinder.getClass()));
+    }
+    getOrCreateStatistics(name).record(result);
+    if (s_logger.isDebugEnabled()) {
+      s_logger.debug("Calibrated {} with {} nodes: reused={}, warmStarted={}, iterations={}, time={}us", new Object[] {name, n, result.isReused(),
+          result.isWarmStarted(), result.getIterations(), result.getSolveTimeNanos() / 1000});
+    }
+    return result;
+  }
+
+  /**
+   * Calibrates sets of curves that do not depend on each other, in parallel if this calibrator has an executor.
+   * @param problems The sets of curves, with distinct names, not null
+   * @param rootFinder The root finder, which must be thread-safe, not null
+   * @return The node values of each set of curves, in the order of the problems, not null
+   */
+  public List<YieldCurveCalibrationResult> calibrate(final List<YieldCurveCalibrationProblem> problems, final NewtonVectorRootFinder rootFinder) {
+    Validate.noNullElements(problems, "problems");
+    Validate.notNull(rootFinder, "root finder");
+    final Set<String> names = new HashSet<String>();
+    for (final YieldCurveCalibrationProblem problem : problems) {
+      Validate.isTrue(names.add(problem.getName()), "two problems named " + problem.getName());
+    }
+    final int nProblems = problems.size();
+    final YieldCurveCalibrationResult[] results = new YieldCurveCalibrationResult[nProblems];
+    if (_executor == null || _parallelism == 1 || nProblems < 2) {
+      calibrate(problems, rootFinder, results, 0, nProblems);
+    } else {
+      final int nTasks = Math.min(_parallelism, nProblems);
+      final int chunkSize = (nProblems + nTasks - 1) / nTasks;
+      final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nTasks);
+      for (int start = 0; start < nProblems; start += chunkSize) {
+        final int from = start;
+        final int to = Math.min(start + chunkSize, nProblems);
+        tasks.add(new Callable<Object>() {
+          @Override
+          public Object call() {
+            calibrate(problems, rootFinder, results, from, to);
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+    }
+    final List<YieldCurveCalibrationResult> list = new ArrayList<YieldCurveCalibrationResult>(nProblems);
+    Collections.addAll(list, results);
+    return list;
+  }
+
+  /**
+   * Forgets the previous solution of a set of curves, so that the next calibration starts from the initial guess.
+   * @param name The name of the curves, not null
+   */
+  public void reset(final String name) {
+    Validate.notNull(name, "name");
+    _states.remove(name);
+  }
+
+  /**
+   * Forgets the previous solutions and statistics of all curves.
+   */
+  public void clear() {
+    _states.clear();
+    _statistics.clear();
+  }
+
+  /**
+   * Gets the statistics of each set of curves calibrated.
+   * @return The statistics keyed by the name of the curves, not null
+   */
+  public Map<String, YieldCurveCalibrationStatistics> getStatistics() {
+    return Collections.unmodifiableMap(_statistics);
+  }
+
+  private void calibrate(final List<YieldCurveCalibrationProblem> problems, final NewtonVectorRootFinder rootFinder, final YieldCurveCalibrationResult[] results,
+      final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      results[i] = calibrate(problems.get(i), rootFinder);
+    }
+  }
+
+  private static boolean isSolution(final YieldCurveCalibrationProblem problem, final DoubleMatrix1D nodeValues) {
+    final double[] residuals = problem.getFunction().evaluate(nodeValues).getData();
+    double sum = 0;
+    for (final double residual : residuals) {
+      sum += residual * residual;
+    }
+    return Math.sqrt(sum) <= problem.getResidualTolerance();
+  }
+
+  private YieldCurveCalibrationStatistics getOrCreateStatistics(final String name) {
+    YieldCurveCalibrationStatistics statistics = _statistics.get(name);
+    if (statistics == null) {
+      statistics = new YieldCurveCalibrationStatistics();
+      final YieldCurveCalibrationStatistics existing = _statistics.putIfAbsent(name, statistics);
+      if (existing != null) {
+        statistics = existing;
+      }
+    }
+    return statistics;
+  }
+
+  private void invokeAll(final List<Callable<Object>> tasks) {
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while calibrating curves", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Calibrating curves failed", cause);
+    }
+  }
+
+  /**
+   * The market quotes, node values and final matrix estimate of the last solution of a set of curves.
+   */
+  private static final class CalibrationState {
+    private final double[] _marketQuotes;
+    private final double[] _nodeValues;
+    private final DoubleMatrix2D _matrix;
+    private final Class<?> _rootFinderType;
+
+    private CalibrationState(final double[] marketQuotes, final double[] nodeValues, final DoubleMatrix2D matrix, final Class<?> rootFinderType) {
+      _marketQuotes = marketQuotes;
+      _nodeValues = nodeValues;
+      _matrix = matrix;
+      _rootFinderType = rootFinderType;
+    }
+
+    private double[] getNodeValues() {
+      return _nodeValues;
+    }
+
+    private DoubleMatrix2D getMatrix() {
+      return _matrix;
+    }
+
+    // the matrix estimate is only meaningful to the same type of root finder, for the same number of nodes
+    private boolean isCompatible(final YieldCurveCalibrationProblem problem, final NewtonVectorRootFinder rootFinder) {
+      return _rootFinderType == rootFinder.getClass() && _nodeValues.length == problem.getInitialGuess().length;
+    }
+
+    private boolean isWithinTolerance(final double[] marketQuotes, final double tolerance) {
+      if (marketQuotes.length != _marketQuotes.length) {
+        return false;
+      }
+      for (int i = 0; i < marketQuotes.length; i++) {
+        if (!(Math.abs(marketQuotes[i] - _marketQuotes[i]) <= tolerance)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate.portfolio;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A set of interest rate derivatives that has been compiled into flat arrays of cash-flows, ready to be discounted in bulk by {@link CashFlowPortfolioCalculator}.
+ * <p>
+ * Every curve referenced by the portfolio is given an integer id (its index in {@link #getCurveNames()}) and, for each curve, the distinct times at which a discount
+ * factor is needed are held in a sorted array. The cash-flows themselves only refer to positions within those arrays, so that pricing the portfolio needs a single
+ * discount factor lookup per curve and distinct time, however many derivatives share that time.
+ * <p>
+ * Two kinds of cash-flow are held:
+ * <ul>
+ * <li> fixed flows, paying a known amount at a given time, discounted on a funding curve;
+ * <li> Ibor flows, paying notional * (forward + spread) * payment year fraction, where the forward is implied from the discount factors of a forward curve at the
+ * start and end of the fixing period.
+ * </ul>
+ * Instances are created by {@link CashFlowPortfolioCompiler}.
+ */
+public class CashFlowPortfolio {
+  private final int _nDerivatives;
+  private final String[] _curveNames;
+  private final double[][] _curveTimes;
+  // fixed flows
+  private final int[] _fixedDerivative;
+  private final int[] _fixedCurve;
+  private final int[] _fixedTimeIndex;
+  private final double[] _fixedAmount;
+  // Ibor flows
+  private final int[] _iborDerivative;
+  private final int[] _iborFundingCurve;
+  private final int[] _iborPaymentTimeIndex;
+  private final int[] _iborForwardCurve;
+  private final int[] _iborStartTimeIndex;
+  private final int[] _iborEndTimeIndex;
+  private final double[] _iborNotional;
+  private final double[] _iborPaymentYearFraction;
+  private final double[] _iborFixingYearFraction;
+  private final double[] _iborSpread;
+
+  //CSOFF
+  CashFlowPortfolio(final int nDerivatives, final String[] curveNames, final double[][] curveTimes, final int[] fixedDerivative, final int[] fixedCurve, final int[] fixedTimeIndex,
+      final double[] fixedAmount, final int[] iborDerivative, final int[] iborFundingCurve, final int[] iborPaymentTimeIndex, final int[] iborForwardCurve, final int[] iborStartTimeIndex,
+      final int[] iborEndTimeIndex, final double[] iborNotional, final double[] iborPaymentYearFraction, final double[] iborFixingYearFraction, final double[] iborSpread) {
+    //CSON
+    Validate.notNull(curveNames, "curve names");
+    Validate.notNull(curveTimes, "curve times");
+    Validate.isTrue(curveNames.length == curveTimes.length, "must have one array of times per curve");
+    Validate.isTrue(fixedDerivative.length == fixedCurve.length && fixedDerivative.length == fixedTimeIndex.length && fixedDerivative.length == fixedAmount.length,
+        "fixed flow arrays must all be the same length");
+    final int nIbor = iborDerivative.length;
+    Validate.isTrue(nIbor == iborFundingCurve.length && nIbor == iborPaymentTimeIndex.length && nIbor == iborForwardCurve.length && nIbor == iborStartTimeIndex.length
+        && nIbor == iborEndTimeIndex.length && nIbor == iborNotional.length && nIbor == iborPaymentYearFraction.length && nIbor == iborFixingYearFraction.length
+        && nIbor == iborSpread.length, "Ibor flow arrays must all be the same length");
+    _nDerivatives = nDerivatives;
+    _curveNames = curveNames;
+    _curveTimes = curveTimes;
+    _fixedDerivative = fixedDerivative;
+    _fixedCurve = fixedCurve;
+    _fixedTimeIndex = fixedTimeIndex;
+    _fixedAmount = fixedAmount;
+    _iborDerivative = iborDerivative;
+    _iborFundingCurve = iborFundingCurve;
+    _iborPaymentTimeIndex = iborPaymentTimeIndex;
+    _iborForwardCurve = iborForwardCurve;
+    _iborStartTimeIndex = iborStartTimeIndex;
+    _iborEndTimeIndex = iborEndTimeIndex;
+    _iborNotional = iborNotional;
+    _iborPaymentYearFraction = iborPaymentYearFraction;
+    _iborFixingYearFraction = iborFixingYearFraction;
+    _iborSpread = iborSpread;
+  }
+
+  /**
+   * @return The number of derivatives that were compiled into this portfolio
+   */
+  public int getNumberOfDerivatives() {
+    return _nDerivatives;
+  }
+
+  /**
+   * @return The names of the curves referenced by the portfolio; the curve id of a cash-flow is its index in this array
+   */
+  public String[] getCurveNames() {
+    return _curveNames;
+  }
+
+  /**
+   * @return The number of fixed cash-flows
+   */
+  public int getNumberOfFixedFlows() {
+    return _fixedDerivative.length;
+  }
+
+  /**
+   * @return The number of Ibor cash-flows
+   */
+  public int getNumberOfIborFlows() {
+    return _iborDerivative.length;
+  }
+
+  /**
+   * @param curveId The curve id
+   * @return The sorted, distinct times at which discount factors from that curve are required
+   */
+  public double[] getCurveTimes(final int curveId) {
+    return _curveTimes[curveId];
+  }
+
+  int[] getFixedDerivative() {
+    return _fixedDerivative;
+  }
+
+  int[] getFixedCurve() {
+    return _fixedCurve;
+  }
+
+  int[] getFixedTimeIndex() {
+    return _fixedTimeIndex;
+  }
+
+  double[] getFixedAmount() {
+    return _fixedAmount;
+  }
+
+  int[] getIborDerivative() {
+    return _iborDerivative;
+  }
+
+  int[] getIborFundingCurve() {
+    return _iborFundingCurve;
+  }
+
+  int[] getIborPaymentTimeIndex() {
+    return _iborPaymentTimeIndex;
+  }
+
+  int[] getIborForwardCurve() {
+    return _iborForwardCurve;
+  }
+
+  int[] getIborStartTimeIndex() {
+    return _iborStartTimeIndex;
+  }
+
+  int[] getIborEndTimeIndex() {
+    return _iborEndTimeIndex;
+  }
+
+  double[] getIborNotional() {
+    return _iborNotional;
+  }
+
+  double[] getIborPaymentYearFraction() {
+    return _iborPaymentYearFraction;
+  }
+
+  double[] getIborFixingYearFraction() {
+    return _iborFixingYearFraction;
+  }
+
+  double[] getIborSpread() {
+    return _iborSpread;
+  }
+
+}
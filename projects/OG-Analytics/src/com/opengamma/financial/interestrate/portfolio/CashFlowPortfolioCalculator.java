@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate.portfolio;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.financial.model.interestrate.curve.YieldAndDiscountCurve;
+
+/**
+ * Calculates present values and PV01s for every derivative in a {@link CashFlowPortfolio}. The discount factors needed by the whole portfolio are looked up once,
+ * curve by curve, and the cash-flows are then valued in tight loops over primitive arrays. The results agree with
+ * {@link com.opengamma.financial.interestrate.PresentValueCalculator} and {@link com.opengamma.financial.interestrate.PV01Calculator} to rounding.
+ */
+public final class CashFlowPortfolioCalculator {
+  private static final CashFlowPortfolioCalculator s_instance = new CashFlowPortfolioCalculator();
+
+  public static CashFlowPortfolioCalculator getInstance() {
+    return s_instance;
+  }
+
+  private CashFlowPortfolioCalculator() {
+  }
+
+  /**
+   * Looks up the discount factors at every time required by the portfolio.
+   * @param portfolio The portfolio, not null
+   * @param curves The curves, not null. Must contain every curve named in the portfolio
+   * @return The discount factors, indexed by curve id then by time index
+   */
+  public double[][] getDiscountFactors(final CashFlowPortfolio portfolio, final YieldCurveBundle curves) {
+    Validate.notNull(portfolio, "portfolio");
+    Validate.notNull(curves, "curves");
+    final String[] curveNames = portfolio.getCurveNames();
+    final double[][] df = new double[curveNames.length][];
+    for (int i = 0; i < curveNames.length; i++) {
+      final YieldAndDiscountCurve curve = curves.getCurve(curveNames[i]);
+      final double[] times = portfolio.getCurveTimes(i);
+      final double[] curveDF = new double[times.length];
+      for (int j = 0; j < times.length; j++) {
+        curveDF[j] = curve.getDiscountFactor(times[j]);
+      }
+      df[i] = curveDF;
+    }
+    return df;
+  }
+
+  /**
+   * @param portfolio The portfolio, not null
+   * @param curves The curves, not null. Must contain every curve named in the portfolio
+   * @return The present value of each derivative in the portfolio
+   */
+  public double[] getPresentValues(final CashFlowPortfolio portfolio, final YieldCurveBundle curves) {
+    final double[][] df = getDiscountFactors(portfolio, curves);
+    final double[] pv = new double[portfolio.getNumberOfDerivatives()];
+    final int[] fixedDerivative = portfolio.getFixedDerivative();
+    final int[] fixedCurve = portfolio.getFixedCurve();
+    final int[] fixedTimeIndex = portfolio.getFixedTimeIndex();
+    final double[] fixedAmount = portfolio.getFixedAmount();
+    for (int i = 0; i < fixedDerivative.length; i++) {
+      pv[fixedDerivative[i]] += fixedAmount[i] * df[fixedCurve[i]][fixedTimeIndex[i]];
+    }
+    final int[] iborDerivative = portfolio.getIborDerivative();
+    final int[] iborFundingCurve = portfolio.getIborFundingCurve();
+    final int[] iborPaymentTimeIndex = portfolio.getIborPaymentTimeIndex();
+    final int[] iborForwardCurve = portfolio.getIborForwardCurve();
+    final int[] iborStartTimeIndex = portfolio.getIborStartTimeIndex();
+    final int[] iborEndTimeIndex = portfolio.getIborEndTimeIndex();
+    final double[] iborNotional = portfolio.getIborNotional();
+    final double[] iborPaymentYearFraction = portfolio.getIborPaymentYearFraction();
+    final double[] iborFixingYearFraction = portfolio.getIborFixingYearFraction();
+    final double[] iborSpread = portfolio.getIborSpread();
+    for (int i = 0; i < iborDerivative.length; i++) {
+      final double[] forwardDF = df[iborForwardCurve[i]];
+      final double forward = (forwardDF[iborStartTimeIndex[i]] / forwardDF[iborEndTimeIndex[i]] - 1) / iborFixingYearFraction[i];
+      pv[iborDerivative[i]] += iborNotional[i] * (forward + iborSpread[i]) * iborPaymentYearFraction[i] * df[iborFundingCurve[i]][iborPaymentTimeIndex[i]];
+    }
+    return pv;
+  }
+
+  /**
+   * Calculates the change in present value of each derivative due to a parallel move of each curve, scaled so that the move is 1bp.
+   * @param portfolio The portfolio, not null
+   * @param curves The curves, not null. Must contain every curve named in the portfolio
+   * @return The PV01s, indexed by derivative then by curve id. The entry is zero for curves to which a derivative is not sensitive
+   */
+  public double[][] getPV01s(final CashFlowPortfolio portfolio, final YieldCurveBundle curves) {
+    final double[][] df = getDiscountFactors(portfolio, curves);
+    final double[][] sensitivity = new double[portfolio.getNumberOfDerivatives()][portfolio.getCurveNames().length];
+    final int[] fixedDerivative = portfolio.getFixedDerivative();
+    final int[] fixedCurve = portfolio.getFixedCurve();
+    final int[] fixedTimeIndex = portfolio.getFixedTimeIndex();
+    final double[] fixedAmount = portfolio.getFixedAmount();
+    for (int i = 0; i < fixedDerivative.length; i++) {
+      final int curve = fixedCurve[i];
+      final double t = portfolio.getCurveTimes(curve)[fixedTimeIndex[i]];
+      sensitivity[fixedDerivative[i]][curve] -= t * fixedAmount[i] * df[curve][fixedTimeIndex[i]];
+    }
+    final int[] iborDerivative = portfolio.getIborDerivative();
+    final int[] iborFundingCurve = portfolio.getIborFundingCurve();
+    final int[] iborPaymentTimeIndex = portfolio.getIborPaymentTimeIndex();
+    final int[] iborForwardCurve = portfolio.getIborForwardCurve();
+    final int[] iborStartTimeIndex = portfolio.getIborStartTimeIndex();
+    final int[] iborEndTimeIndex = portfolio.getIborEndTimeIndex();
+    final double[] iborNotional = portfolio.getIborNotional();
+    final double[] iborPaymentYearFraction = portfolio.getIborPaymentYearFraction();
+    final double[] iborFixingYearFraction = portfolio.getIborFixingYearFraction();
+    final double[] iborSpread = portfolio.getIborSpread();
+    for (int i = 0; i < iborDerivative.length; i++) {
+      final int fundingCurve = iborFundingCurve[i];
+      final int forwardCurve = iborForwardCurve[i];
+      final double tPay = portfolio.getCurveTimes(fundingCurve)[iborPaymentTimeIndex[i]];
+      final double tStart = portfolio.getCurveTimes(forwardCurve)[iborStartTimeIndex[i]];
+      final double tEnd = portfolio.getCurveTimes(forwardCurve)[iborEndTimeIndex[i]];
+      final double dfPay = df[fundingCurve][iborPaymentTimeIndex[i]];
+      final double dfRatio = df[forwardCurve][iborStartTimeIndex[i]] / df[forwardCurve][iborEndTimeIndex[i]];
+      final double forward = (dfRatio - 1) / iborFixingYearFraction[i];
+      final double[] derivativeSensitivity = sensitivity[iborDerivative[i]];
+      derivativeSensitivity[fundingCurve] -= tPay * dfPay * iborNotional[i] * (forward + iborSpread[i]) * iborPaymentYearFraction[i];
+      derivativeSensitivity[forwardCurve] += (tEnd - tStart) * iborNotional[i] * dfPay * dfRatio * iborPaymentYearFraction[i] / iborFixingYearFraction[i];
+    }
+    for (final double[] derivativeSensitivity : sensitivity) {
+      for (int j = 0; j < derivativeSensitivity.length; j++) {
+        derivativeSensitivity[j] /= 10000.;
+      }
+    }
+    return sensitivity;
+  }
+
+}
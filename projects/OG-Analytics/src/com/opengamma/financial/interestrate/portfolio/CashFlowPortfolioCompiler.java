@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate.portfolio;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.interestrate.AbstractInterestRateDerivativeVisitor;
+import com.opengamma.financial.interestrate.InterestRateDerivative;
+import com.opengamma.financial.interestrate.annuity.definition.AnnuityCouponFixed;
+import com.opengamma.financial.interestrate.annuity.definition.AnnuityCouponIbor;
+import com.opengamma.financial.interestrate.annuity.definition.GenericAnnuity;
+import com.opengamma.financial.interestrate.bond.definition.Bond;
+import com.opengamma.financial.interestrate.cash.definition.Cash;
+import com.opengamma.financial.interestrate.payments.CouponFixed;
+import com.opengamma.financial.interestrate.payments.CouponIbor;
+import com.opengamma.financial.interestrate.payments.CouponIborFixed;
+import com.opengamma.financial.interestrate.payments.Payment;
+import com.opengamma.financial.interestrate.payments.PaymentFixed;
+import com.opengamma.financial.interestrate.swap.definition.FixedCouponSwap;
+import com.opengamma.financial.interestrate.swap.definition.FixedFloatSwap;
+import com.opengamma.financial.interestrate.swap.definition.Swap;
+import com.opengamma.financial.interestrate.swap.definition.TenorSwap;
+
+/**
+ * Compiles interest rate derivatives into a {@link CashFlowPortfolio}. The supported instruments are those that {@link com.opengamma.financial.interestrate.PresentValueCalculator}
+ * prices by pure discounting: fixed payments and coupons, Ibor coupons, cash, (fixed coupon) bonds, annuities and swaps of these. Any other instrument will cause an
+ * {@link UnsupportedOperationException}.
+ */
+public final class CashFlowPortfolioCompiler {
+  private static final CashFlowPortfolioCompiler s_instance = new CashFlowPortfolioCompiler();
+
+  public static CashFlowPortfolioCompiler getInstance() {
+    return s_instance;
+  }
+
+  private CashFlowPortfolioCompiler() {
+  }
+
+  /**
+   * Decomposes each derivative into its cash-flows.
+   * @param derivatives The derivatives, not null and no null elements
+   * @return The compiled portfolio; the i<sup>th</sup> result of any calculation on it corresponds to the i<sup>th</sup> derivative
+   */
+  public CashFlowPortfolio compile(final InterestRateDerivative[] derivatives) {
+    Validate.notNull(derivatives, "derivatives");
+    Validate.noNullElements(derivatives, "derivatives");
+    final Builder builder = new Builder();
+    for (int i = 0; i < derivatives.length; i++) {
+      derivatives[i].accept(builder, i);
+    }
+    return builder.build(derivatives.length);
+  }
+
+  /**
+   * Accumulates the cash-flows of each derivative visited; the data passed to the visitor is the index of the derivative in the portfolio.
+   */
+  private static final class Builder extends AbstractInterestRateDerivativeVisitor<Integer, Void> {
+    private final Map<String, Integer> _curveIds = new HashMap<String, Integer>();
+    private final List<String> _curveNames = new ArrayList<String>();
+    private final List<DoubleArrayList> _curveTimes = new ArrayList<DoubleArrayList>();
+
+    private final IntArrayList _fixedDerivative = new IntArrayList();
+    private final IntArrayList _fixedCurve = new IntArrayList();
+    private final DoubleArrayList _fixedTime = new DoubleArrayList();
+    private final DoubleArrayList _fixedAmount = new DoubleArrayList();
+
+    private final IntArrayList _iborDerivative = new IntArrayList();
+    private final IntArrayList _iborFundingCurve = new IntArrayList();
+    private final IntArrayList _iborForwardCurve = new IntArrayList();
+    private final DoubleArrayList _iborPaymentTime = new DoubleArrayList();
+    private final DoubleArrayList _iborStartTime = new DoubleArrayList();
+    private final DoubleArrayList _iborEndTime = new DoubleArrayList();
+    private final DoubleArrayList _iborNotional = new DoubleArrayList();
+    private final DoubleArrayList _iborPaymentYearFraction = new DoubleArrayList();
+    private final DoubleArrayList _iborFixingYearFraction = new DoubleArrayList();
+    private final DoubleArrayList _iborSpread = new DoubleArrayList();
+
+    private int getCurveId(final String curveName) {
+      Validate.notNull(curveName, "curve name");
+      Integer id = _curveIds.get(curveName);
+      if (id == null) {
+        id = _curveNames.size();
+        _curveIds.put(curveName, id);
+        _curveNames.add(curveName);
+        _curveTimes.add(new DoubleArrayList());
+      }
+      return id;
+    }
+
+    private void addFixedFlow(final int derivative, final String curveName, final double time, final double amount) {
+      final int curve = getCurveId(curveName);
+      _curveTimes.get(curve).add(time);
+      _fixedDerivative.add(derivative);
+      _fixedCurve.add(curve);
+      _fixedTime.add(time);
+      _fixedAmount.add(amount);
+    }
+
+    private void addIborFlow(final int derivative, final CouponIbor coupon) {
+      final int fundingCurve = getCurveId(coupon.getFundingCurveName());
+      final int forwardCurve = getCurveId(coupon.getForwardCurveName());
+      _curveTimes.get(fundingCurve).add(coupon.getPaymentTime());
+      _curveTimes.get(forwardCurve).add(coupon.getFixingPeriodStartTime());
+      _curveTimes.get(forwardCurve).add(coupon.getFixingPeriodEndTime());
+      _iborDerivative.add(derivative);
+      _iborFundingCurve.add(fundingCurve);
+      _iborForwardCurve.add(forwardCurve);
+      _iborPaymentTime.add(coupon.getPaymentTime());
+      _iborStartTime.add(coupon.getFixingPeriodStartTime());
+      _iborEndTime.add(coupon.getFixingPeriodEndTime());
+      _iborNotional.add(coupon.getNotional());
+      _iborPaymentYearFraction.add(coupon.getPaymentYearFraction());
+      _iborFixingYearFraction.add(coupon.getFixingYearFraction());
+      _iborSpread.add(coupon.getSpread());
+    }
+
+    CashFlowPortfolio build(final int nDerivatives) {
+      final int nCurves = _curveNames.size();
+      final double[][] curveTimes = new double[nCurves][];
+      for (int i = 0; i < nCurves; i++) {
+        curveTimes[i] = distinct(_curveTimes.get(i).toDoubleArray());
+      }
+      final int nFixed = _fixedDerivative.size();
+      final int[] fixedTimeIndex = new int[nFixed];
+      for (int i = 0; i < nFixed; i++) {
+        fixedTimeIndex[i] = Arrays.binarySearch(curveTimes[_fixedCurve.getInt(i)], _fixedTime.getDouble(i));
+      }
+      final int nIbor = _iborDerivative.size();
+      final int[] iborPaymentTimeIndex = new int[nIbor];
+      final int[] iborStartTimeIndex = new int[nIbor];
+      final int[] iborEndTimeIndex = new int[nIbor];
+      for (int i = 0; i < nIbor; i++) {
+        final double[] fundingTimes = curveTimes[_iborFundingCurve.getInt(i)];
+        final double[] forwardTimes = curveTimes[_iborForwardCurve.getInt(i)];
+        iborPaymentTimeIndex[i] = Arrays.binarySearch(fundingTimes, _iborPaymentTime.getDouble(i));
+        iborStartTimeIndex[i] = Arrays.binarySearch(forwardTimes, _iborStartTime.getDouble(i));
+        iborEndTimeIndex[i] = Arrays.binarySearch(forwardTimes, _iborEndTime.getDouble(i));
+      }
+      return new CashFlowPortfolio(nDerivatives, _curveNames.toArray(new String[nCurves]), curveTimes, _fixedDerivative.toIntArray(), _fixedCurve.toIntArray(), fixedTimeIndex,
+          _fixedAmount.toDoubleArray(), _iborDerivative.toIntArray(), _iborFundingCurve.toIntArray(), iborPaymentTimeIndex, _iborForwardCurve.toIntArray(), iborStartTimeIndex,
+          iborEndTimeIndex, _iborNotional.toDoubleArray(), _iborPaymentYearFraction.toDoubleArray(), _iborFixingYearFraction.toDoubleArray(), _iborSpread.toDoubleArray());
+    }
+
+    private static double[] distinct(final double[] times) {
+      if (times.length == 0) {
+        return times;
+      }
+      Arrays.sort(times);
+      int n = 1;
+      for (int i = 1; i < times.length; i++) {
+        if (Double.compare(times[i], times[n - 1]) != 0) {
+          times[n++] = times[i];
+        }
+      }
+      return Arrays.copyOf(times, n);
+    }
+
+    @Override
+    public Void visitCash(final Cash cash, final Integer derivative) {
+      final String curveName = cash.getYieldCurveName();
+      addFixedFlow(derivative, curveName, cash.getTradeTime(), -cash.getNotional());
+      addFixedFlow(derivative, curveName, cash.getMaturity(), cash.getNotional() * (1 + cash.getYearFraction() * cash.getRate()));
+      return null;
+    }
+
+    @Override
+    public Void visitBond(final Bond bond, final Integer derivative) {
+      return visitGenericAnnuity(bond.getAnnuity(), derivative);
+    }
+
+    @Override
+    public Void visitSwap(final Swap<?, ?> swap, final Integer derivative) {
+      visitGenericAnnuity(swap.getFirstLeg(), derivative);
+      visitGenericAnnuity(swap.getSecondLeg(), derivative);
+      return null;
+    }
+
+    @Override
+    public Void visitFixedCouponSwap(final FixedCouponSwap<?> swap, final Integer derivative) {
+      return visitSwap(swap, derivative);
+    }
+
+    @Override
+    public Void visitFixedFloatSwap(final FixedFloatSwap swap, final Integer derivative) {
+      return visitSwap(swap, derivative);
+    }
+
+    @Override
+    public Void visitTenorSwap(final TenorSwap<? extends Payment> swap, final Integer derivative) {
+      return visitSwap(swap, derivative);
+    }
+
+    @Override
+    public Void visitGenericAnnuity(final GenericAnnuity<? extends Payment> annuity, final Integer derivative) {
+      for (final Payment p : annuity.getPayments()) {
+        p.accept(this, derivative);
+      }
+      return null;
+    }
+
+    @Override
+    public Void visitFixedCouponAnnuity(final AnnuityCouponFixed annuity, final Integer derivative) {
+      return visitGenericAnnuity(annuity, derivative);
+    }
+
+    @Override
+    public Void visitForwardLiborAnnuity(final AnnuityCouponIbor annuity, final Integer derivative) {
+      return visitGenericAnnuity(annuity, derivative);
+    }
+
+    @Override
+    public Void visitFixedPayment(final PaymentFixed payment, final Integer derivative) {
+      addFixedFlow(derivative, payment.getFundingCurveName(), payment.getPaymentTime(), payment.getAmount());
+      return null;
+    }
+
+    @Override
+    public Void visitFixedCouponPayment(final CouponFixed payment, final Integer derivative) {
+      addFixedFlow(derivative, payment.getFundingCurveName(), payment.getPaymentTime(), payment.getAmount());
+      return null;
+    }
+
+    @Override
+    public Void visitCouponIbor(final CouponIbor payment, final Integer derivative) {
+      addIborFlow(derivative, payment);
+      return null;
+    }
+
+    @Override
+    public Void visitCouponIborFixed(final CouponIborFixed payment, final Integer derivative) {
+      addIborFlow(derivative, payment.toCouponIbor());
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,434 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.finitedifference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.math.MathException;
+import com.opengamma.math.linearalgebra.TridiagonalSolverWorkspace;
+import com.opengamma.math.surface.Surface;
+
+/**
+ * A theta (i.e. weighted between explicit and implicit time stepping) scheme with the same discretisation as {@link ThetaMethodFiniteDifference}
+ * (including the exponential fitting of Duffy, and the extended form of the PDE if the data is a {@link ExtendedConvectionDiffusionPDEDataBundle}), but
+ * which exploits the tri-diagonal structure of the system at each time step. The system is solved directly by the Thomas algorithm, or by projected SOR
+ * restricted to the band if there is a free boundary, so each time step costs O(n) rather than O(n<sup>2</sup>) per SOR sweep. All of the working arrays
+ * are allocated once per solve and reused at every time step.
+ * <p>
+ * Many PDEs on the same grid (e.g. a strip of options with different strikes or volatilities) can be solved in one call; if an executor is supplied, the
+ * batch is split into chunks that are solved in parallel, each with its own workspace.
+ */
+public class BatchThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver {
+  private static final double OMEGA = 1.0;
+  private final double _theta;
+  private final boolean _showFullResults;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  /**
+   * Sets up a standard Crank-Nicolson scheme
+   */
+  public BatchThetaMethodFiniteDifference() {
+    this(0.5, false);
+  }
+
+  /**
+   * Sets up a scheme that is the weighted average of an explicit and an implicit scheme
+   * @param theta The weight. theta = 0 - fully explicit, theta = 0.5 - Crank-Nicolson, theta = 1.0 - fully implicit
+   * @param showFullResults Show the full results
+   */
+  public BatchThetaMethodFiniteDifference(final double theta, final boolean showFullResults) {
+    Validate.isTrue(theta >= 0 && theta <= 1.0, "theta must be in the range 0 to 1");
+    _theta = theta;
+    _showFullResults = showFullResults;
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * Sets up a scheme that solves batches of PDEs in parallel
+   * @param theta The weight. theta = 0 - fully explicit, theta = 0.5 - Crank-Nicolson, theta = 1.0 - fully implicit
+   * @param showFullResults Show the full results
+   * @param executor The executor, not null
+   * @param parallelism The number of chunks to split a batch into; typically the number of threads available to the executor
+   */
+  public BatchThetaMethodFiniteDifference(final double theta, final boolean showFullResults, final ExecutorService executor, final int parallelism) {
+    Validate.isTrue(theta >= 0 && theta <= 1.0, "theta must be in the range 0 to 1");
+    Validate.notNull(executor, "executor");
+    Validate.isTrue(parallelism > 0, "parallelism must be positive");
+    _theta = theta;
+    _showFullResults = showFullResults;
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  public double getTheta() {
+    return _theta;
+  }
+
+  @Override
+  public PDEResults1D solve(final ConvectionDiffusionPDEDataBundle pdeData, final int tSteps, final int xSteps, final double tMax, final BoundaryCondition lowerBoundary,
+      final BoundaryCondition upperBoundary) {
+    return solve(pdeData, tSteps, xSteps, tMax, lowerBoundary, upperBoundary, null);
+  }
+
+  @Override
+  public PDEResults1D solve(final ConvectionDiffusionPDEDataBundle pdeData, final int tSteps, final int xSteps, final double tMax, final BoundaryCondition lowerBoundary,
+      final BoundaryCondition upperBoundary, final Surface<Double, Double, Double> freeBoundary) {
+    final PDEGrid1D grid = new PDEGrid1D(tSteps + 1, xSteps + 1, tMax, lowerBoundary.getLevel(), upperBoundary.getLevel());
+    return solve(pdeData, grid, lowerBoundary, upperBoundary, freeBoundary);
+  }
+
+  @Override
+  public PDEResults1D solve(final ConvectionDiffusionPDEDataBundle pdeData, final PDEGrid1D grid, final BoundaryCondition lowerBoundary, final BoundaryCondition upperBoundary) {
+    return solve(pdeData, grid, lowerBoundary, upperBoundary, null);
+  }
+
+  @Override
+  public PDEResults1D solve(final ConvectionDiffusionPDEDataBundle pdeData, final PDEGrid1D grid, final BoundaryCondition lowerBoundary, final BoundaryCondition upperBoundary,
+      final Surface<Double, Double, Double> freeBoundary) {
+    Validate.notNull(pdeData, "pde data");
+    Validate.notNull(grid, "need a grid");
+    validateSetup(grid, lowerBoundary, upperBoundary);
+    return new Workspace(grid).solve(pdeData, lowerBoundary, upperBoundary, freeBoundary);
+  }
+
+  /**
+   * Solves a batch of PDEs on the same grid
+   * @param pdeData The PDEs, not null
+   * @param grid The grid, not null
+   * @param lowerBoundaries The lower boundary of each PDE, not null
+   * @param upperBoundaries The upper boundary of each PDE, not null
+   * @return The results, in the same order as the PDEs
+   */
+  public PDEResults1D[] solve(final ConvectionDiffusionPDEDataBundle[] pdeData, final PDEGrid1D grid, final BoundaryCondition[] lowerBoundaries,
+      final BoundaryCondition[] upperBoundaries) {
+    return solve(pdeData, grid, lowerBoundaries, upperBoundaries, null);
+  }
+
+  /**
+   * Solves a batch of PDEs on the same grid
+   * @param pdeData The PDEs, not null
+   * @param grid The grid, not null
+   * @param lowerBoundaries The lower boundary of each PDE, not null
+   * @param upperBoundaries The upper boundary of each PDE, not null
+   * @param freeBoundaries The free boundary of each PDE (elements may be null if a PDE has no free boundary). If null, none of the PDEs has a free boundary
+   * @return The results, in the same order as the PDEs
+   */
+  public PDEResults1D[] solve(final ConvectionDiffusionPDEDataBundle[] pdeData, final PDEGrid1D grid, final BoundaryCondition[] lowerBoundaries,
+      final BoundaryCondition[] upperBoundaries, final Surface<Double, Double, Double>[] freeBoundaries) {
+    Validate.notNull(pdeData, "pde data");
+    Validate.notNull(grid, "need a grid");
+    Validate.notNull(lowerBoundaries, "lower boundaries");
+    Validate.notNull(upperBoundaries, "upper boundaries");
+    final int n = pdeData.length;
+    Validate.isTrue(lowerBoundaries.length == n && upperBoundaries.length == n, "need a lower and upper boundary for each PDE");
+    Validate.isTrue(freeBoundaries == null || freeBoundaries.length == n, "need a free boundary (which may be null) for each PDE");
+    for (int i = 0; i < n; i++) {
+      Validate.notNull(pdeData[i], "pde data");
+      validateSetup(grid, lowerBoundaries[i], upperBoundaries[i]);
+    }
+    final PDEResults1D[] res = new PDEResults1D[n];
+    if (_executor == null || _parallelism == 1 || n < 2) {
+      solve(pdeData, grid, lowerBoundaries, upperBoundaries, freeBoundaries, res, 0, n);
+      return res;
+    }
+    final int chunkSize = (n + _parallelism - 1) / _parallelism;
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int start = 0; start < n; start += chunkSize) {
+      final int chunkStart = start;
+      final int chunkEnd = Math.min(start + chunkSize, n);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          solve(pdeData, grid, lowerBoundaries, upperBoundaries, freeBoundaries, res, chunkStart, chunkEnd);
+          return null;
+        }
+      });
+    }
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while waiting for PDE batch", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("PDE batch failed", cause);
+    }
+    return res;
+  }
+
+  private void solve(final ConvectionDiffusionPDEDataBundle[] pdeData, final PDEGrid1D grid, final BoundaryCondition[] lowerBoundaries,
+      final BoundaryCondition[] upperBoundaries, final Surface<Double, Double, Double>[] freeBoundaries, final PDEResults1D[] res, final int start, final int end) {
+    final Workspace workspace = new Workspace(grid);
+    for (int i = start; i < end; i++) {
+      res[i] = workspace.solve(pdeData[i], lowerBoundaries[i], upperBoundaries[i], freeBoundaries == null ? null : freeBoundaries[i]);
+    }
+  }
+
+  /**
+   * Checks that the lower and upper boundaries match up with the grid
+   * @param grid The grid
+   * @param lowerBoundary The lower boundary
+   * @param upperBoundary The upper boundary
+   */
+  protected void validateSetup(final PDEGrid1D grid, final BoundaryCondition lowerBoundary, final BoundaryCondition upperBoundary) {
+    Validate.notNull(lowerBoundary, "lower boundary");
+    Validate.notNull(upperBoundary, "upper boundary");
+    Validate.isTrue(grid.getNumSpaceNodes() > 3, "need at least four space nodes");
+    Validate.isTrue(Math.abs(grid.getSpaceNode(0) - lowerBoundary.getLevel()) < 1e-7, "space grid not consistent with boundary level");
+    Validate.isTrue(Math.abs(grid.getSpaceNode(grid.getNumSpaceNodes() - 1) - upperBoundary.getLevel()) < 1e-7, "space grid not consistent with boundary level");
+  }
+
+  /**
+   * The working arrays for one grid. The band of the system is held in {@code _lower}, {@code _diag} and {@code _upper}; the coefficients of the PDE are
+   * indexed by space node. A workspace can be reused for any number of PDEs on its grid, but not concurrently.
+   */
+  private final class Workspace {
+    private final PDEGrid1D _grid;
+    private final int _xNodes;
+    private final TridiagonalSolverWorkspace _tridiagonal;
+    private final double[] _f;
+    private final double[] _q;
+    private final double[] _lower;
+    private final double[] _diag;
+    private final double[] _upper;
+    private final double[] _a;
+    private final double[] _b;
+    private final double[] _c;
+    private final double[] _rho;
+    private final double[] _alpha;
+    private final double[] _beta;
+    private final double[] _g;
+
+    public Workspace(final PDEGrid1D grid) {
+      _grid = grid;
+      _xNodes = grid.getNumSpaceNodes();
+      _tridiagonal = new TridiagonalSolverWorkspace(_xNodes);
+      _f = new double[_xNodes];
+      _q = new double[_xNodes];
+      _lower = new double[_xNodes];
+      _diag = new double[_xNodes];
+      _upper = new double[_xNodes];
+      _a = new double[_xNodes];
+      _b = new double[_xNodes];
+      _c = new double[_xNodes];
+      _rho = new double[_xNodes];
+      _alpha = new double[_xNodes];
+      _beta = new double[_xNodes];
+      _g = new double[_xNodes];
+    }
+
+    @SuppressWarnings("synthetic-access")
+    public PDEResults1D solve(final ConvectionDiffusionPDEDataBundle pdeData, final BoundaryCondition lowerBoundary, final BoundaryCondition upperBoundary,
+        final Surface<Double, Double, Double> freeBoundary) {
+      final ExtendedConvectionDiffusionPDEDataBundle extendedData = pdeData instanceof ExtendedConvectionDiffusionPDEDataBundle ?
+          (ExtendedConvectionDiffusionPDEDataBundle) pdeData : null;
+      final int tNodes = _grid.getNumTimeNodes();
+      final double[] full = _showFullResults ? new double[tNodes * _xNodes] : null;
+
+      for (int i = 0; i < _xNodes; i++) {
+        _f[i] = pdeData.getInitialValue(_grid.getSpaceNode(i));
+      }
+      if (full != null) {
+        System.arraycopy(_f, 0, full, 0, _xNodes);
+      }
+      // as ThetaMethodFiniteDifference, the coefficients at the first time step are not fitted
+      for (int i = 1; i < _xNodes - 1; i++) {
+        final double x = _grid.getSpaceNode(i);
+        _a[i] = pdeData.getA(0, x);
+        _b[i] = pdeData.getB(0, x);
+        _c[i] = pdeData.getC(0, x);
+        _rho[i] = _a[i];
+      }
+      if (extendedData != null) {
+        updateAlphaBeta(extendedData, 0);
+      }
+
+      double t1 = 0.0;
+      for (int n = 1; n < tNodes; n++) {
+        final double t2 = _grid.getTimeNode(n);
+        final double dt = t2 - t1;
+        updateRHS(extendedData != null, dt);
+        updateRHSBoundary(pdeData, lowerBoundary, upperBoundary, t1, t2);
+        for (int i = 1; i < _xNodes - 1; i++) {
+          final double x = _grid.getSpaceNode(i);
+          _a[i] = pdeData.getA(t2, x);
+          _b[i] = pdeData.getB(t2, x);
+          _c[i] = pdeData.getC(t2, x);
+          _rho[i] = ThetaMethodFiniteDifference.getFittingParameter(_grid, _a[i], _b[i], i);
+        }
+        if (extendedData != null) {
+          updateAlphaBeta(extendedData, t2);
+        }
+        updateLHS(extendedData != null, dt);
+        final double[] lowerRow = lowerBoundary.getLeftMatrixCondition(pdeData, _grid, t2);
+        final double[] upperRow = upperBoundary.getLeftMatrixCondition(pdeData, _grid, t2);
+        if (freeBoundary == null) {
+          solveByThomas(lowerRow, upperRow);
+        } else {
+          for (int i = 0; i < _xNodes; i++) {
+            _g[i] = freeBoundary.getZValue(t2, _grid.getSpaceNode(i));
+          }
+          solveByPSOR(lowerRow, upperRow);
+        }
+        if (full != null) {
+          System.arraycopy(_f, 0, full, n * _xNodes, _xNodes);
+        }
+        t1 = t2;
+      }
+      if (full != null) {
+        return new PDEFullResults1D(_grid, full);
+      }
+      return new PDETerminalResults1D(_grid, _f.clone());
+    }
+
+    private void updateAlphaBeta(final ExtendedConvectionDiffusionPDEDataBundle pdeData, final double t) {
+      for (int i = 0; i < _xNodes; i++) {
+        final double x = _grid.getSpaceNode(i);
+        _alpha[i] = pdeData.getAlpha(t, x);
+        _beta[i] = pdeData.getBeta(t, x);
+      }
+    }
+
+    // uses the coefficients at the start of the time step
+    @SuppressWarnings("synthetic-access")
+    private void updateRHS(final boolean extended, final double dt) {
+      final double w = (1 - _theta) * dt;
+      for (int i = 1; i < _xNodes - 1; i++) {
+        final double[] x1st = _grid.getFirstDerivativeCoefficients(i);
+        final double[] x2nd = _grid.getSecondDerivativeCoefficients(i);
+        double temp = _f[i];
+        if (extended) {
+          temp -= w * (x2nd[0] * _a[i] * _alpha[i - 1] + x1st[0] * _b[i] * _beta[i - 1]) * _f[i - 1];
+          temp -= w * (x2nd[1] * _a[i] * _alpha[i] + x1st[1] * _b[i] * _beta[i] + _c[i]) * _f[i];
+          temp -= w * (x2nd[2] * _a[i] * _alpha[i + 1] + x1st[2] * _b[i] * _beta[i + 1]) * _f[i + 1];
+        } else {
+          temp -= w * (x2nd[0] * _rho[i] + x1st[0] * _b[i]) * _f[i - 1];
+          temp -= w * (x2nd[1] * _rho[i] + x1st[1] * _b[i] + _c[i]) * _f[i];
+          temp -= w * (x2nd[2] * _rho[i] + x1st[2] * _b[i]) * _f[i + 1];
+        }
+        _q[i] = temp;
+      }
+    }
+
+    private void updateRHSBoundary(final ConvectionDiffusionPDEDataBundle pdeData, final BoundaryCondition lowerBoundary, final BoundaryCondition upperBoundary,
+        final double t1, final double t2) {
+      double[] temp = lowerBoundary.getRightMatrixCondition(pdeData, _grid, t1);
+      double sum = 0;
+      for (int k = 0; k < temp.length; k++) {
+        sum += temp[k] * _f[k];
+      }
+      _q[0] = sum + lowerBoundary.getConstant(pdeData, t2);
+
+      temp = upperBoundary.getRightMatrixCondition(pdeData, _grid, t1);
+      sum = 0;
+      for (int k = 0; k < temp.length; k++) {
+        sum += temp[k] * _f[_xNodes - 1 - k];
+      }
+      _q[_xNodes - 1] = sum + upperBoundary.getConstant(pdeData, t2);
+    }
+
+    // uses the coefficients at the end of the time step
+    @SuppressWarnings("synthetic-access")
+    private void updateLHS(final boolean extended, final double dt) {
+      final double w = _theta * dt;
+      for (int i = 1; i < _xNodes - 1; i++) {
+        final double[] x1st = _grid.getFirstDerivativeCoefficients(i);
+        final double[] x2nd = _grid.getSecondDerivativeCoefficients(i);
+        if (extended) {
+          _lower[i] = w * (x2nd[0] * _a[i] * _alpha[i - 1] + x1st[0] * _b[i] * _beta[i - 1]);
+          _diag[i] = 1 + w * (x2nd[1] * _a[i] * _alpha[i] + x1st[1] * _b[i] * _beta[i] + _c[i]);
+          _upper[i] = w * (x2nd[2] * _a[i] * _alpha[i + 1] + x1st[2] * _b[i] * _beta[i + 1]);
+        } else {
+          _lower[i] = w * (x2nd[0] * _rho[i] + x1st[0] * _b[i]);
+          _diag[i] = 1 + w * (x2nd[1] * _rho[i] + x1st[1] * _b[i] + _c[i]);
+          _upper[i] = w * (x2nd[2] * _rho[i] + x1st[2] * _b[i]);
+        }
+      }
+    }
+
+    // boundary conditions that involve a third node are reduced to tri-diagonal form by eliminating that node using the adjacent interior row
+    private void solveByThomas(final double[] lowerRow, final double[] upperRow) {
+      final int last = _xNodes - 1;
+      Validate.isTrue(lowerRow.length <= 3 && upperRow.length <= 3, "boundary conditions involving more than three nodes are not supported");
+      _diag[0] = lowerRow[0];
+      _upper[0] = lowerRow.length > 1 ? lowerRow[1] : 0;
+      if (lowerRow.length == 3 && lowerRow[2] != 0) {
+        if (_upper[1] == 0) {
+          throw new MathException("Cannot reduce lower boundary condition to tri-diagonal form");
+        }
+        final double factor = lowerRow[2] / _upper[1];
+        _diag[0] -= factor * _lower[1];
+        _upper[0] -= factor * _diag[1];
+        _q[0] -= factor * _q[1];
+      }
+      _diag[last] = upperRow[upperRow.length - 1];
+      _lower[last] = upperRow.length > 1 ? upperRow[upperRow.length - 2] : 0;
+      if (upperRow.length == 3 && upperRow[0] != 0) {
+        if (_lower[last - 1] == 0) {
+          throw new MathException("Cannot reduce upper boundary condition to tri-diagonal form");
+        }
+        final double factor = upperRow[0] / _lower[last - 1];
+        _lower[last] -= factor * _diag[last - 1];
+        _diag[last] -= factor * _upper[last - 1];
+        _q[last] -= factor * _q[last - 1];
+      }
+      _tridiagonal.solve(_lower, _diag, _upper, _q, _f);
+    }
+
+    // the same iteration and stopping criterion as ThetaMethodFiniteDifference, but only visiting the non-zero elements of each row
+    private int solveByPSOR(final double[] lowerRow, final double[] upperRow) {
+      final int last = _xNodes - 1;
+      final int upperOffset = _xNodes - upperRow.length;
+      int count = 0;
+      double scale = 1.0;
+      double errorSqr = Double.POSITIVE_INFINITY;
+      while (errorSqr / (scale + 1e-10) > 1e-18) {
+        errorSqr = 0.0;
+        scale = 0.0;
+        for (int j = 0; j < _xNodes; j++) {
+          double sum = 0;
+          double diag;
+          if (j == 0) {
+            for (int k = 0; k < lowerRow.length; k++) {
+              sum += lowerRow[k] * _f[k];
+            }
+            diag = lowerRow[0];
+          } else if (j == last) {
+            for (int k = 0; k < upperRow.length; k++) {
+              sum += upperRow[k] * _f[upperOffset + k];
+            }
+            diag = upperRow[upperRow.length - 1];
+          } else {
+            sum = _lower[j] * _f[j - 1] + _diag[j] * _f[j] + _upper[j] * _f[j + 1];
+            diag = _diag[j];
+          }
+          final double correction = Math.max(OMEGA / diag * (_q[j] - sum), _g[j] - _f[j]);
+          errorSqr += correction * correction;
+          _f[j] += correction;
+          scale += _f[j] * _f[j];
+        }
+        count++;
+      }
+      return count;
+    }
+  }
+
+}
@@ -8,19 +8,26 @@ package com.opengamma.financial.model.finitedifference;
 import org.apache.commons.lang.Validate;
 
 import com.opengamma.math.cube.Cube;
+import com.opengamma.math.linearalgebra.IterativeSolver;
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
 
 /**
  * <b>Note</b> this is for testing purposes and is not recommended for actual use 
+ * <p>
+ * By default the system at each time step is solved by SOR. If an {@link IterativeSolver} is supplied, the system is instead assembled as a sparse matrix and
+ * solved by that, starting from the solution at the previous time step; this is much faster on large grids.
  */
 public class CrankNicolsonFiniteDifference2D implements ConvectionDiffusionPDESolver2D {
 
   private final double _theta;
+  private final IterativeSolver _solver;
 
   /**
    * Sets up a standard Crank-Nicolson scheme for 2-D (two spatial dimensions) PDEs 
    */
   public CrankNicolsonFiniteDifference2D() {
     _theta = 0.5;
+    _solver = null;
   }
 
   /**
@@ -30,6 +37,19 @@ public class CrankNicolsonFiniteDifference2D implements ConvectionDiffusionPDESo
   public CrankNicolsonFiniteDifference2D(final double theta) {
     Validate.isTrue(theta >= 0 && theta <= 1.0, "theta must be in the range 0 to 1");
     _theta = theta;
+    _solver = null;
+  }
+
+  /**
+   * Sets up a scheme that is the weighted average of an explicit and an implicit scheme, with the system at each time step solved by a sparse iterative solver
+   * @param theta The weight. theta = 0 - fully explicit, theta = 0.5 - Crank-Nicolson, theta = 1.0 - fully implicit 
+   * @param solver The sparse solver, not null. The system is not symmetric, so this would normally be a {@link com.opengamma.math.linearalgebra.BiCGSTABSolver}
+   */
+  public CrankNicolsonFiniteDifference2D(final double theta, final IterativeSolver solver) {
+    Validate.isTrue(theta >= 0 && theta <= 1.0, "theta must be in the range 0 to 1");
+    Validate.notNull(solver, "solver");
+    _theta = theta;
+    _solver = solver;
   }
 
   @Override
@@ -182,6 +202,12 @@ public class CrankNicolsonFiniteDifference2D implements ConvectionDiffusionPDESo
         q[offset] = sum + xUpperBoundary.getConstant(pdeData, t, y[j], dx);
       }
 
+      if (_solver != null) {
+        final CompressedSparseRowFormatMatrix m = SparseSystemAssembler.assembleStencil(w, xBoundary, yBoundary, xSteps + 1, ySteps + 1);
+        System.arraycopy(_solver.evaluate(m).solve(q, u), 0, u, 0, size);
+        continue;
+      }
+
       // SOR
       final double omega = 1.0;
       double scale = 1.0;
@@ -457,6 +483,12 @@ public class CrankNicolsonFiniteDifference2D implements ConvectionDiffusionPDESo
         q[offset] = sum + xUpperBoundary.getConstant(pdeData, timeGrid[n], yGrid[j], dx[xNodes - 2]);
       }
 
+      if (_solver != null) {
+        final CompressedSparseRowFormatMatrix m = SparseSystemAssembler.assembleStencil(w, xBoundary, yBoundary, xNodes, yNodes);
+        System.arraycopy(_solver.evaluate(m).solve(q, u), 0, u, 0, size);
+        continue;
+      }
+
       // SOR
       final double omega = 1.0;
       double scale = 1.0;
@@ -5,23 +5,52 @@
  */
 package com.opengamma.financial.model.finitedifference;
 
+import java.util.Arrays;
+
 import org.apache.commons.lang.Validate;
 
 /**
- * 
+ * The solution of a PDE at every node of the grid. The values are held in a single array, ordered by time and then by space, i.e. the value at space index
+ * i and time index n is element {@code n * xNodes + i}.
  */
 public class PDEFullResults1D implements PDEResults1D {
 
-  private final double[][] _f;
+  private final double[] _f;
+  private final int _xNodes;
   private final PDEGrid1D _grid;
   private final PDETerminalResults1D _terminalResults;
 
   public PDEFullResults1D(final PDEGrid1D grid, final double[][] fullSolverData) {
-    Validate.isTrue(grid.getNumTimeNodes() == fullSolverData.length, "time steps in grid not equal to that in data");
-    Validate.isTrue(grid.getNumSpaceNodes() == fullSolverData[0].length, "space steps in grid not equal to that in data");
+    this(grid, flatten(grid, fullSolverData));
+  }
+
+  /**
+   * @param grid The grid, not null
+   * @param fullSolverData The solution at every node of the grid, ordered by time and then by space. This array is not copied.
+   */
+  public PDEFullResults1D(final PDEGrid1D grid, final double[] fullSolverData) {
+    Validate.notNull(grid, "grid");
+    Validate.notNull(fullSolverData, "data");
+    Validate.isTrue(grid.getNumTimeNodes() * grid.getNumSpaceNodes() == fullSolverData.length, "number of nodes in grid not equal to that in data");
     _grid = grid;
     _f = fullSolverData;
-    _terminalResults = new PDETerminalResults1D(grid, fullSolverData[grid.getNumTimeNodes() - 1]);
+    _xNodes = grid.getNumSpaceNodes();
+    final int offset = (grid.getNumTimeNodes() - 1) * _xNodes;
+    _terminalResults = new PDETerminalResults1D(grid, Arrays.copyOfRange(fullSolverData, offset, offset + _xNodes));
+  }
+
+  private static double[] flatten(final PDEGrid1D grid, final double[][] fullSolverData) {
+    Validate.notNull(grid, "grid");
+    Validate.notNull(fullSolverData, "data");
+    final int tNodes = grid.getNumTimeNodes();
+    final int xNodes = grid.getNumSpaceNodes();
+    Validate.isTrue(tNodes == fullSolverData.length, "time steps in grid not equal to that in data");
+    final double[] res = new double[tNodes * xNodes];
+    for (int n = 0; n < tNodes; n++) {
+      Validate.isTrue(xNodes == fullSolverData[n].length, "space steps in grid not equal to that in data");
+      System.arraycopy(fullSolverData[n], 0, res, n * xNodes, xNodes);
+    }
+    return res;
   }
 
   //  // penultimate
@@ -61,7 +90,7 @@ public class PDEFullResults1D implements PDEResults1D {
   }
 
   public double getFunctionValue(final int spaceIndex, final int timeIndex) {
-    return _f[timeIndex][spaceIndex];
+    return _f[timeIndex * _xNodes + spaceIndex];
   }
 
   public int getNumberTimeNodes() {
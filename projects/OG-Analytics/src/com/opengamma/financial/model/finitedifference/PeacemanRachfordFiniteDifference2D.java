@@ -8,12 +8,33 @@ package com.opengamma.financial.model.finitedifference;
 import org.apache.commons.lang.Validate;
 
 import com.opengamma.math.cube.Cube;
+import com.opengamma.math.linearalgebra.IterativeSolver;
+import com.opengamma.math.linearalgebra.IterativeSolverResult;
 
 /**
  * Peaceman-Rachford splitting
  * <b>Note</b> this is for testing purposes and is not recommended for actual use 
+ * <p>
+ * By default the line systems are solved by SOR. If an {@link IterativeSolver} is supplied they are instead assembled as sparse matrices and solved by that;
+ * with ILU(0) preconditioning this is an exact factorisation of the (tri-diagonal) line system, so converges in a single iteration.
  */
 public class PeacemanRachfordFiniteDifference2D implements ConvectionDiffusionPDESolver2D {
+  private final IterativeSolver _solver;
+
+  /**
+   * Solves the line systems by SOR
+   */
+  public PeacemanRachfordFiniteDifference2D() {
+    _solver = null;
+  }
+
+  /**
+   * @param solver The sparse solver used for the line systems, not null
+   */
+  public PeacemanRachfordFiniteDifference2D(final IterativeSolver solver) {
+    Validate.notNull(solver, "solver");
+    _solver = solver;
+  }
 
   //private static final Decomposition<?> DCOMP = new LUDecompositionCommons();
   // Theta = 0 - explicit
@@ -121,6 +142,19 @@ public class PeacemanRachfordFiniteDifference2D implements ConvectionDiffusionPD
         }
         q[xSteps] = sum + xUpperBoundary.getConstant(pdeData, t, y[j], dx);
 
+        if (_solver != null) {
+          final double[] line = new double[xSteps + 1];
+          for (int l = 0; l <= xSteps; l++) {
+            line[l] = v[l][j];
+          }
+          final IterativeSolverResult res = _solver.evaluate(SparseSystemAssembler.assembleLine(mx));
+          final double[] solution = res.solve(q, line);
+          for (int l = 0; l <= xSteps; l++) {
+            v[l][j] = solution[l];
+          }
+          continue;
+        }
+
         // SOR
         final double omega = 1.5;
         double scale = 1.0;
@@ -240,6 +274,12 @@ public class PeacemanRachfordFiniteDifference2D implements ConvectionDiffusionPD
         }
         r[ySteps] = sum + yUpperBoundary.getConstant(pdeData, t, x[i], dy);
 
+        if (_solver != null) {
+          final IterativeSolverResult res = _solver.evaluate(SparseSystemAssembler.assembleLine(my));
+          v[i] = res.solve(r, v[i]);
+          continue;
+        }
+
         // SOR
         final double omega = 1.5;
         double scale = 1.0;
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.finitedifference;
+
+import java.util.Arrays;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+
+/**
+ * Assembles the linear systems of the 2-D finite difference schemes in {@link CompressedSparseRowFormatMatrix compressed sparse row} form, so that they can be
+ * solved with a {@link com.opengamma.math.linearalgebra.IterativeSolver} rather than by SOR.
+ */
+final class SparseSystemAssembler {
+
+  private SparseSystemAssembler() {
+  }
+
+  /**
+   * Assembles the system for a nine-point stencil on a grid whose unknowns are ordered with x varying fastest, i.e. node (i, j) is unknown j * xNodes + i.
+   * @param w The stencil weights of the interior nodes, in the order (i-1, j-1), (i, j-1), (i+1, j-1), (i-1, j), (i, j), (i+1, j), (i-1, j+1), (i, j+1), (i+1, j+1)
+   * @param xBoundary The left matrix conditions of the lower and upper x boundaries for j = 1 to yNodes - 2
+   * @param yBoundary The left matrix conditions of the lower and upper y boundaries for i = 0 to xNodes - 1
+   * @param xNodes The number of x nodes
+   * @param yNodes The number of y nodes
+   * @return The system matrix
+   */
+  static CompressedSparseRowFormatMatrix assembleStencil(final double[][] w, final double[][][] xBoundary, final double[][][] yBoundary, final int xNodes,
+      final int yNodes) {
+    final int size = xNodes * yNodes;
+    final int[] offsets = new int[] {-xNodes - 1, -xNodes, -xNodes + 1, -1, 0, 1, xNodes - 1, xNodes, xNodes + 1};
+    final int[] rowPtr = new int[size + 1];
+    int[] colIdx = new int[9 * size];
+    double[] values = new double[9 * size];
+    int nnz = 0;
+    for (int l = 0; l < size; l++) {
+      final int i = l % xNodes;
+      final int j = l / xNodes;
+      double[] temp;
+      if (j == 0) {
+        temp = yBoundary[0][i];
+      } else if (j == yNodes - 1) {
+        temp = yBoundary[1][i];
+      } else if (i == 0) {
+        temp = xBoundary[0][j - 1];
+      } else if (i == xNodes - 1) {
+        temp = xBoundary[1][j - 1];
+      } else {
+        temp = null;
+      }
+      if (nnz + 9 + (temp == null ? 0 : temp.length) > colIdx.length) {
+        colIdx = Arrays.copyOf(colIdx, 2 * colIdx.length);
+        values = Arrays.copyOf(values, 2 * values.length);
+      }
+      // column indices are added in increasing order
+      if (temp == null) {
+        for (int k = 0; k < 9; k++) {
+          if (k == 4 || w[l][k] != 0) {
+            colIdx[nnz] = l + offsets[k];
+            values[nnz++] = w[l][k];
+          }
+        }
+      } else if (j == 0) {
+        for (int k = 0; k < temp.length; k++) {
+          colIdx[nnz] = k * xNodes + i;
+          values[nnz++] = temp[k];
+        }
+      } else if (j == yNodes - 1) {
+        for (int k = temp.length - 1; k >= 0; k--) {
+          colIdx[nnz] = (yNodes - 1 - k) * xNodes + i;
+          values[nnz++] = temp[k];
+        }
+      } else if (i == 0) {
+        for (int k = 0; k < temp.length; k++) {
+          colIdx[nnz] = l + k;
+          values[nnz++] = temp[k];
+        }
+      } else {
+        for (int k = temp.length - 1; k >= 0; k--) {
+          colIdx[nnz] = l - k;
+          values[nnz++] = temp[k];
+        }
+      }
+      rowPtr[l + 1] = nnz;
+    }
+    return new CompressedSparseRowFormatMatrix(size, size, rowPtr, Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+  }
+
+  /**
+   * Assembles the system for a line of an ADI scheme, held as a dense matrix that is tri-diagonal apart from its first and last rows (which hold the boundary
+   * conditions). Only the non-zero elements of the band and the boundary rows are copied.
+   * @param m The dense matrix
+   * @return The system matrix
+   */
+  static CompressedSparseRowFormatMatrix assembleLine(final double[][] m) {
+    final int n = m.length;
+    final int[] rowPtr = new int[n + 1];
+    int[] colIdx = new int[3 * n];
+    double[] values = new double[3 * n];
+    int nnz = 0;
+    for (int l = 0; l < n; l++) {
+      final int min = l == n - 1 ? 0 : Math.max(0, l - 1);
+      final int max = l == 0 ? n - 1 : Math.min(n - 1, l + 1);
+      if (nnz + max - min + 1 > colIdx.length) {
+        colIdx = Arrays.copyOf(colIdx, 2 * colIdx.length + max - min + 1);
+        values = Arrays.copyOf(values, colIdx.length);
+      }
+      for (int k = min; k <= max; k++) {
+        if (k == l || m[l][k] != 0) {
+          colIdx[nnz] = k;
+          values[nnz++] = m[l][k];
+        }
+      }
+      rowPtr[l + 1] = nnz;
+    }
+    return new CompressedSparseRowFormatMatrix(n, n, rowPtr, Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+  }
+
+}
@@ -5,8 +5,6 @@
  */
 package com.opengamma.financial.model.finitedifference;
 
-import java.util.Arrays;
-
 import org.apache.commons.lang.Validate;
 
 import cern.jet.random.engine.DRand;
@@ -86,7 +84,7 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
     private final BoundaryCondition _upperBoundary;
     private final Surface<Double, Double, Double> _freeBoundary;
     private final double[] _f;
-    private double[][] _full;
+    private double[] _full;
 
     private final double[] _q;
     private final double[][] _m;
@@ -114,7 +112,7 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
 
       _f = new double[xNodes];
       if (_showFullResults) {
-        _full = new double[tNodes][xNodes];
+        _full = new double[tNodes * xNodes];
       }
 
       _q = new double[xNodes];
@@ -140,7 +138,7 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
         updateLHSBoundary();
         solveMatrixSystem();
         if (_showFullResults) {
-          _full[n] = Arrays.copyOf(_f, _f.length);
+          System.arraycopy(_f, 0, _full, n * _f.length, _f.length);
         }
         setT1(getT2());
       }
@@ -161,7 +159,7 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
         _f[i] = _pdeData.getInitialValue(getGrid().getSpaceNode(i));
       }
       if (_showFullResults) {
-        _full[0] = Arrays.copyOf(_f, _f.length);
+        System.arraycopy(_f, 0, _full, 0, _f.length);
       }
 
       double x;
@@ -306,37 +304,6 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
       return count;
     }
 
-    /**
-     * @param grid
-     * @param a
-     * @param b
-     * @param i
-     * @return
-     */
-    private double getFittingParameter(final PDEGrid1D grid, final double a, final double b, final int i) {
-      double rho;
-      final double[] x1st = grid.getFirstDerivativeCoefficients(i);
-      final double[] x2nd = grid.getSecondDerivativeCoefficients(i);
-      final double bdx1 = (b * grid.getSpaceStep(i - 1));
-      final double bdx2 = (b * grid.getSpaceStep(i));
-
-      // convection dominated
-      if (Math.abs(bdx1) > 10 * Math.abs(a) || Math.abs(bdx2) > 10 * Math.abs(a)) {
-        if (b > 0) {
-          rho = -b * x1st[0] / x2nd[0];
-        } else {
-          rho = -b * x1st[2] / x2nd[2];
-        }
-      } else if (Math.abs(a) > 10 * Math.abs(bdx1) || Math.abs(a) > 10 * Math.abs(bdx2)) {
-        rho = a; // diffusion dominated
-      } else {
-        final double expo1 = Math.exp(bdx1 / a);
-        final double expo2 = Math.exp(-bdx2 / a);
-        rho = -b * (x1st[0] * expo1 + x1st[1] + x1st[2] * expo2) / (x2nd[0] * expo1 + x2nd[1] + x2nd[2] * expo2);
-      }
-      return rho;
-    }
-
     /**
      * Gets the grid.
      * @return the grid
@@ -419,6 +386,38 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
 
   }
 
+  /**
+   * Gets the exponentially fitted diffusion coefficient of Duffy at an interior node of the grid.
+   * @param grid The grid
+   * @param a The diffusion coefficient at the node
+   * @param b The convection coefficient at the node
+   * @param i The space index of the node
+   * @return The fitted diffusion coefficient
+   */
+  static double getFittingParameter(final PDEGrid1D grid, final double a, final double b, final int i) {
+    double rho;
+    final double[] x1st = grid.getFirstDerivativeCoefficients(i);
+    final double[] x2nd = grid.getSecondDerivativeCoefficients(i);
+    final double bdx1 = (b * grid.getSpaceStep(i - 1));
+    final double bdx2 = (b * grid.getSpaceStep(i));
+
+    // convection dominated
+    if (Math.abs(bdx1) > 10 * Math.abs(a) || Math.abs(bdx2) > 10 * Math.abs(a)) {
+      if (b > 0) {
+        rho = -b * x1st[0] / x2nd[0];
+      } else {
+        rho = -b * x1st[2] / x2nd[2];
+      }
+    } else if (Math.abs(a) > 10 * Math.abs(bdx1) || Math.abs(a) > 10 * Math.abs(bdx2)) {
+      rho = a; // diffusion dominated
+    } else {
+      final double expo1 = Math.exp(bdx1 / a);
+      final double expo2 = Math.exp(-bdx2 / a);
+      rho = -b * (x1st[0] * expo1 + x1st[1] + x1st[2] * expo2) / (x2nd[0] * expo1 + x2nd[1] + x2nd[2] * expo2);
+    }
+    return rho;
+  }
+
   /**
    * Checks that the lower and upper boundaries match up with the grid
    * @param grid The grid
@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.math.function.Function1D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Calculates the sensitivities of a number of instruments to a number of bumps of the market data by revaluation. Where
+ * {@link FiniteDifferenceGreekVisitor} builds the bumped data for each greek of each instrument and prices it as it goes, this builds every bumped
+ * market state once and then values every instrument in every state; the greeks are then calculated from the shared values. If an executor is supplied
+ * the valuations are shared between tasks, in which case the pricing functions must be thread-safe.
+ * <p>
+ * For bumps {@latex.inline $i$} and {@latex.inline $j$} with sizes {@latex.inline $h_i$} and {@latex.inline $h_j$} the sensitivities are the central
+ * differences
+ * {@latex.ilb %preamble{\\usepackage{amsmath}}
+ * \\begin{align*}
+ * \\frac{\\partial V}{\\partial x_i} &\\approx \\frac{V(x_i + h_i) - V(x_i - h_i)}{2h_i}\\\\
+ * \\frac{\\partial^2 V}{\\partial x_i^2} &\\approx \\frac{V(x_i + h_i) - 2V + V(x_i - h_i)}{h_i^2}\\\\
+ * \\frac{\\partial^2 V}{\\partial x_i \\partial x_j} &\\approx \\frac{V(x_i + h_i, x_j + h_j) - V(x_i + h_i, x_j - h_j) - V(x_i - h_i, x_j + h_j) + V(x_i - h_i, x_j - h_j)}{4h_ih_j}
+ * \\end{align*}}
+ * so {@latex.inline $n$} bumps need {@latex.inline $2n + 1$} market states, and {@latex.inline $2n^2 + 1$} if the cross sensitivities are required.
+ *
+ * @param <S> Type of the option data bundle
+ */
+@SuppressWarnings("unchecked")
+public class BumpedRevaluationCalculator<S extends StandardOptionDataBundle> {
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  /**
+   * Values the instruments in the calling thread.
+   */
+  public BumpedRevaluationCalculator() {
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param executor The executor used to value the instruments, not null
+   * @param parallelism The number of tasks to split the valuations into; typically the number of threads available to the executor
+   */
+  public BumpedRevaluationCalculator(final ExecutorService executor, final int parallelism) {
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * Calculates the first- and second-order sensitivities of each instrument to each bump.
+   * @param pricingFunctions The pricing function of each instrument, not null or empty
+   * @param data The unbumped market data, not null
+   * @param bumps The bumps, not null or empty
+   * @return The sensitivities
+   */
+  public BumpedRevaluationResult evaluate(final List<? extends Function1D<S, Double>> pricingFunctions, final S data, final List<OptionDataBundleBump> bumps) {
+    return evaluate(pricingFunctions, data, bumps, false);
+  }
+
+  /**
+   * Calculates the first- and second-order sensitivities of each instrument to each bump, and optionally the second-order sensitivities to each pair of
+   * bumps.
+   * @param pricingFunctions The pricing function of each instrument, not null or empty
+   * @param data The unbumped market data, not null
+   * @param bumps The bumps, not null or empty
+   * @param crossSensitivities True to calculate the second-order sensitivities to each pair of bumps
+   * @return The sensitivities
+   */
+  public BumpedRevaluationResult evaluate(final List<? extends Function1D<S, Double>> pricingFunctions, final S data, final List<OptionDataBundleBump> bumps,
+      final boolean crossSensitivities) {
+    Validate.notEmpty(pricingFunctions, "pricing functions");
+    Validate.noNullElements(pricingFunctions, "pricing functions");
+    Validate.notNull(data, "data");
+    Validate.notEmpty(bumps, "bumps");
+    Validate.noNullElements(bumps, "bumps");
+    final List<S> states = getStates(data, bumps, crossSensitivities);
+    final double[][] values = revalue(pricingFunctions, states);
+    final int nInstruments = pricingFunctions.size();
+    final int nBumps = bumps.size();
+    final double[] base = values[0];
+    final double[][] firstOrder = new double[nInstruments][nBumps];
+    final double[][] secondOrder = new double[nInstruments][nBumps];
+    final double[][][] crossSecondOrder = crossSensitivities ? new double[nInstruments][nBumps][nBumps] : null;
+    for (int i = 0; i < nBumps; i++) {
+      final double h = bumps.get(i).getShift();
+      final double[] up = values[upIndex(i)];
+      final double[] down = values[downIndex(i)];
+      for (int k = 0; k < nInstruments; k++) {
+        firstOrder[k][i] = (up[k] - down[k]) / (2 * h);
+        secondOrder[k][i] = (up[k] + down[k] - 2 * base[k]) / (h * h);
+      }
+    }
+    if (crossSensitivities) {
+      int index = 2 * nBumps + 1;
+      for (int i = 0; i < nBumps; i++) {
+        final double hi = bumps.get(i).getShift();
+        for (int k = 0; k < nInstruments; k++) {
+          crossSecondOrder[k][i][i] = secondOrder[k][i];
+        }
+        for (int j = i + 1; j < nBumps; j++) {
+          final double hj = bumps.get(j).getShift();
+          final double[] upUp = values[index++];
+          final double[] upDown = values[index++];
+          final double[] downUp = values[index++];
+          final double[] downDown = values[index++];
+          for (int k = 0; k < nInstruments; k++) {
+            final double cross = (upUp[k] - upDown[k] - downUp[k] + downDown[k]) / (4 * hi * hj);
+            crossSecondOrder[k][i][j] = cross;
+            crossSecondOrder[k][j][i] = cross;
+          }
+        }
+      }
+    }
+    return new BumpedRevaluationResult(bumps, base, firstOrder, secondOrder, crossSecondOrder);
+  }
+
+  // the unbumped state, then each bump up and down, then each pair of bumps up-up, up-down, down-up and down-down
+  private List<S> getStates(final S data, final List<OptionDataBundleBump> bumps, final boolean crossSensitivities) {
+    final int nBumps = bumps.size();
+    final List<S> states = new ArrayList<S>(crossSensitivities ? 2 * nBumps * nBumps + 1 : 2 * nBumps + 1);
+    states.add(data);
+    for (final OptionDataBundleBump bump : bumps) {
+      states.add((S) bump.apply(data, bump.getShift()));
+      states.add((S) bump.apply(data, -bump.getShift()));
+    }
+    if (crossSensitivities) {
+      for (int i = 0; i < nBumps; i++) {
+        final S up = states.get(upIndex(i));
+        final S down = states.get(downIndex(i));
+        for (int j = i + 1; j < nBumps; j++) {
+          final OptionDataBundleBump bump = bumps.get(j);
+          states.add((S) bump.apply(up, bump.getShift()));
+          states.add((S) bump.apply(up, -bump.getShift()));
+          states.add((S) bump.apply(down, bump.getShift()));
+          states.add((S) bump.apply(down, -bump.getShift()));
+        }
+      }
+    }
+    return states;
+  }
+
+  private double[][] revalue(final List<? extends Function1D<S, Double>> pricingFunctions, final List<S> states) {
+    final int nInstruments = pricingFunctions.size();
+    final int nValuations = states.size() * nInstruments;
+    final double[][] values = new double[states.size()][nInstruments];
+    if (_executor == null || _parallelism == 1 || nValuations < 2) {
+      revalue(pricingFunctions, states, values, 0, nValuations);
+    } else {
+      final int nTasks = Math.min(_parallelism, nValuations);
+      final int chunkSize = (nValuations + nTasks - 1) / nTasks;
+      final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(nTasks);
+      for (int start = 0; start < nValuations; start += chunkSize) {
+        final int from = start;
+        final int to = Math.min(start + chunkSize, nValuations);
+        tasks.add(new Callable<Object>() {
+          @Override
+          public Object call() {
+            revalue(pricingFunctions, states, values, from, to);
+            return null;
+          }
+        });
+      }
+      invokeAll(tasks);
+    }
+    return values;
+  }
+
+  // the valuations are numbered state by state, so that each task prices a contiguous run of instruments in as few states as possible
+  private static <S> void revalue(final List<? extends Function1D<S, Double>> pricingFunctions, final List<S> states, final double[][] values, final int from,
+      final int to) {
+    final int nInstruments = pricingFunctions.size();
+    for (int n = from; n < to; n++) {
+      final int state = n / nInstruments;
+      final int instrument = n % nInstruments;
+      values[state][instrument] = pricingFunctions.get(instrument).evaluate(states.get(state));
+    }
+  }
+
+  private void invokeAll(final List<Callable<Object>> tasks) {
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while revaluing instruments", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Revaluing instruments failed", cause);
+    }
+  }
+
+  private static int upIndex(final int bump) {
+    return 2 * bump + 1;
+  }
+
+  private static int downIndex(final int bump) {
+    return 2 * bump + 2;
+  }
+
+}
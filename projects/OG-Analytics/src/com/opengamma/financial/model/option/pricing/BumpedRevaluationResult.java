@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The sensitivities of a number of instruments to a number of bumps, calculated by {@link BumpedRevaluationCalculator}. The first index of each array
+ * is the instrument, in the order of the pricing functions, and the others are bumps, in the order in which the bumps were supplied.
+ */
+public class BumpedRevaluationResult {
+  private final List<OptionDataBundleBump> _bumps;
+  private final double[] _values;
+  private final double[][] _firstOrder;
+  private final double[][] _secondOrder;
+  private final double[][][] _crossSecondOrder;
+
+  /**
+   * @param bumps The bumps, not null
+   * @param values The unbumped values, not null
+   * @param firstOrder The first-order sensitivities, not null
+   * @param secondOrder The second-order sensitivities, not null
+   * @param crossSecondOrder The matrix of second-order sensitivities, null if the cross sensitivities were not calculated
+   */
+  public BumpedRevaluationResult(final List<OptionDataBundleBump> bumps, final double[] values, final double[][] firstOrder, final double[][] secondOrder,
+      final double[][][] crossSecondOrder) {
+    Validate.notNull(bumps, "bumps");
+    Validate.notNull(values, "values");
+    Validate.notNull(firstOrder, "first order");
+    Validate.notNull(secondOrder, "second order");
+    Validate.isTrue(firstOrder.length == values.length && secondOrder.length == values.length, "must have sensitivities for every instrument");
+    Validate.isTrue(crossSecondOrder == null || crossSecondOrder.length == values.length, "must have cross sensitivities for every instrument");
+    _bumps = Collections.unmodifiableList(bumps);
+    _values = values;
+    _firstOrder = firstOrder;
+    _secondOrder = secondOrder;
+    _crossSecondOrder = crossSecondOrder;
+  }
+
+  public List<OptionDataBundleBump> getBumps() {
+    return _bumps;
+  }
+
+  public int getNumberOfInstruments() {
+    return _values.length;
+  }
+
+  /**
+   * @return The value of each instrument in the unbumped market state
+   */
+  public double[] getValues() {
+    return _values;
+  }
+
+  /**
+   * @return The central first difference of the value of each instrument with respect to each bump
+   */
+  public double[][] getFirstOrder() {
+    return _firstOrder;
+  }
+
+  /**
+   * @return The central second difference of the value of each instrument with respect to each bump
+   */
+  public double[][] getSecondOrder() {
+    return _secondOrder;
+  }
+
+  /**
+   * @return For each instrument, the symmetric matrix of the second differences of the value with respect to each pair of bumps, with the second
+   * differences with respect to each bump on the diagonal; null if the cross sensitivities were not calculated
+   */
+  public double[][][] getCrossSecondOrder() {
+    return _crossSecondOrder;
+  }
+
+  public boolean hasCrossSecondOrder() {
+    return _crossSecondOrder != null;
+  }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.util.time.DateUtils;
+
+/**
+ * A shift of one of the market data in an option data bundle, used by {@link BumpedRevaluationCalculator} to build bumped market states.
+ */
+public abstract class OptionDataBundleBump {
+  private final String _name;
+  private final double _shift;
+
+  /**
+   * @param name The name of the bump, not null
+   * @param shift The size of the bump, greater than zero
+   */
+  protected OptionDataBundleBump(final String name, final double shift) {
+    Validate.notNull(name, "name");
+    Validate.isTrue(shift > 0, "shift must be greater than zero");
+    _name = name;
+    _shift = shift;
+  }
+
+  /**
+   * Shifts the data.
+   * @param data The data, not null
+   * @param shift The (signed) amount to shift the data by
+   * @return The shifted data
+   */
+  public abstract StandardOptionDataBundle apply(StandardOptionDataBundle data, double shift);
+
+  public String getName() {
+    return _name;
+  }
+
+  public double getShift() {
+    return _shift;
+  }
+
+  @Override
+  public String toString() {
+    return _name + "(" + _shift + ")";
+  }
+
+  /**
+   * @param shift The size of the bump
+   * @return A bump of the spot
+   */
+  public static OptionDataBundleBump spot(final double shift) {
+    return new OptionDataBundleBump("Spot", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withSpot(data.getSpot() + x);
+      }
+    };
+  }
+
+  /**
+   * @param shift The size of the bump
+   * @return A parallel bump of the volatility surface
+   */
+  public static OptionDataBundleBump volatility(final double shift) {
+    return new OptionDataBundleBump("Volatility", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withVolatilitySurface(data.getVolatilitySurface().withParallelShift(x));
+      }
+    };
+  }
+
+  /**
+   * @param time The time of the point of the volatility surface to bump
+   * @param strike The strike of the point of the volatility surface to bump
+   * @param shift The size of the bump
+   * @return A bump of a single point of the volatility surface
+   */
+  public static OptionDataBundleBump volatilityNode(final double time, final double strike, final double shift) {
+    return new OptionDataBundleBump("Volatility[" + time + ", " + strike + "]", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withVolatilitySurface(data.getVolatilitySurface().withSingleShift(time, strike, x));
+      }
+    };
+  }
+
+  /**
+   * @param shift The size of the bump
+   * @return A parallel bump of the interest rate curve
+   */
+  public static OptionDataBundleBump interestRate(final double shift) {
+    return new OptionDataBundleBump("InterestRate", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withInterestRateCurve(data.getInterestRateCurve().withParallelShift(x));
+      }
+    };
+  }
+
+  /**
+   * @param time The time of the node of the interest rate curve to bump
+   * @param shift The size of the bump
+   * @return A bump of a single node of the interest rate curve
+   */
+  public static OptionDataBundleBump interestRateNode(final double time, final double shift) {
+    return new OptionDataBundleBump("InterestRate[" + time + "]", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withInterestRateCurve(data.getInterestRateCurve().withSingleShift(time, x));
+      }
+    };
+  }
+
+  /**
+   * @param shift The size of the bump
+   * @return A bump of the cost of carry
+   */
+  public static OptionDataBundleBump costOfCarry(final double shift) {
+    return new OptionDataBundleBump("CostOfCarry", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withCostOfCarry(data.getCostOfCarry() + x);
+      }
+    };
+  }
+
+  /**
+   * @param shift The size of the bump, as a year fraction
+   * @return A bump of the valuation date
+   */
+  public static OptionDataBundleBump time(final double shift) {
+    return new OptionDataBundleBump("Time", shift) {
+      @Override
+      public StandardOptionDataBundle apply(final StandardOptionDataBundle data, final double x) {
+        return data.withDate(DateUtils.getDateOffsetWithYearFraction(data.getDate(), x));
+      }
+    };
+  }
+
+}
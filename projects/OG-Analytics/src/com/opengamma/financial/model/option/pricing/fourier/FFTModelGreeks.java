@@ -5,16 +5,10 @@
  */
 package com.opengamma.financial.model.option.pricing.fourier;
 
-import static com.opengamma.math.ComplexMathUtils.divide;
-import static com.opengamma.math.ComplexMathUtils.exp;
-import static com.opengamma.math.ComplexMathUtils.multiply;
-import static com.opengamma.math.ComplexMathUtils.subtract;
 import static com.opengamma.math.number.ComplexNumber.MINUS_I;
-import static com.opengamma.math.number.ComplexNumber.ZERO;
 
 import org.apache.commons.lang.Validate;
 
-import com.opengamma.math.ComplexMathUtils;
 import com.opengamma.math.fft.JTransformsWrapper;
 import com.opengamma.math.function.Function1D;
 import com.opengamma.math.number.ComplexNumber;
@@ -121,11 +115,10 @@ public class FFTModelGreeks {
     final Function1D<ComplexNumber, ComplexNumber[]> func = ce.getAjointFunction(t);
     final int halfN = n % 2 == 0 ? n / 2 : (n + 1) / 2;
     final double a = -(halfN - 1) * delta;
-    final ComplexNumber[][] z = getPaddedArrays(alpha, delta, n, m, func, halfN);
-    int size = z.length;
-    final ComplexNumber[][] x = new ComplexNumber[size][];
+    final double[][] x = getPaddedArrays(alpha, delta, n, m, func, halfN);
+    final int size = x.length;
     for (int i = 0; i < size; i++) {
-      x[i] = JTransformsWrapper.transform1DComplex(z[i]);
+      JTransformsWrapper.transform1DComplexInPlace(x[i]);
     }
     final int nLowStrikes = Math.min(halfN, nStrikesBelowATM);
     final int nHighStrikes = Math.min(n - halfN, nStrikesAboveATM);
@@ -134,72 +127,69 @@ public class FFTModelGreeks {
     final double deltaK = 2 * Math.PI / delta / n;
     for (int i = 0; i < nLowStrikes; i++) {
       final double k = (i - nLowStrikes) * deltaK;
+      final int index = 2 * (i + n - nLowStrikes);
       res[0][i] = forward * Math.exp(k);
-      res[1][i] = discountFactor * forward * getReducedPrice(x[0][i + n - nLowStrikes], alpha, delta, k, a, isCall);
+      res[1][i] = discountFactor * forward * getReducedPrice(x[0][index], x[0][index + 1], alpha, delta, k, a, isCall);
       for (int j = 1; j < size; j++) {
-        res[j + 1][i] = discountFactor * forward * getReducedGreek(x[j][i + n - nLowStrikes], alpha, delta, k, a);
+        res[j + 1][i] = discountFactor * forward * getReducedGreek(x[j][index], x[j][index + 1], alpha, delta, k, a);
       }
     }
     for (int i = nLowStrikes; i < p; i++) {
       final double k = (i - nLowStrikes) * deltaK;
+      final int index = 2 * (i - nLowStrikes);
       res[0][i] = forward * Math.exp(k);
-      res[1][i] = discountFactor * forward * getReducedPrice(x[0][i - nLowStrikes], alpha, delta, k, a, isCall);
+      res[1][i] = discountFactor * forward * getReducedPrice(x[0][index], x[0][index + 1], alpha, delta, k, a, isCall);
       for (int j = 1; j < size; j++) {
-        res[j + 1][i] = discountFactor * forward * getReducedGreek(x[j][i - nLowStrikes], alpha, delta, k, a);
+        res[j + 1][i] = discountFactor * forward * getReducedGreek(x[j][index], x[j][index + 1], alpha, delta, k, a);
       }
     }
     return res;
   }
 
-  private ComplexNumber[][] getPaddedArrays(final double alpha, final double delta, final int n, final int m, final Function1D<ComplexNumber, ComplexNumber[]> ajointFunc, final int halfN) {
+  // Samples the Fourier transforms of the price and of its derivatives with respect to the model parameters into arrays of interleaved real and
+  // imaginary parts.
+  private double[][] getPaddedArrays(final double alpha, final double delta, final int n, final int m, final Function1D<ComplexNumber, ComplexNumber[]> ajointFunc,
+      final int halfN) {
     //TODO this is a bit of a fudge 
-    int size = ajointFunc.evaluate(MINUS_I).length;
-
-    final ComplexNumber[][] z = new ComplexNumber[size][n];
-
-    final int lowerPadOutSize = halfN - m;
-    final int upperPadOutSize = n - halfN + 1 - m;
-
-    for (int j = 0; j < size; j++) {
-      for (int i = 0; i < lowerPadOutSize; i++) {
-        z[j][i] = ZERO;
-      }
-      for (int i = n - upperPadOutSize; i < n; i++) {
-        z[j][i] = ZERO;
-      }
-    }
-
-    ComplexNumber u = new ComplexNumber(0.0, -(1 + alpha));
+    final int size = ajointFunc.evaluate(MINUS_I).length;
+    final double[][] z = new double[size][2 * n];
+    final double uImag = -(1 + alpha);
     final int offset = halfN - 1;
-    ComplexNumber[] f = ajointFunc.evaluate(u);
-    ComplexNumber num = exp(f[0]);
-    ComplexNumber denom = multiply(u, subtract(MINUS_I, u));
-    ComplexNumber v = divide(num, denom);
-    z[0][offset] = v;
-    for (int j = 1; j < size; j++) {
-      ComplexNumber temp = multiply(v, f[j]);
-      z[j][offset] = temp;
-    }
-    for (int i = 1; i < m; i++) {
-      u = new ComplexNumber(i * delta, -(1 + alpha));
-      f = ajointFunc.evaluate(u);
-      num = exp(f[0]);
-      denom = multiply(u, subtract(MINUS_I, u));
-      v = divide(num, denom);
-      z[0][offset + i] = v;
-      z[0][offset - i] = ComplexMathUtils.conjugate(v);
-      for (int j = 1; j < size; j++) {
-        ComplexNumber temp = multiply(v, f[j]);
-        z[j][offset + i] = temp;
-        z[j][offset - i] = ComplexMathUtils.conjugate(temp); //TODO the FFT should take care of this
+    for (int i = 0; i < m; i++) {
+      final double uReal = i * delta;
+      final ComplexNumber[] f = ajointFunc.evaluate(new ComplexNumber(uReal, uImag));
+      final double mod = Math.exp(f[0].getReal());
+      final double numReal = mod * Math.cos(f[0].getImaginary());
+      final double numImag = mod * Math.sin(f[0].getImaginary());
+      final double denomReal = uReal * uReal - uImag * (uImag + 1);
+      final double denomImag = uReal * (2 * uImag + 1);
+      final double denomModSq = denomReal * denomReal + denomImag * denomImag;
+      final double vReal = -(numReal * denomReal + numImag * denomImag) / denomModSq;
+      final double vImag = -(numImag * denomReal - numReal * denomImag) / denomModSq;
+      for (int j = 0; j < size; j++) {
+        final double real;
+        final double imag;
+        if (j == 0) {
+          real = vReal;
+          imag = vImag;
+        } else {
+          real = vReal * f[j].getReal() - vImag * f[j].getImaginary();
+          imag = vReal * f[j].getImaginary() + vImag * f[j].getReal();
+        }
+        z[j][2 * (offset + i)] = real;
+        z[j][2 * (offset + i) + 1] = imag;
+        if (i > 0) {
+          z[j][2 * (offset - i)] = real;
+          z[j][2 * (offset - i) + 1] = -imag; //TODO the FFT should take care of this
+        }
       }
     }
     return z;
   }
 
-  private double getReducedPrice(final ComplexNumber x, final double alpha, final double delta, final double k, final double a, final boolean isCall) {
-    final ComplexNumber temp = ComplexMathUtils.multiply(ComplexMathUtils.exp(new ComplexNumber(-alpha * k, -k * a)), x);
-    final double y = delta * temp.getReal() / 2 / Math.PI;
+  private double getReducedPrice(final double xReal, final double xImag, final double alpha, final double delta, final double k, final double a,
+      final boolean isCall) {
+    final double y = getReducedGreek(xReal, xImag, alpha, delta, k, a);
     if (isCall) {
       if (alpha > 0.0) {
         return y;
@@ -217,10 +207,8 @@ public class FFTModelGreeks {
     return y + Math.exp(k);
   }
 
-  private double getReducedGreek(final ComplexNumber x, final double alpha, final double delta, final double k, final double a) {
-    final ComplexNumber temp = ComplexMathUtils.multiply(ComplexMathUtils.exp(new ComplexNumber(-alpha * k, -k * a)), x);
-    final double y = delta * temp.getReal() / 2 / Math.PI;
-    return y;
+  private double getReducedGreek(final double xReal, final double xImag, final double alpha, final double delta, final double k, final double a) {
+    return delta * Math.exp(-alpha * k) * (Math.cos(k * a) * xReal + Math.sin(k * a) * xImag) / 2 / Math.PI;
   }
 
 }
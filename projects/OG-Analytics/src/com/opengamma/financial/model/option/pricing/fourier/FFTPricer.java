@@ -5,23 +5,115 @@
  */
 package com.opengamma.financial.model.option.pricing.fourier;
 
-import static  com.opengamma.math.number.ComplexNumber.ZERO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.Validate;
 
-import com.opengamma.math.ComplexMathUtils;
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.math.fft.JTransformsWrapper;
 import com.opengamma.math.function.Function1D;
 import com.opengamma.math.number.ComplexNumber;
 import com.opengamma.math.statistics.distribution.NormalDistribution;
 import com.opengamma.math.statistics.distribution.ProbabilityDistribution;
+import com.opengamma.util.ArgumentChecker;
 
 /**
- * 
+ * Prices European options across a range of strikes using a fast Fourier transform. The samples of the transform are held as interleaved real and
+ * imaginary parts and transformed in place, using FFT plans that are cached by size. All of the expiries of a surface can be priced in one call; if an
+ * executor is supplied the expiries are priced in parallel.
  */
 public class FFTPricer {
   private static final ProbabilityDistribution<Double> NORMAL = new NormalDistribution(0, 1);
   private static final IntegralLimitCalculator LIMIT_CALCULATOR = new IntegralLimitCalculator();
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  public FFTPricer() {
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param executor The executor used to price the expiries of a surface, not null
+   * @param parallelism The number of chunks to split the expiries into; typically the number of threads available to the executor
+   */
+  public FFTPricer(final ExecutorService executor, final int parallelism) {
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * Price European options across a range of strikes for each of a set of expiries using a FFT. Each expiry is priced in the same way as
+   * {@link #price(double, double, double, boolean, MartingaleCharacteristicExponent, double, double, int, double, double, double)}.
+   * @param forward The forward value of the underlying for each expiry, not null
+   * @param discountFactor The discount factor for each expiry, not null
+   * @param t The times to expiry, not null
+   * @param isCall true for call 
+   * @param ce The Characteristic Exponent (log of characteristic function) of the returns of the underlying
+   * @param lowestStrike The lowest strike to return for each expiry, not null
+   * @param highestStrike The highest strike to return for each expiry, not null
+   * @param minStrikesDisplayed minimum number of strikes returned for each expiry
+   * @param limitSigma An estimate of the implied vol for each expiry, not null
+   * @param alpha Regularization factor. Values of 0 or -1 are not allowed. -0.5 is recommended  
+   * @param tol Tolerance - smaller values give higher accuracy 
+   * @return for each expiry, an array of arrays of strikes and prices 
+   */
+  public double[][][] price(final double[] forward, final double[] discountFactor, final double[] t, final boolean isCall, final MartingaleCharacteristicExponent ce,
+      final double[] lowestStrike, final double[] highestStrike, final int minStrikesDisplayed, final double[] limitSigma, final double alpha, final double tol) {
+    Validate.notNull(forward, "forwards");
+    Validate.notNull(discountFactor, "discount factors");
+    Validate.notNull(t, "times to expiry");
+    Validate.notNull(lowestStrike, "lowest strikes");
+    Validate.notNull(highestStrike, "highest strikes");
+    Validate.notNull(limitSigma, "limit sigmas");
+    final int nExpiries = t.length;
+    Validate.isTrue(forward.length == nExpiries && discountFactor.length == nExpiries && lowestStrike.length == nExpiries && highestStrike.length == nExpiries
+        && limitSigma.length == nExpiries, "Need one forward, discount factor, strike range and limit sigma per expiry");
+    final double[][][] res = new double[nExpiries][][];
+    if (_executor == null || _parallelism == 1 || nExpiries < 2) {
+      for (int i = 0; i < nExpiries; i++) {
+        res[i] = price(forward[i], discountFactor[i], t[i], isCall, ce, lowestStrike[i], highestStrike[i], minStrikesDisplayed, limitSigma[i], alpha, tol);
+      }
+      return res;
+    }
+    final int chunkSize = (nExpiries + _parallelism - 1) / _parallelism;
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int start = 0; start < nExpiries; start += chunkSize) {
+      final int chunkStart = start;
+      final int chunkEnd = Math.min(start + chunkSize, nExpiries);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          for (int i = chunkStart; i < chunkEnd; i++) {
+            res[i] = price(forward[i], discountFactor[i], t[i], isCall, ce, lowestStrike[i], highestStrike[i], minStrikesDisplayed, limitSigma[i], alpha, tol);
+          }
+          return null;
+        }
+      });
+    }
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while pricing expiries", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Pricing expiries failed", cause);
+    }
+    return res;
+  }
 
   /**
    * Price a European option across a range of strikes using a FFT. The terminal price is assumed to be of the form S = F*exp(x), where F is the forward,
@@ -177,11 +269,11 @@ public class FFTPricer {
     Validate.isTrue(m > 0, "need m > 0");
     Validate.isTrue(n >= 2 * m - 1, "need n > 2m-1");
 
-    final Function1D<ComplexNumber, ComplexNumber> func = new EuropeanCallFourierTransform(ce).getFunction(t);
+    final Function1D<ComplexNumber, ComplexNumber> func = ce.getFunction(t);
     final int halfN = n % 2 == 0 ? n / 2 : (n + 1) / 2;
     final double a = -(halfN - 1) * delta;
-    final ComplexNumber[] z = getPaddedArray(alpha, delta, n, m, func, halfN);
-    final ComplexNumber[] x = JTransformsWrapper.transform1DComplex(z);
+    final double[] x = getPaddedArray(alpha, delta, n, m, func, halfN);
+    JTransformsWrapper.transform1DComplexInPlace(x);
     final int nLowStrikes = Math.min(halfN, nStrikesBelowATM);
     final int nHighStrikes = Math.min(n - halfN, nStrikesAboveATM);
     final int p = 1 + nLowStrikes + nHighStrikes;
@@ -189,47 +281,50 @@ public class FFTPricer {
     final double deltaK = 2 * Math.PI / delta / n;
     for (int i = 0; i < nLowStrikes; i++) {
       final double k = (i - nLowStrikes) * deltaK;
+      final int index = 2 * (i + n - nLowStrikes);
       res[i][0] = forward * Math.exp(k);
-      res[i][1] = discountFactor * forward * getReducedPrice(x[i + n - nLowStrikes], alpha, delta, k, a, isCall);
+      res[i][1] = discountFactor * forward * getReducedPrice(x[index], x[index + 1], alpha, delta, k, a, isCall);
     }
     for (int i = nLowStrikes; i < p; i++) {
       final double k = (i - nLowStrikes) * deltaK;
+      final int index = 2 * (i - nLowStrikes);
       res[i][0] = forward * Math.exp(k);
-      res[i][1] = discountFactor * forward * getReducedPrice(x[i - nLowStrikes], alpha, delta, k, a, isCall);
+      res[i][1] = discountFactor * forward * getReducedPrice(x[index], x[index + 1], alpha, delta, k, a, isCall);
     }
     return res;
   }
 
-  private ComplexNumber[] getPaddedArray(final double alpha, final double delta, final int n, final int m, final Function1D<ComplexNumber, ComplexNumber> func, final int halfN) {
-    final ComplexNumber[] z = new ComplexNumber[n];
-
-    final int lowerPadOutSize = halfN - m;
-    final int upperPadOutSize = n - halfN + 1 - m;
-
-    for (int i = 0; i < lowerPadOutSize; i++) {
-      z[i] = ZERO;
-    }
-
-    for (int i = n - upperPadOutSize; i < n; i++) {
-      z[i] = ZERO;
-    }
-
-    ComplexNumber u = new ComplexNumber(0.0, -(1 + alpha));
+  // Samples the Fourier transform of the call price, -exp(psi(u)) / (u(u + i)), into an array of interleaved real and imaginary parts. Only the
+  // characteristic exponent is evaluated with ComplexNumber; the rest of the arithmetic is done on primitives.
+  private double[] getPaddedArray(final double alpha, final double delta, final int n, final int m, final Function1D<ComplexNumber, ComplexNumber> func,
+      final int halfN) {
+    final double[] z = new double[2 * n];
+    final double uImag = -(1 + alpha);
     final int offset = halfN - 1;
-    z[offset] = func.evaluate(u);
-
-    for (int i = 1; i < m; i++) {
-      u = new ComplexNumber(i * delta, -(1 + alpha));
-      final ComplexNumber f = func.evaluate(u);
-      z[offset + i] = f;
-      z[offset - i] = ComplexMathUtils.conjugate(f); //TODO the FFT should take care of this
+    for (int i = 0; i < m; i++) {
+      final double uReal = i * delta;
+      final ComplexNumber psi = func.evaluate(new ComplexNumber(uReal, uImag));
+      final double mod = Math.exp(psi.getReal());
+      final double numReal = mod * Math.cos(psi.getImaginary());
+      final double numImag = mod * Math.sin(psi.getImaginary());
+      final double denomReal = uReal * uReal - uImag * (uImag + 1);
+      final double denomImag = uReal * (2 * uImag + 1);
+      final double denomModSq = denomReal * denomReal + denomImag * denomImag;
+      final double real = -(numReal * denomReal + numImag * denomImag) / denomModSq;
+      final double imag = -(numImag * denomReal - numReal * denomImag) / denomModSq;
+      z[2 * (offset + i)] = real;
+      z[2 * (offset + i) + 1] = imag;
+      if (i > 0) {
+        z[2 * (offset - i)] = real;
+        z[2 * (offset - i) + 1] = -imag; //TODO the FFT should take care of this
+      }
     }
     return z;
   }
 
-  private double getReducedPrice(final ComplexNumber x, final double alpha, final double delta, final double k, final double a, final boolean isCall) {
-    final ComplexNumber temp = ComplexMathUtils.multiply(ComplexMathUtils.exp(new ComplexNumber(-alpha * k, -k * a)), x);
-    final double y = delta * temp.getReal() / 2 / Math.PI;
+  private double getReducedPrice(final double xReal, final double xImag, final double alpha, final double delta, final double k, final double a,
+      final boolean isCall) {
+    final double y = delta * Math.exp(-alpha * k) * (Math.cos(k * a) * xReal + Math.sin(k * a) * xImag) / 2 / Math.PI;
     if (isCall) {
       if (alpha > 0.0) {
         return y;
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.model.option.definition.BinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.tree.ConstantRecombiningBinomialTree;
+import com.opengamma.financial.model.tree.RecombiningBinomialTree;
+
+/**
+ * Prices options on the same recombining binomial lattice as {@link BinomialOptionModel}, but backward-inducts in a single array of length n + 1 instead of
+ * building a tree of nodes. The delta, gamma and theta are read from the first two levels of the lattice, as in {@link BinomialOptionModel}.
+ * @param <T> The type of the data bundle
+ */
+public class BinomialLatticeOptionModel<T extends StandardOptionDataBundle> extends LatticeOptionModel<T> {
+  private final BinomialOptionModelDefinition<OptionDefinition, T> _model;
+
+  public BinomialLatticeOptionModel(final BinomialOptionModelDefinition<OptionDefinition, T> model) {
+    this(model, 1000);
+  }
+
+  public BinomialLatticeOptionModel(final BinomialOptionModelDefinition<OptionDefinition, T> model, final int n) {
+    super(n);
+    Validate.notNull(model, "model");
+    Validate.isTrue(n >= 3, "need at least 3 steps: the greeks are read from the first two levels of the lattice");
+    _model = model;
+  }
+
+  public BinomialLatticeOptionModel(final BinomialOptionModelDefinition<OptionDefinition, T> model, final int n, final ExecutorService executor, final int parallelism) {
+    super(n, executor, parallelism);
+    Validate.notNull(model, "model");
+    Validate.isTrue(n >= 3, "need at least 3 steps: the greeks are read from the first two levels of the lattice");
+    _model = model;
+  }
+
+  @Override
+  protected int getNumberOfTerminalNodes() {
+    return RecombiningBinomialTree.NODES.evaluate(getNumberOfSteps());
+  }
+
+  @Override
+  protected LatticeResult evaluate(final OptionDefinition definition, final T data, final double[] values, final double[] ratios) {
+    final int n = getNumberOfSteps();
+    final int j = getNumberOfTerminalNodes();
+    final double u = _model.getUpFactor(definition, data, n, j);
+    final double d = _model.getDownFactor(definition, data, n, j);
+    final RecombiningBinomialTree<Double> pTree = _model.getUpProbabilityTree(definition, data, n, j);
+    final double spot = data.getSpot();
+    final double t = definition.getTimeToExpiry(data.getDate());
+    final double r = data.getInterestRate(t);
+    final double df = Math.exp(-r * t / n);
+    final LatticePayoff<T> payoff = new LatticePayoff<T>(definition, data);
+    final boolean hasEarlyExercise = payoff.hasEarlyExercise();
+    final double ratio = u / d;
+    ratios[0] = 1;
+    for (int k = 1; k < j; k++) {
+      ratios[k] = ratios[k - 1] * ratio;
+    }
+    payoff.setTerminalValues(values, spot * Math.pow(d, n), ratios, j);
+    final boolean isConstant = pTree instanceof ConstantRecombiningBinomialTree;
+    final double p = isConstant ? pTree.getNode(0, 0) : 0;
+    final double up = df * p;
+    final double down = df * (1 - p);
+    double value10 = Double.NaN;
+    double value11 = Double.NaN;
+    double value20 = Double.NaN;
+    double value21 = Double.NaN;
+    double value22 = Double.NaN;
+    for (int i = n - 1; i >= 0; i--) {
+      if (isConstant) {
+        for (int k = 0; k <= i; k++) {
+          values[k] = down * values[k] + up * values[k + 1];
+        }
+      } else {
+        for (int k = 0; k <= i; k++) {
+          final double pk = pTree.getNode(i, k);
+          values[k] = df * ((1 - pk) * values[k] + pk * values[k + 1]);
+        }
+      }
+      if (hasEarlyExercise) {
+        payoff.applyExercise(values, spot * Math.pow(d, i), ratios, i + 1);
+      }
+      if (i == 2) {
+        value20 = values[0];
+        value21 = values[1];
+        value22 = values[2];
+      } else if (i == 1) {
+        value10 = values[0];
+        value11 = values[1];
+      }
+    }
+    final double price = values[0];
+    final double delta = (value11 - value10) / (spot * (u - d));
+    final double spot20 = spot * d * d;
+    final double spot21 = spot * u * d;
+    final double spot22 = spot * u * u;
+    final double gamma = ((value22 - value21) / (spot22 - spot21) - (value21 - value20) / (spot21 - spot20)) / (0.5 * (spot22 - spot20));
+    final double theta = (value21 - price) / (2 * t / n);
+    return new LatticeResult(price, delta, gamma, theta);
+  }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.financial.greeks.Greek;
+import com.opengamma.financial.greeks.GreekResultCollection;
+import com.opengamma.financial.greeks.GreekVisitor;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.option.pricing.FiniteDifferenceGreekVisitor;
+import com.opengamma.financial.model.option.pricing.OptionModel;
+import com.opengamma.math.function.Function1D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Base class for option models that backward-induct through a recombining lattice held in a single array, rather than building a tree of nodes. Only the
+ * current level of the lattice is stored; the values at the first few levels are kept as they are passed, so that price, delta, gamma and theta come from
+ * one pass. Any other greek is calculated by finite difference, repricing on the lattice.
+ * <p>
+ * Batches of options on the same underlying can be priced in one call; if an executor is supplied the batch is split into chunks that are priced in
+ * parallel, each reusing its own arrays.
+ * @param <T> The type of the data bundle
+ */
+public abstract class LatticeOptionModel<T extends StandardOptionDataBundle> implements OptionModel<OptionDefinition, T> {
+  private final int _n;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  /**
+   * @param n The number of time steps in the lattice, greater than zero
+   */
+  protected LatticeOptionModel(final int n) {
+    ArgumentChecker.notNegativeOrZero(n, "n");
+    _n = n;
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param n The number of time steps in the lattice, greater than zero
+   * @param executor The executor used to price batches of options, not null
+   * @param parallelism The number of chunks to split a batch into; typically the number of threads available to the executor
+   */
+  protected LatticeOptionModel(final int n, final ExecutorService executor, final int parallelism) {
+    ArgumentChecker.notNegativeOrZero(n, "n");
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _n = n;
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * Gets the number of time steps in the lattice.
+   * @return The number of steps
+   */
+  public int getNumberOfSteps() {
+    return _n;
+  }
+
+  /**
+   * Gets the number of nodes at the last level of the lattice, which is the length of the arrays needed to price an option.
+   * @return The number of nodes
+   */
+  protected abstract int getNumberOfTerminalNodes();
+
+  /**
+   * Prices an option by backward induction.
+   * @param definition The option definition
+   * @param data The data
+   * @param values An array of length {@link #getNumberOfTerminalNodes()} to hold the option values at one level of the lattice
+   * @param ratios An array of length {@link #getNumberOfTerminalNodes()} to hold the ratio of the spot at each node of a level to the spot at the lowest node
+   * @return The price, delta, gamma and theta
+   */
+  protected abstract LatticeResult evaluate(OptionDefinition definition, T data, double[] values, double[] ratios);
+
+  @Override
+  public GreekResultCollection getGreeks(final OptionDefinition definition, final T data, final Set<Greek> requiredGreeks) {
+    Validate.notNull(definition, "definition");
+    Validate.notNull(data, "data");
+    Validate.notNull(requiredGreeks, "required greeks");
+    return getGreeks(definition, data, requiredGreeks, new double[getNumberOfTerminalNodes()], new double[getNumberOfTerminalNodes()]);
+  }
+
+  /**
+   * Prices an option.
+   * @param definition The option definition, not null
+   * @param data The data, not null
+   * @return The price
+   */
+  public double getPrice(final OptionDefinition definition, final T data) {
+    Validate.notNull(definition, "definition");
+    Validate.notNull(data, "data");
+    return evaluate(definition, data, new double[getNumberOfTerminalNodes()], new double[getNumberOfTerminalNodes()]).getPrice();
+  }
+
+  /**
+   * Prices a batch of options on the same underlying.
+   * @param definitions The option definitions, not null
+   * @param data The data, not null
+   * @return The prices, in the same order as the definitions
+   */
+  public double[] getPrices(final OptionDefinition[] definitions, final T data) {
+    final GreekResultCollection[] greeks = getGreeks(definitions, data, null);
+    final double[] res = new double[definitions.length];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = greeks[i].get(Greek.FAIR_PRICE);
+    }
+    return res;
+  }
+
+  /**
+   * Calculates greeks for a batch of options on the same underlying.
+   * @param definitions The option definitions, not null
+   * @param data The data, not null
+   * @param requiredGreeks The greeks to calculate. If null, only the price is calculated
+   * @return The greeks, in the same order as the definitions
+   */
+  public GreekResultCollection[] getGreeks(final OptionDefinition[] definitions, final T data, final Set<Greek> requiredGreeks) {
+    Validate.notNull(definitions, "definitions");
+    Validate.noNullElements(definitions, "definitions");
+    Validate.notNull(data, "data");
+    final int n = definitions.length;
+    final GreekResultCollection[] res = new GreekResultCollection[n];
+    if (_executor == null || _parallelism == 1 || n < 2) {
+      getGreeks(definitions, data, requiredGreeks, res, 0, n);
+      return res;
+    }
+    final int chunkSize = (n + _parallelism - 1) / _parallelism;
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int start = 0; start < n; start += chunkSize) {
+      final int chunkStart = start;
+      final int chunkEnd = Math.min(start + chunkSize, n);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          getGreeks(definitions, data, requiredGreeks, res, chunkStart, chunkEnd);
+          return null;
+        }
+      });
+    }
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while pricing batch of options", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Pricing batch of options failed", cause);
+    }
+    return res;
+  }
+
+  private void getGreeks(final OptionDefinition[] definitions, final T data, final Set<Greek> requiredGreeks, final GreekResultCollection[] res, final int start,
+      final int end) {
+    final double[] values = new double[getNumberOfTerminalNodes()];
+    final double[] ratios = new double[getNumberOfTerminalNodes()];
+    for (int i = start; i < end; i++) {
+      if (requiredGreeks == null) {
+        res[i] = new GreekResultCollection();
+        res[i].put(Greek.FAIR_PRICE, evaluate(definitions[i], data, values, ratios).getPrice());
+      } else {
+        res[i] = getGreeks(definitions[i], data, requiredGreeks, values, ratios);
+      }
+    }
+  }
+
+  private GreekResultCollection getGreeks(final OptionDefinition definition, final T data, final Set<Greek> requiredGreeks, final double[] values,
+      final double[] ratios) {
+    final LatticeResult lattice = evaluate(definition, data, values, ratios);
+    final Function1D<T, Double> pricingFunction = new Function1D<T, Double>() {
+      @Override
+      public Double evaluate(final T bumpedData) {
+        return LatticeOptionModel.this.evaluate(definition, bumpedData, values, ratios).getPrice();
+      }
+    };
+    final GreekVisitor<Double> visitor = new FiniteDifferenceGreekVisitor<T, OptionDefinition>(pricingFunction, data, definition) {
+
+      @Override
+      public Double visitPrice() {
+        return lattice.getPrice();
+      }
+
+      @Override
+      public Double visitDelta() {
+        return lattice.getDelta();
+      }
+
+      @Override
+      public Double visitGamma() {
+        return lattice.getGamma();
+      }
+
+      @Override
+      public Double visitTheta() {
+        return lattice.getTheta();
+      }
+    };
+    final GreekResultCollection results = new GreekResultCollection();
+    for (final Greek greek : requiredGreeks) {
+      results.put(greek, greek.accept(visitor));
+    }
+    return results;
+  }
+
+  /**
+   * The price of an option and the greeks that can be read from the first levels of the lattice.
+   */
+  protected static final class LatticeResult {
+    private final double _price;
+    private final double _delta;
+    private final double _gamma;
+    private final double _theta;
+
+    /**
+     * @param price The price
+     * @param delta The delta
+     * @param gamma The gamma
+     * @param theta The theta
+     */
+    public LatticeResult(final double price, final double delta, final double gamma, final double theta) {
+      _price = price;
+      _delta = delta;
+      _gamma = gamma;
+      _theta = theta;
+    }
+
+    public double getPrice() {
+      return _price;
+    }
+
+    public double getDelta() {
+      return _delta;
+    }
+
+    public double getGamma() {
+      return _gamma;
+    }
+
+    public double getTheta() {
+      return _theta;
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import com.opengamma.financial.model.option.definition.AmericanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.EuropeanExerciseFunction;
+import com.opengamma.financial.model.option.definition.EuropeanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.OptionExerciseFunction;
+import com.opengamma.financial.model.option.definition.OptionPayoffFunction;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+
+/**
+ * Applies the payoff and exercise functions of an option to one level of a lattice. The spot at node j of a level is {@code base * ratios[j]}. Vanilla options
+ * are handled directly on the arrays; any other option is handled by calling its payoff and exercise functions at each node, as the tree models do.
+ * @param <T> The type of the data bundle
+ */
+final class LatticePayoff<T extends StandardOptionDataBundle> {
+  private final T _data;
+  private final OptionPayoffFunction<T> _payoffFunction;
+  private final OptionExerciseFunction<T> _exerciseFunction;
+  private final boolean _isVanilla;
+  private final boolean _isCall;
+  private final double _strike;
+  private final boolean _hasEarlyExercise;
+
+  @SuppressWarnings("unchecked")
+  LatticePayoff(final OptionDefinition definition, final T data) {
+    _data = data;
+    _payoffFunction = definition.getPayoffFunction();
+    _exerciseFunction = definition.getExerciseFunction();
+    _isVanilla = definition instanceof EuropeanVanillaOptionDefinition || definition instanceof AmericanVanillaOptionDefinition;
+    _isCall = definition.isCall();
+    _strike = definition.getStrike();
+    _hasEarlyExercise = !(_exerciseFunction instanceof EuropeanExerciseFunction);
+  }
+
+  boolean hasEarlyExercise() {
+    return _hasEarlyExercise;
+  }
+
+  void setTerminalValues(final double[] values, final double base, final double[] ratios, final int nodes) {
+    if (_isVanilla) {
+      if (_isCall) {
+        for (int j = 0; j < nodes; j++) {
+          values[j] = Math.max(0, base * ratios[j] - _strike);
+        }
+      } else {
+        for (int j = 0; j < nodes; j++) {
+          values[j] = Math.max(0, _strike - base * ratios[j]);
+        }
+      }
+      return;
+    }
+    for (int j = 0; j < nodes; j++) {
+      values[j] = _payoffFunction.getPayoff(getData(base * ratios[j]), 0.);
+    }
+  }
+
+  void applyExercise(final double[] values, final double base, final double[] ratios, final int nodes) {
+    if (!_hasEarlyExercise) {
+      return;
+    }
+    if (_isVanilla) {
+      if (_isCall) {
+        for (int j = 0; j < nodes; j++) {
+          values[j] = Math.max(values[j], base * ratios[j] - _strike);
+        }
+      } else {
+        for (int j = 0; j < nodes; j++) {
+          values[j] = Math.max(values[j], _strike - base * ratios[j]);
+        }
+      }
+      return;
+    }
+    for (int j = 0; j < nodes; j++) {
+      final T data = getData(base * ratios[j]);
+      final double value = values[j];
+      values[j] = _exerciseFunction.shouldExercise(data, value) ? _payoffFunction.getPayoff(data, value) : value;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T getData(final double spot) {
+    return (T) _data.withSpot(spot);
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.option.definition.TrinomialOptionModelDefinition;
+import com.opengamma.financial.model.tree.RecombiningTrinomialTree;
+
+/**
+ * Prices options on the same recombining trinomial lattice as {@link TrinomialOptionModel}, but backward-inducts in a single array of length 2n + 1 instead of
+ * building a tree of nodes. The delta, gamma and theta are read from the first level of the lattice.
+ * <p>
+ * The spot at node k of level i is {@latex.inline $S e^{(k - i)\\Delta x}$}, so early exercise is tested against the undiscounted spot.
+ * @param <T> The type of the data bundle
+ */
+public class TrinomialLatticeOptionModel<T extends StandardOptionDataBundle> extends LatticeOptionModel<T> {
+  private final TrinomialOptionModelDefinition<OptionDefinition, T> _model;
+
+  public TrinomialLatticeOptionModel(final TrinomialOptionModelDefinition<OptionDefinition, T> model) {
+    this(model, 1000);
+  }
+
+  public TrinomialLatticeOptionModel(final TrinomialOptionModelDefinition<OptionDefinition, T> model, final int n) {
+    super(n);
+    Validate.notNull(model, "model");
+    Validate.isTrue(n >= 2, "need at least 2 steps: the greeks are read from the first level of the lattice");
+    _model = model;
+  }
+
+  public TrinomialLatticeOptionModel(final TrinomialOptionModelDefinition<OptionDefinition, T> model, final int n, final ExecutorService executor, final int parallelism) {
+    super(n, executor, parallelism);
+    Validate.notNull(model, "model");
+    Validate.isTrue(n >= 2, "need at least 2 steps: the greeks are read from the first level of the lattice");
+    _model = model;
+  }
+
+  @Override
+  protected int getNumberOfTerminalNodes() {
+    return RecombiningTrinomialTree.NODES.evaluate(getNumberOfSteps());
+  }
+
+  @Override
+  protected LatticeResult evaluate(final OptionDefinition definition, final T data, final double[] values, final double[] ratios) {
+    final int n = getNumberOfSteps();
+    final int j = getNumberOfTerminalNodes();
+    final double up = _model.getUpFactor(definition, data, n, j);
+    final double mid = _model.getMidFactor(definition, data, n, j);
+    final double down = _model.getDownFactor(definition, data, n, j);
+    final double spot = data.getSpot();
+    final double t = definition.getTimeToExpiry(data.getDate());
+    final double r = data.getInterestRate(t);
+    final double edx = Math.exp(_model.getDX(definition, data, n, j));
+    final double df = Math.exp(-r * t / n);
+    final LatticePayoff<T> payoff = new LatticePayoff<T>(definition, data);
+    final boolean hasEarlyExercise = payoff.hasEarlyExercise();
+    ratios[0] = 1;
+    for (int k = 1; k < j; k++) {
+      ratios[k] = ratios[k - 1] * edx;
+    }
+    payoff.setTerminalValues(values, spot * Math.pow(edx, -n), ratios, j);
+    double value10 = Double.NaN;
+    double value11 = Double.NaN;
+    double value12 = Double.NaN;
+    for (int i = n - 1; i >= 0; i--) {
+      final int nodes = RecombiningTrinomialTree.NODES.evaluate(i);
+      for (int k = 0; k < nodes; k++) {
+        values[k] = df * (up * values[k + 2] + mid * values[k + 1] + down * values[k]);
+      }
+      if (hasEarlyExercise) {
+        payoff.applyExercise(values, spot * Math.pow(edx, -i), ratios, nodes);
+      }
+      if (i == 1) {
+        value10 = values[0];
+        value11 = values[1];
+        value12 = values[2];
+      }
+    }
+    final double price = values[0];
+    final double spot10 = spot / edx;
+    final double spot12 = spot * edx;
+    final double delta = (value12 - value10) / (spot12 - spot10);
+    final double gamma = ((value12 - value11) / (spot12 - spot) - (value11 - value10) / (spot - spot10)) / (0.5 * (spot12 - spot10));
+    final double theta = (value11 - price) / (t / n);
+    return new LatticeResult(price, delta, gamma, theta);
+  }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.pnl;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The result of a {@link SensitivityPnLAttributionCalculator}: the P&L of a set of positions over a set of dates, broken down by position and by risk factor.
+ */
+public class SensitivityPnLAttribution {
+  private final double[][] _positionPnL;
+  private final double[][] _factorPnL;
+  private final double[][] _positionFactorPnL;
+  private final double[] _portfolioPnL;
+
+  /**
+   * @param positionPnL The P&L of each position on each date, not null
+   * @param factorPnL The P&L attributed to each factor on each date, not null
+   * @param positionFactorPnL The total P&L of each position attributed to each factor, not null
+   * @param portfolioPnL The P&L of the portfolio on each date, not null
+   */
+  public SensitivityPnLAttribution(final double[][] positionPnL, final double[][] factorPnL, final double[][] positionFactorPnL, final double[] portfolioPnL) {
+    Validate.notNull(positionPnL, "position P&L");
+    Validate.notNull(factorPnL, "factor P&L");
+    Validate.notNull(positionFactorPnL, "position factor P&L");
+    Validate.notNull(portfolioPnL, "portfolio P&L");
+    _positionPnL = positionPnL;
+    _factorPnL = factorPnL;
+    _positionFactorPnL = positionFactorPnL;
+    _portfolioPnL = portfolioPnL;
+  }
+
+  /**
+   * @return The P&L, with one row per position and one column per date
+   */
+  public double[][] getPositionPnL() {
+    return _positionPnL;
+  }
+
+  /**
+   * @return The P&L attributed to each factor, with one row per factor and one column per date
+   */
+  public double[][] getFactorPnL() {
+    return _factorPnL;
+  }
+
+  /**
+   * @return The P&L over all dates attributed to each factor, with one row per position and one column per factor
+   */
+  public double[][] getPositionFactorPnL() {
+    return _positionFactorPnL;
+  }
+
+  /**
+   * @return The P&L of the portfolio on each date
+   */
+  public double[] getPortfolioPnL() {
+    return _portfolioPnL;
+  }
+
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.pnl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.math.util.MathUtils;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.math.matrix.DenseMatrixKernels;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Calculates the P&L of a portfolio of positions from their sensitivities to a set of risk factors and the historical moves of those factors, using a
+ * Taylor expansion. This gives the same P&L as {@link SensitivityPnLCalculator}, but for all positions and all dates at once: rather than combining
+ * one time series per sensitivity, the sensitivities are held in a matrix {@latex.inline $\\mathbf{S}$} with one row per position and one column per
+ * term of the expansion, and the moves of the factors are expanded into a matrix {@latex.inline $\\mathbf{M}$} with one row per term and one column
+ * per date. The P&L of each position on each date is then the single product {@latex.inline $\\mathbf{SM}$}, which is calculated with the blocked
+ * kernels of {@link DenseMatrixKernels}. When most of the sensitivities are zero, as they are for a book of options on many different underlyings,
+ * the product is instead accumulated row by row over the non-zero sensitivities. If an executor is supplied, the rows of the products are split into
+ * bands that are calculated in parallel.
+ * <p>
+ * Each term of the expansion is described by the indices of the factors that it contains, repeated according to their order: for example,
+ * {@code {i}} is the first-order term in factor {@latex.inline $i$}, {@code {i, i}} the second-order term and {@code {i, j}} the cross term in factors
+ * {@latex.inline $i$} and {@latex.inline $j$}. The row of {@latex.inline $\\mathbf{M}$} for a term is the product of the moves of its factors, multiplied
+ * by the Taylor expansion coefficient calculated by {@link com.opengamma.financial.riskfactor.TaylorExpansionMultiplierCalculator}.
+ * <p>
+ * The P&L of each term is attributed to the factors that it contains in proportion to their order in the term, so that the P&L of a cross term is
+ * split equally between its two factors. The P&L attributed to all factors sums to the P&L of the portfolio.
+ */
+public class SensitivityPnLAttributionCalculator {
+  /** The fraction of non-zero elements below which a matrix is multiplied as a sparse matrix */
+  public static final double SPARSE_THRESHOLD = 0.5;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  /**
+   * Calculates the products on the calling thread.
+   */
+  public SensitivityPnLAttributionCalculator() {
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param executor The executor used to calculate the products, not null
+   * @param parallelism The number of bands to split the rows of each product into; typically the number of threads available to the executor
+   */
+  public SensitivityPnLAttributionCalculator(final ExecutorService executor, final int parallelism) {
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * @param sensitivities The sensitivities, not null or empty; one row per position and one column per term
+   * @param terms The indices of the factors in each term, not null or empty; each term must contain at least one factor
+   * @param factorMoves The moves of the factors, not null or empty; one row per factor, each with the same number of dates in date order. The series can
+   * be aligned with {@link com.opengamma.financial.covariance.BulkCovarianceMatrixCalculator#align}
+   * @return The P&L attribution
+   */
+  public SensitivityPnLAttribution evaluate(final double[][] sensitivities, final int[][] terms, final double[][] factorMoves) {
+    Validate.notNull(sensitivities, "sensitivities");
+    ArgumentChecker.notEmpty(sensitivities, "sensitivities");
+    Validate.noNullElements(sensitivities, "sensitivities");
+    Validate.notNull(terms, "terms");
+    ArgumentChecker.notEmpty(terms, "terms");
+    Validate.noNullElements(terms, "terms");
+    Validate.notNull(factorMoves, "factor moves");
+    ArgumentChecker.notEmpty(factorMoves, "factor moves");
+    Validate.noNullElements(factorMoves, "factor moves");
+    final int nPositions = sensitivities.length;
+    final int nTerms = terms.length;
+    final int nFactors = factorMoves.length;
+    final int nDates = factorMoves[0].length;
+    for (final double[] moves : factorMoves) {
+      Validate.isTrue(moves.length == nDates, "All factors must have the same number of moves");
+    }
+    for (final double[] positionSensitivities : sensitivities) {
+      Validate.isTrue(positionSensitivities.length == nTerms, "Must have one sensitivity per term for each position");
+    }
+    final double[] s = DenseMatrixKernels.toRowMajor(sensitivities);
+    final double[] m = new double[nTerms * nDates];
+    final double[] termWeights = new double[nTerms];
+    // the fraction of the P&L of each term that is attributed to each factor, row-major with one row per term
+    final double[] shares = new double[nTerms * nFactors];
+    for (int k = 0; k < nTerms; k++) {
+      final int[] term = terms[k];
+      Validate.isTrue(term.length > 0, "Each term must contain at least one factor");
+      final int[] counts = new int[nFactors];
+      for (final int factor : term) {
+        Validate.isTrue(factor >= 0 && factor < nFactors, "Factor index out of range");
+        counts[factor]++;
+      }
+      double multiplier = 1;
+      for (int f = 0; f < nFactors; f++) {
+        if (counts[f] > 0) {
+          multiplier /= MathUtils.factorial(counts[f]);
+          shares[k * nFactors + f] = (double) counts[f] / term.length;
+        }
+      }
+      final int offset = k * nDates;
+      final double[] first = factorMoves[term[0]];
+      for (int t = 0; t < nDates; t++) {
+        m[offset + t] = multiplier * first[t];
+      }
+      for (int i = 1; i < term.length; i++) {
+        final double[] moves = factorMoves[term[i]];
+        for (int t = 0; t < nDates; t++) {
+          m[offset + t] *= moves[t];
+        }
+      }
+      double sum = 0;
+      for (int t = 0; t < nDates; t++) {
+        sum += m[offset + t];
+      }
+      termWeights[k] = sum;
+    }
+    final double[] positionPnL = multiply(s, m, nPositions, nTerms, nDates);
+    // the portfolio sensitivity to each term, apportioned between the factors of the term
+    final double[] portfolioSensitivities = new double[nTerms];
+    for (int p = 0, offset = 0; p < nPositions; p++, offset += nTerms) {
+      for (int k = 0; k < nTerms; k++) {
+        portfolioSensitivities[k] += s[offset + k];
+      }
+    }
+    final double[] factorWeights = new double[nFactors * nTerms];
+    for (int k = 0; k < nTerms; k++) {
+      for (int f = 0, index = k * nFactors; f < nFactors; f++, index++) {
+        factorWeights[f * nTerms + k] = shares[index] * portfolioSensitivities[k];
+      }
+    }
+    final double[] factorPnL = multiply(factorWeights, m, nFactors, nTerms, nDates);
+    // the total move of each term over all dates, apportioned between the factors of the term
+    for (int k = 0; k < nTerms; k++) {
+      for (int f = 0, index = k * nFactors; f < nFactors; f++, index++) {
+        shares[index] *= termWeights[k];
+      }
+    }
+    final double[] positionFactorPnL = multiply(s, shares, nPositions, nTerms, nFactors);
+    final double[] portfolioPnL = new double[nDates];
+    for (int f = 0, offset = 0; f < nFactors; f++, offset += nDates) {
+      for (int t = 0; t < nDates; t++) {
+        portfolioPnL[t] += factorPnL[offset + t];
+      }
+    }
+    return new SensitivityPnLAttribution(DenseMatrixKernels.fromRowMajor(positionPnL, nPositions, nDates), DenseMatrixKernels.fromRowMajor(factorPnL, nFactors,
+        nDates), DenseMatrixKernels.fromRowMajor(positionFactorPnL, nPositions, nFactors), portfolioPnL);
+  }
+
+  // a sparse sensitivity matrix - for example that of a book of options on many different underlyings - is multiplied row by row, skipping the zeros,
+  // as the cost of the blocked dense kernel does not depend on the number of non-zero elements
+  private double[] multiply(final double[] a, final double[] b, final int m, final int p, final int n) {
+    int nonZero = 0;
+    for (final double element : a) {
+      if (element != 0) {
+        nonZero++;
+      }
+    }
+    final boolean isSparse = nonZero < SPARSE_THRESHOLD * a.length;
+    if (_executor == null || _parallelism == 1 || m < 2) {
+      if (isSparse) {
+        final double[] c = new double[m * n];
+        multiplySparse(a, b, c, p, n, 0, m);
+        return c;
+      }
+      return DenseMatrixKernels.dgemm(a, b, m, p, n);
+    }
+    if (!isSparse) {
+      return DenseMatrixKernels.dgemm(a, b, m, p, n, _executor, _parallelism);
+    }
+    final double[] c = new double[m * n];
+    final int bandSize = (m + _parallelism - 1) / _parallelism;
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(_parallelism);
+    for (int start = 0; start < m; start += bandSize) {
+      final int rowStart = start;
+      final int rowEnd = Math.min(start + bandSize, m);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          multiplySparse(a, b, c, p, n, rowStart, rowEnd);
+          return null;
+        }
+      });
+    }
+    invokeAll(tasks);
+    return c;
+  }
+
+  private static void multiplySparse(final double[] a, final double[] b, final double[] c, final int p, final int n, final int rowStart, final int rowEnd) {
+    for (int i = rowStart; i < rowEnd; i++) {
+      final int aOffset = i * p;
+      final int cOffset = i * n;
+      for (int k = 0; k < p; k++) {
+        final double aik = a[aOffset + k];
+        if (aik != 0) {
+          final int bOffset = k * n;
+          for (int j = 0; j < n; j++) {
+            c[cOffset + j] += aik * b[bOffset + j];
+          }
+        }
+      }
+    }
+  }
+
+  private void invokeAll(final List<Callable<Object>> tasks) {
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while calculating P&L attribution", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Calculating P&L attribution failed", cause);
+    }
+  }
+
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.schedule;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.time.calendar.Period;
+import javax.time.calendar.ZonedDateTime;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.convention.businessday.BusinessDayConvention;
+import com.opengamma.financial.convention.calendar.Calendar;
+import com.opengamma.financial.convention.calendar.CompiledCalendar;
+import com.opengamma.financial.convention.frequency.Frequency;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Remembers the date schedules calculated by {@link ScheduleCalculator}, keyed by the start and end dates, the frequency or period, and for adjusted
+ * schedules the business day convention and calendar. Instruments in a portfolio share a small number of effective dates, maturities and
+ * conventions, so most schedules are found rather than calculated.
+ * <p>
+ * Unadjusted schedules depend only on their key, so are always remembered. Adjusted schedules are only remembered if the calendar is a
+ * {@link CompiledCalendar}, the working days of which cannot change; schedules for any other calendar are calculated every time.
+ * When the cache is full it is emptied. The arrays returned are copies, and can be modified.
+ */
+public final class ScheduleCache {
+
+  /**
+   * The default maximum number of schedules remembered.
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+  /**
+   * The shared instance.
+   */
+  private static final ScheduleCache INSTANCE = new ScheduleCache(DEFAULT_MAXIMUM_SIZE);
+
+  private final int _maximumSize;
+  private final ConcurrentMap<ScheduleKey, ZonedDateTime[]> _schedules = new ConcurrentHashMap<ScheduleKey, ZonedDateTime[]>();
+
+  /**
+   * Creates an instance.
+   * @param maximumSize  the maximum number of schedules to remember, greater than zero
+   */
+  public ScheduleCache(final int maximumSize) {
+    ArgumentChecker.notNegativeOrZero(maximumSize, "maximum size");
+    _maximumSize = maximumSize;
+  }
+
+  /**
+   * Gets the shared instance.
+   * @return the shared instance, not null
+   */
+  public static ScheduleCache getInstance() {
+    return INSTANCE;
+  }
+
+  // -------------------------------------------------------------------------
+  /**
+   * Gets the unadjusted date schedule.
+   * @param effectiveDate  the effective date, not null
+   * @param maturityDate  the maturity date, not null
+   * @param frequency  how many times a year dates occur, not null
+   * @return the schedule, not null
+   * @see ScheduleCalculator#getUnadjustedDateSchedule(ZonedDateTime, ZonedDateTime, Frequency)
+   */
+  public ZonedDateTime[] getUnadjustedDateSchedule(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Frequency frequency) {
+    Validate.notNull(effectiveDate, "effective date");
+    Validate.notNull(maturityDate, "maturity date");
+    Validate.notNull(frequency, "frequency");
+    return getUnadjusted(effectiveDate, maturityDate, frequency).clone();
+  }
+
+  /**
+   * Gets the unadjusted date schedule.
+   * @param effectiveDate  the effective date, not null
+   * @param maturityDate  the maturity date, not null
+   * @param period  the period between dates, not null
+   * @return the schedule, not null
+   * @see ScheduleCalculator#getUnadjustedDateSchedule(ZonedDateTime, ZonedDateTime, Period)
+   */
+  public ZonedDateTime[] getUnadjustedDateSchedule(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Period period) {
+    Validate.notNull(effectiveDate, "effective date");
+    Validate.notNull(maturityDate, "maturity date");
+    Validate.notNull(period, "period");
+    return getUnadjusted(effectiveDate, maturityDate, period).clone();
+  }
+
+  /**
+   * Gets the date schedule, adjusted by a business day convention.
+   * @param effectiveDate  the effective date, not null
+   * @param maturityDate  the maturity date, not null
+   * @param frequency  how many times a year dates occur, not null
+   * @param convention  the business day convention, not null
+   * @param calendar  the working days, not null
+   * @return the schedule, not null
+   */
+  public ZonedDateTime[] getAdjustedDateSchedule(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Frequency frequency,
+      final BusinessDayConvention convention, final Calendar calendar) {
+    Validate.notNull(effectiveDate, "effective date");
+    Validate.notNull(maturityDate, "maturity date");
+    Validate.notNull(frequency, "frequency");
+    return getAdjusted(effectiveDate, maturityDate, frequency, convention, calendar);
+  }
+
+  /**
+   * Gets the date schedule, adjusted by a business day convention.
+   * @param effectiveDate  the effective date, not null
+   * @param maturityDate  the maturity date, not null
+   * @param period  the period between dates, not null
+   * @param convention  the business day convention, not null
+   * @param calendar  the working days, not null
+   * @return the schedule, not null
+   */
+  public ZonedDateTime[] getAdjustedDateSchedule(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Period period,
+      final BusinessDayConvention convention, final Calendar calendar) {
+    Validate.notNull(effectiveDate, "effective date");
+    Validate.notNull(maturityDate, "maturity date");
+    Validate.notNull(period, "period");
+    return getAdjusted(effectiveDate, maturityDate, period, convention, calendar);
+  }
+
+  /**
+   * Gets the number of schedules remembered.
+   * @return the number of schedules
+   */
+  public int size() {
+    return _schedules.size();
+  }
+
+  /**
+   * Forgets all of the schedules.
+   */
+  public void clear() {
+    _schedules.clear();
+  }
+
+  // -------------------------------------------------------------------------
+  private ZonedDateTime[] getUnadjusted(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Object frequencyOrPeriod) {
+    final ScheduleKey key = new ScheduleKey(effectiveDate, maturityDate, frequencyOrPeriod, null, null);
+    ZonedDateTime[] schedule = _schedules.get(key);
+    if (schedule == null) {
+      if (frequencyOrPeriod instanceof Frequency) {
+        schedule = ScheduleCalculator.getUnadjustedDateSchedule(effectiveDate, maturityDate, (Frequency) frequencyOrPeriod);
+      } else {
+        schedule = ScheduleCalculator.getUnadjustedDateSchedule(effectiveDate, maturityDate, (Period) frequencyOrPeriod);
+      }
+      put(key, schedule);
+    }
+    return schedule;
+  }
+
+  private ZonedDateTime[] getAdjusted(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Object frequencyOrPeriod,
+      final BusinessDayConvention convention, final Calendar calendar) {
+    Validate.notNull(convention, "convention");
+    Validate.notNull(calendar, "calendar");
+    if (!(calendar instanceof CompiledCalendar)) {
+      return ScheduleCalculator.getAdjustedDateSchedule(getUnadjusted(effectiveDate, maturityDate, frequencyOrPeriod), convention, calendar);
+    }
+    final ScheduleKey key = new ScheduleKey(effectiveDate, maturityDate, frequencyOrPeriod, convention, calendar);
+    ZonedDateTime[] schedule = _schedules.get(key);
+    if (schedule == null) {
+      schedule = ScheduleCalculator.getAdjustedDateSchedule(getUnadjusted(effectiveDate, maturityDate, frequencyOrPeriod), convention, calendar);
+      put(key, schedule);
+    }
+    return schedule.clone();
+  }
+
+  private void put(final ScheduleKey key, final ZonedDateTime[] schedule) {
+    if (_schedules.size() >= _maximumSize) {
+      _schedules.clear();
+    }
+    _schedules.put(key, schedule);
+  }
+
+  // -------------------------------------------------------------------------
+  /**
+   * The key of a schedule; the convention and calendar are null for an unadjusted schedule.
+   */
+  private static final class ScheduleKey {
+    private final ZonedDateTime _effectiveDate;
+    private final ZonedDateTime _maturityDate;
+    private final Object _frequencyOrPeriod;
+    private final BusinessDayConvention _convention;
+    private final Calendar _calendar;
+    private final int _hashCode;
+
+    private ScheduleKey(final ZonedDateTime effectiveDate, final ZonedDateTime maturityDate, final Object frequencyOrPeriod, final BusinessDayConvention convention,
+        final Calendar calendar) {
+      _effectiveDate = effectiveDate;
+      _maturityDate = maturityDate;
+      _frequencyOrPeriod = frequencyOrPeriod;
+      _convention = convention;
+      _calendar = calendar;
+      int hashCode = effectiveDate.hashCode();
+      hashCode = 31 * hashCode + maturityDate.hashCode();
+      hashCode = 31 * hashCode + frequencyOrPeriod.hashCode();
+      hashCode = 31 * hashCode + ObjectUtils.hashCode(convention);
+      hashCode = 31 * hashCode + ObjectUtils.hashCode(calendar);
+      _hashCode = hashCode;
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof ScheduleKey)) {
+        return false;
+      }
+      final ScheduleKey other = (ScheduleKey) obj;
+      return _hashCode == other._hashCode && _effectiveDate.equals(other._effectiveDate) && _maturityDate.equals(other._maturityDate)
+          && _frequencyOrPeriod.equals(other._frequencyOrPeriod) && ObjectUtils.equals(_convention, other._convention)
+          && ObjectUtils.equals(_calendar, other._calendar);
+    }
+  }
+
+}
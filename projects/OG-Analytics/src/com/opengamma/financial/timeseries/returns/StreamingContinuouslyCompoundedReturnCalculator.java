@@ -0,0 +1,25 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.timeseries.returns;
+
+import com.opengamma.util.CalculationMode;
+
+/**
+ * Calculates the continuously compounded return {@latex.inline $\\ln(P_t + D_t) - \\ln(P_{t-1})$} one price at a time, giving the same returns as
+ * {@link ContinuouslyCompoundedTimeSeriesReturnCalculator}.
+ */
+public class StreamingContinuouslyCompoundedReturnCalculator extends StreamingTimeSeriesReturnCalculator {
+
+  public StreamingContinuouslyCompoundedReturnCalculator(final CalculationMode mode) {
+    super(mode);
+  }
+
+  @Override
+  protected double calculateReturn(final double previousPrice, final double price, final double dividend) {
+    return Math.log((price + dividend) / previousPrice);
+  }
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.timeseries.returns;
+
+import com.opengamma.util.CalculationMode;
+
+/**
+ * Calculates the simple net return {@latex.inline $\\frac{P_t + D_t}{P_{t-1}} - 1$} one price at a time, giving the same returns as
+ * {@link SimpleNetTimeSeriesReturnCalculator}.
+ */
+public class StreamingSimpleNetReturnCalculator extends StreamingTimeSeriesReturnCalculator {
+
+  public StreamingSimpleNetReturnCalculator(final CalculationMode mode) {
+    super(mode);
+  }
+
+  @Override
+  protected double calculateReturn(final double previousPrice, final double price, final double dividend) {
+    return (price + dividend) / previousPrice - 1;
+  }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.timeseries.returns;
+
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.CalculationMode;
+import com.opengamma.util.CompareUtils;
+import com.opengamma.util.timeseries.TimeSeriesException;
+
+/**
+ * A single-period return calculator that is updated one price at a time, so that the latest return is available in constant time without building a return
+ * series. Zero prices are treated as in {@link TimeSeriesReturnCalculator}: in strict mode they cause an exception; in lenient mode no return is calculated
+ * for the periods that start or end with one.
+ * <p>
+ * This class is not thread-safe.
+ */
+public abstract class StreamingTimeSeriesReturnCalculator {
+  private final CalculationMode _mode;
+  private double _previousPrice = Double.NaN;
+  private double _return = Double.NaN;
+  private boolean _hasReturn;
+
+  public StreamingTimeSeriesReturnCalculator(final CalculationMode mode) {
+    ArgumentChecker.notNull(mode, "mode");
+    _mode = mode;
+  }
+
+  /**
+   * Adds the next price.
+   * @param price The price
+   * @return true if a return was calculated for the period ending with this price
+   * @throws TimeSeriesException If the calculation mode is strict and the price is zero
+   */
+  public boolean update(final double price) {
+    return update(price, 0);
+  }
+
+  /**
+   * Adds the next price and the dividend paid at the same time.
+   * @param price The price
+   * @param dividend The dividend
+   * @return true if a return was calculated for the period ending with this price
+   * @throws TimeSeriesException If the calculation mode is strict and the price is zero
+   */
+  public boolean update(final double price, final double dividend) {
+    final boolean isNonZero = isValueNonZero(price);
+    final boolean hasReturn = isNonZero && !Double.isNaN(_previousPrice) && isValueNonZero(_previousPrice);
+    if (hasReturn) {
+      _return = calculateReturn(_previousPrice, price, dividend);
+    }
+    _hasReturn = hasReturn;
+    _previousPrice = price;
+    return hasReturn;
+  }
+
+  /**
+   * @return true if a return was calculated for the period ending with the last price
+   */
+  public boolean hasReturn() {
+    return _hasReturn;
+  }
+
+  /**
+   * Gets the return for the period ending with the last price.
+   * @return The return
+   * @throws IllegalStateException If no return was calculated for that period
+   */
+  public double getReturn() {
+    if (!_hasReturn) {
+      throw new IllegalStateException("No return for the last period");
+    }
+    return _return;
+  }
+
+  public void reset() {
+    _previousPrice = Double.NaN;
+    _return = Double.NaN;
+    _hasReturn = false;
+  }
+
+  protected CalculationMode getMode() {
+    return _mode;
+  }
+
+  /**
+   * @param previousPrice The price at the start of the period, not zero
+   * @param price The price at the end of the period, not zero
+   * @param dividend The dividend paid at the end of the period
+   * @return The return
+   */
+  protected abstract double calculateReturn(double previousPrice, double price, double dividend);
+
+  private boolean isValueNonZero(final double value) {
+    if (CompareUtils.closeEquals(value, 0)) {
+      if (_mode == CalculationMode.STRICT) {
+        throw new TimeSeriesException("Cannot have zero in time series in strict mode");
+      }
+      return false;
+    }
+    return true;
+  }
+
+}
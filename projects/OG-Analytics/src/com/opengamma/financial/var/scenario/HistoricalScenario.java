@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * One historical market data scenario: the shifts observed over one period, to be applied to today's market data. Curves are shifted by an amount at each of a
+ * set of times (e.g. the key tenors of the historical data set) that is shared by every curve in the scenario; if there is only one time, the shift is
+ * parallel. Spots are shifted by a relative return and volatility surfaces by a parallel shift.
+ */
+public class HistoricalScenario {
+  private final double[] _curveShiftTimes;
+  private final Map<String, double[]> _curveShifts;
+  private final Map<String, Double> _spotReturns;
+  private final Map<String, Double> _volatilityShifts;
+
+  /**
+   * @param curveShiftTimes The times at which the curves are shifted, not null. Can be empty if there are no curve shifts
+   * @param curveShifts The shift at each time for each curve, keyed by curve name, not null
+   * @param spotReturns The relative return of each spot, keyed by name, not null
+   * @param volatilityShifts The parallel shift of each volatility surface, keyed by name, not null
+   */
+  public HistoricalScenario(final double[] curveShiftTimes, final Map<String, double[]> curveShifts, final Map<String, Double> spotReturns,
+      final Map<String, Double> volatilityShifts) {
+    Validate.notNull(curveShiftTimes, "curve shift times");
+    Validate.notNull(curveShifts, "curve shifts");
+    Validate.notNull(spotReturns, "spot returns");
+    Validate.notNull(volatilityShifts, "volatility shifts");
+    for (final Map.Entry<String, double[]> entry : curveShifts.entrySet()) {
+      Validate.notNull(entry.getValue(), "shifts for curve " + entry.getKey());
+      Validate.isTrue(entry.getValue().length == curveShiftTimes.length, "Must have one shift per time for curve " + entry.getKey());
+    }
+    Validate.noNullElements(spotReturns.values(), "spot returns");
+    Validate.noNullElements(volatilityShifts.values(), "volatility shifts");
+    _curveShiftTimes = curveShiftTimes;
+    _curveShifts = new HashMap<String, double[]>(curveShifts);
+    _spotReturns = new HashMap<String, Double>(spotReturns);
+    _volatilityShifts = new HashMap<String, Double>(volatilityShifts);
+  }
+
+  public double[] getCurveShiftTimes() {
+    return _curveShiftTimes;
+  }
+
+  public Map<String, double[]> getCurveShifts() {
+    return Collections.unmodifiableMap(_curveShifts);
+  }
+
+  public Map<String, Double> getSpotReturns() {
+    return Collections.unmodifiableMap(_spotReturns);
+  }
+
+  public Map<String, Double> getVolatilityShifts() {
+    return Collections.unmodifiableMap(_volatilityShifts);
+  }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.financial.model.interestrate.curve.YieldAndDiscountCurve;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+
+/**
+ * The market data needed to value a set of positions: yield curves, spots and volatility surfaces, each keyed by name. Instances are not modified once
+ * constructed, so that they can be shared between the threads revaluing positions.
+ */
+public class ScenarioMarketData {
+  private final YieldCurveBundle _curves;
+  private final Map<String, Double> _spots;
+  private final Map<String, VolatilitySurface> _volatilitySurfaces;
+
+  /**
+   * @param curves The yield curves, not null
+   * @param spots The spots, not null
+   * @param volatilitySurfaces The volatility surfaces, not null
+   */
+  public ScenarioMarketData(final YieldCurveBundle curves, final Map<String, Double> spots, final Map<String, VolatilitySurface> volatilitySurfaces) {
+    Validate.notNull(curves, "curves");
+    Validate.notNull(spots, "spots");
+    Validate.notNull(volatilitySurfaces, "volatility surfaces");
+    Validate.noNullElements(spots.values(), "spots");
+    Validate.noNullElements(volatilitySurfaces.values(), "volatility surfaces");
+    _curves = copy(curves);
+    _spots = new HashMap<String, Double>(spots);
+    _volatilitySurfaces = new HashMap<String, VolatilitySurface>(volatilitySurfaces);
+  }
+
+  /**
+   * Gets the yield curves. The bundle must not be modified.
+   * @return The yield curves
+   */
+  public YieldCurveBundle getCurves() {
+    return _curves;
+  }
+
+  public YieldAndDiscountCurve getCurve(final String name) {
+    return _curves.getCurve(name);
+  }
+
+  public double getSpot(final String name) {
+    final Double spot = _spots.get(name);
+    Validate.notNull(spot, "Could not get spot for " + name);
+    return spot;
+  }
+
+  public VolatilitySurface getVolatilitySurface(final String name) {
+    final VolatilitySurface surface = _volatilitySurfaces.get(name);
+    Validate.notNull(surface, "Could not get volatility surface for " + name);
+    return surface;
+  }
+
+  public Map<String, Double> getSpots() {
+    return Collections.unmodifiableMap(_spots);
+  }
+
+  public Map<String, VolatilitySurface> getVolatilitySurfaces() {
+    return Collections.unmodifiableMap(_volatilitySurfaces);
+  }
+
+  /**
+   * Applies a scenario to this market data. Curves, spots and surfaces that the scenario does not shift are shared with this instance.
+   * @param scenario The scenario, not null
+   * @return The shocked market data
+   */
+  public ScenarioMarketData withScenario(final HistoricalScenario scenario) {
+    Validate.notNull(scenario, "scenario");
+    final YieldCurveBundle curves = copy(_curves);
+    final double[] times = scenario.getCurveShiftTimes();
+    for (final Map.Entry<String, double[]> entry : scenario.getCurveShifts().entrySet()) {
+      final YieldAndDiscountCurve curve = getCurve(entry.getKey());
+      final double[] shifts = entry.getValue();
+      curves.replaceCurve(entry.getKey(), times.length == 1 ? curve.withParallelShift(shifts[0]) : curve.withMultipleShifts(times, shifts));
+    }
+    final Map<String, Double> spots = new HashMap<String, Double>(_spots);
+    for (final Map.Entry<String, Double> entry : scenario.getSpotReturns().entrySet()) {
+      spots.put(entry.getKey(), getSpot(entry.getKey()) * (1 + entry.getValue()));
+    }
+    final Map<String, VolatilitySurface> surfaces = new HashMap<String, VolatilitySurface>(_volatilitySurfaces);
+    for (final Map.Entry<String, Double> entry : scenario.getVolatilityShifts().entrySet()) {
+      surfaces.put(entry.getKey(), getVolatilitySurface(entry.getKey()).withParallelShift(entry.getValue()));
+    }
+    return new ScenarioMarketData(curves, spots, surfaces);
+  }
+
+  // the copy constructor of YieldCurveBundle shares the map of curves
+  private static YieldCurveBundle copy(final YieldCurveBundle curves) {
+    final YieldCurveBundle copy = new YieldCurveBundle();
+    copy.addAll(curves);
+    return copy;
+  }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The P&L of each position under each scenario, held in a single array in scenario-major order: the P&L of position p under scenario s is at index
+ * {@code s * n + p}, where n is the number of positions. The P&L of any set of positions under each scenario is a sum over the columns of that set, so the
+ * VaR of any aggregation of the positions can be calculated without revaluing them.
+ */
+public class ScenarioPnLCube {
+  private final int _nScenarios;
+  private final int _nPositions;
+  private final double[] _baseValues;
+  private final double[] _pnl;
+
+  /**
+   * @param nScenarios The number of scenarios, not negative
+   * @param baseValues The value of each position before any scenario is applied, not null
+   * @param pnl The P&L in scenario-major order, not null. The array is not copied
+   */
+  public ScenarioPnLCube(final int nScenarios, final double[] baseValues, final double[] pnl) {
+    Validate.isTrue(nScenarios >= 0, "number of scenarios must not be negative");
+    Validate.notNull(baseValues, "base values");
+    Validate.notNull(pnl, "pnl");
+    Validate.isTrue(pnl.length == nScenarios * baseValues.length, "P&L array must have one entry per scenario and position");
+    _nScenarios = nScenarios;
+    _nPositions = baseValues.length;
+    _baseValues = baseValues;
+    _pnl = pnl;
+  }
+
+  public int getNumberOfScenarios() {
+    return _nScenarios;
+  }
+
+  public int getNumberOfPositions() {
+    return _nPositions;
+  }
+
+  /**
+   * Gets the value of each position before any scenario is applied. The array is not copied.
+   * @return The base values
+   */
+  public double[] getBaseValues() {
+    return _baseValues;
+  }
+
+  /**
+   * Gets the P&L in scenario-major order. The array is not copied.
+   * @return The P&L
+   */
+  public double[] getData() {
+    return _pnl;
+  }
+
+  public double getPnL(final int scenario, final int position) {
+    return _pnl[scenario * _nPositions + position];
+  }
+
+  /**
+   * Gets the P&L of one position under each scenario.
+   * @param position The index of the position
+   * @return The P&L series, one entry per scenario
+   */
+  public double[] getPositionPnL(final int position) {
+    Validate.isTrue(position >= 0 && position < _nPositions, "position index out of range");
+    final double[] res = new double[_nScenarios];
+    for (int s = 0, index = position; s < _nScenarios; s++, index += _nPositions) {
+      res[s] = _pnl[index];
+    }
+    return res;
+  }
+
+  /**
+   * Gets the P&L of all of the positions under each scenario.
+   * @return The P&L series, one entry per scenario
+   */
+  public double[] getPortfolioPnL() {
+    final double[] res = new double[_nScenarios];
+    for (int s = 0, index = 0; s < _nScenarios; s++) {
+      double sum = 0;
+      for (int p = 0; p < _nPositions; p++) {
+        sum += _pnl[index++];
+      }
+      res[s] = sum;
+    }
+    return res;
+  }
+
+  /**
+   * Gets the P&L of a set of positions under each scenario.
+   * @param positions The indices of the positions, not null
+   * @return The P&L series, one entry per scenario
+   */
+  public double[] getPortfolioPnL(final int[] positions) {
+    Validate.notNull(positions, "positions");
+    for (final int position : positions) {
+      Validate.isTrue(position >= 0 && position < _nPositions, "position index out of range");
+    }
+    final double[] res = new double[_nScenarios];
+    for (int s = 0, offset = 0; s < _nScenarios; s++, offset += _nPositions) {
+      double sum = 0;
+      for (final int position : positions) {
+        sum += _pnl[offset + position];
+      }
+      res[s] = sum;
+    }
+    return res;
+  }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.math.function.Function1D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Calculates the P&L of a set of positions under a set of historical scenarios by full revaluation. The positions are valued once on the base market data;
+ * then, for each scenario, the shocked market data is built once and every position is revalued on it. If an executor is supplied the scenarios are split
+ * into chunks that are revalued in parallel.
+ * <p>
+ * Each position is a function from market data to the value of the position (i.e. including the quantity held). The functions must be safe to call from
+ * more than one thread if an executor is used.
+ */
+public class ScenarioPnLCubeCalculator {
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  public ScenarioPnLCubeCalculator() {
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param executor The executor used to revalue the positions, not null
+   * @param parallelism The number of chunks to split the scenarios into; typically the number of threads available to the executor
+   */
+  public ScenarioPnLCubeCalculator(final ExecutorService executor, final int parallelism) {
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _executor = executor;
+    _parallelism = parallelism;
+  }
+
+  /**
+   * @param baseData The market data before any scenario is applied, not null
+   * @param scenarios The scenarios, not null
+   * @param positions The position valuation functions, not null
+   * @return The P&L of each position under each scenario
+   */
+  public ScenarioPnLCube evaluate(final ScenarioMarketData baseData, final List<HistoricalScenario> scenarios,
+      final List<? extends Function1D<ScenarioMarketData, Double>> positions) {
+    Validate.notNull(baseData, "base data");
+    Validate.notNull(scenarios, "scenarios");
+    Validate.notNull(positions, "positions");
+    Validate.noNullElements(scenarios, "scenarios");
+    Validate.noNullElements(positions, "positions");
+    final int nScenarios = scenarios.size();
+    final int nPositions = positions.size();
+    final HistoricalScenario[] scenarioArray = scenarios.toArray(new HistoricalScenario[nScenarios]);
+    @SuppressWarnings("unchecked")
+    final Function1D<ScenarioMarketData, Double>[] positionArray = positions.toArray(new Function1D[nPositions]);
+    final double[] baseValues = new double[nPositions];
+    for (int p = 0; p < nPositions; p++) {
+      baseValues[p] = positionArray[p].evaluate(baseData);
+    }
+    final double[] pnl = new double[nScenarios * nPositions];
+    if (_executor == null || _parallelism == 1 || nScenarios < 2) {
+      revalue(baseData, scenarioArray, positionArray, baseValues, pnl, 0, nScenarios);
+      return new ScenarioPnLCube(nScenarios, baseValues, pnl);
+    }
+    final int chunkSize = (nScenarios + _parallelism - 1) / _parallelism;
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int start = 0; start < nScenarios; start += chunkSize) {
+      final int chunkStart = start;
+      final int chunkEnd = Math.min(start + chunkSize, nScenarios);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          revalue(baseData, scenarioArray, positionArray, baseValues, pnl, chunkStart, chunkEnd);
+          return null;
+        }
+      });
+    }
+    try {
+      for (final Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while revaluing positions", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new OpenGammaRuntimeException("Revaluing positions failed", cause);
+    }
+    return new ScenarioPnLCube(nScenarios, baseValues, pnl);
+  }
+
+  private static void revalue(final ScenarioMarketData baseData, final HistoricalScenario[] scenarios, final Function1D<ScenarioMarketData, Double>[] positions,
+      final double[] baseValues, final double[] pnl, final int start, final int end) {
+    final int nPositions = positions.length;
+    for (int s = start; s < end; s++) {
+      final ScenarioMarketData shocked = baseData.withScenario(scenarios[s]);
+      final int offset = s * nPositions;
+      for (int p = 0; p < nPositions; p++) {
+        pnl[offset + p] = positions[p].evaluate(shocked) - baseValues[p];
+      }
+    }
+  }
+
+}
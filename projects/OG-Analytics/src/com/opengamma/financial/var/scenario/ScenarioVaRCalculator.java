@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Calculates the VaR and expected shortfall of a P&L series produced by historical scenarios. The VaR is the loss at the (1 - quantile) percentile of the
+ * series, interpolated in the same way as {@link com.opengamma.math.statistics.descriptive.PercentileCalculator}; the expected shortfall is the mean loss of
+ * the scenarios with losses at least as large as the VaR. Both are returned as positive numbers for a loss and are scaled by
+ * {@latex.inline $\\sqrt{\\frac{horizon}{periods}}$}.
+ */
+public class ScenarioVaRCalculator {
+  private final double _horizon;
+  private final double _periods;
+  private final double _quantile;
+  private final double _mult;
+
+  public ScenarioVaRCalculator(final double horizon, final double periods, final double quantile) {
+    Validate.isTrue(horizon > 0, "horizon");
+    Validate.isTrue(periods > 0, "periods");
+    if (!ArgumentChecker.isInRangeExclusive(0, 1, quantile)) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1");
+    }
+    _horizon = horizon;
+    _periods = periods;
+    _quantile = quantile;
+    _mult = Math.sqrt(horizon / periods);
+  }
+
+  public double getHorizon() {
+    return _horizon;
+  }
+
+  public double getPeriods() {
+    return _periods;
+  }
+
+  public double getQuantile() {
+    return _quantile;
+  }
+
+  /**
+   * @param pnl The P&L under each scenario, not null or empty
+   * @return The VaR
+   */
+  public double getVaR(final double[] pnl) {
+    return _mult * -getPercentile(sort(pnl));
+  }
+
+  /**
+   * @param pnl The P&L under each scenario, not null or empty
+   * @return The expected shortfall
+   */
+  public double getExpectedShortfall(final double[] pnl) {
+    final double[] sorted = sort(pnl);
+    final double percentile = getPercentile(sorted);
+    double sum = 0;
+    int count = 0;
+    while (count < sorted.length && sorted[count] <= percentile) {
+      sum += sorted[count++];
+    }
+    return _mult * -sum / count;
+  }
+
+  /**
+   * Calculates the VaR of a set of positions from a P&L cube.
+   * @param cube The P&L cube, not null
+   * @param positions The indices of the positions, not null
+   * @return The VaR
+   */
+  public double getVaR(final ScenarioPnLCube cube, final int[] positions) {
+    Validate.notNull(cube, "cube");
+    return getVaR(cube.getPortfolioPnL(positions));
+  }
+
+  /**
+   * Calculates the expected shortfall of a set of positions from a P&L cube.
+   * @param cube The P&L cube, not null
+   * @param positions The indices of the positions, not null
+   * @return The expected shortfall
+   */
+  public double getExpectedShortfall(final ScenarioPnLCube cube, final int[] positions) {
+    Validate.notNull(cube, "cube");
+    return getExpectedShortfall(cube.getPortfolioPnL(positions));
+  }
+
+  private double[] sort(final double[] pnl) {
+    Validate.notNull(pnl, "pnl");
+    Validate.isTrue(pnl.length > 0, "pnl cannot be empty");
+    final double[] sorted = Arrays.copyOf(pnl, pnl.length);
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private double getPercentile(final double[] sorted) {
+    final int length = sorted.length;
+    final double n = (1 - _quantile) * (length - 1) + 1;
+    if (Math.round(n) == 1) {
+      return sorted[0];
+    }
+    if (Math.round(n) == length) {
+      return sorted[length - 1];
+    }
+    final double d = n % 1;
+    final int k = (int) Math.round(n - d);
+    return sorted[k - 1] + d * (sorted[k] - sorted[k - 1]);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    long temp;
+    temp = Double.doubleToLongBits(_horizon);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    temp = Double.doubleToLongBits(_periods);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    temp = Double.doubleToLongBits(_quantile);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final ScenarioVaRCalculator other = (ScenarioVaRCalculator) obj;
+    if (Double.doubleToLongBits(_horizon) != Double.doubleToLongBits(other._horizon)) {
+      return false;
+    }
+    if (Double.doubleToLongBits(_periods) != Double.doubleToLongBits(other._periods)) {
+      return false;
+    }
+    return Double.doubleToLongBits(_quantile) == Double.doubleToLongBits(other._quantile);
+  }
+
+}
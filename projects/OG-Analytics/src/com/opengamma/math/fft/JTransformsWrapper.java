@@ -6,8 +6,8 @@
 package com.opengamma.math.fft;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.Validate;
 
@@ -19,8 +19,7 @@ import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
  * Class wrapping the 1D FFT methods of the JTransforms library.
  */
 public class JTransformsWrapper {
-  // TODO this needs to be changed
-  private static final Map<Integer, DoubleFFT_1D> CACHE_1D = new HashMap<Integer, DoubleFFT_1D>();
+  private static final ConcurrentMap<Integer, DoubleFFT_1D> CACHE_1D = new ConcurrentHashMap<Integer, DoubleFFT_1D>();
 
   /**
    * The forward discrete Fourier transform. <b>Note:</b> In this definition {@latex.inline $-i$} appears in the exponential rather than {@latex.inline $i$}. 
@@ -43,15 +42,25 @@ public class JTransformsWrapper {
     Validate.notNull(z, "array of complex number");
     int n = z.length;
     double[] a = packFull(z);
-    DoubleFFT_1D fft = CACHE_1D.get(n);
-    if (fft == null) {
-      fft = new DoubleFFT_1D(n);
-      CACHE_1D.put(n, fft);
-    }
+    final DoubleFFT_1D fft = getFFT(n);
     fft.complexForward(a);
     return unpackFull(a);
   }
 
+  /**
+   * The forward discrete Fourier transform, calculated in place on an array of interleaved real and imaginary parts. The transform is the same as that
+   * of {@link #transform1DComplex(ComplexNumber[])}, but no {@link ComplexNumber} is created, so this method is preferable when transforms of the same
+   * size are calculated many times.
+   * @param a Array of 2N values, with the real part of the i<sup>th</sup> value at 2i and the imaginary part at 2i + 1. This is overwritten by the
+   * transform.
+   */
+  public static void transform1DComplexInPlace(final double[] a) {
+    Validate.notNull(a, "array of doubles");
+    final int n = a.length / 2;
+    Validate.isTrue(n > 0 && a.length % 2 == 0, "need an even, non-zero number of entries");
+    getFFT(n).complexForward(a);
+  }
+
   /**
    * The inverse (backward) discrete Fourier transform. <b>Note:</b> In this definition {@latex.inline $i$} appears in the exponential rather than {@latex.inline $-i$}.
    * <p>
@@ -73,11 +82,7 @@ public class JTransformsWrapper {
     Validate.notNull(z, "array of complex number");
     final int n = z.length;
     double[] a = packFull(z);
-    DoubleFFT_1D fft = CACHE_1D.get(n);
-    if (fft == null) {
-      fft = new DoubleFFT_1D(n);
-      CACHE_1D.put(n, fft);
-    }
+    final DoubleFFT_1D fft = getFFT(n);
     fft.complexInverse(a, scale);
     return unpackFull(a);
   }
@@ -106,11 +111,7 @@ public class JTransformsWrapper {
     final int n = h.length;
     Validate.isTrue(n > 0);
     final double[] a = Arrays.copyOf(h, 2 * n);
-    DoubleFFT_1D fft = CACHE_1D.get(n);
-    if (fft == null) {
-      fft = new DoubleFFT_1D(n);
-      CACHE_1D.put(n, fft);
-    }
+    final DoubleFFT_1D fft = getFFT(n);
     fft.realForwardFull(a);
     return unpackFull(a);
   }
@@ -139,11 +140,7 @@ public class JTransformsWrapper {
     final int n = x.length;
     Validate.isTrue(n > 0);
     final double[] a = Arrays.copyOf(x, 2 * n);
-    DoubleFFT_1D fft = CACHE_1D.get(n);
-    if (fft == null) {
-      fft = new DoubleFFT_1D(n);
-      CACHE_1D.put(n, fft);
-    }
+    final DoubleFFT_1D fft = getFFT(n);
     fft.realInverseFull(a, scale);
     return unpackFull(a);
   }
@@ -168,11 +165,7 @@ public class JTransformsWrapper {
     final int n = h.length;
     Validate.isTrue(n > 0);
     final double[] a = Arrays.copyOf(h, n);
-    DoubleFFT_1D fft = CACHE_1D.get(n);
-    if (fft == null) {
-      fft = new DoubleFFT_1D(n);
-      CACHE_1D.put(n, fft);
-    }
+    final DoubleFFT_1D fft = getFFT(n);
     fft.realForward(a);
     return unpack(a);
   }
@@ -199,15 +192,22 @@ public class JTransformsWrapper {
     final int n = x.length;
     Validate.isTrue(n > 0);
     final double[] a = Arrays.copyOf(x, n);
-    DoubleFFT_1D fft = CACHE_1D.get(n);
-    if (fft == null) {
-      fft = new DoubleFFT_1D(n);
-      CACHE_1D.put(n, fft);
-    }
+    final DoubleFFT_1D fft = getFFT(n);
     fft.realInverse(a, scale);
     return unpack(a);
   }
 
+  // the plans are immutable once created, so can be shared between threads; two threads may occasionally both create a plan for the same size
+  private static DoubleFFT_1D getFFT(final int n) {
+    final DoubleFFT_1D fft = CACHE_1D.get(n);
+    if (fft != null) {
+      return fft;
+    }
+    final DoubleFFT_1D newFFT = new DoubleFFT_1D(n);
+    final DoubleFFT_1D existing = CACHE_1D.putIfAbsent(n, newFFT);
+    return existing == null ? newFFT : existing;
+  }
+
   private static double[] packFull(final ComplexNumber[] z) {
     int n = z.length;
     Validate.isTrue(n > 0);
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import com.opengamma.math.MathException;
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.SparseMatrixKernels;
+
+/**
+ * The preconditioned biconjugate gradient stabilised method (BiCGSTAB) of van der Vorst, for general (non-symmetric) matrices such as those from the
+ * discretisation of convection-diffusion PDEs.
+ */
+public class BiCGSTABSolver extends IterativeSolver {
+
+  /**
+   * Uses the default tolerance and maximum number of iterations, and ILU(0) preconditioning
+   */
+  public BiCGSTABSolver() {
+    this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS, PreconditionerType.ILU);
+  }
+
+  /**
+   * @param tolerance The relative tolerance, greater than zero
+   * @param maxIterations The maximum number of iterations, greater than zero
+   * @param preconditionerType The preconditioner, not null
+   */
+  public BiCGSTABSolver(final double tolerance, final int maxIterations, final PreconditionerType preconditionerType) {
+    super(tolerance, maxIterations, preconditionerType);
+  }
+
+  @Override
+  protected int solve(final CompressedSparseRowFormatMatrix a, final Preconditioner m, final double[] b, final double[] x) {
+    final int n = b.length;
+    final double target = getTolerance() * Math.sqrt(dot(b, b));
+    final double[] r = new double[n];
+    final double[] rHat = new double[n];
+    final double[] p = new double[n];
+    final double[] pHat = new double[n];
+    final double[] v = new double[n];
+    final double[] s = new double[n];
+    final double[] sHat = new double[n];
+    final double[] t = new double[n];
+    SparseMatrixKernels.dcsrmv(a, x, v);
+    for (int i = 0; i < n; i++) {
+      r[i] = b[i] - v[i];
+      v[i] = 0;
+    }
+    if (Math.sqrt(dot(r, r)) <= target) {
+      return 0;
+    }
+    System.arraycopy(r, 0, rHat, 0, n);
+    double rho = 1;
+    double alpha = 1;
+    double omega = 1;
+    for (int iteration = 1; iteration <= getMaxIterations(); iteration++) {
+      final double rhoNew = dot(rHat, r);
+      if (rhoNew == 0) {
+        throw new MathException("BiCGSTAB broke down: rho = 0");
+      }
+      final double beta = rhoNew / rho * alpha / omega;
+      rho = rhoNew;
+      for (int i = 0; i < n; i++) {
+        p[i] = r[i] + beta * (p[i] - omega * v[i]);
+      }
+      m.apply(p, pHat);
+      SparseMatrixKernels.dcsrmv(a, pHat, v);
+      alpha = rho / dot(rHat, v);
+      for (int i = 0; i < n; i++) {
+        s[i] = r[i] - alpha * v[i];
+      }
+      if (Math.sqrt(dot(s, s)) <= target) {
+        for (int i = 0; i < n; i++) {
+          x[i] += alpha * pHat[i];
+        }
+        return iteration;
+      }
+      m.apply(s, sHat);
+      SparseMatrixKernels.dcsrmv(a, sHat, t);
+      final double tt = dot(t, t);
+      if (tt == 0) {
+        throw new MathException("BiCGSTAB broke down: t = 0");
+      }
+      omega = dot(t, s) / tt;
+      for (int i = 0; i < n; i++) {
+        x[i] += alpha * pHat[i] + omega * sHat[i];
+        r[i] = s[i] - omega * t[i];
+      }
+      if (Math.sqrt(dot(r, r)) <= target) {
+        return iteration;
+      }
+      if (omega == 0) {
+        throw new MathException("BiCGSTAB broke down: omega = 0");
+      }
+    }
+    throw new MathException("BiCGSTAB failed to converge in " + getMaxIterations() + " iterations");
+  }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.DenseMatrixKernels;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * A pure Java, cache-blocked Cholesky decomposition of a symmetric positive-definite matrix. Only the lower triangle of the input is read.
+ * <p>
+ * The matrix is copied into a contiguous row-major array and factorised in place a panel of {@link DenseMatrixKernels#BLOCK_SIZE} columns at a time. After each
+ * panel is factorised the trailing lower triangle is updated with a symmetric rank-k update whose inner loop runs along rows of {@latex.inline $\\mathbf{L}$},
+ * i.e. over contiguous memory.
+ */
+public class CholeskyDecompositionOG extends Decomposition<CholeskyDecompositionResult> {
+  private final int _blockSize;
+
+  /**
+   * Uses the default block size, {@link DenseMatrixKernels#BLOCK_SIZE}
+   */
+  public CholeskyDecompositionOG() {
+    this(DenseMatrixKernels.BLOCK_SIZE);
+  }
+
+  /**
+   * @param blockSize The number of columns in each panel, greater than zero
+   */
+  public CholeskyDecompositionOG(final int blockSize) {
+    Validate.isTrue(blockSize > 0, "block size must be positive");
+    _blockSize = blockSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException If the matrix is not square or is not positive-definite
+   */
+  @Override
+  public CholeskyDecompositionResult evaluate(final DoubleMatrix2D x) {
+    Validate.notNull(x);
+    final int n = x.getNumberOfRows();
+    Validate.isTrue(n == x.getNumberOfColumns(), "Matrix must be square");
+    final double[] a = DenseMatrixKernels.toRowMajor(x.getData());
+    for (int kk = 0; kk < n; kk += _blockSize) {
+      final int kEnd = Math.min(kk + _blockSize, n);
+      // factorise the panel L[kk:n, kk:kEnd]; earlier panels have already been subtracted by the trailing updates
+      for (int j = kk; j < kEnd; j++) {
+        final int jOffset = j * n;
+        double d = a[jOffset + j];
+        for (int k = kk; k < j; k++) {
+          d -= a[jOffset + k] * a[jOffset + k];
+        }
+        Validate.isTrue(d > 0, "Matrix is not positive-definite");
+        final double ljj = Math.sqrt(d);
+        a[jOffset + j] = ljj;
+        for (int i = j + 1; i < n; i++) {
+          final int iOffset = i * n;
+          double sum = a[iOffset + j];
+          for (int k = kk; k < j; k++) {
+            sum -= a[iOffset + k] * a[jOffset + k];
+          }
+          a[iOffset + j] = sum / ljj;
+        }
+      }
+      // trailing update of the lower triangle: A22 -= L21 L21^T
+      for (int i = kEnd; i < n; i++) {
+        final int iOffset = i * n;
+        for (int j = kEnd; j <= i; j++) {
+          final int jOffset = j * n;
+          double sum = 0;
+          for (int k = kk; k < kEnd; k++) {
+            sum += a[iOffset + k] * a[jOffset + k];
+          }
+          a[iOffset + j] -= sum;
+        }
+      }
+    }
+    // clear the (unused) strict upper triangle
+    for (int i = 0; i < n; i++) {
+      final int iOffset = i * n;
+      for (int j = i + 1; j < n; j++) {
+        a[iOffset + j] = 0;
+      }
+    }
+    return new CholeskyDecompositionOGResult(a, n);
+  }
+
+}
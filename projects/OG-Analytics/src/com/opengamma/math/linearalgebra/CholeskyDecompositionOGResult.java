@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.DenseMatrixKernels;
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * Results of the OpenGamma implementation of Cholesky decomposition ({@link CholeskyDecompositionOG}).
+ */
+public class CholeskyDecompositionOGResult implements CholeskyDecompositionResult {
+  private final double[] _l;
+  private final int _n;
+  private final double _determinant;
+
+  /**
+   * @param l The lower-triangular matrix {@latex.inline $\\mathbf{L}$} in row-major form, not null
+   * @param n The dimension of the matrix
+   */
+  public CholeskyDecompositionOGResult(final double[] l, final int n) {
+    Validate.notNull(l, "l");
+    Validate.isTrue(l.length == n * n, "Data length does not match matrix dimension");
+    _l = l;
+    _n = n;
+    double determinant = 1;
+    for (int i = 0; i < n; i++) {
+      final double lii = l[i * n + i];
+      determinant *= lii * lii;
+    }
+    _determinant = determinant;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D getL() {
+    return new DoubleMatrix2D(DenseMatrixKernels.fromRowMajor(_l, _n, _n));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D getLT() {
+    final double[][] lt = new double[_n][_n];
+    for (int i = 0; i < _n; i++) {
+      for (int j = 0; j <= i; j++) {
+        lt[j][i] = _l[i * _n + j];
+      }
+    }
+    return new DoubleMatrix2D(lt);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDeterminant() {
+    return _determinant;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix1D solve(final DoubleMatrix1D b) {
+    Validate.notNull(b);
+    return new DoubleMatrix1D(solve(b.getData()));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double[] solve(final double[] b) {
+    Validate.notNull(b);
+    Validate.isTrue(b.length == _n, "Vector size does not match matrix dimension");
+    final double[] x = b.clone();
+    solveInPlace(x);
+    return x;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D solve(final DoubleMatrix2D b) {
+    Validate.notNull(b);
+    Validate.isTrue(b.getNumberOfRows() == _n, "Matrix size does not match matrix dimension");
+    final double[][] data = b.getData();
+    final int m = b.getNumberOfColumns();
+    final double[][] res = new double[_n][m];
+    final double[] x = new double[_n];
+    for (int j = 0; j < m; j++) {
+      for (int i = 0; i < _n; i++) {
+        x[i] = data[i][j];
+      }
+      solveInPlace(x);
+      for (int i = 0; i < _n; i++) {
+        res[i][j] = x[i];
+      }
+    }
+    return new DoubleMatrix2D(res);
+  }
+
+  // solves L y = b, then L^T x = y
+  private void solveInPlace(final double[] x) {
+    for (int i = 0; i < _n; i++) {
+      final int offset = i * _n;
+      double sum = x[i];
+      for (int j = 0; j < i; j++) {
+        sum -= _l[offset + j] * x[j];
+      }
+      x[i] = sum / _l[offset + i];
+    }
+    for (int i = _n - 1; i >= 0; i--) {
+      x[i] /= _l[i * _n + i];
+      final double xi = x[i];
+      final int offset = i * _n;
+      for (int j = 0; j < i; j++) {
+        x[j] -= _l[offset + j] * xi;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import com.opengamma.math.MathException;
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.SparseMatrixKernels;
+
+/**
+ * The preconditioned conjugate gradient method. The matrix and the preconditioner must both be symmetric positive-definite, so the {@link ILUPreconditioner}
+ * should not be used.
+ */
+public class ConjugateGradientSolver extends IterativeSolver {
+
+  /**
+   * Uses the default tolerance and maximum number of iterations, and Jacobi preconditioning
+   */
+  public ConjugateGradientSolver() {
+    this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS, PreconditionerType.JACOBI);
+  }
+
+  /**
+   * @param tolerance The relative tolerance, greater than zero
+   * @param maxIterations The maximum number of iterations, greater than zero
+   * @param preconditionerType The preconditioner, not null
+   */
+  public ConjugateGradientSolver(final double tolerance, final int maxIterations, final PreconditionerType preconditionerType) {
+    super(tolerance, maxIterations, preconditionerType);
+  }
+
+  @Override
+  protected int solve(final CompressedSparseRowFormatMatrix a, final Preconditioner m, final double[] b, final double[] x) {
+    final int n = b.length;
+    final double target = getTolerance() * Math.sqrt(dot(b, b));
+    final double[] r = new double[n];
+    final double[] z = new double[n];
+    final double[] p = new double[n];
+    final double[] ap = new double[n];
+    SparseMatrixKernels.dcsrmv(a, x, ap);
+    for (int i = 0; i < n; i++) {
+      r[i] = b[i] - ap[i];
+    }
+    if (Math.sqrt(dot(r, r)) <= target) {
+      return 0;
+    }
+    m.apply(r, z);
+    System.arraycopy(z, 0, p, 0, n);
+    double rz = dot(r, z);
+    for (int iteration = 1; iteration <= getMaxIterations(); iteration++) {
+      SparseMatrixKernels.dcsrmv(a, p, ap);
+      final double pap = dot(p, ap);
+      if (pap <= 0) {
+        throw new MathException("Conjugate gradient broke down; matrix is not positive-definite");
+      }
+      final double alpha = rz / pap;
+      for (int i = 0; i < n; i++) {
+        x[i] += alpha * p[i];
+        r[i] -= alpha * ap[i];
+      }
+      if (Math.sqrt(dot(r, r)) <= target) {
+        return iteration;
+      }
+      m.apply(r, z);
+      final double rzNew = dot(r, z);
+      final double beta = rzNew / rz;
+      rz = rzNew;
+      for (int i = 0; i < n; i++) {
+        p[i] = z[i] + beta * p[i];
+      }
+    }
+    throw new MathException("Conjugate gradient failed to converge in " + getMaxIterations() + " iterations");
+  }
+
+}
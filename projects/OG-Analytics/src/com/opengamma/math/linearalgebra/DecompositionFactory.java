@@ -14,6 +14,14 @@ import java.util.Map;
 public final class DecompositionFactory {
   /** Commons LU decomposition */
   public static final String LU_COMMONS_NAME = "LU_COMMONS";
+  /** OpenGamma LU decomposition */
+  public static final String LU_OG_NAME = "LU_OG";
+  /** OpenGamma Cholesky decomposition */
+  public static final String CHOLESKY_OG_NAME = "CHOLESKY_OG";
+  /** Jacobi-preconditioned conjugate gradient solver */
+  public static final String CONJUGATE_GRADIENT_NAME = "CONJUGATE_GRADIENT";
+  /** ILU(0)-preconditioned BiCGSTAB solver */
+  public static final String BICGSTAB_NAME = "BICGSTAB";
   /** Commons QR decomposition */
   public static final String QR_COMMONS_NAME = "QR_COMMONS";
   /** Colt SV decomposition */
@@ -22,6 +30,14 @@ public final class DecompositionFactory {
   public static final String SV_COMMONS_NAME = "SV_COMMONS";
   /** {@link LUDecompositionCommons} */
   public static final Decomposition<?> LU_COMMONS = new LUDecompositionCommons();
+  /** {@link LUDecompositionOG} */
+  public static final Decomposition<?> LU_OG = new LUDecompositionOG();
+  /** {@link CholeskyDecompositionOG} */
+  public static final Decomposition<?> CHOLESKY_OG = new CholeskyDecompositionOG();
+  /** {@link ConjugateGradientSolver} */
+  public static final Decomposition<?> CONJUGATE_GRADIENT = new ConjugateGradientSolver();
+  /** {@link BiCGSTABSolver} */
+  public static final Decomposition<?> BICGSTAB = new BiCGSTABSolver();
   /** {@link QRDecompositionCommons} */
   public static final Decomposition<?> QR_COMMONS = new QRDecompositionCommons();
   /** {@link SVDecompositionColt} */
@@ -34,11 +50,19 @@ public final class DecompositionFactory {
   static {
     s_staticInstances = new HashMap<String, Decomposition<?>>();
     s_staticInstances.put(LU_COMMONS_NAME, LU_COMMONS);
+    s_staticInstances.put(LU_OG_NAME, LU_OG);
+    s_staticInstances.put(CHOLESKY_OG_NAME, CHOLESKY_OG);
+    s_staticInstances.put(CONJUGATE_GRADIENT_NAME, CONJUGATE_GRADIENT);
+    s_staticInstances.put(BICGSTAB_NAME, BICGSTAB);
     s_staticInstances.put(QR_COMMONS_NAME, QR_COMMONS);
     s_staticInstances.put(SV_COLT_NAME, SV_COLT);
     s_staticInstances.put(SV_COMMONS_NAME, SV_COMMONS);
     s_instanceNames = new HashMap<Class<?>, String>();
     s_instanceNames.put(LU_COMMONS.getClass(), LU_COMMONS_NAME);
+    s_instanceNames.put(LU_OG.getClass(), LU_OG_NAME);
+    s_instanceNames.put(CHOLESKY_OG.getClass(), CHOLESKY_OG_NAME);
+    s_instanceNames.put(CONJUGATE_GRADIENT.getClass(), CONJUGATE_GRADIENT_NAME);
+    s_instanceNames.put(BICGSTAB.getClass(), BICGSTAB_NAME);
     s_instanceNames.put(QR_COMMONS.getClass(), QR_COMMONS_NAME);
     s_instanceNames.put(SV_COLT.getClass(), SV_COLT_NAME);
     s_instanceNames.put(SV_COMMONS.getClass(), SV_COMMONS_NAME);
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+
+/**
+ * The zero fill-in incomplete LU preconditioner, ILU(0). {@latex.inline $\\mathbf{M} = \\mathbf{LU}$} where {@latex.inline $\\mathbf{L}$} (unit lower-triangular)
+ * and {@latex.inline $\\mathbf{U}$} (upper-triangular) have the same sparsity pattern as {@latex.inline $\\mathbf{A}$}, so the factors are held in a single
+ * copy of the non-zero values of {@latex.inline $\\mathbf{A}$}. For a banded matrix with no gaps in the band (e.g. a tri-diagonal matrix) this is an exact
+ * factorisation.
+ * <p>
+ * The preconditioner is not symmetric, so should be used with {@link BiCGSTABSolver} rather than {@link ConjugateGradientSolver}.
+ */
+public class ILUPreconditioner implements Preconditioner {
+  private final int _n;
+  private final int[] _rowPtr;
+  private final int[] _colIdx;
+  private final int[] _diagonal;
+  private final double[] _lu;
+
+  /**
+   * @param a The matrix, not null. Must be square with no zeros on the diagonal
+   */
+  public ILUPreconditioner(final CompressedSparseRowFormatMatrix a) {
+    Validate.notNull(a, "a");
+    _n = a.getNumberOfRows();
+    Validate.isTrue(_n == a.getNumberOfColumns(), "Matrix must be square");
+    _rowPtr = a.getRowPtr();
+    _colIdx = a.getColumnIndex();
+    _lu = a.getNonZeroValues().clone();
+    _diagonal = new int[_n];
+    // position in the current row of each column, or -1
+    final int[] position = new int[_n];
+    Arrays.fill(position, -1);
+    for (int i = 0; i < _n; i++) {
+      final int start = _rowPtr[i];
+      final int end = _rowPtr[i + 1];
+      _diagonal[i] = -1;
+      for (int k = start; k < end; k++) {
+        position[_colIdx[k]] = k;
+        if (_colIdx[k] == i) {
+          _diagonal[i] = k;
+        }
+      }
+      Validate.isTrue(_diagonal[i] >= 0, "No diagonal element in row " + i);
+      for (int k = start; k < _diagonal[i]; k++) {
+        final int row = _colIdx[k];
+        final double lik = _lu[k] / _lu[_diagonal[row]];
+        _lu[k] = lik;
+        for (int kk = _diagonal[row] + 1; kk < _rowPtr[row + 1]; kk++) {
+          final int p = position[_colIdx[kk]];
+          if (p >= 0) {
+            _lu[p] -= lik * _lu[kk];
+          }
+        }
+      }
+      Validate.isTrue(_lu[_diagonal[i]] != 0, "Zero pivot in incomplete factorisation at row " + i);
+      for (int k = start; k < end; k++) {
+        position[_colIdx[k]] = -1;
+      }
+    }
+  }
+
+  @Override
+  public void apply(final double[] r, final double[] z) {
+    for (int i = 0; i < _n; i++) {
+      double sum = r[i];
+      for (int k = _rowPtr[i]; k < _diagonal[i]; k++) {
+        sum -= _lu[k] * z[_colIdx[k]];
+      }
+      z[i] = sum;
+    }
+    for (int i = _n - 1; i >= 0; i--) {
+      double sum = z[i];
+      for (int k = _diagonal[i] + 1; k < _rowPtr[i + 1]; k++) {
+        sum -= _lu[k] * z[_colIdx[k]];
+      }
+      z[i] = sum / _lu[_diagonal[i]];
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * Base class for preconditioned Krylov-subspace solvers of {@latex.inline $\\mathbf{A}x = b$} for large, sparse {@latex.inline $\\mathbf{A}$}. These fit the
+ * {@link Decomposition} pattern: "decomposing" a matrix converts it to {@link CompressedSparseRowFormatMatrix compressed sparse row} form and builds the
+ * preconditioner, and the solve methods of the {@link IterativeSolverResult} run the iteration. A matrix that is already sparse should be passed to
+ * {@link #evaluate(CompressedSparseRowFormatMatrix)} directly, as it is never densified.
+ * <p>
+ * The iteration stops when {@latex.inline $|b - \\mathbf{A}x|_2 \\leq \\epsilon |b|_2$}, where {@latex.inline $\\epsilon$} is the tolerance.
+ */
+public abstract class IterativeSolver extends Decomposition<IterativeSolverResult> {
+  /** The default relative tolerance */
+  public static final double DEFAULT_TOLERANCE = 1e-10;
+  /** The default maximum number of iterations */
+  public static final int DEFAULT_MAX_ITERATIONS = 1000;
+  private final double _tolerance;
+  private final int _maxIterations;
+  private final PreconditionerType _preconditionerType;
+
+  /**
+   * @param tolerance The relative tolerance, greater than zero
+   * @param maxIterations The maximum number of iterations, greater than zero
+   * @param preconditionerType The preconditioner, not null
+   */
+  protected IterativeSolver(final double tolerance, final int maxIterations, final PreconditionerType preconditionerType) {
+    Validate.isTrue(tolerance > 0, "tolerance must be positive");
+    Validate.isTrue(maxIterations > 0, "maximum iterations must be positive");
+    Validate.notNull(preconditionerType, "preconditioner type");
+    _tolerance = tolerance;
+    _maxIterations = maxIterations;
+    _preconditionerType = preconditionerType;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public IterativeSolverResult evaluate(final DoubleMatrix2D x) {
+    Validate.notNull(x);
+    return evaluate(new CompressedSparseRowFormatMatrix(x));
+  }
+
+  /**
+   * @param a The sparse matrix, not null. Must be square
+   * @return The result, from which systems can be solved
+   */
+  public IterativeSolverResult evaluate(final CompressedSparseRowFormatMatrix a) {
+    Validate.notNull(a);
+    Validate.isTrue(a.getNumberOfRows() == a.getNumberOfColumns(), "Matrix must be square");
+    return new IterativeSolverResult(this, a, _preconditionerType.getPreconditioner(a));
+  }
+
+  /**
+   * Runs the iteration.
+   * @param a The matrix, not null
+   * @param m The preconditioner, not null
+   * @param b The right-hand side, not null
+   * @param x On entry, the initial guess; on exit, the solution. Not null
+   * @return The number of iterations taken
+   * @throws com.opengamma.math.MathException If the iteration does not converge within the maximum number of iterations or breaks down
+   */
+  protected abstract int solve(CompressedSparseRowFormatMatrix a, Preconditioner m, double[] b, double[] x);
+
+  /**
+   * Gets the relative tolerance.
+   * @return the tolerance
+   */
+  public double getTolerance() {
+    return _tolerance;
+  }
+
+  /**
+   * Gets the maximum number of iterations.
+   * @return the maximum number of iterations
+   */
+  public int getMaxIterations() {
+    return _maxIterations;
+  }
+
+  /**
+   * Gets the preconditioner type.
+   * @return the preconditioner type
+   */
+  public PreconditionerType getPreconditionerType() {
+    return _preconditionerType;
+  }
+
+  static double dot(final double[] x, final double[] y) {
+    double sum = 0;
+    for (int i = 0; i < x.length; i++) {
+      sum += x[i] * y[i];
+    }
+    return sum;
+  }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * Holds a sparse matrix and its preconditioner; the solve methods run an {@link IterativeSolver}. As the iteration can be started from any point,
+ * {@link #solve(double[], double[])} allows a warm start, e.g. from the solution at the previous time step of a PDE solver.
+ */
+public class IterativeSolverResult implements DecompositionResult {
+  private final IterativeSolver _solver;
+  private final CompressedSparseRowFormatMatrix _matrix;
+  private final Preconditioner _preconditioner;
+
+  /**
+   * @param solver The solver, not null
+   * @param matrix The matrix, not null
+   * @param preconditioner The preconditioner built from the matrix, not null
+   */
+  public IterativeSolverResult(final IterativeSolver solver, final CompressedSparseRowFormatMatrix matrix, final Preconditioner preconditioner) {
+    Validate.notNull(solver, "solver");
+    Validate.notNull(matrix, "matrix");
+    Validate.notNull(preconditioner, "preconditioner");
+    _solver = solver;
+    _matrix = matrix;
+    _preconditioner = preconditioner;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix1D solve(final DoubleMatrix1D b) {
+    Validate.notNull(b);
+    return new DoubleMatrix1D(solve(b.getData()));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double[] solve(final double[] b) {
+    Validate.notNull(b);
+    return solve(b, new double[b.length]);
+  }
+
+  /**
+   * Solves {@latex.inline $\\mathbf{A}x = b$} starting the iteration from an initial guess.
+   * @param b The right-hand side, not null
+   * @param initialGuess The initial guess, not null. It is not changed
+   * @return The vector x
+   */
+  public double[] solve(final double[] b, final double[] initialGuess) {
+    Validate.notNull(b, "b");
+    Validate.notNull(initialGuess, "initial guess");
+    final int n = _matrix.getNumberOfRows();
+    Validate.isTrue(b.length == n && initialGuess.length == n, "Vector size does not match matrix dimension");
+    final double[] x = initialGuess.clone();
+    _solver.solve(_matrix, _preconditioner, b, x);
+    return x;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D solve(final DoubleMatrix2D b) {
+    Validate.notNull(b);
+    final int n = _matrix.getNumberOfRows();
+    Validate.isTrue(b.getNumberOfRows() == n, "Matrix size does not match matrix dimension");
+    final double[][] data = b.getData();
+    final int m = b.getNumberOfColumns();
+    final double[][] res = new double[n][m];
+    final double[] column = new double[n];
+    for (int j = 0; j < m; j++) {
+      for (int i = 0; i < n; i++) {
+        column[i] = data[i][j];
+      }
+      final double[] x = solve(column);
+      for (int i = 0; i < n; i++) {
+        res[i][j] = x[i];
+      }
+    }
+    return new DoubleMatrix2D(res);
+  }
+
+  /**
+   * Gets the matrix.
+   * @return the matrix
+   */
+  public CompressedSparseRowFormatMatrix getMatrix() {
+    return _matrix;
+  }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+
+/**
+ * The Jacobi (diagonal) preconditioner, {@latex.inline $\\mathbf{M} = \\mathrm{diag}(\\mathbf{A})$}. It is symmetric, so can be used with
+ * {@link ConjugateGradientSolver}.
+ */
+public class JacobiPreconditioner implements Preconditioner {
+  private final double[] _inverseDiagonal;
+
+  /**
+   * @param a The matrix, not null. Must be square with no zeros on the diagonal
+   */
+  public JacobiPreconditioner(final CompressedSparseRowFormatMatrix a) {
+    Validate.notNull(a, "a");
+    final int n = a.getNumberOfRows();
+    Validate.isTrue(n == a.getNumberOfColumns(), "Matrix must be square");
+    final int[] rowPtr = a.getRowPtr();
+    final int[] colIdx = a.getColumnIndex();
+    final double[] values = a.getNonZeroValues();
+    _inverseDiagonal = new double[n];
+    for (int i = 0; i < n; i++) {
+      for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+        if (colIdx[k] == i) {
+          _inverseDiagonal[i] = 1 / values[k];
+          break;
+        }
+      }
+      Validate.isTrue(_inverseDiagonal[i] != 0 && !Double.isInfinite(_inverseDiagonal[i]), "Zero on diagonal of row " + i);
+    }
+  }
+
+  @Override
+  public void apply(final double[] r, final double[] z) {
+    final int n = _inverseDiagonal.length;
+    for (int i = 0; i < n; i++) {
+      z[i] = r[i] * _inverseDiagonal[i];
+    }
+  }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.DenseMatrixKernels;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * A pure Java, cache-blocked LU decomposition with partial (row) pivoting. The matrix is copied into a contiguous row-major array and factorised in place,
+ * a panel of {@link DenseMatrixKernels#BLOCK_SIZE} columns at a time: each panel is factorised, the corresponding block row of {@latex.inline $\\mathbf{U}$}
+ * is computed and the trailing sub-matrix is then updated in a single blocked pass.
+ */
+public class LUDecompositionOG extends Decomposition<LUDecompositionResult> {
+  private final int _blockSize;
+
+  /**
+   * Uses the default block size, {@link DenseMatrixKernels#BLOCK_SIZE}
+   */
+  public LUDecompositionOG() {
+    this(DenseMatrixKernels.BLOCK_SIZE);
+  }
+
+  /**
+   * @param blockSize The number of columns in each panel, greater than zero
+   */
+  public LUDecompositionOG(final int blockSize) {
+    Validate.isTrue(blockSize > 0, "block size must be positive");
+    _blockSize = blockSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException If the matrix is not square or is singular
+   */
+  @Override
+  public LUDecompositionResult evaluate(final DoubleMatrix2D x) {
+    Validate.notNull(x);
+    final int n = x.getNumberOfRows();
+    Validate.isTrue(n == x.getNumberOfColumns(), "Matrix must be square");
+    final double[] a = DenseMatrixKernels.toRowMajor(x.getData());
+    final int[] pivot = new int[n];
+    for (int i = 0; i < n; i++) {
+      pivot[i] = i;
+    }
+    boolean even = true;
+    for (int kk = 0; kk < n; kk += _blockSize) {
+      final int kEnd = Math.min(kk + _blockSize, n);
+      // factorise the panel A[kk:n, kk:kEnd], swapping whole rows
+      for (int j = kk; j < kEnd; j++) {
+        int p = j;
+        double max = Math.abs(a[j * n + j]);
+        for (int i = j + 1; i < n; i++) {
+          final double abs = Math.abs(a[i * n + j]);
+          if (abs > max) {
+            max = abs;
+            p = i;
+          }
+        }
+        Validate.isTrue(max != 0, "Matrix is singular; could not perform LU decomposition");
+        if (p != j) {
+          swapRows(a, n, p, j);
+          final int temp = pivot[p];
+          pivot[p] = pivot[j];
+          pivot[j] = temp;
+          even = !even;
+        }
+        final int jOffset = j * n;
+        final double diagonal = a[jOffset + j];
+        for (int i = j + 1; i < n; i++) {
+          final int iOffset = i * n;
+          final double l = a[iOffset + j] / diagonal;
+          a[iOffset + j] = l;
+          for (int c = j + 1; c < kEnd; c++) {
+            a[iOffset + c] -= l * a[jOffset + c];
+          }
+        }
+      }
+      if (kEnd == n) {
+        break;
+      }
+      // block row of U: U12 = L11^-1 A12
+      for (int j = kk; j < kEnd; j++) {
+        final int jOffset = j * n;
+        for (int i = j + 1; i < kEnd; i++) {
+          final int iOffset = i * n;
+          final double l = a[iOffset + j];
+          for (int c = kEnd; c < n; c++) {
+            a[iOffset + c] -= l * a[jOffset + c];
+          }
+        }
+      }
+      // trailing update: A22 -= L21 U12
+      for (int i = kEnd; i < n; i++) {
+        final int iOffset = i * n;
+        for (int k = kk; k < kEnd; k++) {
+          final double l = a[iOffset + k];
+          final int kOffset = k * n;
+          for (int c = kEnd; c < n; c++) {
+            a[iOffset + c] -= l * a[kOffset + c];
+          }
+        }
+      }
+    }
+    return new LUDecompositionOGResult(a, n, pivot, even);
+  }
+
+  private static void swapRows(final double[] a, final int n, final int r1, final int r2) {
+    final int offset1 = r1 * n;
+    final int offset2 = r2 * n;
+    for (int c = 0; c < n; c++) {
+      final double temp = a[offset1 + c];
+      a[offset1 + c] = a[offset2 + c];
+      a[offset2 + c] = temp;
+    }
+  }
+
+}
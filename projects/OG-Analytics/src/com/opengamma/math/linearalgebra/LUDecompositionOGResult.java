@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * Results of the OpenGamma implementation of LU decomposition ({@link LUDecompositionOG}). The factors are held packed in a single row-major array: the
+ * strictly lower triangle holds {@latex.inline $\\mathbf{L}$} (whose diagonal is one) and the upper triangle holds {@latex.inline $\\mathbf{U}$}.
+ */
+public class LUDecompositionOGResult implements LUDecompositionResult {
+  private final double[] _lu;
+  private final int _n;
+  private final int[] _pivot;
+  private final double _determinant;
+
+  /**
+   * @param lu The packed factors in row-major form, not null
+   * @param n The dimension of the matrix
+   * @param pivot The pivot permutation vector, not null
+   * @param evenPermutation True if the pivoting was an even permutation
+   */
+  public LUDecompositionOGResult(final double[] lu, final int n, final int[] pivot, final boolean evenPermutation) {
+    Validate.notNull(lu, "lu");
+    Validate.notNull(pivot, "pivot");
+    Validate.isTrue(lu.length == n * n, "Data length does not match matrix dimension");
+    Validate.isTrue(pivot.length == n, "Pivot length does not match matrix dimension");
+    _lu = lu;
+    _n = n;
+    _pivot = pivot;
+    double determinant = evenPermutation ? 1 : -1;
+    for (int i = 0; i < n; i++) {
+      determinant *= lu[i * n + i];
+    }
+    _determinant = determinant;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double getDeterminant() {
+    return _determinant;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D getL() {
+    final double[][] l = new double[_n][_n];
+    for (int i = 0; i < _n; i++) {
+      for (int j = 0; j < i; j++) {
+        l[i][j] = _lu[i * _n + j];
+      }
+      l[i][i] = 1;
+    }
+    return new DoubleMatrix2D(l);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D getU() {
+    final double[][] u = new double[_n][_n];
+    for (int i = 0; i < _n; i++) {
+      for (int j = i; j < _n; j++) {
+        u[i][j] = _lu[i * _n + j];
+      }
+    }
+    return new DoubleMatrix2D(u);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D getP() {
+    final double[][] p = new double[_n][_n];
+    for (int i = 0; i < _n; i++) {
+      p[i][_pivot[i]] = 1;
+    }
+    return new DoubleMatrix2D(p);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int[] getPivot() {
+    return _pivot;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix1D solve(final DoubleMatrix1D b) {
+    Validate.notNull(b);
+    return new DoubleMatrix1D(solve(b.getData()));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public double[] solve(final double[] b) {
+    Validate.notNull(b);
+    Validate.isTrue(b.length == _n, "Vector size does not match matrix dimension");
+    final double[] x = new double[_n];
+    for (int i = 0; i < _n; i++) {
+      x[i] = b[_pivot[i]];
+    }
+    solveInPlace(x);
+    return x;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public DoubleMatrix2D solve(final DoubleMatrix2D b) {
+    Validate.notNull(b);
+    Validate.isTrue(b.getNumberOfRows() == _n, "Matrix size does not match matrix dimension");
+    final double[][] data = b.getData();
+    final int m = b.getNumberOfColumns();
+    final double[][] res = new double[_n][m];
+    final double[] x = new double[_n];
+    for (int j = 0; j < m; j++) {
+      for (int i = 0; i < _n; i++) {
+        x[i] = data[_pivot[i]][j];
+      }
+      solveInPlace(x);
+      for (int i = 0; i < _n; i++) {
+        res[i][j] = x[i];
+      }
+    }
+    return new DoubleMatrix2D(res);
+  }
+
+  // forward substitution with the unit lower triangle, then back substitution with the upper triangle
+  private void solveInPlace(final double[] x) {
+    for (int i = 1; i < _n; i++) {
+      final int offset = i * _n;
+      double sum = x[i];
+      for (int j = 0; j < i; j++) {
+        sum -= _lu[offset + j] * x[j];
+      }
+      x[i] = sum;
+    }
+    for (int i = _n - 1; i >= 0; i--) {
+      final int offset = i * _n;
+      double sum = x[i];
+      for (int j = i + 1; j < _n; j++) {
+        sum -= _lu[offset + j] * x[j];
+      }
+      x[i] = sum / _lu[offset + i];
+    }
+  }
+
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+/**
+ * A preconditioner {@latex.inline $\\mathbf{M} \\approx \\mathbf{A}$} for an {@link IterativeSolver}. Implementations must be cheap to apply, as they are
+ * applied once or twice per iteration.
+ */
+public interface Preconditioner {
+
+  /**
+   * Solves {@latex.inline $\\mathbf{M}z = r$}.
+   * @param r The residual, not null
+   * @param z The array to hold the result, not null. Must not be the same array as r
+   */
+  void apply(double[] r, double[] z);
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+
+/**
+ * The preconditioners available to an {@link IterativeSolver}.
+ */
+public enum PreconditionerType {
+  /** No preconditioning */
+  NONE {
+    @Override
+    public Preconditioner getPreconditioner(final CompressedSparseRowFormatMatrix a) {
+      return new Preconditioner() {
+        @Override
+        public void apply(final double[] r, final double[] z) {
+          System.arraycopy(r, 0, z, 0, r.length);
+        }
+      };
+    }
+  },
+  /** {@link JacobiPreconditioner} */
+  JACOBI {
+    @Override
+    public Preconditioner getPreconditioner(final CompressedSparseRowFormatMatrix a) {
+      return new JacobiPreconditioner(a);
+    }
+  },
+  /** {@link ILUPreconditioner} */
+  ILU {
+    @Override
+    public Preconditioner getPreconditioner(final CompressedSparseRowFormatMatrix a) {
+      return new ILUPreconditioner(a);
+    }
+  };
+
+  /**
+   * Builds the preconditioner for a matrix.
+   * @param a The matrix, not null
+   * @return The preconditioner
+   */
+  public abstract Preconditioner getPreconditioner(final CompressedSparseRowFormatMatrix a);
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.MathException;
+
+/**
+ * Solves tri-diagonal systems by the Thomas algorithm (Gaussian elimination without pivoting) using preallocated scratch arrays, so that repeated solves of
+ * the same size (e.g. at each time step of a finite difference scheme) do not allocate. The algorithm is only stable for diagonally dominant (or symmetric
+ * positive-definite) systems.
+ * <p>
+ * Instances are not thread-safe; each thread should have its own workspace.
+ */
+public class TridiagonalSolverWorkspace {
+  private final int _n;
+  private final double[] _cPrime;
+  private final double[] _dPrime;
+
+  /**
+   * @param n The size of the systems to be solved, greater than zero
+   */
+  public TridiagonalSolverWorkspace(final int n) {
+    Validate.isTrue(n > 0, "size must be positive");
+    _n = n;
+    _cPrime = new double[n];
+    _dPrime = new double[n];
+  }
+
+  /**
+   * Gets the size of the systems that can be solved.
+   * @return the size
+   */
+  public int getSize() {
+    return _n;
+  }
+
+  /**
+   * Solves {@latex.inline $\\mathbf{A}x = d$}, where row {@latex.inline $i$} of {@latex.inline $\\mathbf{A}$} is {@code lower[i]}, {@code diagonal[i]},
+   * {@code upper[i]} in columns {@latex.inline $i-1, i, i+1$}. {@code lower[0]} and {@code upper[n-1]} are ignored. None of the input arrays are changed.
+   * @param lower The sub-diagonal, not null
+   * @param diagonal The diagonal, not null
+   * @param upper The super-diagonal, not null
+   * @param d The right-hand side, not null
+   * @param x The array to hold the solution, not null. This may be the same array as d
+   * @throws MathException If a zero pivot is found
+   */
+  public void solve(final double[] lower, final double[] diagonal, final double[] upper, final double[] d, final double[] x) {
+    Validate.notNull(lower, "lower");
+    Validate.notNull(diagonal, "diagonal");
+    Validate.notNull(upper, "upper");
+    Validate.notNull(d, "d");
+    Validate.notNull(x, "x");
+    Validate.isTrue(lower.length >= _n && diagonal.length >= _n && upper.length >= _n && d.length >= _n && x.length >= _n, "arrays are shorter than the workspace size");
+    double pivot = diagonal[0];
+    if (pivot == 0) {
+      throw new MathException("Zero pivot in row 0 of tri-diagonal system");
+    }
+    _cPrime[0] = upper[0] / pivot;
+    _dPrime[0] = d[0] / pivot;
+    for (int i = 1; i < _n; i++) {
+      pivot = diagonal[i] - lower[i] * _cPrime[i - 1];
+      if (pivot == 0) {
+        throw new MathException("Zero pivot in row " + i + " of tri-diagonal system");
+      }
+      _cPrime[i] = upper[i] / pivot;
+      _dPrime[i] = (d[i] - lower[i] * _dPrime[i - 1]) / pivot;
+    }
+    x[_n - 1] = _dPrime[_n - 1];
+    for (int i = _n - 2; i >= 0; i--) {
+      x[i] = _dPrime[i] - _cPrime[i] * x[i + 1];
+    }
+  }
+
+}
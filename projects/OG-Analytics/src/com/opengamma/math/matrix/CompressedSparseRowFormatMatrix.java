@@ -10,7 +10,10 @@ import java.util.Arrays;
 import org.apache.commons.lang.Validate;
 
 /**
- *
+ * A sparse matrix held in compressed sparse row (CSR) form. The non-zero values of row {@latex.inline $i$} are held in positions
+ * {@code rowPtr[i]} (inclusive) to {@code rowPtr[i + 1]} (exclusive) of the values array, and their column indices in the same positions of the column index array.
+ * <p>
+ * See {@link SparseMatrixKernels} for multiplication.
  */
 public class CompressedSparseRowFormatMatrix implements Matrix<Double> {
 
@@ -18,6 +21,8 @@ public class CompressedSparseRowFormatMatrix implements Matrix<Double> {
   private int[] _colIdx;
   private int[] _rowPtr;
   private int _els;
+  private int _rows;
+  private int _cols;
 
 // constructors
   public CompressedSparseRowFormatMatrix(DoubleMatrix2D m) {
@@ -29,7 +34,7 @@ public class CompressedSparseRowFormatMatrix implements Matrix<Double> {
     // tmp arrays, in case we get in a fully populated matrix, intelligent design upstream should ensure that this is overkill!
     double[] dataTmp = new double[_els];
     int[] colIndTmp = new int[_els];
-    int[] rowPtrTmp = new int[_els];
+    int[] rowPtrTmp = new int[m.getNumberOfRows() + 1];
 
     // we need unwind the array m into coordinate form
     int ptr = 0;
@@ -50,40 +55,80 @@ public class CompressedSparseRowFormatMatrix implements Matrix<Double> {
     _values = Arrays.copyOfRange(dataTmp, 0, ptr);
     _colIdx = Arrays.copyOfRange(colIndTmp, 0, ptr);
     _rowPtr = Arrays.copyOfRange(rowPtrTmp, 0, i + 1); // yes, the +1 is correct!
+    _rows = m.getNumberOfRows();
+    _cols = m.getNumberOfColumns();
+  }
+
+  /**
+   * Constructs directly from the compressed sparse row arrays, which are not copied. The column indices within each row must be strictly increasing.
+   * @param rows The number of rows
+   * @param cols The number of columns
+   * @param rowPtr The row pointers, not null. Must have length rows + 1, start at zero and be non-decreasing
+   * @param colIdx The column indices of the non-zero values, not null
+   * @param values The non-zero values, not null
+   */
+  public CompressedSparseRowFormatMatrix(final int rows, final int cols, final int[] rowPtr, final int[] colIdx, final double[] values) {
+    Validate.isTrue(rows >= 0 && cols >= 0, "dimensions must not be negative");
+    Validate.notNull(rowPtr, "row pointers");
+    Validate.notNull(colIdx, "column indices");
+    Validate.notNull(values, "values");
+    Validate.isTrue(rowPtr.length == rows + 1, "need one row pointer per row plus one");
+    Validate.isTrue(colIdx.length == values.length, "need one column index per value");
+    Validate.isTrue(rowPtr[0] == 0 && rowPtr[rows] == values.length, "row pointers must span the values");
+    for (int i = 0; i < rows; i++) {
+      Validate.isTrue(rowPtr[i] <= rowPtr[i + 1], "row pointers must be non-decreasing");
+      for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+        Validate.isTrue(colIdx[k] >= 0 && colIdx[k] < cols, "column index out of range");
+        Validate.isTrue(k == rowPtr[i] || colIdx[k] > colIdx[k - 1], "column indices must be strictly increasing within a row");
+      }
+    }
+    _rows = rows;
+    _cols = cols;
+    _els = rows * cols;
+    _rowPtr = rowPtr;
+    _colIdx = colIdx;
+    _values = values;
   }
 
 //constructors
   public CompressedSparseRowFormatMatrix(SparseCoordinateFormatMatrix m) {
     Validate.notNull(m);
 
-    //get number of elements
     _els = m.getNumberOfElements();
+    _rows = m.getNumberOfRows();
+    _cols = m.getNumberOfColumns();
+
+    final int[] rowCoords = m.getRowCoordinates();
+    final int[] colCoords = m.getColumnCoordinates();
+    final double[] entries = m.getNonZeroEntries();
+    final int nnz = entries.length;
+
+    // count the entries in each row, then accumulate into row pointers
+    _rowPtr = new int[_rows + 1];
+    for (int k = 0; k < nnz; k++) {
+      _rowPtr[rowCoords[k] + 1]++;
+    }
+    for (int i = 0; i < _rows; i++) {
+      _rowPtr[i + 1] += _rowPtr[i];
+    }
 
-    // tmp arrays, in case we get in a fully populated matrix, intelligent design upstream should ensure that this is overkill!
-    int[] rowPtrTmp = new int[_els];
-    double[] dataTmp = null;
-    int[] colIdxTmp = null;
-
-    // we need unwind the array m into coordinate form
-    int ptr = 0;
-    int i;
-    for (i = 0; i < m.getNumberOfRows(); i++) {
-      rowPtrTmp[i] = ptr;
-      for (int j = 0; j < m.getNumberOfColumns(); j++) {
-        if (Double.doubleToLongBits(m.getEntry(i, j)) != 0L) {
-          ptr++;
-        }
+    // scatter into place, keeping the columns of each row in increasing order
+    _values = new double[nnz];
+    _colIdx = new int[nnz];
+    final int[] next = Arrays.copyOf(_rowPtr, _rows);
+    for (int k = 0; k < nnz; k++) {
+      final int row = rowCoords[k];
+      int ptr = next[row]++;
+      while (ptr > _rowPtr[row] && _colIdx[ptr - 1] > colCoords[k]) {
+        _colIdx[ptr] = _colIdx[ptr - 1];
+        _values[ptr] = _values[ptr - 1];
+        ptr--;
       }
+      _colIdx[ptr] = colCoords[k];
+      _values[ptr] = entries[k];
     }
-
-    rowPtrTmp[i] = ptr;
-
-    _values = Arrays.copyOfRange(dataTmp, 0, ptr);
-    _colIdx = Arrays.copyOfRange(colIdxTmp, 0, ptr);
-    _rowPtr = Arrays.copyOfRange(rowPtrTmp, 0, i + 1); // yes, the +1 is correct!
   }
 
-
 // methods
   public int[] getColumnIndex() {
     return _colIdx;
@@ -97,14 +142,42 @@ public class CompressedSparseRowFormatMatrix implements Matrix<Double> {
     return _values;
   }
 
+  public int getNumberOfRows() {
+    return _rows;
+  }
+
+  public int getNumberOfColumns() {
+    return _cols;
+  }
+
+  public int getNumberOfNonZeroElements() {
+    return _values.length;
+  }
+
   @Override
   public int getNumberOfElements() {
-    return 0;
+    return _els;
   }
 
   @Override
   public Double getEntry(int... indices) {
-    return null;
+    Validate.isTrue(indices.length == 2, "need a row and a column index");
+    final int row = indices[0];
+    final int k = Arrays.binarySearch(_colIdx, _rowPtr[row], _rowPtr[row + 1], indices[1]);
+    return k < 0 ? 0D : _values[k];
+  }
+
+  /**
+   * @return The matrix as a DoubleMatrix2D
+   */
+  public DoubleMatrix2D toFullMatrix() {
+    final double[][] data = new double[_rows][_cols];
+    for (int i = 0; i < _rows; i++) {
+      for (int k = _rowPtr[i]; k < _rowPtr[i + 1]; k++) {
+        data[i][_colIdx[k]] = _values[k];
+      }
+    }
+    return new DoubleMatrix2D(data);
   }
 
 
@@ -113,7 +186,9 @@ public class CompressedSparseRowFormatMatrix implements Matrix<Double> {
     return "\nvalues=" + Arrays.toString(_values) +
       "\ncolInd=" + Arrays.toString(_colIdx) +
       "\nrowPtr=" + Arrays.toString(_rowPtr) +
-      "\nels=" + _els;
+      "\nels=" + _els +
+      "\nrows=" + _rows +
+      "\ncols=" + _cols;
   }
 
 }
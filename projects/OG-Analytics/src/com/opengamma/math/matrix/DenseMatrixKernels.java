@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * Pure Java kernels for dense matrix multiplication. Matrices are held as contiguous row-major arrays, i.e. the element {@latex.inline $a_{ij}$} of an
+ * {@latex.inline $m \\times n$} matrix is held at index {@latex.inline $in + j$}.
+ * <p>
+ * The matrix-matrix product is cache-blocked, and every element of the result is accumulated in the same order as the textbook triple loop, so the results are
+ * identical to those of the naive algorithm. Each kernel has a variant that splits the rows of the result into bands that are computed on an {@link ExecutorService}.
+ */
+public final class DenseMatrixKernels {
+  /** The edge length of the square blocks used by the blocked kernels */
+  public static final int BLOCK_SIZE = 64;
+
+  private DenseMatrixKernels() {
+  }
+
+  /**
+   * Copies a matrix into a contiguous row-major array.
+   * @param data The matrix data, not null. Must be rectangular
+   * @return The row-major array
+   */
+  public static double[] toRowMajor(final double[][] data) {
+    Validate.notNull(data, "data");
+    final int m = data.length;
+    if (m == 0) {
+      return new double[0];
+    }
+    final int n = data[0].length;
+    final double[] res = new double[m * n];
+    for (int i = 0; i < m; i++) {
+      Validate.isTrue(data[i].length == n, "Number of columns did not match that in first row");
+      System.arraycopy(data[i], 0, res, i * n, n);
+    }
+    return res;
+  }
+
+  /**
+   * Copies a contiguous row-major array into an array of rows.
+   * @param data The row-major data, not null
+   * @param rows The number of rows
+   * @param columns The number of columns
+   * @return The matrix data
+   */
+  public static double[][] fromRowMajor(final double[] data, final int rows, final int columns) {
+    Validate.notNull(data, "data");
+    Validate.isTrue(data.length == rows * columns, "Data length does not match matrix dimensions");
+    final double[][] res = new double[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      System.arraycopy(data, i * columns, res[i], 0, columns);
+    }
+    return res;
+  }
+
+  /**
+   * Calculates {@latex.inline $\\mathbf{C} = \\mathbf{AB}$}.
+   * @param a The row-major {@latex.inline $m \\times p$} matrix {@latex.inline $\\mathbf{A}$}, not null
+   * @param b The row-major {@latex.inline $p \\times n$} matrix {@latex.inline $\\mathbf{B}$}, not null
+   * @param m The number of rows of {@latex.inline $\\mathbf{A}$}
+   * @param p The number of columns of {@latex.inline $\\mathbf{A}$}
+   * @param n The number of columns of {@latex.inline $\\mathbf{B}$}
+   * @return The row-major {@latex.inline $m \\times n$} matrix {@latex.inline $\\mathbf{C}$}
+   */
+  public static double[] dgemm(final double[] a, final double[] b, final int m, final int p, final int n) {
+    checkDimensions(a, b, m, p, n);
+    final double[] c = new double[m * n];
+    dgemm(a, b, c, p, n, 0, m);
+    return c;
+  }
+
+  /**
+   * Calculates {@latex.inline $\\mathbf{C} = \\mathbf{AB}$}, computing bands of rows of {@latex.inline $\\mathbf{C}$} in parallel.
+   * @param a The row-major {@latex.inline $m \\times p$} matrix {@latex.inline $\\mathbf{A}$}, not null
+   * @param b The row-major {@latex.inline $p \\times n$} matrix {@latex.inline $\\mathbf{B}$}, not null
+   * @param m The number of rows of {@latex.inline $\\mathbf{A}$}
+   * @param p The number of columns of {@latex.inline $\\mathbf{A}$}
+   * @param n The number of columns of {@latex.inline $\\mathbf{B}$}
+   * @param executor The executor on which to run the bands, not null
+   * @param nBands The maximum number of bands to split the rows into
+   * @return The row-major {@latex.inline $m \\times n$} matrix {@latex.inline $\\mathbf{C}$}
+   */
+  public static double[] dgemm(final double[] a, final double[] b, final int m, final int p, final int n, final ExecutorService executor, final int nBands) {
+    checkDimensions(a, b, m, p, n);
+    Validate.notNull(executor, "executor");
+    final double[] c = new double[m * n];
+    final int bandSize = getBandSize(m, nBands);
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int start = 0; start < m; start += bandSize) {
+      final int rowStart = start;
+      final int rowEnd = Math.min(start + bandSize, m);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          dgemm(a, b, c, p, n, rowStart, rowEnd);
+          return null;
+        }
+      });
+    }
+    invokeAll(executor, tasks);
+    return c;
+  }
+
+  /**
+   * Calculates {@latex.inline $y = \\mathbf{A}x$} for a matrix held as an array of rows.
+   * @param a The {@latex.inline $m \\times n$} matrix {@latex.inline $\\mathbf{A}$}, not null
+   * @param x The vector {@latex.inline $x$} of length {@latex.inline $n$}, not null
+   * @return The vector {@latex.inline $y$} of length {@latex.inline $m$}
+   */
+  public static double[] dgemv(final double[][] a, final double[] x) {
+    Validate.notNull(a, "a");
+    Validate.notNull(x, "x");
+    Validate.isTrue(a.length == 0 || a[0].length == x.length, "Matrix/vector size mismatch");
+    final double[] y = new double[a.length];
+    dgemv(a, x, y, 0, a.length);
+    return y;
+  }
+
+  /**
+   * Calculates {@latex.inline $y = \\mathbf{A}x$} for a matrix held as an array of rows, computing bands of elements of {@latex.inline $y$} in parallel.
+   * @param a The {@latex.inline $m \\times n$} matrix {@latex.inline $\\mathbf{A}$}, not null
+   * @param x The vector {@latex.inline $x$} of length {@latex.inline $n$}, not null
+   * @param executor The executor on which to run the bands, not null
+   * @param nBands The maximum number of bands to split the rows into
+   * @return The vector {@latex.inline $y$} of length {@latex.inline $m$}
+   */
+  public static double[] dgemv(final double[][] a, final double[] x, final ExecutorService executor, final int nBands) {
+    Validate.notNull(a, "a");
+    Validate.notNull(x, "x");
+    Validate.isTrue(a.length == 0 || a[0].length == x.length, "Matrix/vector size mismatch");
+    Validate.notNull(executor, "executor");
+    final int m = a.length;
+    final double[] y = new double[m];
+    final int bandSize = getBandSize(m, nBands);
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+    for (int start = 0; start < m; start += bandSize) {
+      final int rowStart = start;
+      final int rowEnd = Math.min(start + bandSize, m);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          dgemv(a, x, y, rowStart, rowEnd);
+          return null;
+        }
+      });
+    }
+    invokeAll(executor, tasks);
+    return y;
+  }
+
+  /**
+   * Calculates {@latex.inline $y^T = x^T\\mathbf{A}$} for a matrix held as an array of rows. The rows of {@latex.inline $\\mathbf{A}$} are scanned in order, so
+   * that the matrix is read sequentially rather than a column at a time.
+   * @param x The vector {@latex.inline $x$} of length {@latex.inline $m$}, not null
+   * @param a The {@latex.inline $m \\times n$} matrix {@latex.inline $\\mathbf{A}$}, not null
+   * @return The vector {@latex.inline $y$} of length {@latex.inline $n$}
+   */
+  public static double[] dgevm(final double[] x, final double[][] a) {
+    Validate.notNull(x, "x");
+    Validate.notNull(a, "a");
+    final int m = a.length;
+    Validate.isTrue(x.length == m, "Matrix/vector size mismatch");
+    final int n = m == 0 ? 0 : a[0].length;
+    final double[] y = new double[n];
+    for (int i = 0; i < m; i++) {
+      final double xi = x[i];
+      final double[] row = a[i];
+      for (int j = 0; j < n; j++) {
+        y[j] += xi * row[j];
+      }
+    }
+    return y;
+  }
+
+  // C[rowStart:rowEnd, :] += A[rowStart:rowEnd, :] * B
+  private static void dgemm(final double[] a, final double[] b, final double[] c, final int p, final int n, final int rowStart, final int rowEnd) {
+    for (int ii = rowStart; ii < rowEnd; ii += BLOCK_SIZE) {
+      final int iMax = Math.min(ii + BLOCK_SIZE, rowEnd);
+      for (int kk = 0; kk < p; kk += BLOCK_SIZE) {
+        final int kMax = Math.min(kk + BLOCK_SIZE, p);
+        for (int jj = 0; jj < n; jj += BLOCK_SIZE) {
+          final int jMax = Math.min(jj + BLOCK_SIZE, n);
+          for (int i = ii; i < iMax; i++) {
+            final int aOffset = i * p;
+            final int cOffset = i * n;
+            for (int k = kk; k < kMax; k++) {
+              final double aik = a[aOffset + k];
+              final int bOffset = k * n;
+              for (int j = jj; j < jMax; j++) {
+                c[cOffset + j] += aik * b[bOffset + j];
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void dgemv(final double[][] a, final double[] x, final double[] y, final int rowStart, final int rowEnd) {
+    final int n = x.length;
+    for (int i = rowStart; i < rowEnd; i++) {
+      final double[] row = a[i];
+      double sum = 0.0;
+      for (int j = 0; j < n; j++) {
+        sum += row[j] * x[j];
+      }
+      y[i] = sum;
+    }
+  }
+
+  private static void checkDimensions(final double[] a, final double[] b, final int m, final int p, final int n) {
+    Validate.notNull(a, "a");
+    Validate.notNull(b, "b");
+    Validate.isTrue(a.length == m * p, "Length of a does not match its dimensions");
+    Validate.isTrue(b.length == p * n, "Length of b does not match its dimensions");
+  }
+
+  // bands are whole multiples of the block size so that no band splits a block
+  private static int getBandSize(final int m, final int nBands) {
+    Validate.isTrue(nBands > 0, "number of bands must be positive");
+    final int rowsPerBand = (m + nBands - 1) / nBands;
+    return Math.max(BLOCK_SIZE, ((rowsPerBand + BLOCK_SIZE - 1) / BLOCK_SIZE) * BLOCK_SIZE);
+  }
+
+  private static void invokeAll(final ExecutorService executor, final List<Callable<Object>> tasks) {
+    try {
+      for (final Future<Object> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while waiting for matrix kernel", e);
+    } catch (final ExecutionException e) {
+      throw new OpenGammaRuntimeException("Matrix kernel failed", e.getCause());
+    }
+  }
+
+}
@@ -5,14 +5,46 @@
  */
 package com.opengamma.math.matrix;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.lang.Validate;
 
 /**
  * An absolutely minimal implementation of matrix algebra - only various multiplications covered. For more advanced stuff (e.g. calculating the inverse) use {@link ColtMatrixAlgebra} or
  * {@link CommonsMatrixAlgebra}
+ * <p>
+ * Matrix products above {@link #BLOCKING_THRESHOLD} are performed by the cache-blocked kernels in {@link DenseMatrixKernels}; smaller ones by a direct loop.
+ * If an executor is supplied, large products are split across it.
+ * Products with a {@link CompressedSparseRowFormatMatrix} on the left are performed by {@link SparseMatrixKernels} without densifying it.
  */
 public class OGMatrixAlgebra extends MatrixAlgebra {
+  /** The number of multiply-adds above which a product is computed in parallel (if an executor is available) */
+  public static final long PARALLEL_THRESHOLD = 1L << 21;
+  /** The number of multiply-adds below which a matrix product is computed directly, as packing the operands would cost more than blocking saves */
+  public static final long BLOCKING_THRESHOLD = 1L << 15;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+
+  /**
+   * Creates an instance that performs all calculations on the calling thread.
+   */
+  public OGMatrixAlgebra() {
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * Creates an instance that splits large products across an executor.
+   * @param executor The executor, not null
+   * @param parallelism The number of tasks to split a large product into; typically the number of threads available to the executor
+   */
+  public OGMatrixAlgebra(final ExecutorService executor, final int parallelism) {
+    Validate.notNull(executor, "executor");
+    Validate.isTrue(parallelism > 0, "parallelism must be positive");
+    _executor = executor;
+    _parallelism = parallelism;
+  }
 
   /**
    * {@inheritDoc}
@@ -183,6 +215,9 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
    * <li> m1 = 2-D matrix, m2 = 2-D matrix, returns {@latex.inline $\\mathbf{C} = \\mathbf{AB}$}
    * <li> m1 = 2-D matrix, m2 = 1-D matrix, returns {@latex.inline $\\mathbf{C} = \\mathbf{A}b$}
    * <li> m1 = 1-D matrix, m2 = 2-D matrix, returns {@latex.inline $\\mathbf{C} = a^T\\mathbf{B}$}
+   * <li> m1 = sparse matrix, m2 = 1-D matrix, returns {@latex.inline $\\mathbf{C} = \\mathbf{A}b$}
+   * <li> m1 = sparse matrix, m2 = 2-D matrix, returns the (dense) {@latex.inline $\\mathbf{C} = \\mathbf{AB}$}
+   * <li> m1 = sparse matrix, m2 = sparse matrix, returns the (sparse) {@latex.inline $\\mathbf{C} = \\mathbf{AB}$}
    * </ul>
    */
   @Override
@@ -195,9 +230,18 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
       return multiply((DoubleMatrix2D) m1, (DoubleMatrix1D) m2);
     } else if (m1 instanceof DoubleMatrix1D && m2 instanceof DoubleMatrix2D) {
       return multiply((DoubleMatrix1D) m1, (DoubleMatrix2D) m2);
+    } else if (m1 instanceof CompressedSparseRowFormatMatrix) {
+      final CompressedSparseRowFormatMatrix sparse = (CompressedSparseRowFormatMatrix) m1;
+      if (m2 instanceof DoubleMatrix1D) {
+        return new DoubleMatrix1D(SparseMatrixKernels.dcsrmv(sparse, ((DoubleMatrix1D) m2).getData()));
+      } else if (m2 instanceof DoubleMatrix2D) {
+        return SparseMatrixKernels.dcsrmm(sparse, (DoubleMatrix2D) m2);
+      } else if (m2 instanceof CompressedSparseRowFormatMatrix) {
+        return SparseMatrixKernels.dcsrmultcsr(sparse, (CompressedSparseRowFormatMatrix) m2);
+      }
     }
-    throw new IllegalArgumentException("Can only multiply two DoubleMatrix2D; a DoubleMatrix2D and a DoubleMatrix1D; or a DoubleMatrix1D and a DoubleMatrix2D. have " + m1.getClass() + " and "
-        + m2.getClass());
+    throw new IllegalArgumentException("Can only multiply two DoubleMatrix2D; a DoubleMatrix2D and a DoubleMatrix1D; a DoubleMatrix1D and a DoubleMatrix2D; "
+        + "or a CompressedSparseRowFormatMatrix and a DoubleMatrix1D, DoubleMatrix2D or CompressedSparseRowFormatMatrix. have " + m1.getClass() + " and " + m2.getClass());
   }
 
   /**
@@ -210,14 +254,27 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
   }
 
   private DoubleMatrix2D multiply(final DoubleMatrix2D m1, final DoubleMatrix2D m2) {
-    final double[][] a = m1.getData();
-    final double[][] b = m2.getData();
-    final int p = b.length;
-    Validate.isTrue(a[0].length == p, "Matrix size mismatch");
-    final int m = a.length;
-    final int n = b[0].length;
-    double sum;
+    final int p = m2.getNumberOfRows();
+    Validate.isTrue(m1.getNumberOfColumns() == p, "Matrix size mismatch");
+    final int m = m1.getNumberOfRows();
+    final int n = m2.getNumberOfColumns();
+    if ((long) m * p * n < BLOCKING_THRESHOLD) {
+      return new DoubleMatrix2D(multiplyDirect(m1.getData(), m2.getData(), m, p, n));
+    }
+    final double[] a = DenseMatrixKernels.toRowMajor(m1.getData());
+    final double[] b = DenseMatrixKernels.toRowMajor(m2.getData());
+    final double[] res;
+    if (isParallel((long) m * p * n)) {
+      res = DenseMatrixKernels.dgemm(a, b, m, p, n, _executor, _parallelism);
+    } else {
+      res = DenseMatrixKernels.dgemm(a, b, m, p, n);
+    }
+    return new DoubleMatrix2D(DenseMatrixKernels.fromRowMajor(res, m, n));
+  }
+
+  private static double[][] multiplyDirect(final double[][] a, final double[][] b, final int m, final int p, final int n) {
     final double[][] res = new double[m][n];
+    double sum;
     int i, j, k;
     for (i = 0; i < m; i++) {
       for (j = 0; j < n; j++) {
@@ -228,44 +285,24 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
         res[i][j] = sum;
       }
     }
-    return new DoubleMatrix2D(res);
+    return res;
   }
 
   private DoubleMatrix1D multiply(final DoubleMatrix2D matrix, final DoubleMatrix1D vector) {
     final double[][] a = matrix.getData();
     final double[] b = vector.getData();
-    final int n = b.length;
-    Validate.isTrue(a[0].length == n, "Matrix/vector size mismatch");
-    final int m = a.length;
-    final double[] res = new double[m];
-    int i, j;
-    double sum;
-    for (i = 0; i < m; i++) {
-      sum = 0.0;
-      for (j = 0; j < n; j++) {
-        sum += a[i][j] * b[j];
-      }
-      res[i] = sum;
+    Validate.isTrue(a[0].length == b.length, "Matrix/vector size mismatch");
+    if (isParallel((long) a.length * b.length)) {
+      return new DoubleMatrix1D(DenseMatrixKernels.dgemv(a, b, _executor, _parallelism));
     }
-    return new DoubleMatrix1D(res);
+    return new DoubleMatrix1D(DenseMatrixKernels.dgemv(a, b));
   }
 
   private DoubleMatrix1D multiply(final DoubleMatrix1D vector, final DoubleMatrix2D matrix) {
-    final double[] a = vector.getData();
-    final double[][] b = matrix.getData();
-    final int n = a.length;
-    Validate.isTrue(b.length == n, "Matrix/vector size mismatch");
-    final int m = b[0].length;
-    final double[] res = new double[m];
-    int i, j;
-    double sum;
-    for (i = 0; i < m; i++) {
-      sum = 0.0;
-      for (j = 0; j < n; j++) {
-        sum += a[j] * b[j][i];
-      }
-      res[i] = sum;
-    }
-    return new DoubleMatrix1D(res);
+    return new DoubleMatrix1D(DenseMatrixKernels.dgevm(vector.getData(), matrix.getData()));
+  }
+
+  private boolean isParallel(final long operations) {
+    return _executor != null && _parallelism > 1 && operations >= PARALLEL_THRESHOLD;
   }
 }
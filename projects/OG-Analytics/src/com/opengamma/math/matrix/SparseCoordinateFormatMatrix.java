@@ -83,11 +83,11 @@ public class SparseCoordinateFormatMatrix implements Matrix<Double> {
 
 // Methods
   public int[] getColumnCoordinates() {
-    return _x;
+    return _y;
   }
 
   public int[] getRowCoordinates() {
-    return _y;
+    return _x;
   }
 
   public double[] getNonZeroEntries() {
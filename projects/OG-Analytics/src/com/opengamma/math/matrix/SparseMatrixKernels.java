@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.matrix;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Pure Java kernels for multiplication by a sparse matrix held in {@link CompressedSparseRowFormatMatrix compressed sparse row} form. None of these
+ * densify the sparse matrix, so the cost is proportional to the number of non-zero elements rather than the number of elements.
+ */
+public final class SparseMatrixKernels {
+
+  private SparseMatrixKernels() {
+  }
+
+  /**
+   * Calculates {@latex.inline $\\mathbf{A}x$}.
+   * @param a The sparse matrix, not null
+   * @param x The vector, not null
+   * @return The product
+   */
+  public static double[] dcsrmv(final CompressedSparseRowFormatMatrix a, final double[] x) {
+    Validate.notNull(a, "a");
+    final double[] y = new double[a.getNumberOfRows()];
+    dcsrmv(a, x, y);
+    return y;
+  }
+
+  /**
+   * Calculates {@latex.inline $\\mathbf{A}x$} into an existing array; intended for use in the inner loops of iterative solvers.
+   * @param a The sparse matrix, not null
+   * @param x The vector, not null
+   * @param y The array to hold the product, not null. Must not be the same array as x
+   */
+  public static void dcsrmv(final CompressedSparseRowFormatMatrix a, final double[] x, final double[] y) {
+    Validate.notNull(a, "a");
+    Validate.notNull(x, "x");
+    Validate.notNull(y, "y");
+    Validate.isTrue(x.length == a.getNumberOfColumns() && y.length == a.getNumberOfRows(), "Matrix/vector size mismatch");
+    final int[] rowPtr = a.getRowPtr();
+    final int[] colIdx = a.getColumnIndex();
+    final double[] values = a.getNonZeroValues();
+    final int rows = a.getNumberOfRows();
+    for (int i = 0; i < rows; i++) {
+      double sum = 0;
+      final int end = rowPtr[i + 1];
+      for (int k = rowPtr[i]; k < end; k++) {
+        sum += values[k] * x[colIdx[k]];
+      }
+      y[i] = sum;
+    }
+  }
+
+  /**
+   * Calculates {@latex.inline $\\mathbf{AB}$} where {@latex.inline $\\mathbf{B}$} is dense.
+   * @param a The sparse matrix, not null
+   * @param b The dense matrix, not null
+   * @return The (dense) product
+   */
+  public static DoubleMatrix2D dcsrmm(final CompressedSparseRowFormatMatrix a, final DoubleMatrix2D b) {
+    Validate.notNull(a, "a");
+    Validate.notNull(b, "b");
+    Validate.isTrue(a.getNumberOfColumns() == b.getNumberOfRows(), "Matrix size mismatch");
+    final int[] rowPtr = a.getRowPtr();
+    final int[] colIdx = a.getColumnIndex();
+    final double[] values = a.getNonZeroValues();
+    final double[][] bData = b.getData();
+    final int rows = a.getNumberOfRows();
+    final int n = b.getNumberOfColumns();
+    final double[][] res = new double[rows][n];
+    for (int i = 0; i < rows; i++) {
+      final double[] resRow = res[i];
+      final int end = rowPtr[i + 1];
+      for (int k = rowPtr[i]; k < end; k++) {
+        final double aik = values[k];
+        final double[] bRow = bData[colIdx[k]];
+        for (int j = 0; j < n; j++) {
+          resRow[j] += aik * bRow[j];
+        }
+      }
+    }
+    return new DoubleMatrix2D(res);
+  }
+
+  /**
+   * Calculates {@latex.inline $\\mathbf{AB}$} where both matrices are sparse, using Gustavson's row-by-row algorithm with a dense accumulator.
+   * @param a The first sparse matrix, not null
+   * @param b The second sparse matrix, not null
+   * @return The (sparse) product
+   */
+  public static CompressedSparseRowFormatMatrix dcsrmultcsr(final CompressedSparseRowFormatMatrix a, final CompressedSparseRowFormatMatrix b) {
+    Validate.notNull(a, "a");
+    Validate.notNull(b, "b");
+    Validate.isTrue(a.getNumberOfColumns() == b.getNumberOfRows(), "Matrix size mismatch");
+    final int[] aRowPtr = a.getRowPtr();
+    final int[] aColIdx = a.getColumnIndex();
+    final double[] aValues = a.getNonZeroValues();
+    final int[] bRowPtr = b.getRowPtr();
+    final int[] bColIdx = b.getColumnIndex();
+    final double[] bValues = b.getNonZeroValues();
+    final int rows = a.getNumberOfRows();
+    final int cols = b.getNumberOfColumns();
+
+    final double[] accumulator = new double[cols];
+    final int[] marker = new int[cols];
+    Arrays.fill(marker, -1);
+    final int[] rowCols = new int[cols];
+    final int[] rowPtr = new int[rows + 1];
+    int[] colIdx = new int[Math.max(16, aValues.length + bValues.length)];
+    double[] values = new double[colIdx.length];
+    int nnz = 0;
+    for (int i = 0; i < rows; i++) {
+      int count = 0;
+      for (int ka = aRowPtr[i]; ka < aRowPtr[i + 1]; ka++) {
+        final double aik = aValues[ka];
+        final int k = aColIdx[ka];
+        for (int kb = bRowPtr[k]; kb < bRowPtr[k + 1]; kb++) {
+          final int j = bColIdx[kb];
+          if (marker[j] != i) {
+            marker[j] = i;
+            rowCols[count++] = j;
+            accumulator[j] = 0;
+          }
+          accumulator[j] += aik * bValues[kb];
+        }
+      }
+      Arrays.sort(rowCols, 0, count);
+      if (nnz + count > colIdx.length) {
+        final int capacity = Math.max(nnz + count, 2 * colIdx.length);
+        colIdx = Arrays.copyOf(colIdx, capacity);
+        values = Arrays.copyOf(values, capacity);
+      }
+      for (int c = 0; c < count; c++) {
+        final int j = rowCols[c];
+        colIdx[nnz] = j;
+        values[nnz] = accumulator[j];
+        nnz++;
+      }
+      rowPtr[i + 1] = nnz;
+    }
+    return new CompressedSparseRowFormatMatrix(rows, cols, rowPtr, Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+  }
+
+}
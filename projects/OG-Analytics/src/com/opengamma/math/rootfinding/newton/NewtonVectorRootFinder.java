@@ -62,23 +62,58 @@ public class NewtonVectorRootFinder extends VectorRootFinder {
   * @return the vector root of the collection of functions 
    */
 
-  @SuppressWarnings("synthetic-access")
   public DoubleMatrix1D getRoot(final Function1D<DoubleMatrix1D, DoubleMatrix1D> function,
       final Function1D<DoubleMatrix1D, DoubleMatrix2D> jacobianFunction, final DoubleMatrix1D startPosition) {
+    return getRootResult(function, jacobianFunction, startPosition, null).getRoot();
+  }
+
+  /**
+   * Finds the root, optionally starting from a known estimate of the matrix used to find the direction of each step (the Jacobian for
+   * {@link BroydenVectorRootFinder}, its inverse for {@link ShermanMorrisonVectorRootFinder}). When the same system is solved repeatedly with
+   * slightly different inputs, passing the matrix of the previous result and its root as the start position avoids the initial Jacobian
+   * calculation. If the first step cannot be taken with the estimate it is discarded and the matrix calculated from the Jacobian function.
+   *@param function a vector function (i.e. vector to vector)
+   *@param jacobianFunction calculates the Jacobian
+   *@param startPosition where to start the root finder for
+   *@param initialMatrix an estimate of the matrix at the start position, of the type used by this root finder; null to calculate it
+   *@return the root, the final matrix estimate and the number of iterations and Jacobian calculations, not null
+   */
+  @SuppressWarnings("synthetic-access")
+  public NewtonVectorRootFinderResult getRootResult(final Function1D<DoubleMatrix1D, DoubleMatrix1D> function,
+      final Function1D<DoubleMatrix1D, DoubleMatrix2D> jacobianFunction, final DoubleMatrix1D startPosition, final DoubleMatrix2D initialMatrix) {
     checkInputs(function, startPosition);
+    if (initialMatrix != null) {
+      final int n = startPosition.getNumberOfElements();
+      ArgumentChecker.isTrue(initialMatrix.getNumberOfRows() == n && initialMatrix.getNumberOfColumns() == n, "initial matrix must be square, with the dimension of the start position");
+    }
 
     final DataBundle data = new DataBundle();
     final DoubleMatrix1D y = function.evaluate(startPosition);
     data.setX(startPosition);
     data.setY(y);
     data.setG0(_algebra.getInnerProduct(y, y));
-    DoubleMatrix2D estimate = _initializationFunction.getInitializedMatrix(jacobianFunction, startPosition);
+    int jacobianCount = 0;
+    DoubleMatrix2D estimate;
+    if (initialMatrix == null) {
+      estimate = _initializationFunction.getInitializedMatrix(jacobianFunction, startPosition);
+      jacobianCount++;
+    } else {
+      estimate = initialMatrix;
+    }
 
     if (!getNextPosition(function, estimate, data)) {
       if (isConverged(data)) {
-        return data.getX(); // this can happen if the starting position is the root
+        return new NewtonVectorRootFinderResult(data.getX(), estimate, 0, jacobianCount); // this can happen if the starting position is the root
+      }
+      if (initialMatrix == null) {
+        throw new MathException("Cannot work with this starting position. Please choose another point");
+      }
+      // the estimate supplied may be too far from the Jacobian at this position
+      estimate = _initializationFunction.getInitializedMatrix(jacobianFunction, startPosition);
+      jacobianCount++;
+      if (!getNextPosition(function, estimate, data)) {
+        throw new MathException("Cannot work with this starting position. Please choose another point");
       }
-      throw new MathException("Cannot work with this starting position. Please choose another point");
     }
 
     int count = 0;
@@ -87,6 +122,7 @@ public class NewtonVectorRootFinder extends VectorRootFinder {
       // Want to reset the Jacobian every so often even if backtracking is working
       if ((jacReconCount) % FULL_RECALC_FREQ == 0) {
         estimate = _initializationFunction.getInitializedMatrix(jacobianFunction, data.getX());
+        jacobianCount++;
         jacReconCount = 1;
       } else {
         estimate = _updateFunction.getUpdatedMatrix(jacobianFunction, data.getX(), data.getDeltaX(), data.getDeltaY(),
@@ -96,6 +132,7 @@ public class NewtonVectorRootFinder extends VectorRootFinder {
       // if backtracking fails, could be that Jacobian estimate has drifted too far
       if (!getNextPosition(function, estimate, data)) {
         estimate = _initializationFunction.getInitializedMatrix(jacobianFunction, data.getX());
+        jacobianCount++;
         jacReconCount = 1;
         if (!getNextPosition(function, estimate, data)) {
           s_logger.info("Failed to converge in backtracking, even after a Jacobian recalculation. Final position: \n" + data.getX() + "\n function value: \n" + data.getY() + "\n Jacobian: \n"
@@ -108,7 +145,7 @@ public class NewtonVectorRootFinder extends VectorRootFinder {
         throw new MathException("Failed to converge");
       }
     }
-    return data.getX();
+    return new NewtonVectorRootFinderResult(data.getX(), estimate, count + 1, jacobianCount);
   }
 
   private boolean getNextPosition(final Function1D<DoubleMatrix1D, DoubleMatrix1D> function,
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.rootfinding.newton;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * The root found by a {@link NewtonVectorRootFinder}, with the final estimate of the matrix used to find the direction of each step and counts of
+ * the work done.
+ */
+public class NewtonVectorRootFinderResult {
+  private final DoubleMatrix1D _root;
+  private final DoubleMatrix2D _matrix;
+  private final int _iterations;
+  private final int _jacobianCalculations;
+
+  /**
+   * @param root the root, not null
+   * @param matrix the final estimate of the matrix, not null
+   * @param iterations the number of steps taken, not negative
+   * @param jacobianCalculations the number of times the matrix was calculated from the Jacobian function rather than updated, not negative
+   */
+  public NewtonVectorRootFinderResult(final DoubleMatrix1D root, final DoubleMatrix2D matrix, final int iterations, final int jacobianCalculations) {
+    Validate.notNull(root, "root");
+    Validate.notNull(matrix, "matrix");
+    Validate.isTrue(iterations >= 0, "iterations must be non-negative");
+    Validate.isTrue(jacobianCalculations >= 0, "Jacobian calculations must be non-negative");
+    _root = root;
+    _matrix = matrix;
+    _iterations = iterations;
+    _jacobianCalculations = jacobianCalculations;
+  }
+
+  /**
+   * @return the root
+   */
+  public DoubleMatrix1D getRoot() {
+    return _root;
+  }
+
+  /**
+   * Gets the final estimate of the matrix used to find the direction of each step: the Jacobian, or its inverse, depending on the root finder.
+   * @return the matrix
+   */
+  public DoubleMatrix2D getMatrix() {
+    return _matrix;
+  }
+
+  /**
+   * @return the number of steps taken
+   */
+  public int getIterations() {
+    return _iterations;
+  }
+
+  /**
+   * @return the number of times the matrix was calculated from the Jacobian function
+   */
+  public int getJacobianCalculations() {
+    return _jacobianCalculations;
+  }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+
+/**
+ * Calculates the covariance and correlation of two streams of data in a single pass, using the bivariate form of Welford's algorithm:
+ * {@latex.ilb %preamble{\\usepackage{amsmath}}
+ * \\begin{align*}
+ * C_n = C_{n-1} + (x_n - \\overline{x}_{n-1})(y_n - \\overline{y}_n)
+ * \\end{align*}}
+ * where the sample covariance is {@latex.inline $\\frac{C_n}{n-1}$}. The results are the same as those of
+ * {@link com.opengamma.math.statistics.descriptive.SampleCovarianceCalculator}, up to rounding.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class StreamingCovarianceCalculator {
+  private long _n;
+  private double _meanX;
+  private double _meanY;
+  private double _m2X;
+  private double _m2Y;
+  private double _cXY;
+
+  /**
+   * Adds a pair of data points.
+   * @param x The first data point
+   * @param y The second data point
+   */
+  public void update(final double x, final double y) {
+    _n++;
+    final double deltaX = x - _meanX;
+    final double deltaY = y - _meanY;
+    _meanX += deltaX / _n;
+    _meanY += deltaY / _n;
+    _m2X += deltaX * (x - _meanX);
+    _m2Y += deltaY * (y - _meanY);
+    _cXY += deltaX * (y - _meanY);
+  }
+
+  /**
+   * Adds pairs of data points in order.
+   * @param x The first data series, not null
+   * @param y The second data series, not null, same length as x
+   */
+  public void update(final double[] x, final double[] y) {
+    Validate.notNull(x, "x");
+    Validate.notNull(y, "y");
+    Validate.isTrue(x.length == y.length, "Data series must be the same length");
+    for (int i = 0; i < x.length; i++) {
+      update(x[i], y[i]);
+    }
+  }
+
+  /**
+   * Adds the values of two time series in order. The values are read from the arrays backing the time series; the dates of the two series are assumed to
+   * coincide.
+   * @param x The first time series, not null
+   * @param y The second time series, not null, same size as x
+   */
+  public void update(final DoubleTimeSeries<?> x, final DoubleTimeSeries<?> y) {
+    Validate.notNull(x, "x");
+    Validate.notNull(y, "y");
+    update(x.valuesArrayFast(), y.valuesArrayFast());
+  }
+
+  public void reset() {
+    _n = 0;
+    _meanX = 0;
+    _meanY = 0;
+    _m2X = 0;
+    _m2Y = 0;
+    _cXY = 0;
+  }
+
+  public long getCount() {
+    return _n;
+  }
+
+  /**
+   * @return The sample covariance
+   * @throws IllegalStateException If fewer than two pairs of data points have been added
+   */
+  public double getSampleCovariance() {
+    checkCount();
+    return _cXY / (_n - 1);
+  }
+
+  /**
+   * @return The correlation
+   * @throws IllegalStateException If fewer than two pairs of data points have been added
+   */
+  public double getCorrelation() {
+    checkCount();
+    return _cXY / Math.sqrt(_m2X * _m2Y);
+  }
+
+  private void checkCount() {
+    if (_n < 2) {
+      throw new IllegalStateException("Need at least two data points to calculate the covariance");
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+
+/**
+ * Maintains the exponentially weighted moving average (EWMA) covariance matrix of a vector of return streams. Each new vector of returns
+ * {@latex.inline $r_t$} updates the matrix in time proportional to the number of covariances:
+ * {@latex.ilb %preamble{\\usepackage{amsmath}}
+ * \\begin{align*}
+ * \\Sigma_t = \\lambda \\Sigma_{t-1} + (1 - \\lambda) r_t r_t^T
+ * \\end{align*}}
+ * The first vector of returns initialises the matrix to {@latex.inline $r_1 r_1^T$}, so the volatilities are the same as those calculated by
+ * {@link com.opengamma.financial.covariance.ExponentialWeightedMovingAverageHistoricalVolatilityCalculator}. The lower triangle of the matrix is held in a
+ * single array.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class StreamingEWMACovarianceCalculator {
+  private final int _n;
+  private final double _lambda;
+  private final double _lambdaM1;
+  private final double[] _covariance;
+  private long _count;
+
+  /**
+   * @param n The number of return streams, greater than zero
+   * @param lambda The weight, between zero and one
+   */
+  public StreamingEWMACovarianceCalculator(final int n, final double lambda) {
+    ArgumentChecker.notNegativeOrZero(n, "n");
+    Validate.isTrue(lambda >= 0 && lambda <= 1, "Lambda must be between zero and one");
+    _n = n;
+    _lambda = lambda;
+    _lambdaM1 = 1 - lambda;
+    _covariance = new double[n * (n + 1) / 2];
+  }
+
+  /**
+   * Adds one vector of returns.
+   * @param returns The returns, not null, one per stream
+   */
+  public void update(final double[] returns) {
+    Validate.notNull(returns, "returns");
+    Validate.isTrue(returns.length == _n, "Must have one return per stream");
+    final double[] covariance = _covariance;
+    if (_count == 0) {
+      for (int i = 0, index = 0; i < _n; i++) {
+        final double ri = returns[i];
+        for (int j = 0; j <= i; j++) {
+          covariance[index++] = ri * returns[j];
+        }
+      }
+    } else {
+      final double lambda = _lambda;
+      for (int i = 0, index = 0; i < _n; i++) {
+        final double ri = _lambdaM1 * returns[i];
+        for (int j = 0; j <= i; j++, index++) {
+          covariance[index] = lambda * covariance[index] + ri * returns[j];
+        }
+      }
+    }
+    _count++;
+  }
+
+  /**
+   * Adds the returns of each stream in date order. The values are read from the arrays backing the time series, whose dates are assumed to coincide.
+   * @param returns The return series, not null, one per stream
+   */
+  public void update(final DoubleTimeSeries<?>[] returns) {
+    Validate.notNull(returns, "returns");
+    Validate.noNullElements(returns, "returns");
+    Validate.isTrue(returns.length == _n, "Must have one return series per stream");
+    final double[][] values = new double[_n][];
+    for (int i = 0; i < _n; i++) {
+      values[i] = returns[i].valuesArrayFast();
+      Validate.isTrue(values[i].length == values[0].length, "Return series must be the same size");
+    }
+    final double[] r = new double[_n];
+    for (int t = 0; t < values[0].length; t++) {
+      for (int i = 0; i < _n; i++) {
+        r[i] = values[i][t];
+      }
+      update(r);
+    }
+  }
+
+  public void reset() {
+    _count = 0;
+  }
+
+  public int getNumberOfStreams() {
+    return _n;
+  }
+
+  public double getLambda() {
+    return _lambda;
+  }
+
+  public long getCount() {
+    return _count;
+  }
+
+  /**
+   * @param i The index of the first stream
+   * @param j The index of the second stream
+   * @return The covariance
+   * @throws IllegalStateException If no returns have been added
+   */
+  public double getCovariance(final int i, final int j) {
+    checkCount();
+    Validate.isTrue(i >= 0 && i < _n && j >= 0 && j < _n, "index out of range");
+    return i >= j ? _covariance[i * (i + 1) / 2 + j] : _covariance[j * (j + 1) / 2 + i];
+  }
+
+  public double getVolatility(final int i) {
+    return Math.sqrt(getCovariance(i, i));
+  }
+
+  public double getCorrelation(final int i, final int j) {
+    return getCovariance(i, j) / Math.sqrt(getCovariance(i, i) * getCovariance(j, j));
+  }
+
+  /**
+   * @return A copy of the covariance matrix
+   * @throws IllegalStateException If no returns have been added
+   */
+  public DoubleMatrix2D getCovarianceMatrix() {
+    checkCount();
+    final double[][] res = new double[_n][_n];
+    for (int i = 0, index = 0; i < _n; i++) {
+      for (int j = 0; j <= i; j++) {
+        res[i][j] = _covariance[index];
+        res[j][i] = _covariance[index++];
+      }
+    }
+    return new DoubleMatrix2D(res);
+  }
+
+  private void checkCount() {
+    if (_count == 0) {
+      throw new IllegalStateException("No returns have been added");
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+
+/**
+ * Calculates the mean and variance of a stream of data in a single pass using Welford's algorithm. Each new data point updates the statistics in constant
+ * time, without storing the data:
+ * {@latex.ilb %preamble{\\usepackage{amsmath}}
+ * \\begin{align*}
+ * \\overline{x}_n &= \\overline{x}_{n-1} + \\frac{x_n - \\overline{x}_{n-1}}{n}\\\\
+ * M_n &= M_{n-1} + (x_n - \\overline{x}_{n-1})(x_n - \\overline{x}_n)
+ * \\end{align*}}
+ * where the sample variance is {@latex.inline $\\frac{M_n}{n-1}$}. Two calculators that have seen different data can be merged.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class StreamingMeanVarianceCalculator {
+  private long _n;
+  private double _mean;
+  private double _m2;
+
+  /**
+   * Adds a data point.
+   * @param x The data point
+   */
+  public void update(final double x) {
+    _n++;
+    final double delta = x - _mean;
+    _mean += delta / _n;
+    _m2 += delta * (x - _mean);
+  }
+
+  /**
+   * Adds data points in order.
+   * @param x The data, not null
+   */
+  public void update(final double[] x) {
+    Validate.notNull(x, "x");
+    long n = _n;
+    double mean = _mean;
+    double m2 = _m2;
+    for (final double value : x) {
+      n++;
+      final double delta = value - mean;
+      mean += delta / n;
+      m2 += delta * (value - mean);
+    }
+    _n = n;
+    _mean = mean;
+    _m2 = m2;
+  }
+
+  /**
+   * Adds the values of a time series in order. The values are read from the array backing the time series, so no intermediate series is created.
+   * @param ts The time series, not null
+   */
+  public void update(final DoubleTimeSeries<?> ts) {
+    Validate.notNull(ts, "time series");
+    update(ts.valuesArrayFast());
+  }
+
+  /**
+   * Adds the data seen by another calculator, as if it had been added to this one.
+   * @param other The other calculator, not null
+   */
+  public void merge(final StreamingMeanVarianceCalculator other) {
+    Validate.notNull(other, "other");
+    if (other._n == 0) {
+      return;
+    }
+    final long n = _n + other._n;
+    final double delta = other._mean - _mean;
+    _mean += delta * other._n / n;
+    _m2 += other._m2 + delta * delta * _n * other._n / n;
+    _n = n;
+  }
+
+  public void reset() {
+    _n = 0;
+    _mean = 0;
+    _m2 = 0;
+  }
+
+  public long getCount() {
+    return _n;
+  }
+
+  /**
+   * @return The mean
+   * @throws IllegalStateException If no data have been added
+   */
+  public double getMean() {
+    if (_n == 0) {
+      throw new IllegalStateException("No data have been added");
+    }
+    return _mean;
+  }
+
+  /**
+   * @return The sample variance
+   * @throws IllegalStateException If fewer than two data points have been added
+   */
+  public double getSampleVariance() {
+    if (_n < 2) {
+      throw new IllegalStateException("Need at least two data points to calculate the sample variance");
+    }
+    return _m2 / (_n - 1);
+  }
+
+  /**
+   * @return The population variance
+   * @throws IllegalStateException If no data have been added
+   */
+  public double getPopulationVariance() {
+    if (_n == 0) {
+      throw new IllegalStateException("No data have been added");
+    }
+    return _m2 / _n;
+  }
+
+  public double getSampleStandardDeviation() {
+    return Math.sqrt(getSampleVariance());
+  }
+
+  public double getPopulationStandardDeviation() {
+    return Math.sqrt(getPopulationVariance());
+  }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+
+/**
+ * Estimates a quantile of a stream of data in constant memory using the P<sup>2</sup> algorithm of Jain and Chlamtac ("The P<sup>2</sup> algorithm for
+ * dynamic calculation of quantiles and histograms without storing observations", Communications of the ACM, 1985). Five markers are kept: the minimum,
+ * the maximum, the estimate of the quantile and estimates of the quantiles half-way between it and the extremes. Each new data point moves the markers
+ * in constant time, adjusting their heights with a piecewise-parabolic formula.
+ * <p>
+ * Until five data points have been added, the quantile is calculated exactly, in the same way as
+ * {@link com.opengamma.math.statistics.descriptive.PercentileCalculator}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class StreamingQuantileEstimator {
+  private static final int N_MARKERS = 5;
+  private final double _quantile;
+  private final double[] _heights = new double[N_MARKERS];
+  private final int[] _positions = new int[N_MARKERS];
+  private final double[] _desiredPositions = new double[N_MARKERS];
+  private final double[] _increments;
+  private int _count;
+
+  /**
+   * @param quantile The quantile to estimate, between zero and one
+   */
+  public StreamingQuantileEstimator(final double quantile) {
+    Validate.isTrue(quantile > 0 && quantile < 1, "Quantile must be between 0 and 1");
+    _quantile = quantile;
+    _increments = new double[] {0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+  }
+
+  /**
+   * Adds a data point.
+   * @param x The data point
+   */
+  public void update(final double x) {
+    if (_count < N_MARKERS) {
+      _heights[_count++] = x;
+      if (_count == N_MARKERS) {
+        Arrays.sort(_heights);
+        for (int i = 0; i < N_MARKERS; i++) {
+          _positions[i] = i + 1;
+        }
+        _desiredPositions[0] = 1;
+        _desiredPositions[1] = 1 + 2 * _quantile;
+        _desiredPositions[2] = 1 + 4 * _quantile;
+        _desiredPositions[3] = 3 + 2 * _quantile;
+        _desiredPositions[4] = 5;
+      }
+      return;
+    }
+    _count++;
+    final double[] q = _heights;
+    final int[] n = _positions;
+    int k;
+    if (x < q[0]) {
+      q[0] = x;
+      k = 0;
+    } else if (x >= q[4]) {
+      q[4] = x;
+      k = 3;
+    } else {
+      k = 0;
+      while (x >= q[k + 1]) {
+        k++;
+      }
+    }
+    for (int i = k + 1; i < N_MARKERS; i++) {
+      n[i]++;
+    }
+    for (int i = 0; i < N_MARKERS; i++) {
+      _desiredPositions[i] += _increments[i];
+    }
+    for (int i = 1; i < N_MARKERS - 1; i++) {
+      final double d = _desiredPositions[i] - n[i];
+      if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+        final int sign = d > 0 ? 1 : -1;
+        final double parabolic = q[i] + (double) sign / (n[i + 1] - n[i - 1])
+            * ((n[i] - n[i - 1] + sign) * (q[i + 1] - q[i]) / (n[i + 1] - n[i]) + (n[i + 1] - n[i] - sign) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+        if (q[i - 1] < parabolic && parabolic < q[i + 1]) {
+          q[i] = parabolic;
+        } else {
+          q[i] += sign * (q[i + sign] - q[i]) / (n[i + sign] - n[i]);
+        }
+        n[i] += sign;
+      }
+    }
+  }
+
+  /**
+   * Adds data points in order.
+   * @param x The data, not null
+   */
+  public void update(final double[] x) {
+    Validate.notNull(x, "x");
+    for (final double value : x) {
+      update(value);
+    }
+  }
+
+  /**
+   * Adds the values of a time series in order, reading them from the array backing the time series.
+   * @param ts The time series, not null
+   */
+  public void update(final DoubleTimeSeries<?> ts) {
+    Validate.notNull(ts, "time series");
+    update(ts.valuesArrayFast());
+  }
+
+  public double getQuantile() {
+    return _quantile;
+  }
+
+  public long getCount() {
+    return _count;
+  }
+
+  /**
+   * @return The estimate of the quantile
+   * @throws IllegalStateException If no data have been added
+   */
+  public double getEstimate() {
+    if (_count == 0) {
+      throw new IllegalStateException("No data have been added");
+    }
+    if (_count >= N_MARKERS) {
+      return _heights[2];
+    }
+    final double[] sorted = Arrays.copyOf(_heights, _count);
+    Arrays.sort(sorted);
+    final double n = _quantile * (_count - 1) + 1;
+    if (Math.round(n) == 1) {
+      return sorted[0];
+    }
+    if (Math.round(n) == _count) {
+      return sorted[_count - 1];
+    }
+    final double d = n % 1;
+    final int k = (int) Math.round(n - d);
+    return sorted[k - 1] + d * (sorted[k] - sorted[k - 1]);
+  }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.convention.calendar;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import javax.time.calendar.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.convention.businessday.BusinessDayConvention;
+import com.opengamma.financial.convention.businessday.FollowingBusinessDayConvention;
+import com.opengamma.financial.convention.businessday.PrecedingBusinessDayConvention;
+
+/**
+ * Test CompiledCalendar.
+ */
+public class CompiledCalendarTest {
+  private static final BusinessDayConvention FOLLOWING = new FollowingBusinessDayConvention();
+  private static final BusinessDayConvention PRECEDING = new PrecedingBusinessDayConvention();
+  private static final Calendar HOLIDAYS = new HolidayCalendar();
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullUnderlying() {
+    new CompiledCalendar(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullDate() {
+    new CompiledCalendar(HOLIDAYS).isWorkingDay(null);
+  }
+
+  @Test
+  public void testOf() {
+    final CompiledCalendar compiled = CompiledCalendar.of(HOLIDAYS);
+    assertSame(HOLIDAYS, compiled.getUnderlying());
+    assertSame(compiled, CompiledCalendar.of(compiled));
+    assertEquals(HOLIDAYS.getConventionName(), compiled.getConventionName());
+  }
+
+  @Test
+  public void testAgainstUnderlying() {
+    final CompiledCalendar compiled = new CompiledCalendar(HOLIDAYS);
+    for (LocalDate date = LocalDate.of(2009, 1, 1); date.isBefore(LocalDate.of(2012, 1, 1)); date = date.plusDays(1)) {
+      assertEquals(date.toString(), HOLIDAYS.isWorkingDay(date), compiled.isWorkingDay(date));
+      assertEquals(date.toString(), FOLLOWING.adjustDate(HOLIDAYS, date), compiled.getFollowingWorkingDay(date));
+      assertEquals(date.toString(), PRECEDING.adjustDate(HOLIDAYS, date), compiled.getPrecedingWorkingDay(date));
+      assertEquals(date.toString(), FOLLOWING.adjustDate(HOLIDAYS, date), FOLLOWING.adjustDate(compiled, date));
+      assertEquals(date.toString(), PRECEDING.adjustDate(HOLIDAYS, date), PRECEDING.adjustDate(compiled, date));
+    }
+  }
+
+  @Test
+  public void testAdjustAcrossBlocks() {
+    // more than two blocks of non-working days
+    final LocalDate first = LocalDate.of(2010, 1, 1);
+    final LocalDate last = first.plusDays(3 * CompiledCalendar.BLOCK_SIZE);
+    final Calendar closed = new CalendarBase("Closed") {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean isNormallyWorkingDay(final LocalDate date) {
+        return date.isBefore(first) || date.isAfter(last);
+      }
+    };
+    final CompiledCalendar compiled = new CompiledCalendar(closed);
+    assertEquals(last.plusDays(1), compiled.getFollowingWorkingDay(first));
+    assertEquals(last.plusDays(1), compiled.getFollowingWorkingDay(first.plusDays(700)));
+    assertEquals(first.minusDays(1), compiled.getPrecedingWorkingDay(last));
+    assertEquals(first.minusDays(1), compiled.getPrecedingWorkingDay(first.plusDays(700)));
+    assertEquals(first.minusDays(1), compiled.getFollowingWorkingDay(first.minusDays(1)));
+    assertEquals(last.plusDays(1), compiled.getPrecedingWorkingDay(last.plusDays(1)));
+  }
+
+  @Test
+  public void testOutsideBitSet() {
+    final CompiledCalendar compiled = new CompiledCalendar(HOLIDAYS);
+    final LocalDate saturday = LocalDate.of(1800, 1, 4);
+    assertFalse(compiled.isWorkingDay(saturday));
+    assertTrue(compiled.isWorkingDay(saturday.plusDays(2)));
+    assertEquals(saturday.plusDays(2), compiled.getFollowingWorkingDay(saturday));
+    assertEquals(saturday.minusDays(1), compiled.getPrecedingWorkingDay(saturday));
+  }
+
+  @Test
+  public void testUnderlyingQueriedOncePerDay() {
+    final CountingCalendar counting = new CountingCalendar();
+    final CompiledCalendar compiled = new CompiledCalendar(counting);
+    final LocalDate date = LocalDate.of(2011, 6, 1);
+    for (int i = 0; i < 10; i++) {
+      compiled.isWorkingDay(date);
+      compiled.getFollowingWorkingDay(date);
+    }
+    assertEquals(CompiledCalendar.BLOCK_SIZE, counting.getCount());
+  }
+
+  private static class HolidayCalendar extends MondayToFridayCalendar {
+    private static final long serialVersionUID = 1L;
+
+    public HolidayCalendar() {
+      super("Holidays");
+      for (int year = 2009; year <= 2011; year++) {
+        addNonWorkingDay(LocalDate.of(year, 1, 1));
+        addNonWorkingDay(LocalDate.of(year, 12, 24));
+        addNonWorkingDay(LocalDate.of(year, 12, 25));
+        addNonWorkingDay(LocalDate.of(year, 12, 26));
+        addNonWorkingDay(LocalDate.of(year, 12, 31));
+      }
+      // either side of a block boundary: a Friday holiday on modified Julian day 55295 and a working Saturday on 55296
+      addNonWorkingDay(LocalDate.of(2010, 4, 9));
+      addWorkingDay(LocalDate.of(2010, 4, 10));
+    }
+  }
+
+  private static class CountingCalendar implements Calendar {
+    private int _count;
+
+    @Override
+    public boolean isWorkingDay(final LocalDate date) {
+      _count++;
+      return HOLIDAYS.isWorkingDay(date);
+    }
+
+    @Override
+    public String getConventionName() {
+      return "Counting";
+    }
+
+    public int getCount() {
+      return _count;
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.covariance;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.function.Function;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.monitor.OperationTimer;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+
+/**
+ * Reports the time taken to build covariance matrices of 50, 100 and 200 return series by BulkCovarianceMatrixCalculator, serially and in parallel,
+ * and by the element-by-element CovarianceMatrixCalculator for 50 series.
+ */
+public class BulkCovarianceMatrixCalculatorSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(BulkCovarianceMatrixCalculatorSpeedTest.class);
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final int[] N_SERIES = new int[] {50, 100, 200};
+  private static final int N_OBSERVATIONS = 250;
+  private static final int WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+
+  @Test
+  public void test() {
+    final DoubleTimeSeries<?>[] ts = getTimeSeries(N_SERIES[N_SERIES.length - 1]);
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      for (final int n : N_SERIES) {
+        final DoubleTimeSeries<?>[] x = new DoubleTimeSeries<?>[n];
+        System.arraycopy(ts, 0, x, 0, n);
+        doHotSpot("bulk, serial", new BulkCovarianceMatrixCalculator(), x);
+        doHotSpot("bulk, EWMA and shrinkage, " + nThreads + " threads", new BulkCovarianceMatrixCalculator(0.94, 0.1, executor, nThreads), x);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    final DoubleTimeSeries<?>[] x = new DoubleTimeSeries<?>[N_SERIES[0]];
+    System.arraycopy(ts, 0, x, 0, N_SERIES[0]);
+    doHotSpot("element-by-element", new CovarianceMatrixCalculator(new HistoricalCovarianceCalculator()), x);
+  }
+
+  private void doHotSpot(final String name, final Function<DoubleTimeSeries<?>, DoubleMatrix2D> calculator, final DoubleTimeSeries<?>[] x) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      calculator.evaluate(x);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + x.length + " series, " + name, BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        calculator.evaluate(x);
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}, {} series: {} ms per matrix", new Object[] {name, x.length, time / BENCHMARK_CYCLES});
+    }
+  }
+
+  private static DoubleTimeSeries<?>[] getTimeSeries(final int n) {
+    final int[] dates = new int[N_OBSERVATIONS];
+    for (int t = 0; t < N_OBSERVATIONS; t++) {
+      dates[t] = 14000 + t;
+    }
+    final double[] market = new double[N_OBSERVATIONS];
+    for (int t = 0; t < N_OBSERVATIONS; t++) {
+      market[t] = 0.01 * (RANDOM.nextDouble() - 0.5);
+    }
+    final DoubleTimeSeries<?>[] ts = new DoubleTimeSeries<?>[n];
+    for (int i = 0; i < n; i++) {
+      final double beta = 2 * RANDOM.nextDouble();
+      final double[] returns = new double[N_OBSERVATIONS];
+      for (int t = 0; t < N_OBSERVATIONS; t++) {
+        returns[t] = beta * market[t] + 0.01 * (RANDOM.nextDouble() - 0.5);
+      }
+      ts[i] = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, dates, returns);
+    }
+    return ts;
+  }
+}
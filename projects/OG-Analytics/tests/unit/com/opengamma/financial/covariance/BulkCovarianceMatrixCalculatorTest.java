@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.covariance;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.math.statistics.descriptive.SampleCovarianceCalculator;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+
+/**
+ * 
+ */
+public class BulkCovarianceMatrixCalculatorTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final SampleCovarianceCalculator SAMPLE_COVARIANCE = new SampleCovarianceCalculator();
+  private static final BulkCovarianceMatrixCalculator CALCULATOR = new BulkCovarianceMatrixCalculator();
+  private static final int N_SERIES = 150;
+  private static final int N_OBSERVATIONS = 60;
+  private static final double[][] DATA = new double[N_SERIES][N_OBSERVATIONS];
+  private static final double EPS = 1e-12;
+
+  static {
+    for (int t = 0; t < N_OBSERVATIONS; t++) {
+      final double common = RANDOM.nextDouble() - 0.5;
+      for (int i = 0; i < N_SERIES; i++) {
+        DATA[i][t] = 0.01 * (common * (i % 3) + RANDOM.nextDouble() - 0.5);
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testLowLambda() {
+    new BulkCovarianceMatrixCalculator(0, 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testHighLambda() {
+    new BulkCovarianceMatrixCalculator(1.01, 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeShrinkage() {
+    new BulkCovarianceMatrixCalculator(1, -0.1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testHighShrinkage() {
+    new BulkCovarianceMatrixCalculator(1, 1.1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new BulkCovarianceMatrixCalculator(1, 0, null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroParallelism() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      new BulkCovarianceMatrixCalculator(1, 0, executor, 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullTSArray() {
+    CALCULATOR.evaluate((DoubleTimeSeries<?>[]) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmptyTSArray() {
+    CALCULATOR.evaluate(new DoubleTimeSeries<?>[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullData() {
+    CALCULATOR.evaluate((double[][]) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRaggedData() {
+    CALCULATOR.evaluate(new double[][] {new double[] {1, 2, 3}, new double[] {1, 2}});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testOneObservation() {
+    CALCULATOR.evaluate(new double[][] {new double[] {1}, new double[] {2}});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoCommonDates() {
+    final DoubleTimeSeries<?> ts1 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {1, 2, 3}, new double[] {1, 2, 3});
+    final DoubleTimeSeries<?> ts2 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {3, 4, 5}, new double[] {1, 2, 3});
+    CALCULATOR.evaluate(ts1, ts2);
+  }
+
+  @Test
+  public void testSampleCovariance() {
+    final DoubleMatrix2D covariance = CALCULATOR.evaluate(DATA);
+    assertEquals(N_SERIES, covariance.getNumberOfRows());
+    assertEquals(N_SERIES, covariance.getNumberOfColumns());
+    for (int i = 0; i < N_SERIES; i++) {
+      for (int j = 0; j < N_SERIES; j++) {
+        assertEquals(SAMPLE_COVARIANCE.evaluate(DATA[i], DATA[j]), covariance.getEntry(i, j), EPS);
+      }
+    }
+  }
+
+  @Test
+  public void testTimeSeries() {
+    final DoubleTimeSeries<?> ts1 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {1, 2, 3, 4, 5, 6},
+        new double[] {0.1, -0.2, 0.3, 0.1, -0.1, 0.2});
+    final DoubleTimeSeries<?> ts2 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {2, 3, 5, 6, 7},
+        new double[] {0.4, -0.1, 0.2, 0.3, 0.5});
+    final DoubleTimeSeries<?> ts3 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {0, 2, 3, 4, 6},
+        new double[] {0.9, -0.3, 0.2, 0.7, 0.1});
+    final double[][] aligned = BulkCovarianceMatrixCalculator.align(new DoubleTimeSeries<?>[] {ts1, ts2, ts3});
+    assertEquals(3, aligned.length);
+    assertArrayEquals(new double[] {-0.2, 0.3, 0.2}, aligned[0]);
+    assertArrayEquals(new double[] {0.4, -0.1, 0.3}, aligned[1]);
+    assertArrayEquals(new double[] {-0.3, 0.2, 0.1}, aligned[2]);
+    final DoubleMatrix2D covariance = CALCULATOR.evaluate(ts1, ts2, ts3);
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        assertEquals(SAMPLE_COVARIANCE.evaluate(aligned[i], aligned[j]), covariance.getEntry(i, j), EPS);
+      }
+    }
+  }
+
+  @Test
+  public void testEWMA() {
+    final double lambda = 0.94;
+    final DoubleMatrix2D covariance = new BulkCovarianceMatrixCalculator(lambda, 0).evaluate(DATA);
+    final double[] weights = new double[N_OBSERVATIONS];
+    double sum = 0;
+    for (int t = 0; t < N_OBSERVATIONS; t++) {
+      weights[t] = Math.pow(lambda, N_OBSERVATIONS - 1 - t);
+      sum += weights[t];
+    }
+    double sumSq = 0;
+    for (int t = 0; t < N_OBSERVATIONS; t++) {
+      weights[t] /= sum;
+      sumSq += weights[t] * weights[t];
+    }
+    for (int i = 0; i < N_SERIES; i += 7) {
+      for (int j = 0; j < N_SERIES; j += 5) {
+        double meanI = 0;
+        double meanJ = 0;
+        for (int t = 0; t < N_OBSERVATIONS; t++) {
+          meanI += weights[t] * DATA[i][t];
+          meanJ += weights[t] * DATA[j][t];
+        }
+        double expected = 0;
+        for (int t = 0; t < N_OBSERVATIONS; t++) {
+          expected += weights[t] * (DATA[i][t] - meanI) * (DATA[j][t] - meanJ);
+        }
+        expected /= 1 - sumSq;
+        assertEquals(expected, covariance.getEntry(i, j), EPS);
+      }
+    }
+  }
+
+  @Test
+  public void testShrinkage() {
+    final double shrinkage = 0.3;
+    final DoubleMatrix2D sample = CALCULATOR.evaluate(DATA);
+    final DoubleMatrix2D shrunk = new BulkCovarianceMatrixCalculator(1, shrinkage).evaluate(DATA);
+    final DoubleMatrix2D diagonal = new BulkCovarianceMatrixCalculator(1, 1).evaluate(DATA);
+    for (int i = 0; i < N_SERIES; i++) {
+      for (int j = 0; j < N_SERIES; j++) {
+        if (i == j) {
+          assertEquals(sample.getEntry(i, i), shrunk.getEntry(i, i), EPS);
+          assertEquals(sample.getEntry(i, i), diagonal.getEntry(i, i), EPS);
+        } else {
+          assertEquals((1 - shrinkage) * sample.getEntry(i, j), shrunk.getEntry(i, j), EPS);
+          assertEquals(0, diagonal.getEntry(i, j), 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCorrelation() {
+    final DoubleMatrix2D covariance = CALCULATOR.evaluate(DATA);
+    final DoubleMatrix2D correlation = BulkCovarianceMatrixCalculator.getCorrelationMatrix(covariance);
+    for (int i = 0; i < N_SERIES; i++) {
+      assertEquals(1, correlation.getEntry(i, i), 0);
+      for (int j = 0; j < N_SERIES; j++) {
+        assertEquals(covariance.getEntry(i, j) / Math.sqrt(covariance.getEntry(i, i) * covariance.getEntry(j, j)), correlation.getEntry(i, j), EPS);
+      }
+    }
+  }
+
+  @Test
+  public void testParallel() {
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final DoubleMatrix2D serial = new BulkCovarianceMatrixCalculator(0.97, 0.1).evaluate(DATA);
+      final DoubleMatrix2D parallel = new BulkCovarianceMatrixCalculator(0.97, 0.1, executor, 3).evaluate(DATA);
+      for (int i = 0; i < N_SERIES; i++) {
+        for (int j = 0; j < N_SERIES; j++) {
+          assertEquals(serial.getEntry(i, j), parallel.getEntry(i, j), 0);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertArrayEquals(final double[] expected, final double[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], actual[i], 0);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.instrument.swap;
+
+import javax.time.calendar.LocalDate;
+import javax.time.calendar.Period;
+import javax.time.calendar.ZonedDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.convention.businessday.BusinessDayConvention;
+import com.opengamma.financial.convention.businessday.BusinessDayConventionFactory;
+import com.opengamma.financial.convention.calendar.Calendar;
+import com.opengamma.financial.convention.calendar.CompiledCalendar;
+import com.opengamma.financial.convention.calendar.MondayToFridayCalendar;
+import com.opengamma.financial.convention.daycount.DayCount;
+import com.opengamma.financial.convention.daycount.DayCountFactory;
+import com.opengamma.financial.convention.frequency.PeriodFrequency;
+import com.opengamma.financial.instrument.annuity.AnnuityCouponFixedDefinition;
+import com.opengamma.financial.instrument.annuity.AnnuityCouponIborDefinition;
+import com.opengamma.financial.instrument.index.IborIndex;
+import com.opengamma.util.money.Currency;
+import com.opengamma.util.monitor.OperationTimer;
+import com.opengamma.util.time.DateUtils;
+
+/**
+ * Compares the time taken to construct a book of fixed/ibor swaps with a calendar and with the same calendar compiled. The schedules are
+ * remembered in the shared {@link com.opengamma.financial.schedule.ScheduleCache}, which is left as it is found.
+ */
+public class SwapDefinitionSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(SwapDefinitionSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int NUMBER_OF_SWAPS = 1000;
+
+  private static final Calendar CALENDAR = new HolidayCalendar();
+  private static final BusinessDayConvention BUSINESS_DAY = BusinessDayConventionFactory.INSTANCE.getBusinessDayConvention("Modified Following");
+  private static final DayCount FIXED_DAY_COUNT = DayCountFactory.INSTANCE.getDayCount("30/360");
+  private static final DayCount IBOR_DAY_COUNT = DayCountFactory.INSTANCE.getDayCount("Actual/360");
+  private static final Currency CUR = Currency.USD;
+  private static final double NOTIONAL = 1000000;
+  private static final double RATE = 0.0325;
+  private static final int[] TENORS = new int[] {2, 3, 5, 7, 10, 15, 20, 30};
+  private static final int NUMBER_OF_EFFECTIVE_DATES = 20;
+
+  @Test
+  public void testConstruction() {
+    final CompiledCalendar compiled = CompiledCalendar.of(CALENDAR);
+    for (int i = 0; i < HOTSPOT_WARMUP_CYCLES; i++) {
+      constructSwaps(CALENDAR);
+      constructSwaps(compiled);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      OperationTimer timer = new OperationTimer(s_logger, "Constructing {} swaps with an uncompiled calendar", BENCHMARK_CYCLES * NUMBER_OF_SWAPS);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        constructSwaps(CALENDAR);
+      }
+      long time = timer.finished();
+      s_logger.info("Uncompiled calendar: {}ms per cycle", time / BENCHMARK_CYCLES);
+      timer = new OperationTimer(s_logger, "Constructing {} swaps with a compiled calendar", BENCHMARK_CYCLES * NUMBER_OF_SWAPS);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        constructSwaps(compiled);
+      }
+      time = timer.finished();
+      s_logger.info("Compiled calendar: {}ms per cycle", time / BENCHMARK_CYCLES);
+    }
+  }
+
+  private static void constructSwaps(final Calendar calendar) {
+    final IborIndex index = new IborIndex(CUR, Period.ofMonths(3), 2, calendar, IBOR_DAY_COUNT, BUSINESS_DAY, true);
+    final ZonedDateTime firstEffectiveDate = DateUtils.getUTCDate(2011, 3, 17);
+    for (int i = 0; i < NUMBER_OF_SWAPS; i++) {
+      final ZonedDateTime effectiveDate = firstEffectiveDate.plusMonths(i % NUMBER_OF_EFFECTIVE_DATES);
+      final ZonedDateTime maturityDate = effectiveDate.plusYears(TENORS[i % TENORS.length]);
+      final AnnuityCouponFixedDefinition fixedLeg = AnnuityCouponFixedDefinition.from(CUR, effectiveDate, maturityDate, PeriodFrequency.SEMI_ANNUAL, calendar,
+          FIXED_DAY_COUNT, BUSINESS_DAY, true, NOTIONAL, RATE, true);
+      final AnnuityCouponIborDefinition iborLeg = AnnuityCouponIborDefinition.from(effectiveDate, maturityDate, NOTIONAL, index, false);
+      new SwapFixedIborDefinition(fixedLeg, iborLeg);
+    }
+  }
+
+  private static class HolidayCalendar extends MondayToFridayCalendar {
+    private static final long serialVersionUID = 1L;
+
+    public HolidayCalendar() {
+      super("Holidays");
+      for (int year = 2011; year <= 2062; year++) {
+        addNonWorkingDay(LocalDate.of(year, 1, 1));
+        addNonWorkingDay(LocalDate.of(year, 7, 4));
+        addNonWorkingDay(LocalDate.of(year, 12, 25));
+        addNonWorkingDay(LocalDate.of(year, 12, 26));
+      }
+    }
+  }
+
+}
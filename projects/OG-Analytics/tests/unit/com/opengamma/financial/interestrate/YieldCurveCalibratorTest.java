@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.math.function.Function1D;
+import com.opengamma.math.linearalgebra.LUDecompositionOG;
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.math.rootfinding.newton.BroydenVectorRootFinder;
+import com.opengamma.math.rootfinding.newton.NewtonVectorRootFinder;
+import com.opengamma.math.rootfinding.newton.ShermanMorrisonVectorRootFinder;
+
+/**
+ * Test YieldCurveCalibrator.
+ */
+public class YieldCurveCalibratorTest {
+  private static final double TOLERANCE = 1e-9;
+  private static final NewtonVectorRootFinder ROOT_FINDER = new BroydenVectorRootFinder(TOLERANCE, TOLERANCE, 100, new LUDecompositionOG());
+  private static final double[] QUOTES = new double[] {0.05, 0.08, 0.12, 0.17, 0.22, 0.26, 0.29, 0.31};
+  private static final double[] INITIAL_GUESS = new double[] {0.01, 0.01, 0.01, 0.01, 0.01, 0.01, 0.01, 0.01};
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeQuoteTolerance() {
+    new YieldCurveCalibrator(-1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new YieldCurveCalibrator(0, null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullProblem() {
+    new YieldCurveCalibrator(0).calibrate((YieldCurveCalibrationProblem) null, ROOT_FINDER);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmptyInitialGuess() {
+    getProblem("A", QUOTES, new double[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testDuplicateNames() {
+    new YieldCurveCalibrator(0).calibrate(Arrays.asList(getProblem("A", QUOTES), getProblem("A", QUOTES)), ROOT_FINDER);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongSizeMatrix() {
+    final YieldCurveCalibrationProblem problem = getProblem("A", QUOTES);
+    ROOT_FINDER.getRootResult(problem.getFunction(), problem.getJacobianFunction(), new DoubleMatrix1D(INITIAL_GUESS), new DoubleMatrix2D(2, 2));
+  }
+
+  @Test
+  public void testColdStart() {
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(0);
+    final YieldCurveCalibrationProblem problem = getProblem("A", QUOTES);
+    final YieldCurveCalibrationResult result = calibrator.calibrate(problem, ROOT_FINDER);
+    assertFalse(result.isWarmStarted());
+    assertFalse(result.isReused());
+    assertTrue(result.getIterations() > 0);
+    assertEquals(1, result.getJacobianCalculations());
+    assertSolution(problem, result);
+    assertArrayEquals(ROOT_FINDER.getRoot(problem.getFunction(), problem.getJacobianFunction(), new DoubleMatrix1D(INITIAL_GUESS)).getData(),
+        result.getNodeValues(), 1e-8);
+  }
+
+  @Test
+  public void testUnchangedQuotes() {
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(1e-10);
+    final YieldCurveCalibrationResult first = calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    final double[] quotes = QUOTES.clone();
+    quotes[3] += 1e-11;
+    final YieldCurveCalibrationResult second = calibrator.calibrate(getProblem("A", quotes), ROOT_FINDER);
+    assertTrue(second.isReused());
+    assertEquals(0, second.getIterations());
+    assertArrayEquals(first.getNodeValues(), second.getNodeValues(), 0);
+  }
+
+  @Test
+  public void testUnchangedQuotesNoLongerSolution() {
+    // the quotes have not changed, but the function has (for example as time has passed), so the previous solution is not reused
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(1e-10);
+    calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    final YieldCurveCalibrationProblem problem = new YieldCurveCalibrationProblem("A", new TestFunction(shift(QUOTES, 1e-4)), new TestJacobian(), QUOTES,
+        INITIAL_GUESS, TOLERANCE);
+    final YieldCurveCalibrationResult result = calibrator.calibrate(problem, ROOT_FINDER);
+    assertFalse(result.isReused());
+    assertTrue(result.isWarmStarted());
+    assertSolution(problem, result);
+  }
+
+  @Test
+  public void testWarmStart() {
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(0);
+    calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    final YieldCurveCalibrationProblem moved = getProblem("A", shift(QUOTES, 1e-4));
+    final YieldCurveCalibrationResult warm = calibrator.calibrate(moved, ROOT_FINDER);
+    assertTrue(warm.isWarmStarted());
+    assertFalse(warm.isReused());
+    assertEquals(0, warm.getJacobianCalculations());
+    assertSolution(moved, warm);
+    final YieldCurveCalibrationResult cold = new YieldCurveCalibrator(0).calibrate(moved, ROOT_FINDER);
+    assertTrue(warm.getIterations() < cold.getIterations());
+    assertArrayEquals(cold.getNodeValues(), warm.getNodeValues(), 1e-8);
+  }
+
+  @Test
+  public void testReset() {
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(0);
+    calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    calibrator.reset("A");
+    assertFalse(calibrator.calibrate(getProblem("A", shift(QUOTES, 1e-4)), ROOT_FINDER).isWarmStarted());
+  }
+
+  @Test
+  public void testDifferentRootFinder() {
+    // the inverse Jacobian of a Sherman-Morrison root finder is not a Jacobian estimate for a Broyden root finder
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(0);
+    calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    final YieldCurveCalibrationProblem moved = getProblem("A", shift(QUOTES, 1e-4));
+    final YieldCurveCalibrationResult result = calibrator.calibrate(moved, new ShermanMorrisonVectorRootFinder(TOLERANCE, TOLERANCE, 100, new LUDecompositionOG()));
+    assertFalse(result.isWarmStarted());
+    assertSolution(moved, result);
+  }
+
+  @Test
+  public void testStatistics() {
+    final YieldCurveCalibrator calibrator = new YieldCurveCalibrator(0);
+    final YieldCurveCalibrationResult first = calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    calibrator.calibrate(getProblem("A", QUOTES), ROOT_FINDER);
+    final YieldCurveCalibrationResult third = calibrator.calibrate(getProblem("A", shift(QUOTES, 1e-4)), ROOT_FINDER);
+    calibrator.calibrate(getProblem("B", QUOTES), ROOT_FINDER);
+    final YieldCurveCalibrationStatistics statistics = calibrator.getStatistics().get("A");
+    assertEquals(2, calibrator.getStatistics().size());
+    assertEquals(3, statistics.getCalibrations());
+    assertEquals(1, statistics.getReused());
+    assertEquals(2, statistics.getWarmStarts());
+    assertEquals(first.getIterations() + third.getIterations(), statistics.getIterations());
+    assertEquals(third.getIterations(), statistics.getLastIterations());
+    assertEquals(1, calibrator.getStatistics().get("B").getCalibrations());
+    calibrator.clear();
+    assertTrue(calibrator.getStatistics().isEmpty());
+  }
+
+  @Test
+  public void testParallel() {
+    final List<YieldCurveCalibrationProblem> problems = new ArrayList<YieldCurveCalibrationProblem>();
+    for (int i = 0; i < 10; i++) {
+      problems.add(getProblem(Integer.toString(i), shift(QUOTES, i * 1e-3)));
+    }
+    final List<YieldCurveCalibrationResult> serial = new YieldCurveCalibrator(0).calibrate(problems, ROOT_FINDER);
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final List<YieldCurveCalibrationResult> parallel = new YieldCurveCalibrator(0, executor, 3).calibrate(problems, ROOT_FINDER);
+      assertEquals(problems.size(), parallel.size());
+      for (int i = 0; i < problems.size(); i++) {
+        assertEquals(problems.get(i).getName(), parallel.get(i).getName());
+        assertArrayEquals(serial.get(i).getNodeValues(), parallel.get(i).getNodeValues(), 0);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static YieldCurveCalibrationProblem getProblem(final String name, final double[] quotes) {
+    return getProblem(name, quotes, INITIAL_GUESS);
+  }
+
+  private static YieldCurveCalibrationProblem getProblem(final String name, final double[] quotes, final double[] initialGuess) {
+    return new YieldCurveCalibrationProblem(name, new TestFunction(quotes), new TestJacobian(), quotes, initialGuess, TOLERANCE);
+  }
+
+  private static double[] shift(final double[] quotes, final double shift) {
+    final double[] shifted = new double[quotes.length];
+    for (int i = 0; i < quotes.length; i++) {
+      shifted[i] = quotes[i] + shift;
+    }
+    return shifted;
+  }
+
+  private static void assertSolution(final YieldCurveCalibrationProblem problem, final YieldCurveCalibrationResult result) {
+    for (final double residual : problem.getFunction().evaluate(new DoubleMatrix1D(result.getNodeValues())).getData()) {
+      assertEquals(0, residual, TOLERANCE);
+    }
+  }
+
+  private static void assertArrayEquals(final double[] expected, final double[] actual, final double eps) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], actual[i], eps);
+    }
+  }
+
+  /**
+   * The "par rate" of node i depends non-linearly on its node value and the average of the earlier node values.
+   */
+  private static class TestFunction extends Function1D<DoubleMatrix1D, DoubleMatrix1D> {
+    private final double[] _quotes;
+
+    public TestFunction(final double[] quotes) {
+      _quotes = quotes;
+    }
+
+    @Override
+    public DoubleMatrix1D evaluate(final DoubleMatrix1D x) {
+      final double[] data = x.getData();
+      final double[] result = new double[data.length];
+      double sum = 0;
+      for (int i = 0; i < data.length; i++) {
+        sum += data[i];
+        result[i] = Math.expm1(data[i]) + 0.5 * sum / (i + 1) - _quotes[i];
+      }
+      return new DoubleMatrix1D(result);
+    }
+  }
+
+  private static class TestJacobian extends Function1D<DoubleMatrix1D, DoubleMatrix2D> {
+
+    @Override
+    public DoubleMatrix2D evaluate(final DoubleMatrix1D x) {
+      final double[] data = x.getData();
+      final int n = data.length;
+      final double[][] result = new double[n][n];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j <= i; j++) {
+          result[i][j] = 0.5 / (i + 1);
+        }
+        result[i][i] += Math.exp(data[i]);
+      }
+      return new DoubleMatrix2D(result);
+    }
+  }
+
+}
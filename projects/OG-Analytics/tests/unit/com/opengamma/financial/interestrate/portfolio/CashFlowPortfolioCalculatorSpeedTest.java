@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate.portfolio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.interestrate.InterestRateDerivative;
+import com.opengamma.financial.interestrate.PresentValueCalculator;
+import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Compares the throughput of {@link CashFlowPortfolioCalculator} with that of {@link PresentValueCalculator} on a portfolio of vanilla swaps.
+ */
+public class CashFlowPortfolioCalculatorSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(CashFlowPortfolioCalculatorSpeedTest.class);
+  private static final int WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int N_SWAPS = 10000;
+
+  private static final PresentValueCalculator PVC = PresentValueCalculator.getInstance();
+  private static final CashFlowPortfolioCalculator CALCULATOR = CashFlowPortfolioCalculator.getInstance();
+  private static final YieldCurveBundle CURVES = CashFlowPortfolioCalculatorTest.getCurves();
+  private static final InterestRateDerivative[] SWAPS = new InterestRateDerivative[N_SWAPS];
+
+  static {
+    for (int i = 0; i < N_SWAPS; i++) {
+      SWAPS[i] = CashFlowPortfolioCalculatorTest.getSwap(1 + i % 30, 0.01 + 0.00001 * (i % 300), i % 2 == 0);
+    }
+  }
+
+  @Test
+  public void testVisitor() {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      priceWithVisitor();
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of {} swaps with PresentValueCalculator", BENCHMARK_CYCLES, N_SWAPS);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        priceWithVisitor();
+      }
+      timer.finished();
+    }
+  }
+
+  @Test
+  public void testCompiledPortfolio() {
+    final OperationTimer compileTimer = new OperationTimer(s_logger, "compiling {} swaps", N_SWAPS);
+    final CashFlowPortfolio portfolio = CashFlowPortfolioCompiler.getInstance().compile(SWAPS);
+    compileTimer.finished();
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      CALCULATOR.getPresentValues(portfolio, CURVES);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of {} swaps with CashFlowPortfolioCalculator", BENCHMARK_CYCLES, N_SWAPS);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        CALCULATOR.getPresentValues(portfolio, CURVES);
+      }
+      timer.finished();
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of PV01 for {} swaps with CashFlowPortfolioCalculator", BENCHMARK_CYCLES, N_SWAPS);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        CALCULATOR.getPV01s(portfolio, CURVES);
+      }
+      timer.finished();
+    }
+  }
+
+  private void priceWithVisitor() {
+    for (final InterestRateDerivative swap : SWAPS) {
+      PVC.visit(swap, CURVES);
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.interestrate.portfolio;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.interestrate.InterestRateDerivative;
+import com.opengamma.financial.interestrate.PV01Calculator;
+import com.opengamma.financial.interestrate.PresentValueCalculator;
+import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.financial.interestrate.annuity.definition.AnnuityCouponFixed;
+import com.opengamma.financial.interestrate.annuity.definition.AnnuityCouponIbor;
+import com.opengamma.financial.interestrate.bond.definition.Bond;
+import com.opengamma.financial.interestrate.cash.definition.Cash;
+import com.opengamma.financial.interestrate.payments.CouponIbor;
+import com.opengamma.financial.interestrate.payments.CouponOIS;
+import com.opengamma.financial.interestrate.payments.PaymentFixed;
+import com.opengamma.financial.interestrate.swap.definition.FixedFloatSwap;
+import com.opengamma.financial.interestrate.swap.definition.TenorSwap;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.math.interpolation.LinearInterpolator1D;
+import com.opengamma.util.money.Currency;
+
+/**
+ *
+ */
+public class CashFlowPortfolioCalculatorTest {
+  private static final CashFlowPortfolioCompiler COMPILER = CashFlowPortfolioCompiler.getInstance();
+  private static final CashFlowPortfolioCalculator CALCULATOR = CashFlowPortfolioCalculator.getInstance();
+  private static final PresentValueCalculator PVC = PresentValueCalculator.getInstance();
+  private static final PV01Calculator PV01 = PV01Calculator.getInstance();
+  private static final Currency CUR = Currency.USD;
+  private static final String FUNDING_CURVE_NAME = "funding";
+  private static final String LIBOR_CURVE_NAME = "libor";
+  private static final YieldCurveBundle CURVES;
+  private static final double EPS = 1e-10;
+
+  static {
+    final double[] nodes = new double[] {0, 0.5, 1, 2, 3, 5, 7, 10, 20, 30};
+    final double[] fundingYields = new double[] {0.01, 0.012, 0.015, 0.02, 0.024, 0.029, 0.032, 0.035, 0.038, 0.039};
+    final double[] liborYields = new double[] {0.012, 0.0135, 0.017, 0.0225, 0.026, 0.031, 0.0345, 0.037, 0.04, 0.041};
+    CURVES = new YieldCurveBundle();
+    CURVES.setCurve(FUNDING_CURVE_NAME, new YieldCurve(InterpolatedDoublesCurve.fromSorted(nodes, fundingYields, new LinearInterpolator1D())));
+    CURVES.setCurve(LIBOR_CURVE_NAME, new YieldCurve(InterpolatedDoublesCurve.fromSorted(nodes, liborYields, new LinearInterpolator1D())));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullDerivatives() {
+    COMPILER.compile(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullPortfolio() {
+    CALCULATOR.getPresentValues(null, CURVES);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullCurves() {
+    CALCULATOR.getPresentValues(COMPILER.compile(new InterestRateDerivative[0]), null);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testUnsupportedDerivative() {
+    COMPILER.compile(new InterestRateDerivative[] {new CouponOIS(CUR, 1.0, FUNDING_CURVE_NAME, 1.0, 1.0, 1.0, 0.0, 1.0, 0.0, FUNDING_CURVE_NAME)});
+  }
+
+  @Test
+  public void testCompilation() {
+    final InterestRateDerivative[] derivatives = getPortfolio();
+    final CashFlowPortfolio portfolio = COMPILER.compile(derivatives);
+    assertEquals(derivatives.length, portfolio.getNumberOfDerivatives());
+    assertEquals(2, portfolio.getCurveNames().length);
+    for (int i = 0; i < portfolio.getCurveNames().length; i++) {
+      final double[] times = portfolio.getCurveTimes(i);
+      for (int j = 1; j < times.length; j++) {
+        assertEquals(true, times[j] > times[j - 1]);
+      }
+    }
+  }
+
+  @Test
+  public void testPresentValue() {
+    final InterestRateDerivative[] derivatives = getPortfolio();
+    final double[] pv = CALCULATOR.getPresentValues(COMPILER.compile(derivatives), CURVES);
+    for (int i = 0; i < derivatives.length; i++) {
+      assertEquals(PVC.visit(derivatives[i], CURVES), pv[i], EPS);
+    }
+  }
+
+  @Test
+  public void testPV01() {
+    final InterestRateDerivative[] derivatives = getPortfolio();
+    final CashFlowPortfolio portfolio = COMPILER.compile(derivatives);
+    final String[] curveNames = portfolio.getCurveNames();
+    final double[][] pv01 = CALCULATOR.getPV01s(portfolio, CURVES);
+    for (int i = 0; i < derivatives.length; i++) {
+      final Map<String, Double> expected = PV01.visit(derivatives[i], CURVES);
+      for (int j = 0; j < curveNames.length; j++) {
+        final Double expectedPV01 = expected.get(curveNames[j]);
+        assertEquals(expectedPV01 == null ? 0 : expectedPV01, pv01[i][j], EPS);
+      }
+    }
+  }
+
+  private static InterestRateDerivative[] getPortfolio() {
+    final int nSwaps = 50;
+    final InterestRateDerivative[] derivatives = new InterestRateDerivative[nSwaps + 6];
+    for (int i = 0; i < nSwaps; i++) {
+      derivatives[i] = getSwap(1 + i % 30, 0.01 + 0.0005 * i, i % 2 == 0);
+    }
+    final double[] paymentTimes = new double[] {0.25, 0.5, 0.75, 1.0, 1.25, 1.5, 1.75, 2.0};
+    final double[] spreads = new double[] {0.001, 0.001, 0.001, 0.001, 0.002, 0.002, 0.002, 0.002};
+    final double[] yearFractions = new double[] {0.25, 0.25, 0.25, 0.25, 0.25, 0.25, 0.25, 0.25};
+    final double[] startTimes = new double[] {0.0, 0.25, 0.5, 0.75, 1.0, 1.25, 1.5, 1.75};
+    derivatives[nSwaps] = new Cash(CUR, 0.5, 1, 0.013, 2. / 365, 0.49, FUNDING_CURVE_NAME);
+    derivatives[nSwaps + 1] = new PaymentFixed(CUR, 3.5, 0.7, FUNDING_CURVE_NAME);
+    derivatives[nSwaps + 2] = new CouponIbor(CUR, 1.02, FUNDING_CURVE_NAME, 0.5, 1.0, 0.5, 0.52, 1.02, 0.51, 0.0015, LIBOR_CURVE_NAME);
+    derivatives[nSwaps + 3] = new Bond(CUR, new double[] {0.5, 1.0, 1.5, 2.0, 2.5, 3.0}, 0.03, 0.5, 0.0, FUNDING_CURVE_NAME);
+    derivatives[nSwaps + 4] = new AnnuityCouponIbor(CUR, paymentTimes, startTimes, startTimes, paymentTimes, yearFractions, yearFractions, spreads, 2.0, FUNDING_CURVE_NAME,
+        LIBOR_CURVE_NAME, true);
+    derivatives[nSwaps + 5] = new TenorSwap<CouponIbor>(new AnnuityCouponIbor(CUR, paymentTimes, 1.0, FUNDING_CURVE_NAME, FUNDING_CURVE_NAME, true), new AnnuityCouponIbor(CUR,
+        paymentTimes, startTimes, startTimes, paymentTimes, yearFractions, yearFractions, spreads, 1.0, FUNDING_CURVE_NAME, LIBOR_CURVE_NAME, false));
+    return derivatives;
+  }
+
+  static FixedFloatSwap getSwap(final int years, final double rate, final boolean isPayer) {
+    final double[] fixedPaymentTimes = new double[years];
+    for (int i = 0; i < years; i++) {
+      fixedPaymentTimes[i] = i + 1;
+    }
+    final double[] floatPaymentTimes = new double[4 * years];
+    for (int i = 0; i < 4 * years; i++) {
+      floatPaymentTimes[i] = 0.25 * (i + 1);
+    }
+    return new FixedFloatSwap(new AnnuityCouponFixed(CUR, fixedPaymentTimes, rate, FUNDING_CURVE_NAME, isPayer), new AnnuityCouponIbor(CUR, floatPaymentTimes, FUNDING_CURVE_NAME,
+        LIBOR_CURVE_NAME, !isPayer));
+  }
+
+  static YieldCurveBundle getCurves() {
+    return CURVES;
+  }
+
+}
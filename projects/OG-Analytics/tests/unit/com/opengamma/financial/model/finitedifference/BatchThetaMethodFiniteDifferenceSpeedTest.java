@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.finitedifference;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.model.finitedifference.applications.PDEDataBundleProvider;
+import com.opengamma.math.function.Function;
+import com.opengamma.math.surface.FunctionalDoublesSurface;
+import com.opengamma.math.surface.Surface;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Reports the number of options per second priced by ThetaMethodFiniteDifference and by BatchThetaMethodFiniteDifference, serially and in parallel, for a
+ * strip of European and American puts on the same grid.
+ */
+public class BatchThetaMethodFiniteDifferenceSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(BatchThetaMethodFiniteDifferenceSpeedTest.class);
+  private static final PDEDataBundleProvider PDE_DATA_PROVIDER = new PDEDataBundleProvider();
+  private static final int N_OPTIONS = 40;
+  private static final double SPOT = 100;
+  private static final double RATE = 0.05;
+  private static final double T = 1.0;
+  private static final PDEGrid1D GRID = new PDEGrid1D(101, 201, T, 0, 5 * SPOT);
+  private static final ConvectionDiffusionPDEDataBundle[] DATA = new ConvectionDiffusionPDEDataBundle[N_OPTIONS];
+  private static final BoundaryCondition[] LOWER = new BoundaryCondition[N_OPTIONS];
+  private static final BoundaryCondition[] UPPER = new BoundaryCondition[N_OPTIONS];
+  private static final Surface<Double, Double, Double>[] AMERICAN_PAYOFF;
+  private static final int WARMUP_CYCLES = 2;
+  private static final int BENCHMARK_CYCLES = 1;
+
+  static {
+    @SuppressWarnings("unchecked")
+    final Surface<Double, Double, Double>[] payoffs = new Surface[N_OPTIONS];
+    for (int i = 0; i < N_OPTIONS; i++) {
+      final double k = 60 + 2 * i;
+      DATA[i] = PDE_DATA_PROVIDER.getBackwardsBlackScholes(0.2 + 0.002 * i, RATE, k, false);
+      LOWER[i] = new DirichletBoundaryCondition(k, 0.0);
+      UPPER[i] = new NeumannBoundaryCondition(0.0, 5 * SPOT, false);
+      payoffs[i] = FunctionalDoublesSurface.from(new Function<Double, Double>() {
+        @Override
+        public Double evaluate(final Double... ts) {
+          return Math.max(0, k - ts[1]);
+        }
+      });
+    }
+    AMERICAN_PAYOFF = payoffs;
+  }
+
+  @Test
+  public void testEuropean() {
+    final ThetaMethodFiniteDifference sor = new ThetaMethodFiniteDifference();
+    final BatchThetaMethodFiniteDifference batch = new BatchThetaMethodFiniteDifference();
+    doHotSpot("European, SOR", new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < N_OPTIONS; i++) {
+          sor.solve(DATA[i], GRID, LOWER[i], UPPER[i]);
+        }
+      }
+    });
+    doHotSpot("European, Thomas", new Runnable() {
+      @Override
+      public void run() {
+        batch.solve(DATA, GRID, LOWER, UPPER);
+      }
+    });
+    doParallel("European, Thomas", null);
+  }
+
+  @Test
+  public void testAmerican() {
+    final ThetaMethodFiniteDifference sor = new ThetaMethodFiniteDifference();
+    final BatchThetaMethodFiniteDifference batch = new BatchThetaMethodFiniteDifference();
+    doHotSpot("American, SOR", new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < N_OPTIONS; i++) {
+          sor.solve(DATA[i], GRID, LOWER[i], UPPER[i], AMERICAN_PAYOFF[i]);
+        }
+      }
+    });
+    doHotSpot("American, banded PSOR", new Runnable() {
+      @Override
+      public void run() {
+        batch.solve(DATA, GRID, LOWER, UPPER, AMERICAN_PAYOFF);
+      }
+    });
+    doParallel("American, banded PSOR", AMERICAN_PAYOFF);
+  }
+
+  private void doParallel(final String name, final Surface<Double, Double, Double>[] freeBoundaries) {
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      final BatchThetaMethodFiniteDifference batch = new BatchThetaMethodFiniteDifference(0.5, false, executor, nThreads);
+      doHotSpot(name + ", " + nThreads + " threads", new Runnable() {
+        @Override
+        public void run() {
+          batch.solve(DATA, GRID, LOWER, UPPER, freeBoundaries);
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void doHotSpot(final String name, final Runnable batch) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      batch.run();
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + N_OPTIONS + " options with " + name, BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        batch.run();
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}: {} options per second", name, 1000L * N_OPTIONS * BENCHMARK_CYCLES / time);
+    }
+  }
+
+}
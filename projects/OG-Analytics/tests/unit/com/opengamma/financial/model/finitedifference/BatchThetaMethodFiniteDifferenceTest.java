@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.finitedifference;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.model.finitedifference.applications.PDEDataBundleProvider;
+import com.opengamma.financial.model.interestrate.curve.ForwardCurve;
+import com.opengamma.financial.model.volatility.surface.AbsoluteLocalVolatilitySurface;
+import com.opengamma.math.function.Function;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+import com.opengamma.math.surface.FunctionalDoublesSurface;
+import com.opengamma.math.surface.Surface;
+
+/**
+ * Tests that BatchThetaMethodFiniteDifference agrees with ThetaMethodFiniteDifference, which has the same discretisation but solves each time step by SOR.
+ */
+public class BatchThetaMethodFiniteDifferenceTest {
+  private static final PDEDataBundleProvider PDE_DATA_PROVIDER = new PDEDataBundleProvider();
+  private static final ThetaMethodFiniteDifference SOR_SOLVER = new ThetaMethodFiniteDifference(0.5, false);
+  private static final BatchThetaMethodFiniteDifference SOLVER = new BatchThetaMethodFiniteDifference(0.5, false);
+  private static final double SPOT = 100;
+  private static final double RATE = 0.05;
+  private static final double T = 2.0;
+  private static final double[] STRIKES = new double[] {80, 90, 100, 110, 120};
+  private static final double[] VOLS = new double[] {0.3, 0.25, 0.2, 0.22, 0.27};
+  private static final PDEGrid1D GRID = new PDEGrid1D(51, 101, T, 0, 5 * SPOT);
+  private static final ConvectionDiffusionPDEDataBundle[] DATA = new ConvectionDiffusionPDEDataBundle[STRIKES.length];
+  private static final BoundaryCondition[] LOWER = new BoundaryCondition[STRIKES.length];
+  private static final BoundaryCondition[] UPPER = new BoundaryCondition[STRIKES.length];
+  private static final Surface<Double, Double, Double>[] AMERICAN_PAYOFF;
+
+  static {
+    @SuppressWarnings("unchecked")
+    final Surface<Double, Double, Double>[] payoffs = new Surface[STRIKES.length];
+    for (int i = 0; i < STRIKES.length; i++) {
+      final double k = STRIKES[i];
+      DATA[i] = PDE_DATA_PROVIDER.getBackwardsBlackScholes(VOLS[i], RATE, k, false);
+      LOWER[i] = new DirichletBoundaryCondition(k, 0.0);
+      UPPER[i] = new NeumannBoundaryCondition(0.0, 5 * SPOT, false);
+      payoffs[i] = FunctionalDoublesSurface.from(new Function<Double, Double>() {
+        @Override
+        public Double evaluate(final Double... ts) {
+          return Math.max(0, k - ts[1]);
+        }
+      });
+    }
+    AMERICAN_PAYOFF = payoffs;
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTheta() {
+    new BatchThetaMethodFiniteDifference(1.1, false);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new BatchThetaMethodFiniteDifference(0.5, false, null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullData() {
+    SOLVER.solve((ConvectionDiffusionPDEDataBundle) null, GRID, LOWER[0], UPPER[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBoundaryLevel() {
+    SOLVER.solve(DATA[0], GRID, new DirichletBoundaryCondition(0.0, 1.0), UPPER[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBatchLengths() {
+    SOLVER.solve(DATA, GRID, LOWER, new BoundaryCondition[] {UPPER[0]});
+  }
+
+  @Test
+  public void testEuropean() {
+    for (int i = 0; i < STRIKES.length; i++) {
+      // the systems are solved exactly, while SOR stops when the relative size of the correction is about 1e-9; the difference is the SOR error
+      checkEquals(SOR_SOLVER.solve(DATA[i], GRID, LOWER[i], UPPER[i]), SOLVER.solve(DATA[i], GRID, LOWER[i], UPPER[i]), 1e-5);
+    }
+  }
+
+  // the free boundary problem is solved by the same projected SOR iteration, so the results should agree closely
+  @Test
+  public void testAmerican() {
+    for (int i = 0; i < STRIKES.length; i++) {
+      checkEquals(SOR_SOLVER.solve(DATA[i], GRID, LOWER[i], UPPER[i], AMERICAN_PAYOFF[i]), SOLVER.solve(DATA[i], GRID, LOWER[i], UPPER[i], AMERICAN_PAYOFF[i]), 1e-9);
+    }
+  }
+
+  @Test
+  public void testTheta1() {
+    final ThetaMethodFiniteDifference sor = new ThetaMethodFiniteDifference(1.0, false);
+    final BatchThetaMethodFiniteDifference solver = new BatchThetaMethodFiniteDifference(1.0, false);
+    checkEquals(sor.solve(DATA[2], 20, 100, T, LOWER[2], UPPER[2]), solver.solve(DATA[2], 20, 100, T, LOWER[2], UPPER[2]), 1e-5);
+  }
+
+  @Test
+  public void testFullResults() {
+    final ThetaMethodFiniteDifference sor = new ThetaMethodFiniteDifference(0.5, true);
+    final BatchThetaMethodFiniteDifference solver = new BatchThetaMethodFiniteDifference(0.5, true);
+    final PDEFullResults1D expected = (PDEFullResults1D) sor.solve(DATA[1], GRID, LOWER[1], UPPER[1], AMERICAN_PAYOFF[1]);
+    final PDEFullResults1D actual = (PDEFullResults1D) solver.solve(DATA[1], GRID, LOWER[1], UPPER[1], AMERICAN_PAYOFF[1]);
+    assertEquals(GRID.getNumTimeNodes(), actual.getNumberTimeNodes());
+    for (int n = 0; n < GRID.getNumTimeNodes(); n++) {
+      for (int i = 0; i < GRID.getNumSpaceNodes(); i++) {
+        assertEquals(expected.getFunctionValue(i, n), actual.getFunctionValue(i, n), 1e-9);
+      }
+    }
+    checkEquals(expected, actual, 1e-9);
+  }
+
+  @Test
+  public void testExtended() {
+    final ForwardCurve forward = new ForwardCurve(SPOT, RATE);
+    final ExtendedConvectionDiffusionPDEDataBundle data = PDE_DATA_PROVIDER.getFokkerPlank(forward, 1.0, new AbsoluteLocalVolatilitySurface(ConstantDoublesSurface.from(0.2)));
+    final BoundaryCondition lower = new DirichletBoundaryCondition(0.0, 0.0);
+    final BoundaryCondition upper = new DirichletBoundaryCondition(0.0, 10 * SPOT);
+    final PDEGrid1D grid = new PDEGrid1D(new ExponentialMeshing(0, T, 50, 5.0), new HyperbolicMeshing(0, 10 * SPOT, SPOT, 101, 0.01));
+    final PDEResults1D expected = new ExtendedThetaMethodFiniteDifference(1.0, false).solve(data, grid, lower, upper);
+    final PDEResults1D actual = new BatchThetaMethodFiniteDifference(1.0, false).solve(data, grid, lower, upper);
+    checkEquals(expected, actual, 1e-8);
+  }
+
+  @Test
+  public void testBatch() {
+    final PDEResults1D[] european = SOLVER.solve(DATA, GRID, LOWER, UPPER);
+    final PDEResults1D[] american = SOLVER.solve(DATA, GRID, LOWER, UPPER, AMERICAN_PAYOFF);
+    assertEquals(STRIKES.length, european.length);
+    for (int i = 0; i < STRIKES.length; i++) {
+      checkEquals(SOLVER.solve(DATA[i], GRID, LOWER[i], UPPER[i]), european[i], 0);
+      checkEquals(SOLVER.solve(DATA[i], GRID, LOWER[i], UPPER[i], AMERICAN_PAYOFF[i]), american[i], 0);
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final BatchThetaMethodFiniteDifference parallel = new BatchThetaMethodFiniteDifference(0.5, false, executor, 3);
+      final PDEResults1D[] parallelEuropean = parallel.solve(DATA, GRID, LOWER, UPPER);
+      final PDEResults1D[] parallelAmerican = parallel.solve(DATA, GRID, LOWER, UPPER, AMERICAN_PAYOFF);
+      for (int i = 0; i < STRIKES.length; i++) {
+        checkEquals(european[i], parallelEuropean[i], 0);
+        checkEquals(american[i], parallelAmerican[i], 0);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testFlatResults() {
+    final int tNodes = GRID.getNumTimeNodes();
+    final int xNodes = GRID.getNumSpaceNodes();
+    final double[][] data = new double[tNodes][xNodes];
+    final double[] flat = new double[tNodes * xNodes];
+    for (int n = 0; n < tNodes; n++) {
+      for (int i = 0; i < xNodes; i++) {
+        data[n][i] = n + i / 1000.0;
+        flat[n * xNodes + i] = data[n][i];
+      }
+    }
+    final PDEFullResults1D res1 = new PDEFullResults1D(GRID, data);
+    final PDEFullResults1D res2 = new PDEFullResults1D(GRID, flat);
+    for (int n = 0; n < tNodes; n++) {
+      for (int i = 0; i < xNodes; i++) {
+        assertEquals(data[n][i], res1.getFunctionValue(i, n), 0);
+        assertEquals(data[n][i], res2.getFunctionValue(i, n), 0);
+      }
+    }
+    checkEquals(res1, res2, 0);
+    assertEquals(data[tNodes - 1][3], res2.getFunctionValue(3), 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testFlatResultsLength() {
+    new PDEFullResults1D(GRID, new double[GRID.getNumSpaceNodes()]);
+  }
+
+  private void checkEquals(final PDEResults1D expected, final PDEResults1D actual, final double tol) {
+    final int n = expected.getNumberSpaceNodes();
+    assertEquals(n, actual.getNumberSpaceNodes());
+    for (int i = 0; i < n; i++) {
+      final double value = expected.getFunctionValue(i);
+      assertEquals(value, actual.getFunctionValue(i), tol * Math.max(1, Math.abs(value)));
+    }
+  }
+
+}
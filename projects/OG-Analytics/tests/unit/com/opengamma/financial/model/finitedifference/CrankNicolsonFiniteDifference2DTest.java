@@ -7,6 +7,8 @@ package com.opengamma.financial.model.finitedifference;
 
 import org.testng.annotations.Test;
 
+import com.opengamma.math.linearalgebra.BiCGSTABSolver;
+
 /**
  * NOT WORKING
  */
@@ -15,6 +17,12 @@ public class CrankNicolsonFiniteDifference2DTest {
   private static final HestonPDETestCase HESTON_TESTER = new HestonPDETestCase();
   private static final SpreadOptionPDETestCase SPREAD_OPTION_TESTER = new SpreadOptionPDETestCase();
   private static final ConvectionDiffusionPDESolver2D SOLVER = new CrankNicolsonFiniteDifference2D(0.5);// set up as Crank-Nicolson
+  private static final ConvectionDiffusionPDESolver2D SPARSE_SOLVER = new CrankNicolsonFiniteDifference2D(0.5, new BiCGSTABSolver());
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullSparseSolver() {
+    new CrankNicolsonFiniteDifference2D(0.5, null);
+  }
 
   @Test
   public void testSpreadOption() {
@@ -37,4 +45,22 @@ public class CrankNicolsonFiniteDifference2DTest {
     HESTON_TESTER.testCallPrice(SOLVER, timeSteps, xSteps, ySteps, print);
   }
 
+  @Test
+  public void testSpreadOptionSparse() {
+    SPREAD_OPTION_TESTER.testAgaintBSPrice(SPARSE_SOLVER, 10, 100, 100);
+  }
+
+  @Test
+  public void testHestonSparse() {
+    HESTON_TESTER.testCallPrice(SPARSE_SOLVER, 10, 80, 80, false);
+  }
+
+  /**
+   * SOR stops when the relative change in the solution is around 1e-9, so the prices (up to 500) only agree to around 1e-4
+   */
+  @Test
+  public void testSparseAgreesWithSOR() {
+    SPREAD_OPTION_TESTER.testSolversAgree(SOLVER, SPARSE_SOLVER, 5, 40, 40, 1e-3);
+  }
+
 }
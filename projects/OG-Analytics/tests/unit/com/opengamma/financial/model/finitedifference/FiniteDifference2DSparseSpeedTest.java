@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.finitedifference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.math.linearalgebra.BiCGSTABSolver;
+import com.opengamma.math.linearalgebra.PreconditionerType;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Compares SOR with the sparse iterative solvers for the 2-D schemes on grids from 50 x 50 to 1000 x 1000. Only the smallest grid is run by default; SOR takes
+ * seconds per time step from 100 x 100 and minutes on the larger grids, which take several minutes even with the sparse solver.
+ */
+public class FiniteDifference2DSparseSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(FiniteDifference2DSparseSpeedTest.class);
+  private static final SpreadOptionPDETestCase SPREAD_OPTION_TESTER = new SpreadOptionPDETestCase();
+  private static final ConvectionDiffusionPDESolver2D CN_SOR = new CrankNicolsonFiniteDifference2D(0.5);
+  private static final BiCGSTABSolver BICGSTAB = new BiCGSTABSolver(1e-10, 20000, PreconditionerType.ILU);
+  private static final ConvectionDiffusionPDESolver2D CN_SPARSE = new CrankNicolsonFiniteDifference2D(0.5, BICGSTAB);
+  private static final ConvectionDiffusionPDESolver2D PR_SOR = new PeacemanRachfordFiniteDifference2D();
+  private static final ConvectionDiffusionPDESolver2D PR_SPARSE = new PeacemanRachfordFiniteDifference2D(BICGSTAB);
+  private static final int SMALL_GRID_SIZE = 50;
+  private static final int[] MEDIUM_GRID_SIZES = new int[] {100, 200};
+  private static final int[] LARGE_GRID_SIZES = new int[] {500, 1000};
+  private static final int TIME_STEPS = 5;
+  private static final int WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+
+  @Test
+  public void testSmallGrid() {
+    doHotSpot(CN_SOR, SMALL_GRID_SIZE, "Crank-Nicolson, SOR");
+    doHotSpot(CN_SPARSE, SMALL_GRID_SIZE, "Crank-Nicolson, BiCGSTAB/ILU(0)");
+    doHotSpot(PR_SOR, SMALL_GRID_SIZE, "Peaceman-Rachford, SOR");
+    doHotSpot(PR_SPARSE, SMALL_GRID_SIZE, "Peaceman-Rachford, BiCGSTAB/ILU(0)");
+  }
+
+  @Test(enabled = false)
+  public void testMediumGrids() {
+    for (final int n : MEDIUM_GRID_SIZES) {
+      doHotSpot(CN_SOR, n, "Crank-Nicolson, SOR");
+      doHotSpot(CN_SPARSE, n, "Crank-Nicolson, BiCGSTAB/ILU(0)");
+      doHotSpot(PR_SOR, n, "Peaceman-Rachford, SOR");
+      doHotSpot(PR_SPARSE, n, "Peaceman-Rachford, BiCGSTAB/ILU(0)");
+    }
+  }
+
+  @Test(enabled = false)
+  public void testLargeGrids() {
+    for (final int n : LARGE_GRID_SIZES) {
+      doHotSpot(CN_SPARSE, n, "Crank-Nicolson, BiCGSTAB/ILU(0)");
+      doHotSpot(PR_SPARSE, n, "Peaceman-Rachford, BiCGSTAB/ILU(0)");
+    }
+  }
+
+  private void doHotSpot(final ConvectionDiffusionPDESolver2D solver, final int n, final String name) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      SPREAD_OPTION_TESTER.solve(solver, TIME_STEPS, n, n);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + TIME_STEPS + " time steps on a " + n + " x " + n + " grid with " + name,
+          BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        SPREAD_OPTION_TESTER.solve(solver, TIME_STEPS, n, n);
+      }
+      timer.finished();
+    }
+  }
+
+}
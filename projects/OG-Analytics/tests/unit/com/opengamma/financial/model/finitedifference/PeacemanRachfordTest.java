@@ -7,6 +7,8 @@ package com.opengamma.financial.model.finitedifference;
 
 import org.testng.annotations.Test;
 
+import com.opengamma.math.linearalgebra.BiCGSTABSolver;
+
 /**
  * These tests are only valid for rho = 0
  */
@@ -15,6 +17,7 @@ public class PeacemanRachfordTest {
   private static final HestonPDETestCase HESTON_TESTER = new HestonPDETestCase();
   private static final SpreadOptionPDETestCase SPREAD_OPTION_TESTER = new SpreadOptionPDETestCase();
   private static final ConvectionDiffusionPDESolver2D SOLVER = new PeacemanRachfordFiniteDifference2D();
+  private static final ConvectionDiffusionPDESolver2D SPARSE_SOLVER = new PeacemanRachfordFiniteDifference2D(new BiCGSTABSolver());
 
   @Test(enabled = false)
   public void testSpreadOption() {
@@ -37,4 +40,12 @@ public class PeacemanRachfordTest {
     HESTON_TESTER.testCallPrice(SOLVER, timeSteps, xSteps, ySteps, print);
   }
 
+  /**
+   * The line solvers should agree even where the scheme itself is not accurate
+   */
+  @Test
+  public void testSparseAgreesWithSOR() {
+    SPREAD_OPTION_TESTER.testSolversAgree(SOLVER, SPARSE_SOLVER, 5, 40, 40, 1e-3);
+  }
+
 }
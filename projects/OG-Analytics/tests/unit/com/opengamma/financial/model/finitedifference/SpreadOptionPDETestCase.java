@@ -147,6 +147,21 @@ public class SpreadOptionPDETestCase {
     DATA = new ConvectionDiffusion2DPDEDataBundle(A, B, C, D, E, F, FunctionalDoublesSurface.from(payoff));
   }
 
+  public double[][] solve(final ConvectionDiffusionPDESolver2D solver, final int timeSteps, final int spotASteps, final int spotBSteps) {
+    return solver.solve(DATA, timeSteps, spotASteps, spotBSteps, T, A_LOWER, A_UPPER, B_LOWER, B_UPPER);
+  }
+
+  public void testSolversAgree(final ConvectionDiffusionPDESolver2D solver, final ConvectionDiffusionPDESolver2D otherSolver, final int timeSteps,
+      final int spotASteps, final int spotBSteps, final double tolerance) {
+    final double[][] res = solve(solver, timeSteps, spotASteps, spotBSteps);
+    final double[][] other = solve(otherSolver, timeSteps, spotASteps, spotBSteps);
+    for (int i = 0; i <= spotASteps; i++) {
+      for (int j = 0; j <= spotBSteps; j++) {
+        assertEquals(res[i][j], other[i][j], tolerance);
+      }
+    }
+  }
+
   public void testAgaintBSPrice(ConvectionDiffusionPDESolver2D solver, int timeSteps, int spotASteps, int spotBSteps) {
 
     double[][] res = solver.solve(DATA, timeSteps, spotASteps, spotBSteps, T, A_LOWER, A_UPPER, B_LOWER, B_UPPER);
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.greeks.GreekVisitor;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.financial.model.option.definition.EuropeanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.option.pricing.analytic.BlackScholesMertonModel;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.math.curve.ConstantDoublesCurve;
+import com.opengamma.math.function.Function1D;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+import com.opengamma.util.time.DateUtils;
+import com.opengamma.util.time.Expiry;
+
+/**
+ * Test BumpedRevaluationCalculator.
+ */
+public class BumpedRevaluationCalculatorTest {
+  private static final double EPS = 1e-4;
+  private static final BlackScholesMertonModel MODEL = new BlackScholesMertonModel();
+  private static final StandardOptionDataBundle DATA = new StandardOptionDataBundle(new YieldCurve(ConstantDoublesCurve.from(0.05)), 0.03,
+      new VolatilitySurface(ConstantDoublesSurface.from(0.25)), 100., DateUtils.getUTCDate(2010, 5, 1));
+  private static final List<OptionDefinition> DEFINITIONS = new ArrayList<OptionDefinition>();
+  private static final List<Function1D<StandardOptionDataBundle, Double>> FUNCTIONS = new ArrayList<Function1D<StandardOptionDataBundle, Double>>();
+  private static final List<OptionDataBundleBump> BUMPS = Arrays.asList(OptionDataBundleBump.spot(EPS), OptionDataBundleBump.volatility(EPS),
+      OptionDataBundleBump.costOfCarry(EPS));
+
+  static {
+    final Expiry[] expiries = new Expiry[] {new Expiry(DateUtils.getUTCDate(2010, 11, 1)), new Expiry(DateUtils.getUTCDate(2011, 5, 1)),
+        new Expiry(DateUtils.getUTCDate(2012, 5, 1))};
+    for (final Expiry expiry : expiries) {
+      for (final double strike : new double[] {80, 100, 120}) {
+        for (final boolean isCall : new boolean[] {true, false}) {
+          final OptionDefinition definition = new EuropeanVanillaOptionDefinition(strike, expiry, isCall);
+          DEFINITIONS.add(definition);
+          FUNCTIONS.add(MODEL.getPricingFunction(definition));
+        }
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new BumpedRevaluationCalculator<StandardOptionDataBundle>(null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoParallelism() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      new BumpedRevaluationCalculator<StandardOptionDataBundle>(executor, 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoFunctions() {
+    new BumpedRevaluationCalculator<StandardOptionDataBundle>().evaluate(Collections.<Function1D<StandardOptionDataBundle, Double>>emptyList(), DATA, BUMPS);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullData() {
+    new BumpedRevaluationCalculator<StandardOptionDataBundle>().evaluate(FUNCTIONS, null, BUMPS);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoBumps() {
+    new BumpedRevaluationCalculator<StandardOptionDataBundle>().evaluate(FUNCTIONS, DATA, Collections.<OptionDataBundleBump>emptyList());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeShift() {
+    OptionDataBundleBump.spot(-EPS);
+  }
+
+  @Test
+  public void testAgainstGreekVisitor() {
+    final BumpedRevaluationResult result = new BumpedRevaluationCalculator<StandardOptionDataBundle>().evaluate(FUNCTIONS, DATA, BUMPS, true);
+    assertEquals(FUNCTIONS.size(), result.getNumberOfInstruments());
+    for (int i = 0; i < FUNCTIONS.size(); i++) {
+      final GreekVisitor<Double> visitor = new FiniteDifferenceGreekVisitor<StandardOptionDataBundle, OptionDefinition>(FUNCTIONS.get(i), DATA,
+          DEFINITIONS.get(i));
+      assertEquals(visitor.visitPrice(), result.getValues()[i], 1e-12);
+      assertEquals(visitor.visitDelta(), result.getFirstOrder()[i][0], 1e-8);
+      assertEquals(visitor.visitVega(), result.getFirstOrder()[i][1], 1e-6);
+      assertEquals(visitor.visitCarryRho(), result.getFirstOrder()[i][2], 1e-6);
+      assertEquals(visitor.visitGamma(), result.getSecondOrder()[i][0], 1e-4);
+      assertEquals(visitor.visitVomma(), result.getSecondOrder()[i][1], 1e-2);
+      assertEquals(visitor.visitVanna(), result.getCrossSecondOrder()[i][0][1], 1e-4);
+      for (int j = 0; j < BUMPS.size(); j++) {
+        assertEquals(result.getSecondOrder()[i][j], result.getCrossSecondOrder()[i][j][j], 0);
+        for (int k = 0; k < BUMPS.size(); k++) {
+          assertEquals(result.getCrossSecondOrder()[i][j][k], result.getCrossSecondOrder()[i][k][j], 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNoCrossSensitivities() {
+    final BumpedRevaluationResult result = new BumpedRevaluationCalculator<StandardOptionDataBundle>().evaluate(FUNCTIONS, DATA, BUMPS);
+    assertFalse(result.hasCrossSecondOrder());
+    assertNull(result.getCrossSecondOrder());
+    assertEquals(BUMPS, result.getBumps());
+  }
+
+  @Test
+  public void testParallel() {
+    final BumpedRevaluationResult serial = new BumpedRevaluationCalculator<StandardOptionDataBundle>().evaluate(FUNCTIONS, DATA, BUMPS, true);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final BumpedRevaluationResult parallel = new BumpedRevaluationCalculator<StandardOptionDataBundle>(executor, 4).evaluate(FUNCTIONS, DATA, BUMPS, true);
+      for (int i = 0; i < FUNCTIONS.size(); i++) {
+        assertEquals(serial.getValues()[i], parallel.getValues()[i], 0);
+        for (int j = 0; j < BUMPS.size(); j++) {
+          assertEquals(serial.getFirstOrder()[i][j], parallel.getFirstOrder()[i][j], 0);
+          assertEquals(serial.getSecondOrder()[i][j], parallel.getSecondOrder()[i][j], 0);
+          for (int k = 0; k < BUMPS.size(); k++) {
+            assertEquals(serial.getCrossSecondOrder()[i][j][k], parallel.getCrossSecondOrder()[i][j][k], 0);
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testPricingFailure() {
+    final Function1D<StandardOptionDataBundle, Double> failing = new Function1D<StandardOptionDataBundle, Double>() {
+      @Override
+      public Double evaluate(final StandardOptionDataBundle x) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      new BumpedRevaluationCalculator<StandardOptionDataBundle>(executor, 2).evaluate(Collections.singletonList(failing), DATA, BUMPS);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
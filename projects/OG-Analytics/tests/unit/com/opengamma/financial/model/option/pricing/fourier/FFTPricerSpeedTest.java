@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.fourier;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.model.option.pricing.analytic.formula.BlackFunctionData;
+import com.opengamma.financial.model.option.pricing.analytic.formula.EuropeanVanillaOption;
+import com.opengamma.financial.model.volatility.smile.fitting.HestonFFTSmileFitter;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Reports the number of Heston surfaces per second priced by FFTPricer, one expiry at a time and with the batch method, and the number of smiles per
+ * second fitted by HestonFFTSmileFitter.
+ */
+public class FFTPricerSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(FFTPricerSpeedTest.class);
+  private static final int WARMUP_CYCLES = 100;
+  private static final int BENCHMARK_CYCLES = 200;
+  private static final int FIT_BENCHMARK_CYCLES = 10;
+  private static final double SPOT = 100;
+  private static final double[] EXPIRIES = new double[] {1. / 12, 0.25, 0.5, 0.75, 1, 1.5, 2, 3, 4, 5, 7, 10};
+  private static final int N_EXPIRIES = EXPIRIES.length;
+  private static final double[] FORWARD = new double[N_EXPIRIES];
+  private static final double[] DF = new double[N_EXPIRIES];
+  private static final double[] LOWEST_STRIKE = new double[N_EXPIRIES];
+  private static final double[] HIGHEST_STRIKE = new double[N_EXPIRIES];
+  private static final double[] LIMIT_SIGMA = new double[N_EXPIRIES];
+  private static final int MIN_STRIKES = 50;
+  private static final double ALPHA = -0.5;
+  private static final double TOL = 1e-10;
+  private static final MartingaleCharacteristicExponent HESTON = new HestonCharacteristicExponent(1.0, 0.04, 0.04, 0.4, -0.6);
+  private static final FFTPricer PRICER = new FFTPricer();
+
+  static {
+    for (int i = 0; i < N_EXPIRIES; i++) {
+      FORWARD[i] = SPOT * Math.exp(0.01 * EXPIRIES[i]);
+      DF[i] = Math.exp(-0.03 * EXPIRIES[i]);
+      LOWEST_STRIKE[i] = 0.5 * FORWARD[i];
+      HIGHEST_STRIKE[i] = 2 * FORWARD[i];
+      LIMIT_SIGMA[i] = 0.2;
+    }
+  }
+
+  @Test
+  public void testSurface() {
+    doHotSpot("one expiry at a time", new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < N_EXPIRIES; i++) {
+          PRICER.price(FORWARD[i], DF[i], EXPIRIES[i], true, HESTON, LOWEST_STRIKE[i], HIGHEST_STRIKE[i], MIN_STRIKES, LIMIT_SIGMA[i], ALPHA, TOL);
+        }
+      }
+    });
+    doHotSpot("batch, serial", new Runnable() {
+      @Override
+      public void run() {
+        PRICER.price(FORWARD, DF, EXPIRIES, true, HESTON, LOWEST_STRIKE, HIGHEST_STRIKE, MIN_STRIKES, LIMIT_SIGMA, ALPHA, TOL);
+      }
+    });
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      final FFTPricer pricer = new FFTPricer(executor, nThreads);
+      doHotSpot("batch, " + nThreads + " threads", new Runnable() {
+        @Override
+        public void run() {
+          pricer.price(FORWARD, DF, EXPIRIES, true, HESTON, LOWEST_STRIKE, HIGHEST_STRIKE, MIN_STRIKES, LIMIT_SIGMA, ALPHA, TOL);
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testFit() {
+    final int n = 20;
+    final double t = 1;
+    final EuropeanVanillaOption[] options = new EuropeanVanillaOption[n];
+    final BlackFunctionData[] data = new BlackFunctionData[n];
+    for (int i = 0; i < n; i++) {
+      final double k = SPOT * (0.7 + 0.6 * i / (n - 1));
+      options[i] = new EuropeanVanillaOption(k, t, true);
+      data[i] = new BlackFunctionData(SPOT, 1, 0.2 + 0.1 * (k / SPOT - 1) * (k / SPOT - 1));
+    }
+    final HestonFFTSmileFitter fitter = new HestonFFTSmileFitter(false);
+    final double[] initialValues = new double[] {0.5, 0.3, 0.2, 0.1, 0};
+    final BitSet fixed = new BitSet();
+    fitter.getFitResult(options, data, initialValues, fixed);
+    final OperationTimer timer = new OperationTimer(s_logger, "processing {} Heston smile fits", FIT_BENCHMARK_CYCLES);
+    for (int i = 0; i < FIT_BENCHMARK_CYCLES; i++) {
+      fitter.getFitResult(options, data, initialValues, fixed);
+    }
+    final long time = Math.max(1, timer.finished());
+    s_logger.info("{} fits per second", 1000. * FIT_BENCHMARK_CYCLES / time);
+  }
+
+  private void doHotSpot(final String name, final Runnable runnable) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      runnable.run();
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + N_EXPIRIES + " expiries, " + name, BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        runnable.run();
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}: {} surfaces per second", name, 1000L * BENCHMARK_CYCLES / time);
+    }
+  }
+
+}
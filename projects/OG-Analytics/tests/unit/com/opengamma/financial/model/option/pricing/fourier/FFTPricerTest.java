@@ -7,6 +7,9 @@ package com.opengamma.financial.model.option.pricing.fourier;
 
 import static org.testng.AssertJUnit.assertEquals;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.testng.annotations.Test;
 
 import com.opengamma.financial.model.option.pricing.analytic.formula.BlackFunctionData;
@@ -144,6 +147,57 @@ public class FFTPricerTest {
     assertEquals(n + 1, temp.length);
   }
 
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new FFTPricer(null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongLengthBatch() {
+    PRICER.price(new double[] {FORWARD, FORWARD}, new double[] {DF}, new double[] {T, 2 * T}, true, CEF, new double[] {0.8, 0.8}, new double[] {1.2, 1.2}, 10,
+        new double[] {SIGMA, SIGMA}, -0.5, TOL);
+  }
+
+  @Test
+  public void testBatch() {
+    final MartingaleCharacteristicExponent heston = new HestonCharacteristicExponent(1.2, 0.1, 0.18, 0.4, -0.7);
+    final double[] t = new double[] {0.25, 0.5, 1, 2, 5};
+    final int nExpiries = t.length;
+    final double[] forward = new double[nExpiries];
+    final double[] df = new double[nExpiries];
+    final double[] lowestStrike = new double[nExpiries];
+    final double[] highestStrike = new double[nExpiries];
+    final double[] limitSigma = new double[nExpiries];
+    for (int i = 0; i < nExpiries; i++) {
+      forward[i] = FORWARD * Math.exp(0.02 * t[i]);
+      df[i] = Math.exp(-0.03 * t[i]);
+      lowestStrike[i] = 0.7 * forward[i];
+      highestStrike[i] = 1.5 * forward[i];
+      limitSigma[i] = 0.3;
+    }
+    final double[][][] serial = PRICER.price(forward, df, t, false, heston, lowestStrike, highestStrike, 21, limitSigma, -0.5, TOL);
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    final double[][][] parallel;
+    try {
+      parallel = new FFTPricer(executor, 3).price(forward, df, t, false, heston, lowestStrike, highestStrike, 21, limitSigma, -0.5, TOL);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(nExpiries, serial.length);
+    assertEquals(nExpiries, parallel.length);
+    for (int i = 0; i < nExpiries; i++) {
+      final double[][] expected = PRICER.price(forward[i], df[i], t[i], false, heston, lowestStrike[i], highestStrike[i], 21, limitSigma[i], -0.5, TOL);
+      assertEquals(expected.length, serial[i].length);
+      assertEquals(expected.length, parallel[i].length);
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[j][0], serial[i][j][0], 0);
+        assertEquals(expected[j][1], serial[i][j][1], 0);
+        assertEquals(expected[j][0], parallel[i][j][0], 0);
+        assertEquals(expected[j][1], parallel[i][j][1], 0);
+      }
+    }
+  }
+
   @Test
   public void test() {
     final boolean isCall = true;
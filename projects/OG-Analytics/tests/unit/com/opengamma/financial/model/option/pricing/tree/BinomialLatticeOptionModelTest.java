@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.time.calendar.ZonedDateTime;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.greeks.Greek;
+import com.opengamma.financial.greeks.GreekResultCollection;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.financial.model.option.definition.AmericanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.BinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.CashOrNothingOptionDefinition;
+import com.opengamma.financial.model.option.definition.CoxRossRubinsteinBinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.EuropeanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.LeisenReimerBinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.RendlemanBartterBinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.option.definition.TrisgeorgisBinomialOptionModelDefinition;
+import com.opengamma.financial.model.tree.RecombiningBinomialTree;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.math.curve.ConstantDoublesCurve;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+import com.opengamma.util.time.DateUtils;
+import com.opengamma.util.time.Expiry;
+
+/**
+ * Tests that BinomialLatticeOptionModel agrees with BinomialOptionModel, which uses the same lattice.
+ */
+public class BinomialLatticeOptionModelTest {
+  private static final ZonedDateTime DATE = DateUtils.getUTCDate(2009, 1, 1);
+  private static final Expiry EXPIRY = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 0.75));
+  private static final StandardOptionDataBundle DATA = new StandardOptionDataBundle(new YieldCurve(ConstantDoublesCurve.from(0.06)), 0.02,
+      new VolatilitySurface(ConstantDoublesSurface.from(0.25)), 100., DATE);
+  private static final CoxRossRubinsteinBinomialOptionModelDefinition CRR = new CoxRossRubinsteinBinomialOptionModelDefinition();
+  @SuppressWarnings("unchecked")
+  private static final BinomialOptionModelDefinition<OptionDefinition, StandardOptionDataBundle>[] MODELS = new BinomialOptionModelDefinition[] {CRR,
+      new LeisenReimerBinomialOptionModelDefinition(), new RendlemanBartterBinomialOptionModelDefinition(), new TrisgeorgisBinomialOptionModelDefinition()};
+  private static final OptionDefinition[] OPTIONS = new OptionDefinition[] {new EuropeanVanillaOptionDefinition(95, EXPIRY, true),
+      new EuropeanVanillaOptionDefinition(105, EXPIRY, false), new AmericanVanillaOptionDefinition(90, EXPIRY, true), new AmericanVanillaOptionDefinition(110, EXPIRY, false),
+      new CashOrNothingOptionDefinition(100, EXPIRY, true, 10)};
+  private static final int N = 101;
+  private static final Set<Greek> GREEKS = new HashSet<Greek>();
+
+  static {
+    GREEKS.add(Greek.FAIR_PRICE);
+    GREEKS.add(Greek.DELTA);
+    GREEKS.add(Greek.GAMMA);
+    GREEKS.add(Greek.THETA);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullDefinition() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroN() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooFewSteps() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooFewStepsWithExecutor() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, 2, Executors.newSingleThreadExecutor(), 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, 10, null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullOption() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, 10).getPrice(null, DATA);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullOptionInBatch() {
+    new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, 10).getPrices(new OptionDefinition[] {OPTIONS[0], null}, DATA);
+  }
+
+  @Test
+  public void testAgainstTree() {
+    for (final BinomialOptionModelDefinition<OptionDefinition, StandardOptionDataBundle> model : MODELS) {
+      final BinomialOptionModel<StandardOptionDataBundle> tree = new BinomialOptionModel<StandardOptionDataBundle>(model, N);
+      final BinomialLatticeOptionModel<StandardOptionDataBundle> lattice = new BinomialLatticeOptionModel<StandardOptionDataBundle>(model, N);
+      for (final OptionDefinition option : OPTIONS) {
+        final GreekResultCollection expected = tree.getGreeks(option, DATA, GREEKS);
+        final GreekResultCollection actual = lattice.getGreeks(option, DATA, GREEKS);
+        for (final Greek greek : GREEKS) {
+          final double value = expected.get(greek);
+          assertEquals(value, actual.get(greek), 1e-9 * Math.max(1, Math.abs(value)));
+        }
+        assertEquals(expected.get(Greek.FAIR_PRICE), lattice.getPrice(option, DATA), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testFiniteDifferenceGreeks() {
+    final Set<Greek> greeks = new HashSet<Greek>();
+    greeks.add(Greek.VEGA);
+    greeks.add(Greek.RHO);
+    final BinomialOptionModel<StandardOptionDataBundle> tree = new BinomialOptionModel<StandardOptionDataBundle>(CRR, N);
+    final BinomialLatticeOptionModel<StandardOptionDataBundle> lattice = new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, N);
+    final GreekResultCollection expected = tree.getGreeks(OPTIONS[3], DATA, greeks);
+    final GreekResultCollection actual = lattice.getGreeks(OPTIONS[3], DATA, greeks);
+    assertEquals(expected.get(Greek.VEGA), actual.get(Greek.VEGA), 1e-6);
+    assertEquals(expected.get(Greek.RHO), actual.get(Greek.RHO), 1e-6);
+  }
+
+  @Test
+  public void testNonConstantProbabilities() {
+    // the same example as BinomialOptionModelTest
+    final BinomialOptionModelDefinition<OptionDefinition, StandardOptionDataBundle> model = new BinomialOptionModelDefinition<OptionDefinition, StandardOptionDataBundle>() {
+
+      @Override
+      public double getDownFactor(final OptionDefinition option, final StandardOptionDataBundle data, final int n, final int j) {
+        return 1. / 1.1;
+      }
+
+      @Override
+      public RecombiningBinomialTree<Double> getUpProbabilityTree(final OptionDefinition option, final StandardOptionDataBundle data, final int n, final int j) {
+        final double t = option.getTimeToExpiry(data.getDate());
+        final double dt = t / n;
+        final double r = data.getInterestRate(t);
+        final double p = (Math.exp(r * dt) - getDownFactor(option, data, n, j)) / (getUpFactor(option, data, n, j) - getDownFactor(option, data, n, j));
+        final Double[][] tree = new Double[n + 1][j];
+        for (int i = 0; i <= n; i++) {
+          for (int ii = 0; ii < j; ii++) {
+            tree[i][ii] = p;
+          }
+        }
+        return new RecombiningBinomialTree<Double>(tree);
+      }
+
+      @Override
+      public double getUpFactor(final OptionDefinition option, final StandardOptionDataBundle data, final int n, final int j) {
+        return 1.1;
+      }
+    };
+    final StandardOptionDataBundle data = new StandardOptionDataBundle(new YieldCurve(ConstantDoublesCurve.from(0.06)), 0., new VolatilitySurface(ConstantDoublesSurface.from(0.)),
+        100., DATE);
+    final Expiry expiry = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 1));
+    final BinomialLatticeOptionModel<StandardOptionDataBundle> lattice = new BinomialLatticeOptionModel<StandardOptionDataBundle>(model, 3);
+    assertEquals(10.1457, lattice.getPrice(new EuropeanVanillaOptionDefinition(100, expiry, true), data), 1e-4);
+    assertEquals(4.6546, lattice.getPrice(new AmericanVanillaOptionDefinition(100, expiry, false), data), 1e-4);
+  }
+
+  @Test
+  public void testBatch() {
+    final BinomialLatticeOptionModel<StandardOptionDataBundle> lattice = new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, N);
+    final double[] prices = lattice.getPrices(OPTIONS, DATA);
+    final GreekResultCollection[] greeks = lattice.getGreeks(OPTIONS, DATA, GREEKS);
+    assertEquals(OPTIONS.length, prices.length);
+    for (int i = 0; i < OPTIONS.length; i++) {
+      assertEquals(lattice.getPrice(OPTIONS[i], DATA), prices[i], 0);
+      assertEquals(lattice.getGreeks(OPTIONS[i], DATA, GREEKS), greeks[i]);
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final BinomialLatticeOptionModel<StandardOptionDataBundle> parallel = new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, N, executor, 2);
+      final double[] parallelPrices = parallel.getPrices(OPTIONS, DATA);
+      final GreekResultCollection[] parallelGreeks = parallel.getGreeks(OPTIONS, DATA, GREEKS);
+      for (int i = 0; i < OPTIONS.length; i++) {
+        assertEquals(prices[i], parallelPrices[i], 0);
+        assertEquals(greeks[i], parallelGreeks[i]);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.time.calendar.ZonedDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.greeks.Greek;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.financial.model.option.definition.AmericanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.CoxRossRubinsteinBinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.math.curve.ConstantDoublesCurve;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+import com.opengamma.util.monitor.OperationTimer;
+import com.opengamma.util.time.DateUtils;
+import com.opengamma.util.time.Expiry;
+
+/**
+ * Reports the number of American options per second priced, with delta, gamma and theta, by BinomialOptionModel and by BinomialLatticeOptionModel for a
+ * range of step counts.
+ */
+public class LatticeOptionModelSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(LatticeOptionModelSpeedTest.class);
+  private static final ZonedDateTime DATE = DateUtils.getUTCDate(2009, 1, 1);
+  private static final Expiry EXPIRY = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 1));
+  private static final StandardOptionDataBundle DATA = new StandardOptionDataBundle(new YieldCurve(ConstantDoublesCurve.from(0.05)), 0.02,
+      new VolatilitySurface(ConstantDoublesSurface.from(0.25)), 100., DATE);
+  private static final CoxRossRubinsteinBinomialOptionModelDefinition CRR = new CoxRossRubinsteinBinomialOptionModelDefinition();
+  private static final int N_OPTIONS = 10;
+  private static final OptionDefinition[] OPTIONS = new OptionDefinition[N_OPTIONS];
+  private static final int[] STEPS = new int[] {100, 500, 1000, 2000};
+  private static final Set<Greek> GREEKS = new HashSet<Greek>();
+  private static final int WARMUP_CYCLES = 2;
+  private static final int BENCHMARK_CYCLES = 1;
+
+  static {
+    for (int i = 0; i < N_OPTIONS; i++) {
+      OPTIONS[i] = new AmericanVanillaOptionDefinition(80 + 4 * i, EXPIRY, false);
+    }
+    GREEKS.add(Greek.FAIR_PRICE);
+    GREEKS.add(Greek.DELTA);
+    GREEKS.add(Greek.GAMMA);
+    GREEKS.add(Greek.THETA);
+  }
+
+  @Test
+  public void test() {
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      for (final int n : STEPS) {
+        final BinomialOptionModel<StandardOptionDataBundle> tree = new BinomialOptionModel<StandardOptionDataBundle>(CRR, n);
+        doHotSpot("tree, " + n + " steps", new Runnable() {
+          @Override
+          public void run() {
+            for (final OptionDefinition option : OPTIONS) {
+              tree.getGreeks(option, DATA, GREEKS);
+            }
+          }
+        });
+        final BinomialLatticeOptionModel<StandardOptionDataBundle> lattice = new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, n);
+        doHotSpot("lattice, " + n + " steps", new Runnable() {
+          @Override
+          public void run() {
+            lattice.getGreeks(OPTIONS, DATA, GREEKS);
+          }
+        });
+        final BinomialLatticeOptionModel<StandardOptionDataBundle> parallel = new BinomialLatticeOptionModel<StandardOptionDataBundle>(CRR, n, executor, nThreads);
+        doHotSpot("lattice, " + n + " steps, " + nThreads + " threads", new Runnable() {
+          @Override
+          public void run() {
+            parallel.getGreeks(OPTIONS, DATA, GREEKS);
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void doHotSpot(final String name, final Runnable batch) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      batch.run();
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + N_OPTIONS + " options with " + name, BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        batch.run();
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}: {} options per second", name, 1000L * N_OPTIONS * BENCHMARK_CYCLES / time);
+    }
+  }
+
+}
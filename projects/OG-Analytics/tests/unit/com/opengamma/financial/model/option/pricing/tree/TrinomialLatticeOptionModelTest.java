@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.model.option.pricing.tree;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.time.calendar.ZonedDateTime;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.greeks.Greek;
+import com.opengamma.financial.greeks.GreekResultCollection;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.financial.model.option.definition.AmericanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.BoyleTrinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.CoxRossRubinsteinBinomialOptionModelDefinition;
+import com.opengamma.financial.model.option.definition.EuropeanVanillaOptionDefinition;
+import com.opengamma.financial.model.option.definition.OptionDefinition;
+import com.opengamma.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.financial.model.option.definition.TrinomialOptionModelDefinition;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.math.curve.ConstantDoublesCurve;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+import com.opengamma.util.time.DateUtils;
+import com.opengamma.util.time.Expiry;
+
+/**
+ *
+ */
+public class TrinomialLatticeOptionModelTest {
+  private static final ZonedDateTime DATE = DateUtils.getUTCDate(2009, 1, 1);
+  private static final Expiry EXPIRY = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 1));
+  private static final StandardOptionDataBundle DATA = new StandardOptionDataBundle(new YieldCurve(ConstantDoublesCurve.from(0.06)), 0.03,
+      new VolatilitySurface(ConstantDoublesSurface.from(0.2)), 100., DATE);
+  private static final TrinomialOptionModelDefinition<OptionDefinition, StandardOptionDataBundle> BOYLE = new BoyleTrinomialOptionModelDefinition();
+  private static final OptionDefinition CALL = new EuropeanVanillaOptionDefinition(100, EXPIRY, true);
+  private static final OptionDefinition PUT = new EuropeanVanillaOptionDefinition(90, EXPIRY, false);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullDefinition() {
+    new TrinomialLatticeOptionModel<StandardOptionDataBundle>(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeN() {
+    new TrinomialLatticeOptionModel<StandardOptionDataBundle>(BOYLE, -3);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooFewSteps() {
+    new TrinomialLatticeOptionModel<StandardOptionDataBundle>(BOYLE, 1);
+  }
+
+  @Test
+  public void testSmallTree() {
+    final TrinomialLatticeOptionModel<StandardOptionDataBundle> model = new TrinomialLatticeOptionModel<StandardOptionDataBundle>(
+        new TrinomialOptionModelTest.MyTrinomialOptionModelDefinition(), 3);
+    assertEquals(8.4253, model.getPrice(CALL, DATA), 1e-4);
+  }
+
+  @Test
+  public void testEuropeanAgainstTree() {
+    final int n = 51;
+    final TrinomialOptionModel<StandardOptionDataBundle> tree = new TrinomialOptionModel<StandardOptionDataBundle>(BOYLE, n);
+    final TrinomialLatticeOptionModel<StandardOptionDataBundle> lattice = new TrinomialLatticeOptionModel<StandardOptionDataBundle>(BOYLE, n);
+    final Set<Greek> greeks = new HashSet<Greek>();
+    greeks.add(Greek.FAIR_PRICE);
+    greeks.add(Greek.DELTA);
+    for (final OptionDefinition option : new OptionDefinition[] {CALL, PUT}) {
+      final GreekResultCollection expected = tree.getGreeks(option, DATA, greeks);
+      final GreekResultCollection actual = lattice.getGreeks(option, DATA, greeks);
+      assertEquals(expected.get(Greek.FAIR_PRICE), actual.get(Greek.FAIR_PRICE), 1e-9);
+      // the tree model calculates delta by finite difference
+      assertEquals(expected.get(Greek.DELTA), actual.get(Greek.DELTA), 1e-2);
+    }
+  }
+
+  @Test
+  public void testAmericanAgainstBinomial() {
+    final TrinomialLatticeOptionModel<StandardOptionDataBundle> trinomial = new TrinomialLatticeOptionModel<StandardOptionDataBundle>(BOYLE, 500);
+    final BinomialLatticeOptionModel<StandardOptionDataBundle> binomial = new BinomialLatticeOptionModel<StandardOptionDataBundle>(
+        new CoxRossRubinsteinBinomialOptionModelDefinition(), 1000);
+    final Set<Greek> greeks = new HashSet<Greek>();
+    greeks.add(Greek.FAIR_PRICE);
+    greeks.add(Greek.DELTA);
+    greeks.add(Greek.GAMMA);
+    greeks.add(Greek.THETA);
+    final OptionDefinition[] options = new OptionDefinition[] {new AmericanVanillaOptionDefinition(110, EXPIRY, false), new AmericanVanillaOptionDefinition(90, EXPIRY, true)};
+    for (final OptionDefinition option : options) {
+      final GreekResultCollection expected = binomial.getGreeks(option, DATA, greeks);
+      final GreekResultCollection actual = trinomial.getGreeks(option, DATA, greeks);
+      assertEquals(expected.get(Greek.FAIR_PRICE), actual.get(Greek.FAIR_PRICE), 1e-2);
+      assertEquals(expected.get(Greek.DELTA), actual.get(Greek.DELTA), 1e-3);
+      assertEquals(expected.get(Greek.GAMMA), actual.get(Greek.GAMMA), 1e-3);
+      assertEquals(expected.get(Greek.THETA), actual.get(Greek.THETA), 5e-2);
+    }
+  }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.pnl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.financial.greeks.Greek;
+import com.opengamma.financial.sensitivity.ValueGreek;
+import com.opengamma.financial.sensitivity.ValueGreekSensitivity;
+import com.opengamma.util.monitor.OperationTimer;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+
+/**
+ * Reports the time taken to calculate the P&L series of 2000 option positions on 100 underlyings over 500 dates from their delta, gamma, vega, vanna
+ * and vomma, one position at a time with SensitivityPnLCalculator and all at once with SensitivityPnLAttributionCalculator.
+ */
+public class SensitivityPnLAttributionCalculatorSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(SensitivityPnLAttributionCalculatorSpeedTest.class);
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final Greek[] GREEKS = new Greek[] {Greek.DELTA, Greek.GAMMA, Greek.VEGA, Greek.VANNA, Greek.VOMMA};
+  private static final int[][] TERM_OFFSETS = new int[][] { {0}, {0, 0}, {1}, {0, 1}, {1, 1}};
+  private static final int N_POSITIONS = 2000;
+  private static final int N_UNDERLYINGS = 100;
+  private static final int N_DATES = 500;
+  private static final int WARMUP_CYCLES = 2;
+  private static final int BENCHMARK_CYCLES = 5;
+
+  @Test
+  public void test() {
+    final int[] dates = new int[N_DATES];
+    for (int t = 0; t < N_DATES; t++) {
+      dates[t] = 14000 + t;
+    }
+    // spot and implied volatility of each underlying
+    final double[][] moves = new double[2 * N_UNDERLYINGS][N_DATES];
+    final DoubleTimeSeries<?>[] ts = new DoubleTimeSeries<?>[2 * N_UNDERLYINGS];
+    for (int f = 0; f < moves.length; f++) {
+      for (int t = 0; t < N_DATES; t++) {
+        moves[f][t] = 0.02 * (RANDOM.nextDouble() - 0.5);
+      }
+      ts[f] = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, dates, moves[f]);
+    }
+    // every position has the five greeks to its own underlying, so the terms of the attribution are five per underlying
+    final int[][] terms = new int[GREEKS.length * N_UNDERLYINGS][];
+    for (int u = 0, k = 0; u < N_UNDERLYINGS; u++) {
+      for (final int[] offsets : TERM_OFFSETS) {
+        terms[k] = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+          terms[k][i] = 2 * u + offsets[i];
+        }
+        k++;
+      }
+    }
+    final double[][] sensitivities = new double[N_POSITIONS][terms.length];
+    final SensitivityAndReturnDataBundle[][] bundles = new SensitivityAndReturnDataBundle[N_POSITIONS][GREEKS.length];
+    for (int p = 0; p < N_POSITIONS; p++) {
+      final int u = p % N_UNDERLYINGS;
+      final Map<UnderlyingType, DoubleTimeSeries<?>> returns = new HashMap<UnderlyingType, DoubleTimeSeries<?>>();
+      returns.put(UnderlyingType.SPOT_PRICE, ts[2 * u]);
+      returns.put(UnderlyingType.IMPLIED_VOLATILITY, ts[2 * u + 1]);
+      for (int g = 0; g < GREEKS.length; g++) {
+        final double value = 1000 * (RANDOM.nextDouble() - 0.5);
+        sensitivities[p][GREEKS.length * u + g] = value;
+        bundles[p][g] = new SensitivityAndReturnDataBundle(new ValueGreekSensitivity(new ValueGreek(GREEKS[g]), Integer.toString(p)), value, returns);
+      }
+    }
+    final SensitivityPnLCalculator pnlCalculator = new SensitivityPnLCalculator();
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      for (int p = 0; p < N_POSITIONS; p++) {
+        pnlCalculator.evaluate(bundles[p]);
+      }
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of position-by-position P&L", BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        for (int p = 0; p < N_POSITIONS; p++) {
+          pnlCalculator.evaluate(bundles[p]);
+        }
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("position-by-position: {} ms per portfolio", time / BENCHMARK_CYCLES);
+    }
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      doHotSpot("attribution, serial", new SensitivityPnLAttributionCalculator(), sensitivities, terms, moves);
+      doHotSpot("attribution, " + nThreads + " threads", new SensitivityPnLAttributionCalculator(executor, nThreads), sensitivities, terms, moves);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void doHotSpot(final String name, final SensitivityPnLAttributionCalculator calculator, final double[][] sensitivities, final int[][] terms,
+      final double[][] moves) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      calculator.evaluate(sensitivities, terms, moves);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + name, BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        calculator.evaluate(sensitivities, terms, moves);
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}: {} ms per portfolio", name, time / BENCHMARK_CYCLES);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.pnl;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ *
+ */
+public class SensitivityPnLAttributionCalculatorTest {
+  private static final SensitivityPnLAttributionCalculator CALCULATOR = new SensitivityPnLAttributionCalculator();
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  // spot, implied volatility and interest rate; the same moves as in SensitivityPnLCalculatorTest
+  private static final double[][] MOVES = new double[][] { {0.4, 0.45}, {0.7, 0.75}, {0.3, 0.35}};
+  // delta, gamma, vega, vanna, vomma and rho
+  private static final int[][] TERMS = new int[][] { {0}, {0, 0}, {1}, {0, 1}, {1, 1}, {2}};
+  private static final double[][] SENSITIVITIES = new double[][] { {100, 200, 300, 400, 500, 600}, {-50, 20, 0, 10, -30, 60}};
+  private static final double EPS = 1e-9;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new SensitivityPnLAttributionCalculator(null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroParallelism() {
+    new SensitivityPnLAttributionCalculator(Executors.newSingleThreadExecutor(), 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullSensitivities() {
+    CALCULATOR.evaluate(null, TERMS, MOVES);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullTerms() {
+    CALCULATOR.evaluate(SENSITIVITIES, null, MOVES);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullMoves() {
+    CALCULATOR.evaluate(SENSITIVITIES, TERMS, null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmptyTerm() {
+    CALCULATOR.evaluate(new double[][] {{1, 2}}, new int[][] { {0}, {}}, MOVES);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testFactorOutOfRange() {
+    CALCULATOR.evaluate(new double[][] {{1, 2}}, new int[][] { {0}, {3}}, MOVES);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongNumberOfSensitivities() {
+    CALCULATOR.evaluate(new double[][] {{1, 2}}, TERMS, MOVES);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongNumberOfMoves() {
+    CALCULATOR.evaluate(SENSITIVITIES, TERMS, new double[][] { {0.4, 0.45}, {0.7}, {0.3, 0.35}});
+  }
+
+  @Test
+  public void testSingleSensitivity() {
+    final double[] pnl = CALCULATOR.evaluate(new double[][] {{100}}, new int[][] {{0, 0}}, MOVES).getPortfolioPnL();
+    assertEquals(pnl.length, 2);
+    assertEquals(pnl[0], 100 * 0.4 * 0.4 / 2, EPS);
+    assertEquals(pnl[1], 100 * 0.45 * 0.45 / 2, EPS);
+  }
+
+  @Test
+  public void test() {
+    final SensitivityPnLAttribution result = CALCULATOR.evaluate(SENSITIVITIES, TERMS, MOVES);
+    final double[][] positionPnL = result.getPositionPnL();
+    assertEquals(positionPnL.length, 2);
+    assertEquals(positionPnL[0][0], 680.5, EPS);
+    assertEquals(positionPnL[0][1], 775.875, EPS);
+    assertEquals(positionPnL[1][0], -20 + 1.6 + 2.8 - 7.35 + 18, EPS);
+    final double[] portfolioPnL = result.getPortfolioPnL();
+    final double[][] factorPnL = result.getFactorPnL();
+    assertEquals(factorPnL.length, 3);
+    for (int t = 0; t < 2; t++) {
+      assertEquals(portfolioPnL[t], positionPnL[0][t] + positionPnL[1][t], EPS);
+      assertEquals(portfolioPnL[t], factorPnL[0][t] + factorPnL[1][t] + factorPnL[2][t], EPS);
+    }
+    // delta, gamma and half of vanna
+    assertEquals(factorPnL[0][0], 50 * 0.4 + 220 * 0.16 / 2 + 410 * 0.28 / 2, EPS);
+    // vega, vomma and half of vanna
+    assertEquals(factorPnL[1][0], 300 * 0.7 + 470 * 0.49 / 2 + 410 * 0.28 / 2, EPS);
+    assertEquals(factorPnL[2][0], 660 * 0.3, EPS);
+    final double[][] positionFactorPnL = result.getPositionFactorPnL();
+    assertEquals(positionFactorPnL[0][2], 600 * (0.3 + 0.35), EPS);
+    for (int p = 0; p < 2; p++) {
+      assertEquals(positionFactorPnL[p][0] + positionFactorPnL[p][1] + positionFactorPnL[p][2], positionPnL[p][0] + positionPnL[p][1], EPS);
+    }
+  }
+
+  @Test
+  public void testParallel() {
+    final int nPositions = 150;
+    final int nFactors = 20;
+    final int nDates = 250;
+    final double[][] moves = new double[nFactors][nDates];
+    for (int f = 0; f < nFactors; f++) {
+      for (int t = 0; t < nDates; t++) {
+        moves[f][t] = 0.02 * (RANDOM.nextDouble() - 0.5);
+      }
+    }
+    final int[][] terms = new int[3 * nFactors][];
+    for (int f = 0; f < nFactors; f++) {
+      terms[3 * f] = new int[] {f};
+      terms[3 * f + 1] = new int[] {f, f};
+      terms[3 * f + 2] = new int[] {f, (f + 1) % nFactors};
+    }
+    final double[][] sensitivities = new double[nPositions][terms.length];
+    for (int p = 0; p < nPositions; p++) {
+      for (int k = 0; k < terms.length; k++) {
+        sensitivities[p][k] = 1000 * (RANDOM.nextDouble() - 0.5);
+      }
+    }
+    // each position is only sensitive to a few of the terms
+    final double[][] sparseSensitivities = new double[nPositions][terms.length];
+    for (int p = 0; p < nPositions; p++) {
+      for (int k = p % 10; k < terms.length; k += 10) {
+        sparseSensitivities[p][k] = sensitivities[p][k];
+      }
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final SensitivityPnLAttributionCalculator parallelCalculator = new SensitivityPnLAttributionCalculator(executor, 4);
+      assertAttributionEquals(CALCULATOR.evaluate(sensitivities, terms, moves), parallelCalculator.evaluate(sensitivities, terms, moves));
+      final SensitivityPnLAttribution sparse = CALCULATOR.evaluate(sparseSensitivities, terms, moves);
+      assertAttributionEquals(sparse, parallelCalculator.evaluate(sparseSensitivities, terms, moves));
+      final double[][] pnl = sparse.getPositionPnL();
+      for (int p = 0; p < nPositions; p++) {
+        for (int t = 0; t < nDates; t++) {
+          double expected = 0;
+          for (int k = 0; k < terms.length; k++) {
+            final int[] term = terms[k];
+            final double move = term.length == 1 ? moves[term[0]][t] : (term[0] == term[1] ? 0.5 : 1) * moves[term[0]][t] * moves[term[1]][t];
+            expected += sparseSensitivities[p][k] * move;
+          }
+          assertEquals(expected, pnl[p][t], EPS);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertAttributionEquals(final SensitivityPnLAttribution expected, final SensitivityPnLAttribution actual) {
+    assertMatrixEquals(expected.getPositionPnL(), actual.getPositionPnL());
+    assertMatrixEquals(expected.getFactorPnL(), actual.getFactorPnL());
+    assertMatrixEquals(expected.getPositionFactorPnL(), actual.getPositionFactorPnL());
+    assertMatrixEquals(new double[][] {expected.getPortfolioPnL()}, new double[][] {actual.getPortfolioPnL()});
+  }
+
+  private static void assertMatrixEquals(final double[][] expected, final double[][] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].length, actual[i].length);
+      for (int j = 0; j < expected[i].length; j++) {
+        assertEquals(expected[i][j], actual[i][j], 0);
+      }
+    }
+  }
+}
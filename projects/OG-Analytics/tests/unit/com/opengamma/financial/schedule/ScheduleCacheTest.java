@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.schedule;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+
+import java.util.Arrays;
+
+import javax.time.calendar.Period;
+import javax.time.calendar.ZonedDateTime;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.convention.businessday.BusinessDayConvention;
+import com.opengamma.financial.convention.businessday.BusinessDayConventionFactory;
+import com.opengamma.financial.convention.calendar.Calendar;
+import com.opengamma.financial.convention.calendar.CompiledCalendar;
+import com.opengamma.financial.convention.calendar.MondayToFridayCalendar;
+import com.opengamma.financial.convention.frequency.PeriodFrequency;
+import com.opengamma.util.time.DateUtils;
+
+/**
+ * Test ScheduleCache.
+ */
+public class ScheduleCacheTest {
+  private static final Calendar CALENDAR = new MondayToFridayCalendar("A");
+  private static final BusinessDayConvention CONVENTION = BusinessDayConventionFactory.INSTANCE.getBusinessDayConvention("Modified Following");
+  private static final ZonedDateTime EFFECTIVE = DateUtils.getUTCDate(2011, 3, 17);
+  private static final ZonedDateTime MATURITY = DateUtils.getUTCDate(2021, 3, 17);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroSize() {
+    new ScheduleCache(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullCalendar() {
+    new ScheduleCache(10).getAdjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.SEMI_ANNUAL, CONVENTION, null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEffectiveAfterMaturity() {
+    new ScheduleCache(10).getUnadjustedDateSchedule(MATURITY, EFFECTIVE, PeriodFrequency.SEMI_ANNUAL);
+  }
+
+  @Test
+  public void testAgainstCalculator() {
+    final ScheduleCache cache = new ScheduleCache(10);
+    final CompiledCalendar compiled = new CompiledCalendar(CALENDAR);
+    final ZonedDateTime[] unadjusted = ScheduleCalculator.getUnadjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.SEMI_ANNUAL);
+    final ZonedDateTime[] adjusted = ScheduleCalculator.getAdjustedDateSchedule(unadjusted, CONVENTION, CALENDAR);
+    for (int i = 0; i < 2; i++) {
+      assertArrayEquals(unadjusted, cache.getUnadjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.SEMI_ANNUAL));
+      assertArrayEquals(unadjusted, cache.getUnadjustedDateSchedule(EFFECTIVE, MATURITY, Period.ofMonths(6)));
+      assertArrayEquals(adjusted, cache.getAdjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.SEMI_ANNUAL, CONVENTION, CALENDAR));
+      assertArrayEquals(adjusted, cache.getAdjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.SEMI_ANNUAL, CONVENTION, compiled));
+      assertArrayEquals(adjusted, cache.getAdjustedDateSchedule(EFFECTIVE, MATURITY, Period.ofMonths(6), CONVENTION, compiled));
+    }
+    // the unadjusted schedules for the frequency and the period, and the adjusted schedules for the compiled calendar
+    assertEquals(4, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testCopiesReturned() {
+    final ScheduleCache cache = new ScheduleCache(10);
+    final CompiledCalendar compiled = new CompiledCalendar(CALENDAR);
+    final ZonedDateTime[] first = cache.getAdjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.ANNUAL, CONVENTION, compiled);
+    final ZonedDateTime[] expected = first.clone();
+    first[0] = null;
+    final ZonedDateTime[] second = cache.getAdjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.ANNUAL, CONVENTION, compiled);
+    assertNotSame(first, second);
+    assertArrayEquals(expected, second);
+  }
+
+  @Test
+  public void testEmptiedWhenFull() {
+    final ScheduleCache cache = new ScheduleCache(2);
+    cache.getUnadjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.ANNUAL);
+    cache.getUnadjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.SEMI_ANNUAL);
+    assertEquals(2, cache.size());
+    cache.getUnadjustedDateSchedule(EFFECTIVE, MATURITY, PeriodFrequency.QUARTERLY);
+    assertEquals(1, cache.size());
+  }
+
+  private static void assertArrayEquals(final ZonedDateTime[] expected, final ZonedDateTime[] actual) {
+    assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+  }
+
+}
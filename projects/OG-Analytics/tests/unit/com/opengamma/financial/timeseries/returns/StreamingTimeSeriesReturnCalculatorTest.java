@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.timeseries.returns;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.util.CalculationMode;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.TimeSeriesException;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.longint.FastArrayLongDoubleTimeSeries;
+
+/**
+ *
+ */
+public class StreamingTimeSeriesReturnCalculatorTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final DateTimeNumericEncoding ENCODING = DateTimeNumericEncoding.DATE_EPOCH_DAYS;
+  private static final int N = 20;
+  private static final long[] TIMES = new long[N];
+  private static final double[] PRICES = new double[N];
+
+  static {
+    for (int i = 0; i < N; i++) {
+      TIMES[i] = i;
+      PRICES[i] = RANDOM.nextDouble();
+    }
+    PRICES[7] = 0;
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullMode() {
+    new StreamingContinuouslyCompoundedReturnCalculator(null);
+  }
+
+  @Test(expectedExceptions = TimeSeriesException.class)
+  public void testStrict() {
+    final StreamingTimeSeriesReturnCalculator calculator = new StreamingSimpleNetReturnCalculator(CalculationMode.STRICT);
+    for (final double price : PRICES) {
+      calculator.update(price);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testNoReturn() {
+    final StreamingTimeSeriesReturnCalculator calculator = new StreamingSimpleNetReturnCalculator(CalculationMode.LENIENT);
+    calculator.update(1.);
+    calculator.getReturn();
+  }
+
+  @Test
+  public void testContinuouslyCompounded() {
+    assertSameReturns(new ContinuouslyCompoundedTimeSeriesReturnCalculator(CalculationMode.LENIENT),
+        new StreamingContinuouslyCompoundedReturnCalculator(CalculationMode.LENIENT));
+  }
+
+  @Test
+  public void testSimpleNet() {
+    assertSameReturns(new SimpleNetTimeSeriesReturnCalculator(CalculationMode.LENIENT), new StreamingSimpleNetReturnCalculator(CalculationMode.LENIENT));
+  }
+
+  @Test
+  public void testDividend() {
+    final StreamingTimeSeriesReturnCalculator calculator = new StreamingContinuouslyCompoundedReturnCalculator(CalculationMode.LENIENT);
+    assertFalse(calculator.update(10.));
+    assertTrue(calculator.update(11., 1.));
+    assertEquals(Math.log(1.2), calculator.getReturn(), 1e-15);
+    calculator.reset();
+    assertFalse(calculator.hasReturn());
+    assertFalse(calculator.update(11.));
+  }
+
+  private void assertSameReturns(final TimeSeriesReturnCalculator batch, final StreamingTimeSeriesReturnCalculator streaming) {
+    final DoubleTimeSeries<?> expected = batch.evaluate(new FastArrayLongDoubleTimeSeries(ENCODING, TIMES, PRICES));
+    final double[] values = expected.valuesArrayFast();
+    int j = 0;
+    for (final double price : PRICES) {
+      if (streaming.update(price)) {
+        assertEquals(values[j++], streaming.getReturn(), 0);
+      }
+    }
+    assertEquals(values.length, j);
+  }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.math.function.Function1D;
+import com.opengamma.math.interpolation.LinearInterpolator1D;
+import com.opengamma.math.statistics.distribution.NormalDistribution;
+import com.opengamma.math.statistics.distribution.ProbabilityDistribution;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Reports the number of scenarios per second revalued by ScenarioPnLCubeCalculator for a book of 500 zero-coupon bonds and European options, serially
+ * and in parallel.
+ */
+public class ScenarioPnLCubeCalculatorSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(ScenarioPnLCubeCalculatorSpeedTest.class);
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final ProbabilityDistribution<Double> NORMAL = new NormalDistribution(0, 1, RANDOM);
+  private static final double[] TIMES = new double[] {0.25, 0.5, 1, 2, 3, 5, 7, 10, 15, 20, 30};
+  private static final int N_CURVES = 3;
+  private static final int N_UNDERLYINGS = 20;
+  private static final int N_POSITIONS = 500;
+  private static final int N_SCENARIOS = 50;
+  private static final ScenarioMarketData DATA;
+  private static final List<HistoricalScenario> SCENARIOS = new ArrayList<HistoricalScenario>();
+  private static final List<Function1D<ScenarioMarketData, Double>> POSITIONS = new ArrayList<Function1D<ScenarioMarketData, Double>>();
+  private static final int WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+
+  static {
+    final YieldCurveBundle curves = new YieldCurveBundle();
+    for (int i = 0; i < N_CURVES; i++) {
+      final double[] rates = new double[TIMES.length];
+      for (int j = 0; j < TIMES.length; j++) {
+        rates[j] = 0.01 * (i + 1) + 0.002 * Math.log(1 + TIMES[j]);
+      }
+      curves.setCurve("Curve" + i, new YieldCurve(InterpolatedDoublesCurve.from(TIMES, rates, new LinearInterpolator1D())));
+    }
+    final Map<String, Double> spots = new HashMap<String, Double>();
+    final Map<String, VolatilitySurface> surfaces = new HashMap<String, VolatilitySurface>();
+    for (int i = 0; i < N_UNDERLYINGS; i++) {
+      spots.put("Underlying" + i, 50. + 5 * i);
+      surfaces.put("Underlying" + i, new VolatilitySurface(ConstantDoublesSurface.from(0.15 + 0.005 * i)));
+    }
+    DATA = new ScenarioMarketData(curves, spots, surfaces);
+    for (int s = 0; s < N_SCENARIOS; s++) {
+      final Map<String, double[]> curveShifts = new HashMap<String, double[]>();
+      for (int i = 0; i < N_CURVES; i++) {
+        final double[] shifts = new double[TIMES.length];
+        for (int j = 0; j < TIMES.length; j++) {
+          shifts[j] = 0.0005 * NORMAL.nextRandom();
+        }
+        curveShifts.put("Curve" + i, shifts);
+      }
+      final Map<String, Double> spotReturns = new HashMap<String, Double>();
+      final Map<String, Double> volatilityShifts = new HashMap<String, Double>();
+      for (int i = 0; i < N_UNDERLYINGS; i++) {
+        spotReturns.put("Underlying" + i, 0.01 * NORMAL.nextRandom());
+        volatilityShifts.put("Underlying" + i, 0.005 * NORMAL.nextRandom());
+      }
+      SCENARIOS.add(new HistoricalScenario(TIMES, curveShifts, spotReturns, volatilityShifts));
+    }
+    for (int p = 0; p < N_POSITIONS; p++) {
+      final String curveName = "Curve" + (p % N_CURVES);
+      final double maturity = 0.25 + 29.75 * RANDOM.nextDouble();
+      if (p % 2 == 0) {
+        POSITIONS.add(new BondPosition(curveName, maturity, 1e6 * NORMAL.nextRandom()));
+      } else {
+        final String underlying = "Underlying" + (p % N_UNDERLYINGS);
+        final double strike = spots.get(underlying) * (0.8 + 0.4 * RANDOM.nextDouble());
+        POSITIONS.add(new OptionPosition(curveName, underlying, Math.min(maturity, 5), strike, p % 4 == 1, 100 * NORMAL.nextRandom()));
+      }
+    }
+  }
+
+  @Test
+  public void test() {
+    doHotSpot("serial", new ScenarioPnLCubeCalculator());
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      doHotSpot(nThreads + " threads", new ScenarioPnLCubeCalculator(executor, nThreads));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void doHotSpot(final String name, final ScenarioPnLCubeCalculator calculator) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      calculator.evaluate(DATA, SCENARIOS, POSITIONS);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + N_SCENARIOS + " scenarios on " + N_POSITIONS + " positions, " + name,
+          BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        calculator.evaluate(DATA, SCENARIOS, POSITIONS);
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}: {} scenarios per second", name, 1000L * N_SCENARIOS * BENCHMARK_CYCLES / time);
+    }
+  }
+
+  private static final class BondPosition extends Function1D<ScenarioMarketData, Double> {
+    private final String _curveName;
+    private final double _maturity;
+    private final double _notional;
+
+    public BondPosition(final String curveName, final double maturity, final double notional) {
+      _curveName = curveName;
+      _maturity = maturity;
+      _notional = notional;
+    }
+
+    @Override
+    public Double evaluate(final ScenarioMarketData data) {
+      return _notional * data.getCurve(_curveName).getDiscountFactor(_maturity);
+    }
+  }
+
+  private static final class OptionPosition extends Function1D<ScenarioMarketData, Double> {
+    private final String _curveName;
+    private final String _underlying;
+    private final double _expiry;
+    private final double _strike;
+    private final boolean _isCall;
+    private final double _quantity;
+
+    public OptionPosition(final String curveName, final String underlying, final double expiry, final double strike, final boolean isCall,
+        final double quantity) {
+      _curveName = curveName;
+      _underlying = underlying;
+      _expiry = expiry;
+      _strike = strike;
+      _isCall = isCall;
+      _quantity = quantity;
+    }
+
+    @Override
+    public Double evaluate(final ScenarioMarketData data) {
+      final double spot = data.getSpot(_underlying);
+      final double df = data.getCurve(_curveName).getDiscountFactor(_expiry);
+      final double sigma = data.getVolatilitySurface(_underlying).getVolatility(_expiry, _strike);
+      final double sigmaRootT = sigma * Math.sqrt(_expiry);
+      final double forward = spot / df;
+      final double d1 = Math.log(forward / _strike) / sigmaRootT + 0.5 * sigmaRootT;
+      final double d2 = d1 - sigmaRootT;
+      final int sign = _isCall ? 1 : -1;
+      return _quantity * sign * df * (forward * NORMAL.getCDF(sign * d1) - _strike * NORMAL.getCDF(sign * d2));
+    }
+  }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.financial.model.interestrate.curve.YieldAndDiscountCurve;
+import com.opengamma.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.math.curve.ConstantDoublesCurve;
+import com.opengamma.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.math.function.Function1D;
+import com.opengamma.math.interpolation.LinearInterpolator1D;
+import com.opengamma.math.surface.ConstantDoublesSurface;
+
+/**
+ *
+ */
+public class ScenarioPnLCubeCalculatorTest {
+  private static final double[] TIMES = new double[] {1, 2, 5, 10};
+  private static final String DISCOUNTING = "Discounting";
+  private static final String FUNDING = "Funding";
+  private static final YieldCurveBundle CURVES = new YieldCurveBundle();
+  private static final Map<String, Double> SPOTS = new HashMap<String, Double>();
+  private static final Map<String, VolatilitySurface> SURFACES = new HashMap<String, VolatilitySurface>();
+  private static final ScenarioMarketData DATA;
+  private static final List<HistoricalScenario> SCENARIOS = new ArrayList<HistoricalScenario>();
+  private static final List<Function1D<ScenarioMarketData, Double>> POSITIONS = new ArrayList<Function1D<ScenarioMarketData, Double>>();
+
+  static {
+    CURVES.setCurve(DISCOUNTING, new YieldCurve(InterpolatedDoublesCurve.from(TIMES, new double[] {0.02, 0.025, 0.03, 0.035}, new LinearInterpolator1D())));
+    CURVES.setCurve(FUNDING, new YieldCurve(ConstantDoublesCurve.from(0.04)));
+    SPOTS.put("A", 100.);
+    SPOTS.put("B", 50.);
+    SURFACES.put("A", new VolatilitySurface(ConstantDoublesSurface.from(0.2)));
+    DATA = new ScenarioMarketData(CURVES, SPOTS, SURFACES);
+    for (int i = 0; i < 20; i++) {
+      final Map<String, double[]> curveShifts = new HashMap<String, double[]>();
+      curveShifts.put(DISCOUNTING, new double[] {0.001 * i, -0.0005 * i, 0.0002 * i, 0});
+      final Map<String, Double> spotReturns = new HashMap<String, Double>();
+      spotReturns.put("A", 0.01 * (i - 10));
+      final Map<String, Double> volatilityShifts = new HashMap<String, Double>();
+      volatilityShifts.put("A", 0.001 * (5 - i));
+      SCENARIOS.add(new HistoricalScenario(TIMES, curveShifts, spotReturns, volatilityShifts));
+    }
+    POSITIONS.add(new SpotPosition("A", 10));
+    POSITIONS.add(new SpotPosition("B", -5));
+    POSITIONS.add(new BondPosition(DISCOUNTING, 3, 1000));
+    POSITIONS.add(new BondPosition(FUNDING, 2, -1000));
+    POSITIONS.add(new VolatilityPosition("A", 1e4));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new ScenarioPnLCubeCalculator(null, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongNumberOfCurveShifts() {
+    new HistoricalScenario(TIMES, Collections.singletonMap(DISCOUNTING, new double[] {0.01}), new HashMap<String, Double>(), new HashMap<String, Double>());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullScenario() {
+    new ScenarioPnLCubeCalculator().evaluate(DATA, Collections.<HistoricalScenario>singletonList(null), POSITIONS);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMissingSpot() {
+    final HistoricalScenario scenario = new HistoricalScenario(new double[0], new HashMap<String, double[]>(), Collections.singletonMap("C", 0.01),
+        new HashMap<String, Double>());
+    DATA.withScenario(scenario);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongCubeSize() {
+    new ScenarioPnLCube(3, new double[2], new double[5]);
+  }
+
+  @Test
+  public void testMarketData() {
+    final HistoricalScenario scenario = SCENARIOS.get(3);
+    final ScenarioMarketData shocked = DATA.withScenario(scenario);
+    assertEquals(100 * 0.93, shocked.getSpot("A"), 1e-12);
+    assertEquals(50, shocked.getSpot("B"), 0);
+    assertEquals(0.202, shocked.getVolatilitySurface("A").getVolatility(1., 100.), 1e-12);
+    final YieldAndDiscountCurve curve = shocked.getCurve(DISCOUNTING);
+    assertEquals(0.023, curve.getInterestRate(1.), 1e-12);
+    assertEquals(0.0235, curve.getInterestRate(2.), 1e-12);
+    assertEquals(0.0306, curve.getInterestRate(5.), 1e-12);
+    assertSame(DATA.getCurve(FUNDING), shocked.getCurve(FUNDING));
+    // the base data is unchanged
+    assertEquals(0.02, DATA.getCurve(DISCOUNTING).getInterestRate(1.), 1e-12);
+    assertEquals(100, DATA.getSpot("A"), 0);
+    final Map<String, double[]> parallel = new HashMap<String, double[]>();
+    parallel.put(FUNDING, new double[] {0.01});
+    final ScenarioMarketData parallelShocked = DATA.withScenario(new HistoricalScenario(new double[] {1}, parallel, new HashMap<String, Double>(),
+        new HashMap<String, Double>()));
+    assertEquals(0.05, parallelShocked.getCurve(FUNDING).getInterestRate(7.), 1e-12);
+  }
+
+  @Test
+  public void testCube() {
+    final ScenarioPnLCube cube = new ScenarioPnLCubeCalculator().evaluate(DATA, SCENARIOS, POSITIONS);
+    final int nScenarios = SCENARIOS.size();
+    final int nPositions = POSITIONS.size();
+    assertEquals(nScenarios, cube.getNumberOfScenarios());
+    assertEquals(nPositions, cube.getNumberOfPositions());
+    assertEquals(nScenarios * nPositions, cube.getData().length);
+    for (int p = 0; p < nPositions; p++) {
+      assertEquals(POSITIONS.get(p).evaluate(DATA), cube.getBaseValues()[p], 0);
+    }
+    final double[] total = cube.getPortfolioPnL();
+    final double[] subset = cube.getPortfolioPnL(new int[] {0, 2});
+    for (int s = 0; s < nScenarios; s++) {
+      final ScenarioMarketData shocked = DATA.withScenario(SCENARIOS.get(s));
+      double sum = 0;
+      for (int p = 0; p < nPositions; p++) {
+        final double expected = POSITIONS.get(p).evaluate(shocked) - POSITIONS.get(p).evaluate(DATA);
+        assertEquals(expected, cube.getPnL(s, p), 1e-9);
+        assertEquals(expected, cube.getPositionPnL(p)[s], 1e-9);
+        sum += expected;
+      }
+      assertEquals(sum, total[s], 1e-9);
+      assertEquals(cube.getPnL(s, 0) + cube.getPnL(s, 2), subset[s], 1e-9);
+      assertEquals(0, cube.getPnL(s, 1), 0);
+      assertEquals(0, cube.getPnL(s, 3), 0);
+      assertEquals(10 * (s - 10), cube.getPnL(s, 0), 1e-9);
+    }
+  }
+
+  @Test
+  public void testParallel() {
+    final ScenarioPnLCube serial = new ScenarioPnLCubeCalculator().evaluate(DATA, SCENARIOS, POSITIONS);
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final ScenarioPnLCube parallel = new ScenarioPnLCubeCalculator(executor, 3).evaluate(DATA, SCENARIOS, POSITIONS);
+      assertEquals(serial.getNumberOfScenarios(), parallel.getNumberOfScenarios());
+      assertEquals(serial.getNumberOfPositions(), parallel.getNumberOfPositions());
+      assertEquals(Arrays.toString(serial.getData()), Arrays.toString(parallel.getData()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static final class SpotPosition extends Function1D<ScenarioMarketData, Double> {
+    private final String _name;
+    private final double _quantity;
+
+    public SpotPosition(final String name, final double quantity) {
+      _name = name;
+      _quantity = quantity;
+    }
+
+    @Override
+    public Double evaluate(final ScenarioMarketData data) {
+      return _quantity * data.getSpot(_name);
+    }
+  }
+
+  private static final class BondPosition extends Function1D<ScenarioMarketData, Double> {
+    private final String _curveName;
+    private final double _maturity;
+    private final double _notional;
+
+    public BondPosition(final String curveName, final double maturity, final double notional) {
+      _curveName = curveName;
+      _maturity = maturity;
+      _notional = notional;
+    }
+
+    @Override
+    public Double evaluate(final ScenarioMarketData data) {
+      return _notional * data.getCurve(_curveName).getDiscountFactor(_maturity);
+    }
+  }
+
+  private static final class VolatilityPosition extends Function1D<ScenarioMarketData, Double> {
+    private final String _name;
+    private final double _vega;
+
+    public VolatilityPosition(final String name, final double vega) {
+      _name = name;
+      _vega = vega;
+    }
+
+    @Override
+    public Double evaluate(final ScenarioMarketData data) {
+      return _vega * data.getVolatilitySurface(_name).getVolatility(1., 100.);
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.var.scenario;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class ScenarioVaRCalculatorTest {
+  private static final double HORIZON = 10;
+  private static final double PERIODS = 250;
+  private static final double QUANTILE = 0.9;
+  private static final ScenarioVaRCalculator CALCULATOR = new ScenarioVaRCalculator(HORIZON, PERIODS, QUANTILE);
+  private static final double[] PNL = new double[10];
+
+  static {
+    for (int i = 0; i < 10; i++) {
+      PNL[9 - i] = i / 10. - 0.5;
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeHorizon() {
+    new ScenarioVaRCalculator(-HORIZON, PERIODS, QUANTILE);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativePeriods() {
+    new ScenarioVaRCalculator(HORIZON, -PERIODS, QUANTILE);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testHighQuantile() {
+    new ScenarioVaRCalculator(HORIZON, PERIODS, 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullPnL() {
+    CALCULATOR.getVaR((double[]) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmptyPnL() {
+    CALCULATOR.getExpectedShortfall(new double[0]);
+  }
+
+  @Test
+  public void test() {
+    // same data as EmpiricalDistributionVaRCalculatorTest, which reports the percentile rather than the loss
+    assertEquals(0.082, CALCULATOR.getVaR(PNL), 1e-12);
+    assertEquals(0.1, CALCULATOR.getExpectedShortfall(PNL), 1e-12);
+    assertEquals(-0.5, PNL[9], 0);
+    final ScenarioVaRCalculator calculator = new ScenarioVaRCalculator(1, 1, 0.5);
+    assertEquals(0.05, calculator.getVaR(PNL), 1e-12);
+    assertEquals(0.3, calculator.getExpectedShortfall(PNL), 1e-12);
+  }
+
+  @Test
+  public void testCube() {
+    final double[] pnl = new double[20];
+    for (int i = 0; i < 10; i++) {
+      pnl[2 * i] = 3 * PNL[i];
+      pnl[2 * i + 1] = -2 * PNL[i];
+    }
+    final ScenarioPnLCube cube = new ScenarioPnLCube(10, new double[2], pnl);
+    assertEquals(3 * 0.082, CALCULATOR.getVaR(cube, new int[] {0}), 1e-12);
+    assertEquals(0.082, CALCULATOR.getVaR(cube, new int[] {0, 1}), 1e-12);
+    assertEquals(0.1, CALCULATOR.getExpectedShortfall(cube, new int[] {0, 1}), 1e-12);
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    assertEquals(HORIZON, CALCULATOR.getHorizon(), 0);
+    assertEquals(PERIODS, CALCULATOR.getPeriods(), 0);
+    assertEquals(QUANTILE, CALCULATOR.getQuantile(), 0);
+    ScenarioVaRCalculator other = new ScenarioVaRCalculator(HORIZON, PERIODS, QUANTILE);
+    assertEquals(other, CALCULATOR);
+    assertEquals(other.hashCode(), CALCULATOR.hashCode());
+    other = new ScenarioVaRCalculator(HORIZON + 1, PERIODS, QUANTILE);
+    assertFalse(other.equals(CALCULATOR));
+    other = new ScenarioVaRCalculator(HORIZON, PERIODS + 1, QUANTILE);
+    assertFalse(other.equals(CALCULATOR));
+    other = new ScenarioVaRCalculator(HORIZON, PERIODS, QUANTILE * 0.5);
+    assertFalse(other.equals(CALCULATOR));
+  }
+
+}
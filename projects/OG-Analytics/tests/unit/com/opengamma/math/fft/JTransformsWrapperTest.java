@@ -151,6 +151,38 @@ public class JTransformsWrapperTest {
     JTransformsWrapper.inverseTransform1DReal(new double[0], false);
   }
 
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNull7() {
+    JTransformsWrapper.transform1DComplexInPlace(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmpty7() {
+    JTransformsWrapper.transform1DComplexInPlace(new double[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testOddLengthInPlace() {
+    JTransformsWrapper.transform1DComplexInPlace(new double[5]);
+  }
+
+  @Test
+  public void testInPlace() {
+    final ComplexNumber[] z = new ComplexNumber[N];
+    final double[] a = new double[2 * N];
+    for (int i = 0; i < N; i++) {
+      z[i] = new ComplexNumber(A[i], A[N - 1 - i]);
+      a[2 * i] = A[i];
+      a[2 * i + 1] = A[N - 1 - i];
+    }
+    final ComplexNumber[] transform = JTransformsWrapper.transform1DComplex(z);
+    JTransformsWrapper.transform1DComplexInPlace(a);
+    for (int i = 0; i < N; i++) {
+      assertEquals(transform[i].getReal(), a[2 * i], 0);
+      assertEquals(transform[i].getImaginary(), a[2 * i + 1], 0);
+    }
+  }
+
   @Test
   public void testForwardBackwardFull() {
 
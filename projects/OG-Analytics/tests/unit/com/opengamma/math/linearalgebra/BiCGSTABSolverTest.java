@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.math.MathException;
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * 
+ */
+public class BiCGSTABSolverTest extends IterativeSolverTestCase {
+  private static final DoubleMatrix2D NON_SYMMETRIC = getMatrix(0.4);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullMatrix() {
+    new BiCGSTABSolver().evaluate((DoubleMatrix2D) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroDiagonal() {
+    new BiCGSTABSolver().evaluate(new DoubleMatrix2D(new double[][] {new double[] {0, 1}, new double[] {1, 0}}));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroDiagonalJacobi() {
+    new BiCGSTABSolver(1e-10, 100, PreconditionerType.JACOBI).evaluate(new DoubleMatrix2D(new double[][] {new double[] {0, 1}, new double[] {1, 0}}));
+  }
+
+  @Test(expectedExceptions = MathException.class)
+  public void testTooFewIterations() {
+    new BiCGSTABSolver(1e-10, 1, PreconditionerType.NONE).evaluate(NON_SYMMETRIC).solve(getVector());
+  }
+
+  @Test
+  public void testNoPreconditioner() {
+    assertSolves(new BiCGSTABSolver(1e-12, 1000, PreconditionerType.NONE), NON_SYMMETRIC);
+  }
+
+  @Test
+  public void testJacobi() {
+    assertSolves(new BiCGSTABSolver(1e-12, 1000, PreconditionerType.JACOBI), NON_SYMMETRIC);
+  }
+
+  @Test
+  public void testILU() {
+    assertSolves(new BiCGSTABSolver(1e-12, 1000, PreconditionerType.ILU), NON_SYMMETRIC);
+  }
+
+  @Test
+  public void testILUIsExactForTridiagonal() {
+    final double[][] data = new double[6][6];
+    for (int i = 0; i < 6; i++) {
+      data[i][i] = 3 + i;
+      if (i > 0) {
+        data[i][i - 1] = -1.5;
+      }
+      if (i < 5) {
+        data[i][i + 1] = 0.7;
+      }
+    }
+    final CompressedSparseRowFormatMatrix a = new CompressedSparseRowFormatMatrix(new DoubleMatrix2D(data));
+    final double[] b = new double[] {1, 2, 3, 4, 5, 6};
+    final double[] z = new double[6];
+    new ILUPreconditioner(a).apply(b, z);
+    final double[] expected = new LUDecompositionOG().evaluate(new DoubleMatrix2D(data)).solve(b);
+    for (int i = 0; i < 6; i++) {
+      assertEquals(expected[i], z[i], 1e-12);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.math.matrix.DoubleMatrixUtils;
+import com.opengamma.math.matrix.MatrixAlgebra;
+import com.opengamma.math.matrix.OGMatrixAlgebra;
+
+/**
+ * 
+ */
+public class CholeskyDecompositionOGTest {
+  private static final MatrixAlgebra ALGEBRA = new OGMatrixAlgebra();
+  private static final Decomposition<CholeskyDecompositionResult> CHOLESKY = new CholeskyDecompositionOG();
+  private static final Decomposition<CholeskyDecompositionResult> CHOLESKY_SMALL_BLOCKS = new CholeskyDecompositionOG(4);
+  private static final Decomposition<LUDecompositionResult> LU = new LUDecompositionCommons();
+  private static final DoubleMatrix2D A = new DoubleMatrix2D(new double[][] {new double[] {4, 12, -16}, new double[] {12, 37, -43}, new double[] {-16, -43, 98}});
+  private static final DoubleMatrix2D L = new DoubleMatrix2D(new double[][] {new double[] {2, 0, 0}, new double[] {6, 1, 0}, new double[] {-8, 5, 3}});
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final double EPS = 1e-9;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullObjectMatrix() {
+    CHOLESKY.evaluate((DoubleMatrix2D) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNonSquare() {
+    CHOLESKY.evaluate(new DoubleMatrix2D(new double[][] {new double[] {1, 2, 3}, new double[] {4, 5, 6}}));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNotPositiveDefinite() {
+    CHOLESKY.evaluate(new DoubleMatrix2D(new double[][] {new double[] {1, 2}, new double[] {2, 1}}));
+  }
+
+  @Test
+  public void testKnownResult() {
+    final CholeskyDecompositionResult result = CHOLESKY.evaluate(A);
+    checkEquals(L, result.getL());
+    checkEquals((DoubleMatrix2D) ALGEBRA.getTranspose(L), result.getLT());
+    assertEquals(36 * 36, result.getDeterminant(), EPS);
+  }
+
+  @Test
+  public void testRandomMatrix() {
+    final int n = 60;
+    final DoubleMatrix2D x = getRandomMatrix(n);
+    // X^T X + nI is symmetric positive-definite
+    final DoubleMatrix2D m = (DoubleMatrix2D) ALGEBRA.add(ALGEBRA.multiply(ALGEBRA.getTranspose(x), x), ALGEBRA.scale(DoubleMatrixUtils.getIdentityMatrix2D(n), n));
+    final LUDecompositionResult lu = LU.evaluate(m);
+    for (final Decomposition<CholeskyDecompositionResult> decomposition : new Decomposition[] {CHOLESKY, CHOLESKY_SMALL_BLOCKS}) {
+      final CholeskyDecompositionResult result = decomposition.evaluate(m);
+      checkEquals(m, (DoubleMatrix2D) ALGEBRA.multiply(result.getL(), result.getLT()));
+      assertEquals(1, result.getDeterminant() / lu.getDeterminant(), EPS);
+      final DoubleMatrix1D b = getRandomMatrix(n).getColumnVector(0);
+      checkEquals(lu.solve(b), result.solve(b));
+      final DoubleMatrix2D c = getRandomMatrix(n);
+      checkEquals(lu.solve(c), result.solve(c));
+    }
+  }
+
+  private static DoubleMatrix2D getRandomMatrix(final int n) {
+    final double[][] data = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        data[i][j] = 2 * RANDOM.nextDouble() - 1;
+      }
+    }
+    return new DoubleMatrix2D(data);
+  }
+
+  private void checkEquals(final DoubleMatrix1D x, final DoubleMatrix1D y) {
+    final int n = x.getNumberOfElements();
+    assertEquals(n, y.getNumberOfElements());
+    for (int i = 0; i < n; i++) {
+      assertEquals(x.getEntry(i), y.getEntry(i), EPS);
+    }
+  }
+
+  private void checkEquals(final DoubleMatrix2D x, final DoubleMatrix2D y) {
+    final int n = x.getNumberOfRows();
+    final int m = x.getNumberOfColumns();
+    assertEquals(n, y.getNumberOfRows());
+    assertEquals(m, y.getNumberOfColumns());
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < m; j++) {
+        assertEquals(x.getEntry(i, j), y.getEntry(i, j), EPS);
+      }
+    }
+  }
+}
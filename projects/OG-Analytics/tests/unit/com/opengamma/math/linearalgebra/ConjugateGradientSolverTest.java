@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.math.MathException;
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * 
+ */
+public class ConjugateGradientSolverTest extends IterativeSolverTestCase {
+  private static final DoubleMatrix2D SYMMETRIC = getMatrix(0);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeTolerance() {
+    new ConjugateGradientSolver(-1e-10, 100, PreconditionerType.JACOBI);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroIterations() {
+    new ConjugateGradientSolver(1e-10, 0, PreconditionerType.JACOBI);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullPreconditioner() {
+    new ConjugateGradientSolver(1e-10, 100, null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullMatrix() {
+    new ConjugateGradientSolver().evaluate((DoubleMatrix2D) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullSparseMatrix() {
+    new ConjugateGradientSolver().evaluate((CompressedSparseRowFormatMatrix) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNonSquare() {
+    new ConjugateGradientSolver().evaluate(new DoubleMatrix2D(new double[][] {new double[] {1, 2, 3}, new double[] {4, 5, 6}}));
+  }
+
+  @Test(expectedExceptions = MathException.class)
+  public void testTooFewIterations() {
+    new ConjugateGradientSolver(1e-10, 2, PreconditionerType.NONE).evaluate(SYMMETRIC).solve(getVector());
+  }
+
+  @Test
+  public void testNoPreconditioner() {
+    assertSolves(new ConjugateGradientSolver(1e-12, 1000, PreconditionerType.NONE), SYMMETRIC);
+  }
+
+  @Test
+  public void testJacobi() {
+    assertSolves(new ConjugateGradientSolver(1e-12, 1000, PreconditionerType.JACOBI), SYMMETRIC);
+  }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import com.opengamma.math.matrix.CompressedSparseRowFormatMatrix;
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+
+/**
+ * Test systems from the five-point discretisation of a convection-diffusion operator on a square grid.
+ */
+public abstract class IterativeSolverTestCase {
+  private static final Decomposition<LUDecompositionResult> LU = new LUDecompositionOG();
+  private static final int N = 12;
+  private static final double EPS = 1e-8;
+
+  protected static DoubleMatrix2D getMatrix(final double convection) {
+    final int size = N * N;
+    final double[][] data = new double[size][size];
+    for (int j = 0; j < N; j++) {
+      for (int i = 0; i < N; i++) {
+        final int l = j * N + i;
+        data[l][l] = 4.1;
+        if (i > 0) {
+          data[l][l - 1] = -1 - convection;
+        }
+        if (i < N - 1) {
+          data[l][l + 1] = -1 + convection;
+        }
+        if (j > 0) {
+          data[l][l - N] = -1;
+        }
+        if (j < N - 1) {
+          data[l][l + N] = -1;
+        }
+      }
+    }
+    return new DoubleMatrix2D(data);
+  }
+
+  protected static double[] getVector() {
+    final double[] b = new double[N * N];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = Math.sin(0.1 * i) + 1;
+    }
+    return b;
+  }
+
+  protected void assertSolves(final IterativeSolver solver, final DoubleMatrix2D a) {
+    final double[] b = getVector();
+    final double[] expected = LU.evaluate(a).solve(b);
+    final IterativeSolverResult dense = solver.evaluate(a);
+    final IterativeSolverResult sparse = solver.evaluate(new CompressedSparseRowFormatMatrix(a));
+    checkEquals(expected, dense.solve(b));
+    checkEquals(expected, sparse.solve(new DoubleMatrix1D(b)).getData());
+    checkEquals(expected, sparse.solve(b, expected));
+    checkEquals(expected, sparse.solve(b, getVector()));
+    final double[][] columns = new double[b.length][2];
+    for (int i = 0; i < b.length; i++) {
+      columns[i][0] = b[i];
+      columns[i][1] = 2 * b[i];
+    }
+    final DoubleMatrix2D x = sparse.solve(new DoubleMatrix2D(columns));
+    for (int i = 0; i < b.length; i++) {
+      assertEquals(expected[i], x.getEntry(i, 0), EPS);
+      assertEquals(2 * expected[i], x.getEntry(i, 1), EPS);
+    }
+  }
+
+  private static void checkEquals(final double[] expected, final double[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], actual[i], EPS);
+    }
+  }
+
+}
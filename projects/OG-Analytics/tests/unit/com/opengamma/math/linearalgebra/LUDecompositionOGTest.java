@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.matrix.DoubleMatrix1D;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.math.matrix.MatrixAlgebra;
+import com.opengamma.math.matrix.OGMatrixAlgebra;
+
+/**
+ * 
+ */
+public class LUDecompositionOGTest {
+  private static final MatrixAlgebra ALGEBRA = new OGMatrixAlgebra();
+  private static final Decomposition<LUDecompositionResult> LU = new LUDecompositionOG();
+  private static final Decomposition<LUDecompositionResult> LU_SMALL_BLOCKS = new LUDecompositionOG(3);
+  private static final Decomposition<LUDecompositionResult> LU_COMMONS = new LUDecompositionCommons();
+  private static final DoubleMatrix2D A = new DoubleMatrix2D(new double[][] {new double[] {1, 2, -1}, new double[] {4, 3, 1}, new double[] {2, 2, 3}});
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final double EPS = 1e-9;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullObjectMatrix() {
+    LU.evaluate((DoubleMatrix2D) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNonSquare() {
+    LU.evaluate(new DoubleMatrix2D(new double[][] {new double[] {1, 2, 3}, new double[] {4, 5, 6}}));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testSingular() {
+    LU.evaluate(new DoubleMatrix2D(new double[][] {new double[] {1, 2}, new double[] {2, 4}}));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadBlockSize() {
+    new LUDecompositionOG(0);
+  }
+
+  @Test
+  public void testRecoverOrginal() {
+    final LUDecompositionResult lu = LU.evaluate(A);
+    final DoubleMatrix2D a = (DoubleMatrix2D) ALGEBRA.multiply(lu.getL(), lu.getU());
+    checkEquals((DoubleMatrix2D) ALGEBRA.multiply(lu.getP(), A), a);
+  }
+
+  @Test
+  public void testAgainstCommons() {
+    final DoubleMatrix2D m = getRandomMatrix(50);
+    final LUDecompositionResult expected = LU_COMMONS.evaluate(m);
+    for (final Decomposition<LUDecompositionResult> decomposition : new Decomposition[] {LU, LU_SMALL_BLOCKS}) {
+      final LUDecompositionResult lu = decomposition.evaluate(m);
+      checkEquals(expected.getL(), lu.getL());
+      checkEquals(expected.getU(), lu.getU());
+      checkEquals(expected.getP(), lu.getP());
+      assertEquals(expected.getDeterminant(), lu.getDeterminant(), Math.abs(expected.getDeterminant()) * EPS);
+      final DoubleMatrix1D b = getRandomMatrix(50).getColumnVector(0);
+      final DoubleMatrix1D x = lu.solve(b);
+      checkEquals(expected.solve(b), x);
+      checkEquals(b, (DoubleMatrix1D) ALGEBRA.multiply(m, x));
+      final DoubleMatrix2D c = getRandomMatrix(50);
+      checkEquals(expected.solve(c), lu.solve(c));
+    }
+  }
+
+  private static DoubleMatrix2D getRandomMatrix(final int n) {
+    final double[][] data = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        data[i][j] = 2 * RANDOM.nextDouble() - 1;
+      }
+    }
+    return new DoubleMatrix2D(data);
+  }
+
+  private void checkEquals(final DoubleMatrix1D x, final DoubleMatrix1D y) {
+    final int n = x.getNumberOfElements();
+    assertEquals(n, y.getNumberOfElements());
+    for (int i = 0; i < n; i++) {
+      assertEquals(x.getEntry(i), y.getEntry(i), EPS);
+    }
+  }
+
+  private void checkEquals(final DoubleMatrix2D x, final DoubleMatrix2D y) {
+    final int n = x.getNumberOfRows();
+    final int m = x.getNumberOfColumns();
+    assertEquals(n, y.getNumberOfRows());
+    assertEquals(m, y.getNumberOfColumns());
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < m; j++) {
+        assertEquals(x.getEntry(i, j), y.getEntry(i, j), EPS);
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.linearalgebra;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.MathException;
+
+/**
+ *
+ */
+public class TridiagonalSolverWorkspaceTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final int N = 50;
+  private static final double[] LOWER = new double[N];
+  private static final double[] DIAGONAL = new double[N];
+  private static final double[] UPPER = new double[N];
+
+  static {
+    // diagonally dominant
+    for (int i = 0; i < N; i++) {
+      LOWER[i] = i == 0 ? 0 : RANDOM.nextDouble() - 0.5;
+      UPPER[i] = i == N - 1 ? 0 : RANDOM.nextDouble() - 0.5;
+      DIAGONAL[i] = 1 + RANDOM.nextDouble();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testSize() {
+    new TridiagonalSolverWorkspace(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullRHS() {
+    new TridiagonalSolverWorkspace(N).solve(LOWER, DIAGONAL, UPPER, null, new double[N]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testShortArray() {
+    new TridiagonalSolverWorkspace(N).solve(LOWER, DIAGONAL, UPPER, new double[N - 1], new double[N]);
+  }
+
+  @Test(expectedExceptions = MathException.class)
+  public void testZeroPivot() {
+    new TridiagonalSolverWorkspace(3).solve(new double[3], new double[] {0, 1, 1}, new double[3], new double[3], new double[3]);
+  }
+
+  @Test
+  public void test() {
+    final TridiagonalSolverWorkspace workspace = new TridiagonalSolverWorkspace(N);
+    assertEquals(N, workspace.getSize());
+    final double[] x = new double[N];
+    // the workspace is reused for each right-hand side
+    for (int j = 0; j < 5; j++) {
+      final double[] expected = new double[N];
+      for (int i = 0; i < N; i++) {
+        expected[i] = 10 * (RANDOM.nextDouble() - 0.5);
+      }
+      final double[] d = multiply(expected);
+      workspace.solve(LOWER, DIAGONAL, UPPER, d, x);
+      for (int i = 0; i < N; i++) {
+        assertEquals(expected[i], x[i], 1e-12);
+      }
+      // in place
+      workspace.solve(LOWER, DIAGONAL, UPPER, d, d);
+      for (int i = 0; i < N; i++) {
+        assertEquals(expected[i], d[i], 1e-12);
+      }
+    }
+  }
+
+  private static double[] multiply(final double[] x) {
+    final double[] res = new double[N];
+    for (int i = 0; i < N; i++) {
+      res[i] = DIAGONAL[i] * x[i];
+      if (i > 0) {
+        res[i] += LOWER[i] * x[i - 1];
+      }
+      if (i < N - 1) {
+        res[i] += UPPER[i] * x[i + 1];
+      }
+    }
+    return res;
+  }
+
+}
@@ -5,6 +5,7 @@
  */
 package com.opengamma.math.matrix;
 
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.util.Arrays;
@@ -31,4 +32,19 @@ public void testConstructorFromDoubleMatrix2D() {
   assertTrue(Arrays.equals(expectedRowPtr,M.getRowPtr()));
 }
 
+@Test
+public void testConstructorFromSparseCoordinateFormatMatrix() {
+  CompressedSparseRowFormatMatrix M = new CompressedSparseRowFormatMatrix(new SparseCoordinateFormatMatrix(data));
+  assertEquals(4, M.getNumberOfRows());
+  assertEquals(4, M.getNumberOfColumns());
+  assertTrue(Arrays.equals(expectedRowPtr,M.getRowPtr()));
+  assertTrue(Arrays.equals(expectedColIdx,M.getColumnIndex()));
+  assertTrue(Arrays.equals(expectedData,M.getNonZeroValues()));
+  for (int i = 0; i < data.length; i++) {
+    for (int j = 0; j < data[i].length; j++) {
+      assertEquals(data[i][j], M.getEntry(i, j), 0);
+    }
+  }
+}
+
 }
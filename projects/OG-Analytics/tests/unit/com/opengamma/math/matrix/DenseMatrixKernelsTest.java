@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.matrix;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ *
+ */
+public class DenseMatrixKernelsTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final int M = 150;
+  private static final int P = 97;
+  private static final int N = 131;
+  private static final double[][] A = getRandomMatrix(M, P);
+  private static final double[][] B = getRandomMatrix(P, N);
+  private static final double[] X = getRandomMatrix(1, P)[0];
+  private static final double[] Y = getRandomMatrix(1, M)[0];
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullData() {
+    DenseMatrixKernels.toRowMajor(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRaggedData() {
+    DenseMatrixKernels.toRowMajor(new double[][] {new double[] {1, 2}, new double[] {3}});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongDimensions() {
+    DenseMatrixKernels.dgemm(DenseMatrixKernels.toRowMajor(A), DenseMatrixKernels.toRowMajor(B), M, P + 1, N);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testVectorSizeMismatch() {
+    DenseMatrixKernels.dgemv(A, Y);
+  }
+
+  @Test
+  public void testRowMajorRoundTrip() {
+    final double[] rowMajor = DenseMatrixKernels.toRowMajor(A);
+    assertEquals(A[3][5], rowMajor[3 * P + 5], 0);
+    final double[][] data = DenseMatrixKernels.fromRowMajor(rowMajor, M, P);
+    for (int i = 0; i < M; i++) {
+      for (int j = 0; j < P; j++) {
+        assertEquals(A[i][j], data[i][j], 0);
+      }
+    }
+  }
+
+  @Test
+  public void testDGEMM() {
+    final double[][] expected = naiveMultiply(A, B);
+    final double[] a = DenseMatrixKernels.toRowMajor(A);
+    final double[] b = DenseMatrixKernels.toRowMajor(B);
+    checkEquals(expected, DenseMatrixKernels.dgemm(a, b, M, P, N));
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      checkEquals(expected, DenseMatrixKernels.dgemm(a, b, M, P, N, executor, 3));
+      checkEquals(expected, DenseMatrixKernels.dgemm(a, b, M, P, N, executor, 100));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDGEMV() {
+    final double[][] x = new double[P][1];
+    for (int i = 0; i < P; i++) {
+      x[i][0] = X[i];
+    }
+    final double[][] expected = naiveMultiply(A, x);
+    checkEquals(expected, DenseMatrixKernels.dgemv(A, X));
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      checkEquals(expected, DenseMatrixKernels.dgemv(A, X, executor, 2));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDGEVM() {
+    final double[][] expected = naiveMultiply(new double[][] {Y}, A);
+    checkEquals(expected, DenseMatrixKernels.dgevm(Y, A));
+  }
+
+  @Test
+  public void testParallelAlgebra() {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final MatrixAlgebra parallel = new OGMatrixAlgebra(executor, 4);
+      final int n = 160;
+      final DoubleMatrix2D a = new DoubleMatrix2D(getRandomMatrix(n, n));
+      final DoubleMatrix2D b = new DoubleMatrix2D(getRandomMatrix(n, n));
+      assertEquals(new DoubleMatrix2D(naiveMultiply(a.getData(), b.getData())), parallel.multiply(a, b));
+      assertEquals(MatrixAlgebraFactory.OG_ALGEBRA.multiply(a, b), parallel.multiply(a, b));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void checkEquals(final double[][] expected, final double[] actual) {
+    final int m = expected.length;
+    final int n = expected[0].length;
+    assertEquals(m * n, actual.length);
+    for (int i = 0; i < m; i++) {
+      for (int j = 0; j < n; j++) {
+        assertEquals(expected[i][j], actual[i * n + j], 0);
+      }
+    }
+  }
+
+  // the blocked kernels accumulate in the same order as this loop, so the results should be identical
+  private static double[][] naiveMultiply(final double[][] a, final double[][] b) {
+    final int m = a.length;
+    final int p = b.length;
+    final int n = b[0].length;
+    final double[][] c = new double[m][n];
+    for (int i = 0; i < m; i++) {
+      for (int j = 0; j < n; j++) {
+        double sum = 0;
+        for (int k = 0; k < p; k++) {
+          sum += a[i][k] * b[k][j];
+        }
+        c[i][j] = sum;
+      }
+    }
+    return c;
+  }
+
+  static double[][] getRandomMatrix(final int m, final int n) {
+    final double[][] res = new double[m][n];
+    for (int i = 0; i < m; i++) {
+      for (int j = 0; j < n; j++) {
+        res[i][j] = 2 * RANDOM.nextDouble() - 1;
+      }
+    }
+    return res;
+  }
+
+}
@@ -66,4 +66,29 @@ public class OGMatrixAlgebraTest {
     assertEquals(-3, d.getEntry(2), 1e-15);
   }
 
+  @Test
+  public void testMultiplyEitherSideOfBlockingThreshold() {
+    // 30^3 is below the threshold and 40^3 above it; both paths sum in the same order so agree exactly
+    for (int size : new int[] {30, 40 }) {
+      final double[][] a = new double[size][size];
+      final double[][] b = new double[size][size];
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          a[i][j] = Math.sin(i + 2 * j);
+          b[i][j] = Math.cos(2 * i - j);
+        }
+      }
+      final DoubleMatrix2D c = (DoubleMatrix2D) ALGEBRA.multiply(new DoubleMatrix2D(a), new DoubleMatrix2D(b));
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          double sum = 0;
+          for (int k = 0; k < size; k++) {
+            sum += a[i][k] * b[k][j];
+          }
+          assertEquals(sum, c.getEntry(i, j), 0);
+        }
+      }
+    }
+  }
+
 }
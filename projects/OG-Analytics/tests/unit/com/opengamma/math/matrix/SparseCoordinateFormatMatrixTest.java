@@ -61,13 +61,13 @@ public class SparseCoordinateFormatMatrixTest {
  @Test //test getColumnCoordinates
  public void testGetColumnCoordinates(){
    SparseCoordinateFormatMatrix tmp = new SparseCoordinateFormatMatrix(data);
-   Arrays.equals(tmp.getColumnCoordinates(),expectedY);
+   assertTrue(Arrays.equals(tmp.getColumnCoordinates(),expectedY));
  }
 
  @Test //test getRowCoordinates
  public void testGetRowCoordinates(){
    SparseCoordinateFormatMatrix tmp = new SparseCoordinateFormatMatrix(data);
-   Arrays.equals(tmp.getRowCoordinates(),expectedX);
+   assertTrue(Arrays.equals(tmp.getRowCoordinates(),expectedX));
  }
 
  @Test //test getNumberOfRows
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.matrix;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * 
+ */
+public class SparseMatrixKernelsTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final MatrixAlgebra ALGEBRA = new OGMatrixAlgebra();
+  private static final DoubleMatrix2D A = getRandomSparseMatrix(40, 30, 0.1);
+  private static final DoubleMatrix2D B = getRandomSparseMatrix(30, 25, 0.2);
+  private static final CompressedSparseRowFormatMatrix SPARSE_A = new CompressedSparseRowFormatMatrix(A);
+  private static final CompressedSparseRowFormatMatrix SPARSE_B = new CompressedSparseRowFormatMatrix(B);
+  private static final double EPS = 1e-13;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongRowPointerLength() {
+    new CompressedSparseRowFormatMatrix(2, 2, new int[] {0, 1}, new int[] {0}, new double[] {1});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testUnsortedColumns() {
+    new CompressedSparseRowFormatMatrix(1, 2, new int[] {0, 2}, new int[] {1, 0}, new double[] {1, 2});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testColumnOutOfRange() {
+    new CompressedSparseRowFormatMatrix(1, 2, new int[] {0, 1}, new int[] {2}, new double[] {1});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testVectorSizeMismatch() {
+    SparseMatrixKernels.dcsrmv(SPARSE_A, new double[31]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMatrixSizeMismatch() {
+    SparseMatrixKernels.dcsrmultcsr(SPARSE_B, SPARSE_A);
+  }
+
+  @Test
+  public void testEntries() {
+    assertEquals(40, SPARSE_A.getNumberOfRows());
+    assertEquals(30, SPARSE_A.getNumberOfColumns());
+    assertEquals(1200, SPARSE_A.getNumberOfElements());
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 30; j++) {
+        assertEquals(A.getEntry(i, j), SPARSE_A.getEntry(i, j), 0);
+      }
+    }
+    assertEquals(A, SPARSE_A.toFullMatrix());
+  }
+
+  @Test
+  public void testMatrixVector() {
+    final DoubleMatrix1D x = new DoubleMatrix1D(getRandomSparseMatrix(1, 30, 1).getData()[0]);
+    final DoubleMatrix1D expected = (DoubleMatrix1D) ALGEBRA.multiply(A, x);
+    final DoubleMatrix1D actual = (DoubleMatrix1D) ALGEBRA.multiply(SPARSE_A, x);
+    for (int i = 0; i < 40; i++) {
+      assertEquals(expected.getEntry(i), actual.getEntry(i), EPS);
+    }
+  }
+
+  @Test
+  public void testMatrixDenseMatrix() {
+    checkEquals(ALGEBRA.multiply(A, B), ALGEBRA.multiply(SPARSE_A, B));
+  }
+
+  @Test
+  public void testMatrixSparseMatrix() {
+    final CompressedSparseRowFormatMatrix product = (CompressedSparseRowFormatMatrix) ALGEBRA.multiply(SPARSE_A, SPARSE_B);
+    assertEquals(40, product.getNumberOfRows());
+    assertEquals(25, product.getNumberOfColumns());
+    checkEquals(ALGEBRA.multiply(A, B), product.toFullMatrix());
+  }
+
+  private void checkEquals(final Matrix<?> expected, final Matrix<?> actual) {
+    final double[][] e = ((DoubleMatrix2D) expected).getData();
+    final double[][] a = ((DoubleMatrix2D) actual).getData();
+    assertEquals(e.length, a.length);
+    for (int i = 0; i < e.length; i++) {
+      assertEquals(e[i].length, a[i].length);
+      for (int j = 0; j < e[i].length; j++) {
+        assertEquals(e[i][j], a[i][j], EPS);
+      }
+    }
+  }
+
+  private static DoubleMatrix2D getRandomSparseMatrix(final int m, final int n, final double density) {
+    final double[][] data = new double[m][n];
+    for (int i = 0; i < m; i++) {
+      for (int j = 0; j < n; j++) {
+        if (RANDOM.nextDouble() < density) {
+          data[i][j] = 2 * RANDOM.nextDouble() - 1;
+        }
+      }
+    }
+    return new DoubleMatrix2D(data);
+  }
+
+}
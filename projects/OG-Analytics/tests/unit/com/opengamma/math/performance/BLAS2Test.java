@@ -5,12 +5,18 @@
  */
 package com.opengamma.math.performance;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.opengamma.math.matrix.DenseMatrixKernels;
+
 /**
- * Just a quick thing to test the performance difference between contiguous and scattered memory using DGEMV()
+ * Just a quick thing to test the performance difference between contiguous and scattered memory using DGEMV(), and the throughput of the
+ * {@link DenseMatrixKernels} by matrix size.
  */
 public class BLAS2Test {
   boolean _debug = false;
@@ -163,4 +169,80 @@ public class BLAS2Test {
 
   }
 
+  /**
+   * Reports GFLOP/s for DGEMM and DGEMV by matrix size using the naive loops above, the blocked kernels and the blocked kernels split across all processors.
+   */
+  @Test
+  public void testKernelThroughput() {
+    final Logger log = LoggerFactory.getLogger(BLAS2Test.class);
+    final int nThreads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      for (final int n : new int[] {64, 128, 256, 512}) {
+        final double[][] a = new double[n][n];
+        final double[][] b = new double[n][n];
+        setMatrix(a, n, n);
+        setMatrix(b, n, n);
+        final double[] x = new double[n];
+        setVector(x, n);
+        final double[] rowMajorA = DenseMatrixKernels.toRowMajor(a);
+        final double[] rowMajorB = DenseMatrixKernels.toRowMajor(b);
+        final double gemmFlops = 2.0 * n * n * n;
+        final double gemvFlops = 2.0 * n * n;
+        final int gemmTrials = Math.max(1, (1 << 27) / (n * n * n));
+        final int gemvTrials = Math.max(1, (1 << 24) / (n * n));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < gemmTrials; i++) {
+          naiveDGEMM(a, b, n);
+        }
+        final double naiveGemm = gemmFlops * gemmTrials / (System.nanoTime() - start);
+        start = System.nanoTime();
+        for (int i = 0; i < gemmTrials; i++) {
+          DenseMatrixKernels.dgemm(rowMajorA, rowMajorB, n, n, n);
+        }
+        final double blockedGemm = gemmFlops * gemmTrials / (System.nanoTime() - start);
+        start = System.nanoTime();
+        for (int i = 0; i < gemmTrials; i++) {
+          DenseMatrixKernels.dgemm(rowMajorA, rowMajorB, n, n, n, executor, nThreads);
+        }
+        final double parallelGemm = gemmFlops * gemmTrials / (System.nanoTime() - start);
+        log.info("DGEMM n=" + n + ": naive " + naiveGemm + " GFLOP/s, blocked " + blockedGemm + " GFLOP/s, parallel (" + nThreads + " threads) " + parallelGemm + " GFLOP/s");
+
+        start = System.nanoTime();
+        for (int i = 0; i < gemvTrials; i++) {
+          dgemv(a, x, n, n);
+        }
+        final double naiveGemv = gemvFlops * gemvTrials / (System.nanoTime() - start);
+        start = System.nanoTime();
+        for (int i = 0; i < gemvTrials; i++) {
+          DenseMatrixKernels.dgemv(a, x);
+        }
+        final double kernelGemv = gemvFlops * gemvTrials / (System.nanoTime() - start);
+        start = System.nanoTime();
+        for (int i = 0; i < gemvTrials; i++) {
+          DenseMatrixKernels.dgemv(a, x, executor, nThreads);
+        }
+        final double parallelGemv = gemvFlops * gemvTrials / (System.nanoTime() - start);
+        log.info("DGEMV n=" + n + ": naive " + naiveGemv + " GFLOP/s, kernel " + kernelGemv + " GFLOP/s, parallel (" + nThreads + " threads) " + parallelGemv + " GFLOP/s");
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private double[][] naiveDGEMM(final double[][] a, final double[][] b, final int n) {
+    final double[][] c = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+          sum += a[i][k] * b[k][j];
+        }
+        c[i][j] = sum;
+      }
+    }
+    return c;
+  }
+
 }
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.statistics.descriptive.SampleCovarianceCalculator;
+import com.opengamma.math.statistics.descriptive.SampleVarianceCalculator;
+
+/**
+ *
+ */
+public class StreamingCovarianceCalculatorTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final int N = 1000;
+  private static final double[] X = new double[N];
+  private static final double[] Y = new double[N];
+
+  static {
+    for (int i = 0; i < N; i++) {
+      X[i] = RANDOM.nextDouble();
+      Y[i] = 0.5 * X[i] + RANDOM.nextDouble();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testDifferentLengths() {
+    new StreamingCovarianceCalculator().update(new double[2], new double[3]);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testOneDataPoint() {
+    final StreamingCovarianceCalculator calculator = new StreamingCovarianceCalculator();
+    calculator.update(1, 2);
+    calculator.getSampleCovariance();
+  }
+
+  @Test
+  public void test() {
+    final StreamingCovarianceCalculator calculator = new StreamingCovarianceCalculator();
+    calculator.update(X, Y);
+    assertEquals(N, calculator.getCount());
+    final double covariance = new SampleCovarianceCalculator().evaluate(X, Y);
+    assertEquals(covariance, calculator.getSampleCovariance(), 1e-14);
+    final SampleVarianceCalculator variance = new SampleVarianceCalculator();
+    assertEquals(covariance / Math.sqrt(variance.evaluate(X) * variance.evaluate(Y)), calculator.getCorrelation(), 1e-12);
+    calculator.reset();
+    calculator.update(1, 1);
+    calculator.update(2, 2);
+    assertEquals(1, calculator.getCorrelation(), 1e-15);
+  }
+
+}
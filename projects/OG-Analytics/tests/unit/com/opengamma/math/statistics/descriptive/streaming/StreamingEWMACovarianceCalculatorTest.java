@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.financial.covariance.ExponentialWeightedMovingAverageHistoricalVolatilityCalculator;
+import com.opengamma.financial.timeseries.returns.ContinuouslyCompoundedTimeSeriesReturnCalculator;
+import com.opengamma.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.CalculationMode;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+
+/**
+ *
+ */
+public class StreamingEWMACovarianceCalculatorTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final double LAMBDA = 0.94;
+  private static final int N = 3;
+  private static final int T = 250;
+  private static final double[][] RETURNS = new double[T][N];
+
+  static {
+    for (int t = 0; t < T; t++) {
+      for (int i = 0; i < N; i++) {
+        RETURNS[t][i] = 0.02 * (RANDOM.nextDouble() - 0.5) + (i > 0 ? 0.3 * RETURNS[t][0] : 0);
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadLambda() {
+    new StreamingEWMACovarianceCalculator(N, 1.1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongNumberOfReturns() {
+    new StreamingEWMACovarianceCalculator(N, LAMBDA).update(new double[N + 1]);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testNoData() {
+    new StreamingEWMACovarianceCalculator(N, LAMBDA).getCovariance(0, 0);
+  }
+
+  @Test
+  public void test() {
+    final StreamingEWMACovarianceCalculator calculator = new StreamingEWMACovarianceCalculator(N, LAMBDA);
+    final double[][] expected = new double[N][N];
+    for (int t = 0; t < T; t++) {
+      calculator.update(RETURNS[t]);
+      for (int i = 0; i < N; i++) {
+        for (int j = 0; j < N; j++) {
+          final double rr = RETURNS[t][i] * RETURNS[t][j];
+          expected[i][j] = t == 0 ? rr : LAMBDA * expected[i][j] + (1 - LAMBDA) * rr;
+        }
+      }
+    }
+    assertEquals(T, calculator.getCount());
+    final DoubleMatrix2D matrix = calculator.getCovarianceMatrix();
+    for (int i = 0; i < N; i++) {
+      for (int j = 0; j < N; j++) {
+        assertEquals(expected[i][j], calculator.getCovariance(i, j), 1e-15);
+        assertEquals(expected[i][j], matrix.getEntry(i, j), 1e-15);
+      }
+      assertEquals(Math.sqrt(expected[i][i]), calculator.getVolatility(i), 1e-15);
+    }
+    assertEquals(expected[0][1] / Math.sqrt(expected[0][0] * expected[1][1]), calculator.getCorrelation(1, 0), 1e-14);
+  }
+
+  @Test
+  public void testAgainstHistoricalVolatility() {
+    final int[] times = new int[T + 1];
+    final double[] prices = new double[T + 1];
+    prices[0] = 100;
+    for (int t = 0; t < T; t++) {
+      times[t + 1] = t + 1;
+      prices[t + 1] = prices[t] * Math.exp(RETURNS[t][0]);
+    }
+    final DoubleTimeSeries<?> priceTS = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, times, prices);
+    final ContinuouslyCompoundedTimeSeriesReturnCalculator returnCalculator = new ContinuouslyCompoundedTimeSeriesReturnCalculator(CalculationMode.STRICT);
+    final double volatility = new ExponentialWeightedMovingAverageHistoricalVolatilityCalculator(LAMBDA, returnCalculator).evaluate(priceTS);
+    final StreamingEWMACovarianceCalculator calculator = new StreamingEWMACovarianceCalculator(1, LAMBDA);
+    calculator.update(new DoubleTimeSeries<?>[] {returnCalculator.evaluate(priceTS)});
+    assertEquals(volatility, calculator.getVolatility(0), 1e-14);
+    calculator.reset();
+    assertEquals(0, calculator.getCount());
+  }
+
+}
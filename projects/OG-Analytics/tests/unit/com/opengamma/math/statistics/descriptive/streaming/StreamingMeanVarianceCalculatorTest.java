@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.statistics.descriptive.MeanCalculator;
+import com.opengamma.math.statistics.descriptive.PopulationVarianceCalculator;
+import com.opengamma.math.statistics.descriptive.SampleVarianceCalculator;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+
+/**
+ *
+ */
+public class StreamingMeanVarianceCalculatorTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final int N = 1000;
+  private static final double[] X = new double[N];
+  private static final double EPS = 1e-12;
+
+  static {
+    for (int i = 0; i < N; i++) {
+      X[i] = 1e4 + RANDOM.nextDouble();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testNoData() {
+    new StreamingMeanVarianceCalculator().getMean();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testOneDataPoint() {
+    final StreamingMeanVarianceCalculator calculator = new StreamingMeanVarianceCalculator();
+    calculator.update(1.);
+    calculator.getSampleVariance();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullArray() {
+    new StreamingMeanVarianceCalculator().update((double[]) null);
+  }
+
+  @Test
+  public void test() {
+    final StreamingMeanVarianceCalculator calculator = new StreamingMeanVarianceCalculator();
+    for (final double x : X) {
+      calculator.update(x);
+    }
+    assertEquals(N, calculator.getCount());
+    assertEquals(new MeanCalculator().evaluate(X), calculator.getMean(), EPS * 1e4);
+    assertEquals(new SampleVarianceCalculator().evaluate(X), calculator.getSampleVariance(), EPS);
+    assertEquals(new PopulationVarianceCalculator().evaluate(X), calculator.getPopulationVariance(), EPS);
+    assertEquals(Math.sqrt(calculator.getSampleVariance()), calculator.getSampleStandardDeviation(), 0);
+    final StreamingMeanVarianceCalculator array = new StreamingMeanVarianceCalculator();
+    array.update(X);
+    assertEquals(calculator.getMean(), array.getMean(), 0);
+    assertEquals(calculator.getSampleVariance(), array.getSampleVariance(), 0);
+    calculator.reset();
+    assertEquals(0, calculator.getCount());
+    calculator.update(2.);
+    assertEquals(2, calculator.getMean(), 0);
+  }
+
+  @Test
+  public void testTimeSeries() {
+    final int[] times = new int[N];
+    for (int i = 0; i < N; i++) {
+      times[i] = i;
+    }
+    final StreamingMeanVarianceCalculator calculator = new StreamingMeanVarianceCalculator();
+    calculator.update(new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, times, X));
+    final StreamingMeanVarianceCalculator array = new StreamingMeanVarianceCalculator();
+    array.update(X);
+    assertEquals(array.getMean(), calculator.getMean(), 0);
+    assertEquals(array.getSampleVariance(), calculator.getSampleVariance(), 0);
+  }
+
+  @Test
+  public void testMerge() {
+    final StreamingMeanVarianceCalculator all = new StreamingMeanVarianceCalculator();
+    all.update(X);
+    final StreamingMeanVarianceCalculator first = new StreamingMeanVarianceCalculator();
+    first.update(Arrays.copyOfRange(X, 0, 300));
+    final StreamingMeanVarianceCalculator second = new StreamingMeanVarianceCalculator();
+    second.update(Arrays.copyOfRange(X, 300, N));
+    first.merge(second);
+    first.merge(new StreamingMeanVarianceCalculator());
+    assertEquals(N, first.getCount());
+    assertEquals(all.getMean(), first.getMean(), EPS * 1e4);
+    assertEquals(all.getSampleVariance(), first.getSampleVariance(), EPS);
+    final StreamingMeanVarianceCalculator empty = new StreamingMeanVarianceCalculator();
+    empty.merge(all);
+    assertEquals(all.getMean(), empty.getMean(), 0);
+    assertEquals(all.getSampleVariance(), empty.getSampleVariance(), EPS);
+  }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.math.statistics.descriptive.streaming;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.math.statistics.descriptive.PercentileCalculator;
+
+/**
+ *
+ */
+public class StreamingQuantileEstimatorTest {
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testLowQuantile() {
+    new StreamingQuantileEstimator(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testHighQuantile() {
+    new StreamingQuantileEstimator(1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testNoData() {
+    new StreamingQuantileEstimator(0.5).getEstimate();
+  }
+
+  @Test
+  public void testSmallSample() {
+    final double[] x = new double[] {5, 1, 4, 2};
+    final StreamingQuantileEstimator estimator = new StreamingQuantileEstimator(0.3);
+    for (int i = 0; i < x.length; i++) {
+      estimator.update(x[i]);
+      if (i > 0) {
+        final double[] data = new double[i + 1];
+        System.arraycopy(x, 0, data, 0, i + 1);
+        assertEquals(new PercentileCalculator(0.3).evaluate(data), estimator.getEstimate(), 1e-15);
+      }
+    }
+    assertEquals(0.3, estimator.getQuantile(), 0);
+  }
+
+  @Test
+  public void testLargeSample() {
+    final int n = 20000;
+    final double[] x = new double[n];
+    for (final double quantile : new double[] {0.01, 0.05, 0.5, 0.95}) {
+      final StreamingQuantileEstimator estimator = new StreamingQuantileEstimator(quantile);
+      for (int i = 0; i < n; i++) {
+        // a skewed distribution
+        x[i] = Math.pow(RANDOM.nextDouble(), 3);
+      }
+      estimator.update(x);
+      assertEquals(n, estimator.getCount());
+      final double exact = new PercentileCalculator(quantile).evaluate(x);
+      assertEquals(exact, estimator.getEstimate(), 1e-2 * Math.max(exact, 0.1));
+    }
+  }
+
+}
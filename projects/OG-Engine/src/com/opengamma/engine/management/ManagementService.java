@@ -118,6 +118,7 @@ public final class ManagementService implements ViewProcessorEventListener {
     for (ViewProcessInternal viewProcess : _viewProcessor.getViewProcesses()) {
       com.opengamma.engine.management.ViewProcess viewProcessBean = new com.opengamma.engine.management.ViewProcess(viewProcess, _viewProcessor);
       registerViewProcess(viewProcessBean);
+      registerTickLatency(new TickLatency(viewProcess, _viewProcessor.getUniqueId()));
     }
   }
   
@@ -156,6 +157,15 @@ public final class ManagementService implements ViewProcessorEventListener {
     }
   }
   
+  private void registerTickLatency(TickLatency tickLatency) throws Exception {
+    try {
+      _mBeanServer.registerMBean(tickLatency, tickLatency.getObjectName());
+    } catch (InstanceAlreadyExistsException e) {
+      _mBeanServer.unregisterMBean(tickLatency.getObjectName());
+      _mBeanServer.registerMBean(tickLatency, tickLatency.getObjectName());
+    }
+  }
+  
   private void registerViewClient(com.opengamma.engine.management.ViewClient viewClient) throws Exception {
     try {
       _mBeanServer.registerMBean(viewClient, viewClient.getObjectName());
@@ -177,6 +187,12 @@ public final class ManagementService implements ViewProcessorEventListener {
     } catch (Exception e) {
       s_logger.warn("Error registering view for management for " + viewManagement.getObjectName() + " . Error was " + e.getMessage(), e);
     }
+    TickLatency tickLatency = new TickLatency(view, _viewProcessor.getUniqueId());
+    try {
+      registerTickLatency(tickLatency);
+    } catch (Exception e) {
+      s_logger.warn("Error registering TickLatency for management for " + tickLatency.getObjectName() + " . Error was " + e.getMessage(), e);
+    }
     ViewDefinition definition = view.getLatestViewDefinition();
     Set<String> configurationNames = Collections.emptySet();
     if (definition != null) {
@@ -204,6 +220,12 @@ public final class ManagementService implements ViewProcessorEventListener {
     } catch (Exception e) {
       s_logger.warn("Error unregistering view for management for " + objectName + " . Error was " + e.getMessage(), e);
     }
+    try {
+      objectName = TickLatency.createObjectName(_viewProcessor.getUniqueId(), viewProcessId);
+      _mBeanServer.unregisterMBean(objectName);
+    } catch (Exception e) {
+      s_logger.warn("Error unregistering TickLatency for management for " + objectName + " . Error was " + e.getMessage(), e);
+    }
     Set<String> configurationNames = _calcConfigByViewProcessId.get(viewProcessId);
     if (configurationNames != null) {
       //String viewDefinitionName = _viewProcessor.getViewProcess(viewProcessId).getDefinitionName();
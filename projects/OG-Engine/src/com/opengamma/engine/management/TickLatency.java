@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.management;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import net.sf.ehcache.CacheException;
+
+import com.opengamma.engine.view.ViewProcessInternal;
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics;
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics.Stage;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.monitor.LatencyHistogram;
+
+/**
+ * An MBean implementation for those attributes and operations we wish to expose on a {@link TickLatencyStatistics}.
+ */
+public class TickLatency implements TickLatencyMBean {
+
+  private static final double NANOS_PER_MILLISECOND = 1e6;
+
+  private final TickLatencyStatistics _statistics;
+
+  private final ObjectName _objectName;
+
+  /**
+   * Create a management TickLatency
+   *
+   * @param viewProcess  the view process
+   * @param viewProcessorId  the view processor identifier
+   */
+  public TickLatency(ViewProcessInternal viewProcess, UniqueId viewProcessorId) {
+    ArgumentChecker.notNull(viewProcess, "viewProcess");
+    ArgumentChecker.notNull(viewProcessorId, "viewProcessorId");
+    _statistics = viewProcess.getTickLatencyStatistics();
+    _objectName = createObjectName(viewProcessorId, viewProcess.getUniqueId());
+  }
+
+  /**
+   * Creates an object name using the scheme "com.opengamma:type=TickLatency,ViewProcessor=<viewProcessorId>,name=<viewProcessId>"
+   */
+  static ObjectName createObjectName(UniqueId viewProcessorId, UniqueId viewProcessId) {
+    ObjectName objectName;
+    try {
+      objectName = new ObjectName("com.opengamma:type=TickLatency,ViewProcessor=ViewProcessor " + viewProcessorId.getValue() + ",name=ViewProcess " + viewProcessId.getValue());
+    } catch (MalformedObjectNameException e) {
+      throw new CacheException(e);
+    }
+    return objectName;
+  }
+
+  @Override
+  public UniqueId getViewProcessId() {
+    return _statistics.getViewProcessId();
+  }
+
+  @Override
+  public long getTicksPublished() {
+    return getPublished().getCount();
+  }
+
+  @Override
+  public double getMeanLatency() {
+    return getPublished().getMean() / NANOS_PER_MILLISECOND;
+  }
+
+  @Override
+  public double getMedianLatency() {
+    return getPublished().getValueAtPercentile(50) / NANOS_PER_MILLISECOND;
+  }
+
+  @Override
+  public double get99thPercentileLatency() {
+    return getPublished().getValueAtPercentile(99) / NANOS_PER_MILLISECOND;
+  }
+
+  @Override
+  public double getMaxLatency() {
+    return getPublished().getMax() / NANOS_PER_MILLISECOND;
+  }
+
+  @Override
+  public double getLatency(String stage, double percentile) {
+    ArgumentChecker.notNull(stage, "stage");
+    return _statistics.getLatency(Stage.valueOf(stage.toUpperCase())).getValueAtPercentile(percentile) / NANOS_PER_MILLISECOND;
+  }
+
+  @Override
+  public String getReport() {
+    return _statistics.getReport();
+  }
+
+  @Override
+  public void reset() {
+    _statistics.reset();
+  }
+
+  private LatencyHistogram getPublished() {
+    return _statistics.getLatency(Stage.PUBLISHED);
+  }
+
+  /**
+   * Gets the objectName field.
+   *
+   * @return the object name for this MBean
+   */
+  public ObjectName getObjectName() {
+    return _objectName;
+  }
+
+}
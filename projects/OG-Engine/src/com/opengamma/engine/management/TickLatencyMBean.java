@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.management;
+
+import com.opengamma.id.UniqueId;
+
+/**
+ * A management bean for the latency from ticks arriving at the live data server to the results of a view process.
+ * Latencies are in milliseconds and, except where a stage is given, to the results being published.
+ */
+public interface TickLatencyMBean {
+
+  UniqueId getViewProcessId();
+
+  long getTicksPublished();
+
+  double getMeanLatency();
+
+  double getMedianLatency();
+
+  double get99thPercentileLatency();
+
+  double getMaxLatency();
+
+  /**
+   * Gets the latency to a stage at a percentile.
+   *
+   * @param stage  the name of the stage, one of RECEIVED, TRIGGERED, DISPATCHED, EXECUTED or PUBLISHED
+   * @param percentile  the percentile, from 0 to 100
+   * @return the latency in milliseconds
+   */
+  double getLatency(String stage, double percentile);
+
+  /**
+   * Gets a table of the latency percentiles of every stage.
+   *
+   * @return the report
+   */
+  String getReport();
+
+  void reset();
+
+}
@@ -5,37 +5,84 @@
  */
 package com.opengamma.engine.marketdata;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.engine.marketdata.availability.MarketDataAvailabilityProvider;
 import com.opengamma.engine.marketdata.permission.MarketDataPermissionProvider;
 import com.opengamma.engine.marketdata.spec.CombinedMarketDataSpecification;
 import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.util.ArgumentChecker;
 
 /**
  * Implementation of {@link MarketDataProvider} which sources its data from on of two {@link MarketDataProvider}s, 
  *  choosing based on the availability of data
+ * <p>
+ * The provider chosen for a requirement is kept while the requirement is subscribed to, so that it is always
+ * unsubscribed from the provider it was subscribed to. Otherwise the choice, or that neither provider has the
+ * requirement, is remembered while there are listeners, until either provider reports a change to it.
  */
 public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
 
+  /**
+   * Default number of requirements whose availability is checked, or which are subscribed to, in each task.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * Time after which a subscription still awaiting a response from its provider is forgotten.
+   */
+  private static final long PENDING_RESPONSE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  private static final Logger s_logger = LoggerFactory.getLogger(CombinedMarketDataProvider.class);
+
   private final MarketDataProvider _preffered;
   private final MarketDataProvider _fallBack;
   
   private final CombinedMarketDataListener _prefferedListener;
   private final CombinedMarketDataListener _fallBackListener;
   
-  private final Map<ValueRequirement, MarketDataProvider> _providerByRequirement = new HashMap<ValueRequirement, MarketDataProvider>();
+  private final ConcurrentMap<ValueRequirement, MarketDataProvider> _providerByRequirement = new ConcurrentHashMap<ValueRequirement, MarketDataProvider>();
+  /** The number of subscriptions to each requirement whose route is kept. Only accessed holding itself */
+  private final Map<ValueRequirement, Integer> _subscriptionCounts = new HashMap<ValueRequirement, Integer>();
+  private final Set<ValueRequirement> _unavailable = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+  /** Incremented whenever the availability of a requirement not subscribed to may have changed */
+  private final AtomicLong _availabilityChanges = new AtomicLong();
+  private final MarketDataAvailabilityProvider _availabilityProvider;
+
+  private final Map<MarketDataProvider, MarketDataSubscriptionStatistics> _statistics;
+  /** The subscriptions awaiting a response, oldest first, by requirement. Only accessed holding itself */
+  private final Map<ValueRequirement, List<PendingResponse>> _pendingResponses = new HashMap<ValueRequirement, List<PendingResponse>>();
+  private final AtomicLong _nextExpiry = new AtomicLong(System.nanoTime() + PENDING_RESPONSE_TIMEOUT_NANOS);
 
   private final Object _listenerLock = new Object();
-  private boolean _listenerAttached;
+  private volatile boolean _listenerAttached;
+
+  private volatile int _batchSize = DEFAULT_BATCH_SIZE;
+  private volatile Executor _executor;
   
   public CombinedMarketDataProvider(MarketDataProvider preffered, MarketDataProvider fallBack) {
     _preffered = preffered;
@@ -43,10 +90,65 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
     
     _prefferedListener = new CombinedMarketDataListener(this, _preffered);
     _fallBackListener = new CombinedMarketDataListener(this, _fallBack);
+
+    _availabilityProvider = new MarketDataAvailabilityProvider() {
+      @Override
+      public boolean isAvailable(ValueRequirement requirement) {
+        return getProvider(requirement) != null;
+      }
+    };
+    Map<MarketDataProvider, MarketDataSubscriptionStatistics> statistics = new HashMap<MarketDataProvider, MarketDataSubscriptionStatistics>();
+    statistics.put(_fallBack, new MarketDataSubscriptionStatistics("fallBack"));
+    statistics.put(_preffered, new MarketDataSubscriptionStatistics("preffered"));
+    _statistics = Collections.unmodifiableMap(statistics);
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * @return the number of requirements whose availability is checked, or which are subscribed to, in each task
+   */
+  public int getBatchSize() {
+    return _batchSize;
+  }
   
+  /**
+   * @param batchSize the number of requirements whose availability is checked, or which are subscribed
+   * to, in each task, positive
+   */
+  public void setBatchSize(int batchSize) {
+    ArgumentChecker.isTrue(batchSize > 0, "batchSize must be positive");
+    _batchSize = batchSize;
+  }
   
+  /**
+   * @return the executor checking availability and subscribing in batches concurrently, null if the
+   * batches are run in turn on the thread making the request
+   */
+  public Executor getExecutor() {
+    return _executor;
+  }
+
+  /**
+   * Sets an executor to check availability and subscribe in batches concurrently. Only set one if
+   * the underlying providers' availability providers and subscribe methods are thread-safe.
+   *
+   * @param executor the executor, null to run the batches in turn on the thread making the request
+   */
+  public void setExecutor(Executor executor) {
+    _executor = executor;
+  }
+
+  /**
+   * Gets the statistics on the subscriptions made to each underlying provider. Only subscriptions made
+   * while this provider has listeners are timed.
+   *
+   * @return the statistics of each underlying provider, not null
+   */
+  public Map<MarketDataProvider, MarketDataSubscriptionStatistics> getSubscriptionStatistics() {
+    return _statistics;
+  }
+
+  //-------------------------------------------------------------------------
   @Override
   public void addListener(MarketDataListener listener) {
     super.addListener(listener);
@@ -74,6 +176,15 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
         _preffered.removeListener(_prefferedListener);
         _fallBack.removeListener(_fallBackListener);
         _listenerAttached = false;
+        // Changes will no longer be seen
+        _availabilityChanges.incrementAndGet();
+        _unavailable.clear();
+        synchronized (_subscriptionCounts) {
+          _providerByRequirement.keySet().retainAll(_subscriptionCounts.keySet());
+        }
+        synchronized (_pendingResponses) {
+          _pendingResponses.clear();
+        }
       }
     }
   }
@@ -91,6 +202,7 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
     public void subscriptionSucceeded(ValueRequirement requirement) {
       MarketDataProvider provider = _providerByRequirement.get(requirement);
       if (provider == _provider) {
+        subscriptionResponded(requirement, _provider, true);
         _combinedMarketDataProvider.subscriptionSucceeded(requirement);
       }
     }
@@ -99,6 +211,7 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
     public void subscriptionFailed(ValueRequirement requirement, String msg) {
       MarketDataProvider provider = _providerByRequirement.get(requirement);
       if (provider == _provider) {
+        subscriptionResponded(requirement, _provider, false);
         _combinedMarketDataProvider.subscriptionFailed(requirement, msg);
       }
     }
@@ -113,9 +226,40 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
 
     @Override
     public void valuesChanged(Collection<ValueRequirement> requirements) {
-      Map<MarketDataProvider, Set<ValueRequirement>> grouped = groupByProvider(requirements);
-      Set<ValueRequirement> set = grouped.get(_provider);
-      if (set != null) {
+      Set<ValueRequirement> set = new HashSet<ValueRequirement>();
+      List<ValueRequirement> rerouted = null;
+      boolean changed = false;
+      synchronized (_subscriptionCounts) {
+        for (ValueRequirement requirement : requirements) {
+          MarketDataProvider provider = _providerByRequirement.get(requirement);
+          if (_subscriptionCounts.containsKey(requirement)) {
+            if (provider == _provider) {
+              set.add(requirement);
+            }
+            continue;
+          }
+          if (!changed) {
+            // Before forgetting anything, so that a check already under way is not remembered
+            _availabilityChanges.incrementAndGet();
+            changed = true;
+          }
+          _unavailable.remove(requirement);
+          if (provider != null && _providerByRequirement.remove(requirement, provider)) {
+            if (rerouted == null) {
+              rerouted = new ArrayList<ValueRequirement>();
+            }
+            rerouted.add(requirement);
+          }
+        }
+      }
+      if (rerouted != null) {
+        for (ValueRequirement requirement : rerouted) {
+          if (getProvider(requirement) == _provider) {
+            set.add(requirement);
+          }
+        }
+      }
+      if (!set.isEmpty()) {
         _combinedMarketDataProvider.valuesChanged(set);
       }
     }
@@ -123,23 +267,7 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
 
   @Override
   public MarketDataAvailabilityProvider getAvailabilityProvider() {
-    final MarketDataAvailabilityProvider prefProvider = _preffered.getAvailabilityProvider();
-    final MarketDataAvailabilityProvider fallbackProvider = _fallBack.getAvailabilityProvider();
-    return new MarketDataAvailabilityProvider() {
-
-      @Override
-      public boolean isAvailable(ValueRequirement requirement) {
-        if (prefProvider.isAvailable(requirement)) {
-          _providerByRequirement.put(requirement, _preffered);
-          return true;
-        } else if (fallbackProvider.isAvailable(requirement)) {
-          _providerByRequirement.put(requirement, _fallBack);
-          return true;
-        } else {
-          return false;
-        }
-      }
-    };
+    return _availabilityProvider;
   }
 
   @Override
@@ -166,10 +294,64 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
   }
 
   @Override
-  public void subscribe(UserPrincipal user, Set<ValueRequirement> valueRequirements) {
-    Map<MarketDataProvider, Set<ValueRequirement>> reqsByProvider = groupByProvider(valueRequirements);
+  public void subscribe(final UserPrincipal user, Set<ValueRequirement> valueRequirements) {
+    // Kept before routing so that a change cannot move a requirement to another provider once chosen
+    keepRoutes(valueRequirements);
+    Map<MarketDataProvider, Set<ValueRequirement>> reqsByProvider;
+    try {
+      reqsByProvider = groupByProvider(valueRequirements);
+    } catch (RuntimeException e) {
+      releaseRoutes(valueRequirements);
+      throw e;
+    }
+    boolean timed = _listenerAttached;
+    long startTime = System.nanoTime();
+    expirePendingResponses(startTime);
+    List<Set<ValueRequirement>> batches = new ArrayList<Set<ValueRequirement>>();
+    List<PendingResponse> batchResponses = new ArrayList<PendingResponse>();
+    List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>();
     for (Entry<MarketDataProvider, Set<ValueRequirement>> entry : reqsByProvider.entrySet()) {
-      entry.getKey().subscribe(user, entry.getValue());
+      final MarketDataProvider provider = entry.getKey();
+      // Providers may respond before returning from subscribe
+      PendingResponse pending = new PendingResponse(provider, startTime, timed);
+      if (timed) {
+        _statistics.get(provider).subscriptionsRequested(entry.getValue().size());
+      }
+      addPendingResponses(entry.getValue(), pending);
+      for (final Set<ValueRequirement> batch : partition(entry.getValue())) {
+        FutureTask<Object> task = new FutureTask<Object>(new Runnable() {
+          @Override
+          public void run() {
+            provider.subscribe(user, batch);
+          }
+        }, null);
+        batches.add(batch);
+        batchResponses.add(pending);
+        tasks.add(task);
+        execute(task);
+      }
+    }
+    for (int i = 0; i < tasks.size(); i++) {
+      PendingResponse pending = batchResponses.get(i);
+      try {
+        getUninterruptibly(tasks.get(i));
+        if (!pending.isTimed()) {
+          // Only kept to tell which requirements have been responded to should the batch fail
+          for (ValueRequirement requirement : batches.get(i)) {
+            removePendingResponse(requirement, pending);
+          }
+        }
+      } catch (ExecutionException e) {
+        s_logger.error("Unable to subscribe to " + batches.get(i).size() + " requirements", e.getCause());
+        String msg = "Unable to subscribe: " + e.getCause().getMessage();
+        for (ValueRequirement requirement : batches.get(i)) {
+          // Those the provider has already responded to are not reported again
+          if (removePendingResponse(requirement, pending)) {
+            pending.responded(false);
+            subscriptionFailed(requirement, msg);
+          }
+        }
+      }
     }
   }
 
@@ -183,7 +365,11 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
     Map<MarketDataProvider, Set<ValueRequirement>> reqsByProvider = groupByProvider(valueRequirements);
     for (Entry<MarketDataProvider, Set<ValueRequirement>> entry : reqsByProvider.entrySet()) {
       entry.getKey().unsubscribe(user, entry.getValue());
+      for (ValueRequirement requirement : entry.getValue()) {
+        removePendingResponse(requirement, entry.getKey());
+      }
     }
+    releaseRoutes(valueRequirements);
   }
   
   @Override
@@ -210,6 +396,7 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
   }
 
   public Map<MarketDataProvider, Set<ValueRequirement>> groupByProvider(Collection<ValueRequirement> requirements) {
+    chooseProviders(requirements);
     Map<MarketDataProvider, Set<ValueRequirement>> reqsByProvider = new HashMap<MarketDataProvider, Set<ValueRequirement>>();
     for (ValueRequirement valueRequirement : requirements) {
       MarketDataProvider provider = getProvider(valueRequirement);
@@ -228,10 +415,275 @@ public class CombinedMarketDataProvider extends AbstractMarketDataProvider {
 
   public MarketDataProvider getProvider(ValueRequirement valueRequirement) {
     MarketDataProvider provider = _providerByRequirement.get(valueRequirement);
-    if (provider == null) {
-      getAvailabilityProvider().isAvailable(valueRequirement);
-      provider = _providerByRequirement.get(valueRequirement);
+    if (provider != null || _unavailable.contains(valueRequirement)) {
+      return provider;
+    }
+    long changes = _availabilityChanges.get();
+    boolean listening = _listenerAttached;
+    if (_preffered.getAvailabilityProvider().isAvailable(valueRequirement)) {
+      provider = _preffered;
+    } else if (_fallBack.getAvailabilityProvider().isAvailable(valueRequirement)) {
+      provider = _fallBack;
+    } else {
+      if (listening) {
+        _unavailable.add(valueRequirement);
+        if (_availabilityChanges.get() != changes) {
+          // May have become available while checking
+          _unavailable.remove(valueRequirement);
+        }
+      }
+      return null;
+    }
+    if (!listening && !isSubscribed(valueRequirement)) {
+      // Changes would not be seen, so checked again next time
+      return provider;
+    }
+    MarketDataProvider existing = _providerByRequirement.putIfAbsent(valueRequirement, provider);
+    if (existing != null) {
+      return existing;
+    }
+    if (_availabilityChanges.get() != changes) {
+      // May have changed while checking
+      forgetRoute(valueRequirement, provider);
     }
     return provider;
   }
+
+  //-------------------------------------------------------------------------
+  private void keepRoutes(Collection<ValueRequirement> requirements) {
+    synchronized (_subscriptionCounts) {
+      for (ValueRequirement requirement : requirements) {
+        Integer count = _subscriptionCounts.get(requirement);
+        _subscriptionCounts.put(requirement, (count != null) ? count + 1 : 1);
+      }
+    }
+  }
+
+  private void releaseRoutes(Collection<ValueRequirement> requirements) {
+    boolean listening = _listenerAttached;
+    synchronized (_subscriptionCounts) {
+      for (ValueRequirement requirement : requirements) {
+        Integer count = _subscriptionCounts.get(requirement);
+        if (count == null) {
+          continue;
+        }
+        if (count > 1) {
+          _subscriptionCounts.put(requirement, count - 1);
+        } else {
+          _subscriptionCounts.remove(requirement);
+          if (!listening) {
+            _providerByRequirement.remove(requirement);
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isSubscribed(ValueRequirement requirement) {
+    synchronized (_subscriptionCounts) {
+      return _subscriptionCounts.containsKey(requirement);
+    }
+  }
+
+  private void forgetRoute(ValueRequirement requirement, MarketDataProvider provider) {
+    synchronized (_subscriptionCounts) {
+      if (!_subscriptionCounts.containsKey(requirement)) {
+        _providerByRequirement.remove(requirement, provider);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Chooses the providers of any requirements not already routed, in batches on the executor if
+   * there is one.
+   */
+  private void chooseProviders(Collection<ValueRequirement> requirements) {
+    if (getExecutor() == null || requirements.size() <= getBatchSize()) {
+      return;
+    }
+    List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>();
+    for (final Set<ValueRequirement> batch : partition(requirements)) {
+      FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+        @Override
+        public Object call() {
+          for (ValueRequirement requirement : batch) {
+            getProvider(requirement);
+          }
+          return null;
+        }
+      });
+      tasks.add(task);
+      execute(task);
+    }
+    for (FutureTask<Object> task : tasks) {
+      try {
+        getUninterruptibly(task);
+      } catch (ExecutionException e) {
+        throw new OpenGammaRuntimeException("Unable to check availability of market data", e.getCause());
+      }
+    }
+  }
+
+  private List<Set<ValueRequirement>> partition(Collection<ValueRequirement> requirements) {
+    int batchSize = getBatchSize();
+    if (requirements.size() <= batchSize) {
+      return Collections.singletonList(requirements instanceof Set ? (Set<ValueRequirement>) requirements : new HashSet<ValueRequirement>(requirements));
+    }
+    List<Set<ValueRequirement>> batches = new ArrayList<Set<ValueRequirement>>();
+    Set<ValueRequirement> batch = null;
+    for (ValueRequirement requirement : requirements) {
+      if (batch == null || batch.size() == batchSize) {
+        batch = new HashSet<ValueRequirement>();
+        batches.add(batch);
+      }
+      batch.add(requirement);
+    }
+    return batches;
+  }
+
+  private void execute(FutureTask<?> task) {
+    Executor executor = getExecutor();
+    if (executor == null) {
+      task.run();
+    } else {
+      executor.execute(task);
+    }
+  }
+
+  private void subscriptionResponded(ValueRequirement requirement, MarketDataProvider provider, boolean success) {
+    PendingResponse pending = removePendingResponse(requirement, provider);
+    if (pending != null) {
+      pending.responded(success);
+    }
+  }
+
+  private void addPendingResponses(Collection<ValueRequirement> requirements, PendingResponse pending) {
+    synchronized (_pendingResponses) {
+      for (ValueRequirement requirement : requirements) {
+        List<PendingResponse> pendings = _pendingResponses.get(requirement);
+        if (pendings == null) {
+          pendings = new ArrayList<PendingResponse>(1);
+          _pendingResponses.put(requirement, pendings);
+        }
+        pendings.add(pending);
+      }
+    }
+  }
+
+  private boolean removePendingResponse(ValueRequirement requirement, PendingResponse pending) {
+    synchronized (_pendingResponses) {
+      List<PendingResponse> pendings = _pendingResponses.get(requirement);
+      if (pendings == null || !pendings.remove(pending)) {
+        return false;
+      }
+      if (pendings.isEmpty()) {
+        _pendingResponses.remove(requirement);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Removes the oldest subscription to a requirement awaiting a response from a provider.
+   *
+   * @return the subscription, null if none is awaiting a response
+   */
+  private PendingResponse removePendingResponse(ValueRequirement requirement, MarketDataProvider provider) {
+    synchronized (_pendingResponses) {
+      List<PendingResponse> pendings = _pendingResponses.get(requirement);
+      if (pendings == null) {
+        return null;
+      }
+      for (Iterator<PendingResponse> itr = pendings.iterator(); itr.hasNext(); ) {
+        PendingResponse pending = itr.next();
+        if (pending.getProvider() == provider) {
+          itr.remove();
+          if (pendings.isEmpty()) {
+            _pendingResponses.remove(requirement);
+          }
+          return pending;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Forgets subscriptions whose providers have not responded within the timeout, at most once a timeout
+   * period. They remain pending in the statistics.
+   */
+  private void expirePendingResponses(long now) {
+    long nextExpiry = _nextExpiry.get();
+    if (now - nextExpiry < 0 || !_nextExpiry.compareAndSet(nextExpiry, now + PENDING_RESPONSE_TIMEOUT_NANOS)) {
+      return;
+    }
+    synchronized (_pendingResponses) {
+      Iterator<List<PendingResponse>> itr = _pendingResponses.values().iterator();
+      while (itr.hasNext()) {
+        List<PendingResponse> pendings = itr.next();
+        // Oldest first
+        while (!pendings.isEmpty() && now - pendings.get(0).getStartTime() > PENDING_RESPONSE_TIMEOUT_NANOS) {
+          pendings.remove(0);
+        }
+        if (pendings.isEmpty()) {
+          itr.remove();
+        }
+      }
+    }
+  }
+
+  private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          // Responses to the batches must be reported whatever happens
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * The subscriptions to one provider made by a call to subscribe, awaiting their responses.
+   */
+  private final class PendingResponse {
+
+    private final MarketDataProvider _provider;
+    private final long _startTime;
+    private final boolean _timed;
+
+    private PendingResponse(MarketDataProvider provider, long startTime, boolean timed) {
+      _provider = provider;
+      _startTime = startTime;
+      _timed = timed;
+    }
+
+    public MarketDataProvider getProvider() {
+      return _provider;
+    }
+
+    public long getStartTime() {
+      return _startTime;
+    }
+
+    public boolean isTimed() {
+      return _timed;
+    }
+
+    public void responded(boolean success) {
+      if (_timed) {
+        _statistics.get(_provider).subscriptionResponded(System.nanoTime() - _startTime, success);
+      }
+    }
+
+  }
+
 }
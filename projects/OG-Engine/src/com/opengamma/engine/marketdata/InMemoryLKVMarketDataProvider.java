@@ -6,10 +6,7 @@
 package com.opengamma.engine.marketdata;
 
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +32,7 @@ public class InMemoryLKVMarketDataProvider extends AbstractMarketDataProvider im
   
   private static final Logger s_logger = LoggerFactory.getLogger(InMemoryLKVMarketDataProvider.class);
   
-  private final Map<ValueRequirement, Object> _lastKnownValues = new ConcurrentHashMap<ValueRequirement, Object>();
+  private final VersionedLKVStore<ValueRequirement> _lastKnownValues = new VersionedLKVStore<ValueRequirement>();
   private final SecuritySource _securitySource;
   private final MarketDataPermissionProvider _permissionProvider;
 
@@ -141,8 +138,8 @@ public class InMemoryLKVMarketDataProvider extends AbstractMarketDataProvider im
   }
   
   //-------------------------------------------------------------------------
-  /*package*/ Map<ValueRequirement, Object> doSnapshot() {
-    return new HashMap<ValueRequirement, Object>(_lastKnownValues);
+  /*package*/ VersionedLKVStore.Snapshot<ValueRequirement> doSnapshot() {
+    return _lastKnownValues.snapshot();
   }
   
   private ValueRequirement resolveRequirement(ExternalId identifier, String valueName) {
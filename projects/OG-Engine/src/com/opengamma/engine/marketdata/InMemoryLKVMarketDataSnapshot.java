@@ -6,7 +6,6 @@
 package com.opengamma.engine.marketdata;
 
 import java.util.Collections;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -26,7 +25,7 @@ public class InMemoryLKVMarketDataSnapshot implements MarketDataSnapshot {
   
   private final InMemoryLKVMarketDataProvider _provider;
   private Instant _snapshotTime;
-  private Map<ValueRequirement, Object> _snapshot;
+  private VersionedLKVStore.Snapshot<ValueRequirement> _snapshot;
   
   public InMemoryLKVMarketDataSnapshot(InMemoryLKVMarketDataProvider provider) {
     _provider = provider;
@@ -44,6 +43,10 @@ public class InMemoryLKVMarketDataSnapshot implements MarketDataSnapshot {
 
   @Override
   public void init(Set<ValueRequirement> valuesRequired, long timeout, TimeUnit unit) {
+    if (_snapshot != null) {
+      // Re-initialised, so the versions only the previous snapshot could see can go
+      _snapshot.release();
+    }
     _snapshot = getProvider().doSnapshot();
     _snapshotTime = Instant.now();
     s_logger.debug("Snapshotted at {}", _snapshotTime);
@@ -65,7 +68,7 @@ public class InMemoryLKVMarketDataSnapshot implements MarketDataSnapshot {
   }
   
   //-------------------------------------------------------------------------
-  private Map<ValueRequirement, Object> getSnapshot() {
+  private VersionedLKVStore.Snapshot<ValueRequirement> getSnapshot() {
     if (_snapshot == null) {
       throw new IllegalStateException("Snapshot has not been initialised");
     }
@@ -28,6 +28,7 @@ import com.opengamma.livedata.LiveDataClient;
 import com.opengamma.livedata.LiveDataListener;
 import com.opengamma.livedata.LiveDataSpecification;
 import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
 import com.opengamma.livedata.UserPrincipal;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
@@ -225,7 +226,13 @@ public class LiveMarketDataProvider extends AbstractMarketDataProvider implement
       getUnderlyingProvider().addValue(valueRequirement, value);
     }
     
-    super.valuesChanged(valueRequirements);
+    final long originTime = (valueUpdate instanceof LiveDataValueUpdateBean) ? ((LiveDataValueUpdateBean) valueUpdate).getOriginTime() : 0;
+    final long previousOriginTime = TickOrigin.set(originTime);
+    try {
+      super.valuesChanged(valueRequirements);
+    } finally {
+      TickOrigin.set(previousOriginTime);
+    }
   }
 
 }
@@ -8,9 +8,9 @@ package com.opengamma.engine.marketdata;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import javax.time.Duration;
@@ -34,7 +34,7 @@ public class MarketDataProviderWithOverride implements MarketDataProvider {
   private final MarketDataProvider _underlying;
   private final MarketDataProvider _override;
   private final Set<MarketDataListener> _listeners = new CopyOnWriteArraySet<MarketDataListener>();
-  private final Map<ValueRequirement, PendingCombinedMarketDataSubscription> _pendingSubscriptions = new ConcurrentHashMap<ValueRequirement, PendingCombinedMarketDataSubscription>();
+  private final ConcurrentMap<ValueRequirement, PendingCombinedMarketDataSubscription> _pendingSubscriptions = new ConcurrentHashMap<ValueRequirement, PendingCombinedMarketDataSubscription>();
   
   private final Object _listenerLock = new Object();
   private boolean _listenerAttached;
@@ -78,6 +78,9 @@ public class MarketDataProviderWithOverride implements MarketDataProvider {
     }
     
     private void processState(PendingCombinedSubscriptionState state, PendingCombinedMarketDataSubscription pendingSubscription, ValueRequirement requirement) {
+      if (state != PendingCombinedSubscriptionState.AWAITING_RESPONSES) {
+        _pendingSubscriptions.remove(requirement, pendingSubscription);
+      }
       switch (state) {
         case FAILURE:
           String msg = StringUtils.join(pendingSubscription.getFailureMessages(), ", ");
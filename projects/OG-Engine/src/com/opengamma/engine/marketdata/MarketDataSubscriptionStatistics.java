@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds statistics about the subscriptions made to a {@link MarketDataProvider}, and how long
+ * it took to respond to them.
+ */
+public class MarketDataSubscriptionStatistics {
+
+  private final String _providerName;
+  private final AtomicLong _requested = new AtomicLong();
+  private final AtomicLong _succeeded = new AtomicLong();
+  private final AtomicLong _failed = new AtomicLong();
+  private final AtomicLong _totalLatency = new AtomicLong();
+  private final AtomicLong _maxLatency = new AtomicLong();
+
+  public MarketDataSubscriptionStatistics(final String providerName) {
+    _providerName = providerName;
+  }
+
+  public String getProviderName() {
+    return _providerName;
+  }
+
+  public long getRequested() {
+    return _requested.get();
+  }
+
+  public long getSucceeded() {
+    return _succeeded.get();
+  }
+
+  public long getFailed() {
+    return _failed.get();
+  }
+
+  /**
+   * @return the number of subscriptions requested and not yet responded to
+   */
+  public long getPending() {
+    return getRequested() - getSucceeded() - getFailed();
+  }
+
+  /**
+   * @return the average time taken to respond to a subscription, in seconds
+   */
+  public double getAverageLatency() {
+    final long responses = getSucceeded() + getFailed();
+    if (responses > 0) {
+      return (double) _totalLatency.get() / (double) responses / 1e9;
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * @return the longest time taken to respond to a subscription, in seconds
+   */
+  public double getMaxLatency() {
+    return (double) _maxLatency.get() / 1e9;
+  }
+
+  //-------------------------------------------------------------------------
+  /*package*/ void subscriptionsRequested(final int count) {
+    _requested.addAndGet(count);
+  }
+
+  /*package*/ void subscriptionResponded(final long latencyNanos, final boolean success) {
+    if (success) {
+      _succeeded.incrementAndGet();
+    } else {
+      _failed.incrementAndGet();
+    }
+    _totalLatency.addAndGet(latencyNanos);
+    long max = _maxLatency.get();
+    while (latencyNanos > max && !_maxLatency.compareAndSet(max, latencyNanos)) {
+      max = _maxLatency.get();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MarketDataSubscriptionStatistics[" + _providerName + ", requested=" + getRequested() + ", succeeded=" + getSucceeded()
+        + ", failed=" + getFailed() + ", averageLatency=" + getAverageLatency() + "s, maxLatency=" + getMaxLatency() + "s]";
+  }
+
+}
@@ -5,18 +5,25 @@
  */
 package com.opengamma.engine.marketdata;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Holds the state relating to pending subscriptions over multiple live data providers.
+ * <p>
+ * Responses may arrive concurrently and are tracked without locking. Exactly one response, the last
+ * of the providers pending, completes the subscription; further responses from a provider that has
+ * already responded are ignored.
  */
 /*package*/ class PendingCombinedMarketDataSubscription {
   
   private final Set<MarketDataProvider> _pendingProviders;
-  private final Collection<String> _failureMessages = new ArrayList<String>();
+  private final AtomicInteger _pendingCount;
+  private final Collection<String> _failureMessages = new ConcurrentLinkedQueue<String>();
   private volatile boolean _overallFailure;
   
   /**
@@ -40,43 +47,41 @@ import java.util.Set;
   }
   
   public PendingCombinedMarketDataSubscription(Collection<MarketDataProvider> pendingProviders) {
-    _pendingProviders = new HashSet<MarketDataProvider>(pendingProviders);
+    _pendingProviders = Collections.newSetFromMap(new ConcurrentHashMap<MarketDataProvider, Boolean>());
+    _pendingProviders.addAll(pendingProviders);
+    _pendingCount = new AtomicInteger(_pendingProviders.size());
   }
   
   public PendingCombinedSubscriptionState subscriptionSucceeded(MarketDataProvider provider) {
-    synchronized (_pendingProviders) {
-      return removePendingProvider(provider, true);
+    if (!_pendingProviders.remove(provider)) {
+      return PendingCombinedSubscriptionState.AWAITING_RESPONSES;
     }
+    return removePendingProvider(true);
   }
   
   public PendingCombinedSubscriptionState subscriptionFailed(MarketDataProvider provider, String msg) {
-    synchronized (_pendingProviders) {
-      _failureMessages.add(msg);
-      return removePendingProvider(provider, false);
+    if (!_pendingProviders.remove(provider)) {
+      return PendingCombinedSubscriptionState.AWAITING_RESPONSES;
     }
+    _failureMessages.add(msg);
+    return removePendingProvider(false);
   }
   
   public Collection<String> getFailureMessages() {
     return _failureMessages;
   }
   
-  private PendingCombinedSubscriptionState removePendingProvider(MarketDataProvider provider, boolean success) {
-    _pendingProviders.remove(provider);
-    boolean finished = _pendingProviders.size() == 0;
-    return incrementState(success, finished);
-  }
-  
-  private PendingCombinedSubscriptionState incrementState(boolean success, boolean complete) {
+  private PendingCombinedSubscriptionState removePendingProvider(boolean success) {
     if (!success) {
+      // Before counting the response, so seen by whichever completes the subscription
       _overallFailure = true;
     }
-    if (complete) {
-      return _overallFailure
-          ? PendingCombinedSubscriptionState.FAILURE
-          : PendingCombinedSubscriptionState.SUCCESS;
-    } else {
+    if (_pendingCount.decrementAndGet() > 0) {
       return PendingCombinedSubscriptionState.AWAITING_RESPONSES;
     }
+    return _overallFailure
+        ? PendingCombinedSubscriptionState.FAILURE
+        : PendingCombinedSubscriptionState.SUCCESS;
   }
   
 }
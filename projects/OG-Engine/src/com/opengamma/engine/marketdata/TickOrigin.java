@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+/**
+ * Holds the origin time of the tick that a {@link MarketDataListener#valuesChanged} notification
+ * is being delivered for, so that the latency from the tick arriving at the live data server to the
+ * results calculated from it can be measured.
+ * <p>
+ * Notifications are delivered synchronously, through any providers which wrap or combine others,
+ * so the time is held for the calling thread rather than widening the listener interface. A provider
+ * which knows the origin of the values it is notifying about sets it around the notification; a
+ * listener may read it during the notification.
+ */
+public final class TickOrigin {
+
+  private static final ThreadLocal<long[]> s_originTime = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
+  /**
+   * Restricted constructor.
+   */
+  private TickOrigin() {
+  }
+
+  /**
+   * Gets the origin time of the tick being notified about by the calling thread.
+   *
+   * @return nanoseconds since the UTC epoch, as given by {@link com.opengamma.util.monitor.LatencyClock},
+   *  or 0 if not known
+   */
+  public static long get() {
+    return s_originTime.get()[0];
+  }
+
+  /**
+   * Sets the origin time of the tick about to be notified about by the calling thread.
+   *
+   * @param originTime  nanoseconds since the UTC epoch, or 0 if not known
+   * @return the previous origin time, to restore when the notification is complete
+   */
+  public static long set(final long originTime) {
+    final long[] holder = s_originTime.get();
+    final long previous = holder[0];
+    holder[0] = originTime;
+    return previous;
+  }
+
+}
@@ -0,0 +1,406 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A last known value store from which snapshots can be taken at constant cost.
+ * <p>
+ * Each key is given an integer index when first written, which places it in a slot of one of
+ * a number of shards. A slot holds the versions of its value, newest first. Writers to a shard
+ * are serialized, and stamp their values with the current version; taking a snapshot moves the
+ * version on, so a snapshot is just the last version it can see. Reading from a snapshot is
+ * lock-free and finds the newest value no later than that version, so every snapshot shares the
+ * same storage and sees the values as they were when it was taken.
+ * <p>
+ * Versions are only kept while a snapshot might still read them. A snapshot is released
+ * explicitly with {@link Snapshot#release()}, or once it is no longer referenced. Values that
+ * tick while a snapshot is held accumulate a version per snapshot taken since.
+ *
+ * @param <K> the type of the keys
+ */
+public class VersionedLKVStore<K> {
+
+  /**
+   * Default number of shards.
+   */
+  public static final int DEFAULT_NUM_SHARDS = 16;
+
+  private static final int INITIAL_SHARD_CAPACITY = 64;
+
+  /** Index of each key written, never removed. Added to holding the lock on itself */
+  private final ConcurrentHashMap<K, Integer> _indices = new ConcurrentHashMap<K, Integer>();
+  private int _nextIndex;
+  private final Shard[] _shards;
+  private final int _shardMask;
+  private final int _shardBits;
+
+  /** The version writes are stamped with. A snapshot sees every write stamped no later than its version */
+  private final AtomicLong _version = new AtomicLong(1);
+  /** The versions of the live snapshots. Only accessed holding the lock on itself */
+  private final TreeSet<Long> _liveVersions = new TreeSet<Long>();
+  /** No later than the version of any live snapshot, or any snapshot yet to be taken */
+  private volatile long _oldestLiveVersion = 1;
+  /** Keeps the references to live snapshots reachable */
+  private final Set<SnapshotReference<K>> _snapshotReferences = Collections.newSetFromMap(new ConcurrentHashMap<SnapshotReference<K>, Boolean>());
+  private final ReferenceQueue<Snapshot<K>> _collectedSnapshots = new ReferenceQueue<Snapshot<K>>();
+
+  public VersionedLKVStore() {
+    this(DEFAULT_NUM_SHARDS);
+  }
+
+  /**
+   * @param numShards the number of shards, a power of two
+   */
+  public VersionedLKVStore(int numShards) {
+    ArgumentChecker.isTrue(numShards > 0 && Integer.bitCount(numShards) == 1, "numShards must be a power of two");
+    _shards = new Shard[numShards];
+    for (int i = 0; i < numShards; i++) {
+      _shards[i] = new Shard();
+    }
+    _shardMask = numShards - 1;
+    _shardBits = Integer.numberOfTrailingZeros(numShards);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Sets the current value of a key.
+   *
+   * @param key the key, not null
+   * @param value the value, not null
+   */
+  public void put(K key, Object value) {
+    ArgumentChecker.notNull(key, "key");
+    ArgumentChecker.notNull(value, "value");
+    write(getOrCreateIndex(key), value);
+  }
+
+  /**
+   * Removes the current value of a key. Snapshots already taken still see the value.
+   *
+   * @param key the key, not null
+   */
+  public void remove(K key) {
+    ArgumentChecker.notNull(key, "key");
+    final Integer index = _indices.get(key);
+    if (index != null) {
+      write(index, null);
+    }
+  }
+
+  /**
+   * @param key the key, not null
+   * @return the current value, null if none
+   */
+  public Object get(K key) {
+    return get(key, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param key the key, not null
+   * @return whether the key has a current value
+   */
+  public boolean containsKey(K key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return the keys with a current value, not null
+   */
+  public Set<K> keySet() {
+    return keySet(Long.MAX_VALUE);
+  }
+
+  /**
+   * Takes a snapshot of the current values, without copying them.
+   *
+   * @return the snapshot, not null
+   */
+  public Snapshot<K> snapshot() {
+    releaseCollectedSnapshots();
+    final long version;
+    synchronized (_liveVersions) {
+      version = _version.getAndIncrement();
+      _liveVersions.add(version);
+      _oldestLiveVersion = _liveVersions.first();
+    }
+    // Writes stamped with the version may still be in progress, holding their shard's lock
+    for (Shard shard : _shards) {
+      shard.getLock().lock();
+      shard.getLock().unlock();
+    }
+    final Snapshot<K> snapshot = new Snapshot<K>(this, version);
+    final SnapshotReference<K> reference = new SnapshotReference<K>(snapshot, _collectedSnapshots);
+    snapshot.setReference(reference);
+    _snapshotReferences.add(reference);
+    return snapshot;
+  }
+
+  //-------------------------------------------------------------------------
+  private int getOrCreateIndex(K key) {
+    Integer index = _indices.get(key);
+    if (index == null) {
+      synchronized (_indices) {
+        index = _indices.get(key);
+        if (index == null) {
+          index = _nextIndex++;
+          _indices.put(key, index);
+        }
+      }
+    }
+    return index;
+  }
+
+  private void write(int index, Object value) {
+    releaseCollectedSnapshots();
+    final Shard shard = _shards[index & _shardMask];
+    final int slot = index >>> _shardBits;
+    shard.getLock().lock();
+    try {
+      final long version = _version.get();
+      final Version head = shard.get(slot);
+      final Version newest;
+      if (head != null && head.getVersion() == version) {
+        // No snapshot can see the value being replaced
+        newest = new Version(version, value, head.getPrevious());
+      } else {
+        newest = new Version(version, value, head);
+      }
+      newest.prune(_oldestLiveVersion);
+      shard.set(slot, newest);
+    } finally {
+      shard.getLock().unlock();
+    }
+  }
+
+  /*package*/ Object get(K key, long version) {
+    final Integer index = _indices.get(key);
+    if (index == null) {
+      return null;
+    }
+    Version value = _shards[index & _shardMask].get(index >>> _shardBits);
+    while (value != null && value.getVersion() > version) {
+      value = value.getPrevious();
+    }
+    return (value != null) ? value.getValue() : null;
+  }
+
+  /*package*/ Set<K> keySet(long version) {
+    final Set<K> keys = new HashSet<K>();
+    for (K key : _indices.keySet()) {
+      if (get(key, version) != null) {
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * @return the number of versions of the value of a key held, for testing
+   */
+  /*package*/ int getNumVersions(K key) {
+    final Integer index = _indices.get(key);
+    int count = 0;
+    if (index != null) {
+      for (Version value = _shards[index & _shardMask].get(index >>> _shardBits); value != null; value = value.getPrevious()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /*package*/ int getNumLiveSnapshots() {
+    releaseCollectedSnapshots();
+    synchronized (_liveVersions) {
+      return _liveVersions.size();
+    }
+  }
+
+  private void release(SnapshotReference<K> reference) {
+    if (_snapshotReferences.remove(reference)) {
+      synchronized (_liveVersions) {
+        _liveVersions.remove(reference.getVersion());
+        // No snapshot yet to be taken can be older than the current version
+        _oldestLiveVersion = _liveVersions.isEmpty() ? _version.get() : _liveVersions.first();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void releaseCollectedSnapshots() {
+    Reference<? extends Snapshot<K>> reference;
+    while ((reference = _collectedSnapshots.poll()) != null) {
+      release((SnapshotReference<K>) reference);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The values of a store as they were when the snapshot was taken.
+   *
+   * @param <K> the type of the keys
+   */
+  public static final class Snapshot<K> {
+
+    private final VersionedLKVStore<K> _store;
+    private final long _version;
+    private SnapshotReference<K> _reference;
+
+    private Snapshot(VersionedLKVStore<K> store, long version) {
+      _store = store;
+      _version = version;
+    }
+
+    private void setReference(SnapshotReference<K> reference) {
+      _reference = reference;
+    }
+
+    /**
+     * @return the version of the store the snapshot sees
+     */
+    public long getVersion() {
+      return _version;
+    }
+
+    /**
+     * @param key the key, not null
+     * @return the value when the snapshot was taken, null if none
+     */
+    public Object get(K key) {
+      return _store.get(key, _version);
+    }
+
+    /**
+     * @return the keys with a value when the snapshot was taken, not null
+     */
+    public Set<K> keySet() {
+      return _store.keySet(_version);
+    }
+
+    /**
+     * Lets the store discard the versions only this snapshot could see. The snapshot must
+     * not be read afterwards.
+     */
+    public void release() {
+      _store.release(_reference);
+    }
+
+    @Override
+    public String toString() {
+      return "Snapshot[version " + _version + "]";
+    }
+
+  }
+
+  /**
+   * Releases a snapshot once it is no longer referenced.
+   */
+  private static final class SnapshotReference<K> extends WeakReference<Snapshot<K>> {
+
+    private final long _version;
+
+    private SnapshotReference(Snapshot<K> snapshot, ReferenceQueue<Snapshot<K>> queue) {
+      super(snapshot, queue);
+      _version = snapshot.getVersion();
+    }
+
+    private long getVersion() {
+      return _version;
+    }
+
+  }
+
+  /**
+   * The slots of a shard, grown as keys are added. Only written holding its lock.
+   */
+  private static final class Shard {
+
+    private final Lock _lock = new ReentrantLock();
+    private volatile AtomicReferenceArray<Version> _slots = new AtomicReferenceArray<Version>(INITIAL_SHARD_CAPACITY);
+
+    private Lock getLock() {
+      return _lock;
+    }
+
+    private Version get(int slot) {
+      final AtomicReferenceArray<Version> slots = _slots;
+      return (slot < slots.length()) ? slots.get(slot) : null;
+    }
+
+    private void set(int slot, Version value) {
+      AtomicReferenceArray<Version> slots = _slots;
+      if (slot >= slots.length()) {
+        final AtomicReferenceArray<Version> grown = new AtomicReferenceArray<Version>(Math.max(slot + 1, slots.length() * 2));
+        for (int i = 0; i < slots.length(); i++) {
+          grown.set(i, slots.get(i));
+        }
+        slots = grown;
+        _slots = grown;
+      }
+      slots.set(slot, value);
+    }
+
+  }
+
+  /**
+   * A version of the value of a key, linked to the one it replaced.
+   */
+  private static final class Version {
+
+    private final long _version;
+    /** Null if the value was removed */
+    private final Object _value;
+    /** Only cut, never otherwise changed; a reader seeing the old link still finds what it needs */
+    private Version _previous;
+
+    private Version(long version, Object value, Version previous) {
+      _version = version;
+      _value = value;
+      _previous = previous;
+    }
+
+    private long getVersion() {
+      return _version;
+    }
+
+    private Object getValue() {
+      return _value;
+    }
+
+    private Version getPrevious() {
+      return _previous;
+    }
+
+    /**
+     * Discards the versions older than the newest one any live snapshot can see.
+     */
+    private void prune(long oldestLiveVersion) {
+      Version value = this;
+      while (value != null && value._version > oldestLiveVersion) {
+        value = value._previous;
+      }
+      if (value != null) {
+        value._previous = null;
+      }
+    }
+
+  }
+
+}
@@ -201,6 +201,8 @@ public final class ValueRequirementNames {
   public static final String RETURN_SERIES = "Return Series";
   public static final String PNL_SERIES = "P&L Series";
   public static final String PNL = "PnL";
+  public static final String PNL_ATTRIBUTION_BY_POSITION = "P&L Attribution by Position";
+  public static final String PNL_ATTRIBUTION_BY_FACTOR = "P&L Attribution by Factor";
   public static final String UNDERLYING_RETURN_SERIES = "Underlying Return Series";
   public static final String SKEW = "Skew";
   public static final String FISHER_KURTOSIS = "Fisher Kurtosis";
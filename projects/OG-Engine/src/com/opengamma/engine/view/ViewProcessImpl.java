@@ -26,6 +26,7 @@ import com.opengamma.engine.view.calc.EngineResourceManagerInternal;
 import com.opengamma.engine.view.calc.SingleComputationCycle;
 import com.opengamma.engine.view.calc.ViewComputationJob;
 import com.opengamma.engine.view.calc.ViewCycle;
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics;
 import com.opengamma.engine.view.client.ViewDeltaResultCalculator;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
@@ -53,6 +54,7 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
   private final EngineResourceManagerInternal<SingleComputationCycle> _cycleManager;
   
   private final AtomicLong _cycleVersion = new AtomicLong();
+  private final TickLatencyStatistics _tickLatencyStatistics;
 
   /**
    * Manages access to critical regions of the process. Note that the use of {@link Semaphore} rather than, for example,
@@ -98,6 +100,7 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
     _viewProcessContext = viewProcessContext;
     _cycleManager = cycleManager;
     _cycleObjectId = cycleObjectId;
+    _tickLatencyStatistics = new TickLatencyStatistics(viewProcessId);
   }
   
   //-------------------------------------------------------------------------
@@ -190,6 +193,11 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
     unlock();
   }
 
+  @Override
+  public TickLatencyStatistics getTickLatencyStatistics() {
+    return _tickLatencyStatistics;
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public String toString() {
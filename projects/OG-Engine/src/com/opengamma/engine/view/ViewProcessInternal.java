@@ -5,6 +5,8 @@
  */
 package com.opengamma.engine.view;
 
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics;
+
 /**
  * Exposes engine-level access to a view process.
  */
@@ -21,4 +23,11 @@ public interface ViewProcessInternal extends ViewProcess {
    */
   void resume();
   
+  /**
+   * Gets the latencies from ticks arriving at the live data server to the results calculated from them.
+   * 
+   * @return the tick latency statistics, not null
+   */
+  TickLatencyStatistics getTickLatencyStatistics();
+  
 }
@@ -50,6 +50,7 @@ import com.opengamma.engine.view.cache.CacheSelectHint;
 import com.opengamma.engine.view.cache.MissingMarketDataSentinel;
 import com.opengamma.engine.view.cache.ViewComputationCache;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics;
 import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.id.UniqueId;
@@ -81,6 +82,9 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   private volatile Instant _startTime;
   private volatile Instant _endTime;
 
+  private TickLatencyStatistics _tickLatencyStatistics;
+  private long _tickOriginTime;
+
   private final ReentrantReadWriteLock _nodeExecutionLock = new ReentrantReadWriteLock();
   private final Set<DependencyNode> _executedNodes = new HashSet<DependencyNode>();
   private final Set<DependencyNode> _failedNodes = new HashSet<DependencyNode>();
@@ -228,6 +232,18 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     return response;
   }
 
+  /**
+   * Sets where to record the latency of the tick that caused this cycle when its dependency graphs are dispatched.
+   * Must be called before {@link #execute}.
+   * 
+   * @param tickLatencyStatistics  the statistics to record to, not null
+   * @param tickOriginTime  the origin time of the oldest tick picked up by the cycle, or 0 if not known
+   */
+  /*package*/ void setTickOrigin(TickLatencyStatistics tickLatencyStatistics, long tickOriginTime) {
+    _tickLatencyStatistics = tickLatencyStatistics;
+    _tickOriginTime = tickOriginTime;
+  }
+
   //--------------------------------------------------------------------------  
   // REVIEW jonathan 2011-03-18 -- The following comment should be given some sort of 'listed' status for preservation :-)
   // REVIEW kirk 2009-11-03 -- This is a database kernel. Act accordingly.
@@ -255,6 +271,9 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       computeDelta(previousCycle);
     }
 
+    if (_tickLatencyStatistics != null) {
+      _tickLatencyStatistics.stageReached(TickLatencyStatistics.Stage.DISPATCHED, _tickOriginTime);
+    }
     LinkedList<Future<?>> futures = new LinkedList<Future<?>>();
 
     for (String calcConfigurationName : getAllCalculationConfigurationNames()) {
@@ -29,6 +29,7 @@ import com.opengamma.core.change.ChangeListener;
 import com.opengamma.engine.marketdata.MarketDataListener;
 import com.opengamma.engine.marketdata.MarketDataProvider;
 import com.opengamma.engine.marketdata.MarketDataSnapshot;
+import com.opengamma.engine.marketdata.TickOrigin;
 import com.opengamma.engine.marketdata.availability.MarketDataAvailabilityProvider;
 import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
 import com.opengamma.engine.value.ValueRequirement;
@@ -36,6 +37,7 @@ import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.ViewDefinition;
 import com.opengamma.engine.view.ViewProcessContext;
 import com.opengamma.engine.view.ViewProcessImpl;
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics.Stage;
 import com.opengamma.engine.view.calc.trigger.CombinedViewCycleTrigger;
 import com.opengamma.engine.view.calc.trigger.FixedTimeTrigger;
 import com.opengamma.engine.view.calc.trigger.RecomputationPeriodTrigger;
@@ -91,6 +93,15 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
   private volatile boolean _viewDefinitionDirty = true;
   private volatile boolean _compilationDirty;
   
+  /**
+   * Origin time of the oldest tick seen since the last cycle was triggered, 0 if none. Guarded by this.
+   */
+  private long _pendingTickOriginTime;
+  /**
+   * Origin time of the oldest tick picked up by the cycle being run, 0 if none.
+   */
+  private long _cycleTickOriginTime;
+  
   /**
    * Nanoseconds
    */
@@ -302,6 +313,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     
     if (_executeCycles) {
       cycleCompleted(cycleReference.get());
+      getViewProcess().getTickLatencyStatistics().stageReached(Stage.PUBLISHED, _cycleTickOriginTime);
     }
     
     if (getExecutionOptions().getExecutionSequence().isEmpty()) {
@@ -361,6 +373,9 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       }
       if (cycleEligibility == ViewCycleEligibility.FORCE || cycleEligibility == ViewCycleEligibility.ELIGIBLE && _marketDataChanged) {
         _marketDataChanged = false;
+        _cycleTickOriginTime = _pendingTickOriginTime;
+        _pendingTickOriginTime = 0;
+        getViewProcess().getTickLatencyStatistics().stageReached(Stage.TRIGGERED, _cycleTickOriginTime);
         ViewCycleType cycleType = triggerResult.getCycleType();
         if (_previousCycleReference == null) {
           // Cannot do a delta if we have no previous cycle
@@ -415,7 +430,9 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     }
     
     try {
+      cycleReference.get().setTickOrigin(getViewProcess().getTickLatencyStatistics(), _cycleTickOriginTime);
       cycleReference.get().execute(deltaCycle, marketDataSnapshot);
+      getViewProcess().getTickLatencyStatistics().stageReached(Stage.EXECUTED, _cycleTickOriginTime);
     } catch (InterruptedException e) {
       Thread.interrupted();
       // In reality this means that the job has been terminated, and it will end as soon as we return from this method.
@@ -478,7 +495,11 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     notifyAll();
   }
   
-  public synchronized void marketDataChanged() {
+  public void marketDataChanged() {
+    marketDataChanged(0);
+  }
+  
+  private synchronized void marketDataChanged(final long tickOriginTime) {
     // REVIEW jonathan 2010-10-04 -- this synchronisation is necessary, but it feels very heavyweight for
     // high-frequency market data. See how it goes, but we could take into account the recalc periods and apply a
     // heuristic (e.g. only wake up due to market data if max - min < e, for some e) which tries to see whether it's
@@ -486,6 +507,9 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     
     s_logger.debug("Market Data changed");
     _marketDataChanged = true;
+    if ((tickOriginTime != 0) && ((_pendingTickOriginTime == 0) || (tickOriginTime < _pendingTickOriginTime))) {
+      _pendingTickOriginTime = tickOriginTime;
+    }
     if (!_wakeOnMarketDataChanged) {
       return;
     }
@@ -741,7 +765,9 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     }
     Map<ValueRequirement, ValueSpecification> marketDataRequirements = compiledView.getMarketDataRequirements();
     if (CollectionUtils.containsAny(marketDataRequirements.keySet(), values)) {
-      marketDataChanged();
+      final long tickOriginTime = TickOrigin.get();
+      getViewProcess().getTickLatencyStatistics().stageReached(Stage.RECEIVED, tickOriginTime);
+      marketDataChanged(tickOriginTime);
     }
   }
 
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc.stats;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.monitor.LatencyClock;
+import com.opengamma.util.monitor.LatencyHistogram;
+
+/**
+ * Holds histograms of the latency from a tick arriving at the live data server to each stage of
+ * calculating and publishing the results of a view process from it.
+ * <p>
+ * Each latency is measured from the origin time the live data server stamped on the tick, so the
+ * stages are cumulative; the difference between the percentiles of successive stages shows where
+ * the time goes. When several ticks are picked up by the same cycle, the cycle is charged with the
+ * oldest of them.
+ */
+public class TickLatencyStatistics {
+
+  /**
+   * The stages a tick passes through.
+   */
+  public enum Stage {
+    /**
+     * The tick has been received from the live data client and the view process told of the change.
+     * <p>
+     * Recorded once for each {@code valuesChanged} notification affecting the view's market data, with
+     * the origin time of the tick being notified about, rather than once for each tick; a notification
+     * reporting several changed values counts once.
+     */
+    RECEIVED,
+    /**
+     * The view cycle trigger has allowed a cycle picking up the tick to start.
+     */
+    TRIGGERED,
+    /**
+     * The cycle has prepared its inputs and is dispatching its dependency graphs for execution.
+     */
+    DISPATCHED,
+    /**
+     * The dependency graphs have been executed.
+     */
+    EXECUTED,
+    /**
+     * The results have been delivered to the view result listeners.
+     */
+    PUBLISHED
+  }
+
+  private static final double NANOS_PER_MILLISECOND = 1e6;
+  private static final double[] REPORT_PERCENTILES = new double[] {50, 90, 99, 99.9 };
+
+  private final UniqueId _viewProcessId;
+  private final Map<Stage, LatencyHistogram> _latencies = new EnumMap<Stage, LatencyHistogram>(Stage.class);
+
+  public TickLatencyStatistics(final UniqueId viewProcessId) {
+    ArgumentChecker.notNull(viewProcessId, "viewProcessId");
+    _viewProcessId = viewProcessId;
+    for (Stage stage : Stage.values()) {
+      _latencies.put(stage, new LatencyHistogram());
+    }
+  }
+
+  public UniqueId getViewProcessId() {
+    return _viewProcessId;
+  }
+
+  /**
+   * Records that a tick has reached a stage now.
+   *
+   * @param stage  the stage reached, not null
+   * @param originTime  the origin time of the tick, from {@link LatencyClock}, or 0 if not known in which case nothing is recorded
+   */
+  public void stageReached(final Stage stage, final long originTime) {
+    if (originTime != 0) {
+      getLatency(stage).record(LatencyClock.currentTimeNanos() - originTime);
+    }
+  }
+
+  /**
+   * Gets the latencies recorded for a stage.
+   *
+   * @param stage  the stage, not null
+   * @return the latencies, from the origin of the tick, not null
+   */
+  public LatencyHistogram getLatency(final Stage stage) {
+    ArgumentChecker.notNull(stage, "stage");
+    return _latencies.get(stage);
+  }
+
+  /**
+   * Discards everything recorded so far.
+   */
+  public void reset() {
+    for (LatencyHistogram latency : _latencies.values()) {
+      latency.reset();
+    }
+  }
+
+  /**
+   * Produces a table of the latency percentiles of each stage, in milliseconds.
+   *
+   * @return the report, not null
+   */
+  public String getReport() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("Tick latency for view process ").append(getViewProcessId()).append(" (ms)\n");
+    sb.append(String.format("%-12s%10s%10s", "Stage", "Count", "Mean"));
+    for (double percentile : REPORT_PERCENTILES) {
+      sb.append(String.format("%10s", percentile + "%"));
+    }
+    sb.append(String.format("%10s%n", "Max"));
+    for (Stage stage : Stage.values()) {
+      final LatencyHistogram latency = getLatency(stage);
+      sb.append(String.format("%-12s%10d%10.3f", stage, latency.getCount(), latency.getMean() / NANOS_PER_MILLISECOND));
+      for (double percentile : REPORT_PERCENTILES) {
+        sb.append(String.format("%10.3f", latency.getValueAtPercentile(percentile) / NANOS_PER_MILLISECOND));
+      }
+      sb.append(String.format("%10.3f%n", latency.getMax() / NANOS_PER_MILLISECOND));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return "TickLatencyStatistics[" + getViewProcessId() + ", published=" + getLatency(Stage.PUBLISHED) + "]";
+  }
+
+}
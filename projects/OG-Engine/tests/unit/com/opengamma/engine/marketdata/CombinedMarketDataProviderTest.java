@@ -0,0 +1,373 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.marketdata.availability.MarketDataAvailabilityProvider;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.id.UniqueId;
+import com.opengamma.livedata.UserPrincipal;
+
+/**
+ * Tests {@link CombinedMarketDataProvider}
+ */
+@Test
+public class CombinedMarketDataProviderTest {
+
+  public void testRouting() {
+    CountingProvider preferred = new CountingProvider();
+    CountingProvider fallBack = new CountingProvider();
+    preferred.addValue(getRequirement(1), 1.0);
+    fallBack.addValue(getRequirement(1), 10.0);
+    fallBack.addValue(getRequirement(2), 20.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    MarketDataAvailabilityProvider availability = provider.getAvailabilityProvider();
+
+    assertTrue(availability.isAvailable(getRequirement(1)));
+    assertTrue(availability.isAvailable(getRequirement(2)));
+    assertFalse(availability.isAvailable(getRequirement(3)));
+    assertSame(preferred, provider.getProvider(getRequirement(1)));
+    assertSame(fallBack, provider.getProvider(getRequirement(2)));
+    assertNull(provider.getProvider(getRequirement(3)));
+  }
+
+  public void testAvailabilityRemembered() {
+    CountingProvider preferred = new CountingProvider();
+    CountingProvider fallBack = new CountingProvider();
+    fallBack.addValue(getRequirement(1), 10.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    MarketDataAvailabilityProvider availability = provider.getAvailabilityProvider();
+
+    // Only remembered while changes are seen
+    for (int i = 0; i < 3; i++) {
+      assertTrue(availability.isAvailable(getRequirement(1)));
+      assertFalse(availability.isAvailable(getRequirement(2)));
+    }
+    assertEquals(6, preferred.getAndResetChecks());
+    assertEquals(6, fallBack.getAndResetChecks());
+    provider.addListener(new RecordingListener());
+    for (int i = 0; i < 3; i++) {
+      assertTrue(availability.isAvailable(getRequirement(1)));
+      assertFalse(availability.isAvailable(getRequirement(2)));
+    }
+    assertEquals(2, preferred.getAndResetChecks());
+    assertEquals(2, fallBack.getAndResetChecks());
+
+    // A change forgets it
+    preferred.addValue(getRequirement(2), 2.0);
+    assertTrue(availability.isAvailable(getRequirement(2)));
+    assertSame(preferred, provider.getProvider(getRequirement(2)));
+  }
+
+  public void testRouteFollowsAvailability() {
+    CountingProvider preferred = new CountingProvider();
+    CountingProvider fallBack = new CountingProvider();
+    fallBack.addValue(getRequirement(1), 10.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    RecordingListener listener = new RecordingListener();
+    provider.addListener(listener);
+    MarketDataAvailabilityProvider availability = provider.getAvailabilityProvider();
+    assertSame(fallBack, provider.getProvider(getRequirement(1)));
+
+    // Moves to the preferred provider once it has the value
+    preferred.addValue(getRequirement(1), 1.0);
+    assertSame(preferred, provider.getProvider(getRequirement(1)));
+    assertTrue(listener.getValuesChanged().contains(getRequirement(1)));
+
+    // And back when it no longer does
+    preferred.removeValue(getRequirement(1));
+    assertSame(fallBack, provider.getProvider(getRequirement(1)));
+    fallBack.removeValue(getRequirement(1));
+    assertFalse(availability.isAvailable(getRequirement(1)));
+
+    // Kept while subscribed, so that it is unsubscribed from the provider it was subscribed to
+    fallBack.addValue(getRequirement(1), 11.0);
+    provider.subscribe(UserPrincipal.getTestUser(), getRequirement(1));
+    preferred.addValue(getRequirement(1), 2.0);
+    assertSame(fallBack, provider.getProvider(getRequirement(1)));
+    provider.unsubscribe(UserPrincipal.getTestUser(), getRequirement(1));
+    assertEquals(Collections.singleton(getRequirement(1)), fallBack.getUnsubscribed());
+    assertTrue(preferred.getUnsubscribed().isEmpty());
+
+    preferred.addValue(getRequirement(1), 3.0);
+    assertSame(preferred, provider.getProvider(getRequirement(1)));
+  }
+
+  public void testOverlappingSubscriptionsTimed() {
+    DeferringProvider preferred = new DeferringProvider();
+    preferred.addValue(getRequirement(1), 1.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, new CountingProvider());
+    provider.addListener(new RecordingListener());
+    provider.subscribe(UserPrincipal.getTestUser(), getRequirement(1));
+    provider.subscribe(UserPrincipal.getTestUser(), getRequirement(1));
+    MarketDataSubscriptionStatistics statistics = provider.getSubscriptionStatistics().get(preferred);
+    assertEquals(2, statistics.getRequested());
+    assertEquals(2, statistics.getPending());
+
+    preferred.respond(getRequirement(1));
+    preferred.respond(getRequirement(1));
+    assertEquals(2, statistics.getSucceeded());
+    assertEquals(0, statistics.getPending());
+  }
+
+  public void testValuesChangedForwardedFromRoutedProvider() {
+    CountingProvider preferred = new CountingProvider();
+    CountingProvider fallBack = new CountingProvider();
+    preferred.addValue(getRequirement(1), 1.0);
+    fallBack.addValue(getRequirement(2), 20.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    RecordingListener listener = new RecordingListener();
+    provider.addListener(listener);
+    provider.getProvider(getRequirement(1));
+    provider.getProvider(getRequirement(2));
+
+    fallBack.addValue(getRequirement(1), 10.0);
+    fallBack.addValue(getRequirement(2), 21.0);
+    // Unknown to the combined provider
+    fallBack.addValue(getRequirement(3), 30.0);
+    assertEquals(1, listener.getValuesChanged().size());
+    assertTrue(listener.getValuesChanged().contains(getRequirement(2)));
+  }
+
+  public void testBatchedSubscription() {
+    CountingProvider preferred = new CountingProvider();
+    CountingProvider fallBack = new CountingProvider();
+    Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+    for (int i = 0; i < 25; i++) {
+      requirements.add(getRequirement(i));
+      if (i % 5 == 0) {
+        preferred.addValue(getRequirement(i), (double) i);
+      } else {
+        fallBack.addValue(getRequirement(i), (double) i);
+      }
+    }
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    RecordingListener listener = new RecordingListener();
+    provider.addListener(listener);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      provider.setBatchSize(3);
+      provider.setExecutor(executor);
+      provider.subscribe(UserPrincipal.getTestUser(), requirements);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(requirements, listener.getSucceeded());
+    assertEquals(5, preferred.getSubscribed().size());
+    assertEquals(20, fallBack.getSubscribed().size());
+
+    MarketDataSubscriptionStatistics preferredStatistics = provider.getSubscriptionStatistics().get(preferred);
+    MarketDataSubscriptionStatistics fallBackStatistics = provider.getSubscriptionStatistics().get(fallBack);
+    assertEquals(5, preferredStatistics.getRequested());
+    assertEquals(5, preferredStatistics.getSucceeded());
+    assertEquals(20, fallBackStatistics.getRequested());
+    assertEquals(20, fallBackStatistics.getSucceeded());
+    assertEquals(0, fallBackStatistics.getPending());
+    assertTrue(fallBackStatistics.getMaxLatency() >= fallBackStatistics.getAverageLatency());
+  }
+
+  public void testSubscriptionFailure() {
+    CountingProvider preferred = new CountingProvider() {
+      @Override
+      public void subscribe(UserPrincipal user, Set<ValueRequirement> valueRequirements) {
+        throw new IllegalStateException("Not connected");
+      }
+    };
+    CountingProvider fallBack = new CountingProvider();
+    preferred.addValue(getRequirement(1), 1.0);
+    fallBack.addValue(getRequirement(2), 20.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    RecordingListener listener = new RecordingListener();
+    provider.addListener(listener);
+    Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+    requirements.add(getRequirement(1));
+    requirements.add(getRequirement(2));
+    provider.subscribe(UserPrincipal.getTestUser(), requirements);
+    assertEquals(1, listener.getSucceeded().size());
+    assertTrue(listener.getSucceeded().contains(getRequirement(2)));
+    assertEquals(1, listener.getFailed().size());
+    assertTrue(listener.getFailed().contains(getRequirement(1)));
+    assertEquals(1, provider.getSubscriptionStatistics().get(preferred).getFailed());
+  }
+
+  public void testPartiallyRespondedSubscriptionFailure() {
+    CountingProvider preferred = new CountingProvider() {
+      @Override
+      public void subscribe(UserPrincipal user, Set<ValueRequirement> valueRequirements) {
+        subscriptionSucceeded(getRequirement(1));
+        throw new IllegalStateException("Connection lost");
+      }
+    };
+    CountingProvider fallBack = new CountingProvider();
+    preferred.addValue(getRequirement(1), 1.0);
+    preferred.addValue(getRequirement(2), 2.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    RecordingListener listener = new RecordingListener();
+    provider.addListener(listener);
+    Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+    requirements.add(getRequirement(1));
+    requirements.add(getRequirement(2));
+    provider.subscribe(UserPrincipal.getTestUser(), requirements);
+    // The response already made is not contradicted
+    assertEquals(Collections.singleton(getRequirement(1)), listener.getSucceeded());
+    assertEquals(Collections.singleton(getRequirement(2)), listener.getFailed());
+    MarketDataSubscriptionStatistics statistics = provider.getSubscriptionStatistics().get(preferred);
+    assertEquals(1, statistics.getSucceeded());
+    assertEquals(1, statistics.getFailed());
+    assertEquals(0, statistics.getPending());
+  }
+
+  public void testUnsubscribeAfterSubscriptionStopped() {
+    CountingProvider preferred = new CountingProvider();
+    CountingProvider fallBack = new CountingProvider();
+    fallBack.addValue(getRequirement(1), 10.0);
+    CombinedMarketDataProvider provider = new CombinedMarketDataProvider(preferred, fallBack);
+    RecordingListener listener = new RecordingListener();
+    provider.addListener(listener);
+    provider.subscribe(UserPrincipal.getTestUser(), getRequirement(1));
+    fallBack.stop(getRequirement(1));
+    assertEquals(Collections.singleton(getRequirement(1)), listener.getStopped());
+
+    // Still unsubscribed from the provider it was subscribed to
+    preferred.addValue(getRequirement(1), 1.0);
+    provider.unsubscribe(UserPrincipal.getTestUser(), getRequirement(1));
+    assertEquals(Collections.singleton(getRequirement(1)), fallBack.getUnsubscribed());
+    assertTrue(preferred.getUnsubscribed().isEmpty());
+  }
+
+  //-------------------------------------------------------------------------
+  private ValueRequirement getRequirement(int number) {
+    return new ValueRequirement("Req-" + number, new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Scheme", "Target")));
+  }
+
+  /**
+   * Counts availability checks and records subscriptions.
+   */
+  private static class CountingProvider extends InMemoryLKVMarketDataProvider {
+
+    private final AtomicInteger _checks = new AtomicInteger();
+    private final Set<ValueRequirement> _subscribed = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+    private final Set<ValueRequirement> _unsubscribed = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+
+    @Override
+    public boolean isAvailable(ValueRequirement requirement) {
+      _checks.incrementAndGet();
+      return super.isAvailable(requirement);
+    }
+
+    @Override
+    public void subscribe(UserPrincipal user, Set<ValueRequirement> valueRequirements) {
+      _subscribed.addAll(valueRequirements);
+      super.subscribe(user, valueRequirements);
+    }
+
+    @Override
+    public void unsubscribe(UserPrincipal user, Set<ValueRequirement> valueRequirements) {
+      _unsubscribed.addAll(valueRequirements);
+      super.unsubscribe(user, valueRequirements);
+    }
+
+    public void stop(ValueRequirement requirement) {
+      subscriptionStopped(requirement);
+    }
+
+    public int getAndResetChecks() {
+      return _checks.getAndSet(0);
+    }
+
+    public Set<ValueRequirement> getSubscribed() {
+      return _subscribed;
+    }
+
+    public Set<ValueRequirement> getUnsubscribed() {
+      return _unsubscribed;
+    }
+
+  }
+
+  /**
+   * Only responds to subscriptions when told to.
+   */
+  private static class DeferringProvider extends CountingProvider {
+
+    @Override
+    public void subscribe(UserPrincipal user, Set<ValueRequirement> valueRequirements) {
+      getSubscribed().addAll(valueRequirements);
+    }
+
+    public void respond(ValueRequirement requirement) {
+      subscriptionSucceeded(requirement);
+    }
+
+  }
+
+  /**
+   * Records the notifications received.
+   */
+  private static class RecordingListener implements MarketDataListener {
+
+    private final Set<ValueRequirement> _succeeded = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+    private final Set<ValueRequirement> _failed = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+    private final Set<ValueRequirement> _stopped = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+    private final Set<ValueRequirement> _valuesChanged = Collections.newSetFromMap(new ConcurrentHashMap<ValueRequirement, Boolean>());
+
+    @Override
+    public void subscriptionSucceeded(ValueRequirement requirement) {
+      _succeeded.add(requirement);
+    }
+
+    @Override
+    public void subscriptionFailed(ValueRequirement requirement, String msg) {
+      _failed.add(requirement);
+    }
+
+    @Override
+    public void subscriptionStopped(ValueRequirement requirement) {
+      _stopped.add(requirement);
+    }
+
+    @Override
+    public void valuesChanged(Collection<ValueRequirement> requirements) {
+      _valuesChanged.addAll(requirements);
+    }
+
+    public Set<ValueRequirement> getSucceeded() {
+      return _succeeded;
+    }
+
+    public Set<ValueRequirement> getFailed() {
+      return _failed;
+    }
+
+    public Set<ValueRequirement> getStopped() {
+      return _stopped;
+    }
+
+    public Set<ValueRequirement> getValuesChanged() {
+      return _valuesChanged;
+    }
+
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.marketdata.PendingCombinedMarketDataSubscription.PendingCombinedSubscriptionState;
+
+/**
+ * Tests {@link PendingCombinedMarketDataSubscription}
+ */
+@Test
+public class PendingCombinedMarketDataSubscriptionTest {
+
+  public void testSuccess() {
+    MarketDataProvider p1 = new MockMarketDataProvider("p1", true, 1);
+    MarketDataProvider p2 = new MockMarketDataProvider("p2", true, 1);
+    PendingCombinedMarketDataSubscription pending = new PendingCombinedMarketDataSubscription(Arrays.asList(p1, p2));
+    assertEquals(PendingCombinedSubscriptionState.AWAITING_RESPONSES, pending.subscriptionSucceeded(p2));
+    // Repeated responses are ignored
+    assertEquals(PendingCombinedSubscriptionState.AWAITING_RESPONSES, pending.subscriptionSucceeded(p2));
+    assertEquals(PendingCombinedSubscriptionState.SUCCESS, pending.subscriptionSucceeded(p1));
+    assertEquals(PendingCombinedSubscriptionState.AWAITING_RESPONSES, pending.subscriptionSucceeded(p1));
+  }
+
+  public void testFailure() {
+    MarketDataProvider p1 = new MockMarketDataProvider("p1", true, 1);
+    MarketDataProvider p2 = new MockMarketDataProvider("p2", false, 1);
+    PendingCombinedMarketDataSubscription pending = new PendingCombinedMarketDataSubscription(Arrays.asList(p1, p2));
+    assertEquals(PendingCombinedSubscriptionState.AWAITING_RESPONSES, pending.subscriptionFailed(p2, "p2"));
+    assertEquals(PendingCombinedSubscriptionState.FAILURE, pending.subscriptionSucceeded(p1));
+    assertEquals(Arrays.asList("p2"), new ArrayList<String>(pending.getFailureMessages()));
+  }
+
+  public void testConcurrentResponses() throws Exception {
+    final int providers = 8;
+    // One thread for each provider, reused by every round
+    final ExecutorService executor = Executors.newFixedThreadPool(providers);
+    try {
+      for (int n = 0; n < 200; n++) {
+        final List<MarketDataProvider> pendingProviders = new ArrayList<MarketDataProvider>();
+        for (int i = 0; i < providers; i++) {
+          pendingProviders.add(new MockMarketDataProvider("p" + i, true, 1));
+        }
+        final PendingCombinedMarketDataSubscription pending = new PendingCombinedMarketDataSubscription(pendingProviders);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger successes = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final List<Future<?>> responses = new ArrayList<Future<?>>();
+        for (int i = 0; i < providers; i++) {
+          final MarketDataProvider provider = pendingProviders.get(i);
+          final boolean fail = (i == n % providers);
+          responses.add(executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws InterruptedException {
+              start.await();
+              PendingCombinedSubscriptionState state = fail ? pending.subscriptionFailed(provider, "failed") : pending.subscriptionSucceeded(provider);
+              if (state == PendingCombinedSubscriptionState.SUCCESS) {
+                successes.incrementAndGet();
+              } else if (state == PendingCombinedSubscriptionState.FAILURE) {
+                failures.incrementAndGet();
+              }
+              return null;
+            }
+          }));
+        }
+        start.countDown();
+        for (Future<?> response : responses) {
+          response.get();
+        }
+        // Completed exactly once, and the one failure is always seen
+        assertEquals(0, successes.get());
+        assertEquals(1, failures.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
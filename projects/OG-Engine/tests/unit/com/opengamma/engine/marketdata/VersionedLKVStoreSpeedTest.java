@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Measures the cost of taking a snapshot of a last known value store, and of reading from it,
+ * while values are being written, against copying a map of the values as
+ * {@link InMemoryLKVMarketDataProvider} used to.
+ */
+public class VersionedLKVStoreSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(VersionedLKVStoreSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int KEYS = 100000;
+  private static final int WRITERS = 2;
+  private static final int SNAPSHOTS = 100;
+  private static final int READS = 1000000;
+
+  @Test
+  public void testSnapshotAndReadTime() throws InterruptedException {
+    final String[] keys = new String[KEYS];
+    for (int i = 0; i < KEYS; i++) {
+      keys[i] = "Key" + i;
+    }
+    for (int i = 0; i < HOTSPOT_WARMUP_CYCLES + BENCHMARK_CYCLES; i++) {
+      testCopiedMap(keys);
+      testVersionedStore(keys);
+    }
+  }
+
+  private static void testCopiedMap(final String[] keys) throws InterruptedException {
+    final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+    for (String key : keys) {
+      values.put(key, 0.0);
+    }
+    final Writers writers = new Writers(keys) {
+      @Override
+      protected void write(final String key, final Object value) {
+        values.put(key, value);
+      }
+    };
+    writers.start();
+    try {
+      OperationTimer timer = new OperationTimer(s_logger, "Copying {} values {} times", KEYS, SNAPSHOTS);
+      long start = System.nanoTime();
+      Map<String, Object> snapshot = null;
+      for (int i = 0; i < SNAPSHOTS; i++) {
+        snapshot = new HashMap<String, Object>(values);
+      }
+      final long snapshotNanos = (System.nanoTime() - start) / SNAPSHOTS;
+      timer.finished();
+
+      timer = new OperationTimer(s_logger, "Reading {} values from a copy", READS);
+      start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < READS; i++) {
+        if (snapshot.get(keys[i % KEYS]) != null) {
+          found++;
+        }
+      }
+      final long readNanos = (System.nanoTime() - start) / READS;
+      timer.finished();
+      assertEquals(READS, found);
+      writers.stop();
+      s_logger.info("Copied map: {}us per snapshot, {}ns per read, {} writes/s", new Object[] {snapshotNanos / 1000, readNanos, writers.getWriteRate()});
+    } finally {
+      writers.stop();
+    }
+  }
+
+  private static void testVersionedStore(final String[] keys) throws InterruptedException {
+    final VersionedLKVStore<String> store = new VersionedLKVStore<String>();
+    for (String key : keys) {
+      store.put(key, 0.0);
+    }
+    final Writers writers = new Writers(keys) {
+      @Override
+      protected void write(final String key, final Object value) {
+        store.put(key, value);
+      }
+    };
+    writers.start();
+    try {
+      OperationTimer timer = new OperationTimer(s_logger, "Taking {} snapshots of {} values", SNAPSHOTS, KEYS);
+      long start = System.nanoTime();
+      VersionedLKVStore.Snapshot<String> snapshot = null;
+      for (int i = 0; i < SNAPSHOTS; i++) {
+        if (snapshot != null) {
+          snapshot.release();
+        }
+        snapshot = store.snapshot();
+      }
+      final long snapshotNanos = (System.nanoTime() - start) / SNAPSHOTS;
+      timer.finished();
+
+      timer = new OperationTimer(s_logger, "Reading {} values from a snapshot", READS);
+      start = System.nanoTime();
+      int found = 0;
+      for (int i = 0; i < READS; i++) {
+        if (snapshot.get(keys[i % KEYS]) != null) {
+          found++;
+        }
+      }
+      final long readNanos = (System.nanoTime() - start) / READS;
+      timer.finished();
+      assertEquals(READS, found);
+      writers.stop();
+      s_logger.info("Versioned store: {}ns per snapshot, {}ns per read, {} writes/s", new Object[] {snapshotNanos, readNanos, writers.getWriteRate()});
+      snapshot.release();
+    } finally {
+      writers.stop();
+    }
+  }
+
+  /**
+   * Threads writing random values to random keys until stopped.
+   */
+  private abstract static class Writers {
+
+    private final String[] _keys;
+    private final Thread[] _threads = new Thread[WRITERS];
+    private final AtomicBoolean _running = new AtomicBoolean(true);
+    private final AtomicLong _writes = new AtomicLong();
+    private long _start;
+    private long _nanos;
+
+    protected Writers(final String[] keys) {
+      _keys = keys;
+    }
+
+    protected abstract void write(String key, Object value);
+
+    public void start() {
+      _start = System.nanoTime();
+      for (int i = 0; i < _threads.length; i++) {
+        final Random random = new Random(i);
+        _threads[i] = new Thread("VersionedLKVStoreSpeedTest-Writer-" + i) {
+          @Override
+          public void run() {
+            long writes = 0;
+            while (_running.get()) {
+              write(_keys[random.nextInt(_keys.length)], random.nextDouble());
+              writes++;
+            }
+            _writes.addAndGet(writes);
+          }
+        };
+        _threads[i].start();
+      }
+    }
+
+    public void stop() throws InterruptedException {
+      if (_running.getAndSet(false)) {
+        for (Thread thread : _threads) {
+          thread.join();
+        }
+        _nanos = System.nanoTime() - _start;
+      }
+    }
+
+    public long getWriteRate() {
+      return (long) (_writes.get() * 1e9 / _nanos);
+    }
+
+  }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.marketdata;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link VersionedLKVStore}
+ */
+@Test
+public class VersionedLKVStoreTest {
+
+  public void testCurrentValues() {
+    VersionedLKVStore<String> store = new VersionedLKVStore<String>();
+    assertNull(store.get("A"));
+    assertFalse(store.containsKey("A"));
+    store.put("A", 1);
+    store.put("B", 2);
+    store.put("A", 3);
+    assertEquals(3, store.get("A"));
+    assertEquals(2, store.get("B"));
+    assertEquals(new HashSet<String>(Arrays.asList("A", "B")), store.keySet());
+    store.remove("B");
+    store.remove("C");
+    assertNull(store.get("B"));
+    assertFalse(store.containsKey("B"));
+    assertEquals(Collections.singleton("A"), store.keySet());
+  }
+
+  public void testSnapshotIsolation() {
+    VersionedLKVStore<String> store = new VersionedLKVStore<String>();
+    store.put("A", 1);
+    store.put("B", 2);
+    VersionedLKVStore.Snapshot<String> snapshot1 = store.snapshot();
+    store.put("A", 3);
+    store.remove("B");
+    store.put("C", 4);
+    VersionedLKVStore.Snapshot<String> snapshot2 = store.snapshot();
+    store.put("A", 5);
+
+    assertEquals(1, snapshot1.get("A"));
+    assertEquals(2, snapshot1.get("B"));
+    assertNull(snapshot1.get("C"));
+    assertEquals(new HashSet<String>(Arrays.asList("A", "B")), snapshot1.keySet());
+    assertEquals(3, snapshot2.get("A"));
+    assertNull(snapshot2.get("B"));
+    assertEquals(4, snapshot2.get("C"));
+    assertEquals(new HashSet<String>(Arrays.asList("A", "C")), snapshot2.keySet());
+    assertEquals(5, store.get("A"));
+  }
+
+  public void testManyKeys() {
+    // Spread over few shards, so they have to grow
+    VersionedLKVStore<String> store = new VersionedLKVStore<String>(2);
+    for (int i = 0; i < 1000; i++) {
+      store.put("K" + i, i);
+    }
+    VersionedLKVStore.Snapshot<String> snapshot = store.snapshot();
+    for (int i = 0; i < 1000; i++) {
+      store.put("K" + i, -i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, snapshot.get("K" + i));
+      assertEquals(-i, store.get("K" + i));
+    }
+    assertEquals(1000, snapshot.keySet().size());
+  }
+
+  public void testVersionsDiscardedOnRelease() {
+    VersionedLKVStore<String> store = new VersionedLKVStore<String>();
+    store.put("A", 1);
+    store.put("A", 2);
+    // Nothing can see the value replaced
+    assertEquals(1, store.getNumVersions("A"));
+    VersionedLKVStore.Snapshot<String> snapshot1 = store.snapshot();
+    store.put("A", 3);
+    VersionedLKVStore.Snapshot<String> snapshot2 = store.snapshot();
+    store.put("A", 4);
+    store.put("A", 5);
+    assertEquals(3, store.getNumVersions("A"));
+    assertEquals(2, store.getNumLiveSnapshots());
+
+    snapshot1.release();
+    assertEquals(1, store.getNumLiveSnapshots());
+    store.put("A", 6);
+    assertEquals(2, store.getNumVersions("A"));
+    assertEquals(3, snapshot2.get("A"));
+
+    snapshot2.release();
+    snapshot2.release();
+    assertEquals(0, store.getNumLiveSnapshots());
+    store.put("A", 7);
+    assertEquals(1, store.getNumVersions("A"));
+    assertEquals(7, store.get("A"));
+  }
+
+  public void testUnreferencedSnapshotReleased() throws InterruptedException {
+    VersionedLKVStore<String> store = new VersionedLKVStore<String>();
+    store.put("A", 1);
+    store.snapshot();
+    for (int i = 0; i < 100 && store.getNumLiveSnapshots() > 0; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertEquals(0, store.getNumLiveSnapshots());
+  }
+
+  public void testSnapshotStableUnderConcurrentWrites() throws Exception {
+    final VersionedLKVStore<String> store = new VersionedLKVStore<String>(4);
+    final int keys = 100;
+    for (int i = 0; i < keys; i++) {
+      store.put("K" + i, 0L);
+    }
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final Thread writer = new Thread() {
+      @Override
+      public void run() {
+        // Every key is written with the same value in each pass
+        long pass = 0;
+        while (running.get()) {
+          pass++;
+          for (int i = 0; i < keys; i++) {
+            store.put("K" + i, pass);
+          }
+        }
+      }
+    };
+    writer.start();
+    try {
+      final long[] values = new long[keys];
+      for (int n = 0; n < 1000; n++) {
+        final VersionedLKVStore.Snapshot<String> snapshot = store.snapshot();
+        // At most one pass in progress, so values only ever fall going up the keys, and by at most one
+        for (int i = 0; i < keys; i++) {
+          values[i] = (Long) snapshot.get("K" + i);
+          if (i > 0) {
+            assertTrue(values[i] <= values[i - 1]);
+            assertTrue(values[i] >= values[0] - 1);
+          }
+        }
+        for (int i = 0; i < keys; i++) {
+          assertEquals(values[i], snapshot.get("K" + i));
+        }
+        snapshot.release();
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc.stats;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.view.calc.stats.TickLatencyStatistics.Stage;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.monitor.LatencyClock;
+
+/**
+ * Tests {@link TickLatencyStatistics}
+ */
+@Test
+public class TickLatencyStatisticsTest {
+
+  public void testStages() {
+    TickLatencyStatistics statistics = new TickLatencyStatistics(UniqueId.of("Test", "ViewProcess"));
+    long origin = LatencyClock.currentTimeNanos() - 5000000L;
+    statistics.stageReached(Stage.RECEIVED, origin);
+    statistics.stageReached(Stage.PUBLISHED, origin);
+    // Ticks without an origin are not recorded
+    statistics.stageReached(Stage.PUBLISHED, 0);
+    assertEquals(1, statistics.getLatency(Stage.RECEIVED).getCount());
+    assertEquals(0, statistics.getLatency(Stage.TRIGGERED).getCount());
+    assertEquals(1, statistics.getLatency(Stage.PUBLISHED).getCount());
+    assertTrue(statistics.getLatency(Stage.PUBLISHED).getMax() >= 5000000L);
+    assertTrue(statistics.getLatency(Stage.PUBLISHED).getMax() >= statistics.getLatency(Stage.RECEIVED).getMax());
+
+    statistics.reset();
+    assertEquals(0, statistics.getLatency(Stage.PUBLISHED).getCount());
+  }
+
+  public void testReport() {
+    TickLatencyStatistics statistics = new TickLatencyStatistics(UniqueId.of("Test", "ViewProcess"));
+    statistics.stageReached(Stage.EXECUTED, LatencyClock.currentTimeNanos() - 2000000L);
+    String report = statistics.getReport();
+    for (Stage stage : Stage.values()) {
+      assertTrue(report.contains(stage.name()));
+    }
+    assertTrue(report.contains(statistics.getViewProcessId().toString()));
+  }
+
+}
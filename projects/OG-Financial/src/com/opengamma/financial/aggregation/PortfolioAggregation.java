@@ -0,0 +1,302 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.time.Instant;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.core.change.BasicChangeManager;
+import com.opengamma.core.change.ChangeManager;
+import com.opengamma.core.change.ChangeProvider;
+import com.opengamma.core.change.ChangeType;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.impl.SimplePortfolio;
+import com.opengamma.core.position.impl.SimplePortfolioNode;
+import com.opengamma.core.position.impl.SimplePosition;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+
+/**
+ * A portfolio aggregated by a {@link PortfolioAggregator}, together with the index of its buckets needed to apply changes to the positions of the
+ * underlying portfolio in place. Applying a change only classifies the changed positions and only touches the buckets that they leave or join; the
+ * nodes that are added, removed or whose contents change are returned as a {@link PortfolioAggregationDelta} and published to the listeners of the
+ * change manager as {@link ChangeType#ADDED}, {@link ChangeType#REMOVED} and {@link ChangeType#UPDATED} events for the node identifiers.
+ * <p>
+ * A position held under several nodes of the underlying portfolio appears once for each of them, and a change to it applies to all of them. The
+ * classification of each position is remembered against the unique identifiers, including the versions, of the position and its resolved security,
+ * so a changed position is only classified again if either has a new version.
+ * <p>
+ * Buckets created by a change are added after the existing children of their parent, and changed positions are moved to the end of their bucket.
+ * The aggregated portfolio is modified in place, so changes must not be applied while it is being read.
+ */
+public class PortfolioAggregation implements ChangeProvider {
+
+  private static final Comparator<String[]> NAME_COMPARATOR = new Comparator<String[]>() {
+    @Override
+    public int compare(final String[] names1, final String[] names2) {
+      for (int i = 0; i < names1.length; i++) {
+        if (names1[i] == null) {
+          return names2[i] == null ? 0 : -1;
+        }
+        if (names2[i] == null) {
+          return 1;
+        }
+        final int c = names1[i].compareTo(names2[i]);
+        if (c != 0) {
+          return c;
+        }
+      }
+      return 0;
+    }
+  };
+
+  private final PortfolioAggregator _aggregator;
+  private final SimplePortfolio _portfolio;
+  private final Bucket _root;
+  private final Map<List<String>, Bucket> _buckets = new HashMap<List<String>, Bucket>();
+  private final Map<ObjectId, List<AggregatedPosition>> _positions = new HashMap<ObjectId, List<AggregatedPosition>>();
+  private final ChangeManager _changeManager = new BasicChangeManager();
+
+  PortfolioAggregation(final PortfolioAggregator aggregator, final SimplePortfolio portfolio) {
+    _aggregator = aggregator;
+    _portfolio = portfolio;
+    _root = new Bucket(portfolio.getRootNode(), null, Collections.<String>emptyList());
+  }
+
+  /**
+   * Gets the aggregated portfolio.
+   *
+   * @return the portfolio, not null
+   */
+  public SimplePortfolio getPortfolio() {
+    return _portfolio;
+  }
+
+  @Override
+  public ChangeManager changeManager() {
+    return _changeManager;
+  }
+
+  /**
+   * Adds positions in the order of their bucket names, so that the children of each node are sorted by name.
+   */
+  void addAll(final List<Position> positions, final String[][] names) {
+    final Integer[] order = new Integer[positions.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer i1, final Integer i2) {
+        return NAME_COMPARATOR.compare(names[i1], names[i2]);
+      }
+    });
+    for (final Integer i : order) {
+      add(positions.get(i), names[i], null);
+    }
+  }
+
+  /**
+   * Applies changes to the positions of the underlying portfolio.
+   *
+   * @param changedPositions  the positions that have been added or updated, not null
+   * @param removedPositions  the object identifiers of the positions that have been removed, not null
+   * @return the changes to the nodes of the aggregated portfolio, not null
+   */
+  public synchronized PortfolioAggregationDelta update(final Collection<? extends Position> changedPositions, final Collection<ObjectId> removedPositions) {
+    Validate.noNullElements(changedPositions, "changed positions");
+    Validate.noNullElements(removedPositions, "removed positions");
+    final PortfolioAggregationDelta delta = new PortfolioAggregationDelta();
+    for (final ObjectId objectId : removedPositions) {
+      remove(objectId, delta);
+    }
+    final List<Position> positions = new ArrayList<Position>(changedPositions);
+    final String[][] names = new String[positions.size()][];
+    final List<Position> unclassified = new ArrayList<Position>();
+    final List<Integer> unclassifiedIndices = new ArrayList<Integer>();
+    for (int i = 0; i < names.length; i++) {
+      final Position position = positions.get(i);
+      Validate.notNull(position.getUniqueId(), "position unique id");
+      final List<AggregatedPosition> previous = _positions.get(position.getUniqueId().getObjectId());
+      if (previous != null && previous.get(0).isClassificationOf(position)) {
+        names[i] = previous.get(0)._names;
+      } else {
+        unclassified.add(position);
+        unclassifiedIndices.add(i);
+      }
+    }
+    final String[][] classified = _aggregator.classify(unclassified);
+    for (int i = 0; i < classified.length; i++) {
+      names[unclassifiedIndices.get(i)] = classified[i];
+    }
+    for (int i = 0; i < names.length; i++) {
+      final Position position = positions.get(i);
+      final ObjectId objectId = position.getUniqueId().getObjectId();
+      final List<AggregatedPosition> previous = _positions.get(objectId);
+      if (previous != null && Arrays.equals(previous.get(0)._names, names[i])) {
+        replace(position, previous, delta);
+      } else {
+        final int occurrences = remove(objectId, delta);
+        for (int j = 0; j < Math.max(occurrences, 1); j++) {
+          add(position, names[i], delta);
+        }
+      }
+    }
+    final Instant now = Instant.now();
+    for (final PortfolioNode node : delta.getAddedNodes()) {
+      _changeManager.entityChanged(ChangeType.ADDED, null, node.getUniqueId(), now);
+    }
+    for (final UniqueId nodeId : delta.getRemovedNodeIds()) {
+      _changeManager.entityChanged(ChangeType.REMOVED, nodeId, null, now);
+    }
+    for (final UniqueId nodeId : delta.getChangedNodeIds()) {
+      _changeManager.entityChanged(ChangeType.UPDATED, nodeId, nodeId, now);
+    }
+    return delta;
+  }
+
+  private void add(final Position position, final String[] names, final PortfolioAggregationDelta delta) {
+    Bucket parent = _root;
+    _root._count++;
+    if (delta != null) {
+      delta.nodeChanged(_root._node.getUniqueId());
+    }
+    int depth = 0;
+    while (depth < names.length && names[depth] != null) {
+      final List<String> path = Arrays.asList(Arrays.copyOf(names, depth + 1));
+      Bucket bucket = _buckets.get(path);
+      if (bucket == null) {
+        final SimplePortfolioNode node = new SimplePortfolioNode(PortfolioAggregator.createSyntheticIdentifier(), names[depth]);
+        node.setParentNodeId(parent._node.getUniqueId());
+        parent._node.addChildNode(node);
+        bucket = new Bucket(node, parent, path);
+        _buckets.put(path, bucket);
+        if (delta != null) {
+          delta.nodeAdded(node);
+        }
+      } else if (delta != null) {
+        delta.nodeChanged(bucket._node.getUniqueId());
+      }
+      bucket._count++;
+      parent = bucket;
+      depth++;
+    }
+    final Position aggregatedPosition = depth == names.length ? addPosition(position, parent) : null;
+    if (position.getUniqueId() != null) {
+      final ObjectId objectId = position.getUniqueId().getObjectId();
+      List<AggregatedPosition> occurrences = _positions.get(objectId);
+      if (occurrences == null) {
+        occurrences = new ArrayList<AggregatedPosition>(1);
+        _positions.put(objectId, occurrences);
+      }
+      occurrences.add(new AggregatedPosition(position, aggregatedPosition, parent, names));
+    }
+  }
+
+  // copied here rather than by the node so that the copy can be removed later
+  private static Position addPosition(final Position position, final Bucket bucket) {
+    final SimplePosition copy = new SimplePosition(position);
+    copy.setParentNodeId(bucket._node.getUniqueId());
+    bucket._node.addPosition(copy);
+    return copy;
+  }
+
+  private void replace(final Position position, final List<AggregatedPosition> previous, final PortfolioAggregationDelta delta) {
+    for (int i = 0; i < previous.size(); i++) {
+      final AggregatedPosition occurrence = previous.get(i);
+      Position aggregatedPosition = null;
+      if (occurrence._position != null) {
+        occurrence._bucket._node.removePosition(occurrence._position);
+        aggregatedPosition = addPosition(position, occurrence._bucket);
+      }
+      previous.set(i, new AggregatedPosition(position, aggregatedPosition, occurrence._bucket, occurrence._names));
+      for (Bucket bucket = occurrence._bucket; bucket != null; bucket = bucket._parent) {
+        delta.nodeChanged(bucket._node.getUniqueId());
+      }
+    }
+  }
+
+  /**
+   * Removes every occurrence of a position.
+   *
+   * @return the number of occurrences removed
+   */
+  private int remove(final ObjectId objectId, final PortfolioAggregationDelta delta) {
+    final List<AggregatedPosition> previous = _positions.remove(objectId);
+    if (previous == null) {
+      return 0;
+    }
+    for (AggregatedPosition occurrence : previous) {
+      if (occurrence._position != null) {
+        occurrence._bucket._node.removePosition(occurrence._position);
+      }
+      for (Bucket bucket = occurrence._bucket; bucket != null; bucket = bucket._parent) {
+        bucket._count--;
+        if (bucket._count == 0 && bucket != _root) {
+          bucket._parent._node.removeChildNode(bucket._node);
+          _buckets.remove(bucket._path);
+          delta.nodeRemoved(bucket._node.getUniqueId());
+        } else {
+          delta.nodeChanged(bucket._node.getUniqueId());
+        }
+      }
+    }
+    return previous.size();
+  }
+
+  /**
+   * A node of the aggregated portfolio, the bucket names leading to it and the number of positions beneath it.
+   */
+  private static final class Bucket {
+    private final SimplePortfolioNode _node;
+    private final Bucket _parent;
+    private final List<String> _path;
+    private int _count;
+
+    private Bucket(final SimplePortfolioNode node, final Bucket parent, final List<String> path) {
+      _node = node;
+      _parent = parent;
+      _path = path;
+    }
+  }
+
+  /**
+   * One occurrence of a position: the copy held by the aggregated portfolio, null if it was not classified by all of the functions, the deepest
+   * bucket that it was classified into and its bucket names, together with the unique identifiers of the position and security classified.
+   */
+  private static final class AggregatedPosition {
+    private final UniqueId _uniqueId;
+    private final UniqueId _securityId;
+    private final Position _position;
+    private final Bucket _bucket;
+    private final String[] _names;
+
+    private AggregatedPosition(final Position source, final Position position, final Bucket bucket, final String[] names) {
+      _uniqueId = source.getUniqueId();
+      _securityId = PortfolioAggregator.getSecurityId(source);
+      _position = position;
+      _bucket = bucket;
+      _names = names;
+    }
+
+    private boolean isClassificationOf(final Position position) {
+      return position.getUniqueId().equals(_uniqueId) && ObjectUtils.equals(PortfolioAggregator.getSecurityId(position), _securityId);
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.aggregation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.id.UniqueId;
+
+/**
+ * The changes made to the nodes of an aggregated portfolio by {@link PortfolioAggregation#update}. A node that is added is not also reported as
+ * changed, and a node that is removed is not reported as added or changed. The changed nodes include the ancestors of every node whose positions
+ * changed, as their aggregate values change too.
+ */
+public class PortfolioAggregationDelta {
+  private final Map<UniqueId, PortfolioNode> _addedNodes = new LinkedHashMap<UniqueId, PortfolioNode>();
+  private final Set<UniqueId> _removedNodeIds = new LinkedHashSet<UniqueId>();
+  private final Set<UniqueId> _changedNodeIds = new LinkedHashSet<UniqueId>();
+
+  PortfolioAggregationDelta() {
+  }
+
+  void nodeAdded(final PortfolioNode node) {
+    _addedNodes.put(node.getUniqueId(), node);
+  }
+
+  void nodeRemoved(final UniqueId nodeId) {
+    if (_addedNodes.remove(nodeId) == null) {
+      _removedNodeIds.add(nodeId);
+    }
+    _changedNodeIds.remove(nodeId);
+  }
+
+  void nodeChanged(final UniqueId nodeId) {
+    if (!_addedNodes.containsKey(nodeId)) {
+      _changedNodeIds.add(nodeId);
+    }
+  }
+
+  /**
+   * Gets the nodes that have been added, parents before their children.
+   *
+   * @return the added nodes, not null
+   */
+  public List<PortfolioNode> getAddedNodes() {
+    return Collections.unmodifiableList(new ArrayList<PortfolioNode>(_addedNodes.values()));
+  }
+
+  /**
+   * Gets the identifiers of the nodes that have been removed.
+   *
+   * @return the removed node identifiers, not null
+   */
+  public Set<UniqueId> getRemovedNodeIds() {
+    return Collections.unmodifiableSet(_removedNodeIds);
+  }
+
+  /**
+   * Gets the identifiers of the nodes that remain in the portfolio but whose positions, or those of their descendants, have changed.
+   *
+   * @return the changed node identifiers, not null
+   */
+  public Set<UniqueId> getChangedNodeIds() {
+    return Collections.unmodifiableSet(_changedNodeIds);
+  }
+
+  /**
+   * Tests whether the aggregated portfolio is unchanged.
+   *
+   * @return true if no nodes have been added, removed or changed
+   */
+  public boolean isEmpty() {
+    return _addedNodes.isEmpty() && _removedNodeIds.isEmpty() && _changedNodeIds.isEmpty();
+  }
+
+}
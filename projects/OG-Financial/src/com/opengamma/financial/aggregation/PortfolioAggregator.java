@@ -5,28 +5,42 @@
  */
 package com.opengamma.financial.aggregation;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.position.Portfolio;
 import com.opengamma.core.position.PortfolioNode;
 import com.opengamma.core.position.Position;
 import com.opengamma.core.position.impl.SimplePortfolio;
 import com.opengamma.core.position.impl.SimplePortfolioNode;
+import com.opengamma.core.security.Security;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.UniqueIdSupplier;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.ObjectsPair;
+import com.opengamma.util.tuple.Pair;
 
 /**
  * An aggregator of portfolios.
+ * <p>
+ * Within one call, the classification of each position by the aggregation functions is remembered against the unique identifiers, including
+ * the versions, of the position and its resolved security, so a position held under several nodes is only classified once. Nothing is remembered
+ * between calls; changes to a portfolio are applied to its {@link PortfolioAggregation}, which remembers the classifications of its own
+ * positions in the same way. If an executor is supplied, the positions are classified in parallel, so the aggregation functions must then be
+ * thread-safe.
  */
 public class PortfolioAggregator {
   @SuppressWarnings("unused")
@@ -35,20 +49,50 @@ public class PortfolioAggregator {
   private static final UniqueIdSupplier s_syntheticIdentifiers = new UniqueIdSupplier("PortfolioAggregator");
 
   private final List<AggregationFunction<?>> _aggregationFunctions;
+  private final ExecutorService _executor;
+  private final int _parallelism;
 
   public PortfolioAggregator(AggregationFunction<?>... aggregationFunctions) {
     _aggregationFunctions = Arrays.asList(aggregationFunctions);
+    _executor = null;
+    _parallelism = 1;
   }
-  
+
   public PortfolioAggregator(Collection<AggregationFunction<?>> aggregationFunctions) {
     _aggregationFunctions = new ArrayList<AggregationFunction<?>>(aggregationFunctions);
+    _executor = null;
+    _parallelism = 1;
+  }
+
+  /**
+   * @param aggregationFunctions  the aggregation functions, applied in order, not null
+   * @param executor  the executor used to classify the positions, not null
+   * @param parallelism  the number of tasks to split the positions into; typically the number of threads available to the executor
+   */
+  public PortfolioAggregator(Collection<AggregationFunction<?>> aggregationFunctions, ExecutorService executor, int parallelism) {
+    Validate.notNull(aggregationFunctions, "aggregation functions");
+    Validate.notNull(executor, "executor");
+    ArgumentChecker.notNegativeOrZero(parallelism, "parallelism");
+    _aggregationFunctions = new ArrayList<AggregationFunction<?>>(aggregationFunctions);
+    _executor = executor;
+    _parallelism = parallelism;
   }
 
-  private static UniqueId createSyntheticIdentifier() {
+  static UniqueId createSyntheticIdentifier() {
     return s_syntheticIdentifiers.get();
   }
 
   public Portfolio aggregate(Portfolio inputPortfolio) {
+    return createAggregation(inputPortfolio).getPortfolio();
+  }
+
+  /**
+   * Aggregates a portfolio, keeping the structure needed to apply subsequent changes to the positions without rebuilding it.
+   *
+   * @param inputPortfolio  the portfolio to aggregate, not null
+   * @return the aggregation, not null
+   */
+  public PortfolioAggregation createAggregation(Portfolio inputPortfolio) {
     UniqueId portfolioId = inputPortfolio.getUniqueId();
     UniqueId aggId;
     if (portfolioId != null) {
@@ -62,48 +106,97 @@ public class PortfolioAggregator {
     flatten(inputPortfolio.getRootNode(), flattenedPortfolio);
     final SimplePortfolioNode root = new SimplePortfolioNode(createSyntheticIdentifier(), buildPortfolioName("Portfolio"));
     SimplePortfolio aggPortfolio = new SimplePortfolio(aggId, aggPortfolioName, root);
-    aggregate(root, flattenedPortfolio, new ArrayDeque<AggregationFunction<?>>(_aggregationFunctions));
-    return aggPortfolio;
+    PortfolioAggregation aggregation = new PortfolioAggregation(this, aggPortfolio);
+    aggregation.addAll(flattenedPortfolio, classify(flattenedPortfolio));
+    return aggregation;
   }
-  
+
   protected void flatten(PortfolioNode portfolioNode, List<Position> flattenedPortfolio) {
-    flattenedPortfolio.addAll(portfolioNode.getPositions());    
+    flattenedPortfolio.addAll(portfolioNode.getPositions());
     for (PortfolioNode subNode : portfolioNode.getChildNodes()) {
       flatten(subNode, flattenedPortfolio);
     }
   }
-  
-  protected void aggregate(SimplePortfolioNode inputNode, List<Position> flattenedPortfolio, Queue<AggregationFunction<?>> functionList) {
-    AggregationFunction<?> nextFunction = functionList.remove();
-    Map<String, List<Position>> buckets = new TreeMap<String, List<Position>>();
-    // drop into buckets - could drop straight into tree but this is easier because we can use faster lookups as we're going.
-    for (Position position : flattenedPortfolio) {
-      Object obj = nextFunction.classifyPosition(position);
-      if (obj != null) {
-        String name = obj.toString();
-        if (buckets.containsKey(name)) {
-          buckets.get(name).add(position);
-        } else {
-          ArrayList<Position> list = new ArrayList<Position>();
-          list.add(position);
-          buckets.put(name, list);
+
+  /**
+   * Classifies positions with each of the aggregation functions in turn. The classification of a position is the names of the buckets that it
+   * falls into, one per aggregation function; if a function does not classify the position, that name and all subsequent names are null.
+   *
+   * @param positions  the positions, not null
+   * @return the classification of each position, not null
+   */
+  protected String[][] classify(final List<Position> positions) {
+    final int n = positions.size();
+    final String[][] classifications = new String[n][];
+    final ConcurrentMap<Pair<UniqueId, UniqueId>, String[]> known = new ConcurrentHashMap<Pair<UniqueId, UniqueId>, String[]>();
+    if (_executor == null || _parallelism == 1 || n < 2) {
+      classify(positions, classifications, known, 0, n);
+      return classifications;
+    }
+    final int chunkSize = (n + _parallelism - 1) / _parallelism;
+    final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(_parallelism);
+    for (int start = 0; start < n; start += chunkSize) {
+      final int from = start;
+      final int to = Math.min(start + chunkSize, n);
+      tasks.add(new Callable<Object>() {
+        @Override
+        public Object call() {
+          classify(positions, classifications, known, from, to);
+          return null;
         }
+      });
+    }
+    try {
+      for (Future<Object> future : _executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while classifying positions", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
+      throw new OpenGammaRuntimeException("Classifying positions failed", cause);
     }
-    for (String bucketName : buckets.keySet()) {
-      SimplePortfolioNode newNode = new SimplePortfolioNode();
-      newNode.setUniqueId(createSyntheticIdentifier());
-      newNode.setParentNodeId(inputNode.getUniqueId());
-      newNode.setName(bucketName);
-      inputNode.addChildNode(newNode);
-      if (functionList.isEmpty()) {
-        for (Position position : buckets.get(bucketName)) {
-          newNode.addPosition(position);
-        }
-      } else {
-        aggregate(newNode, buckets.get(bucketName), new ArrayDeque<AggregationFunction<?>>(functionList)); // make a copy for each bucket.
+    return classifications;
+  }
+
+  private void classify(final List<Position> positions, final String[][] classifications, final ConcurrentMap<Pair<UniqueId, UniqueId>, String[]> known,
+      final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      classifications[i] = classify(positions.get(i), known);
+    }
+  }
+
+  private String[] classify(final Position position, final ConcurrentMap<Pair<UniqueId, UniqueId>, String[]> known) {
+    final UniqueId uniqueId = position.getUniqueId();
+    Pair<UniqueId, UniqueId> key = null;
+    if (uniqueId != null) {
+      key = ObjectsPair.of(uniqueId, getSecurityId(position));
+      final String[] previous = known.get(key);
+      if (previous != null) {
+        return previous;
       }
     }
+    final String[] names = new String[_aggregationFunctions.size()];
+    for (int i = 0; i < names.length; i++) {
+      final Object obj = _aggregationFunctions.get(i).classifyPosition(position);
+      if (obj == null) {
+        break;
+      }
+      names[i] = obj.toString();
+    }
+    if (key != null) {
+      known.put(key, names);
+    }
+    return names;
+  }
+
+  static UniqueId getSecurityId(final Position position) {
+    final Security security = position.getSecurity();
+    return security != null ? security.getUniqueId() : null;
   }
 
   protected String buildPortfolioName(String existingName) {
@@ -119,4 +212,5 @@ public class PortfolioAggregator {
     }
     return aggregatedPortfolioName.toString();
   }
+
 }
@@ -5,10 +5,12 @@
  */
 package com.opengamma.financial.analytics;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -80,17 +82,17 @@ public abstract class FilteringSummingFunction extends PropertyPreservingFunctio
   //-------------------------------------------------------------------------
   @Override
   public Set<ComputedValue> execute(FunctionExecutionContext executionContext, FunctionInputs inputs, ComputationTarget target, Set<ValueRequirement> desiredValues) {
-    Object currentSum = null;
+    final List<Object> values = new ArrayList<Object>(inputs.getAllValues().size());
     for (ComputedValue input : inputs.getAllValues()) {
-      Object nextValue = input.getValue();
-      currentSum = addValue(currentSum, nextValue);
+      values.add(input.getValue());
     }
+    final Object currentSum = addValues(values);
     ComputedValue computedValue = new ComputedValue(new ValueSpecification(getValueName(), target.toSpecification(), getResultPropertiesFromInputs(inputs.getAllValues())), currentSum);
     return Collections.singleton(computedValue);
   }
   
-  protected Object addValue(Object currentTotal, Object value) {
-    return SumUtils.addValue(currentTotal, value, getValueName());
+  protected Object addValues(List<Object> values) {
+    return SumUtils.addValues(values, getValueName());
   }
 
   @Override
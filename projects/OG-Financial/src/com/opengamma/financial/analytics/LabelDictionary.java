@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * The distinct keys of one axis of several labelled matrices, with the index into the sorted distinct keys of every key of every matrix. Each
+ * distinct key is given an integer the first time it is seen, so summing k matrices with m keys in total, of which u are distinct, costs
+ * O(m log u) key comparisons and one index-aligned add per value, rather than a copy and sort of the running total for every matrix added.
+ * <p>
+ * Keys that compare as equal are given the same index, and take the key and label of the first matrix in which they appear.
+ *
+ * @param <K> The type of the keys
+ */
+/* package */final class LabelDictionary<K> {
+  private final K[] _keys;
+  private final Object[] _labels;
+  private final int[][] _indices;
+
+  /**
+   * @param keys  the keys of each matrix, not null or empty
+   * @param labels  the labels of each matrix, not null
+   * @param comparator  the comparator for the keys, not null
+   * @param ignoreLabels  false to throw an exception if the labels of equal keys do not match
+   */
+  /* package */LabelDictionary(final List<K[]> keys, final List<Object[]> labels, final Comparator<? super K> comparator, final boolean ignoreLabels) {
+    Validate.notEmpty(keys, "keys");
+    Validate.notNull(labels, "labels");
+    Validate.notNull(comparator, "comparator");
+    final int k = keys.size();
+    Validate.isTrue(labels.size() == k, "must have labels for every set of keys");
+    final Map<K, Integer> ids = new TreeMap<K, Integer>(comparator);
+    final List<Object> idLabels = new ArrayList<Object>();
+    _indices = new int[k][];
+    for (int i = 0; i < k; i++) {
+      final K[] matrixKeys = keys.get(i);
+      final Object[] matrixLabels = labels.get(i);
+      Validate.isTrue(matrixLabels.length == matrixKeys.length, "must have a label for every key");
+      final int[] indices = new int[matrixKeys.length];
+      for (int j = 0; j < matrixKeys.length; j++) {
+        final Integer id = ids.get(matrixKeys[j]);
+        if (id == null) {
+          indices[j] = idLabels.size();
+          ids.put(matrixKeys[j], indices[j]);
+          idLabels.add(matrixLabels[j]);
+        } else {
+          indices[j] = id;
+          if (!ignoreLabels && !ObjectUtils.equals(idLabels.get(id), matrixLabels[j])) {
+            throw new IllegalArgumentException("Have a value for " + matrixKeys[j] + " but the label of the value to add (" + matrixLabels[j]
+                + ") did not match the original (" + idLabels.get(id) + ")");
+          }
+        }
+      }
+      _indices[i] = indices;
+    }
+    // replace the identifiers by the positions of the keys in sorted order
+    final int n = idLabels.size();
+    _keys = Arrays.copyOf(keys.get(0), n);
+    _labels = new Object[n];
+    final int[] positions = new int[n];
+    int position = 0;
+    for (final Map.Entry<K, Integer> entry : ids.entrySet()) {
+      final int id = entry.getValue();
+      _keys[position] = entry.getKey();
+      _labels[position] = idLabels.get(id);
+      positions[id] = position++;
+    }
+    for (final int[] indices : _indices) {
+      for (int j = 0; j < indices.length; j++) {
+        indices[j] = positions[indices[j]];
+      }
+    }
+  }
+
+  /**
+   * Gets the distinct keys, sorted.
+   *
+   * @return the keys
+   */
+  public K[] getKeys() {
+    return _keys;
+  }
+
+  /**
+   * Gets the labels of the distinct keys.
+   *
+   * @return the labels
+   */
+  public Object[] getLabels() {
+    return _labels;
+  }
+
+  /**
+   * Gets the index into the distinct keys of each of the keys of a matrix.
+   *
+   * @param matrix  the position of the matrix in the list of keys
+   * @return the indices
+   */
+  public int[] getIndices(final int matrix) {
+    return _indices[matrix];
+  }
+
+  public int size() {
+    return _keys.length;
+  }
+
+}
@@ -5,7 +5,10 @@
  */
 package com.opengamma.financial.analytics;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import org.apache.commons.lang.Validate;
 
@@ -187,6 +190,88 @@ public abstract class LabelledMatrix1D<S extends Comparable<S>, T> {
     return add(key, label, value, tolerance, false);
   }
 
+  /**
+   * Adds labelled matrices to this one and returns a new matrix.
+   * <p>
+   * The result is the same as adding each matrix in turn with {@link #addIgnoringLabel(LabelledMatrix1D)}, but the keys of all of the matrices are
+   * merged in a single pass rather than being searched for and sorted on each addition.
+   * @param others The labelled matrices to add, not null
+   * @return The sum of the matrices
+   */
+  public LabelledMatrix1D<S, T> addAllIgnoringLabel(final List<? extends LabelledMatrix1D<S, T>> others) {
+    return addAllIgnoringLabel(others, getDefaultTolerance());
+  }
+
+  /**
+   * Adds labelled matrices to this one and returns a new matrix.
+   * <p>
+   * The result is the same as adding each matrix in turn with {@link #addIgnoringLabel(LabelledMatrix1D, Object)}, but the keys of all of the
+   * matrices are merged in a single pass rather than being searched for and sorted on each addition.
+   * @param others The labelled matrices to add, not null
+   * @param tolerance The tolerance
+   * @return The sum of the matrices
+   */
+  public LabelledMatrix1D<S, T> addAllIgnoringLabel(final List<? extends LabelledMatrix1D<S, T>> others, final T tolerance) {
+    return addAll(others, tolerance, true);
+  }
+
+  /**
+   * Adds labelled matrices to this one and returns a new matrix.
+   * <p>
+   * The result is the same as adding each matrix in turn with {@link #add(LabelledMatrix1D)}, but the keys of all of the matrices are merged in a
+   * single pass rather than being searched for and sorted on each addition. If a key is present in more than one matrix but the labels do not
+   * match, then an exception is thrown.
+   * @param others The labelled matrices to add, not null
+   * @return The sum of the matrices
+   */
+  public LabelledMatrix1D<S, T> addAll(final List<? extends LabelledMatrix1D<S, T>> others) {
+    return addAll(others, getDefaultTolerance());
+  }
+
+  /**
+   * Adds labelled matrices to this one and returns a new matrix.
+   * <p>
+   * The result is the same as adding each matrix in turn with {@link #add(LabelledMatrix1D, Object)}, but the keys of all of the matrices are merged
+   * in a single pass rather than being searched for and sorted on each addition. If a key is present in more than one matrix but the labels do not
+   * match, then an exception is thrown.
+   * @param others The labelled matrices to add, not null
+   * @param tolerance The tolerance
+   * @return The sum of the matrices
+   */
+  public LabelledMatrix1D<S, T> addAll(final List<? extends LabelledMatrix1D<S, T>> others, final T tolerance) {
+    return addAll(others, tolerance, false);
+  }
+
+  protected LabelledMatrix1D<S, T> addAll(final List<? extends LabelledMatrix1D<S, T>> others, final T tolerance, final boolean ignoreLabel) {
+    Validate.noNullElements(others, "labelled matrices");
+    final List<S[]> keys = new ArrayList<S[]>(others.size() + 1);
+    final List<Object[]> labels = new ArrayList<Object[]>(others.size() + 1);
+    keys.add(getKeys());
+    labels.add(getLabels());
+    for (final LabelledMatrix1D<S, T> other : others) {
+      keys.add(other.getKeys());
+      labels.add(other.getLabels());
+    }
+    final LabelDictionary<S> dictionary = new LabelDictionary<S>(keys, labels, new Comparator<S>() {
+      @Override
+      public int compare(final S key1, final S key2) {
+        return LabelledMatrix1D.this.compare(key1, key2, tolerance);
+      }
+    }, ignoreLabel);
+    final double[] newValues = new double[dictionary.size()];
+    add(newValues, getValues(), dictionary.getIndices(0));
+    for (int i = 0; i < others.size(); i++) {
+      add(newValues, others.get(i).getValues(), dictionary.getIndices(i + 1));
+    }
+    return getMatrix(dictionary.getKeys(), dictionary.getLabels(), newValues);
+  }
+
+  private static void add(final double[] total, final double[] values, final int[] indices) {
+    for (int i = 0; i < values.length; i++) {
+      total[indices[i]] += values[i];
+    }
+  }
+
   protected LabelledMatrix1D<S, T> add(final LabelledMatrix1D<S, T> other, final T tolerance, final boolean ignoreLabel) {
     Validate.notNull(other, "labelled matrix");
     final S[] otherKeys = other.getKeys();
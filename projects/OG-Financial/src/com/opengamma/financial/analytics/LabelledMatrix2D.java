@@ -7,7 +7,10 @@ package com.opengamma.financial.analytics;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import org.apache.commons.lang.Validate;
 
@@ -145,6 +148,66 @@ public abstract class LabelledMatrix2D<S extends Comparable<S>, T extends Compar
     return getMatrix(newXKeys, newXLabels, newYKeys, newYLabels, newValues);
   }
 
+  /**
+   * Adds labelled matrices to this one and returns a new matrix. The result is the same as adding each matrix in turn with
+   * {@link #add(LabelledMatrix2D, Object, Object)}, but the keys of all of the matrices are merged in a single pass rather than being searched for
+   * and sorted on each addition.
+   * 
+   * @param <X> The type of the x tolerance
+   * @param <Y> The type of the y tolerance
+   * @param others The labelled matrices to add, not null
+   * @param xTolerance The tolerance for equality of the x keys
+   * @param yTolerance The tolerance for equality of the y keys
+   * @return The sum of the matrices
+   */
+  public <X, Y> LabelledMatrix2D<S, T> addAll(final List<? extends LabelledMatrix2D<S, T>> others, final X xTolerance, final Y yTolerance) {
+    Validate.noNullElements(others, "labelled matrices");
+    final int k = others.size() + 1;
+    final List<S[]> xKeys = new ArrayList<S[]>(k);
+    final List<Object[]> xLabels = new ArrayList<Object[]>(k);
+    final List<T[]> yKeys = new ArrayList<T[]>(k);
+    final List<Object[]> yLabels = new ArrayList<Object[]>(k);
+    final List<double[][]> values = new ArrayList<double[][]>(k);
+    xKeys.add(getXKeys());
+    xLabels.add(getXLabels());
+    yKeys.add(getYKeys());
+    yLabels.add(getYLabels());
+    values.add(getValues());
+    for (final LabelledMatrix2D<S, T> other : others) {
+      xKeys.add(other.getXKeys());
+      xLabels.add(other.getXLabels());
+      yKeys.add(other.getYKeys());
+      yLabels.add(other.getYLabels());
+      values.add(other.getValues());
+    }
+    final LabelDictionary<S> xDictionary = new LabelDictionary<S>(xKeys, xLabels, new Comparator<S>() {
+      @Override
+      public int compare(final S key1, final S key2) {
+        return compareX(key1, key2, xTolerance);
+      }
+    }, true);
+    final LabelDictionary<T> yDictionary = new LabelDictionary<T>(yKeys, yLabels, new Comparator<T>() {
+      @Override
+      public int compare(final T key1, final T key2) {
+        return compareY(key1, key2, yTolerance);
+      }
+    }, true);
+    final double[][] newValues = new double[yDictionary.size()][xDictionary.size()];
+    for (int m = 0; m < k; m++) {
+      final int[] xIndices = xDictionary.getIndices(m);
+      final int[] yIndices = yDictionary.getIndices(m);
+      final double[][] matrixValues = values.get(m);
+      for (int i = 0; i < yIndices.length; i++) {
+        final double[] row = newValues[yIndices[i]];
+        final double[] matrixRow = matrixValues[i];
+        for (int j = 0; j < xIndices.length; j++) {
+          row[xIndices[j]] += matrixRow[j];
+        }
+      }
+    }
+    return getMatrix(xDictionary.getKeys(), xDictionary.getLabels(), yDictionary.getKeys(), yDictionary.getLabels(), newValues);
+  }
+
   protected <X> int binarySearchInXWithTolerance(final S[] keys, final S key, final X tolerance) {
     int low = 0;
     int high = keys.length - 1;
@@ -7,8 +7,10 @@ package com.opengamma.financial.analytics;
 
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.Validate;
@@ -499,6 +501,111 @@ public abstract class LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, SUBCLASS> {
     return create(xKeys, xLabels, yKeys, yLabels, zKeys, zLabels, values);
   }
 
+  /**
+   * Adds labeled matrices to this one to create a new matrix. The result is the same as adding each matrix in turn with
+   * {@link #addIgnoringLabel(LabelledMatrix3D, Object, Object, Object)}, but the keys of all of the matrices are merged in a single pass rather than
+   * one matrix at a time.
+   * 
+   * @param others Other labeled matrices
+   * @param xTolerance tolerance for detecting a match on the X keys
+   * @param yTolerance tolerance for detecting a match on the Y keys
+   * @param zTolerance tolerance for detecting a match on the Z keys
+   * @return The sum of the matrices
+   */
+  public SUBCLASS addAllIgnoringLabel(final List<? extends LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, ?>> others, final TX xTolerance, final TY yTolerance,
+      final TZ zTolerance) {
+    return addImpl(others, xTolerance, yTolerance, zTolerance, true);
+  }
+
+  /**
+   * Adds labeled matrices to this one to create a new matrix. The result is the same as adding each matrix in turn with
+   * {@link #addIgnoringLabel(LabelledMatrix3D)}, but the keys of all of the matrices are merged in a single pass rather than one matrix at a time.
+   * 
+   * @param others Other labeled matrices
+   * @return The sum of the matrices
+   */
+  public SUBCLASS addAllIgnoringLabel(final List<? extends LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, ?>> others) {
+    return addAllIgnoringLabel(others, getDefaultToleranceX(), getDefaultToleranceY(), getDefaultToleranceZ());
+  }
+
+  /**
+   * Adds labeled matrices to this one to create a new matrix. The result is the same as adding each matrix in turn with
+   * {@link #add(LabelledMatrix3D, Object, Object, Object)}, but the keys of all of the matrices are merged in a single pass rather than one matrix
+   * at a time. If the labels of a key differ between matrices, an exception is thrown.
+   * 
+   * @param others Other labeled matrices
+   * @param xTolerance tolerance for detecting a match on the X keys
+   * @param yTolerance tolerance for detecting a match on the Y keys
+   * @param zTolerance tolerance for detecting a match on the Z keys
+   * @return The sum of the matrices
+   */
+  public SUBCLASS addAll(final List<? extends LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, ?>> others, final TX xTolerance, final TY yTolerance, final TZ zTolerance) {
+    return addImpl(others, xTolerance, yTolerance, zTolerance, false);
+  }
+
+  /**
+   * Adds labeled matrices to this one to create a new matrix. The result is the same as adding each matrix in turn with
+   * {@link #add(LabelledMatrix3D)}, but the keys of all of the matrices are merged in a single pass rather than one matrix at a time. If the
+   * labels of a key differ between matrices, an exception is thrown.
+   * 
+   * @param others Other labeled matrices
+   * @return The sum of the matrices
+   */
+  public SUBCLASS addAll(final List<? extends LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, ?>> others) {
+    return addAll(others, getDefaultToleranceX(), getDefaultToleranceY(), getDefaultToleranceZ());
+  }
+
+  protected SUBCLASS addImpl(final List<? extends LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, ?>> others, final TX xTolerance, final TY yTolerance,
+      final TZ zTolerance, final boolean ignoreLabels) {
+    Validate.noNullElements(others, "others");
+    final int k = others.size() + 1;
+    final List<KX[]> xKeys = new ArrayList<KX[]>(k);
+    final List<Object[]> xLabels = new ArrayList<Object[]>(k);
+    final List<KY[]> yKeys = new ArrayList<KY[]>(k);
+    final List<Object[]> yLabels = new ArrayList<Object[]>(k);
+    final List<KZ[]> zKeys = new ArrayList<KZ[]>(k);
+    final List<Object[]> zLabels = new ArrayList<Object[]>(k);
+    final List<double[][][]> values = new ArrayList<double[][][]>(k);
+    xKeys.add(_xKeys);
+    xLabels.add(_xLabels);
+    yKeys.add(_yKeys);
+    yLabels.add(_yLabels);
+    zKeys.add(_zKeys);
+    zLabels.add(_zLabels);
+    values.add(_values);
+    for (final LabelledMatrix3D<KX, KY, KZ, TX, TY, TZ, ?> other : others) {
+      xKeys.add(other.getXKeys());
+      xLabels.add(other.getXLabels());
+      yKeys.add(other.getYKeys());
+      yLabels.add(other.getYLabels());
+      zKeys.add(other.getZKeys());
+      zLabels.add(other.getZLabels());
+      values.add(other.getValues());
+    }
+    final LabelDictionary<KX> xDictionary = new LabelDictionary<KX>(xKeys, xLabels, compareKeysX(xTolerance), ignoreLabels);
+    final LabelDictionary<KY> yDictionary = new LabelDictionary<KY>(yKeys, yLabels, compareKeysY(yTolerance), ignoreLabels);
+    final LabelDictionary<KZ> zDictionary = new LabelDictionary<KZ>(zKeys, zLabels, compareKeysZ(zTolerance), ignoreLabels);
+    final double[][][] newValues = new double[zDictionary.size()][yDictionary.size()][xDictionary.size()];
+    for (int m = 0; m < k; m++) {
+      final int[] xIndex = xDictionary.getIndices(m);
+      final int[] yIndex = yDictionary.getIndices(m);
+      final int[] zIndex = zDictionary.getIndices(m);
+      final double[][][] matrixValues = values.get(m);
+      for (int z = 0; z < zIndex.length; z++) {
+        final double[][] plane = newValues[zIndex[z]];
+        for (int y = 0; y < yIndex.length; y++) {
+          final double[] row = plane[yIndex[y]];
+          final double[] matrixRow = matrixValues[z][y];
+          for (int x = 0; x < xIndex.length; x++) {
+            row[xIndex[x]] += matrixRow[x];
+          }
+        }
+      }
+    }
+    return create(xDictionary.getKeys(), xDictionary.getLabels(), yDictionary.getKeys(), yDictionary.getLabels(), zDictionary.getKeys(), zDictionary.getLabels(),
+        newValues);
+  }
+
   /**
    * Returns the keys for the X dimension.
    * 
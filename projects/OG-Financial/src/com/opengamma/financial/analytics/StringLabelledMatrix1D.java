@@ -5,6 +5,8 @@
  */
 package com.opengamma.financial.analytics;
 
+import java.util.List;
+
 /**
  * 
  */
@@ -39,4 +41,14 @@ public class StringLabelledMatrix1D extends LabelledMatrix1D<String, String> {
     return addIgnoringLabel(other);
   }
 
+  @Override
+  public LabelledMatrix1D<String, String> addAll(final List<? extends LabelledMatrix1D<String, String>> others) {
+    return addAllIgnoringLabel(others);
+  }
+
+  @Override
+  public LabelledMatrix1D<String, String> addAll(final List<? extends LabelledMatrix1D<String, String>> others, final String tolerance) {
+    return addAllIgnoringLabel(others);
+  }
+
 }
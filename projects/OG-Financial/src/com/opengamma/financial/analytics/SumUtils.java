@@ -20,6 +20,54 @@ import com.opengamma.util.tuple.DoublesPair;
  */
 public class SumUtils {
 
+  /**
+   * Sums values. Labelled matrices of the same type are summed in a single pass over all of their keys; other values are added in turn with
+   * {@link #addValue}.
+   * 
+   * @param values the values to sum, not null
+   * @param valueName the name of the value requirement, for error messages
+   * @return the sum, or null if there are no values
+   */
+  public static Object addValues(final List<Object> values, final String valueName) {
+    if (values.isEmpty()) {
+      return null;
+    }
+    final Object first = values.get(0);
+    if ((first instanceof LabelledMatrix1D) || (first instanceof DoubleLabelledMatrix2D)) {
+      for (final Object value : values) {
+        if (value.getClass() != first.getClass()) {
+          throw new IllegalArgumentException("Inputs have different value types for requirement " + valueName);
+        }
+      }
+      final List<Object> others = values.subList(1, values.size());
+      if (first instanceof DoubleLabelledMatrix2D) {
+        return addMatrices((DoubleLabelledMatrix2D) first, others);
+      } else if ((first instanceof CurrencyLabelledMatrix1D) || (first instanceof StringLabelledMatrix1D)) {
+        return addMatrices((LabelledMatrix1D<?, ?>) first, others, true);
+      } else if ((first instanceof DoubleLabelledMatrix1D) || (first instanceof LocalDateLabelledMatrix1D) || (first instanceof ZonedDateTimeLabelledMatrix1D)) {
+        return addMatrices((LabelledMatrix1D<?, ?>) first, others, false);
+      }
+    }
+    Object currentTotal = null;
+    for (final Object value : values) {
+      currentTotal = addValue(currentTotal, value, valueName);
+    }
+    return currentTotal;
+  }
+
+  // the values have all been checked to be of the same class as the first
+  @SuppressWarnings("unchecked")
+  private static <S extends Comparable<S>, T> LabelledMatrix1D<S, T> addMatrices(final LabelledMatrix1D<S, T> first, final List<Object> others,
+      final boolean ignoreLabel) {
+    final List<LabelledMatrix1D<S, T>> matrices = (List<LabelledMatrix1D<S, T>>) (List<?>) others;
+    return ignoreLabel ? first.addAllIgnoringLabel(matrices) : first.addAll(matrices);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static LabelledMatrix2D<Double, Double> addMatrices(final DoubleLabelledMatrix2D first, final List<Object> others) {
+    return first.addAll((List<LabelledMatrix2D<Double, Double>>) (List<?>) others, 0.005, 0.005);
+  }
+
   public static Object addValue(final Object currentTotal, final Object value, final String valueName) {
     if (currentTotal == null) {
       return value;
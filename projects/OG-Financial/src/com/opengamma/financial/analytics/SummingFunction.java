@@ -5,10 +5,12 @@
  */
 package com.opengamma.financial.analytics;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -94,18 +96,18 @@ public class SummingFunction extends PropertyPreservingFunction {
   public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
     final PortfolioNode node = target.getPortfolioNode();
     final Set<Position> allPositions = PositionAccumulator.getAccumulatedPositions(node);
-    Object currentSum = null;
+    final List<Object> values = new ArrayList<Object>(allPositions.size());
     for (final Position position : allPositions) {
       final ValueRequirement requirement = new ValueRequirement(_requirementName, ComputationTargetType.POSITION, position.getUniqueId());
-      final Object positionValue = inputs.getValue(requirement);
-      currentSum = addValue(currentSum, positionValue);
+      values.add(inputs.getValue(requirement));
     }
+    final Object currentSum = addValues(values);
     final ComputedValue computedValue = new ComputedValue(new ValueSpecification(_requirementName, target.toSpecification(), getResultPropertiesFromInputs(inputs.getAllValues())), currentSum);
     return Collections.singleton(computedValue);
   }
 
-  protected Object addValue(final Object previousSum, final Object currentValue) {
-    return SumUtils.addValue(previousSum, currentValue, getRequirementName());
+  protected Object addValues(final List<Object> values) {
+    return SumUtils.addValues(values, getRequirementName());
   }
 
   @Override
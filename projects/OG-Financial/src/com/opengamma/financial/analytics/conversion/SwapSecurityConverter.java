@@ -5,6 +5,9 @@
  */
 package com.opengamma.financial.analytics.conversion;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.time.calendar.Period;
 import javax.time.calendar.ZonedDateTime;
 
@@ -19,6 +22,7 @@ import com.opengamma.financial.convention.ConventionBundle;
 import com.opengamma.financial.convention.ConventionBundleSource;
 import com.opengamma.financial.convention.InMemoryConventionBundleMaster;
 import com.opengamma.financial.convention.calendar.Calendar;
+import com.opengamma.financial.convention.calendar.CompiledCalendar;
 import com.opengamma.financial.convention.daycount.DayCount;
 import com.opengamma.financial.convention.frequency.Frequency;
 import com.opengamma.financial.instrument.FixedIncomeInstrumentConverter;
@@ -41,15 +45,23 @@ import com.opengamma.financial.security.swap.SwapLeg;
 import com.opengamma.financial.security.swap.SwapSecurity;
 import com.opengamma.financial.security.swap.SwapSecurityVisitor;
 import com.opengamma.id.ExternalId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.AbstractMasterSource;
 import com.opengamma.util.money.Currency;
 
 /**
- * 
+ * Converts swap securities to definitions.
+ * <p>
+ * If the holiday source is fixed at a version, as the sources latched by the view processor manager are, the calendar of each region is
+ * compiled the first time that it is used and kept until the version-correction changes; like the latching, this does not see corrections. Because the compiled calendars are immutable, the
+ * payment schedules generated with them are remembered by {@link com.opengamma.financial.schedule.ScheduleCache}. Otherwise holidays may change
+ * at any time, so the calendars are read from the holiday source on each use.
  */
 public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeInstrumentConverter<?>> {
   private final HolidaySource _holidaySource;
   private final ConventionBundleSource _conventionSource;
   private final RegionSource _regionSource;
+  private volatile CompiledCalendars _calendars;
 
   public SwapSecurityConverter(final HolidaySource holidaySource, final ConventionBundleSource conventionSource,
       final RegionSource regionSource) {
@@ -100,7 +112,7 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     final FixedInterestRateLeg fixedLeg = (FixedInterestRateLeg) (payFixed ? payLeg : receiveLeg);
     final FloatingInterestRateLeg floatLeg = (FloatingInterestRateLeg) (payFixed ? receiveLeg : payLeg);
     final ExternalId regionId = payLeg.getRegionIdentifier();
-    final Calendar calendar = CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId);
+    final Calendar calendar = getCalendar(regionId);
     final Currency currency = ((InterestRateNotional) payLeg.getNotional()).getCurrency();
     final String currencyString = currency.getCode();
     final ConventionBundle conventions = _conventionSource.getConventionBundle(ExternalId.of(
@@ -122,7 +134,7 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     final FloatingInterestRateLeg floatPayLeg = (FloatingInterestRateLeg) payLeg;
     final FloatingInterestRateLeg floatReceiveLeg = (FloatingInterestRateLeg) receiveLeg;
     final ExternalId regionId = payLeg.getRegionIdentifier();
-    final Calendar calendar = CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId);
+    final Calendar calendar = getCalendar(regionId);
     final Currency currency = ((InterestRateNotional) payLeg.getNotional()).getCurrency();
     final AnnuityCouponIborSpreadDefinition payLegDefinition = getFloatingSwapLegWithSpreadDefinition(effectiveDate,
         maturityDate, floatPayLeg, calendar, currency, true);
@@ -139,7 +151,7 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     final FloatingInterestRateLeg floatPayLeg = (FloatingInterestRateLeg) payLeg;
     final FloatingInterestRateLeg floatReceiveLeg = (FloatingInterestRateLeg) receiveLeg;
     final ExternalId regionId = payLeg.getRegionIdentifier();
-    final Calendar calendar = CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId);
+    final Calendar calendar = getCalendar(regionId);
     final Currency currency = ((InterestRateNotional) payLeg.getNotional()).getCurrency();
     final AnnuityCouponCMSDefinition cmsPayLeg = getCMSwapLegDefinition(effectiveDate, maturityDate, floatPayLeg, calendar, currency, true);
     final AnnuityCouponCMSDefinition cmsReceiveLeg = getCMSwapLegDefinition(effectiveDate, maturityDate, floatReceiveLeg, calendar, currency, false);
@@ -154,7 +166,7 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     final FixedInterestRateLeg fixedLeg = (FixedInterestRateLeg) (payFixed ? payLeg : receiveLeg);
     final FloatingInterestRateLeg floatingLeg = (FloatingInterestRateLeg) (payFixed ? receiveLeg : payLeg);
     final ExternalId regionId = payLeg.getRegionIdentifier();
-    final Calendar calendar = CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId);
+    final Calendar calendar = getCalendar(regionId);
     final Currency currency = ((InterestRateNotional) payLeg.getNotional()).getCurrency();
     final ConventionBundle conventions = _conventionSource.getConventionBundle(ExternalId.of(
         InMemoryConventionBundleMaster.SIMPLE_NAME_SCHEME, currency.getCode() + "_SWAP"));
@@ -178,7 +190,7 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     final FloatingInterestRateLeg iborLeg = payIbor ? floatPayLeg : floatReceiveLeg;
     final FloatingInterestRateLeg cmsLeg = payIbor ? floatReceiveLeg : floatPayLeg;
     final ExternalId regionId = payLeg.getRegionIdentifier();
-    final Calendar calendar = CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId);
+    final Calendar calendar = getCalendar(regionId);
     final Currency currency = ((InterestRateNotional) payLeg.getNotional()).getCurrency();
     final AnnuityCouponCMSDefinition cmsAnnuity = getCMSwapLegDefinition(effectiveDate, maturityDate, cmsLeg, calendar, currency, !payIbor);
     final AnnuityCouponIborDefinition iborAnnuity = getIborSwapLegDefinition(effectiveDate, maturityDate, iborLeg, calendar, currency, payIbor);
@@ -260,6 +272,42 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     return AnnuityCouponCMSDefinition.from(effectiveDate, maturityDate, notional, cmsIndex, tenor, dayCount, isPayer);
   }
 
+  private Calendar getCalendar(final ExternalId regionId) {
+    final VersionCorrection versionCorrection = getHolidayVersionCorrection();
+    if (versionCorrection == null) {
+      return CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId);
+    }
+    CompiledCalendars calendars = _calendars;
+    if (calendars == null || !calendars._versionCorrection.equals(versionCorrection)) {
+      calendars = new CompiledCalendars(versionCorrection);
+      _calendars = calendars;
+    }
+    Calendar calendar = calendars._calendars.get(regionId);
+    if (calendar == null) {
+      calendar = CompiledCalendar.of(CalendarUtils.getCalendar(_regionSource, _holidaySource, regionId));
+      final Calendar existing = calendars._calendars.putIfAbsent(regionId, calendar);
+      if (existing != null) {
+        calendar = existing;
+      }
+    }
+    return calendar;
+  }
+
+  /**
+   * Gets the version-correction of the holiday source, if it is fixed at a version.
+   * 
+   * @return the version-correction, null if the holiday source is not fixed at a version
+   */
+  private VersionCorrection getHolidayVersionCorrection() {
+    if (_holidaySource instanceof AbstractMasterSource) {
+      final VersionCorrection versionCorrection = ((AbstractMasterSource<?, ?>) _holidaySource).getVersionCorrection();
+      if (versionCorrection != null && versionCorrection.getVersionAsOf() != null) {
+        return versionCorrection;
+      }
+    }
+    return null;
+  }
+
   // FIXME: convert frequency to period in a better way
   private Period getTenor(final Frequency freq) {
     Period tenor;
@@ -277,4 +325,17 @@ public class SwapSecurityConverter implements SwapSecurityVisitor<FixedIncomeIns
     }
     return tenor;
   }
+
+  /**
+   * The calendars compiled from one version-correction of the holiday source.
+   */
+  private static final class CompiledCalendars {
+    private final VersionCorrection _versionCorrection;
+    private final ConcurrentMap<ExternalId, Calendar> _calendars = new ConcurrentHashMap<ExternalId, Calendar>();
+
+    private CompiledCalendars(final VersionCorrection versionCorrection) {
+      _versionCorrection = versionCorrection;
+    }
+  }
+
 }
@@ -58,6 +58,8 @@ import com.opengamma.financial.interestrate.PresentValueCalculator;
 import com.opengamma.financial.interestrate.PresentValueCouponSensitivityCalculator;
 import com.opengamma.financial.interestrate.PresentValueSensitivityCalculator;
 import com.opengamma.financial.interestrate.YieldCurveBundle;
+import com.opengamma.financial.interestrate.YieldCurveCalibrationProblem;
+import com.opengamma.financial.interestrate.YieldCurveCalibrator;
 import com.opengamma.financial.model.interestrate.curve.YieldAndDiscountCurve;
 import com.opengamma.financial.model.interestrate.curve.YieldCurve;
 import com.opengamma.financial.security.FinancialSecurity;
@@ -93,6 +95,10 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
   public static final String PAR_RATE_STRING = "ParRate";
   /** Label setting this function to use the present value of the instruments in root-finding */
   public static final String PRESENT_VALUE_STRING = "PresentValue";
+  /** The largest change in the market data for which the previous curves can be reused */
+  private static final double QUOTE_TOLERANCE = 1e-8;
+  /** Remembers the last solution for each set of curves, to start the next calibration from */
+  private static final YieldCurveCalibrator CALIBRATOR = new YieldCurveCalibrator(QUOTE_TOLERANCE);
 
   private final YieldCurveFunctionHelper _fundingHelper;
   private final YieldCurveFunctionHelper _forwardHelper;
@@ -100,6 +106,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
   private final ComputationTargetSpecification _currencySpec;
   private final String _fundingCurveDefinitionName;
   private final String _forwardCurveDefinitionName;
+  private final String _calibrationName;
   private final InterestRateDerivativeVisitor<YieldCurveBundle, Double> _calculator;
   private final InterestRateDerivativeVisitor<YieldCurveBundle, Map<String, List<DoublesPair>>> _sensitivityCalculator;
 
@@ -143,6 +150,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
     _forwardCurveDefinitionName = forwardCurveDefinitionName;
     _currencySpec = new ComputationTargetSpecification(currency);
     _calculationType = calculationType;
+    _calibrationName = currency.getCode() + "_" + fundingCurveDefinitionName + "_" + forwardCurveDefinitionName + "_" + calculationType;
     if (calculationType.equals(PAR_RATE_STRING)) {
       _calculator = ParRateCalculator.getInstance();
       _sensitivityCalculator = ParRateCurveSensitivityCalculator.getInstance();
@@ -155,6 +163,14 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
     }
   }
 
+  /**
+   * Gets the calibrator shared by every instance of this function, to expose its statistics.
+   * @return the calibrator, not null
+   */
+  public static YieldCurveCalibrator getCalibrator() {
+    return CALIBRATOR;
+  }
+
   @Override
   public void init(final FunctionCompilationContext context) {
     _fundingCurveResult = new ValueSpecification(ValueRequirementNames.YIELD_CURVE, _currencySpec,
@@ -281,6 +297,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
       final double[] fundingNodeTimes = new double[nFunding];
       final double[] forwardNodeTimes = new double[nForward];
       final double[] marketValues = new double[nFunding + nForward];
+      final double[] marketQuotes = new double[nFunding + nForward];
       int i = 0, fundingIndex = 0, forwardIndex = 0;
       for (final FixedIncomeStripWithSecurity strip : fundingCurveSpecificationWithSecurities.getStrips()) {
 
@@ -304,6 +321,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
         } else {
           marketValues[i] = getNormalizedData(strip, marketValue);
         }
+        marketQuotes[i] = marketValue;
         derivatives.add(derivative);
         initialRatesGuess[i++] = 0.01;
         fundingNodeTimes[fundingIndex] = LAST_DATE_CALCULATOR.visit(derivative);
@@ -332,6 +350,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
         } else {
           marketValues[i] = getNormalizedData(strip, marketValue);
         }
+        marketQuotes[i] = marketValue;
         derivatives.add(derivative);
         initialRatesGuess[i++] = 0.01;
         forwardNodeTimes[forwardIndex] = LAST_DATE_CALCULATOR.visit(derivative);
@@ -362,22 +381,22 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
           _calculator);
       final Function1D<DoubleMatrix1D, DoubleMatrix2D> jacobianCalculator = new MultipleYieldCurveFinderJacobian(data,
           _sensitivityCalculator);
+      final YieldCurveCalibrationProblem problem = new YieldCurveCalibrationProblem(_calibrationName, curveCalculator, jacobianCalculator, marketQuotes,
+          initialRatesGuess, 5e-4);
       NewtonVectorRootFinder rootFinder;
       double[] yields = null;
       try {
         // TODO have the decomposition as an optional input [FIN-146]
         rootFinder = new BroydenVectorRootFinder(5e-4, 5e-4, 1000,
             DecompositionFactory.getDecomposition(DecompositionFactory.LU_COMMONS_NAME));
-        final DoubleMatrix1D result = rootFinder.getRoot(curveCalculator, jacobianCalculator, new DoubleMatrix1D(initialRatesGuess));
-        yields = result.getData();
+        yields = CALIBRATOR.calibrate(problem, rootFinder).getNodeValues();
       } catch (final Exception eLU) {
         try {
           s_logger.warn("Could not find root using LU decomposition and present value method for curves " +
               _fundingCurveDefinitionName + " and " + _forwardCurveDefinitionName + "; trying SV. Error was: " + eLU.getMessage());
           rootFinder = new BroydenVectorRootFinder(5e-4, 5e-4, 1000,
               DecompositionFactory.getDecomposition(DecompositionFactory.SV_COMMONS_NAME));
-          yields = rootFinder.getRoot(curveCalculator, jacobianCalculator, new DoubleMatrix1D(initialRatesGuess))
-              .getData();
+          yields = CALIBRATOR.calibrate(problem, rootFinder).getNodeValues();
         } catch (final Exception eSV) {
           s_logger.warn("Could not find root using SV decomposition and present value method for curves " +
               _fundingCurveDefinitionName + " and " + _forwardCurveDefinitionName + ". Error was: " + eSV.getMessage());
@@ -455,6 +474,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
       final double[] initialRatesGuess = new double[n];
       final double[] nodeTimes = new double[n];
       final double[] marketValues = new double[n];
+      final double[] marketQuotes = new double[n];
       int i = 0;
       for (final FixedIncomeStripWithSecurity strip : specificationWithSecurities.getStrips()) {
         final Double marketValue = marketDataMap.get(strip.getSecurityIdentifier());
@@ -475,6 +495,7 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
         } else {
           marketValues[i] = getNormalizedData(strip, marketValue);
         }
+        marketQuotes[i] = marketValue;
         derivatives.add(derivative);
         initialRatesGuess[i] = 0.01;
         nodeTimes[i] = LAST_DATE_CALCULATOR.visit(derivative);
@@ -498,23 +519,22 @@ public class MarketInstrumentImpliedYieldCurveFunction extends AbstractFunction
           _calculator);
       final Function1D<DoubleMatrix1D, DoubleMatrix2D> jacobianCalculator = new MultipleYieldCurveFinderJacobian(data,
           _sensitivityCalculator);
+      final YieldCurveCalibrationProblem problem = new YieldCurveCalibrationProblem(_calibrationName, curveCalculator, jacobianCalculator, marketQuotes,
+          initialRatesGuess, 1e-7);
       NewtonVectorRootFinder rootFinder;
       double[] yields = null;
       try {
         // TODO have the decomposition as an optional input [FIN-146]
         rootFinder = new BroydenVectorRootFinder(1e-7, 1e-7, 100,
             DecompositionFactory.getDecomposition(DecompositionFactory.LU_COMMONS_NAME));
-        final DoubleMatrix1D result = rootFinder.getRoot(curveCalculator, jacobianCalculator, new DoubleMatrix1D(initialRatesGuess));
-
-        yields = result.getData();
+        yields = CALIBRATOR.calibrate(problem, rootFinder).getNodeValues();
       } catch (final Exception eLU) {
         try {
           s_logger.warn("Could not find root using LU decomposition and present value method for curve " +
               _fundingCurveDefinitionName + "; trying SV. Error was: " + eLU.getMessage());
           rootFinder = new BroydenVectorRootFinder(1e-7, 1e-7, 100,
               DecompositionFactory.getDecomposition(DecompositionFactory.SV_COMMONS_NAME));
-          yields = rootFinder.getRoot(curveCalculator, jacobianCalculator, new DoubleMatrix1D(initialRatesGuess))
-              .getData();
+          yields = CALIBRATOR.calibrate(problem, rootFinder).getNodeValues();
         } catch (final Exception eSV) {
           s_logger.warn("Could not find root using SV decomposition and present value method for curve " +
               _fundingCurveDefinitionName + ". Error was: " + eSV.getMessage());
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.analytics.ircurve.jmx;
+
+import java.util.Set;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.financial.interestrate.YieldCurveCalibrationStatistics;
+import com.opengamma.financial.interestrate.YieldCurveCalibrator;
+
+/**
+ * YieldCurveCalibrationMBean implementation, publishing the per-curve iteration counts and solve times of a {@link YieldCurveCalibrator}.
+ */
+public final class YieldCurveCalibration implements YieldCurveCalibrationMBean {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(YieldCurveCalibration.class);
+
+  private final YieldCurveCalibrator _underlying;
+
+  private YieldCurveCalibration(final YieldCurveCalibrator underlying) {
+    _underlying = underlying;
+  }
+
+  private YieldCurveCalibrator getUnderlying() {
+    return _underlying;
+  }
+
+  public static void registerMBeans(final YieldCurveCalibrator calibrator, final String name, final MBeanServer server) throws JMException {
+    final ObjectName objectName = new ObjectName("com.opengamma:type=YieldCurveCalibration,name=" + name);
+    final YieldCurveCalibration instance = new YieldCurveCalibration(calibrator);
+    try {
+      server.registerMBean(instance, objectName);
+    } catch (InstanceAlreadyExistsException e) {
+      s_logger.warn("JMX MBean {} already exists - replacing", objectName);
+      server.unregisterMBean(objectName);
+      server.registerMBean(instance, objectName);
+    }
+  }
+
+  private YieldCurveCalibrationStatistics getStatistics(final String curves) {
+    final YieldCurveCalibrationStatistics statistics = getUnderlying().getStatistics().get(curves);
+    if (statistics == null) {
+      throw new IllegalArgumentException("No calibrations of " + curves);
+    }
+    return statistics;
+  }
+
+  @Override
+  public String[] getCurves() {
+    final Set<String> curves = getUnderlying().getStatistics().keySet();
+    return curves.toArray(new String[curves.size()]);
+  }
+
+  @Override
+  public long getCalibrations(final String curves) {
+    return getStatistics(curves).getCalibrations();
+  }
+
+  @Override
+  public long getReused(final String curves) {
+    return getStatistics(curves).getReused();
+  }
+
+  @Override
+  public long getWarmStarts(final String curves) {
+    return getStatistics(curves).getWarmStarts();
+  }
+
+  @Override
+  public long getIterations(final String curves) {
+    return getStatistics(curves).getIterations();
+  }
+
+  @Override
+  public long getJacobianCalculations(final String curves) {
+    return getStatistics(curves).getJacobianCalculations();
+  }
+
+  @Override
+  public int getLastIterations(final String curves) {
+    return getStatistics(curves).getLastIterations();
+  }
+
+  @Override
+  public double getMeanIterations(final String curves) {
+    return getStatistics(curves).getMeanIterations();
+  }
+
+  @Override
+  public long getLastSolveTimeMicros(final String curves) {
+    return getStatistics(curves).getLastSolveTimeNanos() / 1000;
+  }
+
+  @Override
+  public double getMeanSolveTimeMicros(final String curves) {
+    return getStatistics(curves).getMeanSolveTimeNanos() / 1000;
+  }
+
+  @Override
+  public void reset() {
+    getUnderlying().clear();
+  }
+
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.analytics.ircurve.jmx;
+
+/**
+ * JMX MBean interface for the statistics of a yield curve calibrator.
+ */
+public interface YieldCurveCalibrationMBean {
+
+  String[] getCurves();
+  long getCalibrations(String curves);
+  long getReused(String curves);
+  long getWarmStarts(String curves);
+  long getIterations(String curves);
+  long getJacobianCalculations(String curves);
+  int getLastIterations(String curves);
+  double getMeanIterations(String curves);
+  long getLastSolveTimeMicros(String curves);
+  double getMeanSolveTimeMicros(String curves);
+  void reset();
+
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.analytics.model.pnl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.time.calendar.Clock;
+import javax.time.calendar.LocalDate;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.historicaltimeseries.HistoricalTimeSeriesSource;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.impl.PositionAccumulator;
+import com.opengamma.core.security.SecuritySource;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.function.AbstractFunction;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionExecutionContext;
+import com.opengamma.engine.function.FunctionInputs;
+import com.opengamma.engine.value.ComputedValue;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueRequirementNames;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.financial.OpenGammaExecutionContext;
+import com.opengamma.financial.analytics.DoubleLabelledMatrix2D;
+import com.opengamma.financial.analytics.greeks.AvailableValueGreeks;
+import com.opengamma.financial.analytics.model.riskfactor.option.UnderlyingTypeToHistoricalTimeSeries;
+import com.opengamma.financial.analytics.timeseries.sampling.TimeSeriesSamplingFunction;
+import com.opengamma.financial.analytics.timeseries.sampling.TimeSeriesSamplingFunctionFactory;
+import com.opengamma.financial.greeks.MixedOrderUnderlying;
+import com.opengamma.financial.greeks.NthOrderUnderlying;
+import com.opengamma.financial.greeks.Underlying;
+import com.opengamma.financial.pnl.SensitivityPnLAttribution;
+import com.opengamma.financial.pnl.SensitivityPnLAttributionCalculator;
+import com.opengamma.financial.pnl.UnderlyingType;
+import com.opengamma.financial.schedule.Schedule;
+import com.opengamma.financial.schedule.ScheduleCalculatorFactory;
+import com.opengamma.financial.security.option.EquityOptionSecurity;
+import com.opengamma.financial.sensitivity.ValueGreek;
+import com.opengamma.financial.timeseries.returns.TimeSeriesReturnCalculator;
+import com.opengamma.financial.timeseries.returns.TimeSeriesReturnCalculatorFactory;
+import com.opengamma.util.CalculationMode;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+
+/**
+ * Computes the P&L of every position under a portfolio node from its value greeks, and attributes it to the underlying risk factors, using
+ * {@link SensitivityPnLAttributionCalculator}. The value greeks of all of the positions are gathered into one sensitivity matrix, and the return series
+ * of each distinct risk factor (an underlying and a type, such as its spot price) are loaded once and aligned to the dates that they all share. The
+ * results are labelled matrices of the P&L of each position on each date and of the P&L attributed to each factor on each date.
+ */
+public class PortfolioValueGreekSensitivityPnLAttributionFunction extends AbstractFunction.NonCompiledInvoker {
+  private static final SensitivityPnLAttributionCalculator CALCULATOR = new SensitivityPnLAttributionCalculator();
+  private final String _resolutionKey;
+  private final LocalDate _startDate;
+  private final Set<String> _valueGreekRequirementNames;
+  private final TimeSeriesReturnCalculator _returnCalculator;
+  private final Schedule _scheduleCalculator;
+  private final TimeSeriesSamplingFunction _samplingCalculator;
+
+  public PortfolioValueGreekSensitivityPnLAttributionFunction(final String resolutionKey, final String startDate, final String returnCalculatorName,
+      final String scheduleName, final String samplingFunctionName, final String valueGreekRequirementNames) {
+    this(resolutionKey, startDate, returnCalculatorName, scheduleName, samplingFunctionName, new String[] {valueGreekRequirementNames});
+  }
+
+  public PortfolioValueGreekSensitivityPnLAttributionFunction(final String resolutionKey, final String startDate, final String returnCalculatorName,
+      final String scheduleName, final String samplingFunctionName, final String... valueGreekRequirementNames) {
+    Validate.notNull(resolutionKey, "resolution key");
+    Validate.notNull(startDate, "start date");
+    Validate.notEmpty(valueGreekRequirementNames, "value greek requirement names");
+    _resolutionKey = resolutionKey;
+    _startDate = LocalDate.parse(startDate);
+    _valueGreekRequirementNames = new LinkedHashSet<String>(Arrays.asList(valueGreekRequirementNames));
+    _returnCalculator = TimeSeriesReturnCalculatorFactory.getReturnCalculator(returnCalculatorName, CalculationMode.STRICT);
+    _scheduleCalculator = ScheduleCalculatorFactory.getScheduleCalculator(scheduleName);
+    _samplingCalculator = TimeSeriesSamplingFunctionFactory.getFunction(samplingFunctionName);
+  }
+
+  @Override
+  public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
+    final PortfolioNode node = target.getPortfolioNode();
+    final Clock snapshotClock = executionContext.getValuationClock();
+    final LocalDate now = snapshotClock.zonedDateTime().toLocalDate();
+    final HistoricalTimeSeriesSource historicalSource = OpenGammaExecutionContext.getHistoricalTimeSeriesSource(executionContext);
+    final SecuritySource securitySource = executionContext.getSecuritySource();
+    final LocalDate[] schedule = _scheduleCalculator.getSchedule(_startDate, now, true, false);
+    final List<Position> positions = new ArrayList<Position>(PositionAccumulator.getAccumulatedPositions(node));
+    final int nPositions = positions.size();
+    final Map<String, Integer> factorIndices = new HashMap<String, Integer>();
+    final List<String> factorNames = new ArrayList<String>();
+    final List<DoubleTimeSeries<?>> factorReturns = new ArrayList<DoubleTimeSeries<?>>();
+    final Map<List<Integer>, Integer> termIndices = new HashMap<List<Integer>, Integer>();
+    final List<Map<Integer, Double>> positionSensitivities = new ArrayList<Map<Integer, Double>>(nPositions);
+    for (final Position position : positions) {
+      final EquityOptionSecurity security = (EquityOptionSecurity) position.getSecurity();
+      final Map<Integer, Double> sensitivities = new HashMap<Integer, Double>();
+      for (final String valueGreekRequirementName : _valueGreekRequirementNames) {
+        final Object valueObj = inputs.getValue(new ValueRequirement(valueGreekRequirementName, ComputationTargetType.POSITION, position.getUniqueId()));
+        if (!(valueObj instanceof Double)) {
+          throw new IllegalArgumentException("Got a value for greek " + valueObj + " that wasn't a Double");
+        }
+        final ValueGreek valueGreek = AvailableValueGreeks.getValueGreekForValueRequirementName(valueGreekRequirementName);
+        final Underlying underlying = valueGreek.getUnderlyingGreek().getUnderlying();
+        if (underlying.getOrder() == 0) {
+          continue;
+        }
+        final List<Integer> term = new ArrayList<Integer>();
+        final List<NthOrderUnderlying> underlyingOrders = underlying instanceof MixedOrderUnderlying ? ((MixedOrderUnderlying) underlying).getUnderlyingOrders()
+            : Arrays.asList((NthOrderUnderlying) underlying);
+        for (final NthOrderUnderlying underlyingOrder : underlyingOrders) {
+          final UnderlyingType underlyingType = underlyingOrder.getUnderlying();
+          final String factorName = security.getUnderlyingIdentifier().toString() + " " + underlyingType;
+          Integer factorIndex = factorIndices.get(factorName);
+          if (factorIndex == null) {
+            final DoubleTimeSeries<?> timeSeries = UnderlyingTypeToHistoricalTimeSeries.getSeries(historicalSource, _resolutionKey, securitySource, underlyingType,
+                security);
+            final DoubleTimeSeries<?> sampledTS = _samplingCalculator.getSampledTimeSeries(timeSeries, schedule);
+            factorIndex = factorNames.size();
+            factorIndices.put(factorName, factorIndex);
+            factorNames.add(factorName);
+            factorReturns.add(_returnCalculator.evaluate(sampledTS));
+          }
+          for (int i = 0; i < underlyingOrder.getOrder(); i++) {
+            term.add(factorIndex);
+          }
+        }
+        Integer termIndex = termIndices.get(term);
+        if (termIndex == null) {
+          termIndex = termIndices.size();
+          termIndices.put(term, termIndex);
+        }
+        final Double previous = sensitivities.get(termIndex);
+        sensitivities.put(termIndex, previous == null ? (Double) valueObj : previous + (Double) valueObj);
+      }
+      positionSensitivities.add(sensitivities);
+    }
+    if (factorReturns.isEmpty()) {
+      throw new OpenGammaRuntimeException("None of the value greeks " + _valueGreekRequirementNames + " depend on an underlying");
+    }
+    final int nTerms = termIndices.size();
+    final int[][] terms = new int[nTerms][];
+    for (final Map.Entry<List<Integer>, Integer> entry : termIndices.entrySet()) {
+      final List<Integer> term = entry.getKey();
+      final int[] factors = new int[term.size()];
+      for (int i = 0; i < factors.length; i++) {
+        factors[i] = term.get(i);
+      }
+      terms[entry.getValue()] = factors;
+    }
+    final double[][] sensitivityMatrix = new double[nPositions][nTerms];
+    for (int p = 0; p < nPositions; p++) {
+      for (final Map.Entry<Integer, Double> entry : positionSensitivities.get(p).entrySet()) {
+        sensitivityMatrix[p][entry.getKey()] = entry.getValue();
+      }
+    }
+    final int nFactors = factorReturns.size();
+    DoubleTimeSeries<?> dates = factorReturns.get(0);
+    for (int f = 1; f < nFactors; f++) {
+      dates = dates.intersectionFirstValue(factorReturns.get(f));
+    }
+    final int nDates = dates.size();
+    if (nDates == 0) {
+      throw new OpenGammaRuntimeException("Return series of the factors " + factorNames + " have no dates in common");
+    }
+    final double[][] factorMoves = new double[nFactors][];
+    for (int f = 0; f < nFactors; f++) {
+      factorMoves[f] = factorReturns.get(f).intersectionFirstValue(dates).valuesArrayFast();
+    }
+    final SensitivityPnLAttribution attribution = CALCULATOR.evaluate(sensitivityMatrix, terms, factorMoves);
+    // the matrices are keyed by index so that they keep the order of the rows and columns
+    final Double[] dateKeys = getKeys(nDates);
+    final Object[] dateLabels = new Object[nDates];
+    for (int t = 0; t < nDates; t++) {
+      dateLabels[t] = dates.getTime(t);
+    }
+    final Object[] positionLabels = new Object[nPositions];
+    for (int p = 0; p < nPositions; p++) {
+      positionLabels[p] = positions.get(p).getUniqueId();
+    }
+    final Set<ComputedValue> results = new HashSet<ComputedValue>();
+    results.add(new ComputedValue(getResultSpec(ValueRequirementNames.PNL_ATTRIBUTION_BY_POSITION, node),
+        new DoubleLabelledMatrix2D(dateKeys, dateLabels, getKeys(nPositions), positionLabels, attribution.getPositionPnL())));
+    results.add(new ComputedValue(getResultSpec(ValueRequirementNames.PNL_ATTRIBUTION_BY_FACTOR, node),
+        new DoubleLabelledMatrix2D(dateKeys, dateLabels, getKeys(nFactors), factorNames.toArray(), attribution.getFactorPnL())));
+    return results;
+  }
+
+  private static Double[] getKeys(final int n) {
+    final Double[] keys = new Double[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = Double.valueOf(i);
+    }
+    return keys;
+  }
+
+  private ValueSpecification getResultSpec(final String valueName, final PortfolioNode node) {
+    return new ValueSpecification(new ValueRequirement(valueName, node), getUniqueId());
+  }
+
+  @Override
+  public boolean canApplyTo(final FunctionCompilationContext context, final ComputationTarget target) {
+    if (target.getType() != ComputationTargetType.PORTFOLIO_NODE) {
+      return false;
+    }
+    final Set<Position> positions = PositionAccumulator.getAccumulatedPositions(target.getPortfolioNode());
+    if (positions.isEmpty()) {
+      return false;
+    }
+    for (final Position position : positions) {
+      if (!(position.getSecurity() instanceof EquityOptionSecurity)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Set<ValueRequirement> getRequirements(final FunctionCompilationContext context, final ComputationTarget target, final ValueRequirement desiredValue) {
+    if (!canApplyTo(context, target)) {
+      return null;
+    }
+    final Set<ValueRequirement> requirements = new HashSet<ValueRequirement>();
+    for (final Position position : PositionAccumulator.getAccumulatedPositions(target.getPortfolioNode())) {
+      for (final String valueGreekRequirementName : _valueGreekRequirementNames) {
+        requirements.add(new ValueRequirement(valueGreekRequirementName, ComputationTargetType.POSITION, position.getUniqueId()));
+      }
+    }
+    return requirements;
+  }
+
+  @Override
+  public Set<ValueSpecification> getResults(final FunctionCompilationContext context, final ComputationTarget target) {
+    if (!canApplyTo(context, target)) {
+      return null;
+    }
+    final Set<ValueSpecification> results = new HashSet<ValueSpecification>();
+    results.add(getResultSpec(ValueRequirementNames.PNL_ATTRIBUTION_BY_POSITION, target.getPortfolioNode()));
+    results.add(getResultSpec(ValueRequirementNames.PNL_ATTRIBUTION_BY_FACTOR, target.getPortfolioNode()));
+    return results;
+  }
+
+  @Override
+  public String getShortName() {
+    return "PortfolioValueGreekSensitivityPnLAttribution";
+  }
+
+  @Override
+  public ComputationTargetType getTargetType() {
+    return ComputationTargetType.PORTFOLIO_NODE;
+  }
+
+}
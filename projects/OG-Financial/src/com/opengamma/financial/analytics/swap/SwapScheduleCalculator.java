@@ -11,6 +11,7 @@ import org.apache.commons.lang.Validate;
 
 import com.opengamma.financial.convention.calendar.Calendar;
 import com.opengamma.financial.convention.frequency.Frequency;
+import com.opengamma.financial.schedule.ScheduleCache;
 import com.opengamma.financial.schedule.ScheduleCalculator;
 import com.opengamma.financial.security.swap.SwapLeg;
 import com.opengamma.financial.security.swap.SwapSecurity;
@@ -40,8 +41,7 @@ public class SwapScheduleCalculator {
     Validate.notNull(calendar);
     Validate.notNull(now);
     final Frequency payFrequency = leg.getFrequency();
-    final ZonedDateTime[] adjusted = ScheduleCalculator.getAdjustedDateSchedule(ScheduleCalculator.getUnadjustedDateSchedule(effectiveDate, maturityDate, payFrequency),
-        leg.getBusinessDayConvention(), calendar, 0);
+    final ZonedDateTime[] adjusted = ScheduleCache.getInstance().getAdjustedDateSchedule(effectiveDate, maturityDate, payFrequency, leg.getBusinessDayConvention(), calendar);
     return ScheduleCalculator.getTimes(adjusted, leg.getDayCount(), effectiveDate);
   }
 
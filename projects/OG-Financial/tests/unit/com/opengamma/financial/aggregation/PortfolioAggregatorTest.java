@@ -0,0 +1,306 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.aggregation;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.core.change.ChangeEvent;
+import com.opengamma.core.change.ChangeListener;
+import com.opengamma.core.change.ChangeType;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.impl.SimplePortfolio;
+import com.opengamma.core.position.impl.SimplePortfolioNode;
+import com.opengamma.core.position.impl.SimplePosition;
+import com.opengamma.core.security.impl.SimpleSecurity;
+import com.opengamma.core.security.impl.SimpleSecurityLink;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Test PortfolioAggregator and PortfolioAggregation.
+ */
+public class PortfolioAggregatorTest {
+  private static final String REGION = "Region";
+  private static final String DESK = "Desk";
+
+  @Test
+  public void testAggregate() {
+    final PortfolioAggregator aggregator = new PortfolioAggregator(new PositionAttributeAggregationFunction(REGION), deskFunction());
+    final Portfolio aggregated = aggregator.aggregate(makePortfolio());
+    final PortfolioNode root = aggregated.getRootNode();
+    assertEquals(0, root.getPositions().size());
+    assertEquals(Arrays.asList("EU", "US"), getNames(root.getChildNodes()));
+    final PortfolioNode eu = root.getChildNodes().get(0);
+    // the position without a desk is in neither EU bucket
+    assertEquals(Arrays.asList("Options", "Rates"), getNames(eu.getChildNodes()));
+    assertEquals(Arrays.asList("P3"), getPositionIds(eu.getChildNodes().get(0)));
+    assertEquals(Arrays.asList("P1", "P4"), getPositionIds(eu.getChildNodes().get(1)));
+    final PortfolioNode us = root.getChildNodes().get(1);
+    assertEquals(Arrays.asList("Rates"), getNames(us.getChildNodes()));
+    assertEquals(Arrays.asList("P2"), getPositionIds(us.getChildNodes().get(0)));
+    for (PortfolioNode node : eu.getChildNodes()) {
+      assertEquals(eu.getUniqueId(), node.getParentNodeId());
+      for (Position position : node.getPositions()) {
+        assertEquals(node.getUniqueId(), position.getParentNodeId());
+      }
+    }
+  }
+
+  @Test
+  public void testClassificationsRememberedWithinAggregation() {
+    final CountingAggregationFunction function = new CountingAggregationFunction();
+    final PortfolioAggregator aggregator = new PortfolioAggregator(function);
+    final SimplePortfolio portfolio = makePortfolio();
+    final SimplePosition p1 = (SimplePosition) portfolio.getRootNode().getPositions().get(0);
+    // the same position held under a second node is only classified once
+    ((SimplePortfolioNode) portfolio.getRootNode().getChildNodes().get(0)).addPosition(p1);
+    aggregator.aggregate(portfolio);
+    assertEquals(5, function.getCount());
+    // nothing is remembered between aggregations
+    aggregator.aggregate(portfolio);
+    assertEquals(10, function.getCount());
+  }
+
+  @Test
+  public void testClassificationsKeyedOnSecurityVersion() {
+    final CountingAggregationFunction function = new CountingAggregationFunction();
+    final PortfolioAggregator aggregator = new PortfolioAggregator(function);
+    final SimplePortfolioNode root = new SimplePortfolioNode(UniqueId.of("Test", "Root"), "Root");
+    final SimplePosition v1 = makePosition("P1", "1", "10", "EU", "Rates");
+    v1.setSecurityLink(SimpleSecurityLink.of(new SimpleSecurity(UniqueId.of("Test", "Security", "1"), ExternalIdBundle.EMPTY, "Test", "Security")));
+    final SimplePosition v2 = makePosition("P1", "1", "10", "EU", "Rates");
+    v2.setSecurityLink(SimpleSecurityLink.of(new SimpleSecurity(UniqueId.of("Test", "Security", "2"), ExternalIdBundle.EMPTY, "Test", "Security")));
+    root.addPosition(v1);
+    root.addPosition(v2);
+    aggregator.aggregate(new SimplePortfolio(UniqueId.of("Test", "Portfolio"), "Portfolio", root));
+    assertEquals(2, function.getCount());
+  }
+
+  @Test
+  public void testParallel() {
+    final List<AggregationFunction<?>> functions = new ArrayList<AggregationFunction<?>>();
+    functions.add(new PositionAttributeAggregationFunction(REGION));
+    functions.add(deskFunction());
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final Portfolio serial = new PortfolioAggregator(functions).aggregate(makePortfolio());
+      final Portfolio parallel = new PortfolioAggregator(functions, executor, 3).aggregate(makePortfolio());
+      assertStructureEquals(serial.getRootNode(), parallel.getRootNode());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testUpdateWithinBucket() {
+    final PortfolioAggregation aggregation = createAggregation();
+    final RecordingChangeListener listener = new RecordingChangeListener();
+    aggregation.changeManager().addChangeListener(listener);
+    final PortfolioNode root = aggregation.getPortfolio().getRootNode();
+    final PortfolioNode us = root.getChildNodes().get(1);
+    final PortfolioNode usRates = us.getChildNodes().get(0);
+    final PortfolioAggregationDelta delta = aggregation.update(Collections.singleton(makePosition("P2", "2", "20", "US", "Rates")),
+        Collections.<ObjectId>emptySet());
+    assertTrue(delta.getAddedNodes().isEmpty());
+    assertTrue(delta.getRemovedNodeIds().isEmpty());
+    assertEquals(3, delta.getChangedNodeIds().size());
+    assertTrue(delta.getChangedNodeIds().containsAll(Arrays.asList(root.getUniqueId(), us.getUniqueId(), usRates.getUniqueId())));
+    assertEquals(1, usRates.getPositions().size());
+    assertEquals(new BigDecimal("20"), usRates.getPositions().get(0).getQuantity());
+    assertEquals(3, listener.getEvents().size());
+    for (ChangeEvent event : listener.getEvents()) {
+      assertEquals(ChangeType.UPDATED, event.getType());
+    }
+  }
+
+  @Test
+  public void testUpdateBetweenBuckets() {
+    final PortfolioAggregation aggregation = createAggregation();
+    final PortfolioNode root = aggregation.getPortfolio().getRootNode();
+    final PortfolioNode eu = root.getChildNodes().get(0);
+    final PortfolioNode us = root.getChildNodes().get(1);
+    final UniqueId usRatesId = us.getChildNodes().get(0).getUniqueId();
+    // the only US position moves to a new EU bucket
+    final PortfolioAggregationDelta delta = aggregation.update(Collections.singleton(makePosition("P2", "2", "10", "EU", "Equities")),
+        Collections.<ObjectId>emptySet());
+    assertEquals(Arrays.asList("EU"), getNames(root.getChildNodes()));
+    assertEquals(Arrays.asList("Options", "Rates", "Equities"), getNames(eu.getChildNodes()));
+    assertEquals(Arrays.asList("P2"), getPositionIds(eu.getChildNodes().get(2)));
+    assertEquals(1, delta.getAddedNodes().size());
+    assertEquals(eu.getChildNodes().get(2).getUniqueId(), delta.getAddedNodes().get(0).getUniqueId());
+    assertEquals(2, delta.getRemovedNodeIds().size());
+    assertTrue(delta.getRemovedNodeIds().containsAll(Arrays.asList(us.getUniqueId(), usRatesId)));
+    assertEquals(2, delta.getChangedNodeIds().size());
+    assertTrue(delta.getChangedNodeIds().containsAll(Arrays.asList(root.getUniqueId(), eu.getUniqueId())));
+  }
+
+  @Test
+  public void testRemove() {
+    final PortfolioAggregation aggregation = createAggregation();
+    final PortfolioNode root = aggregation.getPortfolio().getRootNode();
+    final PortfolioNode eu = root.getChildNodes().get(0);
+    final PortfolioNode euRates = eu.getChildNodes().get(1);
+    PortfolioAggregationDelta delta = aggregation.update(Collections.<Position>emptySet(), Collections.singleton(ObjectId.of("Test", "P1")));
+    assertEquals(Arrays.asList("P4"), getPositionIds(euRates));
+    assertTrue(delta.getAddedNodes().isEmpty());
+    assertTrue(delta.getRemovedNodeIds().isEmpty());
+    assertEquals(3, delta.getChangedNodeIds().size());
+    delta = aggregation.update(Collections.<Position>emptySet(), Collections.singleton(ObjectId.of("Test", "P4")));
+    assertEquals(Arrays.asList("Options"), getNames(eu.getChildNodes()));
+    assertEquals(Collections.singleton(euRates.getUniqueId()), delta.getRemovedNodeIds());
+    // removing a position that is not in the portfolio changes nothing
+    delta = aggregation.update(Collections.<Position>emptySet(), Collections.singleton(ObjectId.of("Test", "P4")));
+    assertTrue(delta.isEmpty());
+  }
+
+  @Test
+  public void testUpdateAndRemoveRepeatedPosition() {
+    final SimplePortfolio portfolio = makePortfolio();
+    final SimplePosition p1 = (SimplePosition) portfolio.getRootNode().getPositions().get(0);
+    ((SimplePortfolioNode) portfolio.getRootNode().getChildNodes().get(0)).addPosition(p1);
+    final PortfolioAggregation aggregation = new PortfolioAggregator(new PositionAttributeAggregationFunction(REGION), deskFunction())
+        .createAggregation(portfolio);
+    final PortfolioNode root = aggregation.getPortfolio().getRootNode();
+    final PortfolioNode eu = root.getChildNodes().get(0);
+    final PortfolioNode euRates = eu.getChildNodes().get(1);
+    assertEquals(Arrays.asList("P1", "P4", "P1"), getPositionIds(euRates));
+    // both occurrences move
+    aggregation.update(Collections.singleton(makePosition("P1", "2", "10", "US", "Equities")), Collections.<ObjectId>emptySet());
+    assertEquals(Arrays.asList("P4"), getPositionIds(euRates));
+    final PortfolioNode us = root.getChildNodes().get(1);
+    assertEquals(Arrays.asList("Rates", "Equities"), getNames(us.getChildNodes()));
+    final PortfolioNode usEquities = us.getChildNodes().get(1);
+    assertEquals(Arrays.asList("P1", "P1"), getPositionIds(usEquities));
+    // both occurrences are replaced in place
+    aggregation.update(Collections.singleton(makePosition("P1", "3", "20", "US", "Equities")), Collections.<ObjectId>emptySet());
+    assertEquals(2, usEquities.getPositions().size());
+    for (Position position : usEquities.getPositions()) {
+      assertEquals(new BigDecimal("20"), position.getQuantity());
+    }
+    // and both are removed, leaving the bucket empty
+    final PortfolioAggregationDelta delta = aggregation.update(Collections.<Position>emptySet(), Collections.singleton(ObjectId.of("Test", "P1")));
+    assertEquals(Collections.singleton(usEquities.getUniqueId()), delta.getRemovedNodeIds());
+    assertEquals(Arrays.asList("Rates"), getNames(us.getChildNodes()));
+    aggregation.update(Collections.<Position>emptySet(), Collections.singleton(ObjectId.of("Test", "P4")));
+    assertEquals(Arrays.asList("Options"), getNames(eu.getChildNodes()));
+  }
+
+  @Test
+  public void testClassificationsRememberedByAggregation() {
+    final CountingAggregationFunction function = new CountingAggregationFunction();
+    final PortfolioAggregation aggregation = new PortfolioAggregator(function).createAggregation(makePortfolio());
+    assertEquals(5, function.getCount());
+    // the same version is not classified again
+    aggregation.update(Collections.singleton(makePosition("P2", "1", "20", "US", "Rates")), Collections.<ObjectId>emptySet());
+    assertEquals(5, function.getCount());
+    aggregation.update(Collections.singleton(makePosition("P2", "2", "20", "EU", "Rates")), Collections.<ObjectId>emptySet());
+    assertEquals(6, function.getCount());
+    assertEquals(Arrays.asList("EU"), getNames(aggregation.getPortfolio().getRootNode().getChildNodes()));
+  }
+
+  private static PortfolioAggregation createAggregation() {
+    return new PortfolioAggregator(new PositionAttributeAggregationFunction(REGION), deskFunction()).createAggregation(makePortfolio());
+  }
+
+  private static AggregationFunction<String> deskFunction() {
+    // positions without a desk are not classified
+    return new PositionAttributeAggregationFunction(DESK, null);
+  }
+
+  private static SimplePortfolio makePortfolio() {
+    final SimplePortfolioNode root = new SimplePortfolioNode(UniqueId.of("Test", "Root"), "Root");
+    final SimplePortfolioNode child = new SimplePortfolioNode(UniqueId.of("Test", "Child"), "Child");
+    root.addPosition(makePosition("P1", "1", "10", "EU", "Rates"));
+    root.addPosition(makePosition("P2", "1", "10", "US", "Rates"));
+    child.addPosition(makePosition("P3", "1", "10", "EU", "Options"));
+    child.addPosition(makePosition("P4", "1", "10", "EU", "Rates"));
+    child.addPosition(makePosition("P5", "1", "10", "EU", null));
+    root.addChildNode(child);
+    return new SimplePortfolio(UniqueId.of("Test", "Portfolio"), "Portfolio", root);
+  }
+
+  private static SimplePosition makePosition(final String id, final String version, final String quantity, final String region, final String desk) {
+    final SimplePosition position = new SimplePosition(UniqueId.of("Test", id, version), new BigDecimal(quantity), ExternalId.of("Test", "Security"));
+    position.addAttribute(REGION, region);
+    if (desk != null) {
+      position.addAttribute(DESK, desk);
+    }
+    return position;
+  }
+
+  private static List<String> getNames(final List<PortfolioNode> nodes) {
+    final List<String> names = new ArrayList<String>();
+    for (PortfolioNode node : nodes) {
+      names.add(node.getName());
+    }
+    return names;
+  }
+
+  private static List<String> getPositionIds(final PortfolioNode node) {
+    final List<String> ids = new ArrayList<String>();
+    for (Position position : node.getPositions()) {
+      ids.add(position.getUniqueId().getValue());
+    }
+    return ids;
+  }
+
+  private static void assertStructureEquals(final PortfolioNode expected, final PortfolioNode actual) {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(getPositionIds(expected), getPositionIds(actual));
+    assertEquals(getNames(expected.getChildNodes()), getNames(actual.getChildNodes()));
+    for (int i = 0; i < expected.getChildNodes().size(); i++) {
+      assertStructureEquals(expected.getChildNodes().get(i), actual.getChildNodes().get(i));
+    }
+  }
+
+  private static class CountingAggregationFunction implements AggregationFunction<String> {
+    private final AtomicInteger _count = new AtomicInteger();
+
+    @Override
+    public String classifyPosition(final Position position) {
+      _count.incrementAndGet();
+      return position.getAttributes().get(REGION);
+    }
+
+    @Override
+    public String getName() {
+      return REGION;
+    }
+
+    public int getCount() {
+      return _count.get();
+    }
+  }
+
+  private static class RecordingChangeListener implements ChangeListener {
+    private final List<ChangeEvent> _events = new ArrayList<ChangeEvent>();
+
+    @Override
+    public void entityChanged(final ChangeEvent event) {
+      _events.add(event);
+    }
+
+    public List<ChangeEvent> getEvents() {
+      return _events;
+    }
+  }
+}
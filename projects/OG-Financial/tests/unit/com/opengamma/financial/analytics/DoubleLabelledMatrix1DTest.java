@@ -279,4 +279,26 @@ public class DoubleLabelledMatrix1DTest {
       }
     }
   }
+
+  @Test
+  public void testAddMany() {
+    assertSameMatrix(M1.add(M2).add(M3).add(M4), M1.addAll(Arrays.asList(M2, M3, M4)));
+    assertSameMatrix(M4.add(M1).add(M3), M4.addAll(Arrays.asList(M1, M3)));
+    assertSameMatrix(M1.addIgnoringLabel(M5, HIGH_TOLERANCE).addIgnoringLabel(M6, HIGH_TOLERANCE), M1.addAllIgnoringLabel(Arrays.asList(M5, M6), HIGH_TOLERANCE));
+    assertSameMatrix(M1, M1.addAll(Arrays.<DoubleLabelledMatrix1D>asList()));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testAddManyLabelMismatch() {
+    M1.addAll(Arrays.asList(M3, new DoubleLabelledMatrix1D(TIMES4, new Object[] {"1D", "2D", "1W", "1M", "8W", "3M"}, VALUES4)));
+  }
+
+  private static void assertSameMatrix(final LabelledMatrix1D<Double, Double> expected, final LabelledMatrix1D<Double, Double> actual) {
+    assertArrayEquals(expected.getKeys(), actual.getKeys());
+    assertArrayEquals(expected.getLabels(), actual.getLabels());
+    assertEquals(expected.getValues().length, actual.getValues().length);
+    for (int i = 0; i < expected.getValues().length; i++) {
+      assertEquals(expected.getValues()[i], actual.getValues()[i], EPS);
+    }
+  }
 }
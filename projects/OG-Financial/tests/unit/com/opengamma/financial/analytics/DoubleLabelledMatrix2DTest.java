@@ -8,6 +8,8 @@ package com.opengamma.financial.analytics;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
+import java.util.Arrays;
+
 import org.testng.annotations.Test;
 
 /**
@@ -170,4 +172,27 @@ public class DoubleLabelledMatrix2DTest {
     }
   }
 
+
+  @Test
+  public void testAddMany() {
+    final DoubleLabelledMatrix2D m1 = new DoubleLabelledMatrix2D(X_KEYS, X_LABELS2, Y_KEYS, Y_LABELS2, VALUES);
+    final DoubleLabelledMatrix2D m2 = new DoubleLabelledMatrix2D(new Double[] {6., 2.}, new Object[] {"F", "B"}, new Double[] {0.5, 3.}, new Object[] {"Z", "C"},
+        new double[][] {new double[] {1, 2}, new double[] {3, 4}});
+    final DoubleLabelledMatrix2D m3 = new DoubleLabelledMatrix2D(new Double[] {0., 6.001}, new Object[] {"0", "F"}, new Double[] {3.001}, new Object[] {"C"},
+        new double[][] {new double[] {5, 6}});
+    final LabelledMatrix2D<Double, Double> expected = m1.add(m2, 0.005, 0.005).add(m3, 0.005, 0.005);
+    final LabelledMatrix2D<Double, Double> sum = m1.addAll(Arrays.asList(m2, m3), 0.005, 0.005);
+    assertArrayEquals(new Double[] {0., 1., 2., 3., 4., 5., 6.}, sum.getXKeys());
+    assertArrayEquals(new Double[] {0.5, 1., 2., 3.}, sum.getYKeys());
+    assertArrayEquals(expected.getXKeys(), sum.getXKeys());
+    assertArrayEquals(expected.getXLabels(), sum.getXLabels());
+    assertArrayEquals(expected.getYKeys(), sum.getYKeys());
+    assertArrayEquals(expected.getYLabels(), sum.getYLabels());
+    for (int i = 0; i < expected.getValues().length; i++) {
+      for (int j = 0; j < expected.getValues()[0].length; j++) {
+        assertEquals(expected.getValues()[i][j], sum.getValues()[i][j]);
+      }
+    }
+    assertEquals(3 + 6., sum.getValues()[3][6]);
+  }
 }
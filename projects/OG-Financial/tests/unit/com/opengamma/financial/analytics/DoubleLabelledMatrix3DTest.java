@@ -105,6 +105,37 @@ public class DoubleLabelledMatrix3DTest {
     a.add(b, 0.5, 0.5, 0.5);
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testAddMany() {
+    final DoubleLabelledMatrix3D a = new DoubleLabelledMatrix3D(X_KEYS1, X_LABELS2, Y_KEYS1, Y_LABELS2, Z_KEYS1, Z_LABELS2, VALUES1);
+    final DoubleLabelledMatrix3D b = new DoubleLabelledMatrix3D(X_KEYS3, X_LABELS3, Y_KEYS3, Y_LABELS3, Z_KEYS3, Z_LABELS3, VALUES2);
+    final DoubleLabelledMatrix3D c = new DoubleLabelledMatrix3D(X_KEYS2, LABELS, Y_KEYS2, LABELS, Z_KEYS2, LABELS, VALUES2);
+    testAddResult(a.addAll(Arrays.asList(new DoubleLabelledMatrix3D[] {b}), 0.5, 0.5, 0.5));
+    final DoubleLabelledMatrix3D expected = a.add(b, 0.5, 0.5, 0.5).addIgnoringLabel(c, 0.5, 0.5, 0.5);
+    final DoubleLabelledMatrix3D result = a.addAllIgnoringLabel(Arrays.asList(new DoubleLabelledMatrix3D[] {b, c}), 0.5, 0.5, 0.5);
+    assertEquals(result.getXKeys(), expected.getXKeys());
+    assertEquals(result.getXLabels(), expected.getXLabels());
+    assertEquals(result.getYKeys(), expected.getYKeys());
+    assertEquals(result.getYLabels(), expected.getYLabels());
+    assertEquals(result.getZKeys(), expected.getZKeys());
+    assertEquals(result.getZLabels(), expected.getZLabels());
+    for (int i = 0; i < expected.getValues().length; i++) {
+      for (int j = 0; j < expected.getValues()[i].length; j++) {
+        assertTrue(Arrays.equals(result.getValues()[i][j], expected.getValues()[i][j]));
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testAddManyCheckLabels() {
+    final DoubleLabelledMatrix3D a = new DoubleLabelledMatrix3D(X_KEYS1, Y_KEYS1, Z_KEYS1, VALUES1);
+    final DoubleLabelledMatrix3D b = new DoubleLabelledMatrix3D(X_KEYS2, Y_KEYS2, Z_KEYS2, VALUES2);
+    final DoubleLabelledMatrix3D c = new DoubleLabelledMatrix3D(X_KEYS2, LABELS, Y_KEYS2, LABELS, Z_KEYS2, LABELS, VALUES2);
+    a.addAll(Arrays.asList(new DoubleLabelledMatrix3D[] {b, c}));
+  }
+
   private void testCreationResult(final DoubleLabelledMatrix3D result, final Object[] xLabels, final Object[] yLabels, final Object[] zLabels) {
     final Double[] xKeysResult = result.getXKeys();
     assertEquals(xKeysResult, SORTED_X_KEYS1);
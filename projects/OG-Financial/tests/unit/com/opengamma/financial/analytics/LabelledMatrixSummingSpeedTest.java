@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.financial.analytics;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister64;
+import cern.jet.random.engine.RandomEngine;
+
+import com.opengamma.engine.value.ValueRequirementNames;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Reports the time taken to sum yield curve node sensitivities of 50000 positions at every node of a 10 level portfolio tree, as the summing
+ * functions do, by adding the matrices in turn and by adding all of the matrices beneath a node at once.
+ */
+public class LabelledMatrixSummingSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(LabelledMatrixSummingSpeedTest.class);
+  private static final RandomEngine RANDOM = new MersenneTwister64(MersenneTwister64.DEFAULT_SEED);
+  private static final int N_POSITIONS = 50000;
+  private static final int BRANCHING = 3;
+  private static final int N_CURVE_NODES = 40;
+  private static final int N_SENSITIVITIES = 10;
+  private static final int WARMUP_CYCLES = 1;
+  private static final int BENCHMARK_CYCLES = 1;
+
+  @Test
+  public void test() {
+    final List<Object> positions = getSensitivities();
+    final double pairwise = doHotSpot("adding in turn", positions, false);
+    final double merged = doHotSpot("adding at once", positions, true);
+    assertEquals(pairwise, merged, 1e-9 * Math.abs(pairwise));
+  }
+
+  private double doHotSpot(final String name, final List<Object> positions, final boolean merge) {
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      sumTree(positions, merge);
+    }
+    double total = 0;
+    if (BENCHMARK_CYCLES > 0) {
+      final OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of " + positions.size() + " positions, " + name, BENCHMARK_CYCLES);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        total = sumTree(positions, merge);
+      }
+      final long time = Math.max(1, timer.finished());
+      s_logger.info("{}, {} positions: {} ms per tree", new Object[] {name, positions.size(), time / BENCHMARK_CYCLES});
+    }
+    return total;
+  }
+
+  /**
+   * Sums the positions beneath every node of a tree in which each node has {@code BRANCHING} children, the positions beneath a node being a
+   * contiguous range, and returns the total of the root node.
+   */
+  private static double sumTree(final List<Object> positions, final boolean merge) {
+    int width = BRANCHING;
+    while (width < positions.size()) {
+      width *= BRANCHING;
+    }
+    Object root = null;
+    for (; width > 1; width /= BRANCHING) {
+      for (int start = 0; start < positions.size(); start += width) {
+        final List<Object> values = positions.subList(start, Math.min(start + width, positions.size()));
+        root = merge ? SumUtils.addValues(values, ValueRequirementNames.YIELD_CURVE_NODE_SENSITIVITIES) : addInTurn(values);
+      }
+    }
+    double total = 0;
+    for (final double value : ((DoubleLabelledMatrix1D) root).getValues()) {
+      total += value;
+    }
+    return total;
+  }
+
+  private static Object addInTurn(final List<Object> values) {
+    Object currentTotal = null;
+    for (final Object value : values) {
+      currentTotal = SumUtils.addValue(currentTotal, value, ValueRequirementNames.YIELD_CURVE_NODE_SENSITIVITIES);
+    }
+    return currentTotal;
+  }
+
+  private static List<Object> getSensitivities() {
+    final List<Object> sensitivities = new ArrayList<Object>(N_POSITIONS);
+    for (int i = 0; i < N_POSITIONS; i++) {
+      final int first = (int) (RANDOM.nextDouble() * (N_CURVE_NODES - N_SENSITIVITIES));
+      final Double[] times = new Double[N_SENSITIVITIES];
+      final Object[] labels = new Object[N_SENSITIVITIES];
+      final double[] values = new double[N_SENSITIVITIES];
+      for (int j = 0; j < N_SENSITIVITIES; j++) {
+        times[j] = (first + j + 1) * 0.5;
+        labels[j] = (first + j + 1) * 6 + "M";
+        values[j] = 1000 * (RANDOM.nextDouble() - 0.5);
+      }
+      sensitivities.add(new DoubleLabelledMatrix1D(times, labels, values));
+    }
+    return sensitivities;
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Constants and primitives of the compact binary encoding of ticks.
+ * <p>
+ * A full Fudge encoding of a {@link LiveDataValueUpdateBean} carries the complete
+ * {@link LiveDataSpecification} and every field name on every tick. The compact encoding
+ * sends a stream of frames per subscription instead. A key frame defines the specification
+ * and assigns an integer id to each field name, and carries the value of every field sent
+ * so far. The delta frames that follow refer to fields by id and only carry the fields whose
+ * value has changed. Key frames are repeated periodically so that a receiver joining part way
+ * through, for example a new subscriber to a JMS topic, can pick up the stream.
+ * <p>
+ * Frames of a stream are numbered consecutively. A receiver that sees a delta frame out of
+ * sequence, or one referring to a field id it has no definition for, has lost a frame; it
+ * discards the stream definition and drops frames until the next key frame. Sequence numbers
+ * of the updates themselves are not used for this as they legitimately skip when updates are
+ * dropped or merged before reaching the sender.
+ * <p>
+ * A frame is laid out as:
+ * <pre>
+ *   byte    MAGIC
+ *   byte    FRAME_KEY or FRAME_DELTA
+ *   long    stream id, unique to the sender
+ *   varlong frame number within the stream
+ *   varlong sequence number
+ *   key frames only:
+ *     varint  length of the specification, followed by its Fudge encoding
+ *     varint  number of field definitions, each a varint id followed by a UTF name
+ *   varint  number of values, each a varint field id, a TYPE byte and the value
+ * </pre>
+ * Doubles are written as 8 bytes, floats as 4 bytes, integral values as zig-zag varints,
+ * strings as UTF and any other value as a Fudge encoded message holding the single value.
+ * As with Fudge itself, an integral value is decoded as an Integer if it fits in one and a
+ * Long otherwise, whatever its type when encoded.
+ * <p>
+ * The first byte of a Fudge envelope holds its processing directives, which are always zero,
+ * so a compact frame can be told apart from a Fudge encoded update by its first byte.
+ */
+public final class CompactTickFormat {
+
+  /**
+   * First byte of every frame.
+   */
+  public static final byte MAGIC = (byte) 0xCE;
+  /**
+   * Frame defining the stream.
+   */
+  public static final byte FRAME_KEY = 1;
+  /**
+   * Frame carrying changed values only.
+   */
+  public static final byte FRAME_DELTA = 2;
+
+  /** Double value, 8 bytes */
+  public static final byte TYPE_DOUBLE = 1;
+  /** Integral value, zig-zag varint */
+  public static final byte TYPE_INTEGER = 2;
+  /** String value, UTF */
+  public static final byte TYPE_STRING = 3;
+  /** Boolean false, no value bytes */
+  public static final byte TYPE_FALSE = 4;
+  /** Boolean true, no value bytes */
+  public static final byte TYPE_TRUE = 5;
+  /** Any other value, as a length prefixed Fudge message with the value in {@link #FUDGE_VALUE_FIELD_NAME} */
+  public static final byte TYPE_FUDGE = 6;
+  /** Float value, 4 bytes */
+  public static final byte TYPE_FLOAT = 7;
+
+  /**
+   * Field holding a value of {@link #TYPE_FUDGE}.
+   */
+  public static final String FUDGE_VALUE_FIELD_NAME = "value";
+
+  /**
+   * Field of the Fudge message holding a compact frame when ticks are sent over a Fudge
+   * message transport rather than as raw bytes.
+   */
+  public static final String FUDGE_FRAME_FIELD_NAME = "compactTick";
+
+  /**
+   * Restricted constructor.
+   */
+  private CompactTickFormat() {
+  }
+
+  /**
+   * Tests whether a message is a compact frame rather than a Fudge envelope.
+   *
+   * @param message the message, not null
+   * @return true if it is a compact frame
+   */
+  public static boolean isCompactTick(final byte[] message) {
+    return message.length > 1 && message[0] == MAGIC;
+  }
+
+  public static void writeVarLong(final DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  public static long readVarLong(final DataInput in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Malformed varint");
+      }
+      b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  public static void writeVarInt(final DataOutput out, final int value) throws IOException {
+    writeVarLong(out, value & 0xFFFFFFFFL);
+  }
+
+  public static int readVarInt(final DataInput in) throws IOException {
+    return (int) readVarLong(in);
+  }
+
+  public static void writeZigZag(final DataOutput out, final long value) throws IOException {
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  public static long readZigZag(final DataInput in) throws IOException {
+    final long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+}
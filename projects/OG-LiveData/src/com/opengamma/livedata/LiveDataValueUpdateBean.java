@@ -25,15 +25,29 @@ public class LiveDataValueUpdateBean implements LiveDataValueUpdate,
   private static final String SEQUENCE_NUMBER_FIELD_NAME = "sequenceNumber";
   private static final String SPECIFICATION_FIELD_NAME = "specification";
   private static final String FIELDS_FIELD_NAME = "fields";
+  private static final String ORIGIN_TIME_FIELD_NAME = "originTime";
   private final long _sequenceNumber;
   private final LiveDataSpecification _specification;
   private final FudgeMsg _fieldContainer;
+  private final long _originTime;
   
   public LiveDataValueUpdateBean(long sequenceNumber, LiveDataSpecification specification, FudgeMsg fieldContainer) {
+    this(sequenceNumber, specification, fieldContainer, 0);
+  }
+  
+  /**
+   * @param sequenceNumber the sequence number of the update
+   * @param specification the specification the update is for
+   * @param fieldContainer the fields of the update
+   * @param originTime the time the tick this update carries was received from the underlying market data API,
+   * in nanoseconds since the UTC epoch as given by {@link com.opengamma.util.monitor.LatencyClock}, or 0 if not known
+   */
+  public LiveDataValueUpdateBean(long sequenceNumber, LiveDataSpecification specification, FudgeMsg fieldContainer, long originTime) {
     // TODO kirk 2009-09-29 -- Check Inputs.
     _sequenceNumber = sequenceNumber;
     _specification = specification;
     _fieldContainer = fieldContainer;
+    _originTime = originTime;
   }
 
   @Override
@@ -51,6 +65,16 @@ public class LiveDataValueUpdateBean implements LiveDataValueUpdate,
     return _specification;
   }
   
+  /**
+   * Gets the time the tick carried by this update was received from the underlying market data API,
+   * for measuring the latency of its distribution and of the results calculated from it.
+   * 
+   * @return nanoseconds since the UTC epoch, or 0 if not known
+   */
+  public long getOriginTime() {
+    return _originTime;
+  }
+  
   public FudgeMsg toFudgeMsg(FudgeMsgFactory fudgeMessageFactory) {
     MutableFudgeMsg msg = fudgeMessageFactory.newMessage();
     msg.add(SEQUENCE_NUMBER_FIELD_NAME, getSequenceNumber());
@@ -60,6 +84,9 @@ public class LiveDataValueUpdateBean implements LiveDataValueUpdate,
     if (getFields() != null) {
       msg.add(FIELDS_FIELD_NAME, getFields());
     }
+    if (getOriginTime() != 0) {
+      msg.add(ORIGIN_TIME_FIELD_NAME, getOriginTime());
+    }
     return msg;
   
   }
@@ -77,8 +104,9 @@ public class LiveDataValueUpdateBean implements LiveDataValueUpdate,
     if (fields == null) {
       return null;
     }
+    Long originTime = msg.getLong(ORIGIN_TIME_FIELD_NAME);
     LiveDataSpecification spec = LiveDataSpecification.fromFudgeMsg(fudgeContext, specificationFields);
-    return new LiveDataValueUpdateBean(sequenceNumber, spec, fields);
+    return new LiveDataValueUpdateBean(sequenceNumber, spec, fields, (originTime != null) ? originTime : 0);
   }
 
   @Override
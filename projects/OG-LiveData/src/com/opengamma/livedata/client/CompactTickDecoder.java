@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.CompactTickFormat;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Decodes {@link CompactTickFormat} frames back into updates.
+ * <p>
+ * The decoder keeps the definitions from the latest key frame of each stream, so one decoder
+ * can be shared by all the streams a client receives. Delta frames of a stream are dropped
+ * until its first key frame arrives. A delta frame that shows a frame has been lost, because
+ * it is out of sequence or refers to a field the decoder has no definition for, is dropped
+ * and the stream treated as unknown again until its next key frame.
+ * <p>
+ * Definitions are kept until {@link #streamStopped} is called for the specification.
+ */
+public class CompactTickDecoder {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(CompactTickDecoder.class);
+
+  private final FudgeContext _fudgeContext;
+  private final ConcurrentMap<Long, StreamDefinition> _streams = new ConcurrentHashMap<Long, StreamDefinition>();
+
+  public CompactTickDecoder(FudgeContext fudgeContext) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    _fudgeContext = fudgeContext;
+  }
+
+  /**
+   * @return the number of streams a key frame has been received for
+   */
+  public int getNumStreams() {
+    return _streams.size();
+  }
+
+  /**
+   * Discards the definitions of every stream of a specification, for example when the client
+   * unsubscribes from it.
+   *
+   * @param specification the fully qualified specification, not null
+   */
+  public void streamStopped(LiveDataSpecification specification) {
+    ArgumentChecker.notNull(specification, "specification");
+    for (Iterator<StreamDefinition> itr = _streams.values().iterator(); itr.hasNext(); ) {
+      if (specification.equals(itr.next()._specification)) {
+        itr.remove();
+      }
+    }
+  }
+
+  /**
+   * Decodes a frame.
+   *
+   * @param frame the frame, not null
+   * @return the update, null if the frame is a delta of a stream whose key frame has not been
+   * received since the stream started or was last found to have lost a frame
+   */
+  public LiveDataValueUpdateBean decode(byte[] frame) {
+    ArgumentChecker.notNull(frame, "frame");
+    try {
+      final DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+      if (in.readByte() != CompactTickFormat.MAGIC) {
+        throw new OpenGammaRuntimeException("Not a compact tick");
+      }
+      final byte frameType = in.readByte();
+      final long streamId = in.readLong();
+      final long frameNumber = CompactTickFormat.readVarLong(in);
+      final long sequenceNumber = CompactTickFormat.readVarLong(in);
+      StreamDefinition stream;
+      if (frameType == CompactTickFormat.FRAME_KEY) {
+        final byte[] encodedSpecification = new byte[CompactTickFormat.readVarInt(in)];
+        in.readFully(encodedSpecification);
+        final FudgeMsg specificationMsg = _fudgeContext.deserialize(encodedSpecification).getMessage();
+        final LiveDataSpecification specification = LiveDataSpecification.fromFudgeMsg(new FudgeDeserializer(_fudgeContext), specificationMsg);
+        final String[] fieldNames = new String[CompactTickFormat.readVarInt(in)];
+        for (int i = 0; i < fieldNames.length; i++) {
+          final int id = CompactTickFormat.readVarInt(in);
+          if (id < 0 || id >= fieldNames.length) {
+            throw new OpenGammaRuntimeException("Field id " + id + " out of range in key frame of stream " + streamId);
+          }
+          fieldNames[id] = in.readUTF();
+        }
+        stream = new StreamDefinition(specification, fieldNames, frameNumber);
+        _streams.put(streamId, stream);
+      } else if (frameType == CompactTickFormat.FRAME_DELTA) {
+        stream = _streams.get(streamId);
+        if (stream == null) {
+          s_logger.debug("Dropping delta {} of stream {} until its key frame arrives", sequenceNumber, streamId);
+          return null;
+        }
+        if (frameNumber != stream._lastFrameNumber + 1) {
+          return desynchronized(streamId, stream, "expected frame " + (stream._lastFrameNumber + 1) + " but received " + frameNumber);
+        }
+      } else {
+        throw new OpenGammaRuntimeException("Unknown frame type " + frameType);
+      }
+      final int numValues = CompactTickFormat.readVarInt(in);
+      final MutableFudgeMsg fields = _fudgeContext.newMessage();
+      for (int i = 0; i < numValues; i++) {
+        final int id = CompactTickFormat.readVarInt(in);
+        if (id < 0 || id >= stream._fieldNames.length || stream._fieldNames[id] == null) {
+          return desynchronized(streamId, stream, "unknown field id " + id);
+        }
+        fields.add(stream._fieldNames[id], readValue(in));
+      }
+      stream._lastFrameNumber = frameNumber;
+      return new LiveDataValueUpdateBean(sequenceNumber, stream._specification, fields);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Malformed compact tick", e);
+    }
+  }
+
+  private LiveDataValueUpdateBean desynchronized(long streamId, StreamDefinition stream, String reason) {
+    s_logger.warn("Lost a frame of stream {} for {}, {}; dropping frames until the next key frame", new Object[] {streamId, stream._specification, reason });
+    _streams.remove(streamId, stream);
+    return null;
+  }
+
+  private Object readValue(DataInputStream in) throws IOException {
+    final byte type = in.readByte();
+    switch (type) {
+      case CompactTickFormat.TYPE_DOUBLE:
+        return in.readDouble();
+      case CompactTickFormat.TYPE_FLOAT:
+        return in.readFloat();
+      case CompactTickFormat.TYPE_INTEGER: {
+        final long value = CompactTickFormat.readZigZag(in);
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+          return (int) value;
+        }
+        return value;
+      }
+      case CompactTickFormat.TYPE_STRING:
+        return in.readUTF();
+      case CompactTickFormat.TYPE_FALSE:
+        return Boolean.FALSE;
+      case CompactTickFormat.TYPE_TRUE:
+        return Boolean.TRUE;
+      case CompactTickFormat.TYPE_FUDGE: {
+        final byte[] encoded = new byte[CompactTickFormat.readVarInt(in)];
+        in.readFully(encoded);
+        return _fudgeContext.deserialize(encoded).getMessage().getValue(CompactTickFormat.FUDGE_VALUE_FIELD_NAME);
+      }
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  /**
+   * The definitions from a key frame.
+   */
+  private static final class StreamDefinition {
+    private final LiveDataSpecification _specification;
+    private final String[] _fieldNames;
+    private volatile long _lastFrameNumber;
+
+    private StreamDefinition(LiveDataSpecification specification, String[] fieldNames, long frameNumber) {
+      _specification = specification;
+      _fieldNames = fieldNames;
+      _lastFrameNumber = frameNumber;
+    }
+  }
+
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.livedata.LiveDataListener;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Decorates a {@link LiveDataListener} that may be slow to process updates, so that it
+ * never holds up the thread receiving market data.
+ * <p>
+ * Updates are queued and delivered to the underlying listener on an executor. While the
+ * underlying listener is busy, or waiting for its next delivery slot, further updates to
+ * a specification are merged into the one already queued, keeping the latest value of
+ * each field and the latest sequence number. The queue therefore never holds more than
+ * one update per specification. The number of delivery passes, each delivering at most
+ * one update per specification, can be capped to limit the rate a listener is called at.
+ * <p>
+ * Subscription results and stopped subscriptions are passed straight through; an update
+ * still queued for a stopped subscription is discarded. If an update for the subscription
+ * is being delivered when it is stopped, the stop waits for it, so the underlying listener
+ * never receives an update after it has been told the subscription stopped.
+ * <p>
+ * Nothing wraps listeners automatically; a client that wants conflation passes the
+ * decorated listener when it subscribes.
+ */
+public class ConflatingLiveDataListener implements LiveDataListener {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ConflatingLiveDataListener.class);
+
+  private final LiveDataListener _underlying;
+  private final ScheduledExecutorService _executor;
+  private final long _minimumIntervalNanos;
+  private final FudgeContext _fudgeContext = FudgeContext.GLOBAL_DEFAULT;
+
+  private final Runnable _deliver = new Runnable() {
+    @Override
+    public void run() {
+      deliver();
+    }
+  };
+
+  private final Object _lock = new Object();
+  /** Access controlled via _lock */
+  private Map<LiveDataSpecification, PendingUpdate> _pending = new LinkedHashMap<LiveDataSpecification, PendingUpdate>();
+  /** Access controlled via _lock; the updates of the delivery pass in progress */
+  private Map<LiveDataSpecification, PendingUpdate> _delivering = Collections.emptyMap();
+  /** Access controlled via _lock */
+  private boolean _scheduled;
+  /** Access controlled via _lock */
+  private long _lastDeliveryNanos;
+
+  private final AtomicLong _numUpdatesReceived = new AtomicLong();
+  private final AtomicLong _numUpdatesDelivered = new AtomicLong();
+
+  /**
+   * Creates a listener which conflates updates only while the underlying listener is busy.
+   *
+   * @param underlying the listener to deliver to, not null
+   * @param executor the executor to deliver on, not null
+   */
+  public ConflatingLiveDataListener(LiveDataListener underlying, ScheduledExecutorService executor) {
+    this(underlying, executor, 0);
+  }
+
+  /**
+   * @param underlying the listener to deliver to, not null
+   * @param executor the executor to deliver on, not null
+   * @param maxDeliveriesPerSecond the maximum number of delivery passes a second, zero
+   * or less to deliver as soon as the underlying listener is free
+   */
+  public ConflatingLiveDataListener(LiveDataListener underlying, ScheduledExecutorService executor, double maxDeliveriesPerSecond) {
+    ArgumentChecker.notNull(underlying, "Underlying listener");
+    ArgumentChecker.notNull(executor, "Executor");
+    _underlying = underlying;
+    _executor = executor;
+    _minimumIntervalNanos = (maxDeliveriesPerSecond > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / maxDeliveriesPerSecond) : 0;
+    _lastDeliveryNanos = System.nanoTime() - _minimumIntervalNanos;
+  }
+
+  public LiveDataListener getUnderlying() {
+    return _underlying;
+  }
+
+  /**
+   * @return the number of specifications with an update waiting to be delivered
+   */
+  public int getQueueDepth() {
+    synchronized (_lock) {
+      return _pending.size();
+    }
+  }
+
+  public long getNumUpdatesReceived() {
+    return _numUpdatesReceived.get();
+  }
+
+  public long getNumUpdatesDelivered() {
+    return _numUpdatesDelivered.get();
+  }
+
+  /**
+   * @return the number of updates received for each update delivered, 1 if nothing has
+   * been conflated
+   */
+  public double getConflationRatio() {
+    final long delivered = getNumUpdatesDelivered();
+    if (delivered == 0) {
+      return 1.0;
+    }
+    return (double) getNumUpdatesReceived() / delivered;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void subscriptionResultReceived(LiveDataSubscriptionResponse subscriptionResult) {
+    _underlying.subscriptionResultReceived(subscriptionResult);
+  }
+
+  @Override
+  public void subscriptionStopped(LiveDataSpecification fullyQualifiedSpecification) {
+    final PendingUpdate delivering;
+    synchronized (_lock) {
+      _pending.remove(fullyQualifiedSpecification);
+      delivering = _delivering.get(fullyQualifiedSpecification);
+    }
+    if (delivering != null) {
+      delivering.cancel();
+    }
+    _underlying.subscriptionStopped(fullyQualifiedSpecification);
+  }
+
+  @Override
+  public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+    _numUpdatesReceived.incrementAndGet();
+    synchronized (_lock) {
+      final PendingUpdate pending = _pending.get(valueUpdate.getSpecification());
+      if (pending == null) {
+        _pending.put(valueUpdate.getSpecification(), new PendingUpdate(valueUpdate));
+      } else {
+        pending.merge(valueUpdate);
+      }
+      if (!_scheduled) {
+        _scheduled = true;
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * Schedules the next delivery pass no sooner than the minimum interval after the last.
+   * Must be called while holding _lock. If the executor rejects the pass, the updates stay
+   * queued and the next update received tries again.
+   */
+  private void schedule() {
+    final long delay = _lastDeliveryNanos + _minimumIntervalNanos - System.nanoTime();
+    try {
+      if (delay > 0) {
+        _executor.schedule(_deliver, delay, TimeUnit.NANOSECONDS);
+      } else {
+        _executor.execute(_deliver);
+      }
+    } catch (RejectedExecutionException e) {
+      _scheduled = false;
+      s_logger.warn("Executor rejected delivery to {}, {} updates left queued", _underlying, _pending.size());
+    }
+  }
+
+  private void deliver() {
+    final Map<LiveDataSpecification, PendingUpdate> batch;
+    synchronized (_lock) {
+      batch = _pending;
+      _pending = new LinkedHashMap<LiveDataSpecification, PendingUpdate>();
+      _delivering = batch;
+      _lastDeliveryNanos = System.nanoTime();
+    }
+    for (PendingUpdate update : batch.values()) {
+      update.deliver();
+    }
+    synchronized (_lock) {
+      _delivering = Collections.emptyMap();
+      if (_pending.isEmpty()) {
+        _scheduled = false;
+      } else {
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * An update waiting to be delivered. The first update is held as received, and only copied
+   * when a second one has to be merged into it.
+   */
+  private final class PendingUpdate {
+
+    private final LiveDataSpecification _specification;
+    private LiveDataValueUpdate _update;
+    private MutableFudgeMsg _merged;
+    private long _sequenceNumber;
+    private final long _originTime;
+    /** Access controlled via this object's monitor, held while the update is delivered */
+    private boolean _cancelled;
+
+    private PendingUpdate(LiveDataValueUpdate update) {
+      _specification = update.getSpecification();
+      _update = update;
+      // The latency of a merged update is that of the oldest tick in it
+      _originTime = (update instanceof LiveDataValueUpdateBean) ? ((LiveDataValueUpdateBean) update).getOriginTime() : 0;
+    }
+
+    /**
+     * Merges a later update in. Fields are matched by name, or by ordinal if they have no
+     * name; every field of the later update replaces all earlier fields it matches, so a
+     * field repeated in one update stays repeated and none is duplicated.
+     */
+    private void merge(LiveDataValueUpdate update) {
+      final FudgeMsg previous = (_merged != null) ? _merged : _update.getFields();
+      final FudgeMsg latest = update.getFields();
+      final Set<String> names = new HashSet<String>();
+      final Set<Integer> ordinals = new HashSet<Integer>();
+      for (FudgeField field : latest.getAllFields()) {
+        if (field.getName() != null) {
+          names.add(field.getName());
+        } else if (field.getOrdinal() != null) {
+          ordinals.add(field.getOrdinal());
+        }
+      }
+      final MutableFudgeMsg merged = _fudgeContext.newMessage();
+      for (FudgeField field : previous.getAllFields()) {
+        if (field.getName() != null) {
+          if (names.contains(field.getName())) {
+            continue;
+          }
+        } else if (field.getOrdinal() != null && ordinals.contains(field.getOrdinal())) {
+          continue;
+        }
+        merged.add(field);
+      }
+      for (FudgeField field : latest.getAllFields()) {
+        merged.add(field);
+      }
+      _merged = merged;
+      _update = null;
+      _sequenceNumber = update.getSequenceNumber();
+    }
+
+    /**
+     * Stops the update being delivered, waiting for the delivery if it is in progress.
+     */
+    private synchronized void cancel() {
+      _cancelled = true;
+    }
+
+    private synchronized void deliver() {
+      if (_cancelled) {
+        return;
+      }
+      try {
+        _underlying.valueUpdate(toValueUpdate());
+      } catch (RuntimeException e) {
+        s_logger.error("Delivering update to " + _underlying + " failed", e);
+      }
+      _numUpdatesDelivered.incrementAndGet();
+    }
+
+    private LiveDataValueUpdate toValueUpdate() {
+      if (_update != null) {
+        return _update;
+      }
+      final FudgeMsg fields = _merged;
+      return new LiveDataValueUpdateBean(_sequenceNumber, _specification, fields, _originTime);
+    }
+
+  }
+
+}
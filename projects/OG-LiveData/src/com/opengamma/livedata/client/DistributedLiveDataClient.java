@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
 import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.FudgeMsgEnvelope;
 import org.fudgemsg.mapping.FudgeDeserializer;
@@ -19,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.CompactTickFormat;
 import com.opengamma.livedata.LiveDataSpecification;
 import com.opengamma.livedata.LiveDataValueUpdateBean;
 import com.opengamma.livedata.UserPrincipal;
@@ -45,6 +47,8 @@ public class DistributedLiveDataClient extends AbstractLiveDataClient implements
   
   private final DistributedEntitlementChecker _entitlementChecker;
   
+  private final CompactTickDecoder _compactTickDecoder;
+  
   /**
    * An exception will be thrown when doing a snapshot if no reply is received from the server
    * within this time. Milliseconds.
@@ -69,6 +73,7 @@ public class DistributedLiveDataClient extends AbstractLiveDataClient implements
     _fudgeContext = fudgeContext;
     
     _entitlementChecker = new DistributedEntitlementChecker(entitlementRequestSender, fudgeContext);
+    _compactTickDecoder = new CompactTickDecoder(fudgeContext);
   }
 
   /**
@@ -88,6 +93,7 @@ public class DistributedLiveDataClient extends AbstractLiveDataClient implements
   @Override
   protected void cancelPublication(LiveDataSpecification fullyQualifiedSpecification) {
     s_logger.info("Request made to cancel publication of {}", fullyQualifiedSpecification);
+    _compactTickDecoder.streamStopped(fullyQualifiedSpecification);
     // TODO kirk 2009-10-28 -- This should handle an unsubscription request. For now,
     // however, we can just make do with allowing the heartbeat to time out.
   }
@@ -378,10 +384,28 @@ public class DistributedLiveDataClient extends AbstractLiveDataClient implements
   public void messageReceived(FudgeContext fudgeContext,
       FudgeMsgEnvelope msgEnvelope) {
     FudgeMsg fudgeMsg = msgEnvelope.getMessage();
+    FudgeField compactTick = fudgeMsg.getByName(CompactTickFormat.FUDGE_FRAME_FIELD_NAME);
+    if (compactTick != null) {
+      compactTickReceived((byte[]) compactTick.getValue());
+      return;
+    }
     LiveDataValueUpdateBean update = LiveDataValueUpdateBean.fromFudgeMsg(new FudgeDeserializer(fudgeContext), fudgeMsg);
     valueUpdate(update);
   }
 
+  /**
+   * Handles a tick sent in the {@link CompactTickFormat}. Delta frames received before the
+   * key frame of their stream are dropped; the periodic key frames resynchronize the stream.
+   * 
+   * @param frame the compact frame, not null
+   */
+  protected void compactTickReceived(byte[] frame) {
+    LiveDataValueUpdateBean update = _compactTickDecoder.decode(frame);
+    if (update != null) {
+      valueUpdate(update);
+    }
+  }
+
   @Override
   public Map<LiveDataSpecification, Boolean> isEntitled(UserPrincipal user,
       Collection<LiveDataSpecification> requestedSpecifications) {
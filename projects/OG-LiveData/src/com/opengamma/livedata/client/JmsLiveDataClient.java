@@ -24,7 +24,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.Lifecycle;
 
 import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.CompactTickFormat;
 import com.opengamma.transport.ByteArrayFudgeMessageReceiver;
+import com.opengamma.transport.ByteArrayMessageReceiver;
 import com.opengamma.transport.FudgeRequestSender;
 import com.opengamma.transport.jms.JmsByteArrayMessageDispatcher;
 import com.opengamma.util.ArgumentChecker;
@@ -114,8 +116,19 @@ public class JmsLiveDataClient extends DistributedLiveDataClient implements Life
     }
     
     s_logger.info("Starting listening to tick distribution specification {}", tickDistributionSpecification);
-    ByteArrayFudgeMessageReceiver fudgeReceiver = new ByteArrayFudgeMessageReceiver(this);
-    JmsByteArrayMessageDispatcher jmsDispatcher = new JmsByteArrayMessageDispatcher(fudgeReceiver);
+    final ByteArrayFudgeMessageReceiver fudgeReceiver = new ByteArrayFudgeMessageReceiver(this);
+    // The server may send either Fudge encoded updates or compact frames, depending on its configuration
+    ByteArrayMessageReceiver tickReceiver = new ByteArrayMessageReceiver() {
+      @Override
+      public void messageReceived(byte[] message) {
+        if (CompactTickFormat.isCompactTick(message)) {
+          compactTickReceived(message);
+        } else {
+          fudgeReceiver.messageReceived(message);
+        }
+      }
+    };
+    JmsByteArrayMessageDispatcher jmsDispatcher = new JmsByteArrayMessageDispatcher(tickReceiver);
     
     MessageConsumer messageConsumer;
     try {
@@ -67,8 +67,13 @@ public class ValueDistributor {
     }
   }
   
-  // TODO kirk 2009-09-29 -- This should be handed an executor service to
-  // invoke the updates asynchronously.
+  /**
+   * Delivers an update to the listeners of its specification on the calling thread.
+   * Listeners that may be slow should be wrapped in a {@link ConflatingLiveDataListener}
+   * so they do not hold up the thread receiving market data.
+   * 
+   * @param updateBean the update, not null
+   */
   public void notifyListeners(LiveDataValueUpdateBean updateBean) {
     Set<LiveDataListener> listeners = _listenersBySpec.get(updateBean.getSpecification());
     if (listeners == null) {
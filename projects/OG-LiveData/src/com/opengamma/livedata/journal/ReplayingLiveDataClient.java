@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.client.AbstractLiveDataClient;
+import com.opengamma.livedata.client.SubscriptionHandle;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
+import com.opengamma.livedata.msg.SubscriptionType;
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A {@code LiveDataClient} that replays the updates recorded in a {@link TickJournal}
+ * instead of contacting a server.
+ * <p>
+ * Used in place of a remote client, for example underneath a {@code LiveMarketDataProvider},
+ * it feeds recorded market data through the engine so that runs can be repeated. Subscriptions
+ * always succeed. A recorded update is delivered to a subscription if it was recorded for the
+ * same specification, or for one with the same normalization rule set sharing an identifier,
+ * since the server may have resolved the requested identifiers to a different bundle.
+ * <p>
+ * {@link #replay(double)} delivers the updates on the calling thread in journal order, so a
+ * replay with the same subscriptions delivers the same updates in the same order every time.
+ */
+public class ReplayingLiveDataClient extends AbstractLiveDataClient {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ReplayingLiveDataClient.class);
+
+  private final TickJournalReader _journal;
+  private final Object _subscriptionLock = new Object();
+  /** The requested specifications subscribed to, changed while holding _subscriptionLock */
+  private final Set<LiveDataSpecification> _subscriptions = new CopyOnWriteArraySet<LiveDataSpecification>();
+  /**
+   * The subscriptions each recorded specification is delivered to, cleared whenever the subscriptions change.
+   * Populated while holding _subscriptionLock so that a list computed before a change is never stored after it.
+   */
+  private final ConcurrentMap<LiveDataSpecification, List<LiveDataSpecification>> _deliverTo =
+      new ConcurrentHashMap<LiveDataSpecification, List<LiveDataSpecification>>();
+  /**
+   * The values replayed so far, by recorded specification, to answer snapshots.
+   * Each message is replaced rather than changed, so snapshots can read it while replaying.
+   */
+  private final Map<LiveDataSpecification, FudgeMsg> _lastKnownValues = new ConcurrentHashMap<LiveDataSpecification, FudgeMsg>();
+
+  public ReplayingLiveDataClient(TickJournalReader journal) {
+    ArgumentChecker.notNull(journal, "journal");
+    _journal = journal;
+  }
+
+  public TickJournalReader getJournal() {
+    return _journal;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Replays the whole journal as fast as possible.
+   *
+   * @return the number of updates replayed
+   */
+  public long replay() {
+    return replay(0);
+  }
+
+  /**
+   * Replays the whole journal, keeping the recorded intervals between updates scaled by a speed-up.
+   *
+   * @param speed how many times faster than recorded to replay, zero to replay as fast as possible
+   * @return the number of updates replayed
+   */
+  public long replay(double speed) {
+    ArgumentChecker.isTrue(speed >= 0, "speed must not be negative");
+    final boolean paced = (speed > 0) && !Double.isInfinite(speed);
+    final long startNanos = System.nanoTime();
+    long firstTimestamp = 0;
+    long numUpdates = 0;
+    final Iterator<TickJournalEntry> entries = _journal.iterator();
+    while (entries.hasNext()) {
+      final TickJournalEntry entry = entries.next();
+      if (paced) {
+        if (numUpdates == 0) {
+          firstTimestamp = entry.getTimestamp();
+        }
+        waitUntil(startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(entry.getTimestamp() - firstTimestamp) / speed));
+      }
+      replay(entry.getUpdate());
+      numUpdates++;
+    }
+    s_logger.info("Replayed {} updates from {}", numUpdates, _journal);
+    return numUpdates;
+  }
+
+  private void replay(final LiveDataValueUpdateBean update) {
+    final LiveDataSpecification recorded = update.getSpecification();
+    final FudgeMsg previous = _lastKnownValues.get(recorded);
+    final FieldHistoryStore store = (previous == null) ? new FieldHistoryStore() : new FieldHistoryStore(previous);
+    store.liveDataReceived(update.getFields());
+    _lastKnownValues.put(recorded, store.getLastKnownValues());
+    for (LiveDataSpecification subscription : getDeliverTo(recorded)) {
+      valueUpdate(new LiveDataValueUpdateBean(update.getSequenceNumber(), subscription, update.getFields()));
+    }
+  }
+
+  private List<LiveDataSpecification> getDeliverTo(final LiveDataSpecification recorded) {
+    List<LiveDataSpecification> deliverTo = _deliverTo.get(recorded);
+    if (deliverTo == null) {
+      synchronized (_subscriptionLock) {
+        deliverTo = _deliverTo.get(recorded);
+        if (deliverTo == null) {
+          deliverTo = new ArrayList<LiveDataSpecification>();
+          for (LiveDataSpecification subscription : _subscriptions) {
+            if (matches(subscription, recorded)) {
+              deliverTo.add(subscription);
+            }
+          }
+          _deliverTo.put(recorded, deliverTo);
+        }
+      }
+    }
+    return deliverTo;
+  }
+
+  private static boolean matches(final LiveDataSpecification requested, final LiveDataSpecification recorded) {
+    return requested.equals(recorded)
+        || (requested.getNormalizationRuleSetId().equals(recorded.getNormalizationRuleSetId())
+            && requested.getIdentifiers().containsAny(recorded.getIdentifiers()));
+  }
+
+  private void waitUntil(final long nanos) {
+    final long wait = nanos - System.nanoTime();
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted replaying " + this, e);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  protected void handleSubscriptionRequest(Collection<SubscriptionHandle> subHandles) {
+    for (SubscriptionHandle subHandle : subHandles) {
+      final LiveDataSpecification requested = subHandle.getRequestedSpecification();
+      final LiveDataSubscriptionResponse response;
+      if (subHandle.getSubscriptionType() == SubscriptionType.SNAPSHOT) {
+        final LiveDataValueUpdateBean snapshot = getSnapshot(requested);
+        if (snapshot != null) {
+          response = new LiveDataSubscriptionResponse(requested, LiveDataSubscriptionResult.SUCCESS, null, requested, null, snapshot);
+        } else {
+          response = new LiveDataSubscriptionResponse(requested, LiveDataSubscriptionResult.NOT_PRESENT, "Nothing replayed for " + requested, requested, null, null);
+        }
+        subHandle.subscriptionResultReceived(response);
+      } else {
+        synchronized (_subscriptionLock) {
+          _subscriptions.add(requested);
+          _deliverTo.clear();
+        }
+        response = new LiveDataSubscriptionResponse(requested, LiveDataSubscriptionResult.SUCCESS, null, requested, _journal.getName(), null);
+        subscriptionRequestSatisfied(subHandle, response);
+        subHandle.subscriptionResultReceived(response);
+      }
+    }
+  }
+
+  private LiveDataValueUpdateBean getSnapshot(final LiveDataSpecification requested) {
+    for (Map.Entry<LiveDataSpecification, FudgeMsg> lastKnownValues : new HashMap<LiveDataSpecification, FudgeMsg>(_lastKnownValues).entrySet()) {
+      if (matches(requested, lastKnownValues.getKey())) {
+        return new LiveDataValueUpdateBean(0, requested, lastKnownValues.getValue());
+      }
+    }
+    return null;
+  }
+
+  @Override
+  protected void cancelPublication(LiveDataSpecification fullyQualifiedSpecification) {
+    synchronized (_subscriptionLock) {
+      _subscriptions.remove(fullyQualifiedSpecification);
+      _deliverTo.clear();
+    }
+  }
+
+  @Override
+  public Map<LiveDataSpecification, Boolean> isEntitled(UserPrincipal user, Collection<LiveDataSpecification> requestedSpecifications) {
+    final Map<LiveDataSpecification, Boolean> entitled = new HashMap<LiveDataSpecification, Boolean>();
+    for (LiveDataSpecification specification : requestedSpecifications) {
+      entitled.put(specification, isEntitled(user, specification));
+    }
+    return entitled;
+  }
+
+  @Override
+  public boolean isEntitled(UserPrincipal user, LiveDataSpecification requestedSpecification) {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "ReplayingLiveDataClient[" + _journal + "]";
+  }
+
+}
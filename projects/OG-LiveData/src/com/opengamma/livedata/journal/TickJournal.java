@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.fudgemsg.FudgeContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An append-only journal of normalized updates, written through memory-mapped files.
+ * <p>
+ * Each update is given a journal sequence number and a timestamp and is written as a record of
+ * <pre>
+ *   int   length of the Fudge encoded update
+ *   int   CRC-32 of the Fudge encoded update followed by the sequence number and timestamp
+ *   long  journal sequence number
+ *   long  timestamp, milliseconds from the UTC epoch
+ *   byte  the Fudge encoded {@link LiveDataValueUpdateBean}, as sent to clients
+ * </pre>
+ * The length is written last, so a record only becomes visible to a {@link TickJournalReader},
+ * including one in another process, once it is complete. A zero length marks the end of the data.
+ * The operating system may write the pages of a record back in any order, so after a crash a
+ * record can have its length but not all of its content; the checksum detects this, and such a
+ * record also marks the end of the data.
+ * <p>
+ * A new file is started for each UTC day, named {@code <name>-yyyyMMdd.journal}. Appending to a
+ * journal that already exists carries on from its last record, so a restarted server continues
+ * the sequence numbers. The files grow a region at a time; writing only touches memory, and the
+ * operating system writes the pages back unless {@link #flush()} is called.
+ * <p>
+ * This class is thread-safe, but writes are serialized so there should only be one writer per
+ * journal, including across processes.
+ */
+public class TickJournal {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournal.class);
+
+  /**
+   * Default name of the journal files.
+   */
+  public static final String DEFAULT_NAME = "ticks";
+  /**
+   * Default size of the regions mapped into memory, 64MB.
+   */
+  public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+  /** Suffix of the journal files */
+  static final String FILE_SUFFIX = ".journal";
+  /** Bytes preceding the update in a record */
+  static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 8;
+
+  private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+  private final File _directory;
+  private final String _name;
+  private final FudgeContext _fudgeContext;
+  private final int _regionSize;
+  private final SimpleDateFormat _dateFormat;
+
+  private long _nextSequenceNumber;
+  private long _currentDay = Long.MIN_VALUE;
+  private RandomAccessFile _file;
+  private FileChannel _channel;
+  /** Null until a record is written to the current file */
+  private MappedByteBuffer _region;
+  /** File position of the start of _region */
+  private long _regionStart;
+  /** File position of the next record */
+  private long _position;
+  private long _numTicksWritten;
+  private boolean _closed;
+
+  public TickJournal(File directory) {
+    this(directory, DEFAULT_NAME, FudgeContext.GLOBAL_DEFAULT, DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * @param directory the directory holding the journal, created if necessary, not null
+   * @param name the name of the journal files, not null
+   * @param fudgeContext the context to encode updates with, not null
+   * @param regionSize the number of bytes mapped into memory at a time, positive
+   */
+  public TickJournal(File directory, String name, FudgeContext fudgeContext, int regionSize) {
+    ArgumentChecker.notNull(directory, "directory");
+    ArgumentChecker.notNull(name, "name");
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.isTrue(regionSize > RECORD_HEADER_SIZE, "regionSize must exceed the record header size");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new OpenGammaRuntimeException("Unable to create journal directory " + directory);
+    }
+    _directory = directory;
+    _name = name;
+    _fudgeContext = fudgeContext;
+    _regionSize = regionSize;
+    _dateFormat = new SimpleDateFormat("yyyyMMdd");
+    _dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    _nextSequenceNumber = findNextSequenceNumber();
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  /**
+   * @return the number of updates written by this instance
+   */
+  public synchronized long getNumTicksWritten() {
+    return _numTicksWritten;
+  }
+
+  /**
+   * @return the journal sequence number the next update will be given
+   */
+  public synchronized long getNextSequenceNumber() {
+    return _nextSequenceNumber;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Appends an update, timestamped now.
+   *
+   * @param update the normalized update, not null
+   * @return the journal sequence number of the update
+   */
+  public long append(LiveDataValueUpdateBean update) {
+    return append(update, System.currentTimeMillis());
+  }
+
+  /**
+   * Appends an update.
+   * <p>
+   * The file is chosen by the timestamp, but a journal never rolls back to an earlier day, so an
+   * update timestamped before midnight that arrives after an update timestamped after it goes in
+   * the later file.
+   *
+   * @param update the normalized update, not null
+   * @param timestamp when the update was received, milliseconds from the UTC epoch
+   * @return the journal sequence number of the update
+   */
+  public long append(LiveDataValueUpdateBean update, long timestamp) {
+    ArgumentChecker.notNull(update, "update");
+    // Encoding is the expensive part, so is done before serializing on the journal
+    final byte[] encoded = _fudgeContext.toByteArray(update.toFudgeMsg(_fudgeContext));
+    final CRC32 checksum = new CRC32();
+    checksum.update(encoded);
+    return append(encoded, checksum, timestamp);
+  }
+
+  private synchronized long append(byte[] encoded, CRC32 checksum, long timestamp) {
+    if (_closed) {
+      throw new IllegalStateException("Journal " + _name + " in " + _directory + " has been closed");
+    }
+    try {
+      final long day = floorDiv(timestamp, MILLIS_PER_DAY);
+      if (day > _currentDay) {
+        roll(day);
+      }
+      final int recordSize = RECORD_HEADER_SIZE + encoded.length;
+      if ((_region == null) || (_position + recordSize > _regionStart + _region.capacity())) {
+        _regionStart = _position;
+        _region = _channel.map(FileChannel.MapMode.READ_WRITE, _regionStart, Math.max(_regionSize, recordSize));
+      }
+      final int offset = (int) (_position - _regionStart);
+      final long sequenceNumber = _nextSequenceNumber;
+      _region.putInt(offset + 4, checksum(checksum, sequenceNumber, timestamp));
+      _region.putLong(offset + 8, sequenceNumber);
+      _region.putLong(offset + 16, timestamp);
+      _region.position(offset + RECORD_HEADER_SIZE);
+      _region.put(encoded);
+      // Publishes the record
+      _region.putInt(offset, encoded.length);
+      _position += recordSize;
+      _nextSequenceNumber++;
+      _numTicksWritten++;
+      return sequenceNumber;
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Unable to write to journal " + _name + " in " + _directory, e);
+    }
+  }
+
+  /**
+   * Forces the records written so far to disk.
+   */
+  public synchronized void flush() {
+    if (_region != null) {
+      _region.force();
+    }
+  }
+
+  /**
+   * Flushes and closes the current file. The journal cannot be written to afterwards.
+   */
+  public synchronized void close() {
+    closeFile();
+    _closed = true;
+  }
+
+  //-------------------------------------------------------------------------
+  private void roll(long day) throws IOException {
+    closeFile();
+    final File file = new File(_directory, _name + "-" + _dateFormat.format(new Date(day * MILLIS_PER_DAY)) + FILE_SUFFIX);
+    s_logger.info("Writing ticks to {}", file);
+    _file = new RandomAccessFile(file, "rw");
+    _channel = _file.getChannel();
+    final long[] end = scan(_channel);
+    // Anything after the last complete record is a write that was cut short
+    if (_channel.size() > end[0]) {
+      _channel.truncate(end[0]);
+    }
+    _position = end[0];
+    _regionStart = _position;
+    _region = null;
+    _currentDay = day;
+  }
+
+  private void closeFile() {
+    if (_file == null) {
+      return;
+    }
+    flush();
+    try {
+      _file.close();
+    } catch (IOException e) {
+      s_logger.warn("Unable to close journal file", e);
+    }
+    _file = null;
+    _channel = null;
+    _region = null;
+  }
+
+  private long findNextSequenceNumber() {
+    final List<File> files = listFiles(_directory, _name);
+    for (int i = files.size() - 1; i >= 0; i--) {
+      try {
+        final RandomAccessFile file = new RandomAccessFile(files.get(i), "r");
+        try {
+          final long lastSequenceNumber = scan(file.getChannel())[1];
+          if (lastSequenceNumber >= 0) {
+            return lastSequenceNumber + 1;
+          }
+        } finally {
+          file.close();
+        }
+      } catch (IOException e) {
+        throw new OpenGammaRuntimeException("Unable to read journal file " + files.get(i), e);
+      }
+    }
+    return 0;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Completes the checksum of a record.
+   *
+   * @param payloadChecksum the checksum of the encoded update, updated by this method, not null
+   * @param sequenceNumber the journal sequence number of the record
+   * @param timestamp the timestamp of the record
+   * @return the checksum to write in the record header
+   */
+  static int checksum(CRC32 payloadChecksum, long sequenceNumber, long timestamp) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      payloadChecksum.update((int) (sequenceNumber >>> shift));
+    }
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      payloadChecksum.update((int) (timestamp >>> shift));
+    }
+    return (int) payloadChecksum.getValue();
+  }
+
+  /**
+   * Finds the end of the complete, intact records of a journal file.
+   *
+   * @param channel the file, not null
+   * @return the position after the last intact record, and the journal sequence number of that record or -1 if there are none
+   * @throws IOException if the file cannot be read
+   */
+  static long[] scan(FileChannel channel) throws IOException {
+    final long size = channel.size();
+    final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    ByteBuffer payload = ByteBuffer.allocate(1024);
+    final CRC32 checksum = new CRC32();
+    long position = 0;
+    long lastSequenceNumber = -1;
+    while (position + RECORD_HEADER_SIZE <= size) {
+      header.clear();
+      read(channel, header, position);
+      final int length = header.getInt(0);
+      if ((length <= 0) || (position + RECORD_HEADER_SIZE + length > size)) {
+        break;
+      }
+      if (payload.capacity() < length) {
+        payload = ByteBuffer.allocate(length);
+      }
+      payload.clear();
+      payload.limit(length);
+      read(channel, payload, position + RECORD_HEADER_SIZE);
+      checksum.reset();
+      checksum.update(payload.array(), 0, length);
+      final long sequenceNumber = header.getLong(8);
+      if (checksum(checksum, sequenceNumber, header.getLong(16)) != header.getInt(4)) {
+        s_logger.warn("Record at {} is incomplete or corrupt, treating it as the end of the data", position);
+        break;
+      }
+      lastSequenceNumber = sequenceNumber;
+      position += RECORD_HEADER_SIZE + length;
+    }
+    return new long[] {position, lastSequenceNumber };
+  }
+
+  /**
+   * Fills a cleared buffer from a position in a file, or as much of it as the file holds.
+   */
+  private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Lists the files of a journal, oldest first.
+   *
+   * @param directory the directory holding the journal, not null
+   * @param name the name of the journal files, not null
+   * @return the files, not null
+   */
+  static List<File> listFiles(File directory, String name) {
+    final Pattern pattern = Pattern.compile(Pattern.quote(name) + "-\\d{8}" + Pattern.quote(FILE_SUFFIX));
+    final File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String fileName) {
+        return pattern.matcher(fileName).matches();
+      }
+    });
+    if (files == null) {
+      return new ArrayList<File>();
+    }
+    // The date in the name sorts chronologically
+    Arrays.sort(files);
+    return new ArrayList<File>(Arrays.asList(files));
+  }
+
+  private static long floorDiv(long value, long divisor) {
+    final long quotient = value / divisor;
+    return ((value % divisor) < 0) ? quotient - 1 : quotient;
+  }
+
+  @Override
+  public String toString() {
+    return "TickJournal[" + _name + " in " + _directory + "]";
+  }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An update read back from a {@link TickJournal}.
+ */
+public class TickJournalEntry {
+
+  private final long _journalSequenceNumber;
+  private final long _timestamp;
+  private final LiveDataValueUpdateBean _update;
+
+  public TickJournalEntry(long journalSequenceNumber, long timestamp, LiveDataValueUpdateBean update) {
+    ArgumentChecker.notNull(update, "update");
+    _journalSequenceNumber = journalSequenceNumber;
+    _timestamp = timestamp;
+    _update = update;
+  }
+
+  /**
+   * @return the position of the update in the journal, increasing by one with each update
+   * written across all files of the journal
+   */
+  public long getJournalSequenceNumber() {
+    return _journalSequenceNumber;
+  }
+
+  /**
+   * @return when the update was written, milliseconds from the UTC epoch
+   */
+  public long getTimestamp() {
+    return _timestamp;
+  }
+
+  /**
+   * @return the update as distributed, not null
+   */
+  public LiveDataValueUpdateBean getUpdate() {
+    return _update;
+  }
+
+  @Override
+  public String toString() {
+    return "TickJournalEntry[" + _journalSequenceNumber + ", " + _timestamp + ", " + _update + "]";
+  }
+
+}
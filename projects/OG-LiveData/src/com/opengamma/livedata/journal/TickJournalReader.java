@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Reads the updates written to a {@link TickJournal}, in the order they were written.
+ * <p>
+ * The files are mapped into memory a region at a time. A journal can be read while it is
+ * being written; an iterator ends at the last record complete when it reaches it. A record
+ * that fails its checksum or cannot be decoded ends the file it is in.
+ */
+public class TickJournalReader implements Iterable<TickJournalEntry> {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalReader.class);
+
+  /**
+   * Default number of files, counting back from the latest, scanned to recover last known values.
+   */
+  public static final int DEFAULT_RECOVERY_FILES = 2;
+
+  private final File _directory;
+  private final String _name;
+  private final FudgeContext _fudgeContext;
+  private final int _regionSize;
+
+  public TickJournalReader(File directory) {
+    this(directory, TickJournal.DEFAULT_NAME, FudgeContext.GLOBAL_DEFAULT, TickJournal.DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * @param directory the directory holding the journal, not null
+   * @param name the name of the journal files, not null
+   * @param fudgeContext the context to decode updates with, not null
+   * @param regionSize the number of bytes mapped into memory at a time, positive
+   */
+  public TickJournalReader(File directory, String name, FudgeContext fudgeContext, int regionSize) {
+    ArgumentChecker.notNull(directory, "directory");
+    ArgumentChecker.notNull(name, "name");
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.isTrue(regionSize > TickJournal.RECORD_HEADER_SIZE, "regionSize must exceed the record header size");
+    _directory = directory;
+    _name = name;
+    _fudgeContext = fudgeContext;
+    _regionSize = regionSize;
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  /**
+   * @return the files of the journal, oldest first, not null
+   */
+  public List<File> getFiles() {
+    return TickJournal.listFiles(_directory, _name);
+  }
+
+  /**
+   * Iterates over every update in the journal.
+   *
+   * @return the iterator, not null
+   */
+  @Override
+  public Iterator<TickJournalEntry> iterator() {
+    return new EntryIterator(getFiles());
+  }
+
+  /**
+   * Iterates over the updates in some of the files of the journal.
+   *
+   * @param files the files, from {@link #getFiles()}, not null
+   * @return the iterator, not null
+   */
+  public Iterator<TickJournalEntry> iterator(List<File> files) {
+    ArgumentChecker.notNull(files, "files");
+    return new EntryIterator(files);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Recovers the last known values of each specification from the latest files of the journal,
+   * scanning {@link #DEFAULT_RECOVERY_FILES} of them so that fields last ticked the day before
+   * are recovered shortly after midnight.
+   *
+   * @return the last known values, keyed by fully qualified specification, not null
+   */
+  public Map<LiveDataSpecification, FudgeMsg> recoverLastKnownValues() {
+    return recoverLastKnownValues(DEFAULT_RECOVERY_FILES);
+  }
+
+  /**
+   * Recovers the last known values of each specification by scanning the tail of the journal.
+   * <p>
+   * The values of fields that have not ticked within the files scanned are not recovered,
+   * so scanning more files trades start-up time for completeness.
+   *
+   * @param numFiles the number of files to scan, counting back from the latest, positive
+   * @return the last known values, keyed by fully qualified specification, not null
+   */
+  public Map<LiveDataSpecification, FudgeMsg> recoverLastKnownValues(int numFiles) {
+    ArgumentChecker.isTrue(numFiles > 0, "numFiles must be positive");
+    final List<File> files = getFiles();
+    final Map<LiveDataSpecification, FieldHistoryStore> stores = new HashMap<LiveDataSpecification, FieldHistoryStore>();
+    final Iterator<TickJournalEntry> entries = iterator(files.subList(Math.max(0, files.size() - numFiles), files.size()));
+    while (entries.hasNext()) {
+      final LiveDataValueUpdateBean update = entries.next().getUpdate();
+      FieldHistoryStore store = stores.get(update.getSpecification());
+      if (store == null) {
+        store = new FieldHistoryStore();
+        stores.put(update.getSpecification(), store);
+      }
+      store.liveDataReceived(update.getFields());
+    }
+    final Map<LiveDataSpecification, FudgeMsg> lastKnownValues = new HashMap<LiveDataSpecification, FudgeMsg>();
+    for (Map.Entry<LiveDataSpecification, FieldHistoryStore> store : stores.entrySet()) {
+      lastKnownValues.put(store.getKey(), store.getValue().getLastKnownValues());
+    }
+    return lastKnownValues;
+  }
+
+  @Override
+  public String toString() {
+    return "TickJournalReader[" + _name + " in " + _directory + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Reads the records of a list of files in turn.
+   */
+  private final class EntryIterator implements Iterator<TickJournalEntry> {
+
+    private final FudgeDeserializer _deserializer = new FudgeDeserializer(_fudgeContext);
+    private final CRC32 _crc = new CRC32();
+    private final Iterator<File> _files;
+    private File _file;
+    private MappedByteBuffer _region;
+    private long _regionStart;
+    private long _position;
+    private TickJournalEntry _next;
+
+    private EntryIterator(List<File> files) {
+      _files = files.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (_next == null) {
+        _next = readNext();
+      }
+      return _next != null;
+    }
+
+    @Override
+    public TickJournalEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final TickJournalEntry next = _next;
+      _next = null;
+      return next;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("A journal is append-only");
+    }
+
+    private TickJournalEntry readNext() {
+      while (true) {
+        if (_file == null) {
+          if (!_files.hasNext()) {
+            return null;
+          }
+          _file = _files.next();
+          _region = null;
+          _regionStart = 0;
+          _position = 0;
+        }
+        try {
+          final TickJournalEntry entry = readRecord();
+          if (entry != null) {
+            return entry;
+          }
+        } catch (IOException e) {
+          throw new OpenGammaRuntimeException("Unable to read journal file " + _file, e);
+        }
+        // End of this file
+        _file = null;
+        _region = null;
+      }
+    }
+
+    private TickJournalEntry readRecord() throws IOException {
+      if (!isMapped(TickJournal.RECORD_HEADER_SIZE) && !map(TickJournal.RECORD_HEADER_SIZE)) {
+        return null;
+      }
+      final int length = _region.getInt((int) (_position - _regionStart));
+      if (length <= 0) {
+        return null;
+      }
+      final int recordSize = TickJournal.RECORD_HEADER_SIZE + length;
+      if (!isMapped(recordSize) && !map(recordSize)) {
+        return null;
+      }
+      final int offset = (int) (_position - _regionStart);
+      final int checksum = _region.getInt(offset + 4);
+      final long sequenceNumber = _region.getLong(offset + 8);
+      final long timestamp = _region.getLong(offset + 16);
+      final byte[] encoded = new byte[length];
+      _region.position(offset + TickJournal.RECORD_HEADER_SIZE);
+      _region.get(encoded);
+      _crc.reset();
+      _crc.update(encoded);
+      if (TickJournal.checksum(_crc, sequenceNumber, timestamp) != checksum) {
+        s_logger.warn("Record at {} of {} is incomplete or corrupt, treating it as the end of the file", _position, _file);
+        return null;
+      }
+      final LiveDataValueUpdateBean update;
+      try {
+        final FudgeMsg msg = _fudgeContext.deserialize(encoded).getMessage();
+        update = LiveDataValueUpdateBean.fromFudgeMsg(_deserializer, msg);
+      } catch (RuntimeException e) {
+        s_logger.warn("Unable to decode record at " + _position + " of " + _file + ", treating it as the end of the file", e);
+        return null;
+      }
+      _position += recordSize;
+      return new TickJournalEntry(sequenceNumber, timestamp, update);
+    }
+
+    private boolean isMapped(int bytes) {
+      return (_region != null) && (_position + bytes <= _regionStart + _region.capacity());
+    }
+
+    /**
+     * Maps the next region of the file, starting at the current position.
+     *
+     * @return false if the file does not yet hold the number of bytes needed
+     */
+    private boolean map(int bytes) throws IOException {
+      final RandomAccessFile file = new RandomAccessFile(_file, "r");
+      try {
+        final FileChannel channel = file.getChannel();
+        final long available = channel.size() - _position;
+        if (available < bytes) {
+          return false;
+        }
+        // The mapping remains valid once the file is closed
+        _region = channel.map(FileChannel.MapMode.READ_ONLY, _position, Math.min(available, Math.max(_regionSize, bytes)));
+        _regionStart = _position;
+        return true;
+      } finally {
+        file.close();
+      }
+    }
+
+  }
+
+}
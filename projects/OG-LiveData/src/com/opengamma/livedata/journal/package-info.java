@@ -0,0 +1,11 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+
+/**
+ * Contains an append-only, memory-mapped journal of normalized LiveData updates,
+ * used to recover last known values on restart and to replay recorded market data.
+ */
+package com.opengamma.livedata.journal;
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.normalization;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * An ordered list of normalization rules, prepared for applying to every tick.
+ * <p>
+ * Applying the rules one at a time copies the message once up front and each {@link FieldFilter}
+ * builds another, while every {@link FieldNameChange} and {@link UnitChange} scans the message for
+ * its field and then scans it again to remove it. Here each run of consecutive filter, rename and
+ * unit change rules is fused into a single pass over the message that writes straight into the
+ * output message. What the run does to a field depends only on its name, so the outcome is worked
+ * out once per field name and cached. Any other rule, such as those which use the field history,
+ * is applied as before to the message built so far.
+ * <p>
+ * The fused pass treats each field independently. This matches applying the rules one at a time for
+ * market data messages, where a field name is not repeated, but fields keep their position rather
+ * than renamed or rescaled fields moving to the end of the message.
+ */
+public class CompiledNormalizationRuleSet {
+
+  /**
+   * Limit on the number of distinct field names whose outcome is cached by each fused run, in
+   * case a feed sends arbitrary field names.
+   */
+  private static final int MAX_CACHED_FIELD_NAMES = 4096;
+
+  private final FudgeContext _fudgeContext;
+  /** Each element is either a {@link FieldMapping} or a {@link NormalizationRule} */
+  private final Object[] _stages;
+
+  public CompiledNormalizationRuleSet(List<NormalizationRule> rules) {
+    this(rules, OpenGammaFudgeContext.getInstance());
+  }
+
+  public CompiledNormalizationRuleSet(List<NormalizationRule> rules, FudgeContext fudgeContext) {
+    ArgumentChecker.notNull(rules, "rules");
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    _fudgeContext = fudgeContext;
+    final List<Object> stages = new ArrayList<Object>();
+    List<NormalizationRule> run = null;
+    for (NormalizationRule rule : rules) {
+      if (isFusable(rule)) {
+        if (run == null) {
+          run = new ArrayList<NormalizationRule>();
+        }
+        run.add(rule);
+      } else {
+        if (run != null) {
+          stages.add(new FieldMapping(run));
+          run = null;
+        }
+        stages.add(rule);
+      }
+    }
+    if (run != null) {
+      stages.add(new FieldMapping(run));
+    }
+    _stages = stages.toArray();
+  }
+
+  private static boolean isFusable(NormalizationRule rule) {
+    // Exact classes only; a subclass may have changed the behaviour
+    final Class<?> clazz = rule.getClass();
+    return clazz == FieldFilter.class || clazz == FieldNameChange.class || clazz == UnitChange.class;
+  }
+
+  /**
+   * Gets a normalized message, as {@link NormalizationRuleSet#getNormalizedMessage} would.
+   *
+   * @param msg message received from underlying market data API in its native format, not modified
+   * @param fieldHistory history of field values
+   * @return the normalized message. Null if one of the normalization rules
+   * rejected the message.
+   */
+  public FudgeMsg getNormalizedMessage(FudgeMsg msg, FieldHistoryStore fieldHistory) {
+    MutableFudgeMsg normalizedMsg = null;
+    for (Object stage : _stages) {
+      if (stage instanceof FieldMapping) {
+        normalizedMsg = ((FieldMapping) stage).apply((normalizedMsg != null) ? normalizedMsg : msg);
+      } else {
+        if (normalizedMsg == null) {
+          normalizedMsg = _fudgeContext.newMessage(msg);
+        }
+        normalizedMsg = ((NormalizationRule) stage).apply(normalizedMsg, fieldHistory);
+      }
+      if (normalizedMsg == null) {
+        // One of the rules rejected the message entirely.
+        return null;
+      }
+    }
+    if (normalizedMsg == null) {
+      // No rules at all
+      normalizedMsg = _fudgeContext.newMessage(msg);
+    }
+    return normalizedMsg;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * What a run of fused rules does to a field of a given name.
+   */
+  private static final class FieldOutcome {
+    private static final FieldOutcome DROP = new FieldOutcome(null, false, false, 1.0);
+
+    private final String _name;
+    private final boolean _renamed;
+    private final boolean _scaled;
+    private final double _multiplier;
+
+    private FieldOutcome(String name, boolean renamed, boolean scaled, double multiplier) {
+      _name = name;
+      _renamed = renamed;
+      _scaled = scaled;
+      _multiplier = multiplier;
+    }
+  }
+
+  /**
+   * A run of consecutive {@link FieldFilter}, {@link FieldNameChange} and {@link UnitChange} rules.
+   */
+  private final class FieldMapping {
+
+    private final NormalizationRule[] _rules;
+    private final boolean _filtering;
+    private final ConcurrentMap<String, FieldOutcome> _outcomes = new ConcurrentHashMap<String, FieldOutcome>();
+
+    private FieldMapping(List<NormalizationRule> rules) {
+      _rules = rules.toArray(new NormalizationRule[rules.size()]);
+      boolean filtering = false;
+      for (NormalizationRule rule : _rules) {
+        filtering |= rule instanceof FieldFilter;
+      }
+      _filtering = filtering;
+    }
+
+    private FieldOutcome getOutcome(String fieldName) {
+      FieldOutcome outcome = _outcomes.get(fieldName);
+      if (outcome == null) {
+        outcome = resolve(fieldName);
+        if (_outcomes.size() < MAX_CACHED_FIELD_NAMES) {
+          _outcomes.putIfAbsent(fieldName, outcome);
+        }
+      }
+      return outcome;
+    }
+
+    private FieldOutcome resolve(String fieldName) {
+      String name = fieldName;
+      boolean scaled = false;
+      double multiplier = 1.0;
+      for (NormalizationRule rule : _rules) {
+        if (rule instanceof FieldFilter) {
+          final Set<String> accept = ((FieldFilter) rule).getFieldsToAccept();
+          if (!accept.contains(name)) {
+            return FieldOutcome.DROP;
+          }
+        } else if (rule instanceof FieldNameChange) {
+          final FieldNameChange change = (FieldNameChange) rule;
+          if (change.getFrom().equals(name)) {
+            name = change.getTo();
+          }
+        } else {
+          final UnitChange change = (UnitChange) rule;
+          if (change.getField().equals(name)) {
+            scaled = true;
+            multiplier *= change.getMultiplier();
+          }
+        }
+      }
+      return new FieldOutcome(name, !name.equals(fieldName), scaled, multiplier);
+    }
+
+    private MutableFudgeMsg apply(FudgeMsg msg) {
+      final MutableFudgeMsg normalizedMsg = _fudgeContext.newMessage();
+      for (FudgeField field : msg) {
+        final String fieldName = field.getName();
+        if (fieldName == null) {
+          // Filters don't allow non-named fields, the other rules ignore them
+          if (!_filtering) {
+            normalizedMsg.add(field);
+          }
+          continue;
+        }
+        final FieldOutcome outcome = getOutcome(fieldName);
+        if (outcome == FieldOutcome.DROP) {
+          continue;
+        }
+        if (outcome._scaled && field.getValue() instanceof Number) {
+          normalizedMsg.add(outcome._name, ((Number) field.getValue()).doubleValue() * outcome._multiplier);
+        } else if (outcome._renamed) {
+          normalizedMsg.add(outcome._name, field.getValue());
+        } else {
+          normalizedMsg.add(field);
+        }
+      }
+      if (_filtering && normalizedMsg.getNumFields() == 0) {
+        return null; // extinguish message
+      }
+      return normalizedMsg;
+    }
+
+  }
+
+}
@@ -7,6 +7,7 @@ package com.opengamma.livedata.normalization;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Set;
 
 import org.fudgemsg.FudgeContext;
 import org.fudgemsg.FudgeField;
@@ -24,7 +25,7 @@ import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
  */
 public class FieldFilter implements NormalizationRule {
   
-  private final Collection<String> _fieldsToAccept;
+  private final Set<String> _fieldsToAccept;
   private final FudgeContext _context;
   
   public FieldFilter(String... fieldsToAccept) {
@@ -46,6 +47,13 @@ public class FieldFilter implements NormalizationRule {
     _context = fudgeContext;
   }
 
+  /**
+   * @return the names of the fields to accept, not to be modified
+   */
+  public Set<String> getFieldsToAccept() {
+    return _fieldsToAccept;
+  }
+
   /**
    * @return the context
    */
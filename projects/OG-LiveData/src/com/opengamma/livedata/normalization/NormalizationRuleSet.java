@@ -10,13 +10,11 @@ import java.util.Collections;
 import java.util.List;
 
 import org.fudgemsg.FudgeMsg;
-import org.fudgemsg.MutableFudgeMsg;
 
 import com.google.common.collect.Lists;
 import com.opengamma.livedata.resolver.JmsTopicNameResolver;
 import com.opengamma.livedata.server.FieldHistoryStore;
 import com.opengamma.util.ArgumentChecker;
-import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
 
 /**
  * An ordered set of normalization rules.
@@ -25,6 +23,7 @@ public class NormalizationRuleSet {
   private final String _id;
   private final String _jmsTopicSuffix;
   private final List<NormalizationRule> _rules;
+  private final CompiledNormalizationRuleSet _compiled;
   
   /* Useful for tests */
   public NormalizationRuleSet(String id) {
@@ -51,12 +50,14 @@ public class NormalizationRuleSet {
     }
     
     _rules = new ArrayList<NormalizationRule>(rules);    
+    _compiled = new CompiledNormalizationRuleSet(_rules);
   }
   
   /**
    * Gets a normalized message.
    * This is done by applying the set of normalization rules
-   * to the raw message. 
+   * to the raw message. The rules are applied in their
+   * {@link CompiledNormalizationRuleSet compiled} form.
    * 
    * @param msg message received from underlying market data API in its native format.
    * @param fieldHistory history of field values  
@@ -66,15 +67,16 @@ public class NormalizationRuleSet {
   public FudgeMsg getNormalizedMessage(
       FudgeMsg msg,
       FieldHistoryStore fieldHistory) {
-    MutableFudgeMsg normalizedMsg = OpenGammaFudgeContext.getInstance().newMessage(msg);
-    for (NormalizationRule rule : _rules) {
-      normalizedMsg = rule.apply(normalizedMsg, fieldHistory);
-      if (normalizedMsg == null) {
-        // One of the rules rejected the message entirely.
-        break;
-      }
-    }
-    return normalizedMsg;
+    return _compiled.getNormalizedMessage(msg, fieldHistory);
+  }
+  
+  /**
+   * Gets the rules, in the order they are applied.
+   * 
+   * @return the rules, not null
+   */
+  public List<NormalizationRule> getRules() {
+    return Collections.unmodifiableList(_rules);
   }
   
   /**
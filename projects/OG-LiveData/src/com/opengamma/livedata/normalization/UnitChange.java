@@ -26,6 +26,14 @@ public class UnitChange implements NormalizationRule {
     _multiplier = multiplier;        
   }
   
+  public String getField() {
+    return _field;
+  }
+
+  public double getMultiplier() {
+    return _multiplier;
+  }
+  
   @Override
   public MutableFudgeMsg apply(
       MutableFudgeMsg msg,
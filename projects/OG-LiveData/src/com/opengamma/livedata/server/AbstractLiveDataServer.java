@@ -10,9 +10,20 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -43,6 +54,7 @@ import com.opengamma.livedata.server.distribution.MarketDataSenderFactory;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.PerformanceCounter;
 import com.opengamma.util.PublicAPI;
+import com.opengamma.util.monitor.LatencyClock;
 
 /**
  * The base class from which most OpenGamma Live Data feed servers should
@@ -54,27 +66,50 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   private static final Logger s_logger = LoggerFactory
       .getLogger(AbstractLiveDataServer.class);
   
+  /**
+   * Default number of new subscriptions passed to each call to {@link #doSnapshot(Collection)}
+   * and {@link #doSubscribe(Collection)}.
+   */
+  public static final int DEFAULT_SUBSCRIPTION_CHUNK_SIZE = 1000;
+  /**
+   * Default time a request waits for a subscription being set up by another request, 10 minutes.
+   */
+  public static final long DEFAULT_PENDING_SUBSCRIPTION_TIMEOUT_MILLIS = 10L * 60L * 1000L;
+  
   private volatile MarketDataSenderFactory _marketDataSenderFactory = new EmptyMarketDataSenderFactory();
   private final Collection<SubscriptionListener> _subscriptionListeners = new CopyOnWriteArrayList<SubscriptionListener>();
   
-  /** Access controlled via _subscriptionLock */
-  private final Set<Subscription> _currentlyActiveSubscriptions = new HashSet<Subscription>();
+  /** Modifications controlled via _subscriptionLock, reads are lock-free */
+  private final Set<Subscription> _currentlyActiveSubscriptions = Collections.newSetFromMap(new ConcurrentHashMap<Subscription, Boolean>());
   
-  /** Access controlled via _subscriptionLock */
-  private final Map<String, Subscription> _securityUniqueId2Subscription = new HashMap<String, Subscription>();
+  /** Modifications controlled via _subscriptionLock, reads are lock-free so ticks never wait for a subscription request */
+  private final Map<String, Subscription> _securityUniqueId2Subscription = new ConcurrentHashMap<String, Subscription>();
   
-  /** Access controlled via _subscriptionLock */
-  private final Map<LiveDataSpecification, MarketDataDistributor> _fullyQualifiedSpec2Distributor = new HashMap<LiveDataSpecification, MarketDataDistributor>();
+  /** Modifications controlled via _subscriptionLock, reads are lock-free */
+  private final Map<LiveDataSpecification, MarketDataDistributor> _fullyQualifiedSpec2Distributor = new ConcurrentHashMap<LiveDataSpecification, MarketDataDistributor>();
 
   private final AtomicLong _numMarketDataUpdatesReceived = new AtomicLong(0);
   private final PerformanceCounter _performanceCounter = new PerformanceCounter(60);
 
   private final Lock _subscriptionLock = new ReentrantLock();
+  
+  /** New subscriptions being set up, by security unique ID. Only accessed holding _subscriptionLock */
+  private final Map<String, PendingSubscription> _securityUniqueId2PendingSubscription = new HashMap<String, PendingSubscription>();
+  
+  private volatile int _subscriptionChunkSize = DEFAULT_SUBSCRIPTION_CHUNK_SIZE;
+  
+  private volatile long _pendingSubscriptionTimeoutMillis = DEFAULT_PENDING_SUBSCRIPTION_TIMEOUT_MILLIS;
+  
+  /** Null to set up the chunks of a subscription request in turn, on the thread making it */
+  private volatile Executor _subscriptionExecutor;
 
   private DistributionSpecificationResolver _distributionSpecificationResolver = new NaiveDistributionSpecificationResolver();
   private LiveDataEntitlementChecker _entitlementChecker = new PermissiveLiveDataEntitlementChecker();
   
   private volatile ConnectionStatus _connectionStatus = ConnectionStatus.NOT_CONNECTED;
+  
+  /** Null to distribute ticks on the thread that receives them */
+  private volatile ShardedLiveDataDispatcher _liveDataDispatcher;
 
   /**
    * @return the distributionSpecificationResolver
@@ -129,9 +164,85 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
     _entitlementChecker = entitlementChecker;
   }
   
+  /**
+   * @return the dispatcher distributing ticks, null if ticks are distributed
+   * on the thread that receives them
+   */
+  public ShardedLiveDataDispatcher getLiveDataDispatcher() {
+    return _liveDataDispatcher;
+  }
+  
+  /**
+   * Sets a dispatcher to hand ticks to, so that the thread receiving them from the
+   * underlying market data API never waits on normalization or sending. The dispatcher
+   * is started on {@link #connect()} and stopped on {@link #disconnect()}.
+   * 
+   * @param liveDataDispatcher the dispatcher, null to distribute ticks on the thread
+   * that receives them
+   */
+  public void setLiveDataDispatcher(ShardedLiveDataDispatcher liveDataDispatcher) {
+    _liveDataDispatcher = liveDataDispatcher;
+  }
+  
   public String getDefaultNormalizationRuleSetId() {
     return StandardRules.getOpenGammaRuleSetId();
   }
+  
+  /**
+   * @return the number of new subscriptions passed to each call to the underlying market data API
+   */
+  public int getSubscriptionChunkSize() {
+    return _subscriptionChunkSize;
+  }
+  
+  /**
+   * Sets how many new subscriptions are passed to each call to {@link #doSnapshot(Collection)}
+   * and {@link #doSubscribe(Collection)}. Each chunk is published as soon as it is set up.
+   * 
+   * @param subscriptionChunkSize the chunk size, positive
+   */
+  public void setSubscriptionChunkSize(int subscriptionChunkSize) {
+    ArgumentChecker.isTrue(subscriptionChunkSize > 0, "subscriptionChunkSize must be positive");
+    _subscriptionChunkSize = subscriptionChunkSize;
+  }
+  
+  /**
+   * @return how long, in milliseconds, a request waits for a subscription being set up by another request
+   */
+  public long getPendingSubscriptionTimeoutMillis() {
+    return _pendingSubscriptionTimeoutMillis;
+  }
+  
+  /**
+   * Sets how long a request waits for a subscription being set up by another request before
+   * failing that specification.
+   * 
+   * @param pendingSubscriptionTimeoutMillis the timeout in milliseconds, positive
+   */
+  public void setPendingSubscriptionTimeoutMillis(long pendingSubscriptionTimeoutMillis) {
+    ArgumentChecker.isTrue(pendingSubscriptionTimeoutMillis > 0, "pendingSubscriptionTimeoutMillis must be positive");
+    _pendingSubscriptionTimeoutMillis = pendingSubscriptionTimeoutMillis;
+  }
+  
+  /**
+   * @return the executor setting up the chunks of a subscription request concurrently, null if
+   * they are set up in turn on the thread making the request
+   */
+  public Executor getSubscriptionExecutor() {
+    return _subscriptionExecutor;
+  }
+  
+  /**
+   * Sets an executor to set up the chunks of a subscription request concurrently. Only set one
+   * if {@link #doSnapshot(Collection)} and {@link #doSubscribe(Collection)} are thread-safe.
+   * A chunk the executor rejects is set up on the thread making the request.
+   * 
+   * @param subscriptionExecutor the executor, null to set up the chunks in turn on the thread
+   * making the request
+   */
+  public void setSubscriptionExecutor(Executor subscriptionExecutor) {
+    _subscriptionExecutor = subscriptionExecutor;
+  }
 
   /**
    * Subscribes to the given ticker(s) using the underlying market
@@ -223,12 +334,19 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   }
   
   void reestablishSubscriptions() {
-    for (Subscription subscription : getSubscriptions()) {
+    List<Subscription> subscriptions = new ArrayList<Subscription>(getSubscriptions());
+    for (int i = 0; i < subscriptions.size(); i += getSubscriptionChunkSize()) {
+      Map<String, Subscription> chunk = new HashMap<String, Subscription>();
+      for (Subscription subscription : subscriptions.subList(i, Math.min(subscriptions.size(), i + getSubscriptionChunkSize()))) {
+        chunk.put(subscription.getSecurityUniqueId(), subscription);
+      }
       try {
-        Object handle = doSubscribe(Collections.singleton(subscription.getSecurityUniqueId()));
-        subscription.setHandle(handle);
+        Map<String, Object> handles = doSubscribe(chunk.keySet());
+        for (Map.Entry<String, Object> handle : handles.entrySet()) {
+          chunk.get(handle.getKey()).setHandle(handle.getValue());
+        }
       } catch (RuntimeException e) {
-        s_logger.error("Could not reestablish subscription to " + subscription, e);        
+        s_logger.error("Could not reestablish subscriptions to " + chunk.keySet(), e);        
       }
     }
   }
@@ -262,6 +380,10 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
     if (getConnectionStatus() != ConnectionStatus.NOT_CONNECTED) {
       throw new IllegalStateException("Can only connect if not connected");      
     }
+    final ShardedLiveDataDispatcher dispatcher = getLiveDataDispatcher();
+    if (dispatcher != null && !dispatcher.isRunning()) {
+      dispatcher.start();
+    }
     doConnect();
     setConnectionStatus(ConnectionStatus.CONNECTED);
   }
@@ -272,6 +394,10 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
     }
     doDisconnect();
     setConnectionStatus(ConnectionStatus.NOT_CONNECTED);
+    final ShardedLiveDataDispatcher dispatcher = getLiveDataDispatcher();
+    if (dispatcher != null && dispatcher.isRunning()) {
+      dispatcher.stop();
+    }
   }
   
   /**
@@ -337,138 +463,358 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   public Collection<LiveDataSubscriptionResponse> subscribe(
       Collection<LiveDataSpecification> liveDataSpecificationsFromClient, boolean persistent) {
     ArgumentChecker.notNull(liveDataSpecificationsFromClient, "Subscriptions to be created");
-    
-    s_logger.info("Subscribe requested for {}, persistent = {}", liveDataSpecificationsFromClient, persistent);
-    
+
+    Collection<LiveDataSubscriptionResponse> responses = new ArrayList<LiveDataSubscriptionResponse>();
+    Map<LiveDataSpecification, DistributionSpecification> distributionSpecs = resolve(liveDataSpecificationsFromClient, responses);
+    responses.addAll(subscribe(distributionSpecs, persistent));
+    return responses;
+  }
+
+  /**
+   * Subscribes to market data already resolved to distribution specifications.
+   * <p>
+   * The subscription lock is only held to register and to publish subscriptions. New subscriptions
+   * are claimed under the lock, so a concurrent request for the same security waits for this one
+   * rather than subscribing again, and then set up in chunks outside it, so large requests
+   * neither block other requests nor stall ticks for the subscriptions already published.
+   *
+   * @param specFromClient2DistributionSpec the specifications requested, with their resolved distribution specifications, not null
+   * @param persistent See {@link MarketDataDistributor#isPersistent()}
+   * @return a response for each specification requested, not null
+   */
+  private Collection<LiveDataSubscriptionResponse> subscribe(
+      Map<LiveDataSpecification, DistributionSpecification> specFromClient2DistributionSpec, boolean persistent) {
+
+    s_logger.info("Subscribe requested for {}, persistent = {}", specFromClient2DistributionSpec.keySet(), persistent);
+
     verifyConnectionOk();
-    
+
     Collection<LiveDataSubscriptionResponse> responses = new ArrayList<LiveDataSubscriptionResponse>();
-    Map<String, Subscription> securityUniqueId2NewSubscription = new HashMap<String, Subscription>();
-    Map<String, LiveDataSpecification> securityUniqueId2SpecFromClient = new HashMap<String, LiveDataSpecification>();
-    
+    List<PendingSubscription> newSubscriptions = new ArrayList<PendingSubscription>();
+    Map<LiveDataSpecification, PendingSubscription> specFromClient2PendingSubscription = new LinkedHashMap<LiveDataSpecification, PendingSubscription>();
+
+    try {
+      claimAndSetUp(specFromClient2DistributionSpec, persistent, responses, newSubscriptions, specFromClient2PendingSubscription);
+    } finally {
+      // Claims left unpublished by an exception would otherwise block later requests for the securities
+      abandon(newSubscriptions);
+    }
+
+    // Includes subscriptions being set up by concurrent requests
+    for (Map.Entry<LiveDataSpecification, PendingSubscription> entry : specFromClient2PendingSubscription.entrySet()) {
+      LiveDataSpecification specFromClient = entry.getKey();
+      String failure = await(entry.getValue(), specFromClient2DistributionSpec.get(specFromClient));
+      if (failure == null) {
+        responses.add(getSubscriptionResponse(specFromClient, specFromClient2DistributionSpec.get(specFromClient)));
+      } else {
+        responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.INTERNAL_ERROR, failure));
+      }
+    }
+
+    return responses;
+  }
+
+  /**
+   * Waits for a new subscription to be published or fail. A request that stops waiting first
+   * withdraws the distributor it asked for, so that the distributor is not published for a
+   * client that was told the subscription failed.
+   *
+   * @return null once the subscription is published, otherwise why it could not be set up
+   */
+  private String await(PendingSubscription pending, DistributionSpecification distributionSpec) {
+    String failure = pending.await(getPendingSubscriptionTimeoutMillis());
+    if (failure == null || pending.isDone()) {
+      return failure;
+    }
     _subscriptionLock.lock();
     try {
-    
-      for (LiveDataSpecification specFromClient : liveDataSpecificationsFromClient) {
-        
-        // this is the only place where subscribe() can 'partially' fail
-        DistributionSpecification distributionSpec;
-        try {
-          distributionSpec = getDistributionSpecificationResolver().resolve(specFromClient);
-        } catch (RuntimeException e) {
-          s_logger.info("Unable to work out distribution spec for specification " + specFromClient, e);
-          responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.NOT_PRESENT, e.getMessage()));                    
-          continue;
-        }
-        
+      if (pending.isDone()) {
+        // Published or failed since the wait ended
+        return pending.getFailure();
+      }
+      pending.withdrawn(distributionSpec);
+      return failure;
+    } finally {
+      _subscriptionLock.unlock();
+    }
+  }
+
+  /**
+   * Stages 1 to 3 of {@link #subscribe(Map, boolean)}: claims the new subscriptions, sets them up and publishes them.
+   */
+  private void claimAndSetUp(Map<LiveDataSpecification, DistributionSpecification> specFromClient2DistributionSpec, boolean persistent,
+      Collection<LiveDataSubscriptionResponse> responses, List<PendingSubscription> newSubscriptions,
+      Map<LiveDataSpecification, PendingSubscription> specFromClient2PendingSubscription) {
+
+    // Stage 1: under the lock, attach to existing subscriptions and claim the new ones
+    _subscriptionLock.lock();
+    try {
+      for (Map.Entry<LiveDataSpecification, DistributionSpecification> entry : specFromClient2DistributionSpec.entrySet()) {
+        LiveDataSpecification specFromClient = entry.getKey();
+        DistributionSpecification distributionSpec = entry.getValue();
         LiveDataSpecification fullyQualifiedSpec = distributionSpec.getFullyQualifiedLiveDataSpecification();
-      
+
         Subscription subscription = getSubscription(fullyQualifiedSpec);
         if (subscription != null) {
           s_logger.info("Already subscribed to {}", fullyQualifiedSpec);
-          
-          subscription.createDistributor(distributionSpec, persistent);
-    
-          responses.add(getSubscriptionResponse(specFromClient, distributionSpec));                    
-    
-        } else {
-    
-          String securityUniqueId = fullyQualifiedSpec.getIdentifier(getUniqueIdDomain());
-          if (securityUniqueId == null) {
-            responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.INTERNAL_ERROR,
-                "Qualified spec " + fullyQualifiedSpec + " does not contain ID of domain " + getUniqueIdDomain()));
-            continue;
+          // The new subscriber can only start decoding a compact stream at a key frame
+          subscription.createDistributor(distributionSpec, persistent).requestKeyFrame();
+          responses.add(getSubscriptionResponse(specFromClient, distributionSpec));
+          continue;
+        }
+
+        String securityUniqueId = fullyQualifiedSpec.getIdentifier(getUniqueIdDomain());
+        if (securityUniqueId == null) {
+          responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.INTERNAL_ERROR,
+              "Qualified spec " + fullyQualifiedSpec + " does not contain ID of domain " + getUniqueIdDomain()));
+          continue;
+        }
+
+        PendingSubscription pending = _securityUniqueId2PendingSubscription.get(securityUniqueId);
+        if (pending != null) {
+          // Being set up, by this or another request; published with the rest of its distributors
+          pending.getSubscription().createDistributor(distributionSpec, persistent);
+          pending.requested(distributionSpec);
+          specFromClient2PendingSubscription.put(specFromClient, pending);
+          continue;
+        }
+
+        subscription = getSubscription(securityUniqueId);
+        if (subscription != null && isSubscribedTo(subscription)) {
+          s_logger.info("Already subscribed to {}, distributing as {}", securityUniqueId, fullyQualifiedSpec);
+          MarketDataDistributor distributor = subscription.createDistributor(distributionSpec, persistent);
+          distributor.requestKeyFrame();
+          _fullyQualifiedSpec2Distributor.put(fullyQualifiedSpec, distributor);
+          responses.add(getSubscriptionResponse(specFromClient, distributionSpec));
+          continue;
+        }
+
+        subscription = new Subscription(securityUniqueId, getMarketDataSenderFactory());
+        subscription.createDistributor(distributionSpec, persistent);
+        pending = new PendingSubscription(subscription);
+        pending.requested(distributionSpec);
+        _securityUniqueId2PendingSubscription.put(securityUniqueId, pending);
+        newSubscriptions.add(pending);
+        specFromClient2PendingSubscription.put(specFromClient, pending);
+      }
+    } finally {
+      _subscriptionLock.unlock();
+    }
+
+    // Stage 2: snapshot and subscribe in the underlying data provider, a chunk at a time
+    List<List<PendingSubscription>> chunks = new ArrayList<List<PendingSubscription>>();
+    List<FutureTask<Map<String, Object>>> tasks = new ArrayList<FutureTask<Map<String, Object>>>();
+    Executor executor = getSubscriptionExecutor();
+    for (int i = 0; i < newSubscriptions.size(); i += getSubscriptionChunkSize()) {
+      final List<PendingSubscription> chunk = newSubscriptions.subList(i, Math.min(newSubscriptions.size(), i + getSubscriptionChunkSize()));
+      FutureTask<Map<String, Object>> task = new FutureTask<Map<String, Object>>(new Callable<Map<String, Object>>() {
+        @Override
+        public Map<String, Object> call() {
+          return setUpSubscriptions(chunk);
+        }
+      });
+      chunks.add(chunk);
+      tasks.add(task);
+      if (executor == null) {
+        task.run();
+      } else {
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          s_logger.warn("Subscription executor rejected a chunk of {} securities, setting it up in turn", chunk.size());
+          task.run();
+        }
+      }
+    }
+
+    // Stage 3: publish each chunk under the lock as it completes
+    for (int i = 0; i < chunks.size(); i++) {
+      Map<String, Object> subscriptionHandles = null;
+      String failure = null;
+      try {
+        subscriptionHandles = getUninterruptibly(tasks.get(i));
+      } catch (ExecutionException e) {
+        s_logger.error("Unable to subscribe to " + chunks.get(i).size() + " securities. Cleaning up.", e.getCause());
+        failure = e.getCause().getMessage();
+      }
+      _subscriptionLock.lock();
+      try {
+        for (PendingSubscription pending : chunks.get(i)) {
+          Object handle = (subscriptionHandles != null) ? subscriptionHandles.get(pending.getSubscription().getSecurityUniqueId()) : null;
+          if (handle != null) {
+            pending.getSubscription().setHandle(handle);
+            publish(pending);
+            pending.succeeded();
+          } else {
+            discard(pending);
+            pending.failed((failure != null) ? failure : "doSubscribe() did not fulfill its contract to populate map for each unique ID");
           }
-          
-          subscription = new Subscription(securityUniqueId, getMarketDataSenderFactory());
-          subscription.createDistributor(distributionSpec, persistent);
-          securityUniqueId2NewSubscription.put(subscription.getSecurityUniqueId(), subscription);
-          securityUniqueId2SpecFromClient.put(subscription.getSecurityUniqueId(), specFromClient);
         }
+      } finally {
+        _subscriptionLock.unlock();
       }
-      
-      // In some cases, the underlying market data API may not, when the subscription is started,
-      // return a full image of all fields. If so, we need to get the full image explicitly.
-      Collection<String> newSubscriptionsForWhichSnapshotIsRequired = new ArrayList<String>();
-      for (Subscription subscription : securityUniqueId2NewSubscription.values()) {
-        if (snapshotOnSubscriptionStartRequired(subscription)) {
-          newSubscriptionsForWhichSnapshotIsRequired.add(subscription.getSecurityUniqueId());
+    }
+  }
+
+  /**
+   * Discards and fails the new subscriptions of a request that have been neither published nor
+   * failed, so that the requests waiting for them are released.
+   */
+  private void abandon(List<PendingSubscription> newSubscriptions) {
+    _subscriptionLock.lock();
+    try {
+      for (PendingSubscription pending : newSubscriptions) {
+        if (!pending.isDone()) {
+          discard(pending);
+          pending.failed("Setting up the subscription to " + pending.getSubscription().getSecurityUniqueId() + " was abandoned");
         }
       }
-      
+    } finally {
+      _subscriptionLock.unlock();
+    }
+  }
+
+  /**
+   * Snapshots, where required, and subscribes to a chunk of new subscriptions.
+   * Runs without the subscription lock, possibly concurrently with other chunks.
+   *
+   * @param chunk the new subscriptions, not null
+   * @return the subscription handles, keyed by security unique ID, not null
+   */
+  private Map<String, Object> setUpSubscriptions(List<PendingSubscription> chunk) {
+    Map<String, Subscription> securityUniqueId2NewSubscription = new HashMap<String, Subscription>();
+    for (PendingSubscription pending : chunk) {
+      securityUniqueId2NewSubscription.put(pending.getSubscription().getSecurityUniqueId(), pending.getSubscription());
+    }
+
+    // In some cases, the underlying market data API may not, when the subscription is started,
+    // return a full image of all fields. If so, we need to get the full image explicitly.
+    Collection<String> newSubscriptionsForWhichSnapshotIsRequired = new ArrayList<String>();
+    for (Subscription subscription : securityUniqueId2NewSubscription.values()) {
+      if (snapshotOnSubscriptionStartRequired(subscription)) {
+        newSubscriptionsForWhichSnapshotIsRequired.add(subscription.getSecurityUniqueId());
+      }
+    }
+
+    if (!newSubscriptionsForWhichSnapshotIsRequired.isEmpty()) {
       s_logger.info("Subscription snapshot required for {}", newSubscriptionsForWhichSnapshotIsRequired);
       Map<String, FudgeMsg> snapshots = doSnapshot(newSubscriptionsForWhichSnapshotIsRequired);
       for (Map.Entry<String, FudgeMsg> snapshot : snapshots.entrySet()) {
         Subscription subscription = securityUniqueId2NewSubscription.get(snapshot.getKey());
         subscription.initialSnapshotReceived(snapshot.getValue());
       }
-    
-      // Setup the subscriptions in the underlying data provider.
-      for (Subscription subscription : securityUniqueId2NewSubscription.values()) {
-        // this is necessary so we don't lose any updates immediately after doSubscribe(). See AbstractLiveDataServer#liveDataReceived()
-        // and how it calls AbstractLiveDataServer#getSubscription()
-        _securityUniqueId2Subscription.put(subscription.getSecurityUniqueId(), subscription); 
+    }
+
+    _subscriptionLock.lock();
+    try {
+      // this is necessary so we don't lose any updates immediately after doSubscribe(). See AbstractLiveDataServer#liveDataReceived()
+      // and how it calls AbstractLiveDataServer#getSubscription()
+      _securityUniqueId2Subscription.putAll(securityUniqueId2NewSubscription);
+    } finally {
+      _subscriptionLock.unlock();
+    }
+
+    s_logger.info("Creating underlying market data API subscription to {}", securityUniqueId2NewSubscription.keySet());
+    return doSubscribe(securityUniqueId2NewSubscription.keySet());
+  }
+
+  /**
+   * Makes a new subscription active, with all the distributors created for it while it was being set up.
+   * Must be called holding the subscription lock.
+   */
+  private void publish(PendingSubscription pending) {
+    Subscription subscription = pending.getSubscription();
+    _securityUniqueId2PendingSubscription.remove(subscription.getSecurityUniqueId());
+    for (DistributionSpecification withdrawn : pending.getWithdrawnDistributionSpecs()) {
+      s_logger.info("Not distributing {}, every request for it stopped waiting", withdrawn);
+      subscription.removeDistributor(withdrawn);
+    }
+
+    for (SubscriptionListener listener : _subscriptionListeners) {
+      try {
+        listener.subscribed(subscription);
+      } catch (RuntimeException e) {
+        s_logger.error("Listener " + listener + " subscribe failed", e);
       }
+    }
 
-      s_logger.info("Creating underlying market data API subscription to {}", securityUniqueId2NewSubscription.keySet());
-      Map<String, Object> subscriptionHandles = doSubscribe(securityUniqueId2NewSubscription.keySet());
-    
-      // Set up data structures
-      for (Map.Entry<String, Object> subscriptionHandle : subscriptionHandles.entrySet()) {
-        String securityUniqueId = subscriptionHandle.getKey();
-        Object handle = subscriptionHandle.getValue();
-        LiveDataSpecification specFromClient = securityUniqueId2SpecFromClient.get(securityUniqueId);
-        
-        Subscription subscription = securityUniqueId2NewSubscription.get(securityUniqueId); 
-        subscription.setHandle(handle);
-          
-        for (SubscriptionListener listener : _subscriptionListeners) {
-          try {
-            listener.subscribed(subscription);
-          } catch (RuntimeException e) {
-            s_logger.error("Listener " + listener + " subscribe failed", e);
-          }
-        }
-          
-        _currentlyActiveSubscriptions.add(subscription);
+    _currentlyActiveSubscriptions.add(subscription);
+    for (MarketDataDistributor distributor : subscription.getDistributors()) {
+      _fullyQualifiedSpec2Distributor.put(distributor.getFullyQualifiedLiveDataSpecification(), distributor);
+    }
+    s_logger.info("Created {}", subscription);
+  }
 
-        if (subscription.getDistributionSpecifications().size() != 1) {
-          responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.INTERNAL_ERROR,
-              "The subscription should only have 1 distribution specification at the moment: " + subscription));
-          continue;
-        }
-        
-        for (MarketDataDistributor distributor : subscription.getDistributors()) {
-          _fullyQualifiedSpec2Distributor.put(distributor.getFullyQualifiedLiveDataSpecification(),
-              distributor);
-          responses.add(getSubscriptionResponse(specFromClient, distributor.getDistributionSpec()));
+  /**
+   * Removes a new subscription that could not be set up. Must be called holding the subscription lock.
+   */
+  private void discard(PendingSubscription pending) {
+    Subscription subscription = pending.getSubscription();
+    _securityUniqueId2PendingSubscription.remove(subscription.getSecurityUniqueId());
+    _securityUniqueId2Subscription.remove(subscription.getSecurityUniqueId());
+  }
+
+  private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          // The chunk must be published or cleaned up whatever happens
+          interrupted = true;
         }
-        
-        s_logger.info("Created {}", subscription);
       }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 
+  /**
+   * Resolves the distribution specifications of the given specifications in bulk. If the bulk
+   * resolution fails, each is resolved individually so that one bad specification does not
+   * fail the others.
+   *
+   * @param liveDataSpecificationsFromClient the specifications to resolve, not null
+   * @param responses to add a response for each specification that could not be resolved to, not null
+   * @return the resolved distribution specifications, in the order requested, not null
+   */
+  private Map<LiveDataSpecification, DistributionSpecification> resolve(
+      Collection<LiveDataSpecification> liveDataSpecificationsFromClient, Collection<LiveDataSubscriptionResponse> responses) {
+    Map<LiveDataSpecification, DistributionSpecification> distributionSpecs;
+    try {
+      distributionSpecs = getDistributionSpecificationResolver().resolve(liveDataSpecificationsFromClient);
     } catch (RuntimeException e) {
-      
-      s_logger.info("Unexpected exception thrown when subscribing. Cleaning up.");
-      
-      for (Subscription subscription : securityUniqueId2NewSubscription.values()) {
-        _securityUniqueId2Subscription.remove(subscription.getSecurityUniqueId());
-        
-        for (MarketDataDistributor distributor : subscription.getDistributors()) {
-          _fullyQualifiedSpec2Distributor.remove(distributor.getFullyQualifiedLiveDataSpecification());
+      s_logger.info("Unable to work out distribution specs in bulk, resolving individually", e);
+      distributionSpecs = null;
+    }
+
+    Map<LiveDataSpecification, DistributionSpecification> resolved = new LinkedHashMap<LiveDataSpecification, DistributionSpecification>();
+    for (LiveDataSpecification specFromClient : liveDataSpecificationsFromClient) {
+      DistributionSpecification distributionSpec;
+      if (distributionSpecs != null) {
+        distributionSpec = distributionSpecs.get(specFromClient);
+      } else {
+        try {
+          distributionSpec = getDistributionSpecificationResolver().resolve(specFromClient);
+        } catch (RuntimeException e) {
+          s_logger.info("Unable to work out distribution spec for specification " + specFromClient, e);
+          responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.NOT_PRESENT, e.getMessage()));
+          continue;
         }
       }
-      _currentlyActiveSubscriptions.removeAll(securityUniqueId2NewSubscription.values());
-      
-      throw e;
-        
-    } finally {
-      _subscriptionLock.unlock();
+      if (distributionSpec == null) {
+        responses.add(getErrorResponse(specFromClient, LiveDataSubscriptionResult.NOT_PRESENT,
+            "Could not build distribution specification for " + specFromClient));
+        continue;
+      }
+      resolved.put(specFromClient, distributionSpec);
     }
-
-    return responses;
+    return resolved;
   }
-  
+
   /**
    * Returns a snapshot of the requested market data.
    * If the server already subscribes to the market data,
@@ -491,9 +837,10 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
     Collection<String> snapshotsToActuallyDo = new ArrayList<String>();
     Map<String, LiveDataSpecification> securityUniqueId2LiveDataSpecificationFromClient = new HashMap<String, LiveDataSpecification>(); 
     
-    for (LiveDataSpecification liveDataSpecificationFromClient : liveDataSpecificationsFromClient) {
-      DistributionSpecification distributionSpec = getDistributionSpecificationResolver()
-        .resolve(liveDataSpecificationFromClient);
+    Map<LiveDataSpecification, DistributionSpecification> distributionSpecs = resolve(liveDataSpecificationsFromClient, responses);
+    for (Map.Entry<LiveDataSpecification, DistributionSpecification> entry : distributionSpecs.entrySet()) {
+      LiveDataSpecification liveDataSpecificationFromClient = entry.getKey();
+      DistributionSpecification distributionSpec = entry.getValue();
       LiveDataSpecification fullyQualifiedSpec = distributionSpec.getFullyQualifiedLiveDataSpecification();
       
       MarketDataDistributor currentlyActiveDistributor = getMarketDataDistributor(distributionSpec);
@@ -526,8 +873,7 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
       
       LiveDataSpecification liveDataSpecFromClient = securityUniqueId2LiveDataSpecificationFromClient.get(securityUniqueId);
       
-      DistributionSpecification distributionSpec = getDistributionSpecificationResolver()
-        .resolve(liveDataSpecFromClient);
+      DistributionSpecification distributionSpec = distributionSpecs.get(liveDataSpecFromClient);
       FudgeMsg normalizedMsg = distributionSpec.getNormalizedMessage(msg);
       if (normalizedMsg == null) {
         responses.add(getErrorResponse(
@@ -601,10 +947,28 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
     ArrayList<LiveDataSubscriptionResponse> responses = new ArrayList<LiveDataSubscriptionResponse>();
     
     ArrayList<LiveDataSpecification> snapshots = new ArrayList<LiveDataSpecification>();
-    ArrayList<LiveDataSpecification> subscriptions = new ArrayList<LiveDataSpecification>();
+    Map<LiveDataSpecification, DistributionSpecification> subscriptions = new LinkedHashMap<LiveDataSpecification, DistributionSpecification>();
     
     Map<LiveDataSpecification, DistributionSpecification> distributionSpecifications = getDistributionSpecificationResolver().resolve(subscriptionRequest.getSpecifications());
     
+    // Entitlements of everything that could be resolved, checked in one go. If that fails, each
+    // is checked in turn below so that the failure is reported against the specifications it affects.
+    Collection<LiveDataSpecification> resolvedSpecifications = new ArrayList<LiveDataSpecification>();
+    for (LiveDataSpecification requestedSpecification : subscriptionRequest.getSpecifications()) {
+      if (distributionSpecifications.get(requestedSpecification) != null) {
+        resolvedSpecifications.add(requestedSpecification);
+      }
+    }
+    Map<LiveDataSpecification, Boolean> entitlements;
+    try {
+      entitlements = resolvedSpecifications.isEmpty()
+          ? Collections.<LiveDataSpecification, Boolean>emptyMap()
+          : getEntitlementChecker().isEntitled(subscriptionRequest.getUser(), resolvedSpecifications);
+    } catch (RuntimeException e) {
+      s_logger.warn("Bulk entitlement check failed, checking each specification in turn", e);
+      entitlements = null;
+    }
+    
     for (LiveDataSpecification requestedSpecification : subscriptionRequest
         .getSpecifications()) {
 
@@ -624,8 +988,10 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
         }
 
         // Entitlement check
-        if (!getEntitlementChecker().isEntitled(
-            subscriptionRequest.getUser(), requestedSpecification)) {
+        boolean entitled = (entitlements != null)
+            ? Boolean.TRUE.equals(entitlements.get(requestedSpecification))
+            : getEntitlementChecker().isEntitled(subscriptionRequest.getUser(), requestedSpecification);
+        if (!entitled) {
           String msg = subscriptionRequest.getUser() + " is not entitled to " + requestedSpecification;
           s_logger.info(msg);
           responses.add(new LiveDataSubscriptionResponse(
@@ -642,7 +1008,7 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
         if (subscriptionRequest.getType() == SubscriptionType.SNAPSHOT) {
           snapshots.add(requestedSpecification);
         } else {
-          subscriptions.add(requestedSpecification);
+          subscriptions.put(requestedSpecification, spec);
         }
 
       } catch (Exception e) {
@@ -673,7 +1039,7 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
       try {
         responses.addAll(subscribe(subscriptions, persistent));
       } catch (Exception e) {
-        for (LiveDataSpecification requestedSpecification : subscriptions) {
+        for (LiveDataSpecification requestedSpecification : subscriptions.keySet()) {
           responses.add(getErrorResponse(
               requestedSpecification, 
               LiveDataSubscriptionResult.INTERNAL_ERROR,
@@ -803,29 +1169,20 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   }
 
   public boolean isSubscribedTo(String securityUniqueId) {
-    _subscriptionLock.lock();
-    try {
-      return _securityUniqueId2Subscription.containsKey(securityUniqueId);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return _securityUniqueId2Subscription.containsKey(securityUniqueId);
   }
   
   public boolean isSubscribedTo(LiveDataSpecification fullyQualifiedSpec) {
-    _subscriptionLock.lock();
-    try {
-      return _fullyQualifiedSpec2Distributor.containsKey(fullyQualifiedSpec);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return _fullyQualifiedSpec2Distributor.containsKey(fullyQualifiedSpec);
   }
 
   public boolean isSubscribedTo(Subscription subscription) {
-    return getSubscriptions().contains(subscription);
+    return _currentlyActiveSubscriptions.contains(subscription);
   }
 
   public void liveDataReceived(String securityUniqueId,
       FudgeMsg liveDataFields) {
+    final long originTime = LatencyClock.currentTimeNanos();
     s_logger.debug("Live data received: {}", liveDataFields);
 
     _numMarketDataUpdatesReceived.incrementAndGet();
@@ -836,8 +1193,14 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
       s_logger.warn("Got data for invalid security unique ID {}", securityUniqueId);
       return;
     }
-      
-    subscription.liveDataReceived(liveDataFields);
+    
+    final ShardedLiveDataDispatcher dispatcher = getLiveDataDispatcher();
+    if (dispatcher != null) {
+      // Even while stopped, so that the tick is ordered after any still being drained
+      dispatcher.dispatch(subscription, liveDataFields, originTime);
+    } else {
+      subscription.liveDataReceived(liveDataFields, originTime);
+    }
   }
 
   public Set<String> getActiveDistributionSpecs() {
@@ -871,12 +1234,7 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   }
 
   public Set<Subscription> getSubscriptions() {
-    _subscriptionLock.lock();
-    try {
-      return new HashSet<Subscription>(_currentlyActiveSubscriptions);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return new HashSet<Subscription>(_currentlyActiveSubscriptions);
   }
 
   public Subscription getSubscription(LiveDataSpecification fullyQualifiedSpec) {
@@ -888,12 +1246,7 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   }
 
   public Subscription getSubscription(String securityUniqueId) {
-    _subscriptionLock.lock();
-    try {
-      return _securityUniqueId2Subscription.get(securityUniqueId);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return _securityUniqueId2Subscription.get(securityUniqueId);
   }
   
   public MarketDataDistributor getMarketDataDistributor(DistributionSpecification distributionSpec) {
@@ -905,12 +1258,7 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
   }
   
   public MarketDataDistributor getMarketDataDistributor(LiveDataSpecification fullyQualifiedSpec) {
-    _subscriptionLock.lock();
-    try {
-      return _fullyQualifiedSpec2Distributor.get(fullyQualifiedSpec);
-    } finally {
-      _subscriptionLock.unlock();
-    }
+    return _fullyQualifiedSpec2Distributor.get(fullyQualifiedSpec);
   }
   
   /**
@@ -965,4 +1313,84 @@ public abstract class AbstractLiveDataServer implements Lifecycle {
         null);
   }
   
+  /**
+   * A new subscription between being claimed by a subscription request and being published
+   * or discarded. Requests for the same security made meanwhile wait for it.
+   */
+  private static final class PendingSubscription {
+    
+    private final Subscription _subscription;
+    private final CountDownLatch _done = new CountDownLatch(1);
+    private volatile String _failure;
+    /** The number of requests still waiting for each distributor. Only accessed holding _subscriptionLock */
+    private final Map<DistributionSpecification, Integer> _requests = new HashMap<DistributionSpecification, Integer>();
+    
+    private PendingSubscription(Subscription subscription) {
+      _subscription = subscription;
+    }
+    
+    private Subscription getSubscription() {
+      return _subscription;
+    }
+    
+    private void requested(DistributionSpecification distributionSpec) {
+      final Integer requests = _requests.get(distributionSpec);
+      _requests.put(distributionSpec, (requests != null) ? requests + 1 : 1);
+    }
+    
+    private void withdrawn(DistributionSpecification distributionSpec) {
+      final Integer requests = _requests.get(distributionSpec);
+      if (requests != null) {
+        _requests.put(distributionSpec, requests - 1);
+      }
+    }
+    
+    /**
+     * @return the distributors no request is waiting for any more, not null
+     */
+    private Collection<DistributionSpecification> getWithdrawnDistributionSpecs() {
+      final Collection<DistributionSpecification> withdrawn = new ArrayList<DistributionSpecification>();
+      for (Map.Entry<DistributionSpecification, Integer> requests : _requests.entrySet()) {
+        if (requests.getValue() == 0) {
+          withdrawn.add(requests.getKey());
+        }
+      }
+      return withdrawn;
+    }
+    
+    private void succeeded() {
+      _done.countDown();
+    }
+    
+    private boolean isDone() {
+      return _done.getCount() == 0;
+    }
+    
+    private String getFailure() {
+      return _failure;
+    }
+    
+    private void failed(String message) {
+      _failure = (message != null) ? message : "Unable to subscribe to " + _subscription.getSecurityUniqueId();
+      _done.countDown();
+    }
+    
+    /**
+     * @param timeoutMillis how long to wait for the subscription to be published or fail
+     * @return null once the subscription is published, otherwise why it could not be set up
+     */
+    private String await(long timeoutMillis) {
+      try {
+        if (!_done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+          return "Timed out after " + timeoutMillis + "ms waiting for " + _subscription + " to be set up";
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return "Interrupted waiting for " + _subscription + " to be set up";
+      }
+      return _failure;
+    }
+    
+  }
+  
 }
@@ -0,0 +1,303 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.monitor.LatencyClock;
+
+/**
+ * Hands ticks received from the underlying market data API to a fixed number of
+ * single-threaded pipelines, sharded on the security unique ID.
+ * <p>
+ * All ticks for a security go through the same pipeline, so they are normalized and
+ * distributed in the order they were received and a subscription only ever has one
+ * writer. Ticks for different securities proceed in parallel without any shared lock,
+ * and the thread receiving ticks never waits on normalization or on sending unless
+ * the shard it is dispatching to is full.
+ */
+public class ShardedLiveDataDispatcher implements Lifecycle {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ShardedLiveDataDispatcher.class);
+
+  /**
+   * Default number of ticks that may be waiting on each shard.
+   */
+  public static final int DEFAULT_CAPACITY_PER_SHARD = 8192;
+
+  /**
+   * How long an idle shard sleeps before checking its queue again, in case a wake up is missed.
+   */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  /**
+   * How long the dispatching thread sleeps while the shard it is dispatching to is full.
+   */
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Shard[] _shards;
+  private final int _capacityPerShard;
+  private volatile boolean _running;
+
+  /**
+   * Creates a dispatcher with a shard per available processor.
+   */
+  public ShardedLiveDataDispatcher() {
+    this(Runtime.getRuntime().availableProcessors(), DEFAULT_CAPACITY_PER_SHARD);
+  }
+
+  /**
+   * @param shards the number of pipelines, each with its own thread
+   * @param capacityPerShard the number of ticks that may be waiting on a shard before
+   * the thread dispatching to it is held back
+   */
+  public ShardedLiveDataDispatcher(int shards, int capacityPerShard) {
+    ArgumentChecker.isTrue(shards > 0, "shards must be positive");
+    ArgumentChecker.isTrue(capacityPerShard > 0, "capacityPerShard must be positive");
+    _capacityPerShard = capacityPerShard;
+    _shards = new Shard[shards];
+    for (int i = 0; i < shards; i++) {
+      _shards[i] = new Shard(i);
+    }
+  }
+
+  public int getShardCount() {
+    return _shards.length;
+  }
+
+  public int getCapacityPerShard() {
+    return _capacityPerShard;
+  }
+
+  /**
+   * @return the number of ticks distributed since the dispatcher was created
+   */
+  public long getNumTicksDispatched() {
+    long total = 0;
+    for (Shard shard : _shards) {
+      total += shard._dispatched.get();
+    }
+    return total;
+  }
+
+  /**
+   * @return the number of ticks currently waiting to be distributed
+   */
+  public int getNumTicksQueued() {
+    int total = 0;
+    for (Shard shard : _shards) {
+      total += shard._size.get();
+    }
+    return total;
+  }
+
+  /**
+   * Queues a tick for distribution. If the dispatcher is not running the tick is
+   * distributed by the calling thread.
+   *
+   * @param subscription the subscription the tick is for, not null
+   * @param liveDataFields the tick, in the underlying market data API's native format, not null
+   */
+  public void dispatch(Subscription subscription, FudgeMsg liveDataFields) {
+    dispatch(subscription, liveDataFields, LatencyClock.currentTimeNanos());
+  }
+
+  /**
+   * Queues a tick for distribution. If the dispatcher is not running the tick is
+   * distributed by the calling thread, after any ticks still queued for the security.
+   *
+   * @param subscription the subscription the tick is for, not null
+   * @param liveDataFields the tick, in the underlying market data API's native format, not null
+   * @param originTime the time the tick was received, from {@link LatencyClock}
+   */
+  public void dispatch(Subscription subscription, FudgeMsg liveDataFields, long originTime) {
+    final Tick tick = new Tick(subscription, liveDataFields, originTime);
+    final Shard shard = getShard(subscription.getSecurityUniqueId());
+    if (_running) {
+      shard.offer(tick);
+    } else {
+      shard.drainStopped(tick);
+    }
+  }
+
+  private Shard getShard(String securityUniqueId) {
+    int h = securityUniqueId.hashCode();
+    h ^= (h >>> 16);
+    return _shards[(h & Integer.MAX_VALUE) % _shards.length];
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public synchronized void start() {
+    if (_running) {
+      return;
+    }
+    _running = true;
+    for (Shard shard : _shards) {
+      shard.start();
+    }
+  }
+
+  /**
+   * Stops the shard threads once they have distributed the ticks already queued. Ticks
+   * queued by a dispatch racing with the stop are distributed by the dispatching thread.
+   */
+  @Override
+  public synchronized void stop() {
+    if (!_running) {
+      return;
+    }
+    _running = false;
+    for (Shard shard : _shards) {
+      shard.stop();
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return _running;
+  }
+
+  //-------------------------------------------------------------------------
+  private static final class Tick {
+    private final Subscription _subscription;
+    private final FudgeMsg _liveDataFields;
+    private final long _originTime;
+
+    private Tick(Subscription subscription, FudgeMsg liveDataFields, long originTime) {
+      _subscription = subscription;
+      _liveDataFields = liveDataFields;
+      _originTime = originTime;
+    }
+  }
+
+  /**
+   * A single consumer queue and the thread draining it.
+   */
+  private final class Shard implements Runnable {
+
+    private final Queue<Tick> _queue = new ConcurrentLinkedQueue<Tick>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final AtomicLong _dispatched = new AtomicLong();
+    private final int _index;
+    private volatile Thread _thread;
+    private volatile boolean _idle;
+
+    private Shard(int index) {
+      _index = index;
+    }
+
+    private void start() {
+      final Thread thread = new Thread(this, "LiveDataDispatcher-" + _index);
+      thread.setDaemon(true);
+      _thread = thread;
+      thread.start();
+    }
+
+    private void stop() {
+      final Thread thread = _thread;
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        s_logger.warn("Interrupted waiting for {} to stop", thread.getName());
+      }
+      // Anything queued after the thread finished draining
+      drainStopped(null);
+    }
+
+    private void offer(Tick tick) {
+      while (_size.get() >= _capacityPerShard && _running) {
+        LockSupport.parkNanos(this, FULL_PARK_NANOS);
+      }
+      _size.incrementAndGet();
+      _queue.offer(tick);
+      if (!_running) {
+        // The shard may have been stopped, and its queue drained, since dispatch checked
+        drainStopped(null);
+      } else if (_idle) {
+        LockSupport.unpark(_thread);
+      }
+    }
+
+    /**
+     * Distributes anything left on the queue, followed by a tick if one is given, once the
+     * shard thread has finished, so that there is still only one thread distributing at a time.
+     */
+    private synchronized void drainStopped(Tick tick) {
+      Thread thread = _thread;
+      while (!_running && thread != null && thread.isAlive()) {
+        try {
+          thread.join(TimeUnit.NANOSECONDS.toMillis(IDLE_PARK_NANOS));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          s_logger.warn("Interrupted waiting for {} to stop", thread.getName());
+          break;
+        }
+        thread = _thread;
+      }
+      if (_running) {
+        // Restarted, so the new shard thread distributes them
+        if (tick != null) {
+          offer(tick);
+        }
+        return;
+      }
+      drain();
+      if (tick != null) {
+        deliver(tick);
+      }
+    }
+
+    private boolean drain() {
+      boolean any = false;
+      Tick tick = _queue.poll();
+      while (tick != null) {
+        _size.decrementAndGet();
+        deliver(tick);
+        any = true;
+        tick = _queue.poll();
+      }
+      return any;
+    }
+
+    private void deliver(Tick tick) {
+      try {
+        tick._subscription.liveDataReceived(tick._liveDataFields, tick._originTime);
+      } catch (RuntimeException e) {
+        s_logger.error("Distributing live data to " + tick._subscription + " failed", e);
+      }
+      _dispatched.incrementAndGet();
+    }
+
+    @Override
+    public void run() {
+      while (_running) {
+        if (!drain()) {
+          _idle = true;
+          if (_queue.isEmpty() && _running) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          _idle = false;
+        }
+      }
+      drain();
+    }
+
+  }
+
+}
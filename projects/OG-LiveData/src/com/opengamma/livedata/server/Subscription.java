@@ -7,6 +7,7 @@ package com.opengamma.livedata.server;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -41,9 +42,10 @@ public class Subscription {
    * The data from this subscription can be distributed to clients in multiple formats,
    * therefore we need multiple market data distributors.
    * <p>
-   * Since an ordinary HashMap is used, access to the map must be via synchronized methods. 
+   * The map is never modified once published. Changes, which are rare compared to ticks, copy
+   * it under the subscription's monitor so the tick path can read it without locking.
    */
-  private final Map<DistributionSpecification, MarketDataDistributor> _distributors = new HashMap<DistributionSpecification, MarketDataDistributor>();
+  private volatile Map<DistributionSpecification, MarketDataDistributor> _distributors = Collections.emptyMap();
   
   /** 
    * Handle to underlying (e.g., Bloomberg/Reuters) subscription.
@@ -53,9 +55,16 @@ public class Subscription {
   
   /** 
    * History of ticks received from the underlying market data API, in its native format.
+   * Only accessed while holding {@link #_tickLock}.
    */
   private final FieldHistoryStore _history = new FieldHistoryStore();
   
+  /**
+   * Serializes ticks for this subscription so each distributor sees a well-defined order. When the
+   * server shards ticks by security there is a single writer per subscription and this is uncontended.
+   */
+  private final Object _tickLock = new Object();
+  
   private final Date _creationTime;
   
   /**
@@ -95,20 +104,20 @@ public class Subscription {
     return _marketDataSenderFactory;
   }
   
-  public synchronized Set<DistributionSpecification> getDistributionSpecifications() {
+  public Set<DistributionSpecification> getDistributionSpecifications() {
     return new HashSet<DistributionSpecification>(_distributors.keySet());
   }
   
-  public synchronized Collection<MarketDataDistributor> getDistributors() {
+  public Collection<MarketDataDistributor> getDistributors() {
     return new ArrayList<MarketDataDistributor>(_distributors.values());
   }
   
-  public synchronized MarketDataDistributor getMarketDataDistributor(DistributionSpecification distributionSpec) {
+  public MarketDataDistributor getMarketDataDistributor(DistributionSpecification distributionSpec) {
     return _distributors.get(distributionSpec);
   }
   
   public MarketDataDistributor getMarketDataDistributor(LiveDataSpecification fullyQualifiedSpec) {
-    for (MarketDataDistributor distributor : getDistributors()) {
+    for (MarketDataDistributor distributor : _distributors.values()) {
       if (distributor.getDistributionSpec().getFullyQualifiedLiveDataSpecification().equals(fullyQualifiedSpec)) {
         return distributor;
       }
@@ -136,7 +145,9 @@ public class Subscription {
           getMarketDataSenderFactory(),
           persistent);
 
-      _distributors.put(spec, distributor);
+      final Map<DistributionSpecification, MarketDataDistributor> distributors = new HashMap<DistributionSpecification, MarketDataDistributor>(_distributors);
+      distributors.put(spec, distributor);
+      _distributors = Collections.unmodifiableMap(distributors);
       s_logger.info("Added {} to {}", distributor, this);
     }
     
@@ -155,8 +166,10 @@ public class Subscription {
   }
   
   /*package*/ synchronized void removeDistributor(DistributionSpecification spec) {
-    MarketDataDistributor removed = _distributors.remove(spec);
+    final Map<DistributionSpecification, MarketDataDistributor> distributors = new HashMap<DistributionSpecification, MarketDataDistributor>(_distributors);
+    MarketDataDistributor removed = distributors.remove(spec);
     if (removed != null) {
+      _distributors = Collections.unmodifiableMap(distributors);
       s_logger.info("Removed {} from {}", removed, this);      
     } else {
       s_logger.info("Removed distribution spec {} from {} (no-op)", spec, this);
@@ -165,27 +178,33 @@ public class Subscription {
   
   /*package*/ synchronized void removeAllDistributors() {
     s_logger.info("Removed {} from {}", _distributors, this);
-    _distributors.clear();
+    _distributors = Collections.emptyMap();
   }
   
-  /*package*/ synchronized void initialSnapshotReceived(FudgeMsg liveDataFields) {
-    _history.liveDataReceived(liveDataFields);
-    
-    for (MarketDataDistributor distributor : getDistributors()) {
-      distributor.updateFieldHistory(liveDataFields);
+  /*package*/ void initialSnapshotReceived(FudgeMsg liveDataFields) {
+    synchronized (_tickLock) {
+      _history.liveDataReceived(liveDataFields);
+      
+      for (MarketDataDistributor distributor : _distributors.values()) {
+        distributor.updateFieldHistory(liveDataFields);
+      }
     }
   }
 
-  /*package*/ synchronized void liveDataReceived(FudgeMsg liveDataFields) {
-    _history.liveDataReceived(liveDataFields);
-    
-    for (MarketDataDistributor distributor : getDistributors()) {
-      distributor.distributeLiveData(liveDataFields);
+  /*package*/ void liveDataReceived(FudgeMsg liveDataFields, long originTime) {
+    synchronized (_tickLock) {
+      _history.liveDataReceived(liveDataFields);
+      
+      for (MarketDataDistributor distributor : _distributors.values()) {
+        distributor.distributeLiveData(liveDataFields, originTime);
+      }
     }
   }
   
-  public synchronized FieldHistoryStore getLiveDataHistory() {
-    return new FieldHistoryStore(_history);
+  public FieldHistoryStore getLiveDataHistory() {
+    synchronized (_tickLock) {
+      return new FieldHistoryStore(_history);
+    }
   }
   
   public boolean isActive() {
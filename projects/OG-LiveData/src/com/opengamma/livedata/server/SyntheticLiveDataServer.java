@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.id.ExternalScheme;
+import com.opengamma.livedata.normalization.StandardRules;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A live data server whose feed is generated rather than read from an underlying market data API.
+ * <p>
+ * Every subscribed security gets a random walk price, published as bid, ask and last fields.
+ * Once connected, the configured number of feed threads each tick their share of the subscribed
+ * securities at the configured rate, so the server can be load tested without a real feed. The
+ * feed can also be driven directly with {@link #tick(String)}, with no feed threads. Each tick
+ * carries the {@link System#nanoTime()} at which it was generated, so tick-to-send latency can be
+ * measured downstream.
+ */
+public class SyntheticLiveDataServer extends AbstractLiveDataServer {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SyntheticLiveDataServer.class);
+
+  /**
+   * The default scheme of the securities this server publishes.
+   */
+  public static final ExternalScheme SYNTHETIC = ExternalScheme.of("SYNTHETIC");
+
+  /** Bid price field name */
+  public static final String BID_FIELD = "BID";
+  /** Ask price field name */
+  public static final String ASK_FIELD = "ASK";
+  /** Last price field name */
+  public static final String LAST_FIELD = "LAST";
+  /** Field holding the {@link System#nanoTime()} at which the tick was generated */
+  public static final String TIMESTAMP_FIELD = "SyntheticTickNanos";
+
+  private static final double INITIAL_PRICE = 100.0;
+  private static final double VOLATILITY = 0.001;
+  private static final double HALF_SPREAD = 0.0005;
+
+  private final ExternalScheme _domain;
+  private final int _feedThreads;
+  private final double _ticksPerSecondPerThread;
+  private final FudgeContext _fudgeContext = FudgeContext.GLOBAL_DEFAULT;
+  /** Source of the price moves for {@link #tick(String)}; shared by the calling threads */
+  private final Random _random = new Random();
+
+  /** Last price of each subscribed security, as double bits */
+  private final Map<String, AtomicLong> _prices = new ConcurrentHashMap<String, AtomicLong>();
+  private final AtomicLong _numTicksGenerated = new AtomicLong();
+  private final List<Thread> _threads = new ArrayList<Thread>();
+  private volatile boolean _generating;
+
+  /**
+   * Creates a server that only ticks when {@link #tick(String)} is called.
+   */
+  public SyntheticLiveDataServer() {
+    this(SYNTHETIC, 0, 0);
+  }
+
+  /**
+   * @param domain the scheme of the securities this server publishes, not null
+   * @param feedThreads the number of threads generating ticks once connected, zero to only tick
+   * when {@link #tick(String)} is called
+   * @param ticksPerSecond the total rate at which the feed threads generate ticks, zero or less
+   * to generate them as fast as possible
+   */
+  public SyntheticLiveDataServer(ExternalScheme domain, int feedThreads, double ticksPerSecond) {
+    ArgumentChecker.notNull(domain, "Identification domain");
+    ArgumentChecker.isTrue(feedThreads >= 0, "feedThreads must not be negative");
+    _domain = domain;
+    _feedThreads = feedThreads;
+    _ticksPerSecondPerThread = (feedThreads > 0 && ticksPerSecond > 0) ? ticksPerSecond / feedThreads : 0;
+  }
+
+  public int getFeedThreads() {
+    return _feedThreads;
+  }
+
+  public long getNumTicksGenerated() {
+    return _numTicksGenerated.get();
+  }
+
+  /**
+   * Moves the price of a subscribed security and publishes it.
+   *
+   * @param securityUniqueId the security, not null
+   * @param random the source of the price move, not null
+   */
+  public void tick(String securityUniqueId, Random random) {
+    final AtomicLong price = _prices.get(securityUniqueId);
+    if (price == null) {
+      s_logger.debug("Not ticking {} as it is not subscribed", securityUniqueId);
+      return;
+    }
+    final double move = 1.0 + VOLATILITY * random.nextGaussian();
+    double last;
+    long bits;
+    do {
+      bits = price.get();
+      last = Double.longBitsToDouble(bits) * move;
+    } while (!price.compareAndSet(bits, Double.doubleToLongBits(last)));
+    _numTicksGenerated.incrementAndGet();
+    liveDataReceived(securityUniqueId, createTick(last));
+  }
+
+  /**
+   * Moves the price of a subscribed security and publishes it.
+   *
+   * @param securityUniqueId the security, not null
+   */
+  public void tick(String securityUniqueId) {
+    tick(securityUniqueId, _random);
+  }
+
+  private FudgeMsg createTick(double last) {
+    final MutableFudgeMsg msg = _fudgeContext.newMessage();
+    msg.add(BID_FIELD, last * (1.0 - HALF_SPREAD));
+    msg.add(ASK_FIELD, last * (1.0 + HALF_SPREAD));
+    msg.add(LAST_FIELD, last);
+    msg.add(TIMESTAMP_FIELD, System.nanoTime());
+    return msg;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  protected ExternalScheme getUniqueIdDomain() {
+    return _domain;
+  }
+
+  @Override
+  public String getDefaultNormalizationRuleSetId() {
+    return StandardRules.getNoNormalization().getId();
+  }
+
+  @Override
+  protected Map<String, Object> doSubscribe(Collection<String> uniqueIds) {
+    final Map<String, Object> handles = new HashMap<String, Object>();
+    for (String uniqueId : uniqueIds) {
+      if (!_prices.containsKey(uniqueId)) {
+        _prices.put(uniqueId, new AtomicLong(Double.doubleToLongBits(INITIAL_PRICE)));
+      }
+      handles.put(uniqueId, uniqueId);
+    }
+    return handles;
+  }
+
+  @Override
+  protected void doUnsubscribe(Collection<Object> subscriptionHandles) {
+    for (Object handle : subscriptionHandles) {
+      _prices.remove(handle);
+    }
+  }
+
+  @Override
+  protected Map<String, FudgeMsg> doSnapshot(Collection<String> uniqueIds) {
+    final Map<String, FudgeMsg> snapshots = new HashMap<String, FudgeMsg>();
+    for (String uniqueId : uniqueIds) {
+      final AtomicLong price = _prices.get(uniqueId);
+      snapshots.put(uniqueId, createTick((price != null) ? Double.longBitsToDouble(price.get()) : INITIAL_PRICE));
+    }
+    return snapshots;
+  }
+
+  @Override
+  protected boolean snapshotOnSubscriptionStartRequired(Subscription subscription) {
+    return false;
+  }
+
+  @Override
+  protected synchronized void doConnect() {
+    _generating = true;
+    for (int i = 0; i < _feedThreads; i++) {
+      final Thread thread = new Thread(new Generator(i), "SyntheticFeed-" + i);
+      thread.setDaemon(true);
+      _threads.add(thread);
+      thread.start();
+    }
+  }
+
+  @Override
+  protected synchronized void doDisconnect() {
+    _generating = false;
+    for (Thread thread : _threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        s_logger.warn("Interrupted waiting for {} to stop", thread.getName());
+      }
+    }
+    _threads.clear();
+  }
+
+  /**
+   * Ticks the subscribed securities whose position in the subscription list falls to this thread.
+   */
+  private final class Generator implements Runnable {
+
+    private final int _index;
+    private final Random _random;
+
+    private Generator(int index) {
+      _index = index;
+      _random = new Random(index);
+    }
+
+    @Override
+    public void run() {
+      final long nanosPerTick = (_ticksPerSecondPerThread > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / _ticksPerSecondPerThread) : 0;
+      long next = System.nanoTime();
+      while (_generating) {
+        final List<String> uniqueIds = new ArrayList<String>(_prices.keySet());
+        if (uniqueIds.size() <= _index) {
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+          next = System.nanoTime();
+          continue;
+        }
+        for (int i = _index; i < uniqueIds.size() && _generating; i += _feedThreads) {
+          if (nanosPerTick > 0) {
+            next += nanosPerTick;
+            final long wait = next - System.nanoTime();
+            if (wait > 0) {
+              LockSupport.parkNanos(wait);
+            }
+          }
+          try {
+            tick(uniqueIds.get(i), _random);
+          } catch (RuntimeException e) {
+            s_logger.error("Generating tick for " + uniqueIds.get(i) + " failed", e);
+          }
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Decorates the senders created by another factory so that sending market data
+ * never blocks the thread distributing it.
+ * <p>
+ * Each sender has its own bounded queue, drained by at most one task on the executor
+ * at a time, so updates for a distributor are still sent in order. A slow client or
+ * transport therefore holds up only its own sender. If a sender's queue is full the
+ * update is dropped and counted rather than holding up distribution to everyone else.
+ * Once the queue has been drained, the sender is sent a snapshot of the distributor's
+ * last known values in place of the updates dropped, so its clients still converge on
+ * the latest values.
+ */
+public class AsynchronousMarketDataSenderFactory implements MarketDataSenderFactory {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(AsynchronousMarketDataSenderFactory.class);
+
+  /**
+   * Default number of updates that may be waiting on each sender.
+   */
+  public static final int DEFAULT_CAPACITY_PER_SENDER = 1024;
+
+  private final MarketDataSenderFactory _underlying;
+  private final Executor _executor;
+  private final int _capacityPerSender;
+  private final AtomicLong _numDropped = new AtomicLong();
+
+  public AsynchronousMarketDataSenderFactory(MarketDataSenderFactory underlying, Executor executor) {
+    this(underlying, executor, DEFAULT_CAPACITY_PER_SENDER);
+  }
+
+  public AsynchronousMarketDataSenderFactory(MarketDataSenderFactory underlying, Executor executor, int capacityPerSender) {
+    ArgumentChecker.notNull(underlying, "Underlying market data sender factory");
+    ArgumentChecker.notNull(executor, "Executor");
+    ArgumentChecker.isTrue(capacityPerSender > 0, "capacityPerSender must be positive");
+    _underlying = underlying;
+    _executor = executor;
+    _capacityPerSender = capacityPerSender;
+  }
+
+  public MarketDataSenderFactory getUnderlying() {
+    return _underlying;
+  }
+
+  public int getCapacityPerSender() {
+    return _capacityPerSender;
+  }
+
+  /**
+   * @return the number of updates dropped by all senders because their queue was full
+   */
+  public long getNumDropped() {
+    return _numDropped.get();
+  }
+
+  @Override
+  public Collection<MarketDataSender> create(MarketDataDistributor distributor) {
+    final Collection<MarketDataSender> underlying = _underlying.create(distributor);
+    final Collection<MarketDataSender> senders = new ArrayList<MarketDataSender>(underlying.size());
+    for (MarketDataSender sender : underlying) {
+      senders.add(new AsynchronousSender(sender));
+    }
+    return senders;
+  }
+
+  /**
+   * Queues updates for an underlying sender.
+   */
+  private final class AsynchronousSender implements KeyFrameSender, Runnable {
+
+    private final MarketDataSender _underlyingSender;
+    private final Queue<LiveDataValueUpdateBean> _queue = new ConcurrentLinkedQueue<LiveDataValueUpdateBean>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final AtomicBoolean _scheduled = new AtomicBoolean();
+    private final AtomicBoolean _dropped = new AtomicBoolean();
+
+    private AsynchronousSender(MarketDataSender underlyingSender) {
+      _underlyingSender = underlyingSender;
+    }
+
+    @Override
+    public MarketDataDistributor getDistributor() {
+      return _underlyingSender.getDistributor();
+    }
+
+    @Override
+    public void requestKeyFrame() {
+      if (_underlyingSender instanceof KeyFrameSender) {
+        ((KeyFrameSender) _underlyingSender).requestKeyFrame();
+      }
+    }
+
+    @Override
+    public void sendMarketData(LiveDataValueUpdateBean data) {
+      if (_size.incrementAndGet() > _capacityPerSender) {
+        _size.decrementAndGet();
+        if (_numDropped.getAndIncrement() % _capacityPerSender == 0) {
+          s_logger.warn("{} is not keeping up, dropped update {}", _underlyingSender, data.getSequenceNumber());
+        }
+        _dropped.set(true);
+        schedule();
+        return;
+      }
+      _queue.offer(data);
+      schedule();
+    }
+
+    private void schedule() {
+      if (_scheduled.compareAndSet(false, true)) {
+        _executor.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      LiveDataValueUpdateBean data = _queue.poll();
+      while (data != null) {
+        _size.decrementAndGet();
+        send(data);
+        data = _queue.poll();
+      }
+      if (_dropped.compareAndSet(true, false)) {
+        // The last known values include every update dropped so far
+        final LiveDataValueUpdateBean snapshot = getDistributor().getSnapshot();
+        if (snapshot != null) {
+          send(snapshot);
+        }
+      }
+      _scheduled.set(false);
+      // An update may have been queued or dropped after the last check but before the flag was cleared
+      if (!_queue.isEmpty() || _dropped.get()) {
+        schedule();
+      }
+    }
+
+    private void send(LiveDataValueUpdateBean data) {
+      try {
+        _underlyingSender.sendMarketData(data);
+      } catch (RuntimeException e) {
+        s_logger.error(_underlyingSender + " failed", e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "AsynchronousSender[" + _underlyingSender + "]";
+    }
+
+  }
+
+}
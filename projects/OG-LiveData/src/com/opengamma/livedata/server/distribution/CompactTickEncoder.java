@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.MutableFudgeMsg;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.livedata.CompactTickFormat;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Encodes the updates of a single subscription as a stream of {@link CompactTickFormat} frames.
+ * <p>
+ * The encoder remembers the field ids it has assigned and the last value sent for each field,
+ * so there must be one encoder per stream of updates, for example per {@link MarketDataSender}.
+ * Fields without a name are not carried, and a name repeated within one update is carried
+ * once, with the last of its values.
+ * <p>
+ * The encoder assumes every frame it returns reaches the receivers. A sender that fails to
+ * send a frame must call {@link #requestKeyFrame()} so the next frame resynchronizes them.
+ */
+public class CompactTickEncoder {
+
+  /**
+   * Default number of delta frames between key frames.
+   */
+  public static final int DEFAULT_KEY_FRAME_INTERVAL = 100;
+
+  private static final Random s_streamIds = new SecureRandom();
+
+  private final FudgeContext _fudgeContext;
+  private final int _keyFrameInterval;
+  private final long _streamId;
+
+  private final Map<String, Integer> _fieldIds = new HashMap<String, Integer>();
+  private final List<String> _fieldNames = new ArrayList<String>();
+  private final List<Object> _lastValues = new ArrayList<Object>();
+  private LiveDataSpecification _specification;
+  private byte[] _encodedSpecification;
+  private int _deltasSinceKeyFrame;
+  private long _frameNumber;
+  private boolean _keyFrameRequested = true;
+
+  public CompactTickEncoder(FudgeContext fudgeContext) {
+    this(fudgeContext, DEFAULT_KEY_FRAME_INTERVAL);
+  }
+
+  /**
+   * @param fudgeContext the context to encode the specification and any non-primitive values with, not null
+   * @param keyFrameInterval the number of delta frames between key frames, positive
+   */
+  public CompactTickEncoder(FudgeContext fudgeContext, int keyFrameInterval) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.isTrue(keyFrameInterval > 0, "keyFrameInterval must be positive");
+    _fudgeContext = fudgeContext;
+    _keyFrameInterval = keyFrameInterval;
+    _streamId = s_streamIds.nextLong();
+  }
+
+  public long getStreamId() {
+    return _streamId;
+  }
+
+  /**
+   * Makes the next frame a key frame, for example after the transport has been interrupted
+   * or a frame could not be sent.
+   */
+  public synchronized void requestKeyFrame() {
+    _keyFrameRequested = true;
+  }
+
+  /**
+   * Encodes an update as the next frame of the stream.
+   *
+   * @param update the update, not null
+   * @return the frame, not null
+   */
+  public synchronized byte[] encode(LiveDataValueUpdateBean update) {
+    ArgumentChecker.notNull(update, "update");
+    if (!update.getSpecification().equals(_specification)) {
+      _specification = update.getSpecification();
+      _encodedSpecification = _fudgeContext.toByteArray(_specification.toFudgeMsg(_fudgeContext));
+      _keyFrameRequested = true;
+    }
+    // Assign ids and find the changed fields
+    final List<FudgeField> fields = update.getFields().getAllFields();
+    final int[] changed = new int[fields.size()];
+    final BitSet inFrame = new BitSet();
+    int numChanged = 0;
+    for (FudgeField field : fields) {
+      if (field.getName() == null) {
+        continue;
+      }
+      Integer id = _fieldIds.get(field.getName());
+      if (id == null) {
+        id = _fieldNames.size();
+        _fieldIds.put(field.getName(), id);
+        _fieldNames.add(field.getName());
+        _lastValues.add(null);
+        // The new definition has to reach every receiver
+        _keyFrameRequested = true;
+      }
+      final Object value = field.getValue();
+      if (!value.equals(_lastValues.get(id))) {
+        _lastValues.set(id, value);
+        if (!inFrame.get(id)) {
+          inFrame.set(id);
+          changed[numChanged++] = id;
+        }
+      }
+    }
+    final boolean keyFrame = _keyFrameRequested || (_deltasSinceKeyFrame >= _keyFrameInterval);
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream(keyFrame ? 64 + _encodedSpecification.length + 16 * _fieldNames.size() : 16 + 12 * numChanged);
+      final DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(CompactTickFormat.MAGIC);
+      out.writeByte(keyFrame ? CompactTickFormat.FRAME_KEY : CompactTickFormat.FRAME_DELTA);
+      out.writeLong(_streamId);
+      CompactTickFormat.writeVarLong(out, _frameNumber++);
+      CompactTickFormat.writeVarLong(out, update.getSequenceNumber());
+      if (keyFrame) {
+        CompactTickFormat.writeVarInt(out, _encodedSpecification.length);
+        out.write(_encodedSpecification);
+        CompactTickFormat.writeVarInt(out, _fieldNames.size());
+        for (int id = 0; id < _fieldNames.size(); id++) {
+          CompactTickFormat.writeVarInt(out, id);
+          out.writeUTF(_fieldNames.get(id));
+        }
+        // Every value, so a receiver joining at this frame has the full picture
+        CompactTickFormat.writeVarInt(out, _fieldNames.size());
+        for (int id = 0; id < _fieldNames.size(); id++) {
+          writeValue(out, id, _lastValues.get(id));
+        }
+        _keyFrameRequested = false;
+        _deltasSinceKeyFrame = 0;
+      } else {
+        CompactTickFormat.writeVarInt(out, numChanged);
+        for (int i = 0; i < numChanged; i++) {
+          writeValue(out, changed[i], _lastValues.get(changed[i]));
+        }
+        _deltasSinceKeyFrame++;
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Not expected writing to memory
+      throw new OpenGammaRuntimeException("Unable to encode " + update, e);
+    }
+  }
+
+  private void writeValue(DataOutputStream out, int id, Object value) throws IOException {
+    CompactTickFormat.writeVarInt(out, id);
+    if (value instanceof Double) {
+      out.writeByte(CompactTickFormat.TYPE_DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(CompactTickFormat.TYPE_FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      out.writeByte(CompactTickFormat.TYPE_INTEGER);
+      CompactTickFormat.writeZigZag(out, ((Number) value).longValue());
+    } else if (value instanceof String) {
+      out.writeByte(CompactTickFormat.TYPE_STRING);
+      out.writeUTF((String) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(((Boolean) value) ? CompactTickFormat.TYPE_TRUE : CompactTickFormat.TYPE_FALSE);
+    } else {
+      out.writeByte(CompactTickFormat.TYPE_FUDGE);
+      final MutableFudgeMsg msg = _fudgeContext.newMessage();
+      msg.add(CompactTickFormat.FUDGE_VALUE_FIELD_NAME, value);
+      final byte[] encoded = _fudgeContext.toByteArray(msg);
+      CompactTickFormat.writeVarInt(out, encoded.length);
+      out.write(encoded);
+    }
+  }
+
+}
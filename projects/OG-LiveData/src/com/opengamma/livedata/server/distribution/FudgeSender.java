@@ -6,7 +6,9 @@
 package com.opengamma.livedata.server.distribution;
 
 import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
 
+import com.opengamma.livedata.CompactTickFormat;
 import com.opengamma.livedata.LiveDataValueUpdateBean;
 import com.opengamma.transport.FudgeMessageSender;
 import com.opengamma.util.ArgumentChecker;
@@ -16,15 +18,28 @@ import com.opengamma.util.ArgumentChecker;
  * market data to a {@link FudgeMessageSender}. 
  * Useful in tests. 
  */
-public class FudgeSender implements MarketDataSender {
+public class FudgeSender implements KeyFrameSender {
   private final FudgeMessageSender _fudgeMessageSender;
   private final MarketDataDistributor _distributor;
+  /** Null to send full Fudge encoded updates */
+  private final CompactTickEncoder _compactTickEncoder;
   
   public FudgeSender(FudgeMessageSender fudgeMessageSender, MarketDataDistributor distributor) {
+    this(fudgeMessageSender, distributor, false);
+  }
+  
+  /**
+   * @param fudgeMessageSender the sender, not null
+   * @param distributor the distributor this sender belongs to, not null
+   * @param compactEncoding whether to send updates as {@link CompactTickFormat compact} frames,
+   * in the {@link CompactTickFormat#FUDGE_FRAME_FIELD_NAME} field of a message
+   */
+  public FudgeSender(FudgeMessageSender fudgeMessageSender, MarketDataDistributor distributor, boolean compactEncoding) {
     ArgumentChecker.notNull(fudgeMessageSender, "Fudge Message Sender");
     ArgumentChecker.notNull(distributor, "Market Data Distributor");
     _fudgeMessageSender = fudgeMessageSender;
     _distributor = distributor;
+    _compactTickEncoder = compactEncoding ? new CompactTickEncoder(fudgeMessageSender.getFudgeContext()) : null;
   }
 
   public FudgeMessageSender getFudgeMessageSender() {
@@ -36,10 +51,29 @@ public class FudgeSender implements MarketDataSender {
     return _distributor;
   }
 
+  @Override
+  public void requestKeyFrame() {
+    if (_compactTickEncoder != null) {
+      _compactTickEncoder.requestKeyFrame();
+    }
+  }
+
   @Override
   public void sendMarketData(LiveDataValueUpdateBean data) {
-    FudgeMsg fudgeMsg = data.toFudgeMsg(getFudgeMessageSender().getFudgeContext());
-    getFudgeMessageSender().send(fudgeMsg);
+    if (_compactTickEncoder != null) {
+      MutableFudgeMsg fudgeMsg = getFudgeMessageSender().getFudgeContext().newMessage();
+      fudgeMsg.add(CompactTickFormat.FUDGE_FRAME_FIELD_NAME, _compactTickEncoder.encode(data));
+      try {
+        getFudgeMessageSender().send(fudgeMsg);
+      } catch (RuntimeException e) {
+        // Receivers missed the frame the encoder has already accounted for
+        _compactTickEncoder.requestKeyFrame();
+        throw e;
+      }
+    } else {
+      FudgeMsg fudgeMsg = data.toFudgeMsg(getFudgeMessageSender().getFudgeContext());
+      getFudgeMessageSender().send(fudgeMsg);
+    }
   }
 
 }
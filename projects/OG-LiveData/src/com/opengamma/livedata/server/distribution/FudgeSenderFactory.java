@@ -17,15 +17,25 @@ import com.opengamma.util.ArgumentChecker;
 public class FudgeSenderFactory implements MarketDataSenderFactory {
   
   private final FudgeMessageSender _fudgeMessageSender;
+  private final boolean _compactEncoding;
   
   public FudgeSenderFactory(FudgeMessageSender fudgeMessageSender) {
+    this(fudgeMessageSender, false);
+  }
+  
+  /**
+   * @param fudgeMessageSender the sender, not null
+   * @param compactEncoding whether the senders send {@link com.opengamma.livedata.CompactTickFormat compact} frames
+   */
+  public FudgeSenderFactory(FudgeMessageSender fudgeMessageSender, boolean compactEncoding) {
     ArgumentChecker.notNull(fudgeMessageSender, "Fudge message sender");
     _fudgeMessageSender = fudgeMessageSender;
+    _compactEncoding = compactEncoding;
   }
   
   @Override
   public Collection<MarketDataSender> create(MarketDataDistributor distributor) {
-    return Collections.<MarketDataSender>singleton(new FudgeSender(_fudgeMessageSender, distributor));
+    return Collections.<MarketDataSender>singleton(new FudgeSender(_fudgeMessageSender, distributor, _compactEncoding));
   }
 
 }
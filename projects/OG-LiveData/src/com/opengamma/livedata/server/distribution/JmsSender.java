@@ -19,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.core.MessageCreator;
 
+import com.opengamma.livedata.CompactTickFormat;
 import com.opengamma.livedata.LiveDataValueUpdateBean;
 import com.opengamma.livedata.server.DistributionSpecification;
 import com.opengamma.livedata.server.FieldHistoryStore;
@@ -33,26 +34,40 @@ import com.opengamma.util.ArgumentChecker;
  *
  * @author kirk
  */
-public class JmsSender implements MarketDataSender {
+public class JmsSender implements KeyFrameSender {
   private static final Logger s_logger = LoggerFactory.getLogger(JmsSender.class);
   
   private final JmsTemplate _jmsTemplate;
   private final FudgeContext _fudgeContext;
   private final MarketDataDistributor _distributor;
+  /** Null to send full Fudge encoded updates */
+  private final CompactTickEncoder _compactTickEncoder;
   
   private final FieldHistoryStore _cumulativeDelta = new FieldHistoryStore();
   private long _lastSequenceNumber;
+  private long _originTime;
   
   private volatile boolean _interrupted; // = false;
   private final Semaphore _lock = new Semaphore(1);
   
   public JmsSender(JmsTemplate jmsTemplate, MarketDataDistributor distributor) {
+    this(jmsTemplate, distributor, false);
+  }
+  
+  /**
+   * @param jmsTemplate the template to send with, not null
+   * @param distributor the distributor this sender belongs to, not null
+   * @param compactEncoding whether to send updates in the {@link CompactTickFormat compact}
+   * encoding rather than as Fudge messages
+   */
+  public JmsSender(JmsTemplate jmsTemplate, MarketDataDistributor distributor, boolean compactEncoding) {
     ArgumentChecker.notNull(jmsTemplate, "JMS template");
     ArgumentChecker.notNull(distributor, "Market data distributor");
     
     _jmsTemplate = jmsTemplate;
     _fudgeContext = new FudgeContext();
     _distributor = distributor;
+    _compactTickEncoder = compactEncoding ? new CompactTickEncoder(_fudgeContext) : null;
   }
   
   @Override
@@ -60,12 +75,23 @@ public class JmsSender implements MarketDataSender {
     return _distributor;
   }
 
+  @Override
+  public void requestKeyFrame() {
+    if (_compactTickEncoder != null) {
+      _compactTickEncoder.requestKeyFrame();
+    }
+  }
+
   @Override
   public void sendMarketData(LiveDataValueUpdateBean data) {
     _lock.acquireUninterruptibly();
     try {
       _cumulativeDelta.liveDataReceived(data.getFields());
       _lastSequenceNumber = data.getSequenceNumber(); 
+      if (_originTime == 0) {
+        // The latency of a batched up send is that of the oldest tick in it
+        _originTime = data.getOriginTime();
+      }
       
       if (_interrupted) {
         s_logger.debug("{}: Interrupted - not sending message", this);
@@ -84,24 +110,39 @@ public class JmsSender implements MarketDataSender {
     LiveDataValueUpdateBean liveDataValueUpdateBean = new LiveDataValueUpdateBean(
         _lastSequenceNumber, 
         _distributor.getDistributionSpec().getFullyQualifiedLiveDataSpecification(), 
-        _cumulativeDelta.getLastKnownValues());
+        _cumulativeDelta.getLastKnownValues(),
+        _originTime);
     s_logger.debug("{}: Sending Live Data update {}", this, liveDataValueUpdateBean);
     
-    FudgeMsg fudgeMsg = liveDataValueUpdateBean.toFudgeMsg(_fudgeContext);
     String destinationName = distributionSpec.getJmsTopic();
-    final byte[] bytes = _fudgeContext.toByteArray(fudgeMsg);
+    final byte[] bytes;
+    if (_compactTickEncoder != null) {
+      bytes = _compactTickEncoder.encode(liveDataValueUpdateBean);
+    } else {
+      FudgeMsg fudgeMsg = liveDataValueUpdateBean.toFudgeMsg(_fudgeContext);
+      bytes = _fudgeContext.toByteArray(fudgeMsg);
+    }
     
-    _jmsTemplate.send(destinationName, new MessageCreator() {
-      @Override
-      public Message createMessage(Session session) throws JMSException {
-        // TODO kirk 2009-10-30 -- We want to put stuff in the properties as well I think.
-        BytesMessage bytesMessage = session.createBytesMessage();
-        bytesMessage.writeBytes(bytes);
-        return bytesMessage;
+    try {
+      _jmsTemplate.send(destinationName, new MessageCreator() {
+        @Override
+        public Message createMessage(Session session) throws JMSException {
+          // TODO kirk 2009-10-30 -- We want to put stuff in the properties as well I think.
+          BytesMessage bytesMessage = session.createBytesMessage();
+          bytesMessage.writeBytes(bytes);
+          return bytesMessage;
+        }
+      });
+    } catch (RuntimeException e) {
+      if (_compactTickEncoder != null) {
+        // Receivers missed the frame the encoder has already accounted for
+        _compactTickEncoder.requestKeyFrame();
       }
-    });
+      throw e;
+    }
     
     _cumulativeDelta.clear();
+    _originTime = 0;
   }
   
   public boolean isInterrupted() {
@@ -122,6 +163,10 @@ public class JmsSender implements MarketDataSender {
    */
   public void transportResumed() {
     s_logger.info("Transport resumed {}", this);
+    if (_compactTickEncoder != null) {
+      // Receivers may have missed frames during failover
+      _compactTickEncoder.requestKeyFrame();
+    }
     _interrupted = false;
     // tryAcquire() is used to avoid re-entry to the send method if a sendMarketData is already
     // active as that will hold the semaphore.
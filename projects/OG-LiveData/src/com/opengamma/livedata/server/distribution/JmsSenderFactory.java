@@ -18,6 +18,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jms.core.JmsTemplate;
 
+import com.opengamma.livedata.CompactTickFormat;
+
 /**
  * Creates {@link JmsSender}'s.
  */
@@ -34,6 +36,8 @@ public class JmsSenderFactory implements MarketDataSenderFactory {
   private JmsTemplate _jmsTemplate;
   
   private final ExecutorService _executor;
+  
+  private volatile boolean _compactEncoding;
 
   public JmsSenderFactory() {
     final int threads = Math.max(Runtime.getRuntime().availableProcessors(), 1) * 2;
@@ -58,6 +62,23 @@ public class JmsSenderFactory implements MarketDataSenderFactory {
     _jmsTemplate = jmsTemplate;
   }
   
+  /**
+   * @return whether senders use the {@link CompactTickFormat compact} encoding
+   */
+  public boolean isCompactEncoding() {
+    return _compactEncoding;
+  }
+  
+  /**
+   * Sets whether senders created from now on use the {@link CompactTickFormat compact}
+   * encoding rather than full Fudge messages. Clients decode either.
+   * 
+   * @param compactEncoding whether to use the compact encoding
+   */
+  public void setCompactEncoding(boolean compactEncoding) {
+    _compactEncoding = compactEncoding;
+  }
+  
   public synchronized void transportInterrupted() {
     s_logger.warn("JMS transport interrupted; notifying {} senders", _allActiveSenders.size());
     for (final JmsSender sender : _allActiveSenders.keySet()) {
@@ -85,7 +106,7 @@ public class JmsSenderFactory implements MarketDataSenderFactory {
   @Override
   public synchronized Collection<MarketDataSender> create(MarketDataDistributor distributor) {
     s_logger.debug("Created JmsSender for {}", distributor);
-    JmsSender sender = new JmsSender(_jmsTemplate, distributor);
+    JmsSender sender = new JmsSender(_jmsTemplate, distributor, isCompactEncoding());
     _allActiveSenders.put(sender, new Object());
     return Collections.<MarketDataSender>singleton(sender);
   }
@@ -0,0 +1,19 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+/**
+ * A {@link MarketDataSender} whose receivers can only start decoding its updates at a key frame,
+ * for example one sending {@link com.opengamma.livedata.CompactTickFormat compact} frames.
+ */
+public interface KeyFrameSender extends MarketDataSender {
+
+  /**
+   * Makes the next update sent a key frame, for example because a receiver has just joined.
+   */
+  void requestKeyFrame();
+
+}
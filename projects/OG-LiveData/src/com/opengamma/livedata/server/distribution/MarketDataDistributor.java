@@ -45,14 +45,19 @@ public class MarketDataDistributor {
    * because the last message might not have included all the fields.
    * Instead, because the last value of ALL fields is stored,
    * this store provides a current snapshot of the entire state of the 
-   * market data line.   
+   * market data line.
+   * <p>
+   * The message is never modified once published; each update copies
+   * it, so readers take a consistent snapshot without locking.
    */
-  private FieldHistoryStore _lastKnownValues;
+  private volatile FudgeMsg _lastKnownValues;
   
   /** 
    * A history store to be used by the FieldHistoryUpdater normalization rule.
    * Fields stored in this history could either be completely unnormalized, 
-   * partially normalized, or fully normalized.   
+   * partially normalized, or fully normalized.
+   * <p>
+   * Only accessed by the thread distributing the subscription's data.
    */
   private final FieldHistoryStore _history = new FieldHistoryStore();
   
@@ -68,7 +73,7 @@ public class MarketDataDistributor {
    * False = a non-persistent distributor. Will die if the server is
    * restarted.
    */
-  private boolean _persistent; // = false;
+  private volatile boolean _persistent; // = false;
   
   /** 
    * When this distributor should stop distributing
@@ -78,7 +83,7 @@ public class MarketDataDistributor {
    * <p>
    * Null means the distributor should not expire.
    */
-  private Long _expiry;
+  private volatile Long _expiry;
   
   
   /**
@@ -109,28 +114,26 @@ public class MarketDataDistributor {
     return _distributionSpec;
   }
 
-  private synchronized FudgeMsg getLastKnownValues() {
-    if (_lastKnownValues == null) {
-      return null;
-    }
-    return _lastKnownValues.getLastKnownValues();
+  private FudgeMsg getLastKnownValues() {
+    return _lastKnownValues;
   }
   
-  private synchronized void updateLastKnownValues(FudgeMsg lastKnownValue) {
-    if (_lastKnownValues == null) {
-      _lastKnownValues = new FieldHistoryStore();
-    }
-    _lastKnownValues.liveDataReceived(lastKnownValue);
+  private void updateLastKnownValues(FudgeMsg lastKnownValue) {
+    final FudgeMsg previous = _lastKnownValues;
+    final FieldHistoryStore store = (previous == null) ? new FieldHistoryStore() : new FieldHistoryStore(previous);
+    store.liveDataReceived(lastKnownValue);
+    _lastKnownValues = store.getLastKnownValues();
   }
 
   public LiveDataValueUpdateBean getSnapshot() {
-    if (getLastKnownValues() == null) {
+    final FudgeMsg lastKnownValues = getLastKnownValues();
+    if (lastKnownValues == null) {
       return null;
     }
     return new LiveDataValueUpdateBean(
         getNumMessagesSent(), // 0-based as it should be 
         getDistributionSpec().getFullyQualifiedLiveDataSpecification(), 
-        getLastKnownValues());
+        lastKnownValues);
   }
   
   
@@ -154,24 +157,54 @@ public class MarketDataDistributor {
   
   /**
    * Updates field history without sending any market data to field receivers. 
+   * <p>
+   * Must not be called concurrently with itself or {@link #distributeLiveData}.
    * 
    * @param msg Unnormalized market data from underlying market data API.
    */
-  public synchronized void updateFieldHistory(FudgeMsg msg) {
+  public void updateFieldHistory(FudgeMsg msg) {
     FudgeMsg normalizedMsg = normalize(msg);
     if (normalizedMsg != null) {
       updateLastKnownValues(normalizedMsg);
     }
   }
   
+  /**
+   * Restores last known values recovered from before a restart, for example from a
+   * {@link com.opengamma.livedata.journal.TickJournal}, so that snapshots can be served
+   * before the first update arrives. 
+   * 
+   * @param normalizedMsg Fully normalized market data.
+   */
+  /*package*/ void restoreLastKnownValues(FudgeMsg normalizedMsg) {
+    updateLastKnownValues(normalizedMsg);
+  }
+  
   /**
    * Sends normalized market data to field receivers. 
    * <p>
-   * Serialized to ensure a well-defined distribution order for this topic.
+   * The owning {@link Subscription} serializes calls to ensure a well-defined
+   * distribution order for this topic, so there is no lock here for readers
+   * of the snapshot or the expiry to contend on. Must not be called concurrently
+   * with itself or {@link #updateFieldHistory}.
+   * 
+   * @param liveDataFields Unnormalized market data from underlying market data API.
+   */
+  public void distributeLiveData(FudgeMsg liveDataFields) {
+    distributeLiveData(liveDataFields, 0);
+  }
+  
+  /**
+   * Sends normalized market data to field receivers, stamped with the time the tick was received
+   * so that the latency of its distribution and of anything calculated from it can be measured.
+   * <p>
+   * Must not be called concurrently with itself or {@link #updateFieldHistory}.
    * 
    * @param liveDataFields Unnormalized market data from underlying market data API.
+   * @param originTime Time the tick was received from the underlying market data API, as given by
+   * {@link com.opengamma.util.monitor.LatencyClock}, or 0 if not known.
    */
-  public synchronized void distributeLiveData(FudgeMsg liveDataFields) {
+  public void distributeLiveData(FudgeMsg liveDataFields, long originTime) {
     FudgeMsg normalizedMsg;
     try {
       normalizedMsg = normalize(liveDataFields);
@@ -186,7 +219,8 @@ public class MarketDataDistributor {
       LiveDataValueUpdateBean data = new LiveDataValueUpdateBean(
           getNumMessagesSent(), // 0-based as it should be
           getDistributionSpec().getFullyQualifiedLiveDataSpecification(),
-          normalizedMsg);
+          normalizedMsg,
+          originTime);
       
       s_logger.debug("{}: Sending Live Data update {}", this, data);
       
@@ -205,11 +239,23 @@ public class MarketDataDistributor {
     }
   }
   
+  /**
+   * Makes the next update sent by each {@link KeyFrameSender} a key frame, so that a receiver
+   * that has just joined can decode it.
+   */
+  public void requestKeyFrame() {
+    for (MarketDataSender sender : _marketDataSenders) {
+      if (sender instanceof KeyFrameSender) {
+        ((KeyFrameSender) sender).requestKeyFrame();
+      }
+    }
+  }
+  
   /**
    * @return Milliseconds from UTC epoch, or null if 
    * the distributor never expires.
    */
-  public synchronized Long getExpiry() {
+  public Long getExpiry() {
     return _expiry;
   }
   
@@ -217,15 +263,15 @@ public class MarketDataDistributor {
    * @param expiry Milliseconds from UTC epoch, or null if 
    * the distributor never expires.
    */
-  public synchronized void setExpiry(Long expiry) {
+  public void setExpiry(Long expiry) {
     _expiry = expiry;
   }
   
-  public synchronized void extendExpiry(long timeoutExtensionMillis) {
+  public void extendExpiry(long timeoutExtensionMillis) {
     setExpiry(System.currentTimeMillis() + timeoutExtensionMillis);
   }
   
-  public synchronized void setPersistent(boolean persistent) {
+  public void setPersistent(boolean persistent) {
     _persistent = persistent;
   }
 
@@ -236,18 +282,19 @@ public class MarketDataDistributor {
    * False = a non-persistent distributor. Will die if the server is
    * restarted.
    */
-  public synchronized boolean isPersistent() {
+  public boolean isPersistent() {
     return _persistent;
   }
   
-  public synchronized boolean hasExpired() {
+  public boolean hasExpired() {
     if (isPersistent()) {
       return false;      
     }
-    if (getExpiry() == null) {
+    final Long expiry = getExpiry();
+    if (expiry == null) {
       return false;
     }
-    return getExpiry() < System.currentTimeMillis();
+    return expiry < System.currentTimeMillis();
   }
   
   public LiveDataSpecification getFullyQualifiedLiveDataSpecification() {
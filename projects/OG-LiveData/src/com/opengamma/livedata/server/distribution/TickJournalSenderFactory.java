@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.journal.TickJournal;
+import com.opengamma.livedata.journal.TickJournalReader;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Decorates the senders created by another factory so that every normalized update
+ * is also recorded in a {@link TickJournal}.
+ * <p>
+ * Last known values recovered from the journal, see {@link TickJournalReader#recoverLastKnownValues()},
+ * can be given to the factory. They are restored into the distributor of each specification
+ * when it is first created, so that a restarted server can answer snapshots straight away.
+ */
+public class TickJournalSenderFactory implements MarketDataSenderFactory {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalSenderFactory.class);
+
+  private final MarketDataSenderFactory _underlying;
+  private final TickJournal _journal;
+  /** Removed once restored, so a distributor created later does not get stale values */
+  private final Map<LiveDataSpecification, FudgeMsg> _recoveredValues;
+
+  public TickJournalSenderFactory(MarketDataSenderFactory underlying, TickJournal journal) {
+    this(underlying, journal, Collections.<LiveDataSpecification, FudgeMsg>emptyMap());
+  }
+
+  /**
+   * @param underlying the factory creating the senders to clients, not null
+   * @param journal the journal to record updates in, not null
+   * @param recoveredValues the last known values to restore, keyed by fully qualified specification, not null
+   */
+  public TickJournalSenderFactory(MarketDataSenderFactory underlying, TickJournal journal, Map<LiveDataSpecification, FudgeMsg> recoveredValues) {
+    ArgumentChecker.notNull(underlying, "Underlying market data sender factory");
+    ArgumentChecker.notNull(journal, "Tick journal");
+    ArgumentChecker.notNull(recoveredValues, "Recovered values");
+    _underlying = underlying;
+    _journal = journal;
+    _recoveredValues = new ConcurrentHashMap<LiveDataSpecification, FudgeMsg>(recoveredValues);
+  }
+
+  public MarketDataSenderFactory getUnderlying() {
+    return _underlying;
+  }
+
+  public TickJournal getJournal() {
+    return _journal;
+  }
+
+  @Override
+  public Collection<MarketDataSender> create(MarketDataDistributor distributor) {
+    final FudgeMsg recovered = _recoveredValues.remove(distributor.getFullyQualifiedLiveDataSpecification());
+    if (recovered != null) {
+      s_logger.debug("Restoring last known values of {}", distributor);
+      distributor.restoreLastKnownValues(recovered);
+    }
+    final Collection<MarketDataSender> underlying = _underlying.create(distributor);
+    final Collection<MarketDataSender> senders = new ArrayList<MarketDataSender>(underlying.size() + 1);
+    senders.addAll(underlying);
+    senders.add(new TickJournalSender(distributor));
+    return senders;
+  }
+
+  /**
+   * Appends the updates of a distributor to the journal.
+   */
+  private final class TickJournalSender implements MarketDataSender {
+
+    private final MarketDataDistributor _distributor;
+
+    private TickJournalSender(MarketDataDistributor distributor) {
+      _distributor = distributor;
+    }
+
+    @Override
+    public MarketDataDistributor getDistributor() {
+      return _distributor;
+    }
+
+    @Override
+    public void sendMarketData(LiveDataValueUpdateBean data) {
+      _journal.append(data);
+    }
+
+    @Override
+    public String toString() {
+      return "TickJournalSender[" + _journal + "]";
+    }
+
+  }
+
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.client;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.test.CollectingLiveDataListener;
+
+/**
+ * Tests ConflatingLiveDataListener.
+ */
+public class ConflatingLiveDataListenerTest {
+
+  private static final LiveDataSpecification SPEC_A = new LiveDataSpecification("foo", ExternalId.of("bar", "A"));
+  private static final LiveDataSpecification SPEC_B = new LiveDataSpecification("foo", ExternalId.of("bar", "B"));
+
+  private ScheduledExecutorService _executor;
+
+  @BeforeMethod
+  public void setUp() {
+    _executor = new ScheduledThreadPoolExecutor(1);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    _executor.shutdownNow();
+  }
+
+  private static LiveDataValueUpdateBean update(LiveDataSpecification spec, long sequenceNumber, String field, double value) {
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add(field, value);
+    return new LiveDataValueUpdateBean(sequenceNumber, spec, msg);
+  }
+
+  @Test
+  public void deliversWhenIdle() {
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 1);
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor);
+    LiveDataValueUpdateBean update = update(SPEC_A, 0, "BID", 1.0);
+    listener.valueUpdate(update);
+    assertTrue(underlying.waitUntilEnoughUpdatesReceived(5000));
+    assertEquals(1, underlying.getValueUpdates().size());
+    assertEquals(update, underlying.getValueUpdates().get(0));
+  }
+
+  @Test
+  public void conflatesWhileBusy() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 3) {
+      @Override
+      public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+        if (blocked.getCount() > 0) {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.valueUpdate(valueUpdate);
+      }
+    };
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor);
+    listener.valueUpdate(update(SPEC_A, 0, "BID", 1.0));
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    for (int i = 1; i <= 100; i++) {
+      listener.valueUpdate(update(SPEC_A, i, "BID", 1.0 + i));
+      listener.valueUpdate(update(SPEC_A, i, "ASK", 2.0 + i));
+      listener.valueUpdate(update(SPEC_B, i, "BID", 3.0 + i));
+    }
+    assertEquals(2, listener.getQueueDepth());
+    release.countDown();
+    assertTrue(underlying.waitUntilEnoughUpdatesReceived(5000));
+
+    List<LiveDataValueUpdate> updates = underlying.getValueUpdates();
+    assertEquals(3, updates.size());
+    for (LiveDataValueUpdate update : updates) {
+      if (update.getSpecification().equals(SPEC_A) && update.getSequenceNumber() == 100) {
+        assertEquals(101.0, update.getFields().getDouble("BID"), 0.0);
+        assertEquals(102.0, update.getFields().getDouble("ASK"), 0.0);
+        assertEquals(2, update.getFields().getNumFields());
+      } else if (update.getSpecification().equals(SPEC_B)) {
+        assertEquals(100, update.getSequenceNumber());
+        assertEquals(103.0, update.getFields().getDouble("BID"), 0.0);
+      } else {
+        assertEquals(0, update.getSequenceNumber());
+      }
+    }
+    assertEquals(301, listener.getNumUpdatesReceived());
+    assertEquals(3, listener.getNumUpdatesDelivered());
+    assertEquals(0, listener.getQueueDepth());
+    assertTrue(listener.getConflationRatio() > 100.0);
+  }
+
+  @Test
+  public void stoppedSubscriptionDiscardsPending() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 2) {
+      @Override
+      public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+        if (blocked.getCount() > 0) {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.valueUpdate(valueUpdate);
+      }
+    };
+    final ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor);
+    listener.valueUpdate(update(SPEC_A, 0, "BID", 1.0));
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    listener.valueUpdate(update(SPEC_A, 1, "BID", 2.0));
+    listener.valueUpdate(update(SPEC_B, 1, "BID", 3.0));
+    // The stop waits for the update of A being delivered
+    Thread stopper = new Thread() {
+      @Override
+      public void run() {
+        listener.subscriptionStopped(SPEC_A);
+      }
+    };
+    stopper.start();
+    final long timeout = System.currentTimeMillis() + 5000;
+    while (listener.getQueueDepth() > 1 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(1);
+    }
+    assertEquals(1, listener.getQueueDepth());
+    assertTrue(underlying.getStoppedSubscriptions().isEmpty());
+    release.countDown();
+    stopper.join(5000);
+    assertTrue(underlying.waitUntilEnoughUpdatesReceived(5000));
+    _executor.shutdown();
+    assertTrue(_executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    List<LiveDataValueUpdate> updates = underlying.getValueUpdates();
+    assertEquals(2, updates.size());
+    for (LiveDataValueUpdate update : updates) {
+      if (update.getSpecification().equals(SPEC_A)) {
+        // Only the update delivered before the subscription stopped
+        assertEquals(0, update.getSequenceNumber());
+      } else {
+        assertEquals(SPEC_B, update.getSpecification());
+      }
+    }
+    assertEquals(1, underlying.getStoppedSubscriptions().size());
+  }
+
+  @Test
+  public void stoppedDuringDeliveryDiscardsInFlight() throws Exception {
+    final CountDownLatch gate = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 1) {
+      @Override
+      public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+        if (valueUpdate.getSpecification().equals(SPEC_A)) {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.valueUpdate(valueUpdate);
+      }
+    };
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor);
+    // Hold the executor so that both updates are delivered in the same pass
+    _executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    listener.valueUpdate(update(SPEC_A, 0, "BID", 1.0));
+    listener.valueUpdate(update(SPEC_B, 0, "BID", 2.0));
+    gate.countDown();
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    // B has been taken from the queue, but not yet delivered
+    assertEquals(0, listener.getQueueDepth());
+    listener.subscriptionStopped(SPEC_B);
+    release.countDown();
+    _executor.shutdown();
+    assertTrue(_executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    List<LiveDataValueUpdate> updates = underlying.getValueUpdates();
+    assertEquals(1, updates.size());
+    assertEquals(SPEC_A, updates.get(0).getSpecification());
+    assertEquals(1, underlying.getStoppedSubscriptions().size());
+  }
+
+  @Test
+  public void mergeKeepsRepeatedFields() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 2) {
+      @Override
+      public void valueUpdate(LiveDataValueUpdate valueUpdate) {
+        if (blocked.getCount() > 0) {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.valueUpdate(valueUpdate);
+      }
+    };
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor);
+    listener.valueUpdate(update(SPEC_A, 0, "BID", 1.0));
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    MutableFudgeMsg first = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    first.add("BID", 1.0);
+    first.add("TRADE", 10.0);
+    first.add("TRADE", 11.0);
+    listener.valueUpdate(new LiveDataValueUpdateBean(1, SPEC_A, first));
+    MutableFudgeMsg second = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    second.add("TRADE", 12.0);
+    second.add("TRADE", 13.0);
+    listener.valueUpdate(new LiveDataValueUpdateBean(2, SPEC_A, second));
+    release.countDown();
+    assertTrue(underlying.waitUntilEnoughUpdatesReceived(5000));
+
+    LiveDataValueUpdate merged = underlying.getValueUpdates().get(1);
+    assertEquals(2, merged.getSequenceNumber());
+    assertEquals(3, merged.getFields().getNumFields());
+    assertEquals(1.0, merged.getFields().getDouble("BID"), 0.0);
+    List<FudgeField> trades = merged.getFields().getAllByName("TRADE");
+    assertEquals(2, trades.size());
+    assertEquals(12.0, trades.get(0).getValue());
+    assertEquals(13.0, trades.get(1).getValue());
+  }
+
+  @Test
+  public void recoversFromRejectedDelivery() {
+    final AtomicBoolean reject = new AtomicBoolean(true);
+    _executor.shutdownNow();
+    _executor = new ScheduledThreadPoolExecutor(1) {
+      @Override
+      public void execute(Runnable command) {
+        if (reject.getAndSet(false)) {
+          throw new RejectedExecutionException();
+        }
+        super.execute(command);
+      }
+    };
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 1);
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor);
+    listener.valueUpdate(update(SPEC_A, 0, "BID", 1.0));
+    assertEquals(1, listener.getQueueDepth());
+    listener.valueUpdate(update(SPEC_A, 1, "BID", 2.0));
+    assertTrue(underlying.waitUntilEnoughUpdatesReceived(5000));
+    assertEquals(1, underlying.getValueUpdates().size());
+    assertEquals(1, underlying.getValueUpdates().get(0).getSequenceNumber());
+  }
+
+  @Test
+  public void rateLimited() throws Exception {
+    CollectingLiveDataListener underlying = new CollectingLiveDataListener(1, 2);
+    ConflatingLiveDataListener listener = new ConflatingLiveDataListener(underlying, _executor, 2.0);
+    listener.valueUpdate(update(SPEC_A, 0, "BID", 1.0));
+    final long start = System.nanoTime();
+    Thread.sleep(50);
+    for (int i = 1; i <= 10; i++) {
+      listener.valueUpdate(update(SPEC_A, i, "BID", 1.0 + i));
+    }
+    assertTrue(underlying.waitUntilEnoughUpdatesReceived(5000));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+    assertEquals(2, underlying.getValueUpdates().size());
+    assertEquals(10, underlying.getValueUpdates().get(1).getSequenceNumber());
+  }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
+import com.opengamma.livedata.test.CollectingLiveDataListener;
+
+/**
+ * Tests ReplayingLiveDataClient.
+ */
+public class ReplayingLiveDataClientTest {
+
+  @AfterClass
+  public static void deleteJournalDirs() {
+    TickJournalTest.deleteJournalDirs();
+  }
+
+  private static File record(String methodName) {
+    File dir = TickJournalTest.createJournalDir(methodName);
+    TickJournal journal = new TickJournal(dir);
+    LiveDataSpecification aapl = new LiveDataSpecification("OpenGamma",
+        ExternalId.of("BLOOMBERG_TICKER", "AAPL US Equity"), ExternalId.of("BLOOMBERG_BUID", "EQ0010169500001000"));
+    LiveDataSpecification msft = TickJournalTest.getSpecification("MSFT US Equity");
+    for (int i = 0; i < 5; i++) {
+      journal.append(TickJournalTest.getUpdate(i, aapl, "Bid", 100.0 + i), TickJournalTest.NOON + 100 * i);
+      journal.append(TickJournalTest.getUpdate(i, msft, "Bid", 20.0 + i), TickJournalTest.NOON + 100 * i + 50);
+    }
+    journal.close();
+    return dir;
+  }
+
+  @Test
+  public void replaysSubscribed() {
+    ReplayingLiveDataClient client = new ReplayingLiveDataClient(new TickJournalReader(record("replaysSubscribed")));
+    CollectingLiveDataListener listener = new CollectingLiveDataListener();
+    // Requested by one of the identifiers it was recorded with
+    LiveDataSpecification requested = TickJournalTest.getSpecification("AAPL US Equity");
+    client.subscribe(UserPrincipal.getTestUser(), requested, listener);
+    List<LiveDataSubscriptionResponse> responses = listener.getSubscriptionResponses();
+    assertEquals(1, responses.size());
+    assertEquals(LiveDataSubscriptionResult.SUCCESS, responses.get(0).getSubscriptionResult());
+
+    assertEquals(10, client.replay());
+    List<LiveDataValueUpdate> updates = listener.getValueUpdates();
+    assertEquals(5, updates.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(requested, updates.get(i).getSpecification());
+      assertEquals(100.0 + i, updates.get(i).getFields().getDouble("Bid"), 0.0);
+    }
+
+    // Deterministic
+    listener.clear();
+    client.replay();
+    assertEquals(updates.size(), listener.getValueUpdates().size());
+    for (int i = 0; i < updates.size(); i++) {
+      assertEquals(updates.get(i).getFields().getDouble("Bid"), listener.getValueUpdates().get(i).getFields().getDouble("Bid"));
+    }
+  }
+
+  @Test
+  public void snapshotOfReplayedValues() {
+    ReplayingLiveDataClient client = new ReplayingLiveDataClient(new TickJournalReader(record("snapshotOfReplayedValues")));
+    LiveDataSpecification msft = TickJournalTest.getSpecification("MSFT US Equity");
+    LiveDataSubscriptionResponse response = client.snapshot(UserPrincipal.getTestUser(), msft, 1000);
+    assertEquals(LiveDataSubscriptionResult.NOT_PRESENT, response.getSubscriptionResult());
+    client.replay();
+    response = client.snapshot(UserPrincipal.getTestUser(), msft, 1000);
+    assertEquals(LiveDataSubscriptionResult.SUCCESS, response.getSubscriptionResult());
+    assertEquals(24.0, response.getSnapshot().getFields().getDouble("Bid"), 0.0);
+  }
+
+  @Test
+  public void pacedReplay() {
+    ReplayingLiveDataClient client = new ReplayingLiveDataClient(new TickJournalReader(record("pacedReplay")));
+    long start = System.nanoTime();
+    // 450ms recorded, at 10x
+    assertEquals(10, client.replay(10));
+    long elapsedMillis = (System.nanoTime() - start) / 1000000;
+    assertTrue(elapsedMillis >= 45);
+  }
+
+}
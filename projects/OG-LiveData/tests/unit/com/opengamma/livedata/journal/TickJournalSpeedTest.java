@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Measures the rate updates can be written to and replayed from a tick journal.
+ */
+public class TickJournalSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int TICKS = 10000;
+  private static final int SPECIFICATIONS = 100;
+
+  @AfterClass
+  public static void deleteJournalDirs() {
+    TickJournalTest.deleteJournalDirs();
+  }
+
+  @Test
+  public void testWriteAndReplayRate() throws IOException {
+    final LiveDataValueUpdateBean[] updates = new LiveDataValueUpdateBean[SPECIFICATIONS];
+    for (int i = 0; i < updates.length; i++) {
+      final LiveDataSpecification spec = TickJournalTest.getSpecification("TICKER" + i + " Equity");
+      final MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+      msg.add("Bid", 100.0 + i);
+      msg.add("Ask", 100.5 + i);
+      msg.add("Last", 100.25 + i);
+      msg.add("Volume", 1000.0 * i);
+      updates[i] = new LiveDataValueUpdateBean(i, spec, msg);
+    }
+    for (int i = 0; i < HOTSPOT_WARMUP_CYCLES + BENCHMARK_CYCLES; i++) {
+      final File dir = TickJournalTest.createJournalDir("testWriteAndReplayRate" + i);
+      write(dir, updates);
+      read(dir);
+      replay(dir);
+    }
+  }
+
+  private static void write(final File dir, final LiveDataValueUpdateBean[] updates) throws IOException {
+    final TickJournal journal = new TickJournal(dir);
+    final OperationTimer timer = new OperationTimer(s_logger, "Writing {} ticks", TICKS);
+    final long start = System.nanoTime();
+    for (int i = 0; i < TICKS; i++) {
+      journal.append(updates[i % updates.length], TickJournalTest.NOON + i);
+    }
+    final long nanos = System.nanoTime() - start;
+    timer.finished();
+    journal.close();
+    long bytes = 0;
+    for (File file : new TickJournalReader(dir).getFiles()) {
+      // The files are longer, up to the end of the last region mapped
+      final RandomAccessFile raf = new RandomAccessFile(file, "r");
+      bytes += TickJournal.scan(raf.getChannel())[0];
+      raf.close();
+    }
+    s_logger.info("Write: {} ticks/s, {} bytes/tick", (long) (TICKS * 1e9 / nanos), bytes / TICKS);
+  }
+
+  private static void read(final File dir) {
+    final OperationTimer timer = new OperationTimer(s_logger, "Reading {} ticks", TICKS);
+    final long start = System.nanoTime();
+    long count = 0;
+    final Iterator<TickJournalEntry> entries = new TickJournalReader(dir).iterator();
+    while (entries.hasNext()) {
+      entries.next();
+      count++;
+    }
+    final long nanos = System.nanoTime() - start;
+    timer.finished();
+    s_logger.info("Read: {} ticks/s over {} ticks", (long) (count * 1e9 / nanos), count);
+  }
+
+  private static void replay(final File dir) {
+    final ReplayingLiveDataClient client = new ReplayingLiveDataClient(new TickJournalReader(dir));
+    final OperationTimer timer = new OperationTimer(s_logger, "Replaying {} ticks", TICKS);
+    final long start = System.nanoTime();
+    final long count = client.replay();
+    final long nanos = System.nanoTime() - start;
+    timer.finished();
+    s_logger.info("Replay: {} ticks/s over {} ticks", (long) (count * 1e9 / nanos), count);
+    client.close();
+  }
+
+}
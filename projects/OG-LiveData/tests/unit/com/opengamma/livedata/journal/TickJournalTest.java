@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.journal;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+
+/**
+ * Tests TickJournal and TickJournalReader.
+ */
+public class TickJournalTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalTest.class);
+
+  /** 2011-06-01T12:00Z */
+  public static final long NOON = 1306929600000L;
+  private static final long DAY = 24L * 60L * 60L * 1000L;
+  /** Small enough that records span regions */
+  private static final int REGION_SIZE = 256;
+
+  private static Set<File> s_dirsToDelete = new HashSet<File>();
+
+  public static File createJournalDir(String methodName) {
+    File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+    File journalDir = new File(tmpDir, "TickJournal-" + System.currentTimeMillis() + "-" + methodName);
+    s_dirsToDelete.add(journalDir);
+    return journalDir;
+  }
+
+  @AfterClass
+  public static void deleteJournalDirs() {
+    for (File f : s_dirsToDelete) {
+      try {
+        s_logger.info("Deleting temp directory {}", f);
+        FileUtils.deleteDirectory(f);
+      } catch (IOException ioe) {
+        s_logger.warn("Unable to recursively delete directory {}", f);
+      }
+    }
+  }
+
+  public static LiveDataSpecification getSpecification(String ticker) {
+    return new LiveDataSpecification("OpenGamma", ExternalId.of("BLOOMBERG_TICKER", ticker));
+  }
+
+  public static LiveDataValueUpdateBean getUpdate(long sequenceNumber, LiveDataSpecification spec, String field, double value) {
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add(field, value);
+    return new LiveDataValueUpdateBean(sequenceNumber, spec, msg);
+  }
+
+  private static TickJournal createJournal(File dir) {
+    return new TickJournal(dir, TickJournal.DEFAULT_NAME, FudgeContext.GLOBAL_DEFAULT, REGION_SIZE);
+  }
+
+  private static TickJournalReader createReader(File dir) {
+    return new TickJournalReader(dir, TickJournal.DEFAULT_NAME, FudgeContext.GLOBAL_DEFAULT, REGION_SIZE);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void appendAndRead() {
+    File dir = createJournalDir("appendAndRead");
+    TickJournal journal = createJournal(dir);
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, journal.append(getUpdate(i, spec, "Bid", 100.0 + i), NOON + i));
+    }
+    assertEquals(100, journal.getNumTicksWritten());
+
+    // Readable while the journal is still open
+    int count = 0;
+    for (TickJournalEntry entry : createReader(dir)) {
+      assertEquals(count, entry.getJournalSequenceNumber());
+      assertEquals(NOON + count, entry.getTimestamp());
+      assertEquals(count, entry.getUpdate().getSequenceNumber());
+      assertEquals(spec, entry.getUpdate().getSpecification());
+      assertEquals(100.0 + count, entry.getUpdate().getFields().getDouble("Bid"), 0.0);
+      count++;
+    }
+    assertEquals(100, count);
+    journal.close();
+  }
+
+  @Test
+  public void rollsDaily() {
+    File dir = createJournalDir("rollsDaily");
+    TickJournal journal = createJournal(dir);
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    journal.append(getUpdate(0, spec, "Bid", 1.0), NOON);
+    journal.append(getUpdate(1, spec, "Bid", 2.0), NOON + DAY);
+    // Late, but does not roll back
+    journal.append(getUpdate(2, spec, "Bid", 3.0), NOON);
+    journal.append(getUpdate(3, spec, "Bid", 4.0), NOON + 2 * DAY);
+    journal.close();
+
+    List<File> files = createReader(dir).getFiles();
+    assertEquals(3, files.size());
+    assertEquals("ticks-20110601.journal", files.get(0).getName());
+    assertEquals("ticks-20110602.journal", files.get(1).getName());
+    assertEquals("ticks-20110603.journal", files.get(2).getName());
+    Iterator<TickJournalEntry> entries = createReader(dir).iterator(files.subList(1, 2));
+    assertEquals(2.0, entries.next().getUpdate().getFields().getDouble("Bid"), 0.0);
+    assertEquals(3.0, entries.next().getUpdate().getFields().getDouble("Bid"), 0.0);
+    assertFalse(entries.hasNext());
+  }
+
+  @Test
+  public void reopenContinues() throws Exception {
+    File dir = createJournalDir("reopenContinues");
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    TickJournal journal = createJournal(dir);
+    for (int i = 0; i < 10; i++) {
+      journal.append(getUpdate(i, spec, "Bid", i), NOON);
+    }
+    journal.close();
+
+    // A record cut short by a crash, its header written but only part of the update
+    File file = createReader(dir).getFiles().get(0);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    long end = TickJournal.scan(raf.getChannel())[0];
+    raf.seek(end);
+    raf.writeInt(100);
+    raf.writeInt(0);
+    raf.writeLong(99);
+    raf.writeLong(NOON);
+    raf.write(new byte[10]);
+    raf.setLength(raf.getFilePointer());
+    raf.close();
+    assertEquals(end, TickJournal.scan(new RandomAccessFile(file, "r").getChannel())[0]);
+
+    journal = createJournal(dir);
+    assertEquals(10, journal.getNextSequenceNumber());
+    assertEquals(10, journal.append(getUpdate(10, spec, "Bid", 10), NOON + 1));
+    journal.close();
+
+    long expected = 0;
+    for (TickJournalEntry entry : createReader(dir)) {
+      assertEquals(expected++, entry.getJournalSequenceNumber());
+    }
+    assertEquals(11, expected);
+  }
+
+  @Test
+  public void corruptRecordEndsData() throws Exception {
+    File dir = createJournalDir("corruptRecordEndsData");
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    TickJournal journal = createJournal(dir);
+    for (int i = 0; i < 10; i++) {
+      journal.append(getUpdate(i, spec, "Bid", i), NOON);
+    }
+    journal.close();
+
+    // The length of the 6th record reached the disk but not its content
+    File file = createReader(dir).getFiles().get(0);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    long recordSize = TickJournal.scan(raf.getChannel())[0] / 10;
+    raf.seek(5 * recordSize + TickJournal.RECORD_HEADER_SIZE);
+    raf.write(new byte[(int) recordSize - TickJournal.RECORD_HEADER_SIZE]);
+    assertEquals(4, TickJournal.scan(raf.getChannel())[1]);
+    raf.close();
+
+    long expected = 0;
+    for (TickJournalEntry entry : createReader(dir)) {
+      assertEquals(expected++, entry.getJournalSequenceNumber());
+    }
+    assertEquals(5, expected);
+
+    // Reopening discards everything from the corrupt record on
+    journal = createJournal(dir);
+    assertEquals(5, journal.getNextSequenceNumber());
+    journal.close();
+  }
+
+  @Test
+  public void recoverLastKnownValues() {
+    File dir = createJournalDir("recoverLastKnownValues");
+    LiveDataSpecification aapl = getSpecification("AAPL US Equity");
+    LiveDataSpecification msft = getSpecification("MSFT US Equity");
+    TickJournal journal = createJournal(dir);
+    journal.append(getUpdate(0, aapl, "Ask", 1.0), NOON - DAY);
+    journal.append(getUpdate(0, aapl, "Bid", 2.0), NOON);
+    journal.append(getUpdate(0, msft, "Bid", 3.0), NOON);
+    journal.append(getUpdate(1, aapl, "Bid", 4.0), NOON);
+    journal.close();
+
+    Map<LiveDataSpecification, FudgeMsg> lastKnownValues = createReader(dir).recoverLastKnownValues(1);
+    assertEquals(2, lastKnownValues.size());
+    assertEquals(1, lastKnownValues.get(aapl).getNumFields());
+    assertEquals(4.0, lastKnownValues.get(aapl).getDouble("Bid"), 0.0);
+    assertEquals(3.0, lastKnownValues.get(msft).getDouble("Bid"), 0.0);
+
+    // The default reaches back to the previous day
+    lastKnownValues = createReader(dir).recoverLastKnownValues();
+    assertEquals(2, lastKnownValues.get(aapl).getNumFields());
+    assertEquals(1.0, lastKnownValues.get(aapl).getDouble("Ask"), 0.0);
+  }
+
+  @Test
+  public void emptyJournal() {
+    File dir = createJournalDir("emptyJournal");
+    TickJournal journal = createJournal(dir);
+    assertTrue(dir.isDirectory());
+    assertEquals(0, journal.getNextSequenceNumber());
+    assertFalse(createReader(dir).iterator().hasNext());
+    assertTrue(createReader(dir).recoverLastKnownValues().isEmpty());
+    journal.close();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void appendAfterClose() {
+    TickJournal journal = createJournal(createJournalDir("appendAfterClose"));
+    journal.close();
+    journal.append(getUpdate(0, getSpecification("AAPL US Equity"), "Bid", 1.0));
+  }
+
+}
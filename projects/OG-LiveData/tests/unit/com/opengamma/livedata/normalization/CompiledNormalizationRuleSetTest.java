@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.normalization;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.livedata.server.FieldHistoryStore;
+
+/**
+ * Tests CompiledNormalizationRuleSet against applying the rules one at a time.
+ */
+public class CompiledNormalizationRuleSetTest {
+
+  /**
+   * A rule set in the style of the OpenGamma normalization of a vendor feed.
+   */
+  public static List<NormalizationRule> getOpenGammaStyleRules() {
+    return Arrays.<NormalizationRule>asList(
+        new FieldFilter("BID", "ASK", "LAST_PRICE", "VOLUME", "OPT_IMPLIED_VOLATILITY_MID", "YLD_CNV_MID"),
+        new FieldNameChange("BID", MarketDataRequirementNames.BID),
+        new FieldNameChange("ASK", MarketDataRequirementNames.ASK),
+        new FieldNameChange("LAST_PRICE", MarketDataRequirementNames.LAST),
+        new FieldNameChange("VOLUME", MarketDataRequirementNames.VOLUME),
+        new FieldNameChange("OPT_IMPLIED_VOLATILITY_MID", MarketDataRequirementNames.MID_IMPLIED_VOLATILITY),
+        new FieldNameChange("YLD_CNV_MID", MarketDataRequirementNames.YIELD_CONVENTION_MID),
+        new UnitChange(MarketDataRequirementNames.MID_IMPLIED_VOLATILITY, 0.01),
+        new UnitChange(MarketDataRequirementNames.YIELD_CONVENTION_MID, 0.01),
+        new MarketValueCalculator(),
+        new ImpliedVolatilityCalculator(),
+        new FieldHistoryUpdater());
+  }
+
+  public static MutableFudgeMsg getTick(int i) {
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("BID", 100.0 + i);
+    msg.add("ASK", 100.5 + i);
+    if (i % 2 == 0) {
+      msg.add("LAST_PRICE", 100.25 + i);
+      msg.add("VOLUME", 1000.0 * i);
+    }
+    if (i % 3 == 0) {
+      msg.add("OPT_IMPLIED_VOLATILITY_MID", 25.0);
+    }
+    msg.add("TIME", "12:00:0" + (i % 10));
+    msg.add("EXCH_CODE", "LN");
+    return msg;
+  }
+
+  /**
+   * Applies the rules one at a time, as the rule set did before it was compiled.
+   */
+  public static FudgeMsg applyRuleByRule(List<NormalizationRule> rules, FudgeMsg msg, FieldHistoryStore fieldHistory) {
+    MutableFudgeMsg normalizedMsg = FudgeContext.GLOBAL_DEFAULT.newMessage(msg);
+    for (NormalizationRule rule : rules) {
+      normalizedMsg = rule.apply(normalizedMsg, fieldHistory);
+      if (normalizedMsg == null) {
+        break;
+      }
+    }
+    return normalizedMsg;
+  }
+
+  private static Map<String, Object> toMap(FudgeMsg msg) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    for (FudgeField field : msg) {
+      map.put(field.getName(), field.getValue());
+    }
+    assertEquals(msg.getNumFields(), map.size());
+    return map;
+  }
+
+  @Test
+  public void sameAsRuleByRule() {
+    List<NormalizationRule> rules = getOpenGammaStyleRules();
+    CompiledNormalizationRuleSet compiled = new CompiledNormalizationRuleSet(rules);
+    FieldHistoryStore expectedHistory = new FieldHistoryStore();
+    FieldHistoryStore actualHistory = new FieldHistoryStore();
+    for (int i = 0; i < 20; i++) {
+      FudgeMsg tick = getTick(i);
+      FudgeMsg expected = applyRuleByRule(rules, tick, expectedHistory);
+      FudgeMsg actual = compiled.getNormalizedMessage(tick, actualHistory);
+      assertNotNull(actual);
+      assertEquals(toMap(expected), toMap(actual));
+      assertEquals(toMap(expectedHistory.getLastKnownValues()), toMap(actualHistory.getLastKnownValues()));
+    }
+  }
+
+  @Test
+  public void unitChangeAfterRename() {
+    CompiledNormalizationRuleSet compiled = new CompiledNormalizationRuleSet(Arrays.<NormalizationRule>asList(
+        new FieldNameChange("Foo", "Bar"),
+        new UnitChange("Bar", 10),
+        new UnitChange("Bar", 10)));
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("Foo", 2);
+    msg.add("Baz", "2");
+    FudgeMsg normalized = compiled.getNormalizedMessage(msg, new FieldHistoryStore());
+    assertEquals(2, normalized.getNumFields());
+    assertEquals(200.0, normalized.getDouble("Bar"), 0.0001);
+    assertEquals("2", normalized.getString("Baz"));
+  }
+
+  @Test
+  public void filterExtinguishesMessage() {
+    CompiledNormalizationRuleSet compiled = new CompiledNormalizationRuleSet(Arrays.<NormalizationRule>asList(
+        new FieldNameChange("Foo", "Bar"),
+        new FieldFilter("Foo")));
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("Foo", 2.0);
+    assertNull(compiled.getNormalizedMessage(msg, new FieldHistoryStore()));
+  }
+
+  @Test
+  public void ruleRejectsMessage() {
+    CompiledNormalizationRuleSet compiled = new CompiledNormalizationRuleSet(Arrays.<NormalizationRule>asList(
+        new FieldFilter("Bar", "Baz"),
+        new RequiredFieldFilter("Foo"),
+        new FieldNameChange("Bar", "Foo")));
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("Bar", 2.0);
+    assertNull(compiled.getNormalizedMessage(msg, new FieldHistoryStore()));
+  }
+
+  @Test
+  public void noRules() {
+    CompiledNormalizationRuleSet compiled = new CompiledNormalizationRuleSet(Collections.<NormalizationRule>emptyList());
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("Foo", 2.0);
+    FudgeMsg normalized = compiled.getNormalizedMessage(msg, new FieldHistoryStore());
+    assertEquals(toMap(msg), toMap(normalized));
+  }
+
+}
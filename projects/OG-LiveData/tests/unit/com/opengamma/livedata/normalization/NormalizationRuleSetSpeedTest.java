@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.normalization;
+
+import java.util.List;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.livedata.server.FieldHistoryStore;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Compares the tick rate of normalizing rule by rule with the compiled form, for the standard
+ * no normalization rule set and an OpenGamma style rule set.
+ */
+public class NormalizationRuleSetSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(NormalizationRuleSetSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int TICKS = 1000000;
+  private static final int DISTINCT_TICKS = 64;
+
+  @Test
+  public void testTickRate() {
+    test("No Normalization", StandardRules.getNoNormalization().getRules());
+    test("OpenGamma style", CompiledNormalizationRuleSetTest.getOpenGammaStyleRules());
+  }
+
+  private void test(final String name, final List<NormalizationRule> rules) {
+    final FudgeMsg[] ticks = new FudgeMsg[DISTINCT_TICKS];
+    for (int i = 0; i < ticks.length; i++) {
+      ticks[i] = CompiledNormalizationRuleSetTest.getTick(i);
+    }
+    final CompiledNormalizationRuleSet compiled = new CompiledNormalizationRuleSet(rules);
+    for (int i = 0; i < HOTSPOT_WARMUP_CYCLES; i++) {
+      ruleByRule(rules, ticks);
+      compiled(compiled, ticks);
+    }
+    for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+      long start = System.nanoTime();
+      ruleByRule(rules, ticks);
+      s_logger.info("{} rule by rule: {} ticks/s", name, (long) (TICKS * 1e9 / (System.nanoTime() - start)));
+      start = System.nanoTime();
+      compiled(compiled, ticks);
+      s_logger.info("{} compiled: {} ticks/s", name, (long) (TICKS * 1e9 / (System.nanoTime() - start)));
+    }
+  }
+
+  private static int ruleByRule(final List<NormalizationRule> rules, final FudgeMsg[] ticks) {
+    final FieldHistoryStore history = new FieldHistoryStore();
+    final OperationTimer timer = new OperationTimer(s_logger, "Normalizing {} ticks rule by rule", TICKS);
+    int fields = 0;
+    for (int i = 0; i < TICKS; i++) {
+      final FudgeMsg normalized = CompiledNormalizationRuleSetTest.applyRuleByRule(rules, ticks[i % ticks.length], history);
+      fields += normalized.getNumFields();
+    }
+    timer.finished();
+    return fields;
+  }
+
+  private static int compiled(final CompiledNormalizationRuleSet compiled, final FudgeMsg[] ticks) {
+    final FieldHistoryStore history = new FieldHistoryStore();
+    final OperationTimer timer = new OperationTimer(s_logger, "Normalizing {} ticks compiled", TICKS);
+    int fields = 0;
+    for (int i = 0; i < TICKS; i++) {
+      final FudgeMsg normalized = compiled.getNormalizedMessage(ticks[i % ticks.length], history);
+      fields += normalized.getNumFields();
+    }
+    timer.finished();
+    return fields;
+  }
+
+}
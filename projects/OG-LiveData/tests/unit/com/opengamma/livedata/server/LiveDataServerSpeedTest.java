@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.server.distribution.MarketDataDistributor;
+import com.opengamma.livedata.server.distribution.MarketDataSender;
+import com.opengamma.livedata.server.distribution.MarketDataSenderFactory;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Measures the tick throughput and tick-to-send latency of a live data server fed by several
+ * threads, distributing inline on the feed threads and through a {@link ShardedLiveDataDispatcher}.
+ */
+public class LiveDataServerSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(LiveDataServerSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int SECURITIES = 2000;
+  private static final int FEED_THREADS = 4;
+  private static final int TICKS_PER_THREAD = 50000;
+  private static final int SHARDS = 4;
+
+  @Test
+  public void testTickThroughput() throws Exception {
+    for (int i = 0; i < HOTSPOT_WARMUP_CYCLES; i++) {
+      run(null);
+      run(new ShardedLiveDataDispatcher(SHARDS, ShardedLiveDataDispatcher.DEFAULT_CAPACITY_PER_SHARD));
+    }
+    for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+      report("Inline", run(null));
+      report("Sharded", run(new ShardedLiveDataDispatcher(SHARDS, ShardedLiveDataDispatcher.DEFAULT_CAPACITY_PER_SHARD)));
+    }
+  }
+
+  private static void report(final String mode, final long[] result) {
+    final long elapsedNanos = result[result.length - 1];
+    final long[] latencies = Arrays.copyOf(result, result.length - 1);
+    Arrays.sort(latencies);
+    s_logger.info("{} distribution, {} feed threads: {} ticks/s", new Object[] {mode, FEED_THREADS, (long) (latencies.length * 1e9 / elapsedNanos)});
+    s_logger.info("{} distribution, {} feed threads: tick to send p50={}us p90={}us p99={}us p99.9={}us", new Object[] {mode, FEED_THREADS,
+        percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99), percentile(latencies, 0.999)});
+  }
+
+  private static long percentile(final long[] sorted, final double p) {
+    return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1000;
+  }
+
+  /**
+   * @return the tick to send times in nanoseconds, followed by the total elapsed time
+   */
+  private static long[] run(final ShardedLiveDataDispatcher dispatcher) throws Exception {
+    final int ticks = FEED_THREADS * TICKS_PER_THREAD;
+    final long[] latencies = new long[ticks + 1];
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch sent = new CountDownLatch(ticks);
+    final SyntheticLiveDataServer server = new SyntheticLiveDataServer();
+    server.setLiveDataDispatcher(dispatcher);
+    server.setMarketDataSenderFactory(new MarketDataSenderFactory() {
+      @Override
+      public Collection<MarketDataSender> create(final MarketDataDistributor distributor) {
+        return Collections.<MarketDataSender>singleton(new MarketDataSender() {
+          @Override
+          public void sendMarketData(final LiveDataValueUpdateBean data) {
+            final int index = next.getAndIncrement();
+            if (index < ticks) {
+              latencies[index] = System.nanoTime() - data.getFields().getLong(SyntheticLiveDataServer.TIMESTAMP_FIELD);
+              sent.countDown();
+            }
+          }
+
+          @Override
+          public MarketDataDistributor getDistributor() {
+            return distributor;
+          }
+        });
+      }
+    });
+    server.connect();
+    try {
+      for (int i = 0; i < SECURITIES; i++) {
+        server.subscribe("S" + i);
+      }
+      // Subscribing may publish an initial snapshot
+      next.set(0);
+      final Thread[] feeds = new Thread[FEED_THREADS];
+      for (int i = 0; i < FEED_THREADS; i++) {
+        final int feed = i;
+        feeds[i] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            final Random random = new Random(feed);
+            for (int j = 0; j < TICKS_PER_THREAD; j++) {
+              server.tick("S" + ((j * FEED_THREADS + feed) % SECURITIES), random);
+            }
+          }
+        });
+      }
+      final OperationTimer timer = new OperationTimer(s_logger, "{} ticks over {} securities", ticks, SECURITIES);
+      final long start = System.nanoTime();
+      for (Thread feed : feeds) {
+        feed.start();
+      }
+      assertTrue(sent.await(5, TimeUnit.MINUTES));
+      latencies[latencies.length - 1] = System.nanoTime() - start;
+      timer.finished();
+      for (Thread feed : feeds) {
+        feed.join();
+      }
+    } finally {
+      server.disconnect();
+    }
+    return latencies;
+  }
+
+}
@@ -11,21 +11,41 @@ import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 import org.testng.annotations.Test;
 import org.testng.annotations.BeforeMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.id.ExternalScheme;
 import com.opengamma.id.ExternalId;
 import com.opengamma.livedata.LiveDataSpecification;
 import com.opengamma.livedata.UserPrincipal;
+import com.opengamma.livedata.entitlement.LiveDataEntitlementChecker;
 import com.opengamma.livedata.msg.LiveDataSubscriptionRequest;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResponseMsg;
 import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
 import com.opengamma.livedata.msg.SubscriptionType;
+import com.opengamma.livedata.normalization.NormalizationRuleSet;
 import com.opengamma.livedata.normalization.StandardRules;
+import com.opengamma.livedata.resolver.FixedDistributionSpecificationResolver;
 import com.opengamma.livedata.server.distribution.MarketDataDistributor;
+import com.opengamma.livedata.server.distribution.MarketDataSender;
+import com.opengamma.livedata.server.distribution.MarketDataSenderFactory;
 
 /**
  * Test MockLiveDataServer.
@@ -184,6 +204,163 @@ public class MockLiveDataServerTest {
     assertFalse(_server.stopDistributor(distributor));
   }
 
+  @Test
+  public void chunkedSubscription() {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      _server.setSubscriptionChunkSize(3);
+      _server.setSubscriptionExecutor(executor);
+      _server.subscribe("existing", false);
+      
+      List<LiveDataSpecification> specs = new ArrayList<LiveDataSpecification>();
+      for (int i = 0; i < 10; i++) {
+        specs.add(getSpec("chunk" + i));
+      }
+      specs.add(getSpec("existing"));
+      Collection<LiveDataSubscriptionResponse> responses = _server.subscribe(specs, false);
+      
+      assertEquals(11, responses.size());
+      for (LiveDataSubscriptionResponse response : responses) {
+        assertEquals(LiveDataSubscriptionResult.SUCCESS, response.getSubscriptionResult());
+        assertTrue(_server.isSubscribedTo(response.getFullyQualifiedSpecification()));
+      }
+      assertEquals(11, _server.getNumActiveSubscriptions());
+      assertEquals(11, _server.getActualSubscriptions().size());
+      for (int i = 0; i < 10; i++) {
+        assertTrue(_server.getSubscription("chunk" + i).isActive());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  @Test(timeOut = 10000)
+  public void failedRequestReleasesClaims() {
+    _server.setMarketDataSenderFactory(new MarketDataSenderFactory() {
+      @Override
+      public Collection<MarketDataSender> create(MarketDataDistributor distributor) {
+        if ("bad".equals(distributor.getFullyQualifiedLiveDataSpecification().getIdentifier(_domain))) {
+          throw new IllegalStateException("No senders for " + distributor);
+        }
+        return Collections.emptySet();
+      }
+    });
+    try {
+      _server.subscribe(Arrays.asList(getSpec("good"), getSpec("bad")), false);
+      fail("Expected the request to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertNull(_server.getSubscription("good"));
+    // Would wait forever for the first request's claim if it were left behind
+    LiveDataSubscriptionResponse response = _server.subscribe("good", false);
+    assertEquals(LiveDataSubscriptionResult.SUCCESS, response.getSubscriptionResult());
+    assertTrue(_server.getSubscription("good").isActive());
+  }
+  
+  @Test
+  public void rejectedChunkSetUpInTurn() {
+    _server.setSubscriptionChunkSize(2);
+    _server.setSubscriptionExecutor(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    });
+    List<LiveDataSpecification> specs = new ArrayList<LiveDataSpecification>();
+    for (int i = 0; i < 5; i++) {
+      specs.add(getSpec("rejected" + i));
+    }
+    Collection<LiveDataSubscriptionResponse> responses = _server.subscribe(specs, false);
+    assertEquals(5, responses.size());
+    for (LiveDataSubscriptionResponse response : responses) {
+      assertEquals(LiveDataSubscriptionResult.SUCCESS, response.getSubscriptionResult());
+    }
+    assertEquals(5, _server.getNumActiveSubscriptions());
+  }
+  
+  @Test
+  public void failedBulkEntitlementCheckedInTurn() {
+    _server.setEntitlementChecker(new LiveDataEntitlementChecker() {
+      @Override
+      public boolean isEntitled(UserPrincipal user, LiveDataSpecification requestedSpecification) {
+        return !"denied".equals(requestedSpecification.getIdentifier(_domain));
+      }
+
+      @Override
+      public Map<LiveDataSpecification, Boolean> isEntitled(UserPrincipal user, Collection<LiveDataSpecification> requestedSpecifications) {
+        throw new OpenGammaRuntimeException("Entitlement server unavailable");
+      }
+    });
+    UserPrincipal user = new UserPrincipal("mark", "1.1.1.1");
+    LiveDataSubscriptionRequest request = new LiveDataSubscriptionRequest(user, SubscriptionType.NON_PERSISTENT,
+        Arrays.asList(getSpec("allowed"), getSpec("denied")));
+    LiveDataSubscriptionResponseMsg response = _server.subscriptionRequestMade(request);
+    assertEquals(2, response.getResponses().size());
+    for (LiveDataSubscriptionResponse specResponse : response.getResponses()) {
+      if (specResponse.getRequestedSpecification().equals(getSpec("allowed"))) {
+        assertEquals(LiveDataSubscriptionResult.SUCCESS, specResponse.getSubscriptionResult());
+      } else {
+        assertEquals(LiveDataSubscriptionResult.NOT_AUTHORIZED, specResponse.getSubscriptionResult());
+      }
+    }
+  }
+  
+  @Test
+  public void timedOutRequestWithdrawsDistributor() throws Exception {
+    LiveDataSpecification spec = getSpec("slow");
+    LiveDataSpecification otherSpec = new LiveDataSpecification("Other", ExternalId.of(_domain, "slow"));
+    DistributionSpecification distributionSpec = new DistributionSpecification(ExternalId.of(_domain, "slow"), StandardRules.getNoNormalization(), "slow");
+    DistributionSpecification otherDistributionSpec = new DistributionSpecification(ExternalId.of(_domain, "slow"), new NormalizationRuleSet("Other"), "slow.Other");
+    Map<LiveDataSpecification, DistributionSpecification> fixes = new HashMap<LiveDataSpecification, DistributionSpecification>();
+    fixes.put(spec, distributionSpec);
+    fixes.put(otherSpec, otherDistributionSpec);
+    _server.setDistributionSpecificationResolver(new FixedDistributionSpecificationResolver(fixes));
+    _server.setPendingSubscriptionTimeoutMillis(100);
+    final CountDownLatch submitted = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    _server.setSubscriptionExecutor(new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new OpenGammaRuntimeException("Interrupted", e);
+            }
+            command.run();
+          }
+        }).start();
+        submitted.countDown();
+      }
+    });
+    final AtomicReference<LiveDataSubscriptionResponse> first = new AtomicReference<LiveDataSubscriptionResponse>();
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        first.set(_server.subscribe(getSpec("slow"), false));
+      }
+    });
+    thread.start();
+    submitted.await();
+
+    // Gives up waiting for the first request to set the subscription up
+    LiveDataSubscriptionResponse response = _server.subscribe(otherSpec, false);
+    assertEquals(LiveDataSubscriptionResult.INTERNAL_ERROR, response.getSubscriptionResult());
+    release.countDown();
+    thread.join();
+    assertEquals(LiveDataSubscriptionResult.SUCCESS, first.get().getSubscriptionResult());
+    assertNotNull(_server.getMarketDataDistributor(distributionSpec));
+    assertNull(_server.getMarketDataDistributor(otherDistributionSpec));
+    assertEquals(1, _server.getSubscription("slow").getDistributors().size());
+
+    response = _server.subscribe(otherSpec, false);
+    assertEquals(LiveDataSubscriptionResult.SUCCESS, response.getSubscriptionResult());
+    assertNotNull(_server.getMarketDataDistributor(otherDistributionSpec));
+  }
+  
   private void checkResponse(UserPrincipal user, LiveDataSpecification requestedSpec,
       LiveDataSubscriptionResponseMsg response) {
     assertEquals(user, response.getRequestingUser());
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalScheme;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.server.distribution.MarketDataDistributor;
+import com.opengamma.livedata.server.distribution.MarketDataSender;
+import com.opengamma.livedata.server.distribution.MarketDataSenderFactory;
+
+/**
+ * Tests ShardedLiveDataDispatcher.
+ */
+public class ShardedLiveDataDispatcherTest {
+
+  private static final int SECURITIES = 10;
+  private static final int TICKS = 1000;
+
+  private final Map<String, List<Integer>> _received = new ConcurrentHashMap<String, List<Integer>>();
+
+  private MockLiveDataServer createServer(ShardedLiveDataDispatcher dispatcher) {
+    MockLiveDataServer server = new MockLiveDataServer(ExternalScheme.of("test"));
+    server.setLiveDataDispatcher(dispatcher);
+    server.setMarketDataSenderFactory(new MarketDataSenderFactory() {
+      @Override
+      public Collection<MarketDataSender> create(final MarketDataDistributor distributor) {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        _received.put(distributor.getSubscription().getSecurityUniqueId(), received);
+        return Collections.<MarketDataSender>singleton(new MarketDataSender() {
+          @Override
+          public void sendMarketData(LiveDataValueUpdateBean data) {
+            received.add(data.getFields().getInt("tick"));
+          }
+
+          @Override
+          public MarketDataDistributor getDistributor() {
+            return distributor;
+          }
+        });
+      }
+    });
+    return server;
+  }
+
+  private static MutableFudgeMsg tick(int i) {
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("tick", i);
+    return msg;
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void noShards() {
+    new ShardedLiveDataDispatcher(0, 10);
+  }
+
+  @Test
+  public void inlineWhenNotRunning() {
+    ShardedLiveDataDispatcher dispatcher = new ShardedLiveDataDispatcher(2, 10);
+    MockLiveDataServer server = createServer(dispatcher);
+    server.connect();
+    server.subscribe("A");
+    dispatcher.stop();
+    dispatcher.dispatch(server.getSubscription("A"), tick(1));
+    assertEquals(Collections.singletonList(1), _received.get("A"));
+    assertEquals(1, dispatcher.getNumTicksDispatched());
+  }
+
+  @Test
+  public void serverDispatchesWhenNotRunning() {
+    ShardedLiveDataDispatcher dispatcher = new ShardedLiveDataDispatcher(2, 10);
+    MockLiveDataServer server = createServer(dispatcher);
+    server.connect();
+    server.subscribe("A");
+    server.disconnect();
+    assertFalse(dispatcher.isRunning());
+    server.liveDataReceived("A", tick(1));
+    assertEquals(Collections.singletonList(1), _received.get("A"));
+    // Went through the dispatcher rather than straight to the subscription
+    assertEquals(1, dispatcher.getNumTicksDispatched());
+  }
+
+  @Test
+  public void orderPreservedPerSecurity() {
+    ShardedLiveDataDispatcher dispatcher = new ShardedLiveDataDispatcher(3, 16);
+    MockLiveDataServer server = createServer(dispatcher);
+    server.connect();
+    assertTrue(dispatcher.isRunning());
+    for (int i = 0; i < SECURITIES; i++) {
+      server.subscribe("S" + i);
+    }
+    for (int i = 0; i < TICKS; i++) {
+      for (int j = 0; j < SECURITIES; j++) {
+        server.liveDataReceived("S" + j, tick(i));
+      }
+    }
+    server.disconnect();
+    assertFalse(dispatcher.isRunning());
+    assertEquals(TICKS * SECURITIES, dispatcher.getNumTicksDispatched());
+    assertEquals(0, dispatcher.getNumTicksQueued());
+    for (int j = 0; j < SECURITIES; j++) {
+      List<Integer> received = _received.get("S" + j);
+      assertEquals(TICKS, received.size());
+      for (int i = 0; i < TICKS; i++) {
+        assertEquals(i, received.get(i).intValue());
+      }
+    }
+  }
+
+  @Test
+  public void noTicksLostWhenStopping() throws Exception {
+    for (int trial = 0; trial < 10; trial++) {
+      _received.clear();
+      final ShardedLiveDataDispatcher dispatcher = new ShardedLiveDataDispatcher(2, 4);
+      final MockLiveDataServer server = createServer(dispatcher);
+      server.connect();
+      final List<Subscription> subscriptions = new ArrayList<Subscription>();
+      for (int i = 0; i < SECURITIES; i++) {
+        server.subscribe("S" + i);
+        subscriptions.add(server.getSubscription("S" + i));
+      }
+      final Thread producer = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < TICKS; i++) {
+            for (Subscription subscription : subscriptions) {
+              dispatcher.dispatch(subscription, tick(i));
+            }
+          }
+        }
+      };
+      producer.start();
+      Thread.sleep(1);
+      dispatcher.stop();
+      producer.join();
+      assertEquals(TICKS * SECURITIES, dispatcher.getNumTicksDispatched());
+      assertEquals(0, dispatcher.getNumTicksQueued());
+      for (int j = 0; j < SECURITIES; j++) {
+        List<Integer> received = _received.get("S" + j);
+        assertEquals(TICKS, received.size());
+        for (int i = 0; i < TICKS; i++) {
+          assertEquals(i, received.get(i).intValue());
+        }
+      }
+    }
+  }
+
+}
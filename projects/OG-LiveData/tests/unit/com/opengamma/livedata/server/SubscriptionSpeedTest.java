@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResponse;
+import com.opengamma.livedata.msg.LiveDataSubscriptionResult;
+import com.opengamma.livedata.server.distribution.MarketDataDistributor;
+import com.opengamma.livedata.server.distribution.MarketDataSender;
+import com.opengamma.livedata.server.distribution.MarketDataSenderFactory;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Measures how long a live data server takes to subscribe to large numbers of securities from a
+ * feed with a per-call and per-security cost, in one call and in chunks set up concurrently, and
+ * how many ticks for securities already subscribed are distributed meanwhile.
+ * Only the smaller sizes are run by default; the runs with 1k, 10k and 50k securities take minutes.
+ */
+public class SubscriptionSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(SubscriptionSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int[] SECURITIES = {500, 2000};
+  private static final int[] MANY_SECURITIES = {1000, 10000, 50000};
+  private static final int CHUNK_SIZE = 250;
+  private static final int TICKING_SECURITIES = 100;
+  private static final int THREADS = 8;
+  private static final long NANOS_PER_CALL = TimeUnit.MILLISECONDS.toNanos(2);
+  private static final long NANOS_PER_SECURITY = TimeUnit.MICROSECONDS.toNanos(20);
+
+  @Test
+  public void testSubscribeTime() throws Exception {
+    subscribeTimes(SECURITIES);
+  }
+
+  @Test(enabled = false)
+  public void testSubscribeTimeManySecurities() throws Exception {
+    subscribeTimes(MANY_SECURITIES);
+  }
+
+  private static void subscribeTimes(final int[] securityCounts) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (int i = 0; i < HOTSPOT_WARMUP_CYCLES + BENCHMARK_CYCLES; i++) {
+        for (int securities : securityCounts) {
+          run(securities, Integer.MAX_VALUE, null);
+          run(securities, CHUNK_SIZE, executor);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void run(final int securities, final int chunkSize, final ExecutorService executor) throws Exception {
+    final AtomicLong ticksSent = new AtomicLong();
+    final SlowFeedLiveDataServer server = new SlowFeedLiveDataServer();
+    server.setSubscriptionChunkSize(chunkSize);
+    server.setSubscriptionExecutor(executor);
+    server.setMarketDataSenderFactory(new MarketDataSenderFactory() {
+      @Override
+      public Collection<MarketDataSender> create(final MarketDataDistributor distributor) {
+        return Collections.<MarketDataSender>singleton(new MarketDataSender() {
+          @Override
+          public void sendMarketData(final LiveDataValueUpdateBean data) {
+            ticksSent.incrementAndGet();
+          }
+
+          @Override
+          public MarketDataDistributor getDistributor() {
+            return distributor;
+          }
+        });
+      }
+    });
+    server.connect();
+    try {
+      final List<LiveDataSpecification> ticking = new ArrayList<LiveDataSpecification>();
+      for (int i = 0; i < TICKING_SECURITIES; i++) {
+        ticking.add(getSpecification(server, "T" + i));
+      }
+      server.subscribe(ticking, false);
+      final List<LiveDataSpecification> specs = new ArrayList<LiveDataSpecification>();
+      for (int i = 0; i < securities; i++) {
+        specs.add(getSpecification(server, "S" + i));
+      }
+
+      final Ticker ticker = new Ticker(server);
+      final Thread thread = new Thread(ticker, "SubscriptionSpeedTest-Ticker");
+      thread.start();
+      final String mode = (executor != null) ? "chunks of " + chunkSize + " on " + THREADS + " threads" : "one call";
+      final OperationTimer timer = new OperationTimer(s_logger, "Subscribing to {} securities in {}", securities, mode);
+      final long start = System.nanoTime();
+      ticksSent.set(0);
+      final Collection<LiveDataSubscriptionResponse> responses = server.subscribe(specs, false);
+      final long nanos = System.nanoTime() - start;
+      final long ticksDuringSubscribe = ticksSent.get();
+      timer.finished();
+      ticker.stop();
+      thread.join();
+
+      assertEquals(securities, responses.size());
+      for (LiveDataSubscriptionResponse response : responses) {
+        assertEquals(LiveDataSubscriptionResult.SUCCESS, response.getSubscriptionResult());
+      }
+      assertEquals(TICKING_SECURITIES + securities, server.getNumActiveSubscriptions());
+      s_logger.info("Subscribe {} securities in {}: {}ms, {} ticks/s distributed meanwhile", new Object[] {securities, mode,
+          TimeUnit.NANOSECONDS.toMillis(nanos), (long) (ticksDuringSubscribe * 1e9 / nanos)});
+    } finally {
+      server.disconnect();
+    }
+  }
+
+  private static LiveDataSpecification getSpecification(final AbstractLiveDataServer server, final String uniqueId) {
+    return new LiveDataSpecification(server.getDefaultNormalizationRuleSetId(), ExternalId.of(SyntheticLiveDataServer.SYNTHETIC, uniqueId));
+  }
+
+  /**
+   * Ticks the securities subscribed before the timed subscription request.
+   */
+  private static final class Ticker implements Runnable {
+
+    private final SyntheticLiveDataServer _server;
+    private volatile boolean _running = true;
+
+    private Ticker(final SyntheticLiveDataServer server) {
+      _server = server;
+    }
+
+    @Override
+    public void run() {
+      final Random random = new Random(0);
+      int i = 0;
+      while (_running) {
+        _server.tick("T" + (i++ % TICKING_SECURITIES), random);
+      }
+    }
+
+    private void stop() {
+      _running = false;
+    }
+
+  }
+
+  /**
+   * A synthetic feed whose snapshot and subscribe calls take time, like a remote market data API,
+   * and which needs a snapshot of each new subscription.
+   */
+  private static final class SlowFeedLiveDataServer extends SyntheticLiveDataServer {
+
+    private static void simulateLatency(final int securities) {
+      LockSupport.parkNanos(NANOS_PER_CALL + securities * NANOS_PER_SECURITY);
+    }
+
+    @Override
+    protected Map<String, Object> doSubscribe(final Collection<String> uniqueIds) {
+      simulateLatency(uniqueIds.size());
+      return super.doSubscribe(uniqueIds);
+    }
+
+    @Override
+    protected Map<String, FudgeMsg> doSnapshot(final Collection<String> uniqueIds) {
+      simulateLatency(uniqueIds.size());
+      return super.doSnapshot(uniqueIds);
+    }
+
+    @Override
+    protected boolean snapshotOnSubscriptionStartRequired(final Subscription subscription) {
+      return true;
+    }
+
+  }
+
+}
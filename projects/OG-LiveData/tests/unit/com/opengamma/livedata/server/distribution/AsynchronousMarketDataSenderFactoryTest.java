@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.server.FieldHistoryStore;
+
+/**
+ * Tests AsynchronousMarketDataSenderFactory.
+ */
+public class AsynchronousMarketDataSenderFactoryTest {
+
+  /**
+   * Records the updates sent for each distributor.
+   */
+  private static class RecordingSenderFactory implements MarketDataSenderFactory {
+    private final Map<MarketDataDistributor, List<LiveDataValueUpdateBean>> _sent = new ConcurrentHashMap<MarketDataDistributor, List<LiveDataValueUpdateBean>>();
+
+    @Override
+    public Collection<MarketDataSender> create(final MarketDataDistributor distributor) {
+      final List<LiveDataValueUpdateBean> sent = Collections.synchronizedList(new ArrayList<LiveDataValueUpdateBean>());
+      _sent.put(distributor, sent);
+      return Collections.<MarketDataSender>singleton(new MarketDataSender() {
+        @Override
+        public void sendMarketData(LiveDataValueUpdateBean data) {
+          sent.add(data);
+        }
+
+        @Override
+        public MarketDataDistributor getDistributor() {
+          return distributor;
+        }
+      });
+    }
+
+    public List<LiveDataValueUpdateBean> getSent(MarketDataDistributor distributor) {
+      return _sent.get(distributor);
+    }
+  }
+
+  /**
+   * Holds tasks until they are run by the test.
+   */
+  private static class ManualExecutor implements Executor {
+    private final Queue<Runnable> _tasks = new LinkedList<Runnable>();
+
+    @Override
+    public void execute(Runnable command) {
+      _tasks.add(command);
+    }
+
+    public int getNumPending() {
+      return _tasks.size();
+    }
+
+    public void runAll() {
+      Runnable task = _tasks.poll();
+      while (task != null) {
+        task.run();
+        task = _tasks.poll();
+      }
+    }
+  }
+
+  private static FudgeMsg tick(String field, int value) {
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add(field, value);
+    return msg;
+  }
+
+  @Test
+  public void orderPreservedPerDistributor() throws Exception {
+    final int distributors = 5;
+    final int ticks = 1000;
+    RecordingSenderFactory recorder = new RecordingSenderFactory();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      AsynchronousMarketDataSenderFactory factory = new AsynchronousMarketDataSenderFactory(recorder, executor, ticks);
+      List<MarketDataDistributor> mdds = new ArrayList<MarketDataDistributor>();
+      for (int i = 0; i < distributors; i++) {
+        mdds.add(MarketDataDistributorTest.getTestDistributor(factory));
+      }
+      for (int i = 0; i < ticks; i++) {
+        for (MarketDataDistributor mdd : mdds) {
+          mdd.distributeLiveData(tick("tick", i));
+        }
+      }
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+      assertEquals(0, factory.getNumDropped());
+      for (MarketDataDistributor mdd : mdds) {
+        List<LiveDataValueUpdateBean> sent = recorder.getSent(mdd);
+        assertEquals(ticks, sent.size());
+        for (int i = 0; i < ticks; i++) {
+          assertEquals(i, sent.get(i).getSequenceNumber());
+          assertEquals(i, sent.get(i).getFields().getInt("tick").intValue());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void droppedUpdatesReplacedBySnapshot() {
+    RecordingSenderFactory recorder = new RecordingSenderFactory();
+    ManualExecutor executor = new ManualExecutor();
+    AsynchronousMarketDataSenderFactory factory = new AsynchronousMarketDataSenderFactory(recorder, executor, 2);
+    MarketDataDistributor mdd = MarketDataDistributorTest.getTestDistributor(factory);
+    mdd.distributeLiveData(tick("BID", 1));
+    mdd.distributeLiveData(tick("ASK", 2));
+    // The queue is full, so these are dropped
+    mdd.distributeLiveData(tick("BID", 3));
+    mdd.distributeLiveData(tick("LAST", 4));
+    assertEquals(2, factory.getNumDropped());
+    assertEquals(1, executor.getNumPending());
+    executor.runAll();
+
+    List<LiveDataValueUpdateBean> sent = recorder.getSent(mdd);
+    assertEquals(3, sent.size());
+    assertEquals(0, sent.get(0).getSequenceNumber());
+    assertEquals(1, sent.get(1).getSequenceNumber());
+    // The last known values reached by applying everything sent are those of the distributor
+    FieldHistoryStore client = new FieldHistoryStore();
+    for (LiveDataValueUpdateBean update : sent) {
+      client.liveDataReceived(update.getFields());
+    }
+    FudgeMsg expected = mdd.getSnapshot().getFields();
+    FudgeMsg actual = client.getLastKnownValues();
+    assertEquals(expected.getNumFields(), actual.getNumFields());
+    assertEquals(3, actual.getInt("BID").intValue());
+    assertEquals(2, actual.getInt("ASK").intValue());
+    assertEquals(4, actual.getInt("LAST").intValue());
+  }
+
+  @Test
+  public void rescheduledAfterDrain() {
+    RecordingSenderFactory recorder = new RecordingSenderFactory();
+    ManualExecutor executor = new ManualExecutor();
+    AsynchronousMarketDataSenderFactory factory = new AsynchronousMarketDataSenderFactory(recorder, executor, 10);
+    MarketDataDistributor mdd = MarketDataDistributorTest.getTestDistributor(factory);
+    mdd.distributeLiveData(tick("tick", 0));
+    mdd.distributeLiveData(tick("tick", 1));
+    // One drain task at a time
+    assertEquals(1, executor.getNumPending());
+    executor.runAll();
+    assertEquals(2, recorder.getSent(mdd).size());
+
+    mdd.distributeLiveData(tick("tick", 2));
+    assertEquals(1, executor.getNumPending());
+    executor.runAll();
+    assertEquals(3, recorder.getSent(mdd).size());
+    assertEquals(0, executor.getNumPending());
+  }
+
+}
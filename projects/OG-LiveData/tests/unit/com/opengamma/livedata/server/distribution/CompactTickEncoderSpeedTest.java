@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+import org.fudgemsg.FudgeContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.client.CompactTickDecoder;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Compares the size and encode/decode rate of Fudge encoded updates with the compact encoding.
+ */
+public class CompactTickEncoderSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(CompactTickEncoderSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int TICKS = 5000;
+  private static final int DISTINCT_TICKS = 64;
+
+  private final FudgeContext _fudgeContext = FudgeContext.GLOBAL_DEFAULT;
+
+  @Test
+  public void testEncoding() {
+    final LiveDataSpecification spec = CompactTickEncoderTest.getSpecification("AAPL US Equity");
+    final LiveDataValueUpdateBean[] updates = new LiveDataValueUpdateBean[DISTINCT_TICKS];
+    for (int i = 0; i < updates.length; i++) {
+      updates[i] = new LiveDataValueUpdateBean(i, spec, CompactTickEncoderTest.getTick(i));
+    }
+    for (int i = 0; i < HOTSPOT_WARMUP_CYCLES; i++) {
+      fudge(updates);
+      compact(updates);
+    }
+    for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+      fudge(updates);
+      compact(updates);
+    }
+  }
+
+  private long fudge(final LiveDataValueUpdateBean[] updates) {
+    final OperationTimer timer = new OperationTimer(s_logger, "Fudge encoding and decoding {} ticks", TICKS);
+    final long start = System.nanoTime();
+    long bytes = 0;
+    for (int i = 0; i < TICKS; i++) {
+      final byte[] encoded = _fudgeContext.toByteArray(updates[i % updates.length].toFudgeMsg(_fudgeContext));
+      bytes += encoded.length;
+      _fudgeContext.deserialize(encoded).getMessage();
+    }
+    timer.finished();
+    log("Fudge", bytes, System.nanoTime() - start);
+    return bytes;
+  }
+
+  private long compact(final LiveDataValueUpdateBean[] updates) {
+    final CompactTickEncoder encoder = new CompactTickEncoder(_fudgeContext);
+    final CompactTickDecoder decoder = new CompactTickDecoder(_fudgeContext);
+    final OperationTimer timer = new OperationTimer(s_logger, "Compact encoding and decoding {} ticks", TICKS);
+    final long start = System.nanoTime();
+    long bytes = 0;
+    for (int i = 0; i < TICKS; i++) {
+      final byte[] encoded = encoder.encode(updates[i % updates.length]);
+      bytes += encoded.length;
+      decoder.decode(encoded);
+    }
+    timer.finished();
+    log("Compact", bytes, System.nanoTime() - start);
+    return bytes;
+  }
+
+  private static void log(final String name, final long bytes, final long nanos) {
+    s_logger.info("{}: {} bytes/tick, {} ns/tick, {} ticks/s", new Object[] {name, bytes / TICKS, nanos / TICKS, (long) (TICKS * 1e9 / nanos) });
+  }
+
+}
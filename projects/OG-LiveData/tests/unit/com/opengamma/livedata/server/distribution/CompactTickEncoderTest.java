@@ -0,0 +1,331 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.livedata.server.distribution;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalScheme;
+import com.opengamma.livedata.CompactTickFormat;
+import com.opengamma.livedata.LiveDataSpecification;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
+import com.opengamma.livedata.client.CompactTickDecoder;
+import com.opengamma.livedata.server.MockLiveDataServer;
+import com.opengamma.transport.FudgeMessageSender;
+
+/**
+ * Tests CompactTickEncoder against CompactTickDecoder.
+ */
+public class CompactTickEncoderTest {
+
+  private static final FudgeContext s_fudgeContext = FudgeContext.GLOBAL_DEFAULT;
+
+  public static LiveDataSpecification getSpecification(String ticker) {
+    return new LiveDataSpecification("OpenGamma", ExternalId.of("BLOOMBERG_TICKER", ticker));
+  }
+
+  public static MutableFudgeMsg getTick(int i) {
+    MutableFudgeMsg msg = s_fudgeContext.newMessage();
+    msg.add("Bid", 100.0 + i);
+    msg.add("Ask", 100.5 + i);
+    msg.add("Volume", 1000L * (i / 2));
+    msg.add("Exchange", "LN");
+    return msg;
+  }
+
+  private static void assertSameFields(FudgeMsg expected, FudgeMsg actual) {
+    assertEquals(expected.getNumFields(), actual.getNumFields());
+    for (String name : expected.getAllFieldNames()) {
+      Object expectedValue = expected.getValue(name);
+      Object actualValue = actual.getValue(name);
+      // Fudge may hold integral values in a narrower type than the decoder produces
+      if (expectedValue instanceof Number && !(expectedValue instanceof Double)) {
+        assertEquals(name, ((Number) expectedValue).longValue(), ((Number) actualValue).longValue());
+      } else {
+        assertEquals(name, expectedValue, actualValue);
+      }
+    }
+  }
+
+  @Test
+  public void roundTrip() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext);
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+
+    MutableFudgeMsg first = getTick(0);
+    first.add("Flag", true);
+    byte[] keyFrame = encoder.encode(new LiveDataValueUpdateBean(1, spec, first));
+    assertTrue(CompactTickFormat.isCompactTick(keyFrame));
+    assertEquals(CompactTickFormat.FRAME_KEY, keyFrame[1]);
+    LiveDataValueUpdateBean decoded = decoder.decode(keyFrame);
+    assertEquals(1, decoded.getSequenceNumber());
+    assertEquals(spec, decoded.getSpecification());
+    assertSameFields(first, decoded.getFields());
+    assertEquals(1, decoder.getNumStreams());
+
+    // Only Bid and Ask change
+    byte[] delta = encoder.encode(new LiveDataValueUpdateBean(2, spec, getTick(1)));
+    assertEquals(CompactTickFormat.FRAME_DELTA, delta[1]);
+    assertTrue(delta.length < keyFrame.length);
+    decoded = decoder.decode(delta);
+    assertEquals(2, decoded.getSequenceNumber());
+    assertEquals(spec, decoded.getSpecification());
+    assertEquals(2, decoded.getFields().getNumFields());
+    assertEquals(101.0, decoded.getFields().getDouble("Bid"), 0.0);
+    assertEquals(101.5, decoded.getFields().getDouble("Ask"), 0.0);
+  }
+
+  @Test
+  public void newFieldSendsKeyFrame() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext);
+    encoder.encode(new LiveDataValueUpdateBean(1, spec, getTick(0)));
+    assertEquals(CompactTickFormat.FRAME_DELTA, encoder.encode(new LiveDataValueUpdateBean(2, spec, getTick(1)))[1]);
+
+    MutableFudgeMsg tick = getTick(2);
+    tick.add("Last", 102.25);
+    byte[] frame = encoder.encode(new LiveDataValueUpdateBean(3, spec, tick));
+    assertEquals(CompactTickFormat.FRAME_KEY, frame[1]);
+    // A receiver joining now gets every value
+    LiveDataValueUpdateBean decoded = new CompactTickDecoder(s_fudgeContext).decode(frame);
+    assertSameFields(tick, decoded.getFields());
+  }
+
+  @Test
+  public void periodicKeyFrames() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext, 3);
+    int keyFrames = 0;
+    for (int i = 0; i < 6; i++) {
+      if (encoder.encode(new LiveDataValueUpdateBean(i, spec, getTick(i)))[1] == CompactTickFormat.FRAME_KEY) {
+        keyFrames++;
+      }
+    }
+    // Ticks 0 and 4
+    assertEquals(2, keyFrames);
+    encoder.requestKeyFrame();
+    assertEquals(CompactTickFormat.FRAME_KEY, encoder.encode(new LiveDataValueUpdateBean(6, spec, getTick(6)))[1]);
+  }
+
+  @Test
+  public void deltaBeforeKeyFrameDropped() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext);
+    encoder.encode(new LiveDataValueUpdateBean(1, spec, getTick(0)));
+    byte[] delta = encoder.encode(new LiveDataValueUpdateBean(2, spec, getTick(1)));
+
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+    assertNull(decoder.decode(delta));
+    assertEquals(0, decoder.getNumStreams());
+
+    encoder.requestKeyFrame();
+    assertNotNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(3, spec, getTick(2)))));
+    assertNotNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(4, spec, getTick(3)))));
+  }
+
+  @Test
+  public void streamsDecodedIndependently() {
+    CompactTickEncoder encoder1 = new CompactTickEncoder(s_fudgeContext);
+    CompactTickEncoder encoder2 = new CompactTickEncoder(s_fudgeContext);
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+    LiveDataSpecification spec1 = getSpecification("AAPL US Equity");
+    LiveDataSpecification spec2 = getSpecification("MSFT US Equity");
+    MutableFudgeMsg other = s_fudgeContext.newMessage();
+    other.add("Last", -5);
+    decoder.decode(encoder1.encode(new LiveDataValueUpdateBean(1, spec1, getTick(0))));
+    decoder.decode(encoder2.encode(new LiveDataValueUpdateBean(1, spec2, other)));
+    assertEquals(2, decoder.getNumStreams());
+
+    LiveDataValueUpdateBean decoded = decoder.decode(encoder1.encode(new LiveDataValueUpdateBean(2, spec1, getTick(5))));
+    assertEquals(spec1, decoded.getSpecification());
+    assertEquals(105.0, decoded.getFields().getDouble("Bid"), 0.0);
+    other.remove("Last");
+    other.add("Last", -7);
+    decoded = decoder.decode(encoder2.encode(new LiveDataValueUpdateBean(2, spec2, other)));
+    assertEquals(spec2, decoded.getSpecification());
+    assertEquals(-7, decoded.getFields().getInt("Last").intValue());
+  }
+
+  @Test
+  public void lostFrameResynchronizesOnKeyFrame() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext);
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+    assertNotNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(1, spec, getTick(0)))));
+    // Frame lost
+    encoder.encode(new LiveDataValueUpdateBean(2, spec, getTick(1)));
+    assertNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(3, spec, getTick(2)))));
+    assertEquals(0, decoder.getNumStreams());
+    assertNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(4, spec, getTick(3)))));
+
+    encoder.requestKeyFrame();
+    LiveDataValueUpdateBean decoded = decoder.decode(encoder.encode(new LiveDataValueUpdateBean(5, spec, getTick(4))));
+    assertSameFields(getTick(4), decoded.getFields());
+    assertNotNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(6, spec, getTick(5)))));
+  }
+
+  @Test
+  public void unknownFieldIdDropsStream() throws Exception {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext);
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+    assertNotNull(decoder.decode(encoder.encode(new LiveDataValueUpdateBean(1, spec, getTick(0)))));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(CompactTickFormat.MAGIC);
+    out.writeByte(CompactTickFormat.FRAME_DELTA);
+    out.writeLong(encoder.getStreamId());
+    CompactTickFormat.writeVarLong(out, 1);
+    CompactTickFormat.writeVarLong(out, 2);
+    CompactTickFormat.writeVarInt(out, 1);
+    CompactTickFormat.writeVarInt(out, 99);
+    out.writeByte(CompactTickFormat.TYPE_DOUBLE);
+    out.writeDouble(1.0);
+    out.flush();
+    assertNull(decoder.decode(bytes.toByteArray()));
+    assertEquals(0, decoder.getNumStreams());
+  }
+
+  @Test
+  public void streamStoppedDiscardsDefinitions() {
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+    LiveDataSpecification spec1 = getSpecification("AAPL US Equity");
+    LiveDataSpecification spec2 = getSpecification("MSFT US Equity");
+    decoder.decode(new CompactTickEncoder(s_fudgeContext).encode(new LiveDataValueUpdateBean(1, spec1, getTick(0))));
+    decoder.decode(new CompactTickEncoder(s_fudgeContext).encode(new LiveDataValueUpdateBean(1, spec2, getTick(0))));
+    assertEquals(2, decoder.getNumStreams());
+    decoder.streamStopped(spec1);
+    assertEquals(1, decoder.getNumStreams());
+  }
+
+  @Test
+  public void floatKeepsType() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    MutableFudgeMsg msg = s_fudgeContext.newMessage();
+    msg.add("Bid", 1.5f);
+    LiveDataValueUpdateBean decoded = new CompactTickDecoder(s_fudgeContext).decode(new CompactTickEncoder(s_fudgeContext).encode(new LiveDataValueUpdateBean(1, spec, msg)));
+    assertEquals(1.5f, decoded.getFields().getValue("Bid"));
+  }
+
+  @Test
+  public void failedSendRequestsKeyFrame() {
+    final List<FudgeMsg> sent = new ArrayList<FudgeMsg>();
+    final AtomicBoolean fail = new AtomicBoolean();
+    FudgeMessageSender messageSender = new FudgeMessageSender() {
+      @Override
+      public void send(FudgeMsg message) {
+        if (fail.getAndSet(false)) {
+          throw new OpenGammaRuntimeException("Send failed");
+        }
+        sent.add(message);
+      }
+
+      @Override
+      public FudgeContext getFudgeContext() {
+        return s_fudgeContext;
+      }
+    };
+    MarketDataDistributor distributor = MarketDataDistributorTest.getTestDistributor();
+    FudgeSender sender = new FudgeSender(messageSender, distributor, true);
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    sender.sendMarketData(new LiveDataValueUpdateBean(1, spec, getTick(0)));
+    fail.set(true);
+    try {
+      sender.sendMarketData(new LiveDataValueUpdateBean(2, spec, getTick(1)));
+      fail("Expected the send to fail");
+    } catch (OpenGammaRuntimeException e) {
+      // expected
+    }
+    sender.sendMarketData(new LiveDataValueUpdateBean(3, spec, getTick(2)));
+    assertEquals(2, sent.size());
+    byte[] frame = getFrame(sent.get(1));
+    assertEquals(CompactTickFormat.FRAME_KEY, frame[1]);
+  }
+
+  @Test
+  public void repeatedFieldSentOnce() {
+    LiveDataSpecification spec = getSpecification("AAPL US Equity");
+    CompactTickEncoder encoder = new CompactTickEncoder(s_fudgeContext);
+    CompactTickDecoder decoder = new CompactTickDecoder(s_fudgeContext);
+    MutableFudgeMsg tick = getTick(0);
+    tick.add("Bid", 99.0);
+    LiveDataValueUpdateBean decoded = decoder.decode(encoder.encode(new LiveDataValueUpdateBean(1, spec, tick)));
+    assertEquals(4, decoded.getFields().getNumFields());
+    assertEquals(99.0, decoded.getFields().getDouble("Bid"), 0.0);
+
+    tick = getTick(1);
+    tick.add("Bid", 98.0);
+    tick.add("Bid", 97.0);
+    decoded = decoder.decode(encoder.encode(new LiveDataValueUpdateBean(2, spec, tick)));
+    assertEquals(2, decoded.getFields().getNumFields());
+    assertEquals(97.0, decoded.getFields().getDouble("Bid"), 0.0);
+  }
+
+  @Test
+  public void lateSubscriberGetsKeyFrame() {
+    final List<FudgeMsg> sent = new ArrayList<FudgeMsg>();
+    FudgeMessageSender messageSender = new FudgeMessageSender() {
+      @Override
+      public void send(FudgeMsg message) {
+        sent.add(message);
+      }
+
+      @Override
+      public FudgeContext getFudgeContext() {
+        return s_fudgeContext;
+      }
+    };
+    MockLiveDataServer server = new MockLiveDataServer(ExternalScheme.of("test"));
+    server.setMarketDataSenderFactory(new FudgeSenderFactory(messageSender, true));
+    server.connect();
+    server.subscribe("A");
+    for (int i = 0; i < 3; i++) {
+      server.liveDataReceived("A", getTick(i));
+    }
+    assertEquals(3, sent.size());
+    assertEquals(CompactTickFormat.FRAME_DELTA, getFrame(sent.get(2))[1]);
+
+    // A second client joins the existing distributor and must be able to decode the next update
+    server.subscribe("A");
+    server.liveDataReceived("A", getTick(3));
+    assertEquals(4, sent.size());
+    byte[] frame = getFrame(sent.get(3));
+    assertEquals(CompactTickFormat.FRAME_KEY, frame[1]);
+    assertNotNull(new CompactTickDecoder(s_fudgeContext).decode(frame));
+    server.liveDataReceived("A", getTick(4));
+    assertEquals(CompactTickFormat.FRAME_DELTA, getFrame(sent.get(4))[1]);
+  }
+
+  private static byte[] getFrame(FudgeMsg message) {
+    return (byte[]) message.getValue(CompactTickFormat.FUDGE_FRAME_FIELD_NAME);
+  }
+
+  @Test
+  public void notCompactTick() {
+    MutableFudgeMsg msg = s_fudgeContext.newMessage();
+    msg.add("Bid", 1.0);
+    assertTrue(!CompactTickFormat.isCompactTick(s_fudgeContext.toByteArray(msg)));
+  }
+
+}
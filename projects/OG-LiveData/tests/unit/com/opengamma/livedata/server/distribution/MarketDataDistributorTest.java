@@ -6,11 +6,20 @@
 package com.opengamma.livedata.server.distribution;
 
 import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import org.testng.annotations.Test;
 import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
 import com.opengamma.id.ExternalId;
 import com.opengamma.livedata.LiveDataValueUpdate;
+import com.opengamma.livedata.LiveDataValueUpdateBean;
 import com.opengamma.livedata.normalization.StandardRules;
 import com.opengamma.livedata.server.DistributionSpecification;
 import com.opengamma.livedata.server.Subscription;
@@ -49,4 +58,38 @@ public class MarketDataDistributorTest {
     assertEquals(1, mdd.getNumMessagesSent());
   }
   
+  @Test
+  public void originTime() {
+    final List<LiveDataValueUpdateBean> sent = new ArrayList<LiveDataValueUpdateBean>();
+    MarketDataDistributor mdd = getTestDistributor(new MarketDataSenderFactory() {
+      @Override
+      public Collection<MarketDataSender> create(final MarketDataDistributor distributor) {
+        return Collections.<MarketDataSender>singleton(new MarketDataSender() {
+          @Override
+          public void sendMarketData(LiveDataValueUpdateBean data) {
+            sent.add(data);
+          }
+          
+          @Override
+          public MarketDataDistributor getDistributor() {
+            return distributor;
+          }
+        });
+      }
+    });
+    MutableFudgeMsg msg = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    msg.add("foo", "bar");
+    mdd.distributeLiveData(msg, 1234L);
+    mdd.distributeLiveData(msg);
+    assertEquals(2, sent.size());
+    assertEquals(1234L, sent.get(0).getOriginTime());
+    assertEquals(0L, sent.get(1).getOriginTime());
+    
+    // Carried through a Fudge encoding only when known
+    FudgeMsg encoded = sent.get(0).toFudgeMsg(FudgeContext.GLOBAL_DEFAULT);
+    FudgeDeserializer deserializer = new FudgeDeserializer(FudgeContext.GLOBAL_DEFAULT);
+    assertEquals(1234L, LiveDataValueUpdateBean.fromFudgeMsg(deserializer, encoded).getOriginTime());
+    assertEquals(0L, LiveDataValueUpdateBean.fromFudgeMsg(deserializer, sent.get(1).toFudgeMsg(FudgeContext.GLOBAL_DEFAULT)).getOriginTime());
+  }
+  
 }
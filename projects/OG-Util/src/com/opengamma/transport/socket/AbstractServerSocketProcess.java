@@ -91,7 +91,7 @@ public abstract class AbstractServerSocketProcess implements Lifecycle, EndPoint
     s_logger.info("Binding to {}:{}", getBindAddress(), getPortNumber());
     try {
       // NOTE kirk 2010-05-12 -- Backlog of 50 from ServerSocket.
-      _serverSocket = new ServerSocket(getPortNumber(), 50, getBindAddress());
+      _serverSocket = createServerSocket(getPortNumber(), 50, getBindAddress());
       if (getPortNumber() == 0) {
         s_logger.info("Received inbound port {}", _serverSocket.getLocalPort());
       }
@@ -153,6 +153,19 @@ public abstract class AbstractServerSocketProcess implements Lifecycle, EndPoint
   protected void cleanupPreAccept() {
   }
 
+  /**
+   * Creates the bound server socket that connections are accepted from.
+   * 
+   * @param portNumber the port number, or 0 for any free port
+   * @param backlog the maximum length of the queue of incoming connections
+   * @param bindAddress the local address to bind to, or null for all local addresses
+   * @return the server socket, not null
+   * @throws IOException if the socket cannot be bound
+   */
+  protected ServerSocket createServerSocket(final int portNumber, final int backlog, final InetAddress bindAddress) throws IOException {
+    return new ServerSocket(portNumber, backlog, bindAddress);
+  }
+
   protected ExecutorService getExecutorService() {
     return _executorService;
   }
@@ -141,7 +141,7 @@ public abstract class AbstractSocketProcess implements Lifecycle, EndPointDescri
     InputStream is = null;
     for (InetAddress addr : getInetAddresses()) {
       try {
-        _socket = new Socket();
+        _socket = createSocket();
         _socket.connect(new InetSocketAddress(addr, getPortNumber()), 3000);
         s_logger.debug("Connected to {}:{}", addr, getPortNumber());
         os = _socket.getOutputStream();
@@ -191,6 +191,16 @@ public abstract class AbstractSocketProcess implements Lifecycle, EndPointDescri
     return (e instanceof SocketException) && "Socket closed".equals(e.getMessage());
   }
 
+  /**
+   * Creates the unconnected socket that the remote connection is made with.
+   * 
+   * @return the socket, not null
+   * @throws IOException if the socket cannot be created
+   */
+  protected Socket createSocket() throws IOException {
+    return new Socket();
+  }
+
   protected abstract void socketOpened(Socket socket, BufferedOutputStream os, BufferedInputStream is);
 
   protected void socketClosed() {
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A pool of direct byte buffers of a fixed size. Direct buffers are expensive to allocate and are only reclaimed by the
+ * garbage collector, but the channels can read into and write from them without an intermediate copy, so the NIO
+ * transport acquires them for as long as it has data pending and then releases them for re-use.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ByteBufferPool {
+
+  /**
+   * The default size of the buffers.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+  /**
+   * The default maximum number of buffers kept for re-use.
+   */
+  public static final int DEFAULT_MAXIMUM_POOLED = 1024;
+
+  private final int _bufferSize;
+  private final int _maximumPooled;
+  private final Queue<ByteBuffer> _pool = new ConcurrentLinkedQueue<ByteBuffer>();
+  private final AtomicInteger _pooled = new AtomicInteger();
+  private final AtomicInteger _allocated = new AtomicInteger();
+
+  /**
+   * Creates a pool of {@link #DEFAULT_MAXIMUM_POOLED} buffers of {@link #DEFAULT_BUFFER_SIZE} bytes.
+   */
+  public ByteBufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_MAXIMUM_POOLED);
+  }
+
+  /**
+   * Creates a pool.
+   *
+   * @param bufferSize the size of each buffer in bytes, at least 16
+   * @param maximumPooled the maximum number of released buffers to keep for re-use, not negative
+   */
+  public ByteBufferPool(final int bufferSize, final int maximumPooled) {
+    ArgumentChecker.isTrue(bufferSize >= 16, "bufferSize must be at least 16");
+    ArgumentChecker.notNegative(maximumPooled, "maximumPooled");
+    _bufferSize = bufferSize;
+    _maximumPooled = maximumPooled;
+  }
+
+  /**
+   * Gets the size of the buffers.
+   *
+   * @return the size in bytes
+   */
+  public int getBufferSize() {
+    return _bufferSize;
+  }
+
+  /**
+   * Gets the number of buffers currently held for re-use.
+   *
+   * @return the number of buffers
+   */
+  public int getPooled() {
+    return _pooled.get();
+  }
+
+  /**
+   * Gets the number of buffers allocated by the pool because none were available for re-use.
+   *
+   * @return the number of buffers
+   */
+  public int getAllocated() {
+    return _allocated.get();
+  }
+
+  /**
+   * Acquires a cleared buffer, allocating one if none are available.
+   *
+   * @return the buffer, not null
+   */
+  public ByteBuffer acquire() {
+    final ByteBuffer buffer = _pool.poll();
+    if (buffer != null) {
+      _pooled.decrementAndGet();
+      buffer.clear();
+      return buffer;
+    }
+    _allocated.incrementAndGet();
+    return ByteBuffer.allocateDirect(_bufferSize);
+  }
+
+  /**
+   * Releases a buffer for re-use. The caller must not use the buffer afterwards. Buffers that were not acquired
+   * from a pool of this size are ignored, as are buffers released when the pool is full.
+   *
+   * @param buffer the buffer, not null
+   */
+  public void release(final ByteBuffer buffer) {
+    if (!buffer.isDirect() || (buffer.capacity() != _bufferSize)) {
+      return;
+    }
+    if (_pooled.incrementAndGet() > _maximumPooled) {
+      _pooled.decrementAndGet();
+      return;
+    }
+    _pool.add(buffer);
+  }
+
+}
@@ -0,0 +1,494 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.wire.FudgeDataOutputStreamWriter;
+import org.fudgemsg.wire.FudgeMsgWriter;
+import org.fudgemsg.wire.FudgeRuntimeIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * The I/O of one non-blocking socket channel carrying Fudge message envelopes, driven by a reactor from a
+ * {@link NioReactorPool}.
+ * <p>
+ * Reads are framed by the size in each envelope header; complete envelopes are decoded directly from the read buffer,
+ * which is taken from the buffer pool only while a partial envelope is pending. A message larger than the pooled
+ * buffers is assembled in a buffer of its own.
+ * <p>
+ * Messages are encoded by the sending thread and appended to the direct buffers of a write queue, so that adjacent
+ * small messages share buffers. Whichever thread finds no write in progress drains the queue with gathering writes
+ * until it is empty or the socket buffer is full; in the latter case the reactor completes the write when the channel
+ * becomes writable. Other senders return once their message is queued.
+ */
+/* package */ abstract class NioFudgeChannel implements NioReactorPool.Handler {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioFudgeChannel.class);
+
+  /**
+   * Size of the Fudge envelope header - processing directives, schema version, taxonomy and size.
+   */
+  private static final int HEADER_SIZE = 8;
+  /**
+   * Offset of the size of the envelope, including the header, within the header.
+   */
+  private static final int SIZE_OFFSET = 4;
+  /**
+   * Maximum number of buffers passed to a single gathering write.
+   */
+  private static final int MAX_GATHER = 64;
+
+  private static final ThreadLocal<EncodingBuffer> s_encodingBuffer = new ThreadLocal<EncodingBuffer>() {
+    @Override
+    protected EncodingBuffer initialValue() {
+      return new EncodingBuffer();
+    }
+  };
+
+  private final FudgeContext _fudgeContext;
+  private final SocketChannel _channel;
+  private final NioReactorPool.Reactor _reactor;
+  private final ByteBufferPool _bufferPool;
+  private final String _description;
+
+  private SelectionKey _key;
+  // Only accessed by the reactor thread, and in fill mode between reads
+  private ByteBuffer _readBuffer;
+
+  // Guarded by _writeLock; buffers in fill mode, the last possibly partly filled
+  private final Deque<ByteBuffer> _writeQueue = new ArrayDeque<ByteBuffer>();
+  private boolean _writing;
+  private boolean _writeInterest;
+  private boolean _closed;
+  private final Object _writeLock = new Object();
+  // Only accessed by the thread holding the _writing flag; buffers in drain mode
+  private final ByteBuffer[] _gather = new ByteBuffer[MAX_GATHER];
+  private int _gatherStart;
+  private int _gatherEnd;
+
+  protected NioFudgeChannel(final FudgeContext fudgeContext, final SocketChannel channel, final NioReactorPool reactorPool) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(channel, "channel");
+    ArgumentChecker.notNull(reactorPool, "reactorPool");
+    _fudgeContext = fudgeContext;
+    _channel = channel;
+    _reactor = reactorPool.nextReactor();
+    _bufferPool = reactorPool.getBufferPool();
+    _description = String.valueOf(channel.socket().getRemoteSocketAddress());
+  }
+
+  protected FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  protected String getDescription() {
+    return _description;
+  }
+
+  /**
+   * Switches the channel to non-blocking mode and registers it with its reactor for reads.
+   *
+   * @throws IOException if the channel cannot be made non-blocking
+   */
+  public void register() throws IOException {
+    _channel.configureBlocking(false);
+    _reactor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          synchronized (_writeLock) {
+            if (_closed) {
+              return;
+            }
+            _key = _reactor.register(_channel, _writeInterest ? (SelectionKey.OP_READ | SelectionKey.OP_WRITE) : SelectionKey.OP_READ,
+                NioFudgeChannel.this);
+          }
+        } catch (IOException e) {
+          failed("Unable to register channel", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Closes the channel without notifying {@link #channelFailed}. Messages still queued for writing are discarded.
+   */
+  public void close() {
+    closeChannel();
+  }
+
+  /**
+   * Closes the channel.
+   *
+   * @return true if the channel was closed by this call, false if it was already closed
+   */
+  private boolean closeChannel() {
+    synchronized (_writeLock) {
+      if (_closed) {
+        return false;
+      }
+      _closed = true;
+      releaseWriteQueue();
+    }
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      s_logger.warn("Unable to close channel to " + _description, e);
+    }
+    return true;
+  }
+
+  public boolean isClosed() {
+    synchronized (_writeLock) {
+      return _closed;
+    }
+  }
+
+  /**
+   * Called by the reactor thread with each complete envelope read.
+   *
+   * @param envelope the envelope, not null
+   */
+  protected abstract void envelopeReceived(FudgeMsgEnvelope envelope);
+
+  /**
+   * Called once when the channel is closed because the remote end closed it or an I/O operation failed.
+   *
+   * @param cause the exception, null if the remote end closed the connection
+   */
+  protected abstract void channelFailed(Exception cause);
+
+  //-------------------------------------------------------------------------
+  /**
+   * Queues a message for writing, and writes it if no other thread is doing so.
+   *
+   * @param message the message, not null
+   * @throws FudgeRuntimeIOException if the channel is closed or the write fails
+   */
+  public void send(final FudgeMsg message) {
+    final EncodingBuffer encoded = s_encodingBuffer.get();
+    encoded.reset();
+    final FudgeMsgWriter writer = new FudgeMsgWriter(new FudgeDataOutputStreamWriter(_fudgeContext, encoded));
+    writer.writeMessage(message);
+    writer.flush();
+    synchronized (_writeLock) {
+      if (_closed) {
+        throw new FudgeRuntimeIOException(new IOException("Channel to " + _description + " is closed"));
+      }
+      enqueue(encoded.getBuffer(), encoded.size());
+      if (_writing) {
+        return;
+      }
+      _writing = true;
+    }
+    try {
+      drain();
+    } catch (IOException e) {
+      failed("Unable to write message", e);
+      throw new FudgeRuntimeIOException(e);
+    }
+  }
+
+  // Must hold _writeLock
+  private void enqueue(final byte[] data, int length) {
+    int offset = 0;
+    ByteBuffer buffer = _writeQueue.peekLast();
+    while (length > 0) {
+      if ((buffer == null) || !buffer.hasRemaining()) {
+        buffer = _bufferPool.acquire();
+        _writeQueue.addLast(buffer);
+      }
+      final int count = Math.min(length, buffer.remaining());
+      buffer.put(data, offset, count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Writes queued data until the queue is empty or the socket would block. Must only be called by the thread that set
+   * the {@code _writing} flag, which is cleared when the queue is empty.
+   *
+   * @return true if the queue is empty, false if the write must be resumed when the channel is writable
+   * @throws IOException if the write fails
+   */
+  private boolean drain() throws IOException {
+    while (true) {
+      if (_gatherStart == _gatherEnd) {
+        synchronized (_writeLock) {
+          if (_closed) {
+            _writing = false;
+            return true;
+          }
+          if (_writeQueue.isEmpty()) {
+            _writing = false;
+            if (_writeInterest) {
+              _writeInterest = false;
+              updateInterest();
+            }
+            return true;
+          }
+          _gatherStart = 0;
+          _gatherEnd = 0;
+          while ((_gatherEnd < MAX_GATHER) && !_writeQueue.isEmpty()) {
+            final ByteBuffer buffer = _writeQueue.removeFirst();
+            buffer.flip();
+            _gather[_gatherEnd++] = buffer;
+          }
+        }
+      }
+      _channel.write(_gather, _gatherStart, _gatherEnd - _gatherStart);
+      while ((_gatherStart < _gatherEnd) && !_gather[_gatherStart].hasRemaining()) {
+        _bufferPool.release(_gather[_gatherStart]);
+        _gather[_gatherStart++] = null;
+      }
+      if (_gatherStart < _gatherEnd) {
+        // Socket buffer is full; the reactor will continue when it drains
+        synchronized (_writeLock) {
+          if (!_writeInterest) {
+            _writeInterest = true;
+            updateInterest();
+          }
+        }
+        return false;
+      }
+    }
+  }
+
+  // Must hold _writeLock
+  private void updateInterest() {
+    if (_reactor.isReactorThread()) {
+      setInterestOps();
+    } else {
+      _reactor.execute(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (_writeLock) {
+            setInterestOps();
+          }
+        }
+      });
+    }
+  }
+
+  // Must hold _writeLock and be called on the reactor thread
+  private void setInterestOps() {
+    if ((_key != null) && _key.isValid()) {
+      _key.interestOps(_writeInterest ? (SelectionKey.OP_READ | SelectionKey.OP_WRITE) : SelectionKey.OP_READ);
+    }
+  }
+
+  // Must hold _writeLock
+  private void releaseWriteQueue() {
+    ByteBuffer buffer = _writeQueue.pollFirst();
+    while (buffer != null) {
+      _bufferPool.release(buffer);
+      buffer = _writeQueue.pollFirst();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public void ready(final SelectionKey key) {
+    if (key.isWritable()) {
+      synchronized (_writeLock) {
+        // The write interest is only set by the thread that gave up the write to the reactor
+        if (!_writeInterest) {
+          return;
+        }
+      }
+      try {
+        drain();
+      } catch (IOException e) {
+        failed("Unable to write message", e);
+        return;
+      }
+    }
+    if (key.isValid() && key.isReadable()) {
+      try {
+        read();
+      } catch (IOException e) {
+        failed("Unable to read message", e);
+      }
+    }
+  }
+
+  @Override
+  public void reactorStopped() {
+    s_logger.info("Reactor stopped - closing channel to {}", _description);
+    close();
+  }
+
+  private void read() throws IOException {
+    ByteBuffer buffer = _readBuffer;
+    if (buffer == null) {
+      buffer = _bufferPool.acquire();
+    }
+    final int count = _channel.read(buffer);
+    if (count < 0) {
+      _readBuffer = null;
+      _bufferPool.release(buffer);
+      failed("End of stream", null);
+      return;
+    }
+    buffer.flip();
+    while (buffer.remaining() >= HEADER_SIZE) {
+      final int size = buffer.getInt(buffer.position() + SIZE_OFFSET);
+      if (size < HEADER_SIZE) {
+        throw new IOException("Invalid envelope size " + size + " from " + _description);
+      }
+      if (buffer.remaining() < size) {
+        if (size > buffer.capacity()) {
+          // Too big for the current buffer; assemble the envelope in its own buffer
+          final ByteBuffer large = ByteBuffer.allocate(size);
+          large.put(buffer);
+          _bufferPool.release(buffer);
+          _readBuffer = large;
+          return;
+        }
+        break;
+      }
+      final ByteBuffer envelope = buffer.slice();
+      envelope.limit(size);
+      buffer.position(buffer.position() + size);
+      try {
+        dispatch(envelope);
+      } catch (RuntimeException e) {
+        // The rest of the stream can't be trusted once an envelope fails to decode
+        _readBuffer = null;
+        _bufferPool.release(buffer);
+        failed("Unable to decode message", e);
+        return;
+      }
+    }
+    if (buffer.hasRemaining()) {
+      buffer.compact();
+      _readBuffer = buffer;
+    } else {
+      _readBuffer = null;
+      _bufferPool.release(buffer);
+    }
+  }
+
+  /**
+   * Decodes an envelope and passes it to {@link #envelopeReceived}. Exceptions from the latter are logged.
+   *
+   * @param data the encoded envelope, not null
+   * @throws RuntimeException if the envelope cannot be decoded
+   */
+  private void dispatch(final ByteBuffer data) {
+    final FudgeMsgEnvelope envelope = _fudgeContext.createMessageReader(new ByteBufferInputStream(data)).nextMessageEnvelope();
+    try {
+      envelopeReceived(envelope);
+    } catch (RuntimeException e) {
+      s_logger.warn("Unable to dispatch message from {}", _description, e);
+    }
+  }
+
+  private void failed(final String message, final Exception cause) {
+    if (!closeChannel()) {
+      return;
+    }
+    if (cause == null) {
+      s_logger.info("{} - closed channel to {}", message, _description);
+    } else {
+      s_logger.warn(message + " - closed channel to " + _description, cause);
+    }
+    channelFailed(cause);
+  }
+
+  @Override
+  public String toString() {
+    return _description;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Reusable per-thread buffer that messages are encoded into before being copied to the write queue.
+   */
+  private static final class EncodingBuffer extends ByteArrayOutputStream {
+
+    private static final int MAX_RETAINED = 1024 * 1024;
+
+    private EncodingBuffer() {
+      super(1024);
+    }
+
+    @Override
+    public void reset() {
+      if (buf.length > MAX_RETAINED) {
+        buf = new byte[1024];
+      }
+      super.reset();
+    }
+
+    private byte[] getBuffer() {
+      return buf;
+    }
+
+  }
+
+  /**
+   * Reads the remaining bytes of a buffer.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer _buffer;
+
+    private ByteBufferInputStream(final ByteBuffer buffer) {
+      _buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      if (!_buffer.hasRemaining()) {
+        return -1;
+      }
+      return _buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!_buffer.hasRemaining()) {
+        return -1;
+      }
+      final int count = Math.min(len, _buffer.remaining());
+      _buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(final long n) {
+      final int count = (int) Math.max(0, Math.min(n, _buffer.remaining()));
+      _buffer.position(_buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return _buffer.remaining();
+    }
+
+  }
+
+}
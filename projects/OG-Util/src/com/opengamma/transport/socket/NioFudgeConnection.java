@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.wire.FudgeRuntimeIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionStateListener;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.FudgeMessageSender;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A FudgeConnection over a non-blocking socket channel, serviced by a shared {@link NioReactorPool} rather than a
+ * thread of its own. It is a drop-in alternative to {@link SocketFudgeConnection}, connecting to the same servers.
+ */
+public class NioFudgeConnection extends AbstractSocketProcess implements FudgeConnection {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioFudgeConnection.class);
+
+  private final FudgeContext _fudgeContext;
+  private final NioReactorPool _reactorPool;
+  private final ExecutorService _executorService;
+
+  private volatile NioFudgeChannel _channel;
+  private volatile FudgeMessageReceiver _receiver;
+  private volatile FudgeConnectionStateListener _stateListener;
+
+  /**
+   * Prevents re-entrant calls to startIfNecessary if a message is sent as part of a connection reset callback.
+   */
+  private final ThreadLocal<Boolean> _starting = new ThreadLocal<Boolean>();
+
+  private final FudgeMessageSender _sender = new FudgeMessageSender() {
+
+    @Override
+    public FudgeContext getFudgeContext() {
+      return _fudgeContext;
+    }
+
+    @Override
+    public void send(final FudgeMsg message) {
+      if (_starting.get() == null) {
+        _starting.set(Boolean.TRUE);
+        try {
+          startIfNecessary();
+        } catch (OpenGammaRuntimeException e) {
+          if (e.getCause() instanceof IOException) {
+            notifyConnectionFailed((IOException) e.getCause());
+          }
+          throw e;
+        } finally {
+          _starting.remove();
+        }
+      }
+      final NioFudgeChannel channel = _channel;
+      if (channel == null) {
+        throw new FudgeRuntimeIOException(new IOException("Not connected to " + getInetAddresses() + ":" + getPortNumber()));
+      }
+      channel.send(message);
+    }
+
+  };
+
+  /**
+   * Creates a connection where received messages are processed inline by the reactor thread.
+   *
+   * @param fudgeContext the Fudge context, not null
+   * @param reactorPool the reactors to service the connection, not null
+   */
+  public NioFudgeConnection(final FudgeContext fudgeContext, final NioReactorPool reactorPool) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(reactorPool, "reactorPool");
+    _fudgeContext = fudgeContext;
+    _reactorPool = reactorPool;
+    _executorService = null;
+  }
+
+  /**
+   * Creates a connection where received messages are processed using the given {@link ExecutorService}.
+   *
+   * @param fudgeContext the Fudge context, not null
+   * @param reactorPool the reactors to service the connection, not null
+   * @param executorService an executor service to run received messages via, not null
+   */
+  public NioFudgeConnection(final FudgeContext fudgeContext, final NioReactorPool reactorPool, final ExecutorService executorService) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(reactorPool, "reactorPool");
+    ArgumentChecker.notNull(executorService, "executorService");
+    _fudgeContext = fudgeContext;
+    _reactorPool = reactorPool;
+    _executorService = executorService;
+  }
+
+  /**
+   * Note that the message sender may be called concurrently. The message is written by the calling thread if no other
+   * write is in progress, otherwise it is queued and the call returns immediately. Thus successful completion of a
+   * {@link FudgeMessageSender#send} does not guarantee message arrival or that it has even been passed to the transport.
+   *
+   * @return the Fudge message sender component of the connection
+   */
+  @Override
+  public FudgeMessageSender getFudgeMessageSender() {
+    return _sender;
+  }
+
+  @Override
+  public void setFudgeMessageReceiver(final FudgeMessageReceiver receiver) {
+    _receiver = receiver;
+  }
+
+  @Override
+  public void setConnectionStateListener(final FudgeConnectionStateListener listener) {
+    _stateListener = listener;
+  }
+
+  /**
+   * Creates the socket of a channel, so that once connected the channel can be registered with the reactors.
+   *
+   * @return the socket, not null
+   * @throws IOException if the channel cannot be opened
+   */
+  @Override
+  protected Socket createSocket() throws IOException {
+    final SocketChannel socketChannel = SocketChannel.open();
+    socketChannel.socket().setTcpNoDelay(true);
+    return socketChannel.socket();
+  }
+
+  /**
+   * Registers the channel of the connected socket with the reactors. The streams are not used.
+   *
+   * @param socket the connected socket, created by {@link #createSocket}
+   * @param os the output stream, not used
+   * @param is the input stream, not used
+   */
+  @Override
+  protected synchronized void socketOpened(final Socket socket, final BufferedOutputStream os, final BufferedInputStream is) {
+    final NioFudgeChannel channel = new Channel(socket.getChannel());
+    try {
+      channel.register();
+    } catch (IOException e) {
+      try {
+        socket.close();
+      } catch (IOException e2) {
+        // Ignore
+      }
+      throw new OpenGammaRuntimeException("Unable to register connection to " + socket.getRemoteSocketAddress(), e);
+    }
+    _channel = channel;
+    final FudgeConnectionStateListener stateListener = _stateListener;
+    if (stateListener != null) {
+      stateListener.connectionReset(this);
+    }
+  }
+
+  @Override
+  protected synchronized void socketClosed() {
+    final NioFudgeChannel channel = _channel;
+    if (channel != null) {
+      _channel = null;
+      channel.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("FudgeConnection to ");
+    sb.append(getInetAddresses());
+    sb.append(':');
+    sb.append(getPortNumber());
+    if (!isRunning()) {
+      sb.append(" (not connected)");
+    }
+    return sb.toString();
+  }
+
+  protected void notifyConnectionFailed(final Exception e) {
+    final FudgeConnectionStateListener stateListener = _stateListener;
+    if (stateListener != null) {
+      try {
+        stateListener.connectionFailed(this, e);
+      } catch (Exception e2) {
+        s_logger.warn("Error notifying state listener of connection failure", e2);
+      }
+    }
+  }
+
+  private void dispatch(final FudgeMessageReceiver receiver, final FudgeMsgEnvelope envelope) {
+    try {
+      receiver.messageReceived(_fudgeContext, envelope);
+    } catch (Exception e) {
+      s_logger.warn("Unable to dispatch message to receiver", e);
+    }
+  }
+
+  /**
+   * The channel of the current connection.
+   */
+  private final class Channel extends NioFudgeChannel {
+
+    private Channel(final SocketChannel socketChannel) {
+      super(_fudgeContext, socketChannel, _reactorPool);
+    }
+
+    @Override
+    protected void envelopeReceived(final FudgeMsgEnvelope envelope) {
+      final FudgeMessageReceiver receiver = _receiver;
+      if (receiver != null) {
+        if (_executorService != null) {
+          _executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+              dispatch(receiver, envelope);
+            }
+          });
+        } else {
+          dispatch(receiver, envelope);
+        }
+      }
+    }
+
+    @Override
+    protected void channelFailed(final Exception cause) {
+      synchronized (NioFudgeConnection.this) {
+        if (_channel != this) {
+          // Already replaced or stopped
+          return;
+        }
+        stop();
+      }
+      if (cause != null) {
+        notifyConnectionFailed(cause);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.ThreadUtils;
+
+/**
+ * A small, fixed pool of reactor threads, each multiplexing the I/O of many non-blocking socket channels through a
+ * {@link Selector}. Channels are assigned to the reactors in turn. This replaces the thread per connection of the
+ * stream based socket transport, so that a process can hold thousands of connections open with a handful of threads.
+ * <p>
+ * Receivers that are called inline by the reactor thread hold up every other channel assigned to that reactor, so
+ * should return quickly or be given an executor service.
+ * <p>
+ * The pool may be shared by any number of {@link NioFudgeConnection} and {@link NioServerSocketFudgeConnectionReceiver}
+ * instances, and must be started before they are.
+ */
+public class NioReactorPool implements Lifecycle {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioReactorPool.class);
+
+  private final int _size;
+  private final ByteBufferPool _bufferPool;
+  private final AtomicInteger _next = new AtomicInteger();
+  private Reactor[] _reactors;
+
+  /**
+   * Creates a pool with one reactor per available processor, using a default buffer pool.
+   */
+  public NioReactorPool() {
+    this(Runtime.getRuntime().availableProcessors(), new ByteBufferPool());
+  }
+
+  /**
+   * Creates a pool.
+   *
+   * @param size the number of reactor threads, greater than zero
+   * @param bufferPool the pool of buffers used for reading and writing by the channels, not null
+   */
+  public NioReactorPool(final int size, final ByteBufferPool bufferPool) {
+    ArgumentChecker.notNegativeOrZero(size, "size");
+    ArgumentChecker.notNull(bufferPool, "bufferPool");
+    _size = size;
+    _bufferPool = bufferPool;
+  }
+
+  /**
+   * Gets the number of reactor threads.
+   *
+   * @return the number of threads
+   */
+  public int getSize() {
+    return _size;
+  }
+
+  /**
+   * Gets the pool of buffers used by the channels.
+   *
+   * @return the buffer pool, not null
+   */
+  public ByteBufferPool getBufferPool() {
+    return _bufferPool;
+  }
+
+  /**
+   * Gets the reactor to assign the next channel to.
+   *
+   * @return the reactor, not null
+   */
+  /* package */ synchronized Reactor nextReactor() {
+    if (_reactors == null) {
+      throw new IllegalStateException("Reactor pool has not been started");
+    }
+    return _reactors[(_next.getAndIncrement() & Integer.MAX_VALUE) % _size];
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return _reactors != null;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (_reactors != null) {
+      s_logger.warn("Already started");
+      return;
+    }
+    final Reactor[] reactors = new Reactor[_size];
+    try {
+      for (int i = 0; i < _size; i++) {
+        reactors[i] = new Reactor(Selector.open(), "NIO reactor " + i);
+      }
+    } catch (IOException e) {
+      for (Reactor reactor : reactors) {
+        if (reactor != null) {
+          reactor.close();
+        }
+      }
+      throw new OpenGammaRuntimeException("Unable to open selector", e);
+    }
+    for (Reactor reactor : reactors) {
+      reactor.start();
+    }
+    _reactors = reactors;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (_reactors == null) {
+      s_logger.warn("Already stopped");
+      return;
+    }
+    for (Reactor reactor : _reactors) {
+      reactor.terminate();
+    }
+    for (Reactor reactor : _reactors) {
+      reactor.join();
+    }
+    _reactors = null;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Callback from a reactor when the channel registered with a key is ready for I/O.
+   */
+  /* package */ interface Handler {
+
+    /**
+     * Called by the reactor thread when the channel is ready for at least one of its operations of interest.
+     *
+     * @param key the selection key, not null
+     */
+    void ready(SelectionKey key);
+
+    /**
+     * Called by the reactor thread when the reactor is stopped with the channel still registered.
+     */
+    void reactorStopped();
+
+  }
+
+  /**
+   * A reactor thread and its selector. Other threads may only change the registrations of the selector through
+   * {@link #execute}, as the calls would otherwise block until the reactor thread next returned from the select.
+   */
+  /* package */ static final class Reactor implements Runnable {
+
+    private final Selector _selector;
+    private final Thread _thread;
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean _terminated;
+
+    private Reactor(final Selector selector, final String name) {
+      _selector = selector;
+      _thread = new Thread(this, name);
+      _thread.setDaemon(true);
+    }
+
+    private void start() {
+      _thread.start();
+    }
+
+    private void terminate() {
+      _terminated = true;
+      _selector.wakeup();
+    }
+
+    private void join() {
+      ThreadUtils.safeJoin(_thread, 60 * 1000L);
+    }
+
+    /**
+     * Tests if the caller is this reactor's thread.
+     *
+     * @return true if called from the reactor thread
+     */
+    /* package */ boolean isReactorThread() {
+      return Thread.currentThread() == _thread;
+    }
+
+    /**
+     * Runs a task on the reactor thread before its next select, waking the selector if necessary.
+     *
+     * @param task the task, not null
+     */
+    /* package */ void execute(final Runnable task) {
+      _tasks.add(task);
+      if (!isReactorThread()) {
+        _selector.wakeup();
+      }
+    }
+
+    /**
+     * Registers a channel with the selector. Must be called on the reactor thread.
+     *
+     * @param channel the channel, in non-blocking mode, not null
+     * @param ops the initial operations of interest
+     * @param handler the handler to call when the channel is ready, not null
+     * @return the key, not null
+     * @throws IOException if the channel is closed
+     */
+    /* package */ SelectionKey register(final SelectableChannel channel, final int ops, final Handler handler) throws IOException {
+      return channel.register(_selector, ops, handler);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!_terminated) {
+          runTasks();
+          _selector.select();
+          final Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid()) {
+              try {
+                ((Handler) key.attachment()).ready(key);
+              } catch (RuntimeException e) {
+                s_logger.warn("Unexpected exception from channel handler", e);
+              }
+            }
+          }
+        }
+      } catch (IOException e) {
+        s_logger.error("Selector failed - terminating reactor", e);
+      } catch (ClosedSelectorException e) {
+        s_logger.error("Selector closed - terminating reactor", e);
+      } finally {
+        runTasks();
+        close();
+      }
+    }
+
+    private void runTasks() {
+      Runnable task = _tasks.poll();
+      while (task != null) {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          s_logger.warn("Unexpected exception from reactor task", e);
+        }
+        task = _tasks.poll();
+      }
+    }
+
+    private void close() {
+      try {
+        for (SelectionKey key : new ArrayList<SelectionKey>(_selector.keys())) {
+          if (key.isValid()) {
+            ((Handler) key.attachment()).reactorStopped();
+          }
+        }
+      } catch (ClosedSelectorException e) {
+        // Already closed
+      }
+      try {
+        _selector.close();
+      } catch (IOException e) {
+        s_logger.warn("Unable to close selector", e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeConnectionStateListener;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.FudgeMessageSender;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Listens on a ServerSocketChannel and passes FudgeConnections to an underlying FudgeConnectionReceiver. Connections
+ * are accepted as by {@link ServerSocketFudgeConnectionReceiver}, but are then serviced by a shared
+ * {@link NioReactorPool} rather than a thread per connection. Clients may use either {@link SocketFudgeConnection} or
+ * {@link NioFudgeConnection}.
+ */
+public class NioServerSocketFudgeConnectionReceiver extends AbstractServerSocketProcess {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(NioServerSocketFudgeConnectionReceiver.class);
+
+  private final FudgeConnectionReceiver _underlying;
+  private final FudgeContext _fudgeContext;
+  private final NioReactorPool _reactorPool;
+
+  private final Set<Connection> _connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+
+  public NioServerSocketFudgeConnectionReceiver(final FudgeContext fudgeContext, final FudgeConnectionReceiver underlying,
+      final NioReactorPool reactorPool) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(reactorPool, "reactorPool");
+    _fudgeContext = fudgeContext;
+    _underlying = underlying;
+    _reactorPool = reactorPool;
+  }
+
+  public NioServerSocketFudgeConnectionReceiver(final FudgeContext fudgeContext, final FudgeConnectionReceiver underlying,
+      final NioReactorPool reactorPool, final ExecutorService executorService) {
+    super(executorService);
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(reactorPool, "reactorPool");
+    _fudgeContext = fudgeContext;
+    _underlying = underlying;
+    _reactorPool = reactorPool;
+  }
+
+  public FudgeContext getFudgeContext() {
+    return _fudgeContext;
+  }
+
+  public FudgeConnectionReceiver getUnderlying() {
+    return _underlying;
+  }
+
+  public NioReactorPool getReactorPool() {
+    return _reactorPool;
+  }
+
+  /**
+   * Gets the number of connections currently open.
+   *
+   * @return the number of connections
+   */
+  public int getConnectionCount() {
+    return _connections.size();
+  }
+
+  /**
+   * Binds a server socket channel, left in blocking mode for the accept thread. The sockets it accepts are backed by
+   * channels which are then switched to non-blocking mode.
+   *
+   * @param portNumber the port number, or 0 for any free port
+   * @param backlog the maximum length of the queue of incoming connections
+   * @param bindAddress the local address to bind to, or null for all local addresses
+   * @return the server socket, not null
+   * @throws IOException if the socket cannot be bound
+   */
+  @Override
+  protected ServerSocket createServerSocket(final int portNumber, final int backlog, final InetAddress bindAddress) throws IOException {
+    final ServerSocketChannel channel = ServerSocketChannel.open();
+    try {
+      channel.socket().bind(new InetSocketAddress(bindAddress, portNumber), backlog);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel.socket();
+  }
+
+  @Override
+  protected void socketOpened(final Socket socket) {
+    ArgumentChecker.notNull(socket, "socket");
+    s_logger.info("Opened socket to remote side {}", socket.getRemoteSocketAddress());
+    final SocketChannel socketChannel = socket.getChannel();
+    try {
+      socket.setTcpNoDelay(true);
+      final Connection connection = new Connection(socketChannel);
+      _connections.add(connection);
+      connection.register();
+    } catch (IOException e) {
+      s_logger.warn("Unable to register channel for socket {}", new Object[] {socket}, e);
+      try {
+        socket.close();
+      } catch (IOException e2) {
+        // Ignore
+      }
+    }
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+    final List<Connection> connections = new ArrayList<Connection>(_connections);
+    _connections.clear();
+    for (Connection connection : connections) {
+      connection.close();
+    }
+  }
+
+  private void dispatchReceiver(final FudgeMessageReceiver receiver, final FudgeMsgEnvelope envelope) {
+    try {
+      receiver.messageReceived(getFudgeContext(), envelope);
+    } catch (Exception e) {
+      s_logger.warn("Unable to dispatch message to receiver", e);
+    }
+  }
+
+  /**
+   * An accepted connection.
+   */
+  private final class Connection extends NioFudgeChannel implements FudgeConnection, FudgeMessageSender {
+
+    private volatile FudgeMessageReceiver _receiver;
+    private volatile FudgeConnectionStateListener _listener;
+
+    private Connection(final SocketChannel socketChannel) {
+      super(NioServerSocketFudgeConnectionReceiver.this.getFudgeContext(), socketChannel, _reactorPool);
+    }
+
+    @Override
+    protected void envelopeReceived(final FudgeMsgEnvelope envelope) {
+      final FudgeMessageReceiver receiver = _receiver;
+      if (receiver != null) {
+        final ExecutorService executorService = getExecutorService();
+        if (executorService != null) {
+          executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+              dispatchReceiver(receiver, envelope);
+            }
+          });
+        } else {
+          dispatchReceiver(receiver, envelope);
+        }
+      } else {
+        try {
+          getUnderlying().connectionReceived(getFudgeContext(), envelope, this);
+        } catch (Exception e) {
+          s_logger.warn("Unable to dispatch connection to receiver", e);
+        }
+      }
+    }
+
+    @Override
+    protected void channelFailed(final Exception cause) {
+      _connections.remove(this);
+      final FudgeConnectionStateListener listener = _listener;
+      if (listener != null) {
+        listener.connectionFailed(this, cause);
+      }
+    }
+
+    @Override
+    public void close() {
+      _connections.remove(this);
+      super.close();
+    }
+
+    // FudgeConnection
+
+    @Override
+    public FudgeMessageSender getFudgeMessageSender() {
+      return this;
+    }
+
+    @Override
+    public void setFudgeMessageReceiver(final FudgeMessageReceiver receiver) {
+      _receiver = receiver;
+    }
+
+    @Override
+    public void setConnectionStateListener(final FudgeConnectionStateListener listener) {
+      _listener = listener;
+    }
+
+    // FudgeMessageSender
+
+    @Override
+    public FudgeContext getFudgeContext() {
+      return NioServerSocketFudgeConnectionReceiver.this.getFudgeContext();
+    }
+
+    @Override
+    public String toString() {
+      return "FudgeConnection from " + getDescription();
+    }
+
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock for stamping events whose latency is to be measured across threads and processes.
+ * <p>
+ * {@link System#currentTimeMillis()} is too coarse to time individual ticks and {@link System#nanoTime()}
+ * means nothing outside the JVM that read it. This clock is anchored to the wall clock and advances with
+ * {@code nanoTime} from there, so timestamps from different processes can be compared to within the
+ * accuracy of the hosts' clock synchronization.
+ * <p>
+ * The two clocks drift apart, and the wall clock may be stepped by time synchronization, so the clock is
+ * compared with the wall clock every second and anchored again whenever they differ by more than
+ * {@link #MAX_DRIFT_MILLIS}. The time jumps when this happens, so a latency measured across it may be out
+ * by up to the drift corrected. Between checks it may run up to the bound, plus any step in the wall
+ * clock, away from it.
+ */
+public final class LatencyClock {
+
+  /**
+   * The largest difference from the wall clock, in milliseconds, tolerated before anchoring again.
+   */
+  public static final long MAX_DRIFT_MILLIS = 10;
+
+  private static final long MAX_DRIFT_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_DRIFT_MILLIS);
+  private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static volatile Anchor s_anchor = new Anchor(System.currentTimeMillis() * 1000000L, System.nanoTime());
+
+  /**
+   * Restricted constructor.
+   */
+  private LatencyClock() {
+  }
+
+  /**
+   * Gets the current time.
+   *
+   * @return nanoseconds since the UTC epoch, always positive
+   */
+  public static long currentTimeNanos() {
+    final long nanoTime = System.nanoTime();
+    Anchor anchor = s_anchor;
+    if (nanoTime - anchor._checkedNanoTime > CHECK_INTERVAL_NANOS) {
+      anchor = check(anchor, nanoTime);
+    }
+    return anchor._epochNanos + (nanoTime - anchor._nanoTime);
+  }
+
+  private static synchronized Anchor check(final Anchor anchor, final long nanoTime) {
+    if (s_anchor != anchor) {
+      // Checked by another thread
+      return s_anchor;
+    }
+    final long wallClockNanos = System.currentTimeMillis() * 1000000L;
+    final long drift = anchor._epochNanos + (nanoTime - anchor._nanoTime) - wallClockNanos;
+    final Anchor next;
+    if (Math.abs(drift) > MAX_DRIFT_NANOS) {
+      next = new Anchor(wallClockNanos, nanoTime);
+    } else {
+      next = new Anchor(anchor._epochNanos, anchor._nanoTime, nanoTime);
+    }
+    s_anchor = next;
+    return next;
+  }
+
+  /**
+   * A wall clock time and the {@code nanoTime} read with it.
+   */
+  private static final class Anchor {
+
+    private final long _epochNanos;
+    private final long _nanoTime;
+    private final long _checkedNanoTime;
+
+    private Anchor(final long epochNanos, final long nanoTime) {
+      this(epochNanos, nanoTime, nanoTime);
+    }
+
+    private Anchor(final long epochNanos, final long nanoTime, final long checkedNanoTime) {
+      _epochNanos = epochNanos;
+      _nanoTime = nanoTime;
+      _checkedNanoTime = checkedNanoTime;
+    }
+
+  }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Histogram of latencies, in nanoseconds, that can be recorded to from many threads without locking.
+ * <p>
+ * The buckets are log-linear in the manner of an HDR histogram. Values below 64 are counted exactly.
+ * Above that each power of two is split into 32 equal buckets, so any value reported is within about
+ * 3% of the values recorded, whatever their magnitude, with a fixed footprint of under 16kB.
+ * <p>
+ * Recording is a couple of atomic increments. Reading is not atomic with respect to recording so
+ * the figures read while values are being recorded may be very slightly inconsistent with each other.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT_BUCKETS = 2 * SUB_BUCKETS;
+  private static final int EXACT_BITS = SUB_BUCKET_BITS + 1;
+  private static final int BUCKETS = EXACT_BUCKETS + (63 - EXACT_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong _count = new AtomicLong();
+  private final AtomicLong _total = new AtomicLong();
+  private final AtomicLong _max = new AtomicLong();
+
+  /**
+   * Records a latency. Negative values, for example from clocks on different hosts being slightly
+   * out of step, are recorded as zero.
+   *
+   * @param nanos  the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    _counts.incrementAndGet(getBucket(nanos));
+    _total.addAndGet(nanos);
+    long max = _max.get();
+    while (nanos > max && !_max.compareAndSet(max, nanos)) {
+      max = _max.get();
+    }
+    _count.incrementAndGet();
+  }
+
+  /**
+   * Discards everything recorded so far.
+   */
+  public void reset() {
+    _count.set(0);
+    for (int i = 0; i < BUCKETS; i++) {
+      _counts.set(i, 0);
+    }
+    _total.set(0);
+    _max.set(0);
+  }
+
+  /**
+   * Gets the number of latencies recorded.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return _count.get();
+  }
+
+  /**
+   * Gets the mean latency.
+   *
+   * @return the mean in nanoseconds, zero if nothing has been recorded
+   */
+  public double getMean() {
+    final long count = getCount();
+    return (count > 0) ? (double) _total.get() / (double) count : 0;
+  }
+
+  /**
+   * Gets the largest latency recorded.
+   *
+   * @return the maximum in nanoseconds, exact, zero if nothing has been recorded
+   */
+  public long getMax() {
+    return _max.get();
+  }
+
+  /**
+   * Gets the latency at or below which a given percentage of the recorded latencies fall.
+   *
+   * @param percentile  the percentile, from 0 to 100
+   * @return the latency in nanoseconds, the highest value equivalent to the bucket it falls in,
+   *  zero if nothing has been recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    ArgumentChecker.isTrue(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+    final long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    final long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    final long max = getMax();
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += _counts.get(i);
+      if (seen >= target) {
+        return Math.min(getBucketUpperBound(i), max);
+      }
+    }
+    return max;
+  }
+
+  //-------------------------------------------------------------------------
+  /*package*/ static int getBucket(final long nanos) {
+    if (nanos < EXACT_BUCKETS) {
+      return (int) nanos;
+    }
+    final int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+    return EXACT_BUCKETS + (magnitude - EXACT_BITS) * SUB_BUCKETS + (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+  }
+
+  /*package*/ static long getBucketUpperBound(final int bucket) {
+    if (bucket < EXACT_BUCKETS) {
+      return bucket;
+    }
+    final int magnitude = (bucket - EXACT_BUCKETS) / SUB_BUCKETS + EXACT_BITS;
+    final long subBucket = (bucket - EXACT_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+    final int shift = magnitude - SUB_BUCKET_BITS;
+    return (subBucket << shift) + (1L << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram[count=" + getCount() + ", mean=" + (long) getMean() + "ns, 50%=" + getValueAtPercentile(50)
+        + "ns, 99%=" + getValueAtPercentile(99) + "ns, max=" + getMax() + "ns]";
+  }
+
+}
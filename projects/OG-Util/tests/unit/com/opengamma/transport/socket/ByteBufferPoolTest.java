@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the ByteBufferPool class
+ */
+@Test
+public class ByteBufferPoolTest {
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testSmallBuffers() {
+    new ByteBufferPool(8, 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeMaximum() {
+    new ByteBufferPool(1024, -1);
+  }
+
+  public void testAcquireRelease() {
+    final ByteBufferPool pool = new ByteBufferPool(1024, 2);
+    final ByteBuffer buffer = pool.acquire();
+    assertTrue(buffer.isDirect());
+    assertEquals(1024, buffer.capacity());
+    assertEquals(1, pool.getAllocated());
+    buffer.putInt(42);
+    pool.release(buffer);
+    assertEquals(1, pool.getPooled());
+    final ByteBuffer reused = pool.acquire();
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(1024, reused.limit());
+    assertEquals(1, pool.getAllocated());
+    assertEquals(0, pool.getPooled());
+  }
+
+  public void testMaximumPooled() {
+    final ByteBufferPool pool = new ByteBufferPool(1024, 2);
+    final ByteBuffer a = pool.acquire();
+    final ByteBuffer b = pool.acquire();
+    final ByteBuffer c = pool.acquire();
+    pool.release(a);
+    pool.release(b);
+    pool.release(c);
+    assertEquals(2, pool.getPooled());
+  }
+
+  public void testForeignBuffers() {
+    final ByteBufferPool pool = new ByteBufferPool(1024, 2);
+    pool.release(ByteBuffer.allocate(1024));
+    pool.release(ByteBuffer.allocateDirect(2048));
+    assertEquals(0, pool.getPooled());
+  }
+
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.transport.CollectingFudgeMessageReceiver;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.transport.FudgeMessageSender;
+import com.opengamma.util.test.Timeout;
+
+/**
+ * Tests the NioFudgeConnection and NioServerSocketFudgeConnectionReceiver classes
+ */
+@Test
+public class NioFudgeConnectionConduitTest {
+
+  private final AtomicInteger _counter = new AtomicInteger();
+  private NioReactorPool _reactorPool;
+
+  @BeforeMethod
+  public void startReactors() {
+    // small buffers so that messages span several of them
+    _reactorPool = new NioReactorPool(2, new ByteBufferPool(256, 16));
+    _reactorPool.start();
+  }
+
+  @AfterMethod
+  public void stopReactors() {
+    _reactorPool.stop();
+  }
+
+  private FudgeMsg createMessage() {
+    final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    message.add("counter", _counter.incrementAndGet());
+    return message;
+  }
+
+  private NioFudgeConnection createClient(final NioServerSocketFudgeConnectionReceiver server) throws Exception {
+    final NioFudgeConnection client = new NioFudgeConnection(FudgeContext.GLOBAL_DEFAULT, _reactorPool);
+    client.setInetAddress(InetAddress.getLocalHost());
+    client.setPortNumber(server.getPortNumber());
+    return client;
+  }
+
+  public void simpleTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    // receiver will respond to testMessage1 with testMessage2
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(FudgeContext fudgeContext, FudgeMsgEnvelope message, FudgeConnection connection) {
+        assertNotNull(fudgeContext);
+        assertNotNull(message);
+        assertNotNull(connection);
+        assertEquals(testMessage1, message.getMessage());
+        connection.getFudgeMessageSender().send(testMessage2);
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final NioFudgeConnection client = createClient(server);
+    // connect and send testMessage1, then verify that testMessage2 was sent back
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    client.getFudgeMessageSender().send(testMessage1);
+    final FudgeMsgEnvelope envelope = clientReceiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage2, envelope.getMessage());
+    client.stop();
+    server.stop();
+  }
+
+  public void messageReceiverTest() throws Exception {
+    final FudgeMsg testMessage1 = createMessage();
+    final FudgeMsg testMessage2 = createMessage();
+    final FudgeMsg testMessage3 = createMessage();
+    final CollectingFudgeMessageReceiver message3Receiver = new CollectingFudgeMessageReceiver();
+    // receiver will ignore testMessage1
+    // after receiving testMessage2, will set the message receiver on the connection
+    // it shouldn't be called again - messages should be dispatched to the connection's receiver
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      private int _count;
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        switch (_count++) {
+          case 0:
+            assertEquals(testMessage1, message.getMessage());
+            break;
+          case 1:
+            assertEquals(testMessage2, message.getMessage());
+            connection.setFudgeMessageReceiver(message3Receiver);
+            break;
+          default:
+            fail("Shouldn't have been called a third time");
+            break;
+        }
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final NioFudgeConnection client = createClient(server);
+    client.getFudgeMessageSender().send(testMessage1);
+    client.getFudgeMessageSender().send(testMessage2);
+    client.getFudgeMessageSender().send(testMessage3);
+    final FudgeMsgEnvelope envelope = message3Receiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage3, envelope.getMessage());
+    server.stop();
+    client.stop();
+  }
+
+  public void largeMessageTest() throws Exception {
+    // much larger than the pooled buffers, so it must be written from several and read into one of its own
+    final MutableFudgeMsg large = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    final byte[] data = new byte[100000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    large.add("data", data);
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        connection.getFudgeMessageSender().send(message.getMessage());
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final NioFudgeConnection client = createClient(server);
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    final FudgeMsg small = createMessage();
+    client.getFudgeMessageSender().send(small);
+    client.getFudgeMessageSender().send(large);
+    client.getFudgeMessageSender().send(small);
+    assertEquals(small, clientReceiver.waitForMessage(Timeout.standardTimeoutMillis()).getMessage());
+    assertEquals(large, clientReceiver.waitForMessage(Timeout.standardTimeoutMillis()).getMessage());
+    assertEquals(small, clientReceiver.waitForMessage(Timeout.standardTimeoutMillis()).getMessage());
+    client.stop();
+    server.stop();
+  }
+
+  public void blockingClientTest() throws Exception {
+    // the stream based client can connect to the NIO server
+    final FudgeMsg testMessage = createMessage();
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        connection.getFudgeMessageSender().send(message.getMessage());
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final SocketFudgeConnection client = new SocketFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+    client.setInetAddress(InetAddress.getLocalHost());
+    client.setPortNumber(server.getPortNumber());
+    final CollectingFudgeMessageReceiver clientReceiver = new CollectingFudgeMessageReceiver();
+    client.setFudgeMessageReceiver(clientReceiver);
+    client.getFudgeMessageSender().send(testMessage);
+    final FudgeMsgEnvelope envelope = clientReceiver.waitForMessage(Timeout.standardTimeoutMillis());
+    assertNotNull(envelope);
+    assertEquals(testMessage, envelope.getMessage());
+    client.stop();
+    server.stop();
+  }
+
+  public void undecodableMessageTest() throws Exception {
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        fail("Shouldn't have received a message");
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final Socket socket = new Socket(InetAddress.getLocalHost(), server.getPortNumber());
+    try {
+      socket.setSoTimeout((int) Timeout.standardTimeoutMillis());
+      // a well framed envelope holding a string field longer than the envelope
+      final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      out.writeByte(0);
+      out.writeByte(0);
+      out.writeShort(0);
+      out.writeInt(11);
+      out.writeByte(0x20);
+      out.writeByte(14);
+      out.writeByte(100);
+      out.flush();
+      // the server closes the connection
+      assertEquals(-1, socket.getInputStream().read());
+    } finally {
+      socket.close();
+    }
+    final long timeout = System.currentTimeMillis() + Timeout.standardTimeoutMillis();
+    while ((server.getConnectionCount() > 0) && (System.currentTimeMillis() < timeout)) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, server.getConnectionCount());
+    server.stop();
+  }
+
+  private class MessageReadWrite extends Thread implements FudgeMessageReceiver {
+
+    private static final int NUM_MESSAGES = 1000;
+
+    private FudgeMessageSender _sender;
+    private int _received;
+
+    @Override
+    public void run() {
+      for (int i = 0; i < NUM_MESSAGES; i++) {
+        final FudgeMsg message = createMessage();
+        _sender.send(message);
+      }
+    }
+
+    @Override
+    public synchronized void messageReceived(FudgeContext fudgeContext, FudgeMsgEnvelope msgEnvelope) {
+      _received++;
+      if (_received == NUM_MESSAGES) {
+        notify();
+      } else if (_received > NUM_MESSAGES) {
+        fail("Too many messages received");
+      }
+    }
+
+    public synchronized boolean waitForMessages() throws InterruptedException {
+      final long period = Timeout.standardTimeoutMillis();
+      final long timeout = System.currentTimeMillis() + period;
+      while ((_received < NUM_MESSAGES) && (System.currentTimeMillis() < timeout)) {
+        wait(period);
+      }
+      return _received == NUM_MESSAGES;
+    }
+
+  }
+
+  public void parallelIOTest() throws Exception {
+    final MessageReadWrite serverThread = new MessageReadWrite();
+    // receiver will attach the serverThread to the connection and start the thread
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope, final FudgeConnection connection) {
+        // pass on the first message
+        serverThread.messageReceived(fudgeContext, envelope);
+        // and let it receive all others as they arrive
+        serverThread._sender = connection.getFudgeMessageSender();
+        connection.setFudgeMessageReceiver(serverThread);
+        serverThread.start();
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final NioFudgeConnection client = createClient(server);
+    // client thread will send a stream of messages, and receive those back from the server
+    final MessageReadWrite clientThread = new MessageReadWrite();
+    clientThread._sender = client.getFudgeMessageSender();
+    client.setFudgeMessageReceiver(clientThread);
+    clientThread.start();
+    // wait to see if both have behaved
+    assertTrue(serverThread.waitForMessages());
+    assertTrue(clientThread.waitForMessages());
+    server.stop();
+    client.stop();
+  }
+
+  public void concurrentSendersTest() throws Exception {
+    // messages from each sending thread must arrive whole and in the order that thread sent them
+    final int threads = 4;
+    final int messages = 2000;
+    final int[] next = new int[threads];
+    final AtomicInteger received = new AtomicInteger();
+    final AtomicInteger errors = new AtomicInteger();
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope, final FudgeConnection connection) {
+        final FudgeMessageReceiver receiver = new FudgeMessageReceiver() {
+          @Override
+          public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope) {
+            final FudgeMsg message = envelope.getMessage();
+            final int thread = message.getInt("thread");
+            if (message.getInt("sequence") != next[thread]++) {
+              errors.incrementAndGet();
+            }
+            received.incrementAndGet();
+          }
+        };
+        receiver.messageReceived(fudgeContext, envelope);
+        connection.setFudgeMessageReceiver(receiver);
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final NioFudgeConnection client = createClient(server);
+    client.start();
+    final List<Thread> senders = new ArrayList<Thread>();
+    for (int i = 0; i < threads; i++) {
+      final int thread = i;
+      senders.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < messages; j++) {
+            final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+            message.add("thread", thread);
+            message.add("sequence", j);
+            message.add("padding", "padding to vary the position of the messages within the buffers " + j);
+            client.getFudgeMessageSender().send(message);
+          }
+        }
+      });
+    }
+    for (Thread sender : senders) {
+      sender.start();
+    }
+    for (Thread sender : senders) {
+      sender.join();
+    }
+    final long timeout = System.currentTimeMillis() + Timeout.standardTimeoutMillis() * 4L;
+    while ((received.get() < threads * messages) && (System.currentTimeMillis() < timeout)) {
+      Thread.sleep(10);
+    }
+    assertEquals(threads * messages, received.get());
+    assertEquals(0, errors.get());
+    client.stop();
+    server.stop();
+  }
+
+  public void manyConnectionsTest() throws Exception {
+    final FudgeConnectionReceiver serverReceiver = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope message, final FudgeConnection connection) {
+        connection.getFudgeMessageSender().send(message.getMessage());
+      }
+    };
+    final NioServerSocketFudgeConnectionReceiver server = new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, serverReceiver, _reactorPool);
+    server.start();
+    final List<NioFudgeConnection> clients = new ArrayList<NioFudgeConnection>();
+    final List<CollectingFudgeMessageReceiver> receivers = new ArrayList<CollectingFudgeMessageReceiver>();
+    final List<FudgeMsg> messages = new ArrayList<FudgeMsg>();
+    for (int i = 0; i < 50; i++) {
+      final NioFudgeConnection client = createClient(server);
+      final CollectingFudgeMessageReceiver receiver = new CollectingFudgeMessageReceiver();
+      client.setFudgeMessageReceiver(receiver);
+      final FudgeMsg message = createMessage();
+      client.getFudgeMessageSender().send(message);
+      clients.add(client);
+      receivers.add(receiver);
+      messages.add(message);
+    }
+    for (int i = 0; i < clients.size(); i++) {
+      final FudgeMsgEnvelope envelope = receivers.get(i).waitForMessage(Timeout.standardTimeoutMillis());
+      assertNotNull(envelope);
+      assertEquals(messages.get(i), envelope.getMessage());
+    }
+    assertEquals(clients.size(), server.getConnectionCount());
+    for (NioFudgeConnection client : clients) {
+      client.stop();
+    }
+    server.stop();
+    assertEquals(0, server.getConnectionCount());
+  }
+
+}
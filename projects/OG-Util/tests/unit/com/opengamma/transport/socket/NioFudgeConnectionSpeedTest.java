@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.transport.socket;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.FudgeConnectionReceiver;
+import com.opengamma.transport.FudgeMessageReceiver;
+import com.opengamma.util.monitor.OperationTimer;
+
+/**
+ * Compares the message rate and round trip latency of the NIO and stream based socket transports. Each client
+ * connection sends a message, which the server echoes back, and sends its next message when the echo arrives.
+ * Only 10 connections are run by default; the runs with 100 and 1000 connections need hundreds of sockets and threads.
+ * The stream based transport is not run with 1000 connections as it would need 2000 threads.
+ */
+public class NioFudgeConnectionSpeedTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(NioFudgeConnectionSpeedTest.class);
+  private static final int HOTSPOT_WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final int MESSAGES = 2000;
+  private static final int[] CONNECTIONS = new int[] {10};
+  private static final int[] MANY_CONNECTIONS = new int[] {100, 1000};
+  private static final int MAX_BLOCKING_CONNECTIONS = 100;
+
+  @Test
+  public void testRoundTrips() throws Exception {
+    roundTrips(CONNECTIONS);
+  }
+
+  @Test(enabled = false)
+  public void testManyConnections() throws Exception {
+    roundTrips(MANY_CONNECTIONS);
+  }
+
+  private static void roundTrips(final int[] connectionCounts) throws Exception {
+    final NioReactorPool reactorPool = new NioReactorPool(2, new ByteBufferPool());
+    reactorPool.start();
+    try {
+      for (int connections : connectionCounts) {
+        for (int i = 0; i < HOTSPOT_WARMUP_CYCLES; i++) {
+          if (connections <= MAX_BLOCKING_CONNECTIONS) {
+            roundTrips(null, connections);
+          }
+          roundTrips(reactorPool, connections);
+        }
+        for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+          if (connections <= MAX_BLOCKING_CONNECTIONS) {
+            report("Stream", connections, roundTrips(null, connections));
+          }
+          report("NIO", connections, roundTrips(reactorPool, connections));
+        }
+      }
+    } finally {
+      reactorPool.stop();
+    }
+  }
+
+  private static void report(final String transport, final int connections, final long[] result) {
+    final long elapsedNanos = result[result.length - 1];
+    final long[] latencies = Arrays.copyOf(result, result.length - 1);
+    Arrays.sort(latencies);
+    s_logger.info("{} transport, {} connections: {} msgs/s", new Object[] {transport, connections, (long) (latencies.length * 1e9 / elapsedNanos)});
+    s_logger.info("{} transport, {} connections: round trip p50={}us p90={}us p99={}us p99.9={}us", new Object[] {transport, connections,
+        percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99), percentile(latencies, 0.999)});
+  }
+
+  private static long percentile(final long[] sorted, final double p) {
+    return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1000;
+  }
+
+  /**
+   * @return the round trip times in nanoseconds, followed by the total elapsed time
+   */
+  private static long[] roundTrips(final NioReactorPool reactorPool, final int connections) throws Exception {
+    final FudgeConnectionReceiver echo = new FudgeConnectionReceiver() {
+      @Override
+      public void connectionReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope, final FudgeConnection connection) {
+        final FudgeMessageReceiver receiver = new FudgeMessageReceiver() {
+          @Override
+          public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope) {
+            connection.getFudgeMessageSender().send(envelope.getMessage());
+          }
+        };
+        connection.setFudgeMessageReceiver(receiver);
+        receiver.messageReceived(fudgeContext, envelope);
+      }
+    };
+    final AbstractServerSocketProcess server = (reactorPool != null) ? new NioServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, echo, reactorPool)
+        : new ServerSocketFudgeConnectionReceiver(FudgeContext.GLOBAL_DEFAULT, echo);
+    server.start();
+    final int perConnection = MESSAGES / connections;
+    final long[] latencies = new long[perConnection * connections + 1];
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch finished = new CountDownLatch(connections);
+    final List<AbstractSocketProcess> clients = new ArrayList<AbstractSocketProcess>(connections);
+    try {
+      for (int i = 0; i < connections; i++) {
+        final AbstractSocketProcess client = (reactorPool != null) ? new NioFudgeConnection(FudgeContext.GLOBAL_DEFAULT, reactorPool)
+            : new SocketFudgeConnection(FudgeContext.GLOBAL_DEFAULT);
+        client.setInetAddress(InetAddress.getLocalHost());
+        client.setPortNumber(server.getPortNumber());
+        final FudgeConnection connection = (FudgeConnection) client;
+        connection.setFudgeMessageReceiver(new FudgeMessageReceiver() {
+          private int _received;
+
+          @Override
+          public void messageReceived(final FudgeContext fudgeContext, final FudgeMsgEnvelope envelope) {
+            latencies[next.getAndIncrement()] = System.nanoTime() - envelope.getMessage().getLong("sent");
+            if (++_received < perConnection) {
+              connection.getFudgeMessageSender().send(createMessage(_received));
+            } else {
+              finished.countDown();
+            }
+          }
+        });
+        client.start();
+        clients.add(client);
+      }
+      final OperationTimer timer = new OperationTimer(s_logger, "{} round trips over {} connections", perConnection * connections, connections);
+      final long start = System.nanoTime();
+      for (AbstractSocketProcess client : clients) {
+        ((FudgeConnection) client).getFudgeMessageSender().send(createMessage(0));
+      }
+      assertTrue(finished.await(5, TimeUnit.MINUTES));
+      latencies[latencies.length - 1] = System.nanoTime() - start;
+      timer.finished();
+    } finally {
+      for (AbstractSocketProcess client : clients) {
+        client.stop();
+      }
+      server.stop();
+    }
+    return latencies;
+  }
+
+  private static FudgeMsg createMessage(final int sequence) {
+    final MutableFudgeMsg message = FudgeContext.GLOBAL_DEFAULT.newMessage();
+    message.add("sequence", sequence);
+    message.add("sent", System.nanoTime());
+    message.add("payload", "A typical small message - a market data tick or calculation job result");
+    return message;
+  }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.monitor;
+
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test LatencyClock.
+ */
+@Test
+public class LatencyClockTest {
+
+  // Allows for the granularity of currentTimeMillis
+  private static final long TOLERANCE_MILLIS = LatencyClock.MAX_DRIFT_MILLIS + 20;
+
+  public void tracksWallClock() throws InterruptedException {
+    assertCloseToWallClock();
+    // Long enough for the clock to be checked against the wall clock
+    Thread.sleep(1100);
+    assertCloseToWallClock();
+  }
+
+  private void assertCloseToWallClock() {
+    final long before = System.currentTimeMillis();
+    final long millis = LatencyClock.currentTimeNanos() / 1000000L;
+    final long after = System.currentTimeMillis();
+    assertTrue(millis >= before - TOLERANCE_MILLIS);
+    assertTrue(millis <= after + TOLERANCE_MILLIS);
+  }
+
+}
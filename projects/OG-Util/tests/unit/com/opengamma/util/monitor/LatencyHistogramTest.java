@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.monitor;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test LatencyHistogram.
+ */
+@Test
+public class LatencyHistogramTest {
+
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0.0, histogram.getMean(), 0.0);
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+
+  public void testBuckets() {
+    long previousUpperBound = -1;
+    for (int bucket = 0; bucket < 1000; bucket++) {
+      long upperBound = LatencyHistogram.getBucketUpperBound(bucket);
+      assertTrue(upperBound > previousUpperBound);
+      assertEquals(bucket, LatencyHistogram.getBucket(previousUpperBound + 1));
+      assertEquals(bucket, LatencyHistogram.getBucket(upperBound));
+      previousUpperBound = upperBound;
+    }
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(Long.MAX_VALUE)));
+  }
+
+  public void testExactSmallValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 50; i++) {
+      histogram.record(i);
+    }
+    assertEquals(50, histogram.getCount());
+    assertEquals(25.5, histogram.getMean(), 1e-9);
+    assertEquals(50, histogram.getMax());
+    assertEquals(25, histogram.getValueAtPercentile(50));
+    assertEquals(50, histogram.getValueAtPercentile(100));
+    assertEquals(1, histogram.getValueAtPercentile(0));
+  }
+
+  public void testPercentileAccuracy() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Random random = new Random(0);
+    long[] values = new long[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) (1000 * Math.exp(random.nextDouble() * 15));
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    for (double percentile : new double[] {50, 90, 99, 99.9 }) {
+      long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      long actual = histogram.getValueAtPercentile(percentile);
+      assertTrue(actual >= expected);
+      assertTrue((actual - expected) <= expected / 30);
+    }
+    assertEquals(values[values.length - 1], histogram.getMax());
+    assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+  }
+
+  public void testNegativeAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(1, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    histogram.record(1000000);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+  }
+
+}
@@ -98,6 +98,7 @@ import com.opengamma.financial.analytics.model.option.BlackScholesMertonModelFun
 import com.opengamma.financial.analytics.model.option.BlackScholesModelCostOfCarryFunction;
 import com.opengamma.financial.analytics.model.pnl.EquityPnLFunction;
 import com.opengamma.financial.analytics.model.pnl.PortfolioExchangeTradedPnLFunction;
+import com.opengamma.financial.analytics.model.pnl.PortfolioValueGreekSensitivityPnLAttributionFunction;
 import com.opengamma.financial.analytics.model.pnl.PositionExchangeTradedPnLFunction;
 import com.opengamma.financial.analytics.model.pnl.PositionValueGreekSensitivityPnLFunction;
 import com.opengamma.financial.analytics.model.pnl.SecurityPriceSeriesFunction;
@@ -225,6 +226,8 @@ public class DemoStandardFunctionConfiguration extends SingletonFactoryBean<Repo
         scheduleName, samplingCalculatorName, "0.99", "1", ValueRequirementNames.VALUE_DELTA)));
     functionConfigs.add(new ParameterizedFunctionConfiguration(PositionValueGreekSensitivityPnLFunction.class.getName(), Arrays.asList(DEFAULT_CONFIG_NAME, startDate, returnCalculatorName,
         scheduleName, samplingCalculatorName, ValueRequirementNames.VALUE_DELTA)));
+    functionConfigs.add(new ParameterizedFunctionConfiguration(PortfolioValueGreekSensitivityPnLAttributionFunction.class.getName(), Arrays.asList(DEFAULT_CONFIG_NAME, startDate,
+        returnCalculatorName, scheduleName, samplingCalculatorName, ValueRequirementNames.VALUE_DELTA)));
     functionConfigs.add(new ParameterizedFunctionConfiguration(CAPMBetaModelPositionFunction.class.getName(), Arrays.asList(returnCalculatorName, startDate)));
     functionConfigs.add(new ParameterizedFunctionConfiguration(CAPMBetaModelPortfolioNodeFunction.class.getName(), Arrays.asList(returnCalculatorName, startDate)));
     functionConfigs.add(new ParameterizedFunctionConfiguration(CAPMFromRegressionModelPositionFunction.class.getName(), Collections.singleton(startDate)));